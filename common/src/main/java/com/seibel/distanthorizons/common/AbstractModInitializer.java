@@ -9,6 +9,7 @@ import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiAfterDh
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiBeforeDhInitEvent;
 import com.seibel.distanthorizons.common.wrappers.DependencySetup;
 import com.seibel.distanthorizons.common.wrappers.minecraft.MinecraftDedicatedServerWrapper;
+import com.seibel.distanthorizons.common.wrappers.world.ServerLevelWrapper;
 import com.seibel.distanthorizons.core.api.internal.SharedApi;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.config.ConfigBase;
@@ -17,9 +18,13 @@ import com.seibel.distanthorizons.core.config.types.AbstractConfigType;
 import com.seibel.distanthorizons.core.config.types.ConfigEntry;
 import com.seibel.distanthorizons.core.dependencyInjection.ModAccessorInjector;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.generation.WorldPregenerator;
 import com.seibel.distanthorizons.core.jar.ModJarInfo;
+import com.seibel.distanthorizons.core.level.DhServerLevel;
+import com.seibel.distanthorizons.core.level.IDhLevel;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.util.objects.Pair;
+import com.seibel.distanthorizons.core.world.AbstractDhWorld;
 import com.seibel.distanthorizons.core.wrapperInterfaces.modAccessor.IModAccessor;
 import com.seibel.distanthorizons.core.wrapperInterfaces.modAccessor.IModChecker;
 import com.seibel.distanthorizons.coreapi.DependencyInjection.ApiEventInjector;
@@ -284,6 +289,94 @@ public abstract class AbstractModInitializer
 		}
 		
 		this.commandDispatcher.register(builder);
+		this.commandDispatcher.register(this.createPregenCommand());
+	}
+	
+	private LiteralArgumentBuilder<CommandSourceStack> createPregenCommand()
+	{
+		return literal("dhpregen")
+				.requires(source -> source.hasPermission(4))
+				.then(literal("start")
+						.then(literal("radius")
+								.then(argument("blocks", integer(1))
+										.executes(c -> runPregenCommand(c, pregenerator ->
+										{
+											int radius = IntegerArgumentType.getInteger(c, "blocks");
+											pregenerator.startRadius((int) Math.floor(c.getSource().getPosition().x), (int) Math.floor(c.getSource().getPosition().z), radius);
+											return "Started pregenerating a " + radius + " block radius.";
+										}))))
+						.then(literal("area")
+								.then(argument("minX", integer())
+										.then(argument("minZ", integer())
+												.then(argument("maxX", integer())
+														.then(argument("maxZ", integer())
+																.executes(c -> runPregenCommand(c, pregenerator ->
+																{
+																	pregenerator.start(
+																			IntegerArgumentType.getInteger(c, "minX"), IntegerArgumentType.getInteger(c, "minZ"),
+																			IntegerArgumentType.getInteger(c, "maxX"), IntegerArgumentType.getInteger(c, "maxZ"));
+																	return "Started pregenerating the given area.";
+																}))))))))
+				.then(literal("pause")
+						.executes(c -> runPregenCommand(c, pregenerator -> pregenerator.pause() ? "Pregeneration paused." : null)))
+				.then(literal("resume")
+						.executes(c -> runPregenCommand(c, pregenerator -> pregenerator.resume() ? "Pregeneration resumed." : null)))
+				.then(literal("cancel")
+						.executes(c -> runPregenCommand(c, pregenerator -> pregenerator.cancel() ? "Pregeneration canceled." : null)))
+				.then(literal("status")
+						.executes(c -> runPregenCommand(c, WorldPregenerator::getStatusMessage)));
+	}
+	/** @param pregenCommand returns the feedback message or null if there wasn't any pregeneration to run the command on */
+	private static int runPregenCommand(CommandContext<CommandSourceStack> c, Function<WorldPregenerator, String> pregenCommand)
+	{
+		AbstractDhWorld dhWorld = SharedApi.getAbstractDhWorld();
+		IDhLevel dhLevel = (dhWorld != null) ? dhWorld.getLevel(ServerLevelWrapper.getWrapper(c.getSource().getLevel())) : null;
+		if (!(dhLevel instanceof DhServerLevel))
+		{
+			sendCommandFeedback(c.getSource(), "Distant Horizons isn't loaded for this level.", false);
+			return 0;
+		}
+		
+		String message;
+		try
+		{
+			message = pregenCommand.apply(((DhServerLevel) dhLevel).pregenerator);
+		}
+		catch (IllegalArgumentException e)
+		{
+			sendCommandFeedback(c.getSource(), e.getMessage(), false);
+			return 0;
+		}
+		
+		if (message == null)
+		{
+			sendCommandFeedback(c.getSource(), "No pregeneration is running.", false);
+			return 0;
+		}
+		
+		sendCommandFeedback(c.getSource(), message, true);
+		return 1;
+	}
+	private static void sendCommandFeedback(CommandSourceStack source, String message, boolean success)
+	{
+		if (success)
+		{
+			#if MC_VER >= MC_1_20_1
+			source.sendSuccess(() -> Component.literal(message), true);
+			#elif MC_VER >= MC_1_19_2
+			source.sendSuccess(Component.literal(message), true);
+			#else // < 1.19.2
+			source.sendSuccess(new TranslatableComponent(message), true);
+			#endif
+		}
+		else
+		{
+			#if MC_VER >= MC_1_19_2
+			source.sendFailure(Component.literal(message));
+			#else // < 1.19.2
+			source.sendFailure(new TranslatableComponent(message));
+			#endif
+		}
 	}
 	
 	
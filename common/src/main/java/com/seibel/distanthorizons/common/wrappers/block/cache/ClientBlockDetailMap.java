@@ -40,6 +40,13 @@ public class ClientBlockDetailMap
 	
 	public void clear() { blockCache.clear(); }
 	
+	/** @return true if the color for the given block state hasn't been computed yet or may change based on position */
+	public boolean isColorPositionDependent(BlockState state)
+	{
+		ClientBlockStateCache blockStateCache = this.blockCache.get(state);
+		return blockStateCache == null || blockStateCache.isColorPositionDependent();
+	}
+	
 	public int getColor(BlockState state, BiomeWrapper biome, DhBlockPos pos)
 	{
 		return getBlockStateData(state, pos).getAndResolveFaceColor(biome, pos);
@@ -340,6 +340,13 @@ public class ClientBlockStateCache
 		isColorResolved = true;
 	}
 	
+	/** 
+	 * Any tinted block may have a different color at each position,
+	 * even without the level, biome tints like swamp grass use position based noise. <br>
+	 * Note: this is only accurate after {@link ClientBlockStateCache#getAndResolveFaceColor} has been called at least once.
+	 */
+	public boolean isColorPositionDependent() { return this.needPostTinting && !BROKEN_BLOCK_STATES.contains(this.blockState); }
+	
 	public int getAndResolveFaceColor(BiomeWrapper biome, DhBlockPos pos)
 	{
 		// FIXME: impl per-face colors
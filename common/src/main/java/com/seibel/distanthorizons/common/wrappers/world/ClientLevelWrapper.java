@@ -129,6 +129,9 @@ public class ClientLevelWrapper implements IClientLevelWrapper
 		return this.blockMap.getColor(((BlockStateWrapper) blockState).blockState, (BiomeWrapper) biome, pos);
 	}
 	
+	@Override
+	public boolean isBaseColorPositionDependent(IBlockStateWrapper blockState) { return this.blockMap.isColorPositionDependent(((BlockStateWrapper) blockState).blockState); }
+	
 	@Override
 	public int getDirtBlockColor()
 	{
@@ -139,7 +139,7 @@ public final class BatchGenerationEnvironment extends AbstractBatchGenerationEnv
 			}
 		}
 		
-		public void recordEvent(EventTimer event)
+		public synchronized void recordEvent(EventTimer event)
 		{
 			for (EventTimer.Event e : event.events)
 			{
@@ -151,7 +151,7 @@ public final class BatchGenerationEnvironment extends AbstractBatchGenerationEnv
 			times.get(0).add(event.getTotalTimeNs());
 		}
 		
-		public String toString()
+		public synchronized String toString()
 		{
 			StringBuilder sb = new StringBuilder();
 			for (int i = 0; i < times.size(); i++)
@@ -162,9 +162,32 @@ public final class BatchGenerationEnvironment extends AbstractBatchGenerationEnv
 			return sb.toString();
 		}
 		
+		/** @return each step's average time in milliseconds on a single line */
+		public synchronized String toMillisecondString()
+		{
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < times.size(); i++)
+			{
+				double averageNs = times.get(i).getAverage();
+				if (averageNs == 0) continue;
+				
+				if (sb.length() != 0)
+				{
+					sb.append(", ");
+				}
+				sb.append(TIME_NAMES[i]).append(": ").append(String.format("%.1f", averageNs / 1_000_000.0)).append("ms");
+			}
+			return sb.toString();
+		}
+		
 	}
 	
 	private final IDhServerLevel serverlevel;
+	/** 
+	 * Unlike {@link ThreadedParameters#perf} this is shared between all threads and is always recorded
+	 * so timings can be displayed without enabling the performance logger.
+	 */
+	private final PerfCalculator perfCalculator = new PerfCalculator();
 	
 	//=================Generation Step===================
 	
@@ -599,6 +622,7 @@ public final class BatchGenerationEnvironment extends AbstractBatchGenerationEnv
 		
 		genEvent.timer.complete();
 		genEvent.refreshTimeout();
+		this.perfCalculator.recordEvent(genEvent.timer);
 		if (PREF_LOGGER.canMaybeLog())
 		{
 			genEvent.threadedParam.perf.recordEvent(genEvent.timer);
@@ -696,7 +720,7 @@ public final class BatchGenerationEnvironment extends AbstractBatchGenerationEnv
 			genEvent.timer.nextEvent("light");
 			
 			// generate lighting using DH's lighting engine
-				
+			
 			int maxSkyLight = this.serverlevel.getServerLevelWrapper().hasSkyLight() ? 15 : 0;
 			
 			// only light generated chunks,
@@ -743,6 +767,9 @@ public final class BatchGenerationEnvironment extends AbstractBatchGenerationEnv
 	@Override
 	public int getEventCount() { return this.generationEventList.size(); }
 	
+	@Override
+	public String getStepTimingSummary() { return this.perfCalculator.toMillisecondString(); }
+	
 	@Override
 	public void stop()
 	{
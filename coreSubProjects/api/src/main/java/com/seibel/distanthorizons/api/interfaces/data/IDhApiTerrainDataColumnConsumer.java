@@ -0,0 +1,44 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.api.interfaces.data;
+
+import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
+
+/**
+ * Receives terrain data one column at a time,
+ * used when an entire area's data doesn't need to be held in memory at once.
+ *
+ * @author James Seibel
+ * @version 2026-10-18
+ * @since API 2.1.0
+ * @see IDhApiTerrainDataRepo#forEachTerrainDataColumnAtDetailLevelAndPos
+ */
+@FunctionalInterface
+public interface IDhApiTerrainDataColumnConsumer
+{
+	/**
+	 * @param relativeBlockX relative to the block position closest to negative infinity in the requested area
+	 * @param relativeBlockZ relative to the block position closest to negative infinity in the requested area
+	 * @param columnData ordered from top to bottom, will be empty if no data exists for this column.
+	 * @return true to continue receiving columns, false to stop early
+	 */
+	boolean accept(int relativeBlockX, int relativeBlockZ, DhApiTerrainDataPoint[] columnData);
+	
+}
@@ -30,7 +30,7 @@ import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
  * Used to interface with Distant Horizons' terrain data.
  *
  * @author James Seibel
- * @version 2023-6-22
+ * @version 2026-10-18
  * @since API 1.0.0
  */
 public interface IDhApiTerrainDataRepo
@@ -74,6 +74,21 @@ public interface IDhApiTerrainDataRepo
 	 */
 	DhApiResult<DhApiTerrainDataPoint[][][]> getAllTerrainDataAtDetailLevelAndPos(IDhApiLevelWrapper levelWrapper, byte detailLevel, int posX, int posZ);
 	
+	/**
+	 * Streaming version of {@link IDhApiTerrainDataRepo#getAllTerrainDataAtDetailLevelAndPos},
+	 * each column is passed to the given consumer instead of being collected into a single array. <br>
+	 * This is recommended for large areas (IE regions) since only a single section's worth of data needs to be held at once. <br><br>
+	 *
+	 * The consumer is called on the calling thread and columns are grouped by the section they're stored in,
+	 * so they won't necessarily be returned in X/Z order. <br>
+	 * If the result fails any columns passed to the consumer before the failure are still valid. <br>
+	 * If the consumer returns false no more columns will be passed to it and the result will still be successful.
+	 *
+	 * @param detailLevel see {@link IDhApiTerrainDataRepo#getAllTerrainDataAtDetailLevelAndPos} for details
+	 * @since API 2.1.0
+	 */
+	DhApiResult<Void> forEachTerrainDataColumnAtDetailLevelAndPos(IDhApiLevelWrapper levelWrapper, byte detailLevel, int posX, int posZ, IDhApiTerrainDataColumnConsumer columnConsumer);
+	
 	/**
 	 * Returns the datapoint and position of the LOD
 	 * at the end of the given ray. <br><br>
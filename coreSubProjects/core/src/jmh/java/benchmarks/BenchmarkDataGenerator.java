@@ -0,0 +1,269 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.dataObjects.render.columnViews.ColumnArrayView;
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.jar.JarDependencySetup;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.OfflineLevelWrapper;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+/**
+ * Creates reproducible synthetic data for the benchmarks. <br>
+ * Every method takes a seed so the same data is generated on every run and every commit,
+ * otherwise results from different commits couldn't be compared. <br><br>
+ *
+ * The terrain is loosely modeled after vanilla overworld data:
+ * a solid ground column with a few layers (IE stone, dirt, grass),
+ * an occasional cave, and water in low areas.
+ */
+public class BenchmarkDataGenerator
+{
+	public static final int LEVEL_MIN_Y = -64;
+	public static final int LEVEL_HEIGHT = 384;
+	
+	public static final String[] BIOMES = { "minecraft:plains", "minecraft:forest", "minecraft:river", "minecraft:desert", "minecraft:taiga" };
+	public static final String[] BLOCKS = {
+			"minecraft:stone_STATE_{}", "minecraft:deepslate_STATE_{axis:y}", "minecraft:dirt_STATE_{}", "minecraft:grass_block_STATE_{snowy:false}",
+			"minecraft:sand_STATE_{}", "minecraft:gravel_STATE_{}", "minecraft:water_STATE_{level:0}", "minecraft:oak_leaves_STATE_{distance:1,persistent:false,waterlogged:false}",
+			"minecraft:oak_log_STATE_{axis:y}", "minecraft:coal_ore_STATE_{}", "minecraft:iron_ore_STATE_{}", "minecraft:andesite_STATE_{}" };
+	
+	private static final int[] COLORS = { 0xFF7F7F7F, 0xFF4D4D4D, 0xFF866043, 0xFF5B8731, 0xFFDBD3A0, 0xFF837E7E, 0x803F76E4, 0xFF48B518 };
+	
+	static
+	{
+		// data mappings can't be created or deserialized without a wrapper factory
+		JarDependencySetup.createOfflineLodBindings();
+		
+		// quad building needs face shading from the MC client,
+		// a stub is fine since every benchmark will use the same values
+		if (SingletonInjector.INSTANCE.get(IMinecraftClientWrapper.class, true) == null)
+		{
+			IMinecraftClientWrapper mcStub = (IMinecraftClientWrapper) Proxy.newProxyInstance(
+					IMinecraftClientWrapper.class.getClassLoader(),
+					new Class[]{ IMinecraftClientWrapper.class },
+					(proxy, method, args) ->
+					{
+						Class<?> returnType = method.getReturnType();
+						if (returnType == float.class)
+						{
+							return 1.0f;
+						}
+						else if (returnType == boolean.class)
+						{
+							// needed for getDelayedSetupComplete()
+							return true;
+						}
+						else if (returnType == int.class)
+						{
+							return 0;
+						}
+						return null;
+					});
+			SingletonInjector.INSTANCE.bind(IMinecraftClientWrapper.class, mcStub);
+		}
+	}
+	
+	
+	
+	//===========//
+	// full data //
+	//===========//
+	
+	public static IBiomeWrapper getBiome(int index) { return OfflineWrapperFactory.INSTANCE.deserializeBiomeWrapper(BIOMES[index % BIOMES.length], OfflineLevelWrapper.INSTANCE); }
+	public static IBlockStateWrapper getBlock(int index) { return OfflineWrapperFactory.INSTANCE.deserializeBlockStateWrapper(BLOCKS[index % BLOCKS.length], OfflineLevelWrapper.INSTANCE); }
+	
+	/** @param layerCount the max number of data points in each column, vanilla terrain usually has 2 to 10 */
+	public static FullDataSourceV2 createFullDataSource(long pos, long seed, int layerCount)
+	{
+		Random random = new Random(seed);
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(pos);
+		
+		// a section normally only contains a few biomes and a couple dozen blocks
+		int biomeOffset = random.nextInt(BIOMES.length);
+		int[][] idByBiomeAndBlock = new int[2][BLOCKS.length];
+		for (int biome = 0; biome < idByBiomeAndBlock.length; biome++)
+		{
+			for (int block = 0; block < BLOCKS.length; block++)
+			{
+				idByBiomeAndBlock[biome][block] = dataSource.mapping.addIfNotPresentAndGetId(getBiome(biomeOffset + biome), getBlock(block));
+			}
+		}
+		
+		
+		for (int relX = 0; relX < FullDataSourceV2.WIDTH; relX++)
+		{
+			for (int relZ = 0; relZ < FullDataSourceV2.WIDTH; relZ++)
+			{
+				int[] idByBlock = idByBiomeAndBlock[(relX + relZ) / FullDataSourceV2.WIDTH];
+				int surfaceHeight = 64 + (int) (Math.sin((relX + seed) * 0.1) * 12 + Math.cos(relZ * 0.13) * 8) + random.nextInt(3);
+				
+				int index = FullDataSourceV2.relativePosToIndex(relX, relZ);
+				dataSource.dataPoints[index] = createFullDataColumn(random, idByBlock, surfaceHeight, layerCount);
+				dataSource.columnGenerationSteps[index] = EDhApiWorldGenerationStep.LIGHT.value;
+			}
+		}
+		
+		dataSource.levelMinY = LEVEL_MIN_Y;
+		dataSource.isEmpty = false;
+		return dataSource;
+	}
+	/** @return data points sorted from top to bottom, the same order LodDataBuilder uses */
+	private static LongArrayList createFullDataColumn(Random random, int[] idByBlock, int surfaceHeight, int layerCount)
+	{
+		// heights are relative to the level's min Y
+		int top = surfaceHeight - LEVEL_MIN_Y;
+		
+		LongArrayList column = new LongArrayList(layerCount);
+		try
+		{
+			// air above the surface is implied, so only the ground is stored
+			int layers = Math.max(1, layerCount);
+			for (int i = 0; i < layers && top > 1; i++)
+			{
+				int thickness = (i == layers - 1) ? top : Math.min(top - 1, 1 + random.nextInt(6));
+				int blockIndex = (i == 0) ? ((surfaceHeight < 62) ? 6 : 3) : random.nextInt(idByBlock.length);
+				byte skyLight = (byte) ((i == 0) ? 15 : 0);
+				
+				top -= thickness;
+				column.add(FullDataPointUtil.encode(idByBlock[blockIndex], thickness, top, (byte) 0, skyLight));
+			}
+		}
+		catch (DataCorruptedException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		return column;
+	}
+	
+	/** creates the 4 children of the given position, IE for updating a parent */
+	public static FullDataSourceV2[] createChildren(long parentPos, long seed, int layerCount)
+	{
+		FullDataSourceV2[] children = new FullDataSourceV2[4];
+		for (int i = 0; i < 4; i++)
+		{
+			children[i] = createFullDataSource(DhSectionPos.getChildByIndex(parentPos, i), seed + i, layerCount);
+		}
+		return children;
+	}
+	
+	/** @param entryCount how many biome/block pairs the map should have */
+	public static FullDataPointIdMap createMapping(long pos, long seed, int entryCount)
+	{
+		Random random = new Random(seed);
+		FullDataPointIdMap mapping = new FullDataPointIdMap(pos);
+		while (mapping.size() < entryCount)
+		{
+			// variations on the block states so large maps can be created
+			IBlockStateWrapper block = OfflineWrapperFactory.INSTANCE.deserializeBlockStateWrapper(BLOCKS[random.nextInt(BLOCKS.length)] + "_" + random.nextInt(entryCount), OfflineLevelWrapper.INSTANCE);
+			mapping.addIfNotPresentAndGetId(getBiome(random.nextInt(BIOMES.length)), block);
+		}
+		return mapping;
+	}
+	
+	
+	
+	//=============//
+	// render data //
+	//=============//
+	
+	public static int getColor(int index) { return COLORS[index % COLORS.length]; }
+	
+	/** @param colorCount how many colors are used, fewer colors means more quads can be merged */
+	public static ColumnRenderSource createRenderSource(long pos, long seed, int verticalSize, int colorCount)
+	{
+		Random random = new Random(seed);
+		ColumnRenderSource renderSource = ColumnRenderSource.getPooledRenderSource(pos, verticalSize, LEVEL_MIN_Y, true);
+		renderSource.markNotEmpty();
+		
+		for (int relX = 0; relX < ColumnRenderSource.SECTION_SIZE; relX++)
+		{
+			for (int relZ = 0; relZ < ColumnRenderSource.SECTION_SIZE; relZ++)
+			{
+				ColumnArrayView column = renderSource.getVerticalDataPointView(relX, relZ);
+				int height = 64 + (int) (Math.sin(relX * 0.2) * 6 + Math.cos(relZ * 0.15) * 4) + random.nextInt(2) - LEVEL_MIN_Y;
+				
+				// render data is sorted from top to bottom
+				for (int i = 0; i < verticalSize && height > 0; i++)
+				{
+					int depth = (i == verticalSize - 1) ? 0 : Math.max(0, height - 1 - random.nextInt(8));
+					column.set(i, RenderDataPointUtil.createDataPoint(height, depth, getColor(random.nextInt(colorCount)), (i == 0) ? 15 : 0, random.nextInt(2), IBlockStateWrapper.IrisBlockMaterial.STONE));
+					
+					// leave a gap between data points, IE a cave
+					height = depth - random.nextInt(4);
+				}
+			}
+		}
+		
+		return renderSource;
+	}
+	
+	/** @return render sources for each {@link EDhDirection#ADJ_DIRECTIONS}, in the order the buffer builder expects */
+	/** @return the edge of each neighbor that touches the given position */
+	public static ColumnRenderEdge[] createAdjacentEdges(long pos, long seed, int verticalSize, int colorCount)
+	{
+		ColumnRenderEdge[] adjacentEdges = new ColumnRenderEdge[EDhDirection.ADJ_DIRECTIONS.length];
+		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
+		{
+			ColumnRenderSource adjacentRenderSource = createRenderSource(DhSectionPos.getAdjacentPos(pos, direction), seed + direction.ordinal(), verticalSize, colorCount);
+			adjacentEdges[direction.ordinal() - 2] = ColumnRenderEdge.createFromRenderSource(adjacentRenderSource, direction.getOpposite());
+		}
+		return adjacentEdges;
+	}
+	
+	/**
+	 * Creates a single full-height column with many data points, sorted from top to bottom,
+	 * IE what has to be reduced when the vertical quality is lowered
+	 * or when multiple columns are combined. <br>
+	 * Data points never overlap since the reducing list doesn't allow it.
+	 */
+	public static LongArrayList createRenderColumn(long seed, int dataPointCount)
+	{
+		Random random = new Random(seed);
+		LongArrayList column = new LongArrayList(dataPointCount);
+		int height = LEVEL_HEIGHT;
+		for (int i = 0; i < dataPointCount && height > 1; i++)
+		{
+			int depth = Math.max(0, height - 1 - random.nextInt(4));
+			column.add(RenderDataPointUtil.createDataPoint(height, depth, getColor(random.nextInt(COLORS.length)), random.nextInt(16), random.nextInt(16), IBlockStateWrapper.IrisBlockMaterial.STONE));
+			// leave a gap between some data points, IE a cave
+			height = depth - random.nextInt(2);
+		}
+		return column;
+	}
+	
+}
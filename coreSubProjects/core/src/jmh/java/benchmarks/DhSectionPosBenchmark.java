@@ -0,0 +1,205 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.MortonCodeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The section position math used by the quad tree, data providers, and render loading. <br>
+ * Each benchmark goes through {@link DhSectionPosBenchmark#POS_COUNT} positions,
+ * so the reported time is per position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DhSectionPosBenchmark
+{
+	private static final int POS_COUNT = 1024;
+	
+	private final int[] xPositions = new int[POS_COUNT];
+	private final int[] zPositions = new int[POS_COUNT];
+	private final byte[] detailLevels = new byte[POS_COUNT];
+	private final long[] positions = new long[POS_COUNT];
+	private final long[] mortonCodes = new long[POS_COUNT];
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(1234L);
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			this.detailLevels[i] = (byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + random.nextInt(6));
+			this.xPositions[i] = random.nextInt(20_000) - 10_000;
+			this.zPositions[i] = random.nextInt(20_000) - 10_000;
+			this.positions[i] = DhSectionPos.encode(this.detailLevels[i], this.xPositions[i], this.zPositions[i]);
+			this.mortonCodes[i] = MortonCodeUtil.encode(this.xPositions[i], this.zPositions[i]);
+		}
+	}
+	
+	
+	
+	//=====================//
+	// encoding / decoding //
+	//=====================//
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long encode()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			hash += DhSectionPos.encode(this.detailLevels[i], this.xPositions[i], this.zPositions[i]);
+		}
+		return hash;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long decode()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			long pos = this.positions[i];
+			hash += DhSectionPos.getDetailLevel(pos) + DhSectionPos.getX(pos) + DhSectionPos.getZ(pos);
+		}
+		return hash;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long mortonEncode()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			hash += MortonCodeUtil.encode(this.xPositions[i], this.zPositions[i]);
+		}
+		return hash;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long mortonDecode()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			hash += MortonCodeUtil.decodeX(this.mortonCodes[i]) + MortonCodeUtil.decodeZ(this.mortonCodes[i]);
+		}
+		return hash;
+	}
+	
+	
+	
+	//===========//
+	// tree math //
+	//===========//
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long parentAndChildren()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			long pos = this.positions[i];
+			hash += DhSectionPos.getParentPos(pos);
+			hash += DhSectionPos.getChildByIndex(pos, i & 3);
+		}
+		return hash;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long convertToDetailLevel()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			hash += DhSectionPos.convertToDetailLevel(this.positions[i], (byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 8));
+		}
+		return hash;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public int contains()
+	{
+		int count = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			// compare against the next position so both larger and smaller positions are checked
+			if (DhSectionPos.contains(this.positions[i], this.positions[(i + 1) % POS_COUNT]))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long adjacentPos()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			hash += DhSectionPos.getAdjacentPos(this.positions[i], EDhDirection.ADJ_DIRECTIONS[i & 3]);
+		}
+		return hash;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(POS_COUNT)
+	public long centerAndCorner()
+	{
+		long hash = 0;
+		for (int i = 0; i < POS_COUNT; i++)
+		{
+			long pos = this.positions[i];
+			hash += DhSectionPos.getCenterBlockPosX(pos) + DhSectionPos.getMinCornerBlockZ(pos);
+		}
+		return hash;
+	}
+	
+}
@@ -0,0 +1,111 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.OfflineLevelWrapper;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataInputStream;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging and (de)serializing the biome/block state mapping,
+ * which happens for every data source update, save, and load. <br>
+ * Serializing is done uncompressed so only the mapping's cost is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FullDataPointIdMapBenchmark
+{
+	/** most sections have a few dozen entries, heavily modded worlds can have several hundred */
+	@Param({ "24", "256" })
+	public int entryCount;
+	
+	private static final long POS = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -7);
+	
+	private FullDataPointIdMap inputMapping;
+	/** already contains most of the input's entries, IE a parent that was updated before */
+	private FullDataPointIdMap existingMapping;
+	
+	private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+	private byte[] serializedMapping;
+	
+	
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		this.inputMapping = BenchmarkDataGenerator.createMapping(POS, 1L, this.entryCount);
+		this.existingMapping = BenchmarkDataGenerator.createMapping(POS, 1L, this.entryCount);
+		
+		this.serializedMapping = this.serialize();
+	}
+	
+	
+	
+	@Benchmark
+	public int[] mergeIntoEmpty()
+	{
+		FullDataPointIdMap recipient = new FullDataPointIdMap(POS);
+		return recipient.mergeAndReturnRemappedEntityIds(this.inputMapping);
+	}
+	
+	@Benchmark
+	public int[] mergeIntoExisting() { return this.existingMapping.mergeAndReturnRemappedEntityIds(this.inputMapping); }
+	
+	@Benchmark
+	public byte[] serialize() throws Exception
+	{
+		this.byteArrayOutputStream.reset();
+		DhDataOutputStream outputStream = new DhDataOutputStream(this.byteArrayOutputStream, EDhApiDataCompressionMode.UNCOMPRESSED);
+		this.inputMapping.serialize(outputStream);
+		// closing doesn't flush
+		outputStream.flush();
+		return this.byteArrayOutputStream.toByteArray();
+	}
+	
+	@Benchmark
+	public FullDataPointIdMap deserialize() throws Exception
+	{
+		DhDataInputStream inputStream = new DhDataInputStream(new ByteArrayInputStream(this.serializedMapping), EDhApiDataCompressionMode.UNCOMPRESSED);
+		return FullDataPointIdMap.deserialize(inputStream, POS, OfflineLevelWrapper.INSTANCE);
+	}
+	
+}
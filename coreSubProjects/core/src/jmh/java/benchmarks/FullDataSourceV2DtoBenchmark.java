@@ -0,0 +1,87 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.OfflineLevelWrapper;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compressing and decompressing a full data source,
+ * IE what happens every time a section is saved to or loaded from the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FullDataSourceV2DtoBenchmark
+{
+	@Param({ "UNCOMPRESSED", "LZ4", "LZMA2" })
+	public EDhApiDataCompressionMode compressionMode;
+	
+	@Param({ "4", "12" })
+	public int layerCount;
+	
+	private FullDataSourceV2 dataSource;
+	private FullDataSourceV2DTO dto;
+	
+	
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		this.dataSource = BenchmarkDataGenerator.createFullDataSource(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -7), 1234L, this.layerCount);
+		this.dto = FullDataSourceV2DTO.CreateFromDataSource(this.dataSource, this.compressionMode);
+	}
+	
+	
+	
+	@Benchmark
+	public FullDataSourceV2DTO encode() throws Exception
+	{ return FullDataSourceV2DTO.CreateFromDataSource(this.dataSource, this.compressionMode); }
+	
+	@Benchmark
+	public int decode() throws Exception
+	{
+		// pooled the same way the data source providers load data
+		try (FullDataSourceV2 decodedDataSource = this.dto.createPooledDataSource(OfflineLevelWrapper.INSTANCE))
+		{
+			return decodedDataSource.mapping.size();
+		}
+	}
+	
+}
@@ -0,0 +1,102 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FullDataSourceV2#update(FullDataSourceV2)} for both supported input detail levels, <br>
+ * IE applying newly generated chunk data to a section
+ * and propagating a section's data to its parent. <br><br>
+ * 
+ * Run with "-prof gc" to see how much is allocated per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FullDataSourceV2UpdateBenchmark
+{
+	@Param({ "4", "12" })
+	public int layerCount;
+	
+	private static final long POS = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -7);
+	private static final long PARENT_POS = DhSectionPos.encode((byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 1), 1, -4);
+	
+	/** alternated between so every update changes the recipient's data */
+	private FullDataSourceV2[] sameDetailLevelInputs;
+	private int sameDetailLevelInputIndex = 0;
+	private FullDataSourceV2 sameDetailLevelRecipient;
+	
+	private FullDataSourceV2[] children;
+	private FullDataSourceV2 parentRecipient;
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		this.sameDetailLevelInputs = new FullDataSourceV2[] {
+				BenchmarkDataGenerator.createFullDataSource(POS, 1L, this.layerCount),
+				BenchmarkDataGenerator.createFullDataSource(POS, 2L, this.layerCount) };
+		this.sameDetailLevelRecipient = FullDataSourceV2.createEmpty(POS);
+		
+		this.children = BenchmarkDataGenerator.createChildren(PARENT_POS, 3L, this.layerCount);
+		this.parentRecipient = FullDataSourceV2.createEmpty(PARENT_POS);
+	}
+	
+	
+	
+	@Benchmark
+	public boolean updateFromSameDetailLevel()
+	{
+		this.sameDetailLevelInputIndex ^= 1;
+		return this.sameDetailLevelRecipient.update(this.sameDetailLevelInputs[this.sameDetailLevelInputIndex]);
+	}
+	
+	/** goes through {@link FullDataSourceV2#updateFromOneBelowDetailLevel} once for each child */
+	@Benchmark
+	public boolean updateParentFromChildren()
+	{
+		boolean dataChanged = false;
+		for (FullDataSourceV2 child : this.children)
+		{
+			dataChanged |= this.parentRecipient.update(child);
+		}
+		return dataChanged;
+	}
+	
+}
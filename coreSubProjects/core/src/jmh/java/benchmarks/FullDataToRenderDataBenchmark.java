@@ -0,0 +1,140 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataToRenderDataTransformer;
+import com.seibel.distanthorizons.core.level.IDhClientLevel;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a full data source into render data. <br><br>
+ *
+ * The cold cache benchmark resolves every biome/block state color again for each conversion,
+ * IE the first conversion after a resource pack change. <br>
+ * The stub level's color lookup is just a hash, so the difference between the two
+ * is smaller than in game where each lookup has to go through Minecraft's block and biome colors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FullDataToRenderDataBenchmark
+{
+	@Param({ "4", "12" })
+	public int layerCount;
+	
+	private static final long POS = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -7);
+	
+	private FullDataSourceV2 fullDataSource;
+	
+	private FullDataRenderColorCache colorCache;
+	private IDhClientLevel level;
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		this.fullDataSource = BenchmarkDataGenerator.createFullDataSource(POS, 1234L, this.layerCount);
+		
+		IClientLevelWrapper clientLevelWrapper = (IClientLevelWrapper) Proxy.newProxyInstance(IClientLevelWrapper.class.getClassLoader(), new Class[]{ IClientLevelWrapper.class },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "isBaseColorPositionDependent":
+							return false;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return null;
+					}
+				});
+		
+		this.colorCache = new FullDataRenderColorCache();
+		this.level = (IDhClientLevel) Proxy.newProxyInstance(IDhClientLevel.class.getClassLoader(), new Class[]{ IDhClientLevel.class },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "computeBaseColor":
+							return BenchmarkDataGenerator.getColor(((IBlockStateWrapper) args[2]).getSerialString().hashCode() & Integer.MAX_VALUE);
+						case "getRenderColorCache":
+							return this.colorCache;
+						case "getClientLevelWrapper":
+						case "getLevelWrapper":
+							return clientLevelWrapper;
+						case "getMinY":
+							return BenchmarkDataGenerator.LEVEL_MIN_Y;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return null;
+					}
+				});
+	}
+	
+	
+	
+	@Benchmark
+	public long warmColorCache() throws Exception { return this.transform(); }
+	
+	@Benchmark
+	public long coldColorCache() throws Exception
+	{
+		this.colorCache.clear();
+		return this.transform();
+	}
+	
+	private long transform() throws Exception
+	{
+		// returned to the pool so each conversion doesn't allocate a new render source
+		try (ColumnRenderSource renderSource = FullDataToRenderDataTransformer.transformFullDataToRenderSource(this.fullDataSource, this.level))
+		{
+			return renderSource.getVerticalDataPointView(0, 0).get(0);
+		}
+	}
+	
+}
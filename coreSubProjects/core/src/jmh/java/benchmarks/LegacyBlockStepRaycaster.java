@@ -0,0 +1,196 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.api.objects.data.DhApiRaycastResult;
+import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.HierarchicalLodRaycaster;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.RayCastUtil;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3f;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3i;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.ArrayList;
+import java.util.function.LongFunction;
+
+/**
+ * The raycast that DhApiTerrainDataRepo used before {@link HierarchicalLodRaycaster},
+ * kept here so the two can be compared. <br><br>
+ *
+ * Steps through the world one block at a time,
+ * checking the full detail column data in a 3x3 area around each step. <br>
+ * The original got each column's data through the data provider (IE the database)
+ * and this version uses already loaded data sources instead,
+ * so the in-game difference is larger than what the benchmark shows.
+ */
+public class LegacyBlockStepRaycaster
+{
+	private final LongFunction<FullDataSourceV2> getDataSourceFunc;
+	private final int levelMinHeight;
+	
+	
+	
+	public LegacyBlockStepRaycaster(LongFunction<FullDataSourceV2> getDataSourceFunc, int levelMinHeight)
+	{
+		this.getDataSourceFunc = getDataSourceFunc;
+		this.levelMinHeight = levelMinHeight;
+	}
+	
+	
+	
+	public DhApiRaycastResult raycast(Vec3d rayOrigin, Vec3f rayDirection, int maxRayBlockLength, int minBlockHeight, int maxBlockHeight)
+	{
+		Vec3f direction = new Vec3f(rayDirection.x, rayDirection.y, rayDirection.z);
+		direction.normalize();
+		
+		
+		// walk through the grid //
+		
+		int currentLength = 0;
+		
+		// the exact position of this step
+		Vec3d exactPos = new Vec3d(rayOrigin.x, rayOrigin.y, rayOrigin.z);
+		// the block position for this step
+		Vec3i blockPos = new Vec3i((int) Math.round(rayOrigin.x), (int) Math.round(rayOrigin.y), (int) Math.round(rayOrigin.z));
+		
+		DhApiRaycastResult closestFoundDataPoint = null;
+		
+		while (blockPos.y >= minBlockHeight && blockPos.y < maxBlockHeight
+				&& currentLength <= maxRayBlockLength)
+		{
+			// get the LOD columns around this position
+			ArrayList<Vec3i> columnPositions = getIntersectingColumnsAtPosition(blockPos, direction);
+			for (Vec3i columnPos : columnPositions)
+			{
+				// is there a LOD at this position?
+				for (DhApiTerrainDataPoint dataPoint : this.getColumnDataAtBlockPos(columnPos.x, columnPos.z))
+				{
+					// is this LOD air?
+					if (dataPoint.blockStateWrapper != null && !dataPoint.blockStateWrapper.isAir())
+					{
+						// does this LOD contain the given Y position?
+						Vec3i dataPointPos = new Vec3i(columnPos.x, dataPoint.bottomYBlockPos, columnPos.z);
+						if (exactPos.y >= dataPoint.bottomYBlockPos && exactPos.y <= dataPoint.topYBlockPos)
+						{
+							if (closestFoundDataPoint == null)
+							{
+								closestFoundDataPoint = new DhApiRaycastResult(dataPoint, dataPointPos);
+							}
+							else
+							{
+								// use the LOD closest to the ray's origin
+								double previousDistanceSquared = Math.pow(rayOrigin.x - closestFoundDataPoint.pos.x, 2) + Math.pow(rayOrigin.y - closestFoundDataPoint.pos.y, 2) + Math.pow(rayOrigin.z - closestFoundDataPoint.pos.z, 2);
+								double newDistanceSquared = Math.pow(rayOrigin.x - dataPointPos.x, 2) + Math.pow(rayOrigin.y - dataPointPos.y, 2) + Math.pow(rayOrigin.z - dataPointPos.z, 2);
+								
+								if (previousDistanceSquared > newDistanceSquared)
+								{
+									closestFoundDataPoint = new DhApiRaycastResult(dataPoint, dataPointPos);
+								}
+							}
+						}
+					}
+				}
+			}
+			
+			if (closestFoundDataPoint != null)
+			{
+				return closestFoundDataPoint;
+			}
+			
+			
+			
+			// take the next step in the ray //
+			exactPos.x += direction.x;
+			exactPos.y += direction.y;
+			exactPos.z += direction.z;
+			
+			blockPos.x = (int) Math.round(exactPos.x);
+			blockPos.y = (int) Math.round(exactPos.y);
+			blockPos.z = (int) Math.round(exactPos.z);
+			
+			// calculate the taxiCab Distance
+			currentLength = (int) (Math.abs(rayOrigin.x - exactPos.x) + Math.abs(rayOrigin.y - exactPos.y) + Math.abs(rayOrigin.z - exactPos.z));
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * checks the surrounding 3x3 block columns and returns those that intersect with the ray. <br><br>
+	 *
+	 * Used to make sure the raycast step doesn't accidentally walk over any adjacent data.
+	 */
+	private static ArrayList<Vec3i> getIntersectingColumnsAtPosition(Vec3i rayEndingPos, Vec3f rayDirection)
+	{
+		ArrayList<Vec3i> returnList = new ArrayList<>(9);
+		
+		for (int x = -1; x <= 1; x++)
+		{
+			for (int z = -1; z <= 1; z++)
+			{
+				Vec3i pos = new Vec3i(rayEndingPos.x + x, rayEndingPos.y, rayEndingPos.z + z);
+				
+				// check if this column is intersected by the ray
+				if (RayCastUtil.rayIntersectsSquare(rayEndingPos.x, rayEndingPos.z, rayDirection.x, rayDirection.z, pos.x, pos.z, 1))
+				{
+					returnList.add(pos);
+				}
+			}
+		}
+		
+		return returnList;
+	}
+	
+	/** creates the API objects for a single column the same way the original did */
+	private DhApiTerrainDataPoint[] getColumnDataAtBlockPos(int blockX, int blockZ)
+	{
+		long sectionPos = DhSectionPos.encodeBlockPos(blockX, blockZ);
+		FullDataSourceV2 dataSource = this.getDataSourceFunc.apply(sectionPos);
+		if (dataSource == null)
+		{
+			return new DhApiTerrainDataPoint[0];
+		}
+		
+		LongArrayList dataColumn = dataSource.get(Math.floorMod(blockX, FullDataSourceV2.WIDTH), Math.floorMod(blockZ, FullDataSourceV2.WIDTH));
+		if (dataColumn == null)
+		{
+			return new DhApiTerrainDataPoint[0];
+		}
+		
+		DhApiTerrainDataPoint[] dataPoints = new DhApiTerrainDataPoint[dataColumn.size()];
+		for (int i = 0; i < dataColumn.size(); i++)
+		{
+			long dataPoint = dataColumn.getLong(i);
+			int id = FullDataPointUtil.getId(dataPoint);
+			int bottomY = FullDataPointUtil.getBottomY(dataPoint) + this.levelMinHeight;
+			dataPoints[i] = new DhApiTerrainDataPoint(LodUtil.BLOCK_DETAIL_LEVEL,
+					FullDataPointUtil.getBlockLight(dataPoint), FullDataPointUtil.getSkyLight(dataPoint),
+					bottomY + FullDataPointUtil.getHeight(dataPoint), bottomY,
+					dataSource.mapping.getBlockStateWrapper(id), dataSource.mapping.getBiomeWrapper(id));
+		}
+		return dataPoints;
+	}
+	
+}
@@ -0,0 +1,215 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.BufferMergeDirectionEnum;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.BufferQuadList;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBufferBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.VertexStagingBufferPool;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and greedy merging the quads for a single render section. <br>
+ * Fewer colors means more quads can be merged together. <br><br>
+ * 
+ * Run with "-prof gc" to compare the allocation rate of the vertex buffer benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LodQuadBuilderBenchmark
+{
+	@Param({ "2", "8" })
+	public int colorCount;
+	
+	@Param({ "4" })
+	public int verticalSize;
+	
+	private static final long POS = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -7);
+	/** roughly how many columns change when a single chunk is updated */
+	private static final int CHANGED_COLUMN_COUNT = 16;
+	
+	private ColumnRenderSource renderSource;
+	private ColumnRenderEdge[] adjacentEdges;
+	
+	/** built once with column tracking so it can be merged or used for incremental builds */
+	private LodQuadBuilder unmergedQuads;
+	private BitSet columnsToRebuild;
+	
+	private BufferQuadList upQuadList;
+	
+	/** merged, IE ready to be uploaded */
+	private LodQuadBuilder mergedQuads;
+	private final VertexStagingBufferPool stagingBufferPool = new VertexStagingBufferPool(ColumnRenderBuffer.FULL_SIZED_BUFFER, () -> 1);
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		this.renderSource = BenchmarkDataGenerator.createRenderSource(POS, 1234L, this.verticalSize, this.colorCount);
+		this.adjacentEdges = BenchmarkDataGenerator.createAdjacentEdges(POS, 1234L, this.verticalSize, this.colorCount);
+		
+		this.unmergedQuads = new LodQuadBuilder(false, (short) 0, true, null, true);
+		ColumnRenderBufferBuilder.makeLodRenderData(this.unmergedQuads, this.renderSource, this.adjacentEdges, null, null);
+		
+		// a chunk's worth of columns
+		BitSet changedColumns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		for (int x = 0; x < 4; x++)
+		{
+			for (int z = 0; z < CHANGED_COLUMN_COUNT / 4; z++)
+			{
+				changedColumns.set(ChangedColumnUtil.getIndex(20 + x, 20 + z));
+			}
+		}
+		this.columnsToRebuild = ChangedColumnUtil.getColumnsToRebuild(changedColumns);
+		
+		
+		this.mergedQuads = this.unmergedQuads.createUnmergedCopy();
+		this.mergedQuads.mergeQuads();
+		
+		
+		// a single flat-ish face list, IE the tops of a section's columns
+		Random random = new Random(1234L);
+		this.upQuadList = new BufferQuadList(EDhDirection.UP, BufferQuadList.NORMAL_MAX_QUAD_WIDTH, false);
+		for (short x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (short z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				short y = (short) (64 + random.nextInt(3));
+				// leave all merging to the merge step
+				this.upQuadList.startNewPremergeGroup();
+				this.upQuadList.add(x, y, z, (short) 1, (short) 1, BenchmarkDataGenerator.getColor(random.nextInt(this.colorCount)),
+						IBlockStateWrapper.IrisBlockMaterial.STONE, (byte) 15, (byte) 0);
+			}
+		}
+	}
+	
+	
+	
+	/** the baseline for {@link LodQuadBuilderBenchmark#mergeQuads()} */
+	@Benchmark
+	public LodQuadBuilder copyQuads() { return this.unmergedQuads.createUnmergedCopy(); }
+	
+	/** includes copying the unmerged quads, see {@link LodQuadBuilderBenchmark#copyQuads()} */
+	@Benchmark
+	public LodQuadBuilder mergeQuads()
+	{
+		LodQuadBuilder quadBuilder = this.unmergedQuads.createUnmergedCopy();
+		quadBuilder.mergeQuads();
+		return quadBuilder;
+	}
+	
+	@Benchmark
+	public BufferQuadList mergeUpQuadList()
+	{
+		BufferQuadList quadList = this.upQuadList.copy();
+		quadList.mergeQuads(BufferMergeDirectionEnum.EastWest);
+		quadList.mergeQuads(BufferMergeDirectionEnum.NorthSouthOrUpDown);
+		return quadList;
+	}
+	
+	/** building every column from scratch then merging them */
+	@Benchmark
+	public LodQuadBuilder fullBuild()
+	{
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null);
+		ColumnRenderBufferBuilder.makeLodRenderData(quadBuilder, this.renderSource, this.adjacentEdges, null, null);
+		quadBuilder.finalizeData();
+		return quadBuilder;
+	}
+	
+	/** only rebuilding the changed columns, IE after a single chunk was updated */
+	@Benchmark
+	public LodQuadBuilder incrementalBuild()
+	{
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null, true);
+		ColumnRenderBufferBuilder.makeLodRenderData(quadBuilder, this.renderSource, this.adjacentEdges, this.unmergedQuads, this.columnsToRebuild);
+		quadBuilder.finalizeData();
+		return quadBuilder;
+	}
+	
+	/** the baseline for {@link LodQuadBuilderBenchmark#fillPooledVertexBuffers()}, a new staging buffer is allocated for each upload */
+	@Benchmark
+	public long fillAllocatedVertexBuffers()
+	{
+		return sumBuffers(this.mergedQuads.makeOpaqueVertexBuffers())
+				+ sumBuffers(this.mergedQuads.makeTransparentVertexBuffers());
+	}
+	
+	/** how vertex data is written before being uploaded to the GPU */
+	@Benchmark
+	public long fillPooledVertexBuffers()
+	{
+		ByteBuffer stagingBuffer = this.stagingBufferPool.getPooledBuffer();
+		try
+		{
+			return sumBuffers(this.mergedQuads.makeOpaqueVertexBuffers(stagingBuffer))
+					+ sumBuffers(this.mergedQuads.makeTransparentVertexBuffers(stagingBuffer));
+		}
+		finally
+		{
+			this.stagingBufferPool.returnPooledBuffer(stagingBuffer);
+		}
+	}
+	/** consumes each buffer so the writes can't be skipped */
+	private static long sumBuffers(Iterator<ByteBuffer> bufferIterator)
+	{
+		long sum = 0;
+		while (bufferIterator.hasNext())
+		{
+			ByteBuffer buffer = bufferIterator.next();
+			sum += buffer.remaining();
+			if (buffer.hasRemaining())
+			{
+				sum += buffer.get(buffer.limit() - 1);
+			}
+		}
+		return sum;
+	}
+	
+}
@@ -0,0 +1,109 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.level.IDhClientLevel;
+import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
+import com.seibel.distanthorizons.core.render.LodQuadTree;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single {@link LodQuadTree#tick} with a 256 chunk render distance. <br>
+ * STILL: the player isn't moving, IE standing around or AFK <br>
+ * FLYING: the player moves 2 blocks every tick, roughly creative mode sprint flying <br><br>
+ *
+ * There's no GL context so render sections never start loading,
+ * only walking through the tree is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LodQuadTreeTickBenchmark
+{
+	@Param({ "STILL", "FLYING" })
+	public String movement;
+	
+	private static final int RENDER_DISTANCE_IN_CHUNKS = 256;
+	private static final int FLYING_BLOCKS_PER_TICK = 2;
+	
+	private LodQuadTree quadTree;
+	private int playerBlockX = 0;
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		IDhClientLevel level = (IDhClientLevel) Proxy.newProxyInstance(IDhClientLevel.class.getClassLoader(), new Class[]{ IDhClientLevel.class },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "getMinY":
+							return BenchmarkDataGenerator.LEVEL_MIN_Y;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return null;
+					}
+				});
+		
+		this.quadTree = new LodQuadTree(level, RENDER_DISTANCE_IN_CHUNKS * LodUtil.CHUNK_WIDTH * 2, 0, 0, null);
+		
+		// populate the tree so node creation isn't included in the results
+		this.quadTree.tick(new DhBlockPos2D(0, 0));
+	}
+	
+	@TearDown
+	public void tearDown() { this.quadTree.close(); }
+	
+	
+	
+	@Benchmark
+	public void tick()
+	{
+		if (this.movement.equals("FLYING"))
+		{
+			this.playerBlockX += FLYING_BLOCKS_PER_TICK;
+		}
+		this.quadTree.tick(new DhBlockPos2D(this.playerBlockX, 0));
+	}
+	
+}
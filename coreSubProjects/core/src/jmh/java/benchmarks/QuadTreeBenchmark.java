@@ -0,0 +1,233 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.objects.SortedArraySet;
+import com.seibel.distanthorizons.core.util.objects.quadTree.NearToFarValueSorter;
+import com.seibel.distanthorizons.core.util.objects.quadTree.QuadNode;
+import com.seibel.distanthorizons.core.util.objects.quadTree.QuadTree;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling, iterating and moving a {@link QuadTree} 
+ * with a 512 chunk render distance. <br>
+ * Sections are split the same way as the LOD tree, 
+ * IE sections get smaller the closer they are to the center.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuadTreeBenchmark
+{
+	private static final int DIAMETER_IN_BLOCKS = 512 * 16 * 2;
+	private static final byte LEAF_DETAIL_LEVEL = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+	
+	/** a filled tree that isn't modified */
+	private QuadTree<Long> filledTree;
+	/** a filled tree that is moved by each recenter */
+	private QuadTree<Long> movingTree;
+	/** a filled tree that moves back and forth between two sections */
+	private QuadTree<Long> sortingTree;
+	private NearToFarValueSorter<Long> sorter;
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		this.filledTree = this.insert();
+		this.movingTree = this.insert();
+		
+		this.sortingTree = this.insert();
+		this.sorter = new NearToFarValueSorter<>(Long::longValue, Long[]::new);
+		this.sorter.update(this.sortingTree);
+	}
+	
+	
+	
+	//========//
+	// insert //
+	//========//
+	
+	@Benchmark
+	public QuadTree<Long> insert()
+	{
+		QuadTree<Long> tree = new QuadTree<>(DIAMETER_IN_BLOCKS, DhBlockPos2D.ZERO, LEAF_DETAIL_LEVEL);
+		fillRoots(tree);
+		return tree;
+	}
+	private static void fillRoots(QuadTree<Long> tree)
+	{
+		LongIterator rootPosIterator = tree.rootNodePosIterator();
+		while (rootPosIterator.hasNext())
+		{
+			long rootPos = rootPosIterator.nextLong();
+			if (tree.getValue(rootPos) == null)
+			{
+				fill(tree, rootPos);
+			}
+		}
+	}
+	private static void fill(QuadTree<Long> tree, long pos)
+	{
+		if (!tree.isSectionPosInBounds(pos))
+		{
+			return;
+		}
+		
+		tree.setValue(pos, pos);
+		
+		// split sections that are close to the center
+		DhBlockPos2D center = tree.getCenterBlockPos();
+		double distance = center.dist(DhSectionPos.getCenterBlockPosX(pos), DhSectionPos.getCenterBlockPosZ(pos));
+		if (DhSectionPos.getDetailLevel(pos) > LEAF_DETAIL_LEVEL
+			&& distance < DhSectionPos.getBlockWidth(pos) * 2)
+		{
+			for (int i = 0; i < 4; i++)
+			{
+				fill(tree, DhSectionPos.getChildByIndex(pos, i));
+			}
+		}
+	}
+	
+	
+	
+	//===========//
+	// iteration //
+	//===========//
+	
+	@Benchmark
+	public long leafNodeIterator()
+	{
+		long sum = 0;
+		Iterator<QuadNode<Long>> iterator = this.filledTree.leafNodeIterator();
+		while (iterator.hasNext())
+		{
+			sum += iterator.next().sectionPos;
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	public long forEachLeaf()
+	{
+		long[] sum = new long[1];
+		this.filledTree.forEachLeaf((pos) -> sum[0] += pos);
+		return sum[0];
+	}
+	
+	@Benchmark
+	public long nodeIterator()
+	{
+		long sum = 0;
+		Iterator<QuadNode<Long>> iterator = this.filledTree.nodeIterator();
+		while (iterator.hasNext())
+		{
+			Long value = iterator.next().getValue();
+			if (value != null)
+			{
+				sum += value;
+			}
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	public long forEachValue()
+	{
+		long[] sum = new long[1];
+		this.filledTree.forEachValue((value) -> sum[0] += value);
+		return sum[0];
+	}
+	
+	
+	
+	//==========//
+	// recenter //
+	//==========//
+	
+	/** moves the tree one root width, which removes a row of roots, then fills in the new roots */
+	@Benchmark
+	public QuadTree<Long> recenter()
+	{
+		DhBlockPos2D center = this.movingTree.getCenterBlockPos();
+		this.movingTree.setCenterBlockPos(new DhBlockPos2D(center.x + DhSectionPos.getBlockWidth(DhSectionPos.encode(this.movingTree.treeMinDetailLevel, 0, 0)), center.z));
+		fillRoots(this.movingTree);
+		return this.movingTree;
+	}
+	
+	
+	
+	//=========//
+	// sorting //
+	//=========//
+	
+	/** how the render list used to be sorted every frame */
+	@Benchmark
+	public int sortedArraySetPerFrame()
+	{
+		DhBlockPos2D center = this.filledTree.getCenterBlockPos();
+		SortedArraySet<Long> nearToFarSet = new SortedArraySet<>((a, b) -> DhSectionPos.getManhattanBlockDistance(a, center) - DhSectionPos.getManhattanBlockDistance(b, center));
+		this.filledTree.forEachValue(nearToFarSet::add);
+		return nearToFarSet.size();
+	}
+	
+	/** what the render thread does each frame now that the order comes from the update thread */
+	@Benchmark
+	public long nearToFarSnapshotPerFrame()
+	{
+		long sum = 0;
+		for (Long value : this.sorter.getNearToFarSnapshot())
+		{
+			sum += value;
+		}
+		return sum;
+	}
+	
+	/** the update thread's re-sort after the player walks into the next section */
+	@Benchmark
+	public boolean nearToFarSortAfterMove()
+	{
+		DhBlockPos2D center = this.sortingTree.getCenterBlockPos();
+		int sectionWidth = DhSectionPos.getBlockWidth(DhSectionPos.encode(LEAF_DETAIL_LEVEL, 0, 0));
+		this.sortingTree.setCenterBlockPos(new DhBlockPos2D((center.x == 0) ? sectionWidth : 0, center.z));
+		return this.sorter.update(this.sortingTree);
+	}
+	
+}
@@ -0,0 +1,215 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.api.objects.data.DhApiRaycastResult;
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.HierarchicalLodRaycaster;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3f;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HierarchicalLodRaycaster} compared to the block by block {@link LegacyBlockStepRaycaster}. <br>
+ * Both use the same already generated terrain, so only the raycasting itself is measured.
+ * The reported time is per ray. <br><br>
+ *
+ * Since the data is already in memory the block stepper can be faster for short rays,
+ * in game it had to get every column it checked through the data provider
+ * while the hierarchical raycaster only loads full detail data close to the terrain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RaycastBenchmark
+{
+	/**
+	 * SHORT: rays angled down that hit the terrain after a short distance <br>
+	 * LONG: level rays that pass over the terrain without hitting anything, IE looking at the horizon
+	 */
+	@Param({ "SHORT", "LONG" })
+	public String rayType;
+	
+	private static final int RAY_COUNT = 64;
+	private static final int MAX_RAY_LENGTH = 1000;
+	
+	private static final int LEVEL_MAX_HEIGHT = BenchmarkDataGenerator.LEVEL_MIN_Y + BenchmarkDataGenerator.LEVEL_HEIGHT;
+	/** terrain height changes every this many blocks */
+	private static final int TILE_WIDTH = 8;
+	
+	private final Long2ObjectOpenHashMap<FullDataSourceV2> dataSourceByPos = new Long2ObjectOpenHashMap<>();
+	
+	private final Vec3d[] rayOrigins = new Vec3d[RAY_COUNT];
+	private final Vec3f[] rayDirections = new Vec3f[RAY_COUNT];
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		// rays starting a bit above bumpy terrain between Y 64 and 95
+		boolean longRays = this.rayType.equals("LONG");
+		Random random = new Random(1234L);
+		for (int i = 0; i < RAY_COUNT; i++)
+		{
+			this.rayOrigins[i] = new Vec3d(random.nextInt(2000) - 1000 + random.nextDouble(), 100 + random.nextInt(40), random.nextInt(2000) - 1000 + random.nextDouble());
+			float directionY = longRays ? 0 : -(0.05f + random.nextFloat() * 0.2f);
+			this.rayDirections[i] = new Vec3f(random.nextFloat() * 2 - 1, directionY, random.nextFloat() * 2 - 1);
+		}
+		
+		// generate the terrain ahead of time so it isn't included in the results
+		this.hierarchical();
+		this.legacyBlockStep();
+	}
+	
+	
+	
+	@Benchmark
+	@OperationsPerInvocation(RAY_COUNT)
+	public int hierarchical()
+	{
+		int hitCount = 0;
+		for (int i = 0; i < RAY_COUNT; i++)
+		{
+			// the API creates a new raycaster for each request
+			HierarchicalLodRaycaster raycaster = new HierarchicalLodRaycaster(this::getDataSource, this::getTimestamp, BenchmarkDataGenerator.LEVEL_MIN_Y);
+			DhApiRaycastResult result = raycaster.raycast(this.rayOrigins[i], this.rayDirections[i], MAX_RAY_LENGTH, BenchmarkDataGenerator.LEVEL_MIN_Y, LEVEL_MAX_HEIGHT);
+			if (result != null)
+			{
+				hitCount++;
+			}
+		}
+		return hitCount;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(RAY_COUNT)
+	public int legacyBlockStep()
+	{
+		int hitCount = 0;
+		for (int i = 0; i < RAY_COUNT; i++)
+		{
+			LegacyBlockStepRaycaster raycaster = new LegacyBlockStepRaycaster(this::getDataSource, BenchmarkDataGenerator.LEVEL_MIN_Y);
+			DhApiRaycastResult result = raycaster.raycast(this.rayOrigins[i], this.rayDirections[i], MAX_RAY_LENGTH, BenchmarkDataGenerator.LEVEL_MIN_Y, LEVEL_MAX_HEIGHT);
+			if (result != null)
+			{
+				hitCount++;
+			}
+		}
+		return hitCount;
+	}
+	
+	
+	
+	//=================//
+	// synthetic world //
+	//=================//
+	
+	/**
+	 * Stone columns from the level's minimum height up to a pseudo-random tile height.
+	 * Lower detail columns use the max height of the tiles they cover, the same as merged LOD data.
+	 */
+	private FullDataSourceV2 getDataSource(long sectionPos)
+	{
+		FullDataSourceV2 dataSource = this.dataSourceByPos.get(sectionPos);
+		if (dataSource == null)
+		{
+			dataSource = createDataSource(sectionPos);
+			this.dataSourceByPos.put(sectionPos, dataSource);
+		}
+		return dataSource;
+	}
+	/** the generated data never changes, so every section has the same timestamp */
+	private Long getTimestamp(long sectionPos) { return this.getDataSource(sectionPos).lastModifiedUnixDateTime; }
+	private static FullDataSourceV2 createDataSource(long sectionPos)
+	{
+		byte detailLevel = (byte) (DhSectionPos.getDetailLevel(sectionPos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+		int columnWidth = 1 << detailLevel;
+		int minBlockX = DhSectionPos.getX(sectionPos) * FullDataSourceV2.WIDTH * columnWidth;
+		int minBlockZ = DhSectionPos.getZ(sectionPos) * FullDataSourceV2.WIDTH * columnWidth;
+		
+		FullDataPointIdMap mapping = new FullDataPointIdMap(sectionPos);
+		int stoneId = mapping.addIfNotPresentAndGetId(BenchmarkDataGenerator.getBiome(0), BenchmarkDataGenerator.getBlock(0));
+		
+		LongArrayList[] dataColumns = new LongArrayList[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH];
+		for (int relX = 0; relX < FullDataSourceV2.WIDTH; relX++)
+		{
+			for (int relZ = 0; relZ < FullDataSourceV2.WIDTH; relZ++)
+			{
+				int maxHeight = getMaxHeight(minBlockX + relX * columnWidth, minBlockZ + relZ * columnWidth, columnWidth);
+				
+				LongArrayList dataColumn = new LongArrayList(1);
+				try
+				{
+					dataColumn.add(FullDataPointUtil.encode(stoneId, maxHeight - BenchmarkDataGenerator.LEVEL_MIN_Y, 0, (byte) 0, (byte) 15));
+				}
+				catch (DataCorruptedException e)
+				{
+					throw new IllegalStateException(e);
+				}
+				dataColumns[FullDataSourceV2.relativePosToIndex(relX, relZ)] = dataColumn;
+			}
+		}
+		
+		return FullDataSourceV2.createWithData(sectionPos, mapping, dataColumns,
+				new byte[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH], new byte[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH]);
+	}
+	private static int getMaxHeight(int minBlockX, int minBlockZ, int blockWidth)
+	{
+		int minTileX = Math.floorDiv(minBlockX, TILE_WIDTH);
+		int minTileZ = Math.floorDiv(minBlockZ, TILE_WIDTH);
+		int maxTileX = Math.floorDiv(minBlockX + blockWidth - 1, TILE_WIDTH);
+		int maxTileZ = Math.floorDiv(minBlockZ + blockWidth - 1, TILE_WIDTH);
+		
+		int maxHeight = Integer.MIN_VALUE;
+		for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+		{
+			for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++)
+			{
+				maxHeight = Math.max(maxHeight, 64 + Math.floorMod(tileX * 73856093 ^ tileZ * 19349663, 32));
+			}
+		}
+		return maxHeight;
+	}
+	
+}
@@ -0,0 +1,93 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import com.seibel.distanthorizons.core.dataObjects.render.columnViews.ColumnArrayView;
+import com.seibel.distanthorizons.core.util.RenderDataPointReducingList;
+import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reducing a column of render data down to a smaller vertical size,
+ * IE what happens to each column when the vertical quality is lowered or columns are combined.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderDataPointReducingListBenchmark
+{
+	@Param({ "16", "64" })
+	public int dataPointCount;
+	
+	/** the output's vertical size, based on the vertical quality config */
+	@Param({ "4", "16" })
+	public int targetVerticalSize;
+	
+	private ColumnArrayView sourceView;
+	private ColumnArrayView outputView;
+	
+	
+	
+	@Setup
+	public void setup()
+	{
+		LongArrayList sourceData = BenchmarkDataGenerator.createRenderColumn(1234L, this.dataPointCount);
+		this.sourceView = new ColumnArrayView(sourceData, sourceData.size(), 0, sourceData.size());
+		
+		LongArrayList outputData = new LongArrayList(new long[this.targetVerticalSize]);
+		this.outputView = new ColumnArrayView(outputData, this.targetVerticalSize, 0, this.targetVerticalSize);
+	}
+	
+	
+	
+	/** only the list's creation and reduction, the list copies the source data so it can't be reused */
+	@Benchmark
+	public RenderDataPointReducingList reduce()
+	{
+		RenderDataPointReducingList list = new RenderDataPointReducingList(this.sourceView);
+		list.reduce(this.targetVerticalSize);
+		return list;
+	}
+	
+	/** the full merge, including writing the result */
+	@Benchmark
+	public ColumnArrayView mergeMultiData()
+	{
+		RenderDataPointUtil.mergeMultiData(this.sourceView, this.outputView);
+		return this.outputView;
+	}
+	
+}
@@ -23,6 +23,7 @@ import com.seibel.distanthorizons.api.interfaces.world.IDhApiLevelWrapper;
 import com.seibel.distanthorizons.api.objects.DhApiResult;
 import com.seibel.distanthorizons.api.objects.data.DhApiRaycastResult;
 import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
+import com.seibel.distanthorizons.api.interfaces.data.IDhApiTerrainDataColumnConsumer;
 import com.seibel.distanthorizons.api.interfaces.data.IDhApiTerrainDataRepo;
 import com.seibel.distanthorizons.api.objects.math.DhApiVec3i;
 import com.seibel.distanthorizons.core.api.internal.SharedApi;
@@ -34,7 +35,7 @@ import com.seibel.distanthorizons.core.pos.DhLodPos;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
-import com.seibel.distanthorizons.core.util.RayCastUtil;
+import com.seibel.distanthorizons.core.util.HierarchicalLodRaycaster;
 import com.seibel.distanthorizons.core.world.AbstractDhWorld;
 import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
@@ -46,12 +47,16 @@ import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
 import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
 import com.seibel.distanthorizons.coreapi.util.math.Vec3f;
 import com.seibel.distanthorizons.coreapi.util.math.Vec3i;
+import com.google.common.annotations.VisibleForTesting;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.LongFunction;
 
 
 /**
@@ -66,6 +71,14 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 	
 	private static final Logger LOGGER = LogManager.getLogger(DhApiTerrainDataRepo.class.getSimpleName());
 	
+	/** 
+	 * How many sections can be loading at once when iterating over an area. <br>
+	 * Large areas can contain thousands of sections, 
+	 * so requesting all of them at once would flood the file handler threads and hold every loaded section in memory.
+	 */
+	@VisibleForTesting
+	public static final int MAX_LOADING_SECTION_COUNT = 16;
+	
 	// debugging values
 	private static volatile boolean debugThreadRunning = false;
 	private static String currentDebugBiomeName = "";
@@ -114,6 +127,12 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 		return getTerrainDataOverAreaForPositionDetailLevel(levelWrapper, new DhLodPos(detailLevel, posX, posZ));
 	}
 	
+	@Override
+	public DhApiResult<Void> forEachTerrainDataColumnAtDetailLevelAndPos(IDhApiLevelWrapper levelWrapper, byte detailLevel, int posX, int posZ, IDhApiTerrainDataColumnConsumer columnConsumer)
+	{
+		return forEachTerrainDataColumnOverArea(levelWrapper, new DhLodPos(detailLevel, posX, posZ), columnConsumer);
+	}
+	
 	
 	// private getters //
 	
@@ -141,33 +160,138 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 	 * will stop and return the in progress data if any errors are encountered.
 	 */
 	private static DhApiResult<DhApiTerrainDataPoint[][][]> getTerrainDataOverAreaForPositionDetailLevel(IDhApiLevelWrapper levelWrapper, DhLodPos requestedAreaPos)
+	{
+		int widthOfAreaInBlocks = BitShiftUtil.powerOfTwo(requestedAreaPos.detailLevel);
+		DhApiTerrainDataPoint[][][] returnArray = new DhApiTerrainDataPoint[widthOfAreaInBlocks][widthOfAreaInBlocks][];
+		
+		DhApiResult<Void> result = forEachTerrainDataColumnOverArea(levelWrapper, requestedAreaPos,
+				(relativeBlockX, relativeBlockZ, columnData) -> 
+				{
+					returnArray[relativeBlockX][relativeBlockZ] = columnData;
+					return true;
+				});
+		return result.success ? DhApiResult.createSuccess(result.message, returnArray) : DhApiResult.createFail(result.message, returnArray);
+	}
+	
+	/**
+	 * Passes each block column represented by the given {@link DhLodPos} to the given consumer. <br><br>
+	 *
+	 * Columns are grouped by the section that contains them so each section
+	 * only has to be read from the database and decompressed once,
+	 * up to {@link DhApiTerrainDataRepo#MAX_LOADING_SECTION_COUNT} sections 
+	 * are requested ahead of the one being read so they can be loaded in parallel. <br><br>
+	 *
+	 * will stop if any errors are encountered, columns passed to the consumer before then are still valid.
+	 */
+	private static DhApiResult<Void> forEachTerrainDataColumnOverArea(IDhApiLevelWrapper levelWrapper, DhLodPos requestedAreaPos, IDhApiTerrainDataColumnConsumer columnConsumer)
+	{
+		DhApiResult<IDhLevel> levelResult = getDhLevel(levelWrapper);
+		if (!levelResult.success)
+		{
+			return DhApiResult.createFail(levelResult.message);
+		}
+		IDhLevel level = levelResult.payload;
+		
+		return forEachTerrainDataColumnOverArea(levelWrapper, level.getFullDataProvider()::getAsync, requestedAreaPos, columnConsumer);
+	}
+	/** 
+	 * @param getDataSourceFunc should return a future that completes with null if the given section's data can't be found. 
+	 *                          Any returned data sources will be closed.
+	 * @see DhApiTerrainDataRepo#forEachTerrainDataColumnOverArea(IDhApiLevelWrapper, DhLodPos, IDhApiTerrainDataColumnConsumer) 
+	 */
+	@VisibleForTesting
+	public static DhApiResult<Void> forEachTerrainDataColumnOverArea(
+			IDhApiLevelWrapper levelWrapper, LongFunction<CompletableFuture<FullDataSourceV2>> getDataSourceFunc, 
+			DhLodPos requestedAreaPos, IDhApiTerrainDataColumnConsumer columnConsumer)
 	{
 		DhLodPos startingBlockPos = requestedAreaPos.getCornerLodPos(LodUtil.BLOCK_DETAIL_LEVEL);
 		int widthOfAreaInBlocks = BitShiftUtil.powerOfTwo(requestedAreaPos.detailLevel);
 		
-		DhApiTerrainDataPoint[][][] returnArray = new DhApiTerrainDataPoint[widthOfAreaInBlocks][widthOfAreaInBlocks][];
-		int dataColumnsReturned = 0;
 		
-		// get each column over the area
-		for (int x = 0; x < widthOfAreaInBlocks; x++)
+		// block columns are stored in the highest detail sections
+		int minSectionX = Math.floorDiv(startingBlockPos.x, FullDataSourceV2.WIDTH);
+		int minSectionZ = Math.floorDiv(startingBlockPos.z, FullDataSourceV2.WIDTH);
+		int maxSectionX = Math.floorDiv(startingBlockPos.x + widthOfAreaInBlocks - 1, FullDataSourceV2.WIDTH);
+		int maxSectionZ = Math.floorDiv(startingBlockPos.z + widthOfAreaInBlocks - 1, FullDataSourceV2.WIDTH);
+		
+		LongArrayList sectionPosList = new LongArrayList();
+		for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++)
+		{
+			for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++)
+			{
+				sectionPosList.add(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, sectionX, sectionZ));
+			}
+		}
+		
+		
+		// only contains the sections that have been requested so far
+		ArrayList<CompletableFuture<FullDataSourceV2>> dataSourceFutures = new ArrayList<>();
+		int dataColumnsReturned = 0;
+		int futureIndex = 0;
+		try
 		{
-			for (int z = 0; z < widthOfAreaInBlocks; z++)
+			for (; futureIndex < sectionPosList.size(); futureIndex++)
 			{
-				DhLodPos blockColumnPos = new DhLodPos(LodUtil.BLOCK_DETAIL_LEVEL, startingBlockPos.x + x, startingBlockPos.z + z);
-				DhApiResult<DhApiTerrainDataPoint[]> result = getTerrainDataColumnArray(levelWrapper, blockColumnPos, null);
-				if (result.success)
+				// keep the next few sections loading while this one is read
+				while (dataSourceFutures.size() < sectionPosList.size()
+						&& dataSourceFutures.size() - futureIndex < MAX_LOADING_SECTION_COUNT)
+				{
+					dataSourceFutures.add(getDataSourceFunc.apply(sectionPosList.getLong(dataSourceFutures.size())));
+				}
+				
+				long sectionPos = sectionPosList.getLong(futureIndex);
+				FullDataSourceV2 dataSource = dataSourceFutures.get(futureIndex).get();
+				if (dataSource == null)
 				{
-					returnArray[x][z] = result.payload;
-					dataColumnsReturned++;
+					return DhApiResult.createFail("Unable to find/generate any data at the " + DhSectionPos.class.getSimpleName() + " [" + DhSectionPos.toString(sectionPos) + "].");
 				}
-				else
+				
+				try
+				{
+					// only the part of this section that overlaps the requested area is needed
+					int sectionMinBlockX = DhSectionPos.getX(sectionPos) * FullDataSourceV2.WIDTH;
+					int sectionMinBlockZ = DhSectionPos.getZ(sectionPos) * FullDataSourceV2.WIDTH;
+					int minBlockX = Math.max(startingBlockPos.x, sectionMinBlockX);
+					int minBlockZ = Math.max(startingBlockPos.z, sectionMinBlockZ);
+					int maxBlockX = Math.min(startingBlockPos.x + widthOfAreaInBlocks, sectionMinBlockX + FullDataSourceV2.WIDTH);
+					int maxBlockZ = Math.min(startingBlockPos.z + widthOfAreaInBlocks, sectionMinBlockZ + FullDataSourceV2.WIDTH);
+					
+					for (int blockX = minBlockX; blockX < maxBlockX; blockX++)
+					{
+						for (int blockZ = minBlockZ; blockZ < maxBlockZ; blockZ++)
+						{
+							DhApiTerrainDataPoint[] columnData = getTerrainDataColumnArrayFromDataSource(levelWrapper, dataSource, LodUtil.BLOCK_DETAIL_LEVEL,
+									blockX - sectionMinBlockX, blockZ - sectionMinBlockZ, null);
+							dataColumnsReturned++;
+							if (!columnConsumer.accept(blockX - startingBlockPos.x, blockZ - startingBlockPos.z, columnData))
+							{
+								return DhApiResult.createSuccess("Stopped by the consumer after [" + dataColumnsReturned + "] columns.", null);
+							}
+						}
+					}
+				}
+				finally
 				{
-					return DhApiResult.createFail(result.message, returnArray);
+					closeDataSource(dataSource);
 				}
 			}
 		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			// shouldn't normally happen, but just in case
+			LOGGER.error("Unexpected exception in forEachTerrainDataColumnOverArea. Error: [" + e.getMessage() + "]", e);
+			return DhApiResult.createFail("Unexpected exception: [" + e.getMessage() + "].");
+		}
+		finally
+		{
+			// if we stopped early the remaining data sources still need to be returned to the pool
+			for (futureIndex++; futureIndex < dataSourceFutures.size(); futureIndex++)
+			{
+				dataSourceFutures.get(futureIndex).thenAccept(DhApiTerrainDataRepo::closeDataSource);
+			}
+		}
 		
-		return dataColumnsReturned != 0 ? DhApiResult.createSuccess("[" + dataColumnsReturned + "] columns returned.", returnArray) : DhApiResult.createSuccess("No data found.", returnArray);
+		return dataColumnsReturned != 0 ? DhApiResult.createSuccess("[" + dataColumnsReturned + "] columns returned.", null) : DhApiResult.createSuccess("No data found.", null);
 	}
 	
 	/**
@@ -179,26 +303,12 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 	 */
 	private static DhApiResult<DhApiTerrainDataPoint[]> getTerrainDataColumnArray(IDhApiLevelWrapper levelWrapper, DhLodPos requestedColumnPos, Integer nullableBlockYPos)
 	{
-		AbstractDhWorld currentWorld = SharedApi.getAbstractDhWorld();
-		if (currentWorld == null)
+		DhApiResult<IDhLevel> levelResult = getDhLevel(levelWrapper);
+		if (!levelResult.success)
 		{
-			return DhApiResult.createFail("Unable to get terrain data before the world has loaded.");
-		}
-		
-		if (!(levelWrapper instanceof ILevelWrapper))
-		{
-			// custom level wrappers aren't supported,
-			// the API user must get a level wrapper from our code somewhere
-			return DhApiResult.createFail("Unsupported [" + IDhApiLevelWrapper.class.getSimpleName() + "] implementation, only the core class [" + IDhLevel.class.getSimpleName() + "] is a valid parameter.");
-		}
-		ILevelWrapper coreLevelWrapper = (ILevelWrapper) levelWrapper;
-		
-		
-		IDhLevel level = currentWorld.getLevel(coreLevelWrapper);
-		if (level == null)
-		{
-			return DhApiResult.createFail("Unable to get terrain data before the world has loaded.");
+			return DhApiResult.createFail(levelResult.message);
 		}
+		IDhLevel level = levelResult.payload;
 		
 		// get the detail levels for this request
 		byte requestedDetailLevel = requestedColumnPos.detailLevel;
@@ -217,66 +327,121 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 			{
 				return DhApiResult.createFail("Unable to find/generate any data at the " + DhSectionPos.class.getSimpleName() + " [" + DhSectionPos.toString(sectionPos) + "].");
 			}
+			
+			try
+			{
+				return DhApiResult.createSuccess(getTerrainDataColumnArrayFromDataSource(levelWrapper, dataSource, requestedDetailLevel, relativePos.x, relativePos.z, nullableBlockYPos));
+			}
+			finally
+			{
+				closeDataSource(dataSource);
+			}
+		}
+		catch (InterruptedException | ExecutionException e)
+		{
+			// shouldn't normally happen, but just in case
+			LOGGER.error("Unexpected exception in getTerrainDataColumnArray. Error: [" + e.getMessage() + "]", e);
+			return DhApiResult.createFail("Unexpected exception: [" + e.getMessage() + "].");
+		}
+	}
+	
+	/**
+	 * @see DhApiTerrainDataRepo#getTerrainDataColumnArray
+	 * @return an empty array if the column has no data, never null
+	 */
+	private static DhApiTerrainDataPoint[] getTerrainDataColumnArrayFromDataSource(
+			IDhApiLevelWrapper levelWrapper, FullDataSourceV2 dataSource, byte requestedDetailLevel, 
+			int relativeX, int relativeZ, Integer nullableBlockYPos)
+	{
+		// attempt to get the LOD data from the data source
+		FullDataPointIdMap mapping = dataSource.mapping;
+		LongArrayList dataColumn = dataSource.get(relativeX, relativeZ);
+		if (dataColumn == null)
+		{
+			// the requested data wasn't present in this column (and/or the column wasn't able to be accessed/generated)
+			return new DhApiTerrainDataPoint[0];
+		}
+		
+		int dataColumnIndexCount = dataColumn.size();
+		DhApiTerrainDataPoint[] returnArray = new DhApiTerrainDataPoint[dataColumnIndexCount];
+		long dataPoint;
+		
+		boolean getSpecificYCoordinate = nullableBlockYPos != null;
+		int levelMinimumHeight = levelWrapper.getMinHeight();
+		
+		
+		// search for a datapoint that contains the block y position
+		for (int i = 0; i < dataColumnIndexCount; i++)
+		{
+			dataPoint = dataColumn.getLong(i);
+			
+			if (!getSpecificYCoordinate)
+			{
+				// if we aren't look for a specific datapoint, add each datapoint to the return array
+				returnArray[i] = generateApiDatapoint(levelWrapper, mapping, requestedDetailLevel, dataPoint);
+			}
 			else
 			{
-				// attempt to get the LOD data from the data source
-				FullDataPointIdMap mapping = dataSource.mapping;
-				LongArrayList dataColumn = dataSource.get(relativePos.x, relativePos.z);
-				if (dataColumn != null)
+				// we are looking for a specific datapoint,
+				// don't look at null ones
+				if (dataPoint != 0)
 				{
-					int dataColumnIndexCount = dataColumn.size();
-					DhApiTerrainDataPoint[] returnArray = new DhApiTerrainDataPoint[dataColumnIndexCount];
-					long dataPoint;
-					
-					boolean getSpecificYCoordinate = nullableBlockYPos != null;
-					int levelMinimumHeight = levelWrapper.getMinHeight();
-					
+					int requestedY = nullableBlockYPos;
+					int bottomY = FullDataPointUtil.getBottomY(dataPoint) + levelMinimumHeight;
+					int height = FullDataPointUtil.getHeight(dataPoint);
+					int topY = bottomY + height;
 					
-					// search for a datapoint that contains the block y position
-					for (int i = 0; i < dataColumnIndexCount; i++)
+					// does this datapoint contain the requested Y position? 
+					if (bottomY <= requestedY && requestedY < topY) // blockPositions start from the bottom of the block, thus "<=" for bottomY, just "<" for topY
 					{
-						dataPoint = dataColumn.getLong(i);
-						
-						if (!getSpecificYCoordinate)
-						{
-							// if we aren't look for a specific datapoint, add each datapoint to the return array
-							returnArray[i] = generateApiDatapoint(levelWrapper, mapping, requestedDetailLevel, dataPoint);
-						}
-						else
-						{
-							// we are looking for a specific datapoint,
-							// don't look at null ones
-							if (dataPoint != 0)
-							{
-								int requestedY = nullableBlockYPos;
-								int bottomY = FullDataPointUtil.getBottomY(dataPoint) + levelMinimumHeight;
-								int height = FullDataPointUtil.getHeight(dataPoint);
-								int topY = bottomY + height;
-								
-								// does this datapoint contain the requested Y position? 
-								if (bottomY <= requestedY && requestedY < topY) // blockPositions start from the bottom of the block, thus "<=" for bottomY, just "<" for topY
-								{
-									// this datapoint contains the requested block position, return it
-									DhApiTerrainDataPoint apiTerrainData = generateApiDatapoint(levelWrapper, mapping, requestedDetailLevel, dataPoint);
-									return DhApiResult.createSuccess(new DhApiTerrainDataPoint[]{apiTerrainData});
-								}
-							}
-						}
+						// this datapoint contains the requested block position, return it
+						DhApiTerrainDataPoint apiTerrainData = generateApiDatapoint(levelWrapper, mapping, requestedDetailLevel, dataPoint);
+						return new DhApiTerrainDataPoint[]{apiTerrainData};
 					}
-					
-					// return all collected data
-					return DhApiResult.createSuccess(returnArray);
 				}
-				
-				// the requested data wasn't present in this column (and/or the column wasn't able to be accessed/generated)
-				return DhApiResult.createSuccess(new DhApiTerrainDataPoint[0]);
 			}
 		}
-		catch (InterruptedException | ExecutionException e)
+		
+		// return all collected data
+		return returnArray;
+	}
+	
+	/** @return the level for the given wrapper or a failed result explaining why it couldn't be found */
+	private static DhApiResult<IDhLevel> getDhLevel(IDhApiLevelWrapper levelWrapper)
+	{
+		AbstractDhWorld currentWorld = SharedApi.getAbstractDhWorld();
+		if (currentWorld == null)
 		{
-			// shouldn't normally happen, but just in case
-			LOGGER.error("Unexpected exception in getTerrainDataColumnArray. Error: [" + e.getMessage() + "]", e);
-			return DhApiResult.createFail("Unexpected exception: [" + e.getMessage() + "].");
+			return DhApiResult.createFail("Unable to get terrain data before the world has loaded.");
+		}
+		
+		if (!(levelWrapper instanceof ILevelWrapper))
+		{
+			// custom level wrappers aren't supported,
+			// the API user must get a level wrapper from our code somewhere
+			return DhApiResult.createFail("Unsupported [" + IDhApiLevelWrapper.class.getSimpleName() + "] implementation, only the core class [" + IDhLevel.class.getSimpleName() + "] is a valid parameter.");
+		}
+		ILevelWrapper coreLevelWrapper = (ILevelWrapper) levelWrapper;
+		
+		
+		IDhLevel level = currentWorld.getLevel(coreLevelWrapper);
+		if (level == null)
+		{
+			return DhApiResult.createFail("Unable to get terrain data before the world has loaded.");
+		}
+		return DhApiResult.createSuccess(level);
+	}
+	
+	/** returns the data source to the pool, API datapoints don't reference the data source so this is safe once they've been created */
+	private static void closeDataSource(FullDataSourceV2 dataSource)
+	{
+		try
+		{
+			dataSource.close();
+		}
+		catch (Exception e)
+		{
+			LOGGER.warn("Unable to close data source [" + DhSectionPos.toString(dataSource.getPos()) + "], error: [" + e.getMessage() + "].", e);
 		}
 	}
 	
@@ -314,123 +479,45 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 	/**
 	 * private since it uses non-API objects <br><br>
 	 *
-	 * Works by walking through the world and attempting to get the LOD <br>
-	 * data present at each step.
+	 * Works by walking through the lower detail LOD data and only
+	 * loading full detail data where the ray gets close to the terrain.
+	 *
+	 * @see HierarchicalLodRaycaster
 	 */
 	private DhApiResult<DhApiRaycastResult> raycastLodData(IDhApiLevelWrapper levelWrapper, Vec3d rayOrigin, Vec3f rayDirection, int maxRayBlockLength)
 	{
-		rayDirection.normalize();
+		DhApiResult<IDhLevel> levelResult = getDhLevel(levelWrapper);
+		if (!levelResult.success)
+		{
+			return DhApiResult.createFail(levelResult.message);
+		}
+		IDhLevel level = levelResult.payload;
 		
 		int minBlockHeight = levelWrapper.getMinHeight();
 		int maxBlockHeight = levelWrapper.getHeight();
 		
-		
-		
-		// walk through the grid //
-		
-		int currentLength = 0;
-		
-		// the exact position of this step
-		Vec3d exactPos = new Vec3d(rayOrigin.x, rayOrigin.y, rayOrigin.z);
-		// the block position for this step
-		Vec3i blockPos = new Vec3i((int) Math.round(rayOrigin.x), (int) Math.round(rayOrigin.y), (int) Math.round(rayOrigin.z));
-		
-		DhApiRaycastResult closetFoundDataPoint = null;
-		
-		
-		while (blockPos.y >= minBlockHeight && blockPos.y < maxBlockHeight
-				&& currentLength <= maxRayBlockLength)
+		try
 		{
-			// get the LOD columns around this position
-			ArrayList<Vec3i> columnPositions = getIntersectingColumnsAtPosition(blockPos, rayDirection);
-			for (Vec3i columnPos : columnPositions)
+			HierarchicalLodRaycaster raycaster = new HierarchicalLodRaycaster((sectionPos) ->
 			{
-				// check each column
-				DhApiResult<DhApiTerrainDataPoint[]> result = this.getColumnDataAtBlockPos(levelWrapper, columnPos.x, columnPos.z);
-				if (!result.success)
+				try
 				{
-					// if there was an error, stop and return it
-					return DhApiResult.createFail(result.message);
+					return level.getFullDataProvider().getAsync(sectionPos).get();
 				}
-				
-				// is there a LOD at this position?
-				for (DhApiTerrainDataPoint dataPoint : result.payload)
+				catch (InterruptedException | ExecutionException e)
 				{
-					// is this LOD air?
-					if (dataPoint.blockStateWrapper != null && !dataPoint.blockStateWrapper.isAir())
-					{
-						// does this LOD contain the given Y position?
-						Vec3i dataPointPos = new Vec3i(columnPos.x, dataPoint.bottomYBlockPos, columnPos.z);
-						if (exactPos.y >= dataPoint.bottomYBlockPos && exactPos.y <= dataPoint.topYBlockPos)
-						{
-							if (closetFoundDataPoint == null)
-							{
-								closetFoundDataPoint = new DhApiRaycastResult(dataPoint, dataPointPos);
-							}
-							else
-							{
-								// use the LOD closest to the ray's origin
-								double previousDistanceSquared = Math.pow(rayOrigin.x - closetFoundDataPoint.pos.x, 2) + Math.pow(rayOrigin.y - closetFoundDataPoint.pos.y, 2) + Math.pow(rayOrigin.z - closetFoundDataPoint.pos.z, 2);
-								double newDistanceSquared = Math.pow(rayOrigin.x - dataPointPos.x, 2) + Math.pow(rayOrigin.y - dataPointPos.y, 2) + Math.pow(rayOrigin.z - dataPointPos.z, 2);
-								
-								if (previousDistanceSquared > newDistanceSquared)
-								{
-									closetFoundDataPoint = new DhApiRaycastResult(dataPoint, dataPointPos);
-								}
-							}
-						}
-					}
+					throw new CompletionException(e);
 				}
-			}
+			}, level.getFullDataProvider()::getTimestampForPos, minBlockHeight);
 			
-			if (closetFoundDataPoint != null)
-			{
-				return DhApiResult.createSuccess(closetFoundDataPoint);
-			}
-			
-			
-			
-			// take the next step in the ray //
-			
-			exactPos.x += rayDirection.x;
-			exactPos.y += rayDirection.y;
-			exactPos.z += rayDirection.z;
-			
-			blockPos.x = (int) Math.round(exactPos.x);
-			blockPos.y = (int) Math.round(exactPos.y);
-			blockPos.z = (int) Math.round(exactPos.z);
-			
-			// calculate the taxiCab Distance
-			currentLength = (int) (Math.abs(rayOrigin.x - exactPos.x) + Math.abs(rayOrigin.y - exactPos.y) + Math.abs(rayOrigin.z - exactPos.z));
+			return DhApiResult.createSuccess(raycaster.raycast(rayOrigin, rayDirection, maxRayBlockLength, minBlockHeight, maxBlockHeight));
 		}
-		
-		return DhApiResult.createSuccess(null);
-	}
-	
-	/**
-	 * checks the surrounding 3x3 block columns and returns those that intersect with the ray. <br><br>
-	 *
-	 * Used to make sure the raycast step doesn't accidentally walk over any adjacent data.
-	 */
-	private static ArrayList<Vec3i> getIntersectingColumnsAtPosition(Vec3i rayEndingPos, Vec3f rayDirection)
-	{
-		ArrayList<Vec3i> returnList = new ArrayList<Vec3i>(9);
-		
-		for (int x = -1; x <= 1; x++)
+		catch (CompletionException e)
 		{
-			for (int z = -1; z <= 1; z++)
-			{
-				Vec3i pos = new Vec3i(rayEndingPos.x + x, rayEndingPos.y, rayEndingPos.z + z);
-				
-				// check if this column is intersected by the ray
-				if (RayCastUtil.rayIntersectsSquare(rayEndingPos.x, rayEndingPos.z, rayDirection.x, rayDirection.z, pos.x, pos.z, 1))
-				{
-					returnList.add(pos);
-				}
-			}
+			// shouldn't normally happen, but just in case
+			LOGGER.error("Unexpected exception in raycastLodData. Error: [" + e.getMessage() + "]", e);
+			return DhApiResult.createFail("Unexpected exception: [" + e.getMessage() + "].");
 		}
-		
-		return returnList;
 	}
 	
 	
@@ -22,6 +22,7 @@ package com.seibel.distanthorizons.core.api.internal;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiLevelLoadEvent;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiLevelUnloadEvent;
 import com.seibel.distanthorizons.core.network.plugin.PluginChannelMessage;
+import com.seibel.distanthorizons.core.util.threading.ServerTickThrottle;
 import com.seibel.distanthorizons.core.wrapperInterfaces.misc.IServerPlayerWrapper;
 import com.seibel.distanthorizons.coreapi.DependencyInjection.ApiEventInjector;
 import com.seibel.distanthorizons.core.world.AbstractDhWorld;
@@ -59,6 +60,9 @@ public class ServerApi
 	// tick events //
 	//=============//
 	
+	/** used to measure how long each server tick takes */
+	public void serverTickStartEvent() { ServerTickThrottle.INSTANCE.onServerTickStart(); }
+	
 	public void serverTickEvent()
 	{
 		try
@@ -75,6 +79,8 @@ public class ServerApi
 			// try catch is necessary to prevent crashing the internal server when an exception is thrown
 			LOGGER.error("ServerTickEvent error: " + e.getMessage(), e);
 		}
+		
+		ServerTickThrottle.INSTANCE.onServerTickEnd();
 	}
 	
 	
@@ -100,6 +106,8 @@ public class ServerApi
 			dhWorld.close();
 			SharedApi.setDhWorld(null);
 		}
+		
+		ServerTickThrottle.INSTANCE.reset();
 	}
 	
 	
@@ -21,6 +21,8 @@ package com.seibel.distanthorizons.core.api.internal;
 
 import com.seibel.distanthorizons.core.Initializer;
 import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.generation.DhLightingEngine;
 import com.seibel.distanthorizons.core.level.IDhLevel;
@@ -33,6 +35,7 @@ import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.TimerUtil;
 import com.seibel.distanthorizons.core.util.objects.Pair;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import com.seibel.distanthorizons.core.util.threading.WorkerThreadScheduler;
 import com.seibel.distanthorizons.core.world.*;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftRenderWrapper;
@@ -47,7 +50,6 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 
 /** Contains code and variables used by both {@link ClientApi} and {@link ServerApi} */
 public class SharedApi
@@ -69,6 +71,7 @@ public class SharedApi
 	private static long lastOverloadedLogMessageMsTime = 0;
 	
 	public F3Screen.DynamicMessage f3Message;
+	public F3Screen.MultiDynamicMessage dataSourcePoolF3Message;
 	
 	
 	
@@ -83,6 +86,10 @@ public class SharedApi
 			int maxUpdateCount = MAX_UPDATING_CHUNK_COUNT_PER_THREAD * Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads.get();
 			return LodUtil.formatLog("Queued chunk updates: " + UPDATING_CHUNK_POS_SET.size() + " / " + maxUpdateCount);
 		});
+		this.dataSourcePoolF3Message = new F3Screen.MultiDynamicMessage(
+			() -> LodUtil.formatLog(FullDataSourceV2.DATA_SOURCE_POOL.getDebugString("Full data")),
+			() -> LodUtil.formatLog(ColumnRenderSource.DATA_SOURCE_POOL.getDebugString("Render data"))
+		);
 	}
 	
 	public static void init() { Initializer.init(); }
@@ -293,15 +300,17 @@ public class SharedApi
 	private static void bakeChunkLightingAndSendToLevelAsync(IChunkWrapper chunkWrapper, @Nullable ArrayList<IChunkWrapper> neighbourChunkList, IDhLevel dhLevel)
 	{
 		// lighting the chunk needs to be done on a separate thread to prevent lagging any of the event threads
-		ThreadPoolExecutor executor = ThreadPoolUtil.getLightPopulatorExecutor();
+		WorkerThreadScheduler.TaskTypeExecutor executor = ThreadPoolUtil.getLightPopulatorExecutor();
 		if (executor == null)
 		{
 			return;
 		}
 		
+		// chunks closer to the player should be lit first
+		long priority = WorkerThreadScheduler.getPriorityForBlockPos(chunkWrapper.getChunkPos().getMinBlockX(), chunkWrapper.getChunkPos().getMinBlockZ());
 		try
 		{
-			executor.execute(() ->
+			executor.execute(priority, () ->
 			{
 				//LOGGER.trace(chunkWrapper.getChunkPos() + " " + executor.getActiveCount() + " / " + executor.getQueue().size() + " - " + executor.getCompletedTaskCount());
 				
@@ -367,7 +376,7 @@ public class SharedApi
 				}
 			});
 		}
-		catch (RejectedExecutionException ignore) { /* the executor was shut down, it should be back up shortly and able to accept new jobs */ }
+		catch (RejectedExecutionException ignore) { /* can only happen if the executor was shut down, IE the level is being unloaded */ }
 	}
 	
 	
@@ -654,6 +654,16 @@ public class Config
 									+ "Disable this if shadows render incorrectly.")
 							.build();
 					
+					public static ConfigEntry<Boolean> disableHorizonOcclusionCulling = new ConfigEntry.Builder<Boolean>()
+							.set(false)
+							.comment(""
+									+ "If false LODs that are hidden behind closer \n"
+									+ "terrain (IE mountains) aren't drawn, increasing GPU performance. \n"
+									+ "\n"
+									+ "Disable this if you see distant LODs disappearing \n"
+									+ "when they should be visible.")
+							.build();
+					
 					public static ConfigEntry<EDhApiGrassSideRendering> grassSideRendering = new ConfigEntry.Builder<EDhApiGrassSideRendering>()
 							.set(EDhApiGrassSideRendering.FADE_TO_DIRT)
 							.comment(""
@@ -816,6 +826,60 @@ public class Config
 								+ "")
 						.build();
 				
+				public static ConfigEntry<Boolean> useRegionFileStorage = new ConfigEntry.Builder<Boolean>()
+						.set(false)
+						.comment(""
+								+ "If true LOD data will be stored in region files instead of the SQLite database. \n"
+								+ "Region files skip the database overhead and may load/save faster, \n"
+								+ "but the database is better tested. \n"
+								+ "\n"
+								+ "Existing LOD data will be moved to the selected storage \n"
+								+ "in the background the next time a level is loaded, \n"
+								+ "the old data can still be viewed while it is being moved. \n"
+								+ "")
+						.build();
+				
+				public static ConfigEntry<Boolean> recompressExistingData = new ConfigEntry.Builder<Boolean>()
+						.set(false)
+						.comment(""
+								+ "If true LOD data that was saved with a different [dataCompression] \n"
+								+ "will be re-compressed in the background when a level is loaded. \n"
+								+ "Afterwards the freed space is returned to the OS in small chunks, \n"
+								+ "databases created by older versions of Distant Horizons \n"
+								+ "have to be vacuumed with the standalone jar's \"lod vacuum\" command instead. \n"
+								+ "\n"
+								+ "Progress is saved, so the job will continue where it left off \n"
+								+ "if the level is closed before it finishes. \n"
+								+ "Only affects LOD data stored in the database. \n"
+								+ "")
+						.build();
+				
+				public static ConfigEntry<Boolean> cacheRenderDataOnDisk = new ConfigEntry.Builder<Boolean>()
+						.set(false)
+						.comment(""
+								+ "If true the built LOD geometry will be saved next to the LOD data \n"
+								+ "so it can be uploaded directly the next time the level is loaded, \n"
+								+ "instead of being re-built from the LOD data. \n"
+								+ "\n"
+								+ "Cached geometry is automatically ignored when the LOD data \n"
+								+ "or relevant graphics settings change. \n"
+								+ "Changing resource packs requires reloading the render data \n"
+								+ "(which also clears this cache). \n"
+								+ "\n"
+								+ "Changes take effect after the level is re-loaded. \n"
+								+ "")
+						.build();
+				
+				public static ConfigEntry<Integer> renderDataCacheMaxSizeInMb = new ConfigEntry.Builder<Integer>()
+						.setMinDefaultMax(64, 2048, 65536)
+						.comment(""
+								+ "How large the cached LOD geometry for each level can get (in MB) \n"
+								+ "before it is cleared and re-built. \n"
+								+ "\n"
+								+ "Only used if [cacheRenderDataOnDisk] is true. \n"
+								+ "")
+						.build();
+				
 			}
 			
 			public static class Multiplayer
@@ -1093,6 +1157,29 @@ public class Config
 								+ "")
 						.build();
 				
+				public static final ConfigEntry<Boolean> enableServerTickThrottling = new ConfigEntry.Builder<Boolean>()
+						.setServersideShortName("enableServerTickThrottling")
+						.set(true)
+						.comment(""
+								+ "If true the world generator, file handler, and update propagator threads \n"
+								+ "will be slowed down when the server's tick time (MSPT) goes above \n"
+								+ "[serverTickThrottlingTargetMs] and sped back up once the server recovers. \n"
+								+ "\n"
+								+ "The number of concurrent generation requests each player can make \n"
+								+ "is also reduced while throttled. \n"
+								+ "")
+						.build();
+				public static final ConfigEntry<Integer> serverTickThrottlingTargetMs = new ConfigEntry.Builder<Integer>()
+						.setServersideShortName("serverTickThrottlingTargetMs")
+						.setMinDefaultMax(5, 40, 1000)
+						.comment(""
+								+ "The server tick time (in milliseconds) Distant Horizons will try to stay under \n"
+								+ "when [enableServerTickThrottling] is enabled. \n"
+								+ "\n"
+								+ "A server running at 20 TPS has 50 milliseconds per tick. \n"
+								+ "")
+						.build();
+				
 			}
 			
 			public static class GpuBuffers
@@ -1140,6 +1227,18 @@ public class Config
 								+ "")
 						.build();
 				
+				public static ConfigEntry<Integer> maxPooledStagingBufferCount = new ConfigEntry.Builder<Integer>()
+						.setMinDefaultMax(0, 2, 32)
+						.comment(""
+								+ "How many 1 MB buffers should be kept for writing LOD geometry \n"
+								+ "before it's uploaded to the GPU? \n"
+								+ "\n"
+								+ "Re-using buffers reduces how much memory is allocated while LODs load. \n"
+								+ "Higher numbers use more off-heap memory, \n"
+								+ "[0] allocates a new buffer for every upload. \n"
+								+ "")
+						.build();
+				
 			}
 			
 			public static class AutoUpdater
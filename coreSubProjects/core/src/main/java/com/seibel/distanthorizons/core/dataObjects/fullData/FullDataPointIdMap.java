@@ -32,6 +32,7 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
 import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.util.*;
@@ -125,6 +126,50 @@ public class FullDataPointIdMap
 	
 	public long getPos() { return this.pos; }
 	
+	/**
+	 * Only needs read locks, so this can be used to skip 
+	 * {@link FullDataPointIdMap#mergeAndReturnRemappedEntityIds} when nothing needs to be merged.
+	 * 
+	 * @return true if the inputMap's entries are the first entries in this map, in the same order.
+	 *          IE every ID in the inputMap already refers to the same entry in this map.
+	 */
+	public boolean startsWith(FullDataPointIdMap inputMap)
+	{
+		if (inputMap == this)
+		{
+			return true;
+		}
+		
+		try
+		{
+			inputMap.readWriteLock.readLock().lock();
+			this.readWriteLock.readLock().lock();
+			
+			ArrayList<Entry> inputEntries = inputMap.entryList;
+			if (inputEntries.size() > this.entryList.size())
+			{
+				return false;
+			}
+			
+			for (int i = 0; i < inputEntries.size(); i++)
+			{
+				// entries are cached, so most will be the same object
+				Entry inputEntry = inputEntries.get(i);
+				Entry entry = this.entryList.get(i);
+				if (inputEntry != entry && !inputEntry.equals(entry))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		finally
+		{
+			this.readWriteLock.readLock().unlock();
+			inputMap.readWriteLock.readLock().unlock();
+		}
+	}
+	
 	
 	
 	//=========//
@@ -240,7 +285,15 @@ public class FullDataPointIdMap
 	 *
 	 * @return an array of each added entry's ID in this map in order
 	 */
-	public int[] mergeAndReturnRemappedEntityIds(FullDataPointIdMap inputMap)
+	public int[] mergeAndReturnRemappedEntityIds(FullDataPointIdMap inputMap) { return this.mergeAndReturnRemappedEntityIds(inputMap, null); }
+	/**
+	 * @param reusableRemapArray if this array is at least as long as the inputMap 
+	 *                           it will be filled and returned instead of allocating a new array.
+	 * @return an array of each added entry's ID in this map in order,
+	 *          may be longer than the number of entries in the inputMap if reusableRemapArray was used.
+	 * @see FullDataPointIdMap#mergeAndReturnRemappedEntityIds(FullDataPointIdMap) 
+	 */
+	public int[] mergeAndReturnRemappedEntityIds(FullDataPointIdMap inputMap, @Nullable int[] reusableRemapArray)
 	{
 		try
 		{
@@ -250,7 +303,9 @@ public class FullDataPointIdMap
 			this.readWriteLock.writeLock().lock();
 			
 			ArrayList<Entry> entriesToMerge = inputMap.entryList;
-			int[] remappedEntryIds = new int[entriesToMerge.size()];
+			int[] remappedEntryIds = (reusableRemapArray != null && reusableRemapArray.length >= entriesToMerge.size()) 
+					? reusableRemapArray 
+					: new int[entriesToMerge.size()];
 			for (int i = 0; i < entriesToMerge.size(); i++)
 			{
 				Entry entity = entriesToMerge.get(i);
@@ -398,7 +453,11 @@ public class FullDataPointIdMap
 	
 	private static final class Entry
 	{
-		private static final IWrapperFactory WRAPPER_FACTORY = SingletonInjector.INSTANCE.get(IWrapperFactory.class);
+		/** 
+		 * Looked up on first use instead of during class loading
+		 * so the factory can be bound after this class has been loaded (IE by the standalone jar). 
+		 */
+		private static IWrapperFactory wrapperFactory = null;
 		
 		private static final Int2ReferenceOpenHashMap<ArrayList<Entry>> ENTRY_POOL = new Int2ReferenceOpenHashMap<>();
 		/** lock is necessary since {@link Int2ReferenceOpenHashMap} isn't concurrent and concurrent threads can cause infinite loops */
@@ -543,11 +602,22 @@ public class FullDataPointIdMap
 				throw new DataCorruptedException("Failed to deserialize BiomeBlockStateEntry");
 			}
 			
-			IBiomeWrapper biome = WRAPPER_FACTORY.deserializeBiomeWrapperOrGetDefault(stringArray[0], levelWrapper);
-			IBlockStateWrapper blockState = WRAPPER_FACTORY.deserializeBlockStateWrapperOrGetDefault(stringArray[1], levelWrapper);
+			IWrapperFactory wrapperFactory = getWrapperFactory();
+			IBiomeWrapper biome = wrapperFactory.deserializeBiomeWrapperOrGetDefault(stringArray[0], levelWrapper);
+			IBlockStateWrapper blockState = wrapperFactory.deserializeBlockStateWrapperOrGetDefault(stringArray[1], levelWrapper);
 			return Entry.getEntry(biome, blockState);
 		}
 		
+		private static IWrapperFactory getWrapperFactory()
+		{
+			// multiple threads may look up the factory at once, that's fine since they'll all get the same object
+			if (wrapperFactory == null)
+			{
+				wrapperFactory = SingletonInjector.INSTANCE.get(IWrapperFactory.class);
+			}
+			return wrapperFactory;
+		}
+		
 	}
 	
 	
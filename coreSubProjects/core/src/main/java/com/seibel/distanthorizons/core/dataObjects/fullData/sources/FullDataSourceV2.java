@@ -29,10 +29,12 @@ import com.seibel.distanthorizons.core.file.IDataSource;
 import com.seibel.distanthorizons.core.level.IDhLevel;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
 import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.util.math.UnitBytes;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.distanthorizons.coreapi.ModInfo;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
@@ -41,6 +43,7 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * This data source contains every datapoint over its given {@link DhSectionPos}. <br><br>
@@ -65,7 +68,15 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 	
 	public static final byte DATA_FORMAT_VERSION = 1;
 	
-	public static final DataSourcePool<FullDataSourceV2, IDhLevel> DATA_SOURCE_POOL = new DataSourcePool<>(FullDataSourceV2::createEmpty, FullDataSourceV2::prepPooledDataSource);
+	/** how many bytes worth of data sources can be pooled, including the ones each thread keeps for itself */
+	public static final long MAX_POOLED_SIZE_IN_BYTES = UnitBytes.MBToByte(64);
+	public static final DataSourcePool<FullDataSourceV2, IDhLevel> DATA_SOURCE_POOL = new DataSourcePool<>(FullDataSourceV2::createEmpty, FullDataSourceV2::prepPooledDataSource, FullDataSourceV2::estimateSizeInBytes, MAX_POOLED_SIZE_IN_BYTES);
+	
+	/** 
+	 * Updates happen for every chunk change and every parent propagation step,
+	 * re-using these arrays prevents allocating new ones each time.
+	 */
+	private static final ThreadLocal<UpdateArrayCache> UPDATE_ARRAY_CACHE_REF = ThreadLocal.withInitial(UpdateArrayCache::new);
 	
 	
 	
@@ -108,6 +119,15 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 	public boolean isEmpty;
 	public boolean applyToParent = false;
 	
+	/**
+	 * Tracks which columns were modified by {@link FullDataSourceV2#update} 
+	 * since this data source was created or pulled from the pool. <br>
+	 * Used so render data only needs to be rebuilt for the columns that changed.
+	 *
+	 * @see ChangedColumnUtil
+	 */
+	private final BitSet changedColumns = new BitSet(WIDTH * WIDTH);
+	
 	
 	
 	//==============//
@@ -236,8 +256,15 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		byte inputDetailLevel = DhSectionPos.getDetailLevel(inputDataSource.pos);
 		
 		
-		// determine the mapping changes necessary for the input to map onto this datasource
-		int[] remappedIds = this.mapping.mergeAndReturnRemappedEntityIds(inputDataSource.mapping);
+		// determine the mapping changes necessary for the input to map onto this datasource,
+		// if the input's mapping is the start of this mapping the IDs are already correct
+		int[] remappedIds = null;
+		if (!this.mapping.startsWith(inputDataSource.mapping))
+		{
+			UpdateArrayCache arrayCache = UPDATE_ARRAY_CACHE_REF.get();
+			remappedIds = this.mapping.mergeAndReturnRemappedEntityIds(inputDataSource.mapping, arrayCache.remappedIds);
+			arrayCache.remappedIds = remappedIds;
+		}
 		
 		boolean dataChanged;
 		if (inputDetailLevel == thisDetailLevel)
@@ -268,7 +295,8 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		
 		return dataChanged;
 	}
-	public boolean updateFromSameDetailLevel(FullDataSourceV2 inputDataSource, int[] remappedIds)
+	/** @param remappedIds null if the input's IDs don't need to be remapped */
+	public boolean updateFromSameDetailLevel(FullDataSourceV2 inputDataSource, @Nullable int[] remappedIds)
 	{
 		// both data sources should have the same detail level
 		if (DhSectionPos.getDetailLevel(inputDataSource.pos) != DhSectionPos.getDetailLevel(this.pos))
@@ -295,20 +323,21 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 							&& thisGenState <= inputGenState)
 					{
 						// check if the data changed
+						boolean columnChanged = false;
 						if (this.dataPoints[index] == null)
 						{
 							// no data was present previously
-							this.dataPoints[index] = new LongArrayList(inputDataArray);
-							dataChanged = true;
+							this.dataPoints[index] = new LongArrayList(inputDataArray.size());
+							columnChanged = true;
 						}
 						else if (this.dataPoints[index].size() != inputDataArray.size())
 						{
 							// data is present, but the size is different
-							dataChanged = true;
+							columnChanged = true;
 						}
 						
 						int oldDataHash = 0;
-						if (!dataChanged)
+						if (!columnChanged)
 						{
 							// some old data existed with the same length,
 							// we'll have to compare the caches
@@ -319,7 +348,7 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 						// copy over the new data
 						this.dataPoints[index].clear();
 						this.dataPoints[index].addAll(inputDataArray);
-						this.remapDataColumn(index, remappedIds);
+						this.remapDataColumn(index, remappedIds, inputDataSource.mapping.size());
 						
 						if (RUN_DATA_ORDER_VALIDATION)
 						{
@@ -328,17 +357,23 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 						
 						
 						
-						if (!dataChanged)
+						if (!columnChanged)
 						{
 							// check if the identical length data column hashes are the same
 							// hashes need to be compared after the ID's have been remapped otherwise the ID's won't match even if the data is the same
 							if (oldDataHash != this.dataPoints[index].hashCode())
 							{
 								// the hashes are different, something was changed
-								dataChanged = true;
+								columnChanged = true;
 							}
 						}
 						
+						if (columnChanged)
+						{
+							this.changedColumns.set(index);
+							dataChanged = true;
+						}
+						
 						
 						this.columnGenerationSteps[index] = inputGenState;
 						// always overwrite the compression mode since we're replacing this column
@@ -351,7 +386,8 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		
 		return dataChanged;
 	}
-	public boolean updateFromOneBelowDetailLevel(FullDataSourceV2 inputDataSource, int[] remappedIds)
+	/** @param remappedIds null if the input's IDs don't need to be remapped */
+	public boolean updateFromOneBelowDetailLevel(FullDataSourceV2 inputDataSource, @Nullable int[] remappedIds)
 	{
 		if (DhSectionPos.getDetailLevel(inputDataSource.pos) + 1 != DhSectionPos.getDetailLevel(this.pos))
 		{
@@ -373,6 +409,7 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		
 		// merge the input's data points
 		// into this data source's
+		UpdateArrayCache arrayCache = UPDATE_ARRAY_CACHE_REF.get();
 		boolean dataChanged = false;
 		for (int x = 0; x < WIDTH; x += 2)
 		{
@@ -395,31 +432,31 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 				
 				
 				// data points //
-				LongArrayList mergedInputDataArray = mergeInputTwoByTwoDataColumn(inputDataSource, x, z);
 				
 				// check if the data changed
-				if (this.dataPoints[recipientIndex] == null)
+				boolean columnChanged = false;
+				int oldDataSize = 0;
+				int oldDataHash = 0;
+				LongArrayList dataColumn = this.dataPoints[recipientIndex];
+				if (dataColumn == null)
 				{
 					// no data was present previously
-					dataChanged = true;
+					dataColumn = new LongArrayList();
+					this.dataPoints[recipientIndex] = dataColumn;
+					columnChanged = true;
 				}
-				else if (this.dataPoints[recipientIndex].size() != mergedInputDataArray.size())
-				{
-					// data is present, but the size is different
-					dataChanged = true;
-				}
-				
-				int oldDataHash = 0;
-				if (!dataChanged)
+				else
 				{
-					// some old data existed with the same length,
-					// we'll have to compare the caches
-					oldDataHash = this.dataPoints[recipientIndex].hashCode();
+					// the old column is overwritten in place,
+					// so the old data has to be checked before merging
+					oldDataSize = dataColumn.size();
+					oldDataHash = dataColumn.hashCode();
 				}
 				
 				
-				this.dataPoints[recipientIndex] = mergedInputDataArray;
-				this.remapDataColumn(recipientIndex, remappedIds);
+				dataColumn.clear();
+				mergeInputTwoByTwoDataColumn(inputDataSource, x, z, dataColumn, arrayCache);
+				this.remapDataColumn(recipientIndex, remappedIds, inputDataSource.mapping.size());
 				
 				if (RUN_DATA_ORDER_VALIDATION)
 				{
@@ -428,17 +465,23 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 				
 				
 				
-				if (!dataChanged)
+				if (!columnChanged)
 				{
-					// check if the identical length data column hashes are the same
 					// hashes need to be compared after the ID's have been remapped otherwise the ID's won't match even if the data is the same
-					if (oldDataHash != this.dataPoints[recipientIndex].hashCode())
+					if (oldDataSize != dataColumn.size()
+						|| oldDataHash != dataColumn.hashCode())
 					{
-						// the hashes are different, something was changed
-						dataChanged = true;
+						// the size or hashes are different, something was changed
+						columnChanged = true;
 					}
 				}
 				
+				if (columnChanged)
+				{
+					this.changedColumns.set(recipientIndex);
+					dataChanged = true;
+				}
+				
 				this.isEmpty = false;
 			}
 		}
@@ -483,14 +526,14 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		}
 		return minWorldGenStepValue;
 	}
-	private static LongArrayList mergeInputTwoByTwoDataColumn(FullDataSourceV2 inputDataSource, int x, int z)
+	/** @param newColumnList should be empty, the merged data points will be added to it */
+	private static void mergeInputTwoByTwoDataColumn(FullDataSourceV2 inputDataSource, int x, int z, LongArrayList newColumnList, UpdateArrayCache arrayCache)
 	{
-		LongArrayList newColumnList = new LongArrayList();
-		
 		// special numbers:
 		// -2 = the column's height hasn't been determined yet
 		// -1 = we've reached the end of the column
-		int[] currentDatapointIndex = new int[]{-2, -2, -2, -2};
+		int[] currentDatapointIndex = arrayCache.currentDatapointIndex;
+		Arrays.fill(currentDatapointIndex, -2);
 		
 		int lastId = 0;
 		byte lastBlockLight = 0;
@@ -500,10 +543,10 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		
 		
 		// these arrays will be reused quite often, so re-using them helps reduce some GC pressure
-		long[] datapointsForYSlice = new long[4];
-		int[] mergeIds = new int[4];
-		int[] mergeBlockLights = new int[4];
-		int[] mergeSkyLights = new int[4];
+		long[] datapointsForYSlice = arrayCache.datapointsForYSlice;
+		int[] mergeIds = arrayCache.mergeIds;
+		int[] mergeBlockLights = arrayCache.mergeBlockLights;
+		int[] mergeSkyLights = arrayCache.mergeSkyLights;
 		
 		
 		for (int blockY = 0; blockY < RenderDataPointUtil.MAX_WORLD_Y_SIZE; blockY++, height++)
@@ -658,20 +701,34 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		// TODO why is this sometimes necessary? What did I (James) screw up that causes the mergedInputDataArray
 		//  to sometimes be in a different order? Is it potentially related to what detail level is coming in?
 		ensureDataColumnOrder(newColumnList);
-		
-		return newColumnList;
 	}
 	/**
 	 * Only update the ID once it's been added to this data source.
 	 * Updating the incoming data source will cause issues if it is applied
 	 * to anything else due to multiple remapping.
+	 * 
+	 * @param remappedIds if null nothing will be changed
+	 * @param remappedIdCount how many IDs are valid in remappedIds, 
+	 *                        the array may be longer if it's re-used between updates.
 	 */
-	private void remapDataColumn(int dataPointIndex, int[] remappedIds)
+	private void remapDataColumn(int dataPointIndex, @Nullable int[] remappedIds, int remappedIdCount)
 	{
+		if (remappedIds == null)
+		{
+			return;
+		}
+		
 		LongArrayList dataColumn = this.dataPoints[dataPointIndex];
 		for (int i = 0; i < dataColumn.size(); i++)
 		{
-			dataColumn.set(i, FullDataPointUtil.remap(remappedIds, dataColumn.getLong(i)));
+			long datapoint = dataColumn.getLong(i);
+			if (FullDataPointUtil.getId(datapoint) >= remappedIdCount)
+			{
+				// the re-used array could contain old IDs past this point,
+				// wrapped the same way as FullDataPointUtil.remap() so both failures look the same to callers
+				throw new RuntimeException(new IndexOutOfBoundsException("ID [" + FullDataPointUtil.getId(datapoint) + "] is outside the input mapping's [" + remappedIdCount + "] IDs."));
+			}
+			dataColumn.set(i, FullDataPointUtil.remap(remappedIds, datapoint));
 		}
 	}
 	private static boolean areDataColumnsDifferent(long[] oldDataArray, long[] newDataArray)
@@ -850,6 +907,7 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 	private static void prepPooledDataSource(long pos, boolean clearData, FullDataSourceV2 dataSource)
 	{
 		dataSource.pos = pos;
+		dataSource.changedColumns.clear();
 		
 		if (clearData)
 		{
@@ -868,6 +926,23 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		}
 	}
 	
+	/** 
+	 * Uses each data column's capacity instead of its size 
+	 * since that's what is actually kept in memory while pooled.
+	 */
+	public long estimateSizeInBytes()
+	{
+		long size = this.columnGenerationSteps.length + this.columnWorldCompressionMode.length;
+		for (LongArrayList dataColumn : this.dataPoints)
+		{
+			if (dataColumn != null)
+			{
+				size += (long) dataColumn.elements().length * Long.BYTES;
+			}
+		}
+		return size;
+	}
+	
 	
 	
 	//=====================//
@@ -880,6 +955,15 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 	@Override
 	public byte getDataDetailLevel() { return (byte) (DhSectionPos.getDetailLevel(this.pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL); }
 	
+	/**
+	 * The returned {@link BitSet} is owned by this data source
+	 * and should be copied if it needs to be used after this data source is closed.
+	 *
+	 * @return the columns changed by {@link FullDataSourceV2#update} since this data source was created or pulled from the pool
+	 * @see ChangedColumnUtil
+	 */
+	public BitSet getChangedColumns() { return this.changedColumns; }
+	
 	public EDhApiWorldGenerationStep getWorldGenStepAtRelativePos(int relX, int relZ)
 	{
 		int index = relativePosToIndex(relX, relZ);
@@ -966,4 +1050,26 @@ public class FullDataSourceV2 implements IDataSource<IDhLevel>
 		DATA_SOURCE_POOL.returnPooledDataSource(this);
 	}
 	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/** 
+	 * Holds the arrays used by {@link FullDataSourceV2#update(FullDataSourceV2)}. <br>
+	 * Only one update runs at a time on each thread, so these can be shared between updates.
+	 */
+	private static class UpdateArrayCache
+	{
+		/** grows as needed, may be longer than the current input's mapping */
+		public int[] remappedIds = new int[64];
+		
+		public final int[] currentDatapointIndex = new int[4];
+		public final long[] datapointsForYSlice = new long[4];
+		public final int[] mergeIds = new int[4];
+		public final int[] mergeBlockLights = new int[4];
+		public final int[] mergeSkyLights = new int[4];
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.render;
+
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBufferBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.columnViews.ColumnArrayView;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * A copy of the one column wide strip along one side of a {@link ColumnRenderSource}. <br><br>
+ *
+ * When building a section's geometry only the columns touching it are needed from each neighbor
+ * (to cull faces and light the section's walls),
+ * so these can be kept instead of each neighbor's whole render source.
+ *
+ * @see ColumnRenderBufferBuilder#makeLodRenderData
+ */
+public class ColumnRenderEdge
+{
+	/** the position of the render source this edge was copied from */
+	public final long pos;
+	/** which side of the render source this edge was copied from */
+	public final EDhDirection side;
+	public final int verticalDataCount;
+	
+	/** indexed by (edgeOffset * verticalDataCount) + verticalIndex */
+	private final LongArrayList data;
+	
+	
+	
+	//==============//
+	// constructors //
+	//==============//
+	
+	/** @return an array indexed by each side's {@link EDhDirection#ordinal()} - 2, the same as {@link EDhDirection#ADJ_DIRECTIONS} */
+	public static ColumnRenderEdge[] createAllFromRenderSource(ColumnRenderSource renderSource)
+	{
+		ColumnRenderEdge[] edges = new ColumnRenderEdge[EDhDirection.ADJ_DIRECTIONS.length];
+		for (EDhDirection side : EDhDirection.ADJ_DIRECTIONS)
+		{
+			edges[side.ordinal() - 2] = createFromRenderSource(renderSource, side);
+		}
+		return edges;
+	}
+	public static ColumnRenderEdge createFromRenderSource(ColumnRenderSource renderSource, EDhDirection side)
+	{
+		int verticalDataCount = renderSource.verticalDataCount;
+		long[] data = new long[ColumnRenderSource.SECTION_SIZE * verticalDataCount];
+		for (int edgeOffset = 0; edgeOffset < ColumnRenderSource.SECTION_SIZE; edgeOffset++)
+		{
+			ColumnArrayView columnView = renderSource.getVerticalDataPointView(getRelativeX(side, edgeOffset), getRelativeZ(side, edgeOffset));
+			System.arraycopy(columnView.data.elements(), columnView.offset, data, edgeOffset * verticalDataCount, verticalDataCount);
+		}
+		
+		return new ColumnRenderEdge(renderSource.pos, side, verticalDataCount, new LongArrayList(data));
+	}
+	
+	private ColumnRenderEdge(long pos, EDhDirection side, int verticalDataCount, LongArrayList data)
+	{
+		this.pos = pos;
+		this.side = side;
+		this.verticalDataCount = verticalDataCount;
+		this.data = data;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @param edgeOffset the relative X position for north/south edges or the relative Z position for east/west edges */
+	public ColumnArrayView getVerticalDataPointView(int edgeOffset) { return new ColumnArrayView(this.data, this.verticalDataCount, edgeOffset * this.verticalDataCount, this.verticalDataCount); }
+	
+	/** @see ColumnRenderSource#getDataDetailLevel() */
+	public byte getDataDetailLevel() { return (byte) (DhSectionPos.getDetailLevel(this.pos) - ColumnRenderSource.SECTION_SIZE_OFFSET); }
+	
+	public long getSizeInBytes() { return (long) this.data.size() * Long.BYTES; }
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static int getRelativeX(EDhDirection side, int edgeOffset)
+	{
+		switch (side)
+		{
+			case EAST:
+				return ColumnRenderSource.SECTION_SIZE - 1;
+			case WEST:
+				return 0;
+			case SOUTH:
+			case NORTH:
+				return edgeOffset;
+			
+			default:
+				throw new IllegalArgumentException("Only horizontal directions have edges, direction given: [" + side + "].");
+		}
+	}
+	private static int getRelativeZ(EDhDirection side, int edgeOffset)
+	{
+		switch (side)
+		{
+			case EAST:
+			case WEST:
+				return edgeOffset;
+			case SOUTH:
+				return ColumnRenderSource.SECTION_SIZE - 1;
+			case NORTH:
+				return 0;
+			
+			default:
+				throw new IllegalArgumentException("Only horizontal directions have edges, direction given: [" + side + "].");
+		}
+	}
+	
+	
+	
+	//==============//
+	// base methods //
+	//==============//
+	
+	@Override
+	public String toString() { return "ColumnRenderEdge{pos=" + DhSectionPos.toString(this.pos) + ", side=" + this.side + "}"; }
+	
+}
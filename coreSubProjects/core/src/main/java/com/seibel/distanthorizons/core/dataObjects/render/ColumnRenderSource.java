@@ -21,6 +21,7 @@ package com.seibel.distanthorizons.core.dataObjects.render;
 
 import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
 import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataToRenderDataTransformer;
 import com.seibel.distanthorizons.core.file.DataSourcePool;
 import com.seibel.distanthorizons.core.file.IDataSource;
@@ -34,6 +35,7 @@ import com.seibel.distanthorizons.core.level.IDhClientLevel;
 import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
 import com.seibel.distanthorizons.core.util.ColorUtil;
 import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
+import com.seibel.distanthorizons.core.util.math.UnitBytes;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
 
@@ -53,7 +55,11 @@ public class ColumnRenderSource implements IDataSource<IDhClientLevel>
 	public static final byte SECTION_SIZE_OFFSET = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
 	public static final int SECTION_SIZE = BitShiftUtil.powerOfTwo(SECTION_SIZE_OFFSET);
 	
-	public static final DataSourcePool<ColumnRenderSource, IDhClientLevel> DATA_SOURCE_POOL = new DataSourcePool<>(ColumnRenderSource::createEmptyRenderSource, null /* data source prep/cleanup needs to be done outside the pool since it requires additional inputs */);
+	/** how many bytes worth of render sources can be pooled, including the ones each thread keeps for itself */
+	public static final long MAX_POOLED_SIZE_IN_BYTES = UnitBytes.MBToByte(64);
+	public static final DataSourcePool<ColumnRenderSource, IDhClientLevel> DATA_SOURCE_POOL = new DataSourcePool<>(
+			ColumnRenderSource::createEmptyRenderSource, null /* data source prep/cleanup needs to be done outside the pool since it requires additional inputs */,
+			ColumnRenderSource::estimateSizeInBytes, MAX_POOLED_SIZE_IN_BYTES);
 	
 	
 	
@@ -145,6 +151,105 @@ public class ColumnRenderSource implements IDataSource<IDhClientLevel>
 	
 	
 	
+	//===============//
+	// height bounds //
+	//===============//
+	
+	/** @return the highest block Y position any data point reaches, {@link Integer#MIN_VALUE} if there isn't any data */
+	public int getMaxBlockY()
+	{
+		int maxY = Integer.MIN_VALUE;
+		for (int x = 0; x < SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < SECTION_SIZE; z++)
+			{
+				// the first data point is the top of the column
+				long dataPoint = (this.verticalDataCount != 0) ? this.getDataPoint(x, z, 0) : RenderDataPointUtil.EMPTY_DATA;
+				if (RenderDataPointUtil.doesDataPointExist(dataPoint))
+				{
+					maxY = Math.max(maxY, RenderDataPointUtil.getYMax(dataPoint));
+				}
+			}
+		}
+		return (maxY != Integer.MIN_VALUE) ? maxY + this.yOffset : Integer.MIN_VALUE;
+	}
+	
+	/** 
+	 * Every column has an opaque surface at or above the returned height,
+	 * transparent data points (IE water) are skipped. <br>
+	 * Like a height map, anything below each column's surface is treated as solid,
+	 * so columns with gaps below their surface (IE overhangs, caves, or floating islands) can't be used.
+	 * 
+	 * @return the lowest opaque surface block Y position of any column, 
+	 *          {@link Integer#MIN_VALUE} if any column doesn't have an opaque surface or has a gap below it
+	 */
+	public int getMinSurfaceBlockY()
+	{
+		if (this.verticalDataCount == 0)
+		{
+			return Integer.MIN_VALUE;
+		}
+		
+		int minY = Integer.MAX_VALUE;
+		for (int x = 0; x < SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < SECTION_SIZE; z++)
+			{
+				int surfaceY = Integer.MIN_VALUE;
+				for (int i = 0; i < this.verticalDataCount; i++)
+				{
+					long dataPoint = this.getDataPoint(x, z, i);
+					if (!RenderDataPointUtil.doesDataPointExist(dataPoint))
+					{
+						break;
+					}
+					
+					if (RenderDataPointUtil.getAlpha(dataPoint) == 255)
+					{
+						if (this.hasGapBelow(x, z, i))
+						{
+							// this column can be seen through below its surface
+							return Integer.MIN_VALUE;
+						}
+						
+						surfaceY = RenderDataPointUtil.getYMax(dataPoint);
+						break;
+					}
+				}
+				
+				if (surfaceY == Integer.MIN_VALUE)
+				{
+					// this column can be seen through
+					return Integer.MIN_VALUE;
+				}
+				minY = Math.min(minY, surfaceY);
+			}
+		}
+		return minY + this.yOffset;
+	}
+	/** @return true if any data point below the given index doesn't touch the one above it */
+	private boolean hasGapBelow(int x, int z, int index)
+	{
+		int segmentMinY = RenderDataPointUtil.getYMin(this.getDataPoint(x, z, index));
+		for (int i = index + 1; i < this.verticalDataCount; i++)
+		{
+			long dataPoint = this.getDataPoint(x, z, i);
+			if (!RenderDataPointUtil.doesDataPointExist(dataPoint))
+			{
+				break;
+			}
+			
+			if (RenderDataPointUtil.getYMax(dataPoint) != segmentMinY)
+			{
+				return true;
+			}
+			segmentMinY = RenderDataPointUtil.getYMin(dataPoint);
+		}
+		return false;
+	}
+	
+	
+	
 	//=============//
 	// data update //
 	//=============//
@@ -170,6 +275,7 @@ public class ColumnRenderSource implements IDataSource<IDhClientLevel>
 				DhBlockPos2D centerBlockPos = DhSectionPos.getCenterBlockPos(inputFullDataSource.getPos());
 				int halfBlockWidth = DhSectionPos.getBlockWidth(inputFullDataSource.getPos()) / 2;
 				DhBlockPos2D minBlockPos = new DhBlockPos2D(centerBlockPos.x - halfBlockWidth, centerBlockPos.z - halfBlockWidth);
+				FullDataRenderColorCache.Entry[] colorEntriesById = level.getRenderColorCache().getEntriesForMapping(level, inputFullDataSource.mapping, minBlockPos.x, minBlockPos.z);
 				
 				for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
 				{
@@ -183,7 +289,7 @@ public class ColumnRenderSource implements IDataSource<IDhClientLevel>
 						if (dataColumn != null && worldGenStep != EDhApiWorldGenerationStep.EMPTY)
 						{
 							FullDataToRenderDataTransformer.convertColumnData(
-									level, inputFullDataSource.mapping,
+									level, inputFullDataSource.mapping, colorEntriesById,
 									minBlockPos.x + x,
 									minBlockPos.z + z,
 									columnArrayView, dataColumn);
@@ -224,6 +330,9 @@ public class ColumnRenderSource implements IDataSource<IDhClientLevel>
 	public boolean isEmpty() { return this.isEmpty; }
 	public void markNotEmpty() { this.isEmpty = false; }
 	
+	/** only counts the data points since they make up the vast majority of a render source's size */
+	public long estimateSizeInBytes() { return (long) this.renderDataContainer.elements().length * Long.BYTES; }
+	
 	/** can be used when debugging */
 	public boolean hasNonVoidDataPoints()
 	{
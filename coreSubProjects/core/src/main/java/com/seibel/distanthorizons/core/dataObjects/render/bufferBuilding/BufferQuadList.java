@@ -0,0 +1,693 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.util.LodUtil;
+
+import java.util.Arrays;
+
+/**
+ * Stores the render-able quads for a single {@link EDhDirection}
+ * as two packed primitive arrays instead of one object per quad. <br><br>
+ *
+ * Position long layout: <br>
+ * <code>
+ * =======Bit layout======= <br>
+ * XX XX YY YY ZZ ZZ WW WW <br>
+ * </code>
+ * X = x pos (signed short) <br>
+ * Y = y pos (signed short) <br>
+ * Z = z pos (signed short) <br>
+ * W = width east/west <br><br>
+ *
+ * Data long layout: <br>
+ * <code>
+ * =======Bit layout======= <br>
+ * EN NN CC CC CC CC II SB <br>
+ * </code>
+ * E = error flag (1 bit) <br>
+ * N = width north/south or up/down (15 bits) <br>
+ * C = color (ARGB int) <br>
+ * I = Iris block material ID <br>
+ * S = sky light (4 bits) <br>
+ * B = block light (4 bits) <br>
+ *
+ * @see LodQuadBuilder
+ */
+public final class BufferQuadList
+{
+	/**
+	 * The maximum number of blocks wide a quad can be. <br><br>
+	 *
+	 * This could be increased beyond 2048, for use with
+	 * extremely low detail levels if the need arises.
+	 */
+	public static final int NORMAL_MAX_QUAD_WIDTH = 2048;
+	/**
+	 * The maximum number of blocks wide a quad can be
+	 * when {@link Config.Client.Advanced.Graphics.AdvancedGraphics#earthCurveRatio earthCurveRatio}
+	 * is enabled.
+	 */
+	public static final int MAX_QUAD_WIDTH_FOR_EARTH_CURVATURE = LodUtil.CHUNK_WIDTH;
+	
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	private static final int X_SHIFT = 48;
+	private static final int Y_SHIFT = 32;
+	private static final int Z_SHIFT = 16;
+	private static final int WIDTH_EAST_WEST_SHIFT = 0;
+	
+	private static final int ERROR_SHIFT = 63;
+	private static final int WIDTH_NORTH_SOUTH_SHIFT = 48;
+	private static final int COLOR_SHIFT = 16;
+	private static final int IRIS_BLOCK_MATERIAL_ID_SHIFT = 8;
+	private static final int SKY_LIGHT_SHIFT = 4;
+	private static final int BLOCK_LIGHT_SHIFT = 0;
+	
+	private static final long SHORT_MASK = 0xFFFFL;
+	private static final long WIDTH_NORTH_SOUTH_MASK = 0x7FFFL;
+	private static final long COLOR_MASK = 0xFFFF_FFFFL;
+	private static final long BYTE_MASK = 0xFFL;
+	private static final long LIGHT_MASK = 0xFL;
+	
+	/**
+	 * Radix sorting scratch space. <br>
+	 * Merging is always done on the builder's thread, so these
+	 * arrays can be shared by every list built on that thread.
+	 */
+	private static final ThreadLocal<SortScratch> SORT_SCRATCH_REF = ThreadLocal.withInitial(SortScratch::new);
+	
+	
+	public final EDhDirection direction;
+	private final EDhDirection.Axis axis;
+	
+	private final int maxQuadWidth;
+	private final boolean markOverlappingQuads;
+	
+	private long[] positions;
+	private long[] data;
+	private int size = 0;
+	/** quads before this index won't be pre-merged with newly added quads */
+	private int premergeGroupStartIndex = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/**
+	 * @param maxQuadWidth how wide a quad can become via merging,
+	 *                     generally either {@link #NORMAL_MAX_QUAD_WIDTH} or {@link #MAX_QUAD_WIDTH_FOR_EARTH_CURVATURE}
+	 * @param markOverlappingQuads if true overlapping quads will be flagged as errors and won't be merged
+	 */
+	public BufferQuadList(EDhDirection direction, int maxQuadWidth, boolean markOverlappingQuads)
+	{
+		this.direction = direction;
+		this.axis = direction.getAxis();
+		this.maxQuadWidth = maxQuadWidth;
+		this.markOverlappingQuads = markOverlappingQuads;
+		
+		this.positions = new long[DEFAULT_CAPACITY];
+		this.data = new long[DEFAULT_CAPACITY];
+	}
+	
+	
+	
+	//=========//
+	// adding  //
+	//=========//
+	
+	/**
+	 * Adds the given quad to the end of this list,
+	 * merging it into the previously added quad if possible.
+	 *
+	 * @return true if the quad was merged into the previous quad, false if it was appended
+	 */
+	public boolean add(
+			short x, short y, short z,
+			short widthEastWest, short widthNorthSouthOrUpDown,
+			int color, byte irisBlockMaterialId, byte skyLight, byte blockLight)
+	{
+		if (widthEastWest == 0 || widthNorthSouthOrUpDown == 0)
+		{
+			throw new IllegalArgumentException("Size 0 quad!");
+		}
+		if (widthEastWest < 0 || widthNorthSouthOrUpDown < 0)
+		{
+			throw new IllegalArgumentException("Negative sized quad!");
+		}
+		
+		this.ensureCapacity(this.size + 1);
+		this.positions[this.size] = encodePosition(x, y, z, widthEastWest);
+		this.data[this.size] = encodeData(widthNorthSouthOrUpDown, color, irisBlockMaterialId, skyLight, blockLight);
+		
+		// attempt to merge this quad with the previous one
+		if (this.size > this.premergeGroupStartIndex &&
+				(
+					this.tryMerge(this.positions, this.data, this.size - 1, this.positions, this.data, this.size, BufferMergeDirectionEnum.EastWest)
+					|| this.tryMerge(this.positions, this.data, this.size - 1, this.positions, this.data, this.size, BufferMergeDirectionEnum.NorthSouthOrUpDown)
+				)
+			)
+		{
+			return true;
+		}
+		
+		this.size++;
+		return false;
+	}
+	
+	/**
+	 * Prevents quads added after this call from being pre-merged
+	 * into any quads that were added before it. <br>
+	 * This allows a range of quads to be copied into another list
+	 * without needing to know what the neighboring ranges contained.
+	 *
+	 * @see #appendRange(BufferQuadList, int, int)
+	 */
+	public void startNewPremergeGroup() { this.premergeGroupStartIndex = this.size; }
+	
+	/**
+	 * Appends the source list's quads between startIndex (inclusive)
+	 * and endIndex (exclusive) to the end of this list. <br>
+	 * No pre-merging is done on the copied quads.
+	 */
+	public void appendRange(BufferQuadList source, int startIndex, int endIndex)
+	{
+		int count = endIndex - startIndex;
+		if (count <= 0)
+		{
+			return;
+		}
+		
+		this.ensureCapacity(this.size + count);
+		System.arraycopy(source.positions, startIndex, this.positions, this.size, count);
+		System.arraycopy(source.data, startIndex, this.data, this.size, count);
+		this.size += count;
+	}
+	
+	/** @return a new list containing the same quads and settings as this one */
+	public BufferQuadList copy()
+	{
+		BufferQuadList copy = new BufferQuadList(this.direction, this.maxQuadWidth, this.markOverlappingQuads);
+		copy.appendRange(this, 0, this.size);
+		copy.premergeGroupStartIndex = this.premergeGroupStartIndex;
+		return copy;
+	}
+	
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > this.positions.length)
+		{
+			int newCapacity = Math.max(capacity, this.positions.length * 2);
+			this.positions = Arrays.copyOf(this.positions, newCapacity);
+			this.data = Arrays.copyOf(this.data, newCapacity);
+		}
+	}
+	
+	
+	
+	//=========//
+	// merging //
+	//=========//
+	
+	/**
+	 * Uses Greedy meshing to merge this list's quads in the given direction. <br>
+	 * The quads are radix sorted by their merge key and then merged in place.
+	 *
+	 * @return the number of quads that were merged away
+	 */
+	public int mergeQuads(BufferMergeDirectionEnum mergeDirection)
+	{
+		int count = this.size;
+		if (count <= 1)
+		{
+			return 0;
+		}
+		
+		SortScratch scratch = SORT_SCRATCH_REF.get();
+		scratch.ensureCapacity(count);
+		
+		long[] keys = scratch.keys;
+		int[] indices = scratch.indices;
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = this.getSortKey(this.positions[i], mergeDirection);
+			indices[i] = i;
+		}
+		
+		int[] sortedIndices = radixSort(scratch, count);
+		
+		
+		// gather the quads in sorted order
+		long[] sortedPositions = scratch.positions;
+		long[] sortedData = scratch.data;
+		for (int i = 0; i < count; i++)
+		{
+			int index = sortedIndices[i];
+			sortedPositions[i] = this.positions[index];
+			sortedData[i] = this.data[index];
+		}
+		
+		
+		// merge and compact back into this list
+		int writeIndex = 0;
+		int currentIndex = 0;
+		for (int nextIndex = 1; nextIndex < count; nextIndex++)
+		{
+			if (!this.tryMerge(sortedPositions, sortedData, currentIndex, sortedPositions, sortedData, nextIndex, mergeDirection))
+			{
+				// merge fail, the current quad is finished
+				this.positions[writeIndex] = sortedPositions[currentIndex];
+				this.data[writeIndex] = sortedData[currentIndex];
+				writeIndex++;
+				
+				currentIndex = nextIndex;
+			}
+			// else merge successful, attempt to merge the next quad
+		}
+		this.positions[writeIndex] = sortedPositions[currentIndex];
+		this.data[writeIndex] = sortedData[currentIndex];
+		writeIndex++;
+		
+		this.size = writeIndex;
+		this.premergeGroupStartIndex = 0;
+		return count - writeIndex;
+	}
+	
+	/**
+	 * Generates the key used to order quads before merging. <br>
+	 * The X, Y, and Z positions are ordered by significance based on
+	 * this list's axis and the merge direction, with the most significant
+	 * value in the highest bits.
+	 */
+	private long getSortKey(long position, BufferMergeDirectionEnum mergeDirection)
+	{
+		short x = getX(position);
+		short y = getY(position);
+		short z = getZ(position);
+		
+		if (mergeDirection == BufferMergeDirectionEnum.EastWest)
+		{
+			switch (this.axis)
+			{
+				case X:
+					return createSortKey(x, y, z);
+				case Y:
+					return createSortKey(y, z, x);
+				case Z:
+					return createSortKey(z, y, x);
+				
+				default:
+					throw new IllegalArgumentException("Invalid Axis enum: " + this.axis);
+			}
+		}
+		else
+		{
+			switch (this.axis)
+			{
+				case X:
+					return createSortKey(x, z, y);
+				case Y:
+					return createSortKey(y, x, z);
+				case Z:
+					return createSortKey(z, x, y);
+				
+				default:
+					throw new IllegalArgumentException("Invalid Axis enum: " + this.axis);
+			}
+		}
+	}
+	/**
+	 * The X, Y, and Z coordinates can be passed into parameters 0, 1, and 2 in any order. <br>
+	 * With the 0th parameter being the most significant when comparing.
+	 */
+	private static long createSortKey(short a0, short a1, short a2)
+	{
+		long key = (long) a0 << 48 | (long) a1 << 32 | (long) a2 << 16;
+		// flip the sign bit so the signed key can be sorted as an unsigned value
+		return key ^ Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Stable LSD radix sort of the scratch keys. <br>
+	 * The lowest 2 bytes of each key are always empty so they are skipped,
+	 * along with any byte that is identical for every key.
+	 *
+	 * @return the array containing the sorted quad indices
+	 */
+	private static int[] radixSort(SortScratch scratch, int count)
+	{
+		long[] keys = scratch.keys;
+		int[] indices = scratch.indices;
+		long[] tempKeys = scratch.tempKeys;
+		int[] tempIndices = scratch.tempIndices;
+		
+		int[][] histograms = scratch.histograms;
+		for (int[] histogram : histograms)
+		{
+			Arrays.fill(histogram, 0);
+		}
+		
+		for (int i = 0; i < count; i++)
+		{
+			long key = keys[i];
+			for (int pass = 0; pass < SortScratch.PASS_COUNT; pass++)
+			{
+				histograms[pass][(int) ((key >>> ((pass + SortScratch.SKIPPED_BYTE_COUNT) * 8)) & 0xFF)]++;
+			}
+		}
+		
+		for (int pass = 0; pass < SortScratch.PASS_COUNT; pass++)
+		{
+			int[] histogram = histograms[pass];
+			int shift = (pass + SortScratch.SKIPPED_BYTE_COUNT) * 8;
+			
+			// skip passes where every key shares the same byte
+			if (histogram[(int) ((keys[0] >>> shift) & 0xFF)] == count)
+			{
+				continue;
+			}
+			
+			// convert the counts into starting offsets
+			int offset = 0;
+			for (int bucket = 0; bucket < 256; bucket++)
+			{
+				int bucketCount = histogram[bucket];
+				histogram[bucket] = offset;
+				offset += bucketCount;
+			}
+			
+			for (int i = 0; i < count; i++)
+			{
+				long key = keys[i];
+				int destination = histogram[(int) ((key >>> shift) & 0xFF)]++;
+				tempKeys[destination] = key;
+				tempIndices[destination] = indices[i];
+			}
+			
+			long[] swapKeys = keys;
+			keys = tempKeys;
+			tempKeys = swapKeys;
+			
+			int[] swapIndices = indices;
+			indices = tempIndices;
+			tempIndices = swapIndices;
+		}
+		
+		return indices;
+	}
+	
+	/**
+	 * Attempts to merge quad B into quad A.
+	 *
+	 * @return true if the quads were merged, false otherwise.
+	 */
+	private boolean tryMerge(
+			long[] positionsA, long[] dataA, int indexA,
+			long[] positionsB, long[] dataB, int indexB,
+			BufferMergeDirectionEnum mergeDirection)
+	{
+		long thisPos = positionsA[indexA];
+		long thisData = dataA[indexA];
+		long otherPos = positionsB[indexB];
+		long otherData = dataB[indexB];
+		
+		if (hasError(thisData) || hasError(otherData))
+		{
+			return false;
+		}
+		
+		short thisX = getX(thisPos), thisY = getY(thisPos), thisZ = getZ(thisPos);
+		short otherX = getX(otherPos), otherY = getY(otherPos), otherZ = getZ(otherPos);
+		
+		// make sure these quads share the same perpendicular axis
+		if ((mergeDirection == BufferMergeDirectionEnum.EastWest && thisY != otherY) ||
+				(mergeDirection == BufferMergeDirectionEnum.NorthSouthOrUpDown && thisX != otherX))
+		{
+			return false;
+		}
+		
+		
+		// get the position of each quad to compare against
+		short thisPerpendicularCompareStartPos; // edge perpendicular to the merge direction
+		short thisParallelCompareStartPos; // edge parallel to the merge direction
+		short otherPerpendicularCompareStartPos;
+		short otherParallelCompareStartPos;
+		switch (this.axis)
+		{
+			default: // shouldn't normally happen, just here to make the compiler happy
+			case X:
+				if (mergeDirection == BufferMergeDirectionEnum.EastWest)
+				{
+					thisPerpendicularCompareStartPos = thisZ;
+					thisParallelCompareStartPos = thisX;
+					
+					otherPerpendicularCompareStartPos = otherZ;
+					otherParallelCompareStartPos = otherX;
+				}
+				else //if (mergeDirection == MergeDirection.NorthSouthOrUpDown)
+				{
+					thisPerpendicularCompareStartPos = thisY;
+					thisParallelCompareStartPos = thisZ;
+					
+					otherPerpendicularCompareStartPos = otherY;
+					otherParallelCompareStartPos = otherZ;
+				}
+				break;
+			
+			case Y:
+				if (mergeDirection == BufferMergeDirectionEnum.EastWest)
+				{
+					thisPerpendicularCompareStartPos = thisX;
+					thisParallelCompareStartPos = thisZ;
+					
+					otherPerpendicularCompareStartPos = otherX;
+					otherParallelCompareStartPos = otherZ;
+				}
+				else //if (mergeDirection == MergeDirection.NorthSouthOrUpDown)
+				{
+					thisPerpendicularCompareStartPos = thisZ;
+					thisParallelCompareStartPos = thisY;
+					
+					otherPerpendicularCompareStartPos = otherZ;
+					otherParallelCompareStartPos = otherY;
+				}
+				break;
+			
+			case Z:
+				if (mergeDirection == BufferMergeDirectionEnum.EastWest)
+				{
+					thisPerpendicularCompareStartPos = thisX;
+					thisParallelCompareStartPos = thisZ;
+					
+					otherPerpendicularCompareStartPos = otherX;
+					otherParallelCompareStartPos = otherZ;
+				}
+				else //if (mergeDirection == MergeDirection.NorthSouthOrUpDown)
+				{
+					thisPerpendicularCompareStartPos = thisY;
+					thisParallelCompareStartPos = thisZ;
+					
+					otherPerpendicularCompareStartPos = otherY;
+					otherParallelCompareStartPos = otherZ;
+				}
+				break;
+		}
+		
+		// get the width of this quad in the relevant axis
+		short thisPerpendicularCompareWidth;
+		short thisParallelCompareWidth;
+		short otherPerpendicularCompareWidth;
+		short otherParallelCompareWidth;
+		if (mergeDirection == BufferMergeDirectionEnum.EastWest)
+		{
+			thisPerpendicularCompareWidth = getWidthEastWest(thisPos);
+			thisParallelCompareWidth = getWidthNorthSouthOrUpDown(thisData);
+			
+			otherPerpendicularCompareWidth = getWidthEastWest(otherPos);
+			otherParallelCompareWidth = getWidthNorthSouthOrUpDown(otherData);
+		}
+		else
+		{
+			thisPerpendicularCompareWidth = getWidthNorthSouthOrUpDown(thisData);
+			thisParallelCompareWidth = getWidthEastWest(thisPos);
+			
+			otherPerpendicularCompareWidth = getWidthNorthSouthOrUpDown(otherData);
+			otherParallelCompareWidth = getWidthEastWest(otherPos);
+		}
+		
+		
+		// FIXME: TEMP: Hard limit for width
+		if (thisPerpendicularCompareWidth >= this.maxQuadWidth)
+		{
+			return false;
+		}
+		if (Math.floorDiv(otherPerpendicularCompareStartPos, this.maxQuadWidth)
+				!= Math.floorDiv(thisPerpendicularCompareStartPos, this.maxQuadWidth))
+		{
+			return false;
+		}
+		
+		
+		// check if these quads are adjacent
+		if (thisPerpendicularCompareStartPos + thisPerpendicularCompareWidth < otherPerpendicularCompareStartPos ||
+				thisParallelCompareStartPos != otherParallelCompareStartPos)
+		{
+			// these quads aren't adjacent, they can't be merged
+			return false;
+		}
+		else if (thisPerpendicularCompareStartPos + thisPerpendicularCompareWidth > otherPerpendicularCompareStartPos)
+		{
+			if (thisPerpendicularCompareStartPos < otherPerpendicularCompareStartPos + otherPerpendicularCompareWidth)
+			{
+				// these quads are overlapping, they can't be merged
+				
+				// Overlapping quads appear to render correctly, why are we marking them as errored?
+				// Is it possible the wrong quad will be extended thus the wrong color is rendered?
+				// Or is that the height/depth might be wrong?
+				if (this.markOverlappingQuads)
+				{
+					dataA[indexA] = thisData | (1L << ERROR_SHIFT);
+					dataB[indexB] = otherData | (1L << ERROR_SHIFT);
+				}
+			}
+			
+			return false;
+		}
+		
+		// only merge quads that have the same width edges
+		if (thisParallelCompareWidth != otherParallelCompareWidth)
+		{
+			return false;
+		}
+		
+		// do the quads' color, light, etc. match?
+		// (the width is the only other value stored in the data long)
+		if ((thisData & ~(WIDTH_NORTH_SOUTH_MASK << WIDTH_NORTH_SOUTH_SHIFT)) != (otherData & ~(WIDTH_NORTH_SOUTH_MASK << WIDTH_NORTH_SOUTH_SHIFT)))
+		{
+			// we can only merge identically colored/lit quads
+			return false;
+		}
+		
+		// merge the two quads
+		if (mergeDirection == BufferMergeDirectionEnum.NorthSouthOrUpDown)
+		{
+			short newWidth = (short) (thisPerpendicularCompareWidth + otherPerpendicularCompareWidth);
+			dataA[indexA] = (thisData & ~(WIDTH_NORTH_SOUTH_MASK << WIDTH_NORTH_SOUTH_SHIFT)) | ((newWidth & WIDTH_NORTH_SOUTH_MASK) << WIDTH_NORTH_SOUTH_SHIFT);
+		}
+		else // if (mergeDirection == MergeDirection.EastWest)
+		{
+			short newWidth = (short) (thisPerpendicularCompareWidth + otherPerpendicularCompareWidth);
+			positionsA[indexA] = (thisPos & ~(SHORT_MASK << WIDTH_EAST_WEST_SHIFT)) | ((newWidth & SHORT_MASK) << WIDTH_EAST_WEST_SHIFT);
+		}
+		
+		// merge successful
+		return true;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public int size() { return this.size; }
+	public boolean isEmpty() { return this.size == 0; }
+	
+	public long getPosition(int index) { return this.positions[index]; }
+	public long getData(int index) { return this.data[index]; }
+	
+	
+	
+	//==================//
+	// encode / decode  //
+	//==================//
+	
+	public static long encodePosition(short x, short y, short z, short widthEastWest)
+	{
+		return ((x & SHORT_MASK) << X_SHIFT)
+				| ((y & SHORT_MASK) << Y_SHIFT)
+				| ((z & SHORT_MASK) << Z_SHIFT)
+				| ((widthEastWest & SHORT_MASK) << WIDTH_EAST_WEST_SHIFT);
+	}
+	public static long encodeData(short widthNorthSouthOrUpDown, int color, byte irisBlockMaterialId, byte skyLight, byte blockLight)
+	{
+		return ((widthNorthSouthOrUpDown & WIDTH_NORTH_SOUTH_MASK) << WIDTH_NORTH_SOUTH_SHIFT)
+				| ((color & COLOR_MASK) << COLOR_SHIFT)
+				| ((irisBlockMaterialId & BYTE_MASK) << IRIS_BLOCK_MATERIAL_ID_SHIFT)
+				| ((skyLight & LIGHT_MASK) << SKY_LIGHT_SHIFT)
+				| ((blockLight & LIGHT_MASK) << BLOCK_LIGHT_SHIFT);
+	}
+	
+	public static short getX(long position) { return (short) (position >>> X_SHIFT); }
+	public static short getY(long position) { return (short) (position >>> Y_SHIFT); }
+	public static short getZ(long position) { return (short) (position >>> Z_SHIFT); }
+	public static short getWidthEastWest(long position) { return (short) (position >>> WIDTH_EAST_WEST_SHIFT); }
+	
+	public static boolean hasError(long data) { return (data >>> ERROR_SHIFT) != 0; }
+	public static short getWidthNorthSouthOrUpDown(long data) { return (short) ((data >>> WIDTH_NORTH_SOUTH_SHIFT) & WIDTH_NORTH_SOUTH_MASK); }
+	public static int getColor(long data) { return (int) (data >>> COLOR_SHIFT); }
+	public static byte getIrisBlockMaterialId(long data) { return (byte) (data >>> IRIS_BLOCK_MATERIAL_ID_SHIFT); }
+	public static byte getSkyLight(long data) { return (byte) ((data >>> SKY_LIGHT_SHIFT) & LIGHT_MASK); }
+	public static byte getBlockLight(long data) { return (byte) ((data >>> BLOCK_LIGHT_SHIFT) & LIGHT_MASK); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/** Reusable arrays used while sorting and merging. */
+	private static class SortScratch
+	{
+		/** the lowest 2 bytes of a sort key are always empty */
+		public static final int SKIPPED_BYTE_COUNT = 2;
+		public static final int PASS_COUNT = Long.BYTES - SKIPPED_BYTE_COUNT;
+		
+		public final int[][] histograms = new int[PASS_COUNT][256];
+		
+		public long[] keys = new long[0];
+		public long[] tempKeys = new long[0];
+		public int[] indices = new int[0];
+		public int[] tempIndices = new int[0];
+		
+		public long[] positions = new long[0];
+		public long[] data = new long[0];
+		
+		
+		public void ensureCapacity(int capacity)
+		{
+			if (this.keys.length < capacity)
+			{
+				int newCapacity = Math.max(capacity, this.keys.length * 2);
+				this.keys = new long[newCapacity];
+				this.tempKeys = new long[newCapacity];
+				this.indices = new int[newCapacity];
+				this.tempIndices = new int[newCapacity];
+				this.positions = new long[newCapacity];
+				this.data = new long[newCapacity];
+			}
+		}
+	}
+	
+}
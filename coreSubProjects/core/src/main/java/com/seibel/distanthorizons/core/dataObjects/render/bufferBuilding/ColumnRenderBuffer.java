@@ -21,6 +21,7 @@ package com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding;
 
 import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiRenderParam;
 import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhBlockPos;
@@ -35,6 +36,7 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftCli
 import org.apache.logging.log4j.Logger;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.*;
 
@@ -54,11 +56,24 @@ public class ColumnRenderBuffer implements AutoCloseable
 	public static final int MAX_QUADS_PER_BUFFER = (1024 * 1024 * 1) / QUADS_BYTE_SIZE; // TODO what do these multiples represent?
 	public static final int FULL_SIZED_BUFFER = MAX_QUADS_PER_BUFFER * QUADS_BYTE_SIZE;
 	
+	/** shared between all sections since only one section is uploaded at a time on the render thread */
+	public static final VertexStagingBufferPool STAGING_BUFFER_POOL = new VertexStagingBufferPool(FULL_SIZED_BUFFER, () -> Config.Client.Advanced.GpuBuffers.maxPooledStagingBufferCount.get());
+	
 	
 	
 	
 	public final DhBlockPos pos;
 	
+	/** the highest block Y this buffer's LODs reach, used to check if the buffer is hidden behind closer terrain */
+	public final int maxBlockY;
+	/** 
+	 * every column in this buffer has an opaque surface at or above this block Y,
+	 * {@link Integer#MIN_VALUE} if this buffer can't hide anything behind it 
+	 * 
+	 * @see ColumnRenderSource#getMinSurfaceBlockY() 
+	 */
+	public final int minSurfaceBlockY;
+	
 	public boolean buffersUploaded = false;
 	
 	private GLVertexBuffer[] vbos;
@@ -70,9 +85,13 @@ public class ColumnRenderBuffer implements AutoCloseable
 	// constructors //
 	//==============//
 	
-	public ColumnRenderBuffer(DhBlockPos pos)
+	/** this buffer will never be hidden behind, or hide, other buffers */
+	public ColumnRenderBuffer(DhBlockPos pos) { this(pos, Integer.MAX_VALUE, Integer.MIN_VALUE); }
+	public ColumnRenderBuffer(DhBlockPos pos, int maxBlockY, int minSurfaceBlockY)
 	{
 		this.pos = pos;
+		this.maxBlockY = maxBlockY;
+		this.minSurfaceBlockY = minSurfaceBlockY;
 		this.vbos = new GLVertexBuffer[0];
 		this.vbosTransparent = new GLVertexBuffer[0];
 	}
@@ -87,6 +106,14 @@ public class ColumnRenderBuffer implements AutoCloseable
 	
 	/** Should be run on a DH thread. */
 	public void uploadBuffer(LodQuadBuilder builder, EDhApiGpuUploadMethod gpuUploadMethod) throws InterruptedException
+	{ this.uploadOnRenderThread(() -> this.uploadBuffersUsingUploadMethod(builder, gpuUploadMethod), "builder [" + builder + "]"); }
+	/**
+	 * Uploads vertex data that was already built, IE by {@link LodQuadBuilder#putOpaqueVertexData}. <br>
+	 * Should be run on a DH thread.
+	 */
+	public void uploadBuffer(ByteBuffer opaqueVertexData, ByteBuffer transparentVertexData, EDhApiGpuUploadMethod gpuUploadMethod) throws InterruptedException
+	{ this.uploadOnRenderThread(() -> this.uploadVertexDataUsingUploadMethod(opaqueVertexData, transparentVertexData, gpuUploadMethod), "vertex data for pos [" + this.pos + "]"); }
+	private void uploadOnRenderThread(IUploadFunc uploadFunc, String uploadDescription) throws InterruptedException
 	{
 		LodUtil.assertTrue(Thread.currentThread().getName().startsWith(ThreadUtil.THREAD_NAME_PREFIX), "Buffer uploading needs to be done on a DH thread to prevent locking up any MC threads.");
 		
@@ -97,7 +124,7 @@ public class ColumnRenderBuffer implements AutoCloseable
 		{
 			try
 			{
-				this.uploadBuffersUsingUploadMethod(builder, gpuUploadMethod);
+				uploadFunc.upload();
 				uploadFuture.complete(null);
 			}
 			catch (InterruptedException e)
@@ -114,13 +141,13 @@ public class ColumnRenderBuffer implements AutoCloseable
 		}
 		catch (ExecutionException e)
 		{
-			LOGGER.warn("Error uploading builder ["+builder+"] synchronously. Error: "+e.getMessage(), e);
+			LOGGER.warn("Error uploading "+uploadDescription+" synchronously. Error: "+e.getMessage(), e);
 		}
 		catch (TimeoutException e)
 		{
 			// timeouts can be ignored because it generally means the
 			// MC Render thread executor was closed 
-			//LOGGER.warn("Error uploading builder ["+builder+"] synchronously. Error: "+e.getMessage(), e);
+			//LOGGER.warn("Error uploading "+uploadDescription+" synchronously. Error: "+e.getMessage(), e);
 		}
 	}
 	private void uploadBuffersUsingUploadMethod(LodQuadBuilder builder, EDhApiGpuUploadMethod gpuUploadMethod) throws InterruptedException
@@ -175,13 +202,80 @@ public class ColumnRenderBuffer implements AutoCloseable
 		}
 	}
 	
-	private void uploadBuffersDirect(LodQuadBuilder builder, EDhApiGpuUploadMethod method) throws InterruptedException
+	private void uploadVertexDataUsingUploadMethod(ByteBuffer opaqueVertexData, ByteBuffer transparentVertexData, EDhApiGpuUploadMethod gpuUploadMethod) throws InterruptedException
 	{
-		this.vbos = ColumnRenderBufferBuilder.resizeBuffer(this.vbos, builder.getCurrentNeededOpaqueVertexBufferCount());
-		uploadBuffersDirect(this.vbos, builder.makeOpaqueVertexBuffers(), method);
+		ArrayList<ByteBuffer> opaqueBufferList = splitVertexData(opaqueVertexData);
+		ArrayList<ByteBuffer> transparentBufferList = splitVertexData(transparentVertexData);
 		
-		this.vbosTransparent = ColumnRenderBufferBuilder.resizeBuffer(this.vbosTransparent, builder.getCurrentNeededTransparentVertexBufferCount());
-		uploadBuffersDirect(this.vbosTransparent, builder.makeTransparentVertexBuffers(), method);
+		this.vbos = ColumnRenderBufferBuilder.resizeBuffer(this.vbos, opaqueBufferList.size());
+		this.vbosTransparent = ColumnRenderBufferBuilder.resizeBuffer(this.vbosTransparent, transparentBufferList.size());
+		if (gpuUploadMethod.useEarlyMapping)
+		{
+			uploadVertexDataMapped(this.vbos, opaqueBufferList, gpuUploadMethod);
+			uploadVertexDataMapped(this.vbosTransparent, transparentBufferList, gpuUploadMethod);
+		}
+		else
+		{
+			uploadBuffersDirect(this.vbos, opaqueBufferList.iterator(), gpuUploadMethod);
+			uploadBuffersDirect(this.vbosTransparent, transparentBufferList.iterator(), gpuUploadMethod);
+		}
+		
+		this.buffersUploaded = true;
+	}
+	/** @return the given data split into {@link ColumnRenderBuffer#FULL_SIZED_BUFFER} sized pieces, one for each VBO */
+	private static ArrayList<ByteBuffer> splitVertexData(ByteBuffer vertexData)
+	{
+		ArrayList<ByteBuffer> bufferList = new ArrayList<>();
+		for (int start = vertexData.position(); start < vertexData.limit(); start += FULL_SIZED_BUFFER)
+		{
+			ByteBuffer buffer = vertexData.duplicate();
+			buffer.position(start);
+			buffer.limit(Math.min(start + FULL_SIZED_BUFFER, vertexData.limit()));
+			bufferList.add(buffer);
+		}
+		return bufferList;
+	}
+	private static void uploadVertexDataMapped(GLVertexBuffer[] vbos, ArrayList<ByteBuffer> bufferList, EDhApiGpuUploadMethod method)
+	{
+		for (int i = 0; i < vbos.length; i++)
+		{
+			if (vbos[i] == null)
+			{
+				vbos[i] = new GLVertexBuffer(method.useBufferStorage);
+			}
+			
+			ByteBuffer vertexData = bufferList.get(i);
+			int byteSize = vertexData.remaining();
+			ByteBuffer bb = vbos[i].mapBuffer(byteSize, method, FULL_SIZED_BUFFER);
+			if (bb == null)
+			{
+				throw new NullPointerException("mapBuffer returned null");
+			}
+			
+			bb.clear();
+			bb.put(vertexData);
+			vbos[i].unmapBuffer();
+			vbos[i].setVertexCount(byteSize / LodUtil.LOD_VERTEX_FORMAT.getByteSize());
+		}
+	}
+	
+	private void uploadBuffersDirect(LodQuadBuilder builder, EDhApiGpuUploadMethod method) throws InterruptedException
+	{
+		// each upload copies the staging buffer before returning,
+		// so the same buffer can be used for every VBO
+		ByteBuffer stagingBuffer = STAGING_BUFFER_POOL.getPooledBuffer();
+		try
+		{
+			this.vbos = ColumnRenderBufferBuilder.resizeBuffer(this.vbos, builder.getCurrentNeededOpaqueVertexBufferCount());
+			uploadBuffersDirect(this.vbos, builder.makeOpaqueVertexBuffers(stagingBuffer), method);
+			
+			this.vbosTransparent = ColumnRenderBufferBuilder.resizeBuffer(this.vbosTransparent, builder.getCurrentNeededTransparentVertexBufferCount());
+			uploadBuffersDirect(this.vbosTransparent, builder.makeTransparentVertexBuffers(stagingBuffer), method);
+		}
+		finally
+		{
+			STAGING_BUFFER_POOL.returnPooledBuffer(stagingBuffer);
+		}
 	}
 	private static void uploadBuffersDirect(GLVertexBuffer[] vbos, Iterator<ByteBuffer> iter, EDhApiGpuUploadMethod method) throws InterruptedException
 	{
@@ -394,4 +488,16 @@ public class ColumnRenderBuffer implements AutoCloseable
 		});
 	}
 	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	@FunctionalInterface
+	private interface IUploadFunc
+	{
+		void upload() throws InterruptedException;
+	}
+	
 }
@@ -22,7 +22,9 @@ package com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding;
 import com.seibel.distanthorizons.api.enums.rendering.EDhApiDebugRendering;
 import com.seibel.distanthorizons.core.enums.EDhDirection;
 import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
 import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.file.renderCache.RenderDataCache;
 import com.seibel.distanthorizons.core.level.IDhClientLevel;
 import com.seibel.distanthorizons.core.logging.ConfigBasedLogger;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
@@ -35,12 +37,16 @@ import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
 import com.seibel.distanthorizons.core.util.objects.UncheckedInterruptedException;
 import com.seibel.distanthorizons.core.dataObjects.render.columnViews.ColumnArrayView;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import com.seibel.distanthorizons.core.util.threading.WorkerThreadScheduler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
 
 /**
  * Used to populate the buffers in a {@link ColumnRenderSource} object.
@@ -66,11 +72,32 @@ public class ColumnRenderBufferBuilder
 	
 	public static CompletableFuture<ColumnRenderBuffer> buildAndUploadBuffersAsync(
 			IDhClientLevel clientLevel,
-			ColumnRenderSource renderSource, ColumnRenderSource[] adjData)
+			ColumnRenderSource renderSource, ColumnRenderEdge[] adjEdges)
+	{ return buildAndUploadBuffersAsync(clientLevel, renderSource, adjEdges, null, null, null, null); }
+	/**
+	 * @param adjEdges the edge of each adjacent section that touches this section, 
+	 *                 indexed by the direction of the adjacent section's {@link EDhDirection#ordinal()} - 2.
+	 *                 Null values will be treated as if nothing is adjacent.
+	 * @param previousUnmergedQuads the column tracked quads from a previous build of this same section.
+	 *                              If null every column will be built.
+	 * @param columnsToRebuild which columns need their quads rebuilt, any other columns will be copied from previousUnmergedQuads.
+	 *                         If null every column will be built.
+	 * @param unmergedQuadsConsumer if not null, the builder will track which quads belong to each column
+	 *                              and a copy of the quads will be passed to this consumer before they're merged
+	 *                              so they can be used for a later incremental build.
+	 * @param mergedQuadsConsumer if not null, the builder will be passed to this consumer on the builder thread 
+	 *                            after its quads are merged but before they're uploaded, 
+	 *                            IE so the vertex data can be saved to the {@link RenderDataCache}.
+	 */
+	public static CompletableFuture<ColumnRenderBuffer> buildAndUploadBuffersAsync(
+			IDhClientLevel clientLevel,
+			ColumnRenderSource renderSource, ColumnRenderEdge[] adjEdges,
+			@Nullable LodQuadBuilder previousUnmergedQuads, @Nullable BitSet columnsToRebuild,
+			@Nullable Consumer<LodQuadBuilder> unmergedQuadsConsumer, @Nullable Consumer<LodQuadBuilder> mergedQuadsConsumer)
 	{
-		ThreadPoolExecutor bufferBuilderExecutor = ThreadPoolUtil.getBufferBuilderExecutor();
+		WorkerThreadScheduler.TaskTypeExecutor bufferBuilderExecutor = ThreadPoolUtil.getBufferBuilderExecutor();
 		ThreadPoolExecutor bufferUploaderExecutor = ThreadPoolUtil.getBufferUploaderExecutor();
-		if ((bufferBuilderExecutor == null || bufferBuilderExecutor.isTerminated()) ||
+		if ((bufferBuilderExecutor == null || bufferBuilderExecutor.isShutdown()) ||
 			(bufferUploaderExecutor == null || bufferUploaderExecutor.isTerminated()))
 		{
 			// one or more of the thread pools has been shut down
@@ -81,7 +108,7 @@ public class ColumnRenderBufferBuilder
 		
 		try
 		{
-			return CompletableFuture.supplyAsync(() ->
+			return bufferBuilderExecutor.supplyAsync(WorkerThreadScheduler.getPriorityForSectionPos(renderSource.pos), () ->
 				{
 					try
 					{
@@ -108,8 +135,17 @@ public class ColumnRenderBufferBuilder
 						
 						long builderStartTime = System.currentTimeMillis();
 						
-						LodQuadBuilder builder = new LodQuadBuilder(enableSkyLightCulling, (short) (skyLightCullingBelow - clientLevel.getMinY()), enableTransparency, clientLevel.getClientLevelWrapper());
-						makeLodRenderData(builder, renderSource, adjData);
+						LodQuadBuilder builder = new LodQuadBuilder(enableSkyLightCulling, (short) (skyLightCullingBelow - clientLevel.getMinY()), enableTransparency, clientLevel.getClientLevelWrapper(), unmergedQuadsConsumer != null);
+						makeLodRenderData(builder, renderSource, adjEdges, previousUnmergedQuads, columnsToRebuild);
+						if (unmergedQuadsConsumer != null)
+						{
+							unmergedQuadsConsumer.accept(builder.createUnmergedCopy());
+						}
+						builder.finalizeData();
+						if (mergedQuadsConsumer != null)
+						{
+							mergedQuadsConsumer.accept(builder);
+						}
 						
 						long builderEndTime = System.currentTimeMillis();
 						long buildMs = builderEndTime - builderStartTime;
@@ -126,45 +162,106 @@ public class ColumnRenderBufferBuilder
 						LOGGER.error("\"LodNodeBufferBuilder\" was unable to build quads: ", e3);
 						throw e3;
 					}
-				}, bufferBuilderExecutor)
-				.thenApplyAsync((quadBuilder) ->
-				{
-					try
-					{
-						ColumnRenderBuffer buffer = new ColumnRenderBuffer(new DhBlockPos(DhSectionPos.getMinCornerBlockX(renderSource.pos), clientLevel.getMinY(), DhSectionPos.getMinCornerBlockZ(renderSource.pos)));
-						try
-						{
-							buffer.uploadBuffer(quadBuilder, GLProxy.getInstance().getGpuUploadMethod());
-							LodUtil.assertTrue(buffer.buffersUploaded);
-							return buffer;
-						}
-						catch (Exception e)
-						{
-							buffer.close();
-							throw e;
-						}
-					}
-					catch (InterruptedException e)
-					{
-						throw UncheckedInterruptedException.convert(e);
-					}
-					catch (Throwable e3)
-					{
-						LOGGER.error("LodNodeBufferBuilder was unable to upload buffer: " + e3.getMessage(), e3);
-						throw e3;
-					}
-				}, bufferUploaderExecutor);
+				})
+				.thenApplyAsync((quadBuilder) -> 
+					// the height bounds are used for occlusion culling
+					createAndUploadBuffer(clientLevel, renderSource.pos, renderSource.getMaxBlockY(), renderSource.getMinSurfaceBlockY(),
+						(buffer) -> buffer.uploadBuffer(quadBuilder, GLProxy.getInstance().getGpuUploadMethod())),
+					bufferUploaderExecutor);
 		}
 		catch (RejectedExecutionException ignore) 
 		{
-			// the thread pool was probably shut down because it's size is being changed, just wait a sec and it should be back
+			// can only happen if the executor was shut down, IE the level is being unloaded
 			
 			CompletableFuture<ColumnRenderBuffer> future = new CompletableFuture<>();
 			future.cancel(true);
 			return future;
 		}
 	}
-	private static void makeLodRenderData(LodQuadBuilder quadBuilder, ColumnRenderSource renderSource, ColumnRenderSource[] adjRegions)
+	/** 
+	 * Uploads vertex data that was built previously, skipping the quad building entirely. <br>
+	 * The cached data is closed once the upload finishes (or is cancelled), so it shouldn't be used afterward.
+	 */
+	public static CompletableFuture<ColumnRenderBuffer> uploadCachedBuffersAsync(IDhClientLevel clientLevel, long pos, RenderDataCache.CachedRenderData cachedRenderData)
+	{
+		ThreadPoolExecutor bufferUploaderExecutor = ThreadPoolUtil.getBufferUploaderExecutor();
+		if (bufferUploaderExecutor == null || bufferUploaderExecutor.isTerminated())
+		{
+			cachedRenderData.close();
+			
+			CompletableFuture<ColumnRenderBuffer> future = new CompletableFuture<>();
+			future.cancel(true);
+			return future;
+		}
+		
+		try
+		{
+			return CompletableFuture.supplyAsync(() ->
+			{
+				// the upload finishes before returning, so the cached data's buffer can be re-used afterward
+				try
+				{
+					return createAndUploadBuffer(clientLevel, pos, cachedRenderData.maxBlockY, cachedRenderData.minSurfaceBlockY,
+							(buffer) -> buffer.uploadBuffer(cachedRenderData.opaqueVertexData, cachedRenderData.transparentVertexData, GLProxy.getInstance().getGpuUploadMethod()));
+				}
+				finally
+				{
+					cachedRenderData.close();
+				}
+			}, bufferUploaderExecutor);
+		}
+		catch (RejectedExecutionException ignore)
+		{
+			cachedRenderData.close();
+			
+			CompletableFuture<ColumnRenderBuffer> future = new CompletableFuture<>();
+			future.cancel(true);
+			return future;
+		}
+	}
+	private static ColumnRenderBuffer createAndUploadBuffer(IDhClientLevel clientLevel, long pos, int maxBlockY, int minSurfaceBlockY, IBufferUploadFunc uploadFunc)
+	{
+		try
+		{
+			ColumnRenderBuffer buffer = new ColumnRenderBuffer(
+					new DhBlockPos(DhSectionPos.getMinCornerBlockX(pos), clientLevel.getMinY(), DhSectionPos.getMinCornerBlockZ(pos)),
+					maxBlockY, minSurfaceBlockY);
+			try
+			{
+				uploadFunc.upload(buffer);
+				LodUtil.assertTrue(buffer.buffersUploaded);
+				return buffer;
+			}
+			catch (Exception e)
+			{
+				buffer.close();
+				throw e;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			throw UncheckedInterruptedException.convert(e);
+		}
+		catch (Throwable e3)
+		{
+			LOGGER.error("LodNodeBufferBuilder was unable to upload buffer: " + e3.getMessage(), e3);
+			throw e3;
+		}
+	}
+	/**
+	 * Adds the quads for each column in the given render source to the quadBuilder. <br>
+	 * Note: this doesn't merge the quads, {@link LodQuadBuilder#finalizeData()} should be called afterward.
+	 *
+	 * @param adjEdges the edge of each adjacent section that touches this section,
+	 *                 indexed by the direction of the adjacent section's {@link EDhDirection#ordinal()} - 2. <br>
+	 *                 IE the north index should contain the north section's south edge.
+	 * @param previousUnmergedQuads if not null, any column not in columnsToRebuild will be copied from this builder instead of being rebuilt.
+	 *                              Both this and the quadBuilder must be tracking columns.
+	 * @param columnsToRebuild indexed by (relX * {@link ColumnRenderSource#SECTION_SIZE}) + relZ, if null every column will be built.
+	 */
+	public static void makeLodRenderData(
+			LodQuadBuilder quadBuilder, ColumnRenderSource renderSource, ColumnRenderEdge[] adjEdges,
+			@Nullable LodQuadBuilder previousUnmergedQuads, @Nullable BitSet columnsToRebuild)
 	{
 		// Variable initialization
 		EDhApiDebugRendering debugMode = Config.Client.Advanced.Debugging.debugRendering.get();
@@ -203,6 +300,16 @@ public class ColumnRenderBufferBuilder
 				
 				UncheckedInterruptedException.throwIfInterrupted();
 				
+				int columnIndex = (x * ColumnRenderSource.SECTION_SIZE) + z;
+				if (previousUnmergedQuads != null
+					&& columnsToRebuild != null && !columnsToRebuild.get(columnIndex))
+				{
+					// this column hasn't changed, the old quads can be re-used
+					quadBuilder.copyColumnQuads(previousUnmergedQuads, columnIndex);
+					continue;
+				}
+				quadBuilder.startColumn(columnIndex);
+				
 				ColumnArrayView columnRenderData = renderSource.getVerticalDataPointView(x, z);
 				if (columnRenderData.size() == 0
 						|| !RenderDataPointUtil.doesDataPointExist(columnRenderData.get(0))
@@ -240,63 +347,29 @@ public class ColumnRenderBufferBuilder
 								(xAdj < 0 || xAdj >= ColumnRenderSource.SECTION_SIZE) ||
 										(zAdj < 0 || zAdj >= ColumnRenderSource.SECTION_SIZE);
 						
-						ColumnRenderSource adjRenderSource;
-						byte adjDetailLevel;
-						
-						//we check if the detail of the adjPos is equal to the correct one (region border fix)
-						//or if the detail is wrong by 1 value (region+circle border fix)
 						if (isCrossRegionBoundary)
 						{
-							//we compute at which detail that position should be rendered
-							adjRenderSource = adjRegions[lodDirection.ordinal() - 2];
-							if (adjRenderSource == null)
+							// only the adjacent section's edge is available
+							ColumnRenderEdge adjEdge = adjEdges[lodDirection.ordinal() - 2];
+							if (adjEdge == null)
 							{
 								continue;
 							}
 							
-							adjDetailLevel = adjRenderSource.getDataDetailLevel();
-							if (adjDetailLevel != detailLevel)
+							if (adjEdge.getDataDetailLevel() != detailLevel)
 							{
+								// adjacent sections are always the same detail level
 								//TODO: Implement this
+								continue;
 							}
-							else
-							{
-								if (xAdj < 0)
-									xAdj += ColumnRenderSource.SECTION_SIZE;
-								
-								if (zAdj < 0)
-									zAdj += ColumnRenderSource.SECTION_SIZE;
-								
-								if (xAdj >= ColumnRenderSource.SECTION_SIZE)
-									xAdj -= ColumnRenderSource.SECTION_SIZE;
-								
-								if (zAdj >= ColumnRenderSource.SECTION_SIZE)
-									zAdj -= ColumnRenderSource.SECTION_SIZE;
-							}
-						}
-						else
-						{
-							adjRenderSource = renderSource;
-							adjDetailLevel = detailLevel;
-						}
-						
-						if (adjDetailLevel < detailLevel - 1 || adjDetailLevel > detailLevel + 1)
-						{
-							continue;
-						}
-						
-						if (adjDetailLevel == detailLevel || adjDetailLevel > detailLevel)
-						{
+							
 							adjColumnViews[lodDirection.ordinal() - 2] = new ColumnArrayView[1];
-							adjColumnViews[lodDirection.ordinal() - 2][0] = adjRenderSource.getVerticalDataPointView(xAdj, zAdj);
+							adjColumnViews[lodDirection.ordinal() - 2][0] = adjEdge.getVerticalDataPointView(lodDirection.getAxis() == EDhDirection.Axis.X ? zAdj : xAdj);
 						}
 						else
 						{
-							adjColumnViews[lodDirection.ordinal() - 2] = new ColumnArrayView[2];
-							adjColumnViews[lodDirection.ordinal() - 2][0] = adjRenderSource.getVerticalDataPointView(xAdj, zAdj);
-							adjColumnViews[lodDirection.ordinal() - 2][1] = adjRenderSource.getVerticalDataPointView(
-									xAdj + (lodDirection.getAxis() == EDhDirection.Axis.X ? 0 : 1),
-									zAdj + (lodDirection.getAxis() == EDhDirection.Axis.Z ? 0 : 1));
+							adjColumnViews[lodDirection.ordinal() - 2] = new ColumnArrayView[1];
+							adjColumnViews[lodDirection.ordinal() - 2][0] = renderSource.getVerticalDataPointView(xAdj, zAdj);
 						}
 					}
 					catch (RuntimeException e)
@@ -334,8 +407,6 @@ public class ColumnRenderBufferBuilder
 				
 			}// for z
 		}// for x
-		
-		quadBuilder.finalizeData();
 	}
 	
 	
@@ -366,4 +437,16 @@ public class ColumnRenderBufferBuilder
 		return newVbos;
 	}
 	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	@FunctionalInterface
+	private interface IBufferUploadFunc
+	{
+		void upload(ColumnRenderBuffer buffer) throws InterruptedException;
+	}
+	
 }
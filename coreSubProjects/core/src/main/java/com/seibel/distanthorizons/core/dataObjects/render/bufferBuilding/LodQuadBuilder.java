@@ -26,6 +26,7 @@ import java.util.*;
 import com.seibel.distanthorizons.api.enums.config.EDhApiGrassSideRendering;
 import com.seibel.distanthorizons.api.enums.rendering.EDhApiDebugRendering;
 import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.enums.EDhDirection;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
@@ -50,13 +51,15 @@ public class LodQuadBuilder
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	private static final IMinecraftClientWrapper MC = SingletonInjector.INSTANCE.get(IMinecraftClientWrapper.class);
 	
+	private static final int COLUMN_COUNT = ColumnRenderSource.SECTION_SIZE * ColumnRenderSource.SECTION_SIZE;
+	/** 6 opaque and 6 transparent lists */
+	private static final int QUAD_LIST_COUNT = 12;
+	
 	public final boolean skipQuadsWithZeroSkylight;
 	public final short skyLightCullingBelow;
 	
-	@SuppressWarnings("unchecked")
-	private final ArrayList<BufferQuad>[] opaqueQuads = (ArrayList<BufferQuad>[]) new ArrayList[6];
-	@SuppressWarnings("unchecked")
-	private final ArrayList<BufferQuad>[] transparentQuads = (ArrayList<BufferQuad>[]) new ArrayList[6];
+	private final BufferQuadList[] opaqueQuads = new BufferQuadList[6];
+	private final BufferQuadList[] transparentQuads = new BufferQuadList[6];
 	
 	private final boolean doTransparency;
 	private final IClientLevelWrapper clientLevelWrapper;
@@ -64,6 +67,15 @@ public class LodQuadBuilder
 	private final EDhApiDebugRendering debugRenderingMode;
 	private final EDhApiGrassSideRendering grassSideRenderingMode;
 	
+	/**
+	 * Stores the index each column's quads start at in every quad list,
+	 * indexed as: (columnIndex * {@link LodQuadBuilder#QUAD_LIST_COUNT}) + listIndex <br>
+	 * Will be null if column tracking is disabled.
+	 *
+	 * @see LodQuadBuilder#startColumn(int)
+	 */
+	private final int[] columnQuadStartIndices;
+	
 	
 	public static final int[][][] DIRECTION_VERTEX_IBO_QUAD = new int[][][]
 			{
@@ -123,12 +135,28 @@ public class LodQuadBuilder
 	//=============//
 	
 	public LodQuadBuilder(boolean enableSkylightCulling, short skyLightCullingBelow, boolean doTransparency, IClientLevelWrapper clientLevelWrapper)
+	{ this(enableSkylightCulling, skyLightCullingBelow, doTransparency, clientLevelWrapper, false); }
+	/**
+	 * @param trackColumnQuads if true this builder will record which quads were added for each column,
+	 *                         allowing them to be copied into a later builder via {@link LodQuadBuilder#copyColumnQuads}.
+	 */
+	public LodQuadBuilder(boolean enableSkylightCulling, short skyLightCullingBelow, boolean doTransparency, IClientLevelWrapper clientLevelWrapper, boolean trackColumnQuads)
 	{
 		this.doTransparency = doTransparency;
+		
+		// quad width should only be limited when earth curvature is enabled
+		int maxQuadWidth = BufferQuadList.NORMAL_MAX_QUAD_WIDTH;
+		if (Config.Client.Advanced.Graphics.AdvancedGraphics.earthCurveRatio.get() != 0)
+		{
+			maxQuadWidth = BufferQuadList.MAX_QUAD_WIDTH_FOR_EARTH_CURVATURE;
+		}
+		boolean markOverlappingQuads = Config.Client.Advanced.Debugging.showOverlappingQuadErrors.get();
+		
+		EDhDirection[] directions = EDhDirection.values();
 		for (int i = 0; i < 6; i++)
 		{
-			this.opaqueQuads[i] = new ArrayList<>();
-			this.transparentQuads[i] = new ArrayList<>();
+			this.opaqueQuads[i] = new BufferQuadList(directions[i], maxQuadWidth, markOverlappingQuads);
+			this.transparentQuads[i] = new BufferQuadList(directions[i], maxQuadWidth, markOverlappingQuads);
 		}
 		
 		this.skipQuadsWithZeroSkylight = enableSkylightCulling;
@@ -138,6 +166,27 @@ public class LodQuadBuilder
 		this.debugRenderingMode = Config.Client.Advanced.Debugging.debugRendering.get();
 		this.grassSideRenderingMode = Config.Client.Advanced.Graphics.AdvancedGraphics.grassSideRendering.get();
 		
+		this.columnQuadStartIndices = trackColumnQuads ? new int[COLUMN_COUNT * QUAD_LIST_COUNT] : null;
+	}
+	/** copy constructor, used by {@link LodQuadBuilder#createUnmergedCopy()} */
+	private LodQuadBuilder(LodQuadBuilder source)
+	{
+		this.doTransparency = source.doTransparency;
+		for (int i = 0; i < 6; i++)
+		{
+			this.opaqueQuads[i] = source.opaqueQuads[i].copy();
+			this.transparentQuads[i] = source.transparentQuads[i].copy();
+		}
+		
+		this.skipQuadsWithZeroSkylight = source.skipQuadsWithZeroSkylight;
+		this.skyLightCullingBelow = source.skyLightCullingBelow;
+		this.clientLevelWrapper = source.clientLevelWrapper;
+		
+		this.debugRenderingMode = source.debugRenderingMode;
+		this.grassSideRenderingMode = source.grassSideRenderingMode;
+		
+		this.columnQuadStartIndices = (source.columnQuadStartIndices != null) ? source.columnQuadStartIndices.clone() : null;
+		this.premergeCount = source.premergeCount;
 	}
 	
 	
@@ -161,19 +210,11 @@ public class LodQuadBuilder
 			return;
 		}
 		
-		BufferQuad quad = new BufferQuad(x, y, z, widthEastWest, widthNorthSouthOrUpDown, color, irisBlockMaterialId, skyLight, blockLight, dir);
-		ArrayList<BufferQuad> quadList = (this.doTransparency && ColorUtil.getAlpha(color) < 255) ? this.transparentQuads[dir.ordinal()] : this.opaqueQuads[dir.ordinal()];
-		if (!quadList.isEmpty() &&
-				(
-						quadList.get(quadList.size() - 1).tryMerge(quad, BufferMergeDirectionEnum.EastWest)
-								|| quadList.get(quadList.size() - 1).tryMerge(quad, BufferMergeDirectionEnum.NorthSouthOrUpDown))
-		)
+		BufferQuadList quadList = (this.doTransparency && ColorUtil.getAlpha(color) < 255) ? this.transparentQuads[dir.ordinal()] : this.opaqueQuads[dir.ordinal()];
+		if (quadList.add(x, y, z, widthEastWest, widthNorthSouthOrUpDown, color, irisBlockMaterialId, skyLight, blockLight))
 		{
 			this.premergeCount++;
-			return;
 		}
-		
-		quadList.add(quad);
 	}
 	
 	// XZ
@@ -185,41 +226,29 @@ public class LodQuadBuilder
 			return;
 		}
 		
-		BufferQuad quad = new BufferQuad(x, maxY, z, widthEastWest, widthNorthSouthOrUpDown, color, irisBlockMaterialId, skylight, blocklight, EDhDirection.UP);
 		boolean isTransparent = (this.doTransparency && ColorUtil.getAlpha(color) < 255);
-		ArrayList<BufferQuad> quadList = isTransparent ? this.transparentQuads[EDhDirection.UP.ordinal()] : this.opaqueQuads[EDhDirection.UP.ordinal()];
-		
+		BufferQuadList quadList = isTransparent ? this.transparentQuads[EDhDirection.UP.ordinal()] : this.opaqueQuads[EDhDirection.UP.ordinal()];
 		
-		// attempt to merge this quad with adjacent ones
-		if (!quadList.isEmpty() &&
-				(
-					quadList.get(quadList.size() - 1).tryMerge(quad, BufferMergeDirectionEnum.EastWest)
-					|| quadList.get(quadList.size() - 1).tryMerge(quad, BufferMergeDirectionEnum.NorthSouthOrUpDown))
-			)
+		// the list will attempt to merge this quad with adjacent ones
+		if (quadList.add(x, maxY, z, widthEastWest, widthNorthSouthOrUpDown, color, irisBlockMaterialId, skylight, blocklight))
 		{
 			this.premergeCount++;
-			return;
 		}
-		
-		quadList.add(quad);
 	}
 	
 	public void addQuadDown(short x, short y, short z, short width, short wz, int color, byte irisBlockMaterialId, byte skylight, byte blocklight)
 	{
-		if (skipQuadsWithZeroSkylight && skylight == 0 && y < skyLightCullingBelow)
-			return;
-		BufferQuad quad = new BufferQuad(x, y, z, width, wz, color, irisBlockMaterialId, skylight, blocklight, EDhDirection.DOWN);
-		ArrayList<BufferQuad> qs = (doTransparency && ColorUtil.getAlpha(color) < 255)
-				? transparentQuads[EDhDirection.DOWN.ordinal()] : opaqueQuads[EDhDirection.DOWN.ordinal()];
-		if (!qs.isEmpty() &&
-				(qs.get(qs.size() - 1).tryMerge(quad, BufferMergeDirectionEnum.EastWest)
-						|| qs.get(qs.size() - 1).tryMerge(quad, BufferMergeDirectionEnum.NorthSouthOrUpDown))
-		)
+		if (this.skipQuadsWithZeroSkylight && skylight == 0 && y < this.skyLightCullingBelow)
 		{
-			premergeCount++;
 			return;
 		}
-		qs.add(quad);
+		
+		BufferQuadList quadList = (this.doTransparency && ColorUtil.getAlpha(color) < 255)
+				? this.transparentQuads[EDhDirection.DOWN.ordinal()] : this.opaqueQuads[EDhDirection.DOWN.ordinal()];
+		if (quadList.add(x, y, z, width, wz, color, irisBlockMaterialId, skylight, blocklight))
+		{
+			this.premergeCount++;
+		}
 	}
 	
 	
@@ -228,13 +257,24 @@ public class LodQuadBuilder
 	// add vertices //
 	//==============//
 	
-	private void putQuad(ByteBuffer bb, BufferQuad quad)
+	private void putQuad(ByteBuffer bb, BufferQuadList quadList, int quadIndex)
 	{
-		int[][] quadBase = DIRECTION_VERTEX_IBO_QUAD[quad.direction.ordinal()];
-		short widthEastWest = quad.widthEastWest;
-		short widthNorthSouth = quad.widthNorthSouthOrUpDown;
-		byte normalIndex = (byte) quad.direction.ordinal();
-		EDhDirection.Axis axis = quad.direction.getAxis();
+		long quadPos = quadList.getPosition(quadIndex);
+		long quadData = quadList.getData(quadIndex);
+		
+		EDhDirection direction = quadList.direction;
+		int[][] quadBase = DIRECTION_VERTEX_IBO_QUAD[direction.ordinal()];
+		short widthEastWest = BufferQuadList.getWidthEastWest(quadPos);
+		short widthNorthSouth = BufferQuadList.getWidthNorthSouthOrUpDown(quadData);
+		byte normalIndex = (byte) direction.ordinal();
+		EDhDirection.Axis axis = direction.getAxis();
+		
+		short quadX = BufferQuadList.getX(quadPos);
+		short quadY = BufferQuadList.getY(quadPos);
+		short quadZ = BufferQuadList.getZ(quadPos);
+		byte irisBlockMaterialId = BufferQuadList.getIrisBlockMaterialId(quadData);
+		boolean hasError = BufferQuadList.hasError(quadData);
+		
 		for (int i = 0; i < quadBase.length; i++)
 		{
 			short dx, dy, dz;
@@ -270,10 +310,10 @@ public class LodQuadBuilder
 			}
 			
 			
-			int color = quad.color;
+			int color = BufferQuadList.getColor(quadData);
 			
 			// use custom side color logic for grass blocks
-			if (quad.irisBlockMaterialId == IBlockStateWrapper.IrisBlockMaterial.GRASS)
+			if (irisBlockMaterialId == IBlockStateWrapper.IrisBlockMaterial.GRASS)
 			{
 				// only use dirt colors if debug rendering is disabled
 				if (this.debugRenderingMode == EDhApiDebugRendering.OFF)
@@ -282,18 +322,18 @@ public class LodQuadBuilder
 					if (this.grassSideRenderingMode != EDhApiGrassSideRendering.AS_GRASS)
 					{
 						// only change the vertex color if it's on the side or bottom
-						if (quad.direction.getAxis().isHorizontal() || quad.direction == EDhDirection.DOWN)
+						if (axis.isHorizontal() || direction == EDhDirection.DOWN)
 						{
 							if (this.grassSideRenderingMode == EDhApiGrassSideRendering.AS_DIRT
 								// if we want the color to fade, only apply the dirt color to the bottom vertices
 								|| (this.grassSideRenderingMode == EDhApiGrassSideRendering.FADE_TO_DIRT && quadBase[i][1] == 0)
 								// always render the bottom as dirt
-								|| quad.direction == EDhDirection.DOWN)
+								|| direction == EDhDirection.DOWN)
 							{
 								// for horizontal and bottom faces of grass blocks, use the  dirt color to
 								// prevent green cliff walls
 								color = this.clientLevelWrapper.getDirtBlockColor();
-								color = ColorUtil.applyShade(color, MC.getShade(quad.direction));
+								color = ColorUtil.applyShade(color, MC.getShade(direction));
 							}
 						}
 					}   
@@ -301,12 +341,12 @@ public class LodQuadBuilder
 			}
 			
 			
-			this.putVertex(bb, (short) (quad.x + dx), (short) (quad.y + dy), (short) (quad.z + dz),
-					quad.hasError ? ColorUtil.RED : color,
-					quad.hasError ? 0 : normalIndex,
-					quad.hasError ? 0 : quad.irisBlockMaterialId,
-					quad.hasError ? 15 : quad.skyLight,
-					quad.hasError ? 15 : quad.blockLight,
+			this.putVertex(bb, (short) (quadX + dx), (short) (quadY + dy), (short) (quadZ + dz),
+					hasError ? ColorUtil.RED : color,
+					hasError ? 0 : normalIndex,
+					hasError ? 0 : irisBlockMaterialId,
+					hasError ? 15 : BufferQuadList.getSkyLight(quadData),
+					hasError ? 15 : BufferQuadList.getBlockLight(quadData),
 					mx, my, mz);
 		}
 	}
@@ -351,6 +391,91 @@ public class LodQuadBuilder
 	
 	
 	
+	//=================//
+	// column tracking //
+	//=================//
+	
+	public boolean tracksColumnQuads() { return this.columnQuadStartIndices != null; }
+	
+	/**
+	 * Marks the start of the given column's quads. <br>
+	 * Columns must be started in ascending index order and every column must be started,
+	 * even if it doesn't add any quads. <br><br>
+	 *
+	 * Quads from different columns won't be pre-merged so each column's quads
+	 * can be copied independently. <br>
+	 * This is done even if column tracking is disabled so full and incremental builds
+	 * start merging with the same quads and produce identical results.
+	 *
+	 * @param columnIndex (relX * {@link ColumnRenderSource#SECTION_SIZE}) + relZ
+	 */
+	public void startColumn(int columnIndex)
+	{
+		for (int i = 0; i < 6; i++)
+		{
+			this.opaqueQuads[i].startNewPremergeGroup();
+			this.transparentQuads[i].startNewPremergeGroup();
+		}
+		
+		if (this.columnQuadStartIndices == null)
+		{
+			return;
+		}
+		
+		int offset = columnIndex * QUAD_LIST_COUNT;
+		for (int i = 0; i < 6; i++)
+		{
+			this.columnQuadStartIndices[offset + i] = this.opaqueQuads[i].size();
+			this.columnQuadStartIndices[offset + 6 + i] = this.transparentQuads[i].size();
+		}
+	}
+	
+	/**
+	 * Copies every quad the source builder added for the given column into this builder. <br>
+	 * Both builders must be tracking columns and the source builder must not have been merged yet.
+	 *
+	 * @see LodQuadBuilder#createUnmergedCopy()
+	 */
+	public void copyColumnQuads(LodQuadBuilder source, int columnIndex) throws IllegalArgumentException
+	{
+		if (this.columnQuadStartIndices == null || source.columnQuadStartIndices == null)
+		{
+			throw new IllegalArgumentException("Both quad builders must be tracking columns to copy column quads.");
+		}
+		if (this.doTransparency != source.doTransparency)
+		{
+			throw new IllegalArgumentException("Unable to copy column quads between builders with different transparency settings.");
+		}
+		
+		this.startColumn(columnIndex);
+		for (int i = 0; i < 6; i++)
+		{
+			this.opaqueQuads[i].appendRange(source.opaqueQuads[i],
+					source.getColumnQuadStartIndex(columnIndex, i),
+					source.getColumnQuadEndIndex(columnIndex, i, source.opaqueQuads[i]));
+			
+			this.transparentQuads[i].appendRange(source.transparentQuads[i],
+					source.getColumnQuadStartIndex(columnIndex, 6 + i),
+					source.getColumnQuadEndIndex(columnIndex, 6 + i, source.transparentQuads[i]));
+		}
+	}
+	private int getColumnQuadStartIndex(int columnIndex, int listIndex) { return this.columnQuadStartIndices[columnIndex * QUAD_LIST_COUNT + listIndex]; }
+	private int getColumnQuadEndIndex(int columnIndex, int listIndex, BufferQuadList quadList)
+	{
+		// each column ends where the next one starts
+		return (columnIndex + 1 < COLUMN_COUNT) ? this.getColumnQuadStartIndex(columnIndex + 1, listIndex) : quadList.size();
+	}
+	
+	/**
+	 * Should be called before {@link LodQuadBuilder#finalizeData()}
+	 * since merging removes the column information.
+	 *
+	 * @return a copy of this builder's current quads and column tracking data
+	 */
+	public LodQuadBuilder createUnmergedCopy() { return new LodQuadBuilder(this); }
+	
+	
+	
 	//=================//
 	// data finalizing //
 	//=================//
@@ -393,34 +518,9 @@ public class LodQuadBuilder
 	}
 	
 	/** Merges all of this builder's quads for the given directionIndex (up, down, left, etc.) in the given direction */
-	private static long mergeQuadsInternal(ArrayList<BufferQuad>[] list, int directionIndex, BufferMergeDirectionEnum mergeDirection)
+	private static long mergeQuadsInternal(BufferQuadList[] list, int directionIndex, BufferMergeDirectionEnum mergeDirection)
 	{
-		if (list[directionIndex].size() <= 1)
-			return 0;
-		
-		list[directionIndex].sort((objOne, objTwo) -> objOne.compare(objTwo, mergeDirection));
-		
-		long mergeCount = 0;
-		ListIterator<BufferQuad> iter = list[directionIndex].listIterator();
-		BufferQuad currentQuad = iter.next();
-		while (iter.hasNext())
-		{
-			BufferQuad nextQuad = iter.next();
-			
-			if (currentQuad.tryMerge(nextQuad, mergeDirection))
-			{
-				// merge successful, attempt to merge the next quad
-				mergeCount++;
-				iter.set(null);
-			}
-			else
-			{
-				// merge fail, move on to the next quad
-				currentQuad = nextQuad;
-			}
-		}
-		list[directionIndex].removeIf(Objects::isNull);
-		return mergeCount;
+		return list[directionIndex].mergeQuads(mergeDirection);
 	}
 	
 	
@@ -429,142 +529,132 @@ public class LodQuadBuilder
 	// buffer setup //
 	//==============//
 	
-	public Iterator<ByteBuffer> makeOpaqueVertexBuffers()
+	/** @see LodQuadBuilder#makeOpaqueVertexBuffers(ByteBuffer) */
+	public Iterator<ByteBuffer> makeOpaqueVertexBuffers() { return this.makeOpaqueVertexBuffers(createStagingBuffer()); }
+	/**
+	 * @param stagingBuffer will be filled and returned by each {@link Iterator#next()} call,
+	 *                      so each buffer must be consumed before getting the next one. 
+	 *                      Must be a native ordered buffer with at least {@link ColumnRenderBuffer#FULL_SIZED_BUFFER} bytes of capacity.
+	 * @see VertexStagingBufferPool
+	 */
+	public Iterator<ByteBuffer> makeOpaqueVertexBuffers(ByteBuffer stagingBuffer) { return new VertexBufferIterator(this.opaqueQuads, stagingBuffer); }
+	
+	/** @see LodQuadBuilder#makeOpaqueVertexBuffers(ByteBuffer) */
+	public Iterator<ByteBuffer> makeTransparentVertexBuffers() { return this.makeTransparentVertexBuffers(createStagingBuffer()); }
+	/** @see LodQuadBuilder#makeOpaqueVertexBuffers(ByteBuffer) */
+	public Iterator<ByteBuffer> makeTransparentVertexBuffers(ByteBuffer stagingBuffer) { return new VertexBufferIterator(this.transparentQuads, stagingBuffer); }
+	
+	private static ByteBuffer createStagingBuffer() { return ByteBuffer.allocateDirect(ColumnRenderBuffer.FULL_SIZED_BUFFER).order(ByteOrder.nativeOrder()); }
+	
+	/** Splits the given quads into chunks of up to {@link ColumnRenderBuffer#FULL_SIZED_BUFFER} bytes, one for each vertex buffer. */
+	private class VertexBufferIterator implements Iterator<ByteBuffer>
 	{
-		return new Iterator<ByteBuffer>()
+		private final BufferQuadList[] quadLists;
+		private final ByteBuffer bb;
+		
+		private int directionIndex;
+		private int quad = 0;
+		
+		
+		
+		public VertexBufferIterator(BufferQuadList[] quadLists, ByteBuffer stagingBuffer)
 		{
-			final ByteBuffer bb = ByteBuffer.allocateDirect(ColumnRenderBuffer.FULL_SIZED_BUFFER)
-					.order(ByteOrder.nativeOrder());
-			int dir = skipEmpty(0);
-			int quad = 0;
-			
-			private int skipEmpty(int d)
+			if (stagingBuffer.capacity() < ColumnRenderBuffer.FULL_SIZED_BUFFER)
 			{
-				while (d < 6 && opaqueQuads[d].isEmpty())
-				{
-					d++;
-				}
-				return d;
+				throw new IllegalArgumentException("Staging buffer capacity [" + stagingBuffer.capacity() + "] is smaller than the vertex buffer size [" + ColumnRenderBuffer.FULL_SIZED_BUFFER + "].");
 			}
 			
-			@Override
-			public boolean hasNext()
+			this.quadLists = quadLists;
+			this.bb = stagingBuffer;
+			this.directionIndex = this.skipEmptyDirectionIndices(0);
+		}
+		
+		private int skipEmptyDirectionIndices(int directionIndex)
+		{
+			// transparent quads may be null if transparency is disabled
+			while (directionIndex < 6 &&
+					(this.quadLists[directionIndex] == null
+							|| this.quadLists[directionIndex].isEmpty()))
 			{
-				return dir < 6;
+				directionIndex++;
 			}
 			
-			@Override
-			public ByteBuffer next()
+			return directionIndex;
+		}
+		
+		@Override
+		public boolean hasNext() { return this.directionIndex < 6; }
+		
+		@Override
+		public ByteBuffer next()
+		{
+			if (this.directionIndex >= 6)
 			{
-				if (dir >= 6)
-				{
-					return null;
-				}
-				bb.clear();
-				bb.limit(ColumnRenderBuffer.FULL_SIZED_BUFFER);
-				while (bb.hasRemaining() && dir < 6)
-				{
-					writeData();
-				}
-				bb.limit(bb.position());
-				bb.rewind();
-				return bb;
+				return null;
 			}
 			
-			private void writeData()
+			this.bb.clear();
+			this.bb.limit(ColumnRenderBuffer.FULL_SIZED_BUFFER);
+			while (this.bb.hasRemaining() && this.directionIndex < 6)
 			{
-				int i = quad;
-				for (; i < opaqueQuads[dir].size(); i++)
-				{
-					if (!bb.hasRemaining())
-					{
-						break;
-					}
-					putQuad(bb, opaqueQuads[dir].get(i));
-				}
-				
-				if (i >= opaqueQuads[dir].size())
-				{
-					quad = 0;
-					dir++;
-					dir = skipEmpty(dir);
-				}
-				else
-				{
-					quad = i;
-				}
+				this.writeData();
 			}
-		};
-	}
-	
-	public Iterator<ByteBuffer> makeTransparentVertexBuffers()
-	{
-		return new Iterator<ByteBuffer>()
+			this.bb.limit(this.bb.position());
+			this.bb.rewind();
+			return this.bb;
+		}
+		
+		private void writeData()
 		{
-			final ByteBuffer bb = ByteBuffer.allocateDirect(ColumnRenderBuffer.FULL_SIZED_BUFFER)
-					.order(ByteOrder.nativeOrder());
-			int directionIndex = this.skipEmptyDirectionIndices(0);
-			int quad = 0;
-			
-			private int skipEmptyDirectionIndices(int directionIndex)
+			BufferQuadList quadList = this.quadLists[this.directionIndex];
+			int i = this.quad;
+			for (; i < quadList.size(); i++)
 			{
-				while (directionIndex < 6 &&
-						(LodQuadBuilder.this.transparentQuads[directionIndex] == null
-								|| LodQuadBuilder.this.transparentQuads[directionIndex].isEmpty()))
+				if (!this.bb.hasRemaining())
 				{
-					directionIndex++;
+					break;
 				}
-				
-				return directionIndex;
+				LodQuadBuilder.this.putQuad(this.bb, quadList, i);
 			}
 			
-			@Override
-			public boolean hasNext() { return this.directionIndex < 6; }
-			
-			@Override
-			public ByteBuffer next()
+			if (i >= quadList.size())
 			{
-				if (this.directionIndex >= 6)
-				{
-					return null;
-				}
-				
-				this.bb.clear();
-				this.bb.limit(ColumnRenderBuffer.FULL_SIZED_BUFFER);
-				while (this.bb.hasRemaining() && this.directionIndex < 6)
-				{
-					this.writeData();
-				}
-				this.bb.limit(this.bb.position());
-				this.bb.rewind();
-				return this.bb;
+				this.quad = 0;
+				this.directionIndex++;
+				this.directionIndex = this.skipEmptyDirectionIndices(this.directionIndex);
 			}
-			
-			private void writeData()
+			else
 			{
-				int i = this.quad;
-				for (; i < LodQuadBuilder.this.transparentQuads[this.directionIndex].size(); i++)
-				{
-					if (!this.bb.hasRemaining())
-					{
-						break;
-					}
-					putQuad(this.bb, LodQuadBuilder.this.transparentQuads[this.directionIndex].get(i));
-				}
-				
-				if (i >= LodQuadBuilder.this.transparentQuads[this.directionIndex].size())
-				{
-					this.quad = 0;
-					this.directionIndex++;
-					this.directionIndex = this.skipEmptyDirectionIndices(this.directionIndex);
-				}
-				else
-				{
-					this.quad = i;
-				}
+				this.quad = i;
 			}
-		};
+		}
+		
 	}
+	
+	/**
+	 * Writes the same vertex data as {@link LodQuadBuilder#makeOpaqueVertexBuffers()}, but into a single buffer. <br>
+	 * The buffer needs {@link LodQuadBuilder#getCurrentOpaqueQuadsCount()} * {@link ColumnRenderBuffer#QUADS_BYTE_SIZE} bytes remaining.
+	 */
+	public void putOpaqueVertexData(ByteBuffer bb) { this.putVertexData(bb, this.opaqueQuads); }
+	/** @see LodQuadBuilder#putOpaqueVertexData(ByteBuffer) */
+	public void putTransparentVertexData(ByteBuffer bb)
+	{
+		if (this.doTransparency)
+		{
+			this.putVertexData(bb, this.transparentQuads);
+		}
+	}
+	private void putVertexData(ByteBuffer bb, BufferQuadList[] quadLists)
+	{
+		for (BufferQuadList quadList : quadLists)
+		{
+			for (int i = 0; i < quadList.size(); i++)
+			{
+				this.putQuad(bb, quadList, i);
+			}
+		}
+	}
+	
 	public interface BufferFiller
 	{
 		/** If true: more data needs to be filled */
@@ -632,7 +722,7 @@ public class LodQuadBuilder
 					{
 						break;
 					}
-					putQuad(bb, opaqueQuads[dir].get(i));
+					putQuad(bb, opaqueQuads[dir], i);
 				}
 				
 				if (i >= opaqueQuads[dir].size())
@@ -712,7 +802,7 @@ public class LodQuadBuilder
 					{
 						break;
 					}
-					putQuad(bb, transparentQuads[dir].get(i));
+					putQuad(bb, transparentQuads[dir], i);
 				}
 				
 				if (i >= transparentQuads[dir].size())
@@ -741,7 +831,7 @@ public class LodQuadBuilder
 	public int getCurrentOpaqueQuadsCount()
 	{
 		int i = 0;
-		for (ArrayList<BufferQuad> quadList : this.opaqueQuads)
+		for (BufferQuadList quadList : this.opaqueQuads)
 		{
 			i += quadList.size();
 		}
@@ -756,7 +846,7 @@ public class LodQuadBuilder
 		}
 		
 		int i = 0;
-		for (ArrayList<BufferQuad> quadList : this.transparentQuads)
+		for (BufferQuadList quadList : this.transparentQuads)
 		{
 			i += quadList.size();
 		}
@@ -0,0 +1,160 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Holds onto direct {@link ByteBuffer}'s that vertex data can be written into before being uploaded to the GPU. <br><br>
+ * 
+ * Direct buffers are expensive to allocate (they're zeroed and freed by the GC's cleaner thread), 
+ * so re-using them prevents allocating a new buffer for every uploaded section.
+ * 
+ * @see ColumnRenderBuffer
+ */
+public class VertexStagingBufferPool
+{
+	/** how large each buffer is in bytes */
+	public final int bufferByteSize;
+	/** how many unused buffers can be kept at once */
+	private final IntSupplier maxPooledBufferCountSupplier;
+	
+	private final ArrayList<ByteBuffer> pooledBuffers = new ArrayList<>();
+	private final ReentrantLock poolLock = new ReentrantLock();
+	
+	/** how many buffers had to be allocated, can be used to measure the allocation rate */
+	private final AtomicLong allocatedBufferCount = new AtomicLong(0);
+	/** how many times a pooled buffer was returned instead of allocating a new one */
+	private final AtomicLong reusedBufferCount = new AtomicLong(0);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** @param maxPooledBufferCountSupplier read each time a buffer is returned so config changes apply immediately */
+	public VertexStagingBufferPool(int bufferByteSize, IntSupplier maxPooledBufferCountSupplier)
+	{
+		this.bufferByteSize = bufferByteSize;
+		this.maxPooledBufferCountSupplier = maxPooledBufferCountSupplier;
+	}
+	
+	
+	
+	//===============//
+	// pool handlers //
+	//===============//
+	
+	/** @return a cleared, native ordered, direct buffer. A new buffer is allocated if none are pooled. */
+	public ByteBuffer getPooledBuffer()
+	{
+		ByteBuffer buffer = null;
+		
+		this.poolLock.lock();
+		try
+		{
+			int index = this.pooledBuffers.size() - 1;
+			if (index != -1)
+			{
+				buffer = this.pooledBuffers.remove(index);
+			}
+		}
+		finally
+		{
+			this.poolLock.unlock();
+		}
+		
+		
+		if (buffer == null)
+		{
+			// allocated outside the lock since zeroing the buffer can take a moment
+			this.allocatedBufferCount.incrementAndGet();
+			buffer = ByteBuffer.allocateDirect(this.bufferByteSize).order(ByteOrder.nativeOrder());
+		}
+		else
+		{
+			this.reusedBufferCount.incrementAndGet();
+			buffer.clear();
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Doesn't have to be called, if a buffer isn't returned it will be freed by the GC. 
+	 * It just means a new buffer must be allocated next time {@link VertexStagingBufferPool#getPooledBuffer()} is called. <br>
+	 * The buffer shouldn't be used after it's returned.
+	 */
+	public void returnPooledBuffer(ByteBuffer buffer)
+	{
+		if (buffer == null
+			|| !buffer.isDirect()
+			|| buffer.capacity() != this.bufferByteSize)
+		{
+			return;
+		}
+		
+		this.poolLock.lock();
+		try
+		{
+			if (this.pooledBuffers.size() < this.maxPooledBufferCountSupplier.getAsInt())
+			{
+				this.pooledBuffers.add(buffer);
+			}
+		}
+		finally
+		{
+			this.poolLock.unlock();
+		}
+	}
+	
+	/** removes all pooled buffers so they can be freed */
+	public void clear()
+	{
+		this.poolLock.lock();
+		try
+		{
+			this.pooledBuffers.clear();
+		}
+		finally
+		{
+			this.poolLock.unlock();
+		}
+	}
+	
+	
+	
+	//===============//
+	// debug methods //
+	//===============//
+	
+	/** Returns how many buffers are in the pool */
+	public int size() { return this.pooledBuffers.size(); }
+	
+	public long getAllocatedBufferCount() { return this.allocatedBufferCount.get(); }
+	public long getReusedBufferCount() { return this.reusedBufferCount.get(); }
+	
+}
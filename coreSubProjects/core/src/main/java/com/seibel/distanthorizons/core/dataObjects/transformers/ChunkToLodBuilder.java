@@ -28,6 +28,7 @@ import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.logging.ConfigBasedLogger;
 import com.seibel.distanthorizons.core.pos.DhChunkPos;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import com.seibel.distanthorizons.core.util.threading.WorkerThreadScheduler;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
 import org.apache.logging.log4j.LogManager;
@@ -100,7 +101,7 @@ public class ChunkToLodBuilder implements AutoCloseable
 			return;
 		}
 		
-		ThreadPoolExecutor lodBuilderExecutor = ThreadPoolUtil.getChunkToLodBuilderExecutor();
+		WorkerThreadScheduler.TaskTypeExecutor lodBuilderExecutor = ThreadPoolUtil.getChunkToLodBuilderExecutor();
 		if (lodBuilderExecutor == null)
 		{
 			return;
@@ -124,7 +125,7 @@ public class ChunkToLodBuilder implements AutoCloseable
 					}
 				}, lodBuilderExecutor);
 			}
-			catch (RejectedExecutionException ignore) { /* the thread pool was probably shut down because it's size is being changed, just wait a sec and it should be back */ }
+			catch (RejectedExecutionException ignore) { /* can only happen if the executor was shut down, IE the level is being unloaded */ }
 		}
 	}
 	private void tickThreadTask()
@@ -0,0 +1,227 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.transformers;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.level.IDhClientLevel;
+import com.seibel.distanthorizons.core.pos.DhBlockPos;
+import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches the render color and block flags for each biome/block state pair
+ * so {@link FullDataToRenderDataTransformer} doesn't have to look them up for every data point. <br><br>
+ *
+ * One cache exists per client level and it should be cleared whenever the colors could change,
+ * IE when resource packs or color related config values are changed.
+ *
+ * @see IDhClientLevel#clearRenderCache()
+ */
+public class FullDataRenderColorCache
+{
+	private static final IWrapperFactory WRAPPER_FACTORY = SingletonInjector.INSTANCE.get(IWrapperFactory.class);
+	
+	/** 
+	 * If the level wrapper changes all cached colors are invalid. <br>
+	 * Replacing the whole cache (instead of clearing a shared map) means a thread 
+	 * that's still filling in entries for the old level can't add them to the new level's cache.
+	 */
+	private final AtomicReference<LevelEntryCache> levelCacheRef = new AtomicReference<>(null);
+	
+	
+	
+	//=========//
+	// methods //
+	//=========//
+	
+	/**
+	 * @param blockX used for the first color lookup of each biome/block state pair
+	 * @param blockZ used for the first color lookup of each biome/block state pair
+	 * @return an array indexed by the mapping's IDs,
+	 *          any IDs that couldn't be resolved will be null.
+	 */
+	public Entry[] getEntriesForMapping(IDhClientLevel level, FullDataPointIdMap mapping, int blockX, int blockZ)
+	{
+		LevelEntryCache levelCache = this.getCacheForLevel(level.getClientLevelWrapper());
+		
+		HashSet<IBlockStateWrapper> blockStatesToIgnore = WRAPPER_FACTORY.getRendererIgnoredBlocks(level.getLevelWrapper());
+		DhBlockPos firstLookupPos = new DhBlockPos(blockX, level.getMinY(), blockZ);
+		
+		Entry[] entries = new Entry[mapping.size()];
+		for (int id = 0; id < entries.length; id++)
+		{
+			IBiomeWrapper biome;
+			IBlockStateWrapper blockState;
+			try
+			{
+				biome = mapping.getBiomeWrapper(id);
+				blockState = mapping.getBlockStateWrapper(id);
+			}
+			catch (IndexOutOfBoundsException e)
+			{
+				// the mapping was probably modified while being read,
+				// the transformer will handle logging
+				continue;
+			}
+			
+			entries[id] = levelCache.entryByBiomeBlockState.computeIfAbsent(new BiomeBlockStateKey(biome, blockState),
+					(key) -> new Entry(level, firstLookupPos, biome, blockState, blockStatesToIgnore.contains(blockState)));
+		}
+		return entries;
+	}
+	
+	private LevelEntryCache getCacheForLevel(@Nullable IClientLevelWrapper levelWrapper)
+	{
+		while (true)
+		{
+			LevelEntryCache levelCache = this.levelCacheRef.get();
+			if (levelCache != null && levelCache.levelWrapper == levelWrapper)
+			{
+				return levelCache;
+			}
+			
+			LevelEntryCache newLevelCache = new LevelEntryCache(levelWrapper);
+			if (this.levelCacheRef.compareAndSet(levelCache, newLevelCache))
+			{
+				return newLevelCache;
+			}
+			// another thread replaced the cache first, check if it's for the same level
+		}
+	}
+	
+	public int size()
+	{
+		LevelEntryCache levelCache = this.levelCacheRef.get();
+		return (levelCache != null) ? levelCache.entryByBiomeBlockState.size() : 0;
+	}
+	
+	/** Any lookups that are in progress will finish using the old cache. */
+	public void clear() { this.levelCacheRef.set(null); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	public static final class Entry
+	{
+		public final IBiomeWrapper biome;
+		public final IBlockStateWrapper blockState;
+		
+		/** air, barriers, light blocks, etc. */
+		public final boolean ignored;
+		/** true for blocks that aren't solid, liquid, or opaque IE flowers and tall grass */
+		public final boolean nonColliding;
+		public final byte irisBlockMaterialId;
+		
+		private final int color;
+		/** if true the color has to be looked up for each position */
+		private final boolean colorIsPositionDependent;
+		
+		
+		
+		public Entry(IDhClientLevel level, DhBlockPos firstLookupPos, IBiomeWrapper biome, IBlockStateWrapper blockState, boolean ignored)
+		{
+			this.biome = biome;
+			this.blockState = blockState;
+			this.ignored = ignored;
+			this.nonColliding = !blockState.isSolid() && !blockState.isLiquid() && blockState.getOpacity() != IBlockStateWrapper.FULLY_OPAQUE;
+			this.irisBlockMaterialId = blockState.getIrisBlockMaterialId();
+			
+			if (ignored)
+			{
+				// ignored blocks are never rendered, so their color isn't needed
+				this.color = 0;
+				this.colorIsPositionDependent = false;
+			}
+			else
+			{
+				// the color has to be computed before checking if it's position dependent
+				// since that may only be determined during the first color lookup
+				this.color = level.computeBaseColor(firstLookupPos, biome, blockState);
+				
+				IClientLevelWrapper levelWrapper = level.getClientLevelWrapper();
+				this.colorIsPositionDependent = (levelWrapper == null || levelWrapper.isBaseColorPositionDependent(blockState));
+			}
+		}
+		
+		public int getColor(IDhClientLevel level, int blockX, int blockY, int blockZ)
+		{
+			if (!this.colorIsPositionDependent)
+			{
+				return this.color;
+			}
+			
+			return level.computeBaseColor(new DhBlockPos(blockX, blockY, blockZ), this.biome, this.blockState);
+		}
+		
+	}
+	
+	private static final class LevelEntryCache
+	{
+		@Nullable
+		public final IClientLevelWrapper levelWrapper;
+		public final ConcurrentHashMap<BiomeBlockStateKey, Entry> entryByBiomeBlockState = new ConcurrentHashMap<>();
+		
+		public LevelEntryCache(@Nullable IClientLevelWrapper levelWrapper) { this.levelWrapper = levelWrapper; }
+		
+	}
+	
+	private static final class BiomeBlockStateKey
+	{
+		private final IBiomeWrapper biome;
+		private final IBlockStateWrapper blockState;
+		private final int hashCode;
+		
+		public BiomeBlockStateKey(IBiomeWrapper biome, IBlockStateWrapper blockState)
+		{
+			this.biome = biome;
+			this.blockState = blockState;
+			this.hashCode = Objects.hash(biome, blockState);
+		}
+		
+		@Override
+		public int hashCode() { return this.hashCode; }
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof BiomeBlockStateKey))
+			{
+				return false;
+			}
+			
+			BiomeBlockStateKey other = (BiomeBlockStateKey) obj;
+			return Objects.equals(this.biome, other.biome) && Objects.equals(this.blockState, other.blockState);
+		}
+		
+	}
+	
+}
@@ -28,20 +28,17 @@ import com.seibel.distanthorizons.core.dataObjects.render.columnViews.ColumnArra
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.level.IDhClientLevel;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
-import com.seibel.distanthorizons.core.pos.DhBlockPos;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.util.ColorUtil;
 import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
-import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
-import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
-import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashSet;
+import java.util.BitSet;
 
 /**
  * Handles converting {@link FullDataSourceV2}'s to {@link ColumnRenderSource}.
@@ -50,7 +47,6 @@ public class FullDataToRenderDataTransformer
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	
-	private static final IWrapperFactory WRAPPER_FACTORY = SingletonInjector.INSTANCE.get(IWrapperFactory.class);
 	private static final IMinecraftClientWrapper MC = SingletonInjector.INSTANCE.get(IMinecraftClientWrapper.class);
 	
 	private static final LongOpenHashSet brokenPos = new LongOpenHashSet();
@@ -61,7 +57,12 @@ public class FullDataToRenderDataTransformer
 	// public transformer interface //
 	//==============================//
 	
-	public static ColumnRenderSource transformFullDataToRenderSource(FullDataSourceV2 fullDataSource, IDhClientLevel level)
+	public static ColumnRenderSource transformFullDataToRenderSource(FullDataSourceV2 fullDataSource, IDhClientLevel level) { return transformFullDataToRenderSource(fullDataSource, level, null); }
+	/**
+	 * @param columnsToConvert if not null, only these columns will be converted and every other column will be left empty.
+	 *                         Useful when only part of the render source will be used, IE the edge of an adjacent section.
+	 */
+	public static ColumnRenderSource transformFullDataToRenderSource(FullDataSourceV2 fullDataSource, IDhClientLevel level, @Nullable BitSet columnsToConvert)
 	{
 		if (fullDataSource == null)
 		{
@@ -76,7 +77,7 @@ public class FullDataToRenderDataTransformer
 		
 		try
 		{
-			return transformCompleteFullDataToColumnData(level, fullDataSource);
+			return transformCompleteFullDataToColumnData(level, fullDataSource, columnsToConvert);
 		}
 		catch (InterruptedException e)
 		{
@@ -84,6 +85,50 @@ public class FullDataToRenderDataTransformer
 		}
 	}
 	
+	/**
+	 * Re-converts the given columns into an existing {@link ColumnRenderSource},
+	 * any other columns are left as-is. <br>
+	 * The render source and full data source must be for the same position.
+	 *
+	 * @return false if the render source couldn't be updated and needs to be completely re-created,
+	 *          IE the vertical quality changed, the full data is empty, or the thread was interrupted.
+	 */
+	public static boolean updateRenderSourceColumns(ColumnRenderSource renderSource, FullDataSourceV2 fullDataSource, IDhClientLevel level, BitSet columnsToUpdate)
+	{
+		if (fullDataSource == null || level == null)
+		{
+			return false;
+		}
+		
+		int vertSize = Config.Client.Advanced.Graphics.Quality.verticalQuality.get().calculateMaxVerticalData(fullDataSource.getDataDetailLevel());
+		if (renderSource.verticalDataCount != vertSize
+			|| renderSource.pos != fullDataSource.getPos()
+			|| fullDataSource.getDataDetailLevel() != renderSource.getDataDetailLevel())
+		{
+			return false;
+		}
+		
+		if (fullDataSource.isEmpty)
+		{
+			// the data was removed, re-creating the render source
+			// is simpler than clearing each column and tracking that it's empty
+			return false;
+		}
+		
+		
+		try
+		{
+			renderSource.markNotEmpty();
+			convertColumns(level, fullDataSource, renderSource, columnsToUpdate);
+			renderSource.localVersion.incrementAndGet();
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			return false;
+		}
+	}
+	
 	
 	
 	//==============//
@@ -97,7 +142,7 @@ public class FullDataToRenderDataTransformer
 	 * @throws InterruptedException Can be caused by interrupting the thread upstream.
 	 * Generally thrown if the method is running after the client leaves the current world.
 	 */
-	private static ColumnRenderSource transformCompleteFullDataToColumnData(IDhClientLevel level, FullDataSourceV2 fullDataSource) throws InterruptedException
+	private static ColumnRenderSource transformCompleteFullDataToColumnData(IDhClientLevel level, FullDataSourceV2 fullDataSource, @Nullable BitSet columnsToConvert) throws InterruptedException
 	{
  		final long pos = fullDataSource.getPos();
 		final byte dataDetail = fullDataSource.getDataDetailLevel();
@@ -112,23 +157,7 @@ public class FullDataToRenderDataTransformer
 		
 		if (dataDetail == columnSource.getDataDetailLevel())
 		{
-			int baseX = DhSectionPos.getMinCornerBlockX(pos);
-			int baseZ = DhSectionPos.getMinCornerBlockZ(pos);
-			
-			for (int x = 0; x < DhSectionPos.getWidthCountForLowerDetailedSection(pos, dataDetail); x++)
-			{
-				for (int z = 0; z < DhSectionPos.getWidthCountForLowerDetailedSection(pos, dataDetail); z++)
-				{
-					throwIfThreadInterrupted();
-					
-					ColumnArrayView columnArrayView = columnSource.getVerticalDataPointView(x, z);
-					LongArrayList dataColumn = fullDataSource.get(x, z);
-					convertColumnData(level, fullDataSource.mapping, baseX + x, baseZ + z, columnArrayView, dataColumn);
-				}
-			}
-			
-			columnSource.fillDebugFlag(0, 0, ColumnRenderSource.SECTION_SIZE, ColumnRenderSource.SECTION_SIZE, ColumnRenderSource.DebugSourceFlag.FULL);
-			
+			convertColumns(level, fullDataSource, columnSource, columnsToConvert);
 		}
 		else
 		{
@@ -140,6 +169,43 @@ public class FullDataToRenderDataTransformer
 	
 	
 	
+	/** @param columnsToConvert if null every column will be converted */
+	private static void convertColumns(IDhClientLevel level, FullDataSourceV2 fullDataSource, ColumnRenderSource columnSource, @Nullable BitSet columnsToConvert) throws InterruptedException
+	{
+		final long pos = fullDataSource.getPos();
+		final byte dataDetail = fullDataSource.getDataDetailLevel();
+		
+		int baseX = DhSectionPos.getMinCornerBlockX(pos);
+		int baseZ = DhSectionPos.getMinCornerBlockZ(pos);
+		
+		// resolving the colors once per data source means the conversion loop only needs an array lookup
+		FullDataRenderColorCache.Entry[] colorEntriesById = level.getRenderColorCache().getEntriesForMapping(level, fullDataSource.mapping, baseX, baseZ);
+		
+		int width = DhSectionPos.getWidthCountForLowerDetailedSection(pos, dataDetail);
+		for (int x = 0; x < width; x++)
+		{
+			for (int z = 0; z < width; z++)
+			{
+				if (columnsToConvert != null && !columnsToConvert.get((x * ColumnRenderSource.SECTION_SIZE) + z))
+				{
+					continue;
+				}
+				
+				throwIfThreadInterrupted();
+				
+				ColumnArrayView columnArrayView = columnSource.getVerticalDataPointView(x, z);
+				// clear any old data so shorter columns don't leave stale data points behind
+				columnArrayView.fill(0);
+				
+				LongArrayList dataColumn = fullDataSource.get(x, z);
+				convertColumnData(level, fullDataSource.mapping, colorEntriesById, baseX + x, baseZ + z, columnArrayView, dataColumn);
+				columnSource.fillDebugFlag(x, z, 1, 1, ColumnRenderSource.DebugSourceFlag.FULL);
+			}
+		}
+	}
+	
+	
+	
 	//================//
 	// helper methods //
 	//================//
@@ -160,14 +226,13 @@ public class FullDataToRenderDataTransformer
 	
 	// TODO what does this mean?
 	private static void iterateAndConvert(
-			IDhClientLevel level, FullDataPointIdMap fullDataMapping, 
+			IDhClientLevel level, FullDataPointIdMap fullDataMapping, FullDataRenderColorCache.Entry[] colorEntriesById, 
 			int blockX, int blockZ, 
 			ColumnArrayView renderColumnData, LongArrayList fullColumnData)
 	{
 		boolean avoidSolidBlocks = (Config.Client.Advanced.Graphics.Quality.blocksToIgnore.get() == EDhApiBlocksToAvoid.NON_COLLIDING);
 		boolean colorBelowWithAvoidedBlocks = Config.Client.Advanced.Graphics.Quality.tintWithAvoidedBlocks.get();
-		
-		HashSet<IBlockStateWrapper> blockStatesToIgnore = WRAPPER_FACTORY.getRendererIgnoredBlocks(level.getLevelWrapper());
+		int minY = level.getMinY();
 		
 		boolean isVoid = true;
 		int colorToApplyToNextBlock = -1;
@@ -202,14 +267,8 @@ public class FullDataToRenderDataTransformer
 			//	throw new RuntimeException();
 			//}
 			
-			IBiomeWrapper biome;
-			IBlockStateWrapper block;
-			try
-			{
-				biome = fullDataMapping.getBiomeWrapper(id);
-				block = fullDataMapping.getBlockStateWrapper(id);
-			}
-			catch (IndexOutOfBoundsException e)
+			FullDataRenderColorCache.Entry colorEntry = (id >= 0 && id < colorEntriesById.length) ? colorEntriesById[id] : null;
+			if (colorEntry == null)
 			{
 				// FIXME sometimes the data map has a length of 0
 				if (!brokenPos.contains(fullDataMapping.getPos()))
@@ -219,7 +278,6 @@ public class FullDataToRenderDataTransformer
 					LOGGER.warn("Unable to get data point with id ["+id+"] " +
 							"(Max possible ID: ["+fullDataMapping.getMaxValidId()+"]) " +
 							"for pos ["+fullDataMapping.getPos()+"] in dimension ["+dimName+"]. " +
-							"Error: ["+e.getMessage()+"]. " +
 							"Further errors for this position won't be logged.");
 				}
 				
@@ -228,7 +286,7 @@ public class FullDataToRenderDataTransformer
 			}
 			
 			
-			if (blockStatesToIgnore.contains(block))
+			if (colorEntry.ignored)
 			{
 				// Don't render: air, barriers, light blocks, etc.
 				continue;
@@ -236,11 +294,11 @@ public class FullDataToRenderDataTransformer
 			
 			
 			// solid block check
-			if (avoidSolidBlocks && !block.isSolid() && !block.isLiquid() && block.getOpacity() != IBlockStateWrapper.FULLY_OPAQUE)
+			if (avoidSolidBlocks && colorEntry.nonColliding)
 			{
 				if (colorBelowWithAvoidedBlocks)
 				{
-					int tempColor = level.computeBaseColor(new DhBlockPos(blockX, bottomY + level.getMinY(), blockZ), biome, block);
+					int tempColor = colorEntry.getColor(level, blockX, bottomY + minY, blockZ);
 					if (ColorUtil.getAlpha(tempColor) == 0)
 					{
 						//make sure to not transfer the color when alpha is 0
@@ -261,7 +319,7 @@ public class FullDataToRenderDataTransformer
 			if (colorToApplyToNextBlock == -1)
 			{
 				// use this block's color
-				color = level.computeBaseColor(new DhBlockPos(blockX, bottomY + level.getMinY(), blockZ), biome, block);
+				color = colorEntry.getColor(level, blockX, bottomY + minY, blockZ);
 			}
 			else
 			{
@@ -284,7 +342,7 @@ public class FullDataToRenderDataTransformer
 			{
 				// add the block
 				isVoid = false;
-				long columnData = RenderDataPointUtil.createDataPoint(bottomY + blockHeight, bottomY, color, skyLight, blockLight, block.getIrisBlockMaterialId());
+				long columnData = RenderDataPointUtil.createDataPoint(bottomY + blockHeight, bottomY, color, skyLight, blockLight, colorEntry.irisBlockMaterialId);
 				renderColumnData.set(columnOffset, columnData);
 				columnOffset++;
 			}
@@ -301,7 +359,8 @@ public class FullDataToRenderDataTransformer
 	}
 	
 	// TODO what does this mean?
-	public static void convertColumnData(IDhClientLevel level, FullDataPointIdMap fullDataMapping, int blockX, int blockZ, ColumnArrayView columnArrayView, LongArrayList fullDataColumn)
+	/** @param colorEntriesById from {@link FullDataRenderColorCache#getEntriesForMapping} */
+	public static void convertColumnData(IDhClientLevel level, FullDataPointIdMap fullDataMapping, FullDataRenderColorCache.Entry[] colorEntriesById, int blockX, int blockZ, ColumnArrayView columnArrayView, LongArrayList fullDataColumn)
 	{
 		if (fullDataColumn == null || fullDataColumn.size() == 0)
 		{
@@ -312,12 +371,12 @@ public class FullDataToRenderDataTransformer
 		if (dataTotalLength > columnArrayView.verticalSize())
 		{
 			ColumnArrayView totalColumnData = new ColumnArrayView(new LongArrayList(new long[dataTotalLength]), dataTotalLength, 0, dataTotalLength);
-			iterateAndConvert(level, fullDataMapping, blockX, blockZ, totalColumnData, fullDataColumn);
+			iterateAndConvert(level, fullDataMapping, colorEntriesById, blockX, blockZ, totalColumnData, fullDataColumn);
 			columnArrayView.changeVerticalSizeFrom(totalColumnData);
 		}
 		else
 		{
-			iterateAndConvert(level, fullDataMapping, blockX, blockZ, columnArrayView, fullDataColumn); //Directly use the arrayView since it fits.
+			iterateAndConvert(level, fullDataMapping, colorEntriesById, blockX, blockZ, columnArrayView, fullDataColumn); //Directly use the arrayView since it fits.
 		}
 	}
 	
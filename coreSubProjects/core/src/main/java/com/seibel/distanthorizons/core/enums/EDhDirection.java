@@ -239,11 +239,27 @@ public enum EDhDirection
 	{
 		return this.axisDirection;
 	}
-
-//	public LodDirection getOpposite()
-//	{
-//		return from3DDataValue(this.oppositeIndex);
-//	}
+	
+	public EDhDirection getOpposite()
+	{
+		switch (this)
+		{
+			case DOWN:
+				return UP;
+			case UP:
+				return DOWN;
+			case NORTH:
+				return SOUTH;
+			case SOUTH:
+				return NORTH;
+			case WEST:
+				return EAST;
+			case EAST:
+				return WEST;
+			default:
+				throw new IllegalStateException("Unable to get opposite facing of " + this);
+		}
+	}
 	
 	public EDhDirection getClockWise()
 	{
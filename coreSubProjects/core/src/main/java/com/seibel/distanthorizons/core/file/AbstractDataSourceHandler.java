@@ -1,11 +1,11 @@
 package com.seibel.distanthorizons.core.file;
 
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.store.IDataStore;
 import com.seibel.distanthorizons.core.file.structure.AbstractSaveStructure;
 import com.seibel.distanthorizons.core.level.IDhLevel;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
-import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
 import com.seibel.distanthorizons.core.sql.dto.IBaseDTO;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
@@ -27,7 +27,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public abstract class AbstractDataSourceHandler
 		<TDataSource extends IDataSource<TDhLevel>,
 				TDTO extends IBaseDTO<Long>,
-				TRepo extends AbstractDhRepo<Long, TDTO>,
+				TRepo extends IDataStore<Long, TDTO>,
 				TDhLevel extends IDhLevel>
 		implements AutoCloseable
 {
@@ -130,7 +130,7 @@ public abstract class AbstractDataSourceHandler
 		}
 		catch (RejectedExecutionException ignore)
 		{
-			// the thread pool was probably shut down because it's size is being changed, just wait a sec and it should be back
+			// can only happen if the executor was shut down, IE the level is being unloaded
 			return CompletableFuture.completedFuture(null);
 		}
 	}
@@ -320,6 +320,15 @@ public abstract class AbstractDataSourceHandler
 	
 	
 	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** the folder this handler's data is saved in, other level specific files can be stored here as well */
+	public File getSaveDir() { return this.saveDir; }
+	
+	
+	
 	//=========//
 	// cleanup //
 	//=========//
@@ -1,33 +1,62 @@
 package com.seibel.distanthorizons.core.file;
 
 import com.seibel.distanthorizons.core.level.IDhLevel;
+import com.seibel.distanthorizons.core.util.math.UnitBytes;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.concurrent.locks.ReentrantLock;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * Data sources are often very large objects and aren't used for very long.
  * This means their frequent construction and garbage collection can result in quite a bit of GC pressure.
  * By pooling said data sources and reusing them we can drastically reduce this GC pressure and improve
- * performance significantly.
+ * performance significantly. <br><br>
+ *
+ * Each thread keeps a couple data sources for itself (its magazine),
+ * so a thread that repeatedly gets and returns data sources doesn't have to touch any shared state.
+ * Once a thread's magazine is full, returned data sources go to a shared lock-free depot. <br>
+ * The pool is limited by the estimated size of every data source it holds, magazines included, instead of their count
+ * since data sources can vary wildly in size.
  */
 public class DataSourcePool<TDataSource extends IDataSource<TDhLevel>, TDhLevel extends IDhLevel>
 {
-	/** 
-	 * James tested with a static 25 on a 8 core 16 processor machine and didn't have any issues.
-	 * In most cases the number of pooled sources won't probably even get close to the number of processors,
-	 * but just in case the user has a overkill CPU (or config) this should hopefully prevent thrashing.
+	/**
+	 * How many data sources each thread can keep for itself. <br>
+	 * A thread will generally only use one or two data sources at a time.
 	 */
-	private static final int MAX_POOLED_SOURCES = Runtime.getRuntime().availableProcessors() * 2;
+	public static final int MAGAZINE_SIZE = 2;
+	
+	private final ThreadLocal<Magazine<TDataSource>> magazineRef = ThreadLocal.withInitial(this::createMagazine);
+	/** weak so a thread's magazine and its data sources can be garbage collected once the thread stops */
+	private final ConcurrentLinkedQueue<MagazineRef<TDataSource>> magazineRefs = new ConcurrentLinkedQueue<>();
+	/** receives the references for magazines that were garbage collected, so their size can be released */
+	private final ReferenceQueue<Magazine<TDataSource>> collectedMagazineQueue = new ReferenceQueue<>();
 	
-	private final ArrayList<TDataSource> pooledDataSources = new ArrayList<>();
-	private final ReentrantLock poolLock = new ReentrantLock();
+	private final ConcurrentLinkedQueue<TDataSource> depot = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger depotCount = new AtomicInteger(0);
+	/** includes both the depot and every thread's magazine */
+	private final AtomicLong retainedSizeInBytes = new AtomicLong(0);
 	
 	private final Function<Long, TDataSource> createEmptyDatasourceFunc;
 	@Nullable
 	private final IPrepPooledDataSourceFunc<TDataSource, TDhLevel> prepDatasourceFunc;
+	/** Data sources aren't modified while pooled, so this will return the same value when they're added and removed. */
+	private final ToLongFunction<TDataSource> estimateSizeInBytesFunc;
+	/** the pool will stop accepting data sources once they would go over this size, data sources held by each thread are included */
+	public final long maxSizeInBytes;
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
 	
 	
 	
@@ -35,10 +64,21 @@ public class DataSourcePool<TDataSource extends IDataSource<TDhLevel>, TDhLevel
 	// constructor //
 	//=============//
 	
-	public DataSourcePool(Function<Long, TDataSource> createEmptyDatasourceFunc, @Nullable IPrepPooledDataSourceFunc<TDataSource, TDhLevel> prepDatasourceFunc)
+	public DataSourcePool(
+			Function<Long, TDataSource> createEmptyDatasourceFunc, @Nullable IPrepPooledDataSourceFunc<TDataSource, TDhLevel> prepDatasourceFunc,
+			ToLongFunction<TDataSource> estimateSizeInBytesFunc, long maxSizeInBytes)
 	{
 		this.createEmptyDatasourceFunc = createEmptyDatasourceFunc;
 		this.prepDatasourceFunc = prepDatasourceFunc;
+		this.estimateSizeInBytesFunc = estimateSizeInBytesFunc;
+		this.maxSizeInBytes = maxSizeInBytes;
+	}
+	
+	private Magazine<TDataSource> createMagazine()
+	{
+		Magazine<TDataSource> magazine = new Magazine<>();
+		this.magazineRefs.add(new MagazineRef<>(magazine, this.collectedMagazineQueue));
+		return magazine;
 	}
 	
 	
@@ -47,47 +87,55 @@ public class DataSourcePool<TDataSource extends IDataSource<TDhLevel>, TDhLevel
 	// pool handlers //
 	//===============//
 	
-	/** 
+	/**
 	 * Returns a cleared data source.
-	 * @see DataSourcePool#getPooledSource(long, boolean) 
+	 * @see DataSourcePool#getPooledSource(long, boolean)
 	 */
 	public TDataSource getPooledSource(long pos) { return this.getPooledSource(pos, true);}
 	
 	/** @return an empty data source if non are cached */
 	public TDataSource getPooledSource(long pos, boolean clearData)
 	{
-		try
+		Magazine<TDataSource> magazine = this.magazineRef.get();
+		TDataSource dataSource = magazine.pop();
+		if (dataSource != null)
 		{
-			this.poolLock.lock();
-			
-			int index = this.pooledDataSources.size() - 1;
-			if (index == -1)
+			long sizeInBytes = this.estimateSizeInBytesFunc.applyAsLong(dataSource);
+			magazine.sizeInBytes.addAndGet(-sizeInBytes);
+			this.retainedSizeInBytes.addAndGet(-sizeInBytes);
+		}
+		else
+		{
+			dataSource = this.depot.poll();
+			if (dataSource != null)
 			{
-				// no pooled sources exist
-				return this.createEmptyDatasourceFunc.apply(pos);
-			}
-			else
-			{
-				TDataSource dataSource = this.pooledDataSources.remove(index);
-				
-				// some data sources may want to handle prep themselves 
-				// (due to needing additional inputs than what this pool keeps track of)
-				if (this.prepDatasourceFunc != null)
-				{
-					this.prepDatasourceFunc.prepDataSource(pos, clearData, dataSource);
-				}
-				
-				return dataSource;
+				this.depotCount.decrementAndGet();
+				this.retainedSizeInBytes.addAndGet(-this.estimateSizeInBytesFunc.applyAsLong(dataSource));
 			}
 		}
-		finally
+		
+		if (dataSource == null)
+		{
+			// no pooled sources exist
+			this.missCount.increment();
+			return this.createEmptyDatasourceFunc.apply(pos);
+		}
+		
+		
+		this.hitCount.increment();
+		
+		// some data sources may want to handle prep themselves
+		// (due to needing additional inputs than what this pool keeps track of)
+		if (this.prepDatasourceFunc != null)
 		{
-			this.poolLock.unlock();
+			this.prepDatasourceFunc.prepDataSource(pos, clearData, dataSource);
 		}
+		
+		return dataSource;
 	}
 	
 	/**
-	 * Doesn't have to be called, if a data source isn't returned, nothing will be leaked. 
+	 * Doesn't have to be called, if a data source isn't returned, nothing will be leaked.
 	 * It just means a new source must be constructed next time {@link DataSourcePool#getPooledSource} is called.
 	 */
 	public void returnPooledDataSource(TDataSource dataSource)
@@ -96,19 +144,77 @@ public class DataSourcePool<TDataSource extends IDataSource<TDhLevel>, TDhLevel
 		{
 			return;
 		}
-		else if (this.pooledDataSources.size() > MAX_POOLED_SOURCES)
+		
+		long sizeInBytes = this.estimateSizeInBytesFunc.applyAsLong(dataSource);
+		if (!this.tryReserveSize(sizeInBytes))
 		{
+			// the pool is full, let the GC handle this data source
 			return;
 		}
 		
-		try
+		
+		Magazine<TDataSource> magazine = this.magazineRef.get();
+		// the size is added first so a concurrent clear() can't make it negative
+		magazine.sizeInBytes.addAndGet(sizeInBytes);
+		if (magazine.push(dataSource))
 		{
-			this.poolLock.lock();
-			this.pooledDataSources.add(dataSource);
+			return;
 		}
-		finally
+		magazine.sizeInBytes.addAndGet(-sizeInBytes);
+		
+		this.depotCount.incrementAndGet();
+		this.depot.add(dataSource);
+	}
+	/**
+	 * The space is reserved before adding the data source so multiple threads can't go over the limit together.
+	 * @return false if the data source wouldn't fit
+	 */
+	private boolean tryReserveSize(long sizeInBytes)
+	{
+		if (this.retainedSizeInBytes.addAndGet(sizeInBytes) <= this.maxSizeInBytes)
 		{
-			this.poolLock.unlock();
+			return true;
+		}
+		this.retainedSizeInBytes.addAndGet(-sizeInBytes);
+		
+		// magazines from stopped threads may still be counted,
+		// if any are released there might be room now
+		if (!this.releaseCollectedMagazines())
+		{
+			return false;
+		}
+		
+		if (this.retainedSizeInBytes.addAndGet(sizeInBytes) <= this.maxSizeInBytes)
+		{
+			return true;
+		}
+		this.retainedSizeInBytes.addAndGet(-sizeInBytes);
+		return false;
+	}
+	
+	/**
+	 * Removes every data source in the pool, including those in other threads' magazines. <br>
+	 * Other threads may be using their magazines at the same time,
+	 * so each data source is removed atomically and will only be handed out once.
+	 */
+	public void clear()
+	{
+		for (Magazine<TDataSource> magazine : this.getLiveMagazines())
+		{
+			TDataSource dataSource;
+			while ((dataSource = magazine.pop()) != null)
+			{
+				long sizeInBytes = this.estimateSizeInBytesFunc.applyAsLong(dataSource);
+				magazine.sizeInBytes.addAndGet(-sizeInBytes);
+				this.retainedSizeInBytes.addAndGet(-sizeInBytes);
+			}
+		}
+		
+		TDataSource dataSource;
+		while ((dataSource = this.depot.poll()) != null)
+		{
+			this.depotCount.decrementAndGet();
+			this.retainedSizeInBytes.addAndGet(-this.estimateSizeInBytesFunc.applyAsLong(dataSource));
 		}
 	}
 	
@@ -119,7 +225,93 @@ public class DataSourcePool<TDataSource extends IDataSource<TDhLevel>, TDhLevel
 	//===============//
 	
 	/** Returns how many data sources are in the pool */
-	public int size() { return this.pooledDataSources.size(); }
+	public int size()
+	{
+		int count = this.depotCount.get();
+		for (Magazine<TDataSource> magazine : this.getLiveMagazines())
+		{
+			count += magazine.count();
+		}
+		return count;
+	}
+	
+	/** how many times a pooled data source was re-used */
+	public long getHitCount() { return this.hitCount.sum(); }
+	/** how many times a new data source had to be created */
+	public long getMissCount() { return this.missCount.sum(); }
+	
+	/** @return the estimated size of every data source in the pool, including those held by each thread */
+	public long getRetainedSizeInBytes()
+	{
+		this.releaseCollectedMagazines();
+		return this.retainedSizeInBytes.get();
+	}
+	
+	/**
+	 * Removes the references for any threads that have stopped
+	 * and releases the size of the data sources their magazines held.
+	 *
+	 * @return true if any magazines were released
+	 */
+	private boolean releaseCollectedMagazines()
+	{
+		boolean released = false;
+		Reference<?> collectedRef;
+		while ((collectedRef = this.collectedMagazineQueue.poll()) != null)
+		{
+			MagazineRef<?> magazineRef = (MagazineRef<?>) collectedRef;
+			this.magazineRefs.remove(magazineRef);
+			this.retainedSizeInBytes.addAndGet(-magazineRef.sizeInBytes.getAndSet(0));
+			released = true;
+		}
+		return released;
+	}
+	
+	private Iterable<Magazine<TDataSource>> getLiveMagazines()
+	{
+		this.releaseCollectedMagazines();
+		
+		return () -> new Iterator<Magazine<TDataSource>>()
+		{
+			private final Iterator<MagazineRef<TDataSource>> refIterator = DataSourcePool.this.magazineRefs.iterator();
+			private Magazine<TDataSource> next = this.findNext();
+			
+			private Magazine<TDataSource> findNext()
+			{
+				while (this.refIterator.hasNext())
+				{
+					Magazine<TDataSource> magazine = this.refIterator.next().get();
+					if (magazine != null)
+					{
+						return magazine;
+					}
+				}
+				return null;
+			}
+			
+			@Override
+			public boolean hasNext() { return this.next != null; }
+			
+			@Override
+			public Magazine<TDataSource> next()
+			{
+				Magazine<TDataSource> magazine = this.next;
+				this.next = this.findNext();
+				return magazine;
+			}
+		};
+	}
+	
+	/** used for rendering to the F3 menu */
+	public String getDebugString(String name)
+	{
+		long hitCount = this.getHitCount();
+		long missCount = this.getMissCount();
+		long totalCount = hitCount + missCount;
+		String hitPercent = (totalCount == 0) ? "0" : String.valueOf((hitCount * 100) / totalCount);
+		
+		return name + " pool: " + this.size() + " retained (" + new UnitBytes(this.getRetainedSizeInBytes()) + "), hits: " + hitCount + "/" + totalCount + " (" + hitPercent + "%)";
+	}
 	
 	
 	
@@ -134,4 +326,82 @@ public class DataSourcePool<TDataSource extends IDataSource<TDhLevel>, TDhLevel
 		void prepDataSource(long pos, boolean clearData, TDataSource dataSource);
 	}
 	
+	/**
+	 * Only the thread that owns a magazine adds to it,
+	 * but any thread can remove from it so {@link DataSourcePool#clear()} can empty every thread's magazine.
+	 * Each slot is swapped atomically so a data source can't be removed twice.
+	 */
+	private static class Magazine<TDataSource>
+	{
+		private final AtomicReferenceArray<TDataSource> dataSources = new AtomicReferenceArray<>(MAGAZINE_SIZE);
+		/** shared with this magazine's {@link MagazineRef} so the size can be released after this magazine is garbage collected */
+		public final AtomicLong sizeInBytes = new AtomicLong(0);
+		
+		
+		
+		/** Can be called from any thread. */
+		@Nullable
+		public TDataSource pop()
+		{
+			for (int i = MAGAZINE_SIZE - 1; i >= 0; i--)
+			{
+				// checking first prevents writing to empty slots
+				if (this.dataSources.get(i) != null)
+				{
+					TDataSource dataSource = this.dataSources.getAndSet(i, null);
+					if (dataSource != null)
+					{
+						return dataSource;
+					}
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * Should only be called by the owning thread.
+		 * Other threads only ever empty slots, so an empty slot can be filled without a compare and set.
+		 *
+		 * @return false if full
+		 */
+		public boolean push(TDataSource dataSource)
+		{
+			for (int i = 0; i < MAGAZINE_SIZE; i++)
+			{
+				if (this.dataSources.get(i) == null)
+				{
+					this.dataSources.set(i, dataSource);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		public int count()
+		{
+			int count = 0;
+			for (int i = 0; i < MAGAZINE_SIZE; i++)
+			{
+				if (this.dataSources.get(i) != null)
+				{
+					count++;
+				}
+			}
+			return count;
+		}
+		
+	}
+	
+	private static class MagazineRef<TDataSource> extends WeakReference<Magazine<TDataSource>>
+	{
+		public final AtomicLong sizeInBytes;
+		
+		public MagazineRef(Magazine<TDataSource> magazine, ReferenceQueue<Magazine<TDataSource>> queue)
+		{
+			super(magazine, queue);
+			this.sizeInBytes = magazine.sizeInBytes;
+		}
+		
+	}
+	
 }
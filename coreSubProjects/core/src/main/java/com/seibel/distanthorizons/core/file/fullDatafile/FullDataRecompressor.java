@@ -0,0 +1,433 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.jar.lodDatabase.LodDatabaseTool;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Re-encodes existing full data to a new {@link EDhApiDataCompressionMode}
+ * and then returns the freed space to the OS if the database supports incremental vacuuming. <br>
+ * Without this, changing the compression config only affects data that is written afterward. <br><br>
+ *
+ * The table is walked in primary key order in small batches so the database is never locked for long,
+ * and the position of the last checked row is written to disk after each batch
+ * so the job can resume where it left off after a restart.
+ *
+ * @see Progress
+ */
+public class FullDataRecompressor
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final String PROGRESS_FILE_NAME = "recompression.properties";
+	
+	/** how many rows are checked between progress saves */
+	private static final int BATCH_SIZE = 50;
+	
+	
+	private final FullDataSourceV2Repo repo;
+	private final File progressFile;
+	private final EDhApiDataCompressionMode targetCompressionMode;
+	
+	@Nullable
+	private volatile Progress progress = null;
+	private volatile long totalCount = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataRecompressor(FullDataSourceV2Repo repo, File progressFile, EDhApiDataCompressionMode targetCompressionMode)
+	{
+		this.repo = repo;
+		this.progressFile = progressFile;
+		this.targetCompressionMode = targetCompressionMode;
+	}
+	
+	
+	
+	//=========//
+	// running //
+	//=========//
+	
+	/**
+	 * Blocks until every row has been recompressed or until keepRunning returns false. <br>
+	 * Should be run on a low priority thread.
+	 *
+	 * @return true if the job finished, false if it was stopped early
+	 */
+	public boolean run(BooleanSupplier keepRunning)
+	{
+		Progress progress = this.loadProgress();
+		this.progress = progress;
+		if (progress.complete)
+		{
+			return true;
+		}
+		
+		this.totalCount = this.repo.getDataSourceCount();
+		if (progress.checkedCount == 0)
+		{
+			LOGGER.info("Recompressing [" + this.totalCount + "] data sources to [" + this.targetCompressionMode + "]...");
+		}
+		else
+		{
+			LOGGER.info("Resuming recompression to [" + this.targetCompressionMode + "] at [" + progress.checkedCount + "/" + this.totalCount + "]...");
+		}
+		
+		
+		
+		//===============//
+		// recompression //
+		//===============//
+		
+		while (keepRunning.getAsBoolean())
+		{
+			long startTime = System.currentTimeMillis();
+			
+			Map<Long, Byte> compressionModeByPos = this.repo.getCompressionModesAfterPos(progress.lastCheckedPos, BATCH_SIZE);
+			if (compressionModeByPos.isEmpty())
+			{
+				break;
+			}
+			
+			for (Map.Entry<Long, Byte> entry : compressionModeByPos.entrySet())
+			{
+				if (!keepRunning.getAsBoolean())
+				{
+					break;
+				}
+				
+				long pos = entry.getKey();
+				if (entry.getValue() != this.targetCompressionMode.value)
+				{
+					try
+					{
+						progress.bytesSaved += this.repo.recompress(pos, this.targetCompressionMode);
+						progress.recompressedCount++;
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						this.saveProgress();
+						return false;
+					}
+					catch (IOException | DataCorruptedException | IllegalArgumentException e)
+					{
+						// the old data is left as-is, it can still be read the same as before
+						progress.failedCount++;
+						LOGGER.warn("Unable to recompress data source at pos [" + DhSectionPos.toString(pos) + "], error: [" + e.getMessage() + "].", e);
+					}
+				}
+				
+				progress.lastCheckedPos = pos;
+				progress.checkedCount++;
+			}
+			this.saveProgress();
+			
+			long batchTime = System.currentTimeMillis() - startTime;
+			LOGGER.info("Recompressing - [" + progress.checkedCount + "/" + this.totalCount + "] in [" + batchTime + "]ms, [" + progress.bytesSaved + "] bytes saved...");
+			
+			// use the batch time so fast computers don't wait super long
+			// and slow computers don't get their database locked constantly
+			sleep(batchTime / 2);
+		}
+		
+		if (!keepRunning.getAsBoolean())
+		{
+			this.saveProgress();
+			return false;
+		}
+		
+		
+		
+		//===========//
+		// vacuuming //
+		//===========//
+		
+		try
+		{
+			if (!this.vacuum(keepRunning))
+			{
+				this.saveProgress();
+				return false;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// the recompression is still done, vacuuming will be re-tried next time
+			LOGGER.warn("Unable to vacuum the database after recompression, error: [" + e.getMessage() + "].", e);
+			this.saveProgress();
+			return false;
+		}
+		
+		progress.complete = true;
+		this.saveProgress();
+		LOGGER.info("Recompression to [" + this.targetCompressionMode + "] complete. " + progress.getCountString());
+		return true;
+	}
+	/** @return false if stopped early */
+	private boolean vacuum(BooleanSupplier keepRunning)
+	{
+		long freeByteCount = this.repo.getFreeByteCount();
+		if (freeByteCount == 0)
+		{
+			return true;
+		}
+		
+		if (!this.repo.isIncrementalVacuumEnabled())
+		{
+			// converting the database locks it until the whole file has been re-written,
+			// so that is only done by the offline database tool
+			LOGGER.info("[" + freeByteCount + "] bytes are unused in the database [" + this.repo.databaseLocation + "]. "
+					+ "This database was created before incremental vacuuming was supported, "
+					+ "the space can be freed by running [" + LodDatabaseTool.COMMAND_NAME + " " + LodDatabaseTool.VACUUM_SUBCOMMAND + "] while the game is closed.");
+			return true;
+		}
+		
+		
+		LOGGER.info("Vacuuming [" + freeByteCount + "] bytes...");
+		long[] lastChunkStartTimeRef = new long[] { -1 };
+		return this.repo.runIncrementalVacuumInChunks(() ->
+		{
+			// wait half as long as the last chunk took so the game can still use the database
+			long currentTime = System.currentTimeMillis();
+			if (lastChunkStartTimeRef[0] != -1)
+			{
+				sleep((currentTime - lastChunkStartTimeRef[0]) / 2);
+			}
+			lastChunkStartTimeRef[0] = System.currentTimeMillis();
+			
+			return keepRunning.getAsBoolean();
+		});
+	}
+	
+	
+	
+	//========//
+	// status //
+	//========//
+	
+	/** @return null if the job isn't running */
+	@Nullable
+	public String getStatusString()
+	{
+		Progress progress = this.progress;
+		if (progress == null || progress.complete)
+		{
+			return null;
+		}
+		
+		return "Recompression: " + progress.checkedCount + "/" + this.totalCount + " (" + (progress.bytesSaved / 1_000_000) + " MB saved)";
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** @return a new progress if none was saved or the target compression has changed since it was saved */
+	private Progress loadProgress()
+	{
+		if (this.progressFile.exists())
+		{
+			try
+			{
+				Progress progress = Progress.load(this.progressFile);
+				if (progress.targetCompressionMode == this.targetCompressionMode)
+				{
+					return progress;
+				}
+			}
+			catch (IOException | IllegalArgumentException e)
+			{
+				LOGGER.warn("Unable to read recompression progress from [" + this.progressFile + "], recompression will restart. Error: [" + e.getMessage() + "].");
+			}
+		}
+		
+		return new Progress(this.targetCompressionMode);
+	}
+	
+	private void saveProgress()
+	{
+		Progress progress = this.progress;
+		if (progress == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			progress.save(this.progressFile);
+		}
+		catch (IOException e)
+		{
+			LOGGER.error("Unable to save recompression progress to [" + this.progressFile + "], error: [" + e.getMessage() + "].", e);
+		}
+	}
+	
+	private static void sleep(long timeInMs)
+	{
+		try
+		{
+			Thread.sleep(timeInMs);
+		}
+		catch (InterruptedException ignore)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/**
+	 * Rows are checked in primary key order, so only the last checked position
+	 * needs to be saved to resume. <br>
+	 * If the target compression changes the progress is discarded and every row is checked again.
+	 */
+	public static class Progress
+	{
+		private static final String TARGET_COMPRESSION_KEY = "targetCompressionMode";
+		private static final String LAST_CHECKED_POS_KEY = "lastCheckedPos";
+		private static final String CHECKED_COUNT_KEY = "checkedCount";
+		private static final String RECOMPRESSED_COUNT_KEY = "recompressedCount";
+		private static final String FAILED_COUNT_KEY = "failedCount";
+		private static final String BYTES_SAVED_KEY = "bytesSaved";
+		private static final String COMPLETE_KEY = "complete";
+		
+		public final EDhApiDataCompressionMode targetCompressionMode;
+		/** null if no rows have been checked yet */
+		@Nullable
+		public Long lastCheckedPos = null;
+		
+		public long checkedCount = 0;
+		public long recompressedCount = 0;
+		public long failedCount = 0;
+		/** may be negative if the new compression mode is worse */
+		public long bytesSaved = 0;
+		/** true once every row has been checked and the database has been vacuumed */
+		public boolean complete = false;
+		
+		
+		
+		public Progress(EDhApiDataCompressionMode targetCompressionMode) { this.targetCompressionMode = targetCompressionMode; }
+		
+		
+		
+		public String getCountString()
+		{
+			return "Recompressed: [" + this.recompressedCount + "], failed: [" + this.failedCount + "], bytes saved: [" + this.bytesSaved + "].";
+		}
+		
+		
+		
+		//=============//
+		// persistence //
+		//=============//
+		
+		public void save(File file) throws IOException
+		{
+			Properties properties = new Properties();
+			properties.setProperty(TARGET_COMPRESSION_KEY, this.targetCompressionMode.name());
+			if (this.lastCheckedPos != null)
+			{
+				properties.setProperty(LAST_CHECKED_POS_KEY, Long.toString(this.lastCheckedPos));
+			}
+			properties.setProperty(CHECKED_COUNT_KEY, Long.toString(this.checkedCount));
+			properties.setProperty(RECOMPRESSED_COUNT_KEY, Long.toString(this.recompressedCount));
+			properties.setProperty(FAILED_COUNT_KEY, Long.toString(this.failedCount));
+			properties.setProperty(BYTES_SAVED_KEY, Long.toString(this.bytesSaved));
+			properties.setProperty(COMPLETE_KEY, Boolean.toString(this.complete));
+			
+			// write to a temporary file first so a crash mid-write won't corrupt the existing progress
+			File tempFile = new File(file.getPath() + ".tmp");
+			try (OutputStream outputStream = new FileOutputStream(tempFile))
+			{
+				properties.store(outputStream, "Distant Horizons recompression progress");
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		/** @throws IllegalArgumentException if the file is missing values or they are invalid */
+		public static Progress load(File file) throws IOException, IllegalArgumentException
+		{
+			Properties properties = new Properties();
+			try (InputStream inputStream = new FileInputStream(file))
+			{
+				properties.load(inputStream);
+			}
+			
+			String targetCompressionName = properties.getProperty(TARGET_COMPRESSION_KEY);
+			if (targetCompressionName == null)
+			{
+				throw new IllegalArgumentException("Missing recompression property [" + TARGET_COMPRESSION_KEY + "].");
+			}
+			Progress progress = new Progress(EDhApiDataCompressionMode.valueOf(targetCompressionName.trim()));
+			
+			String lastCheckedPos = properties.getProperty(LAST_CHECKED_POS_KEY);
+			progress.lastCheckedPos = (lastCheckedPos != null) ? Long.parseLong(lastCheckedPos.trim()) : null;
+			
+			progress.checkedCount = getLongProperty(properties, CHECKED_COUNT_KEY);
+			progress.recompressedCount = getLongProperty(properties, RECOMPRESSED_COUNT_KEY);
+			progress.failedCount = getLongProperty(properties, FAILED_COUNT_KEY);
+			progress.bytesSaved = getLongProperty(properties, BYTES_SAVED_KEY);
+			progress.complete = Boolean.parseBoolean(properties.getProperty(COMPLETE_KEY));
+			return progress;
+		}
+		private static long getLongProperty(Properties properties, String key) throws IllegalArgumentException
+		{
+			String value = properties.getProperty(key);
+			if (value == null)
+			{
+				throw new IllegalArgumentException("Missing recompression property [" + key + "].");
+			}
+			// throws a NumberFormatException (which is an IllegalArgumentException) if invalid
+			return Long.parseLong(value.trim());
+		}
+		
+	}
+	
+}
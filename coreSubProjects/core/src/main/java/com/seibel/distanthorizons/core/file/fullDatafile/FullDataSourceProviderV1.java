@@ -107,7 +107,7 @@ public class FullDataSourceProviderV1<TDhLevel extends IDhLevel>
 		}
 		catch (RejectedExecutionException ignore)
 		{
-			// the thread pool was probably shut down because it's size is being changed, just wait a sec and it should be back
+			// can only happen if the executor was shut down, IE the level is being unloaded
 			return CompletableFuture.completedFuture(null);
 		}
 	}
@@ -25,6 +25,9 @@ import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV1;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.file.store.ConvertingFullDataStore;
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
+import com.seibel.distanthorizons.core.file.store.regionFile.RegionFileFullDataStore;
 import com.seibel.distanthorizons.core.file.structure.AbstractSaveStructure;
 import com.seibel.distanthorizons.core.file.AbstractDataSourceHandler;
 import com.seibel.distanthorizons.core.level.IDhLevel;
@@ -45,21 +48,19 @@ import org.jetbrains.annotations.Nullable;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 
 /**
  * Handles reading/writing {@link FullDataSourceV2}
- * to and from the database.
+ * to and from the database or region files.
  */
 public class FullDataSourceProviderV2
-		extends AbstractDataSourceHandler<FullDataSourceV2, FullDataSourceV2DTO, FullDataSourceV2Repo, IDhLevel>
+		extends AbstractDataSourceHandler<FullDataSourceV2, FullDataSourceV2DTO, IFullDataStore, IDhLevel>
 		implements IDebugRenderable
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
@@ -81,6 +82,8 @@ public class FullDataSourceProviderV2
 	 * to make sure the thread doesn't get stuck.
 	 */
 	private static final int MIGRATION_MAX_UPDATE_TIMEOUT_IN_MS = 5 * 60 * 1_000;
+	/** how long closing waits for the current migration or recompression step to finish */
+	private static final int MIGRATION_SHUTDOWN_TIMEOUT_IN_SECONDS = 30;
 	
 	
 	protected final ThreadPoolExecutor migrationThreadPool;
@@ -96,6 +99,12 @@ public class FullDataSourceProviderV2
 	protected long legacyDeletionCount = -1;
 	protected long migrationCount = -1;
 	
+	/** null if recompression is disabled or the data isn't stored in the database */
+	@Nullable
+	protected final FullDataRecompressor recompressor;
+	/** separate from {@link FullDataSourceProviderV2#migrationThreadRunning} since recompression doesn't block retrieval */
+	protected final AtomicBoolean recompressionRunning = new AtomicBoolean(true);
+	
 	/**
 	 * Tracks which positions are currently being updated
 	 * to prevent duplicate concurrent updates.
@@ -127,8 +136,27 @@ public class FullDataSourceProviderV2
 		
 		// start migrating any legacy data sources present in the background
 		this.migrationThreadPool = ThreadUtil.makeRateLimitedThreadPool(1, MIGRATION_THREAD_NAME_PREFIX + "[" + dimensionName + "]", Config.Client.Advanced.MultiThreading.runTimeRatioForUpdatePropagatorThreads.get(), Thread.MIN_PRIORITY, (Semaphore) null);
+		if (this.repo instanceof ConvertingFullDataStore)
+		{
+			// the old store is still readable while this runs, so loading the level doesn't have to wait for it
+			ConvertingFullDataStore convertingStore = (ConvertingFullDataStore) this.repo;
+			this.migrationThreadPool.execute(() -> convertingStore.convert(this.migrationThreadRunning::get));
+		}
 		this.migrationThreadPool.execute(() -> this.convertLegacyDataSources());
 		
+		// runs after migration since the migration thread pool only has 1 thread
+		IFullDataStore currentStore = (this.repo instanceof ConvertingFullDataStore) ? ((ConvertingFullDataStore) this.repo).targetStore : this.repo;
+		if (Config.Client.Advanced.LodBuilding.recompressExistingData.get()
+			&& currentStore instanceof FullDataSourceV2Repo)
+		{
+			this.recompressor = new FullDataRecompressor((FullDataSourceV2Repo) currentStore, new File(this.saveDir, FullDataRecompressor.PROGRESS_FILE_NAME), Config.Client.Advanced.LodBuilding.dataCompression.get());
+			this.migrationThreadPool.execute(() -> this.recompressor.run(this.recompressionRunning::get));
+		}
+		else
+		{
+			this.recompressor = null;
+		}
+		
 		this.updateQueueProcessor = ThreadUtil.makeSingleThreadPool("Parent Update Queue [" + dimensionName + "]");
 		this.updateQueueProcessor.execute(() -> this.runUpdateQueue());
 	}
@@ -140,11 +168,12 @@ public class FullDataSourceProviderV2
 	//====================//
 	
 	@Override
-	protected FullDataSourceV2Repo createRepo()
+	protected IFullDataStore createRepo()
 	{
+		FullDataSourceV2Repo databaseRepo;
 		try
 		{
-			return new FullDataSourceV2Repo("jdbc:sqlite", this.saveDir.getPath() + "/" + AbstractSaveStructure.DATABASE_NAME);
+			databaseRepo = new FullDataSourceV2Repo("jdbc:sqlite", this.saveDir.getPath() + "/" + AbstractSaveStructure.DATABASE_NAME);
 		}
 		catch (SQLException e)
 		{
@@ -152,6 +181,25 @@ public class FullDataSourceProviderV2
 			// or the database update failed
 			throw new RuntimeException(e);
 		}
+		
+		
+		File regionFolder = new File(this.saveDir, RegionFileFullDataStore.FOLDER_NAME);
+		if (Config.Client.Advanced.LodBuilding.useRegionFileStorage.get())
+		{
+			// any data in the database is moved in the background, see the constructor
+			RegionFileFullDataStore regionFileStore = new RegionFileFullDataStore(regionFolder);
+			return new ConvertingFullDataStore(databaseRepo, regionFileStore);
+		}
+		else if (RegionFileFullDataStore.containsRegionFiles(regionFolder))
+		{
+			// region files were used previously
+			RegionFileFullDataStore regionFileStore = new RegionFileFullDataStore(regionFolder);
+			return new ConvertingFullDataStore(regionFileStore, databaseRepo);
+		}
+		else
+		{
+			return databaseRepo;
+		}
 	}
 	
 	@Override
@@ -178,56 +226,9 @@ public class FullDataSourceProviderV2
 	protected FullDataSourceV2 makeEmptyDataSource(long pos) { return FullDataSourceV2.DATA_SOURCE_POOL.getPooledSource(pos, true); }
 	
 	@Nullable
-	public Long getTimestampForPos(long pos)
-	{
-		try
-		{
-			PreparedStatement preparedStatement = this.repo.createPreparedStatement(
-					"SELECT LastModifiedUnixDateTime " +
-							"FROM " + this.repo.getTableName() + " " +
-							"WHERE DetailLevel = ? " +
-							"AND PosX = ? " +
-							"AND PosZ = ?;"
-			);
-			preparedStatement.setInt(1, DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
-			preparedStatement.setInt(2, DhSectionPos.getX(pos));
-			preparedStatement.setInt(3, DhSectionPos.getZ(pos));
-			
-			List<Map<String, Object>> row = this.repo.query(preparedStatement);
-			return !row.isEmpty() ? (Long) row.get(0).get("LastModifiedUnixDateTime") : null;
-		}
-		catch (SQLException e)
-		{
-			throw new RuntimeException(e);
-		}
-	}
+	public Long getTimestampForPos(long pos) { return this.repo.getTimestampForPos(pos); }
 	public Map<Long, Long> getTimestampsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ)
-	{
-		try
-		{
-			PreparedStatement preparedStatement = this.repo.createPreparedStatement(
-					"SELECT PosX, PosZ, LastModifiedUnixDateTime " +
-							"FROM " + this.repo.getTableName() + " " +
-							"WHERE DetailLevel = ? " +
-							"AND PosX BETWEEN ? AND ? " +
-							"AND PosZ BETWEEN ? AND ?;"
-			);
-			preparedStatement.setInt(1, detailLevel - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
-			preparedStatement.setInt(2, startPosX);
-			preparedStatement.setInt(3, endPosX);
-			preparedStatement.setInt(4, startPosZ);
-			preparedStatement.setInt(5, endPosZ);
-			
-			return this.repo.query(preparedStatement).stream().collect(Collectors.toMap(
-					row -> DhSectionPos.encode(detailLevel, (int) row.get("PosX"), (int) row.get("PosZ")),
-					row -> (long) row.get("LastModifiedUnixDateTime"))
-			);
-		}
-		catch (SQLException e)
-		{
-			throw new RuntimeException(e);
-		}
-	}
+	{ return this.repo.getTimestampsForRange(detailLevel, startPosX, startPosZ, endPosX, endPosZ); }
 	
 	
 	
@@ -344,7 +345,7 @@ public class FullDataSourceProviderV2
 							});
 						}
 						catch (RejectedExecutionException ignore)
-						{ /* the executor was shut down, it should be back up shortly and able to accept new jobs */ }
+						{ /* can only happen if the executor was shut down, IE the level is being unloaded */ }
 						catch (Exception e)
 						{
 							this.parentUpdatingPosSet.remove(parentUpdatePos);
@@ -537,6 +538,12 @@ public class FullDataSourceProviderV2
 	
 	public long getLegacyDeletionCount() { return this.legacyDeletionCount; }
 	public long getTotalMigrationCount() { return this.migrationCount; }
+	/** @return null if recompression isn't running */
+	@Nullable
+	public String getRecompressionStatusString() { return (this.recompressor != null) ? this.recompressor.getStatusString() : null; }
+	/** @return null if the data isn't being moved between storage types */
+	@Nullable
+	public String getStoreConversionStatusString() { return (this.repo instanceof ConvertingFullDataStore) ? ((ConvertingFullDataStore) this.repo).getStatusString() : null; }
 	
 	
 	private void showMigrationStartMessage()
@@ -665,13 +672,38 @@ public class FullDataSourceProviderV2
 	@Override
 	public void close()
 	{
+		// the background jobs have to finish their current row before the repo can be closed
+		this.recompressionRunning.set(false);
+		this.migrationThreadRunning.set(false);
+		this.migrationThreadPool.shutdown();
+		try
+		{
+			if (!this.migrationThreadPool.awaitTermination(MIGRATION_SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS))
+			{
+				LOGGER.warn("Migration thread didn't stop after [" + MIGRATION_SHUTDOWN_TIMEOUT_IN_SECONDS + "] seconds, closing the database anyway.");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			LOGGER.warn("Interrupted while waiting for the migration thread to stop, closing the database anyway.", e);
+			Thread.currentThread().interrupt();
+		}
+		
 		super.close();
 		this.updateQueueProcessor.shutdownNow();
 		
-		this.legacyFileHandler.close();
+		if (this.repo instanceof ConvertingFullDataStore)
+		{
+			ConvertingFullDataStore convertingStore = (ConvertingFullDataStore) this.repo;
+			if (convertingStore.isConversionComplete()
+				&& convertingStore.sourceStore instanceof RegionFileFullDataStore)
+			{
+				// prevents re-checking the region files every time this level is loaded
+				RegionFileFullDataStore.deleteRegionFiles(((RegionFileFullDataStore) convertingStore.sourceStore).folder);
+			}
+		}
 		
-		this.migrationThreadRunning.set(false);
-		this.migrationThreadPool.shutdown();
+		this.legacyFileHandler.close();
 	}
 	
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ package com.seibel.distanthorizons.core.file.fullDatafile;
 import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
 import com.seibel.distanthorizons.core.file.structure.AbstractSaveStructure;
 import com.seibel.distanthorizons.core.generation.IFullDataSourceRetrievalQueue;
 import com.seibel.distanthorizons.core.generation.tasks.IWorldGenTaskTracker;
@@ -209,19 +210,60 @@ public class GeneratedFullDataSourceProvider extends FullDataSourceProviderV2 im
 	}
 	
 	@Override
-	public boolean queuePositionForRetrieval(Long genPos)
+	public boolean queuePositionForRetrieval(Long genPos) { return this.queuePositionForGenerationAsync(genPos) != null; }
+	
+	/**
+	 * Same as {@link GeneratedFullDataSourceProvider#queuePositionForRetrieval(Long)}
+	 * but allows the caller to know when the position has finished generating.
+	 * 
+	 * @return null if the world generator isn't set up yet. <br>
+	 *          Otherwise a future that completes with true once the position
+	 *          (and any positions it was split into) generated successfully,
+	 *          or false if any part of the generation failed or was canceled.
+	 */
+	@Nullable
+	public CompletableFuture<Boolean> queuePositionForGenerationAsync(long genPos)
 	{
 		IFullDataSourceRetrievalQueue worldGenQueue = this.worldGenQueueRef.get();
 		if (worldGenQueue == null)
 		{
-			return false;
+			return null;
 		}
 		
 		GenTask genTask = new GenTask(genPos);
 		CompletableFuture<WorldGenResult> worldGenFuture = worldGenQueue.submitGenTask(genPos, (byte) (DhSectionPos.getDetailLevel(genPos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL), genTask);
 		worldGenFuture.whenComplete((genTaskResult, ex) -> this.onWorldGenTaskComplete(genTaskResult, ex));
 		
-		return true;
+		return getGenerationCompleteFuture(worldGenFuture);
+	}
+	/** recursively waits for any split up child tasks */
+	private static CompletableFuture<Boolean> getGenerationCompleteFuture(CompletableFuture<WorldGenResult> worldGenFuture)
+	{
+		return worldGenFuture.handle((genTaskResult, ex) -> 
+		{
+			if (ex != null || genTaskResult == null)
+			{
+				return CompletableFuture.completedFuture(false);
+			}
+			else if (genTaskResult.success)
+			{
+				return CompletableFuture.completedFuture(true);
+			}
+			else if (genTaskResult.childFutures.isEmpty())
+			{
+				// generation failed
+				return CompletableFuture.completedFuture(false);
+			}
+			
+			
+			// the task was split up, all children need to finish successfully
+			CompletableFuture<Boolean> combinedFuture = CompletableFuture.completedFuture(true);
+			for (CompletableFuture<WorldGenResult> childFuture : genTaskResult.childFutures)
+			{
+				combinedFuture = combinedFuture.thenCombine(getGenerationCompleteFuture(childFuture), (a, b) -> a && b);
+			}
+			return combinedFuture;
+		}).thenCompose((future) -> future);
 	}
 	
 	@Override
@@ -258,88 +300,34 @@ public class GeneratedFullDataSourceProvider extends FullDataSourceProviderV2 im
 		
 		
 		// don't check any child positions if this position is already fully generated 
-		if (this.repo.existsWithKey(pos))
+		byte minGenStep = this.repo.getMinColumnGenerationStepForPos(pos);
+		if (minGenStep != IFullDataStore.GEN_STEP_NOT_PRESENT
+			// shouldn't happen, but just in case check the children if the generation steps couldn't be read
+			&& minGenStep != IFullDataStore.GEN_STEP_UNKNOWN
+			&& minGenStep != EDhApiWorldGenerationStep.EMPTY.value)
 		{
-			byte[] columnGenerationSteps = this.repo.getColumnGenerationStepForPos(pos);
-			// shouldn't happen, but just in case
-			if (columnGenerationSteps != null)
-			{
-				boolean positionFullyGenerated = true;
-				
-				// check if any positions are ungenerated
-				for (int i = 0; i < columnGenerationSteps.length; i++)
-				{
-					if (columnGenerationSteps[i] == EDhApiWorldGenerationStep.EMPTY.value)
-					{
-						positionFullyGenerated = false;
-						break;
-					}
-				}
-				
-				if (positionFullyGenerated)
-				{
-					return new LongArrayList();
-				}
-			}
+			return new LongArrayList();
 		}
 		
 		
 		
 		// this section is missing one or more columns, queue the missing ones for generation.
-		// TODO speed up this logic by only checking ungenerated columns
+		// the generation steps are cached in memory by region, so this generally won't need to hit the database
 		LongArrayList generationList = new LongArrayList();
 		byte minGeneratorSectionDetailLevel = (byte) (worldGenQueue.highestDataDetail() + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
 		DhSectionPos.forEachChildAtDetailLevel(pos, minGeneratorSectionDetailLevel, (genPos) ->
 		{
-			if (!this.repo.existsWithKey(genPos))
-			{
-				// nothing exists for this position, it needs generation
-				generationList.add(genPos);
-			}
-			else
+			byte childMinGenStep = this.repo.getMinColumnGenerationStepForPos(genPos);
+			if (childMinGenStep == IFullDataStore.GEN_STEP_NOT_PRESENT
+				|| childMinGenStep == EDhApiWorldGenerationStep.EMPTY.value)
 			{
-				byte[] columnGenerationSteps = this.repo.getColumnGenerationStepForPos(genPos);
-				if (columnGenerationSteps == null)
-				{
-					// shouldn't happen, but just in case
-					return;
-				}
-				
-				
-				EDhApiWorldGenerationStep currentMinWorldGenStep = EDhApiWorldGenerationStep.LIGHT;
-				checkWorldGenLoop:
-				for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
-				{
-					for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
-					{
-						int index = FullDataSourceV2.relativePosToIndex(x, z);
-						byte genStepValue = columnGenerationSteps[index];
-						
-						if (genStepValue < currentMinWorldGenStep.value)
-						{
-							EDhApiWorldGenerationStep newWorldGenStep = EDhApiWorldGenerationStep.fromValue(genStepValue);
-							if (newWorldGenStep != null && newWorldGenStep.value < currentMinWorldGenStep.value)
-							{
-								currentMinWorldGenStep = newWorldGenStep;
-							}
-						}
-						
-						if (currentMinWorldGenStep == EDhApiWorldGenerationStep.EMPTY)
-						{
-							// queue the task
-							break checkWorldGenLoop;
-						}
-					}
-				}
-				
-				if (currentMinWorldGenStep != EDhApiWorldGenerationStep.EMPTY)
-				{
-					// no world gen needed for this position
-					return;
-				}
-				
+				// nothing exists for this position,
+				// or one or more columns are un-generated
 				generationList.add(genPos);
 			}
+			
+			// if the step is UNKNOWN the data couldn't be read,
+			// that shouldn't happen, but just in case it's skipped the same as a generated position
 		});
 		
 		return generationList;
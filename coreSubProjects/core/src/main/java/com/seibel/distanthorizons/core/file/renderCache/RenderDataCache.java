@@ -0,0 +1,396 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.renderCache;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBufferBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.file.store.regionFile.RegionFileCache;
+import com.seibel.distanthorizons.core.level.IDhClientLevel;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.coreapi.ModInfo;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the finished vertex data for each render section on disk,
+ * so when a level is loaded again sections that haven't changed can be uploaded to the GPU
+ * without converting their full data or building their geometry. <br><br>
+ *
+ * Each entry is only valid for the {@link Key} it was saved with,
+ * IE if the section's full data, one of its neighbors' full data, or a render setting changed
+ * the entry is ignored and will be replaced once the section is rebuilt. <br>
+ * If the cache grows past its max size everything is removed and the cache is refilled as sections are built,
+ * which is simpler than tracking which entries were used least recently across every file. <br><br>
+ *
+ * The cached data is stored in {@link RenderDataRegionFile}'s and opened through a {@link RegionFileCache},
+ * the same way {@link com.seibel.distanthorizons.core.file.store.regionFile.RegionFileFullDataStore RegionFileFullDataStore} stores full data.
+ *
+ * @see RenderDataRegionFile
+ */
+public class RenderDataCache implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** the folder inside the level's full data folder */
+	public static final String FOLDER_NAME = "renderCache";
+	private static final String FILE_NAME_PREFIX = "r.";
+	private static final String FILE_NAME_SUFFIX = ".dhrc";
+	
+	/** each open file uses a file handle and a memory mapped header, so this needs to be limited */
+	public static final int MAX_OPEN_REGION_FILE_COUNT = 64;
+	
+	/** max block Y, min surface block Y, opaque byte count, and transparent byte count */
+	private static final int PAYLOAD_HEADER_BYTE_SIZE = 4 * Integer.BYTES;
+	
+	
+	public final File folder;
+	private final long maxByteSize;
+	
+	private final RegionFileCache<RenderDataRegionFile> regionFileCache;
+	/** the payload size of every region file, open or not */
+	private final AtomicLong usedByteSize = new AtomicLong(0);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** @param maxByteSize once the cached data is larger than this, everything will be removed */
+	public RenderDataCache(File folder, long maxByteSize)
+	{
+		this.folder = folder;
+		this.maxByteSize = maxByteSize;
+		if (!this.folder.exists() && !this.folder.mkdirs())
+		{
+			LOGGER.warn("Unable to create render cache folder [" + this.folder + "], render data won't be cached.");
+		}
+		
+		this.regionFileCache = new RegionFileCache<>(this.folder, FILE_NAME_PREFIX, FILE_NAME_SUFFIX, MAX_OPEN_REGION_FILE_COUNT, RenderDataCache::openOrReplaceRegionFile);
+		
+		// the used size is only stored in each file's header
+		for (long regionPos : this.regionFileCache.getRegionPositions())
+		{
+			this.regionFileCache.useRegion(regionPos, false, null, (regionFile) ->
+			{
+				this.usedByteSize.addAndGet(regionFile.getUsedPayloadByteSize());
+				return null;
+			});
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** 
+	 * The returned data should be {@link CachedRenderData#close() closed} once it has been uploaded.
+	 * @return null if nothing was cached for the given position or the cached data was built with a different key 
+	 */
+	@Nullable
+	public CachedRenderData get(long pos, Key key)
+	{
+		return this.regionFileCache.useRegion(RenderDataRegionFile.getRegionPos(pos), false, null, (regionFile) ->
+		{
+			int index = RenderDataRegionFile.getIndexInRegion(pos);
+			if (!regionFile.matches(index, key))
+			{
+				return null;
+			}
+			
+			// the payload is copied while the file is locked, since its sectors may be re-used once the lock is released
+			ByteBuffer payload = regionFile.readPayload(index, ColumnRenderBuffer.STAGING_BUFFER_POOL);
+			CachedRenderData renderData = CachedRenderData.decode(payload);
+			if (renderData == null)
+			{
+				ColumnRenderBuffer.STAGING_BUFFER_POOL.returnPooledBuffer(payload);
+				LOGGER.warn("Cached render data for pos [" + DhSectionPos.toString(pos) + "] is invalid and will be removed.");
+				this.usedByteSize.addAndGet(regionFile.delete(index));
+			}
+			return renderData;
+		});
+	}
+	
+	public long getUsedByteSize() { return this.usedByteSize.get(); }
+	
+	
+	
+	//========//
+	// saving //
+	//========//
+	
+	/**
+	 * Stores the vertex data from the given builder,
+	 * the builder's quads should already be merged.
+	 */
+	public void save(long pos, Key key, LodQuadBuilder quadBuilder, int maxBlockY, int minSurfaceBlockY)
+	{
+		int opaqueByteSize = quadBuilder.getCurrentOpaqueQuadsCount() * ColumnRenderBuffer.QUADS_BYTE_SIZE;
+		int transparentByteSize = quadBuilder.getCurrentTransparentQuadsCount() * ColumnRenderBuffer.QUADS_BYTE_SIZE;
+		
+		// the vertex data is written in native order, so the header uses it too
+		ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_HEADER_BYTE_SIZE + opaqueByteSize + transparentByteSize).order(ByteOrder.nativeOrder());
+		payload.putInt(maxBlockY);
+		payload.putInt(minSurfaceBlockY);
+		payload.putInt(opaqueByteSize);
+		payload.putInt(transparentByteSize);
+		quadBuilder.putOpaqueVertexData(payload);
+		quadBuilder.putTransparentVertexData(payload);
+		payload.flip();
+		
+		this.regionFileCache.useRegion(RenderDataRegionFile.getRegionPos(pos), true, null, (regionFile) ->
+		{
+			this.usedByteSize.addAndGet(regionFile.write(RenderDataRegionFile.getIndexInRegion(pos), payload, key));
+			return null;
+		});
+		
+		if (this.usedByteSize.get() > this.maxByteSize)
+		{
+			LOGGER.info("Render cache in [" + this.folder + "] is larger than [" + (this.maxByteSize / 1024 / 1024) + "] MB, clearing it.");
+			this.deleteAll();
+		}
+	}
+	
+	public void delete(long pos)
+	{
+		this.regionFileCache.useRegion(RenderDataRegionFile.getRegionPos(pos), false, null, (regionFile) ->
+		{
+			this.usedByteSize.addAndGet(regionFile.delete(RenderDataRegionFile.getIndexInRegion(pos)));
+			return null;
+		});
+	}
+	
+	/**
+	 * The files are emptied instead of deleted,
+	 * so they don't have to be re-created as the cache is refilled.
+	 */
+	public void deleteAll()
+	{
+		for (long regionPos : this.regionFileCache.getRegionPositions())
+		{
+			this.regionFileCache.useRegion(regionPos, false, null, (regionFile) ->
+			{
+				this.usedByteSize.addAndGet(-regionFile.getUsedPayloadByteSize());
+				regionFile.deleteAll();
+				return null;
+			});
+		}
+	}
+	
+	
+	
+	//==============//
+	// region files //
+	//==============//
+	
+	/**
+	 * Since this is just a cache, a file that can't be read is deleted and replaced with an empty one.
+	 * @return null if neither the existing file or a new one could be opened
+	 */
+	@Nullable
+	private static RenderDataRegionFile openOrReplaceRegionFile(long regionPos, File file)
+	{
+		try
+		{
+			return new RenderDataRegionFile(regionPos, file);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOGGER.warn("Unable to open render cache file [" + file + "], it will be replaced. Error: [" + e.getMessage() + "].", e);
+		}
+		
+		if (file.exists() && !file.delete())
+		{
+			LOGGER.error("Unable to delete invalid render cache file [" + file + "].");
+			return null;
+		}
+		
+		try
+		{
+			return new RenderDataRegionFile(regionPos, file);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOGGER.error("Unable to create render cache file [" + file + "], error: [" + e.getMessage() + "].", e);
+			return null;
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/**
+	 * Should include every config value that's read while converting full data into vertex data
+	 * (IE in {@link ColumnRenderBufferBuilder} and the full to render data transformer),
+	 * otherwise changing that setting won't be visible until each section's data changes. <br>
+	 * Enums are included by name since their hash codes change each time the game is launched.
+	 */
+	public static int getRenderConfigHash(IDhClientLevel clientLevel)
+	{
+		return Objects.hash(
+				// the geometry may be built differently between versions
+				ModInfo.VERSION,
+				ByteOrder.nativeOrder().toString(),
+				LodUtil.LOD_VERTEX_FORMAT.getByteSize(),
+				clientLevel.getMinY(),
+				
+				Config.Client.Advanced.Graphics.Quality.verticalQuality.get().name(),
+				Config.Client.Advanced.Graphics.Quality.transparency.get().name(),
+				Config.Client.Advanced.Graphics.Quality.blocksToIgnore.get().name(),
+				Config.Client.Advanced.Graphics.Quality.tintWithAvoidedBlocks.get(),
+				Config.Client.Advanced.Graphics.AdvancedGraphics.enableCaveCulling.get(),
+				Config.Client.Advanced.Graphics.AdvancedGraphics.caveCullingHeight.get(),
+				Config.Client.Advanced.Graphics.AdvancedGraphics.earthCurveRatio.get(),
+				Config.Client.Advanced.Graphics.AdvancedGraphics.grassSideRendering.get().name(),
+				Config.Client.Advanced.Graphics.AdvancedGraphics.saturationMultiplier.get(),
+				Config.Client.Advanced.Graphics.AdvancedGraphics.brightnessMultiplier.get(),
+				
+				Config.Client.Advanced.Debugging.debugRendering.get().name(),
+				Config.Client.Advanced.Debugging.showOverlappingQuadErrors.get(),
+				Config.Client.Advanced.Debugging.columnBuilderDebugEnable.get(),
+				Config.Client.Advanced.Debugging.columnBuilderDebugDetailLevel.get(),
+				Config.Client.Advanced.Debugging.columnBuilderDebugXPos.get(),
+				Config.Client.Advanced.Debugging.columnBuilderDebugZPos.get());
+	}
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	@Override
+	public void close() { this.regionFileCache.close(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/** Everything, besides the section's position, that changes a section's vertex data. */
+	public static class Key
+	{
+		/** when the section's full data was last saved */
+		public final long dataLastModifiedUnixDateTime;
+		/** combines the last modified time of each neighbor, since their edges are used when building the section */
+		public final long adjacentDataHash;
+		/** @see RenderDataCache#getRenderConfigHash */
+		public final int renderConfigHash;
+		
+		
+		
+		public Key(long dataLastModifiedUnixDateTime, long adjacentDataHash, int renderConfigHash)
+		{
+			this.dataLastModifiedUnixDateTime = dataLastModifiedUnixDateTime;
+			this.adjacentDataHash = adjacentDataHash;
+			this.renderConfigHash = renderConfigHash;
+		}
+		
+	}
+	
+	/** 
+	 * The vertex data for a single render section, ready to be uploaded. <br>
+	 * The data is backed by a pooled buffer, so it shouldn't be used after {@link CachedRenderData#close()} is called.
+	 */
+	public static class CachedRenderData implements AutoCloseable
+	{
+		/** @see ColumnRenderBuffer#maxBlockY */
+		public final int maxBlockY;
+		/** @see ColumnRenderBuffer#minSurfaceBlockY */
+		public final int minSurfaceBlockY;
+		
+		/** direct, may be empty */
+		public final ByteBuffer opaqueVertexData;
+		/** direct, may be empty */
+		public final ByteBuffer transparentVertexData;
+		
+		/** the buffer both vertex data buffers are sliced from, null once it has been returned */
+		@Nullable
+		private ByteBuffer payload;
+		
+		
+		
+		private CachedRenderData(ByteBuffer payload, int maxBlockY, int minSurfaceBlockY, ByteBuffer opaqueVertexData, ByteBuffer transparentVertexData)
+		{
+			this.payload = payload;
+			this.maxBlockY = maxBlockY;
+			this.minSurfaceBlockY = minSurfaceBlockY;
+			this.opaqueVertexData = opaqueVertexData;
+			this.transparentVertexData = transparentVertexData;
+		}
+		
+		/** @return null if the payload is missing or its sizes don't match */
+		@Nullable
+		private static CachedRenderData decode(@Nullable ByteBuffer payload)
+		{
+			if (payload == null || payload.remaining() < PAYLOAD_HEADER_BYTE_SIZE)
+			{
+				return null;
+			}
+			
+			payload.order(ByteOrder.nativeOrder());
+			int maxBlockY = payload.getInt();
+			int minSurfaceBlockY = payload.getInt();
+			int opaqueByteSize = payload.getInt();
+			int transparentByteSize = payload.getInt();
+			if (opaqueByteSize < 0 || transparentByteSize < 0
+				|| (long) opaqueByteSize + transparentByteSize != payload.remaining())
+			{
+				return null;
+			}
+			
+			ByteBuffer opaqueVertexData = payload.slice();
+			opaqueVertexData.limit(opaqueByteSize);
+			
+			payload.position(payload.position() + opaqueByteSize);
+			ByteBuffer transparentVertexData = payload.slice();
+			
+			return new CachedRenderData(payload, maxBlockY, minSurfaceBlockY, opaqueVertexData, transparentVertexData);
+		}
+		
+		/** returns the backing buffer to the {@link ColumnRenderBuffer#STAGING_BUFFER_POOL}, does nothing if called more than once */
+		@Override
+		public void close()
+		{
+			ByteBuffer payload = this.payload;
+			this.payload = null;
+			ColumnRenderBuffer.STAGING_BUFFER_POOL.returnPooledBuffer(payload);
+		}
+		
+	}
+	
+}
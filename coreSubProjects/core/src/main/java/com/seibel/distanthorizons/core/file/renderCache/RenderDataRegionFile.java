@@ -0,0 +1,170 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.renderCache;
+
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.VertexStagingBufferPool;
+import com.seibel.distanthorizons.core.file.store.regionFile.AbstractRegionFile;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A single file holding the built vertex data for up to {@link AbstractRegionFile#REGION_WIDTH} squared
+ * render sections (all at the same detail level). <br><br>
+ *
+ * Each entry stores the {@link RenderDataCache.Key} its payload was built with,
+ * so out of date payloads can be skipped without reading them. <br><br>
+ *
+ * Payloads are copied out while the file is locked, since their sectors can be re-used by a later write
+ * as soon as the lock is released. Freed sectors are re-used instead of truncating the file.
+ *
+ * @see RenderDataCache
+ */
+public class RenderDataRegionFile extends AbstractRegionFile
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** "DHRC" */
+	private static final int FILE_ID = 0x44_48_52_43;
+	/** 2: the min surface height excludes columns with gaps below their surface */
+	private static final int FORMAT_VERSION = 2;
+	
+	// entry offsets
+	/** int */
+	private static final int RENDER_CONFIG_HASH_OFFSET = FIRST_CUSTOM_ENTRY_OFFSET;
+	// 4 unused bytes
+	/** long */
+	private static final int DATA_LAST_MODIFIED_OFFSET = 16;
+	/** long */
+	private static final int ADJACENT_DATA_HASH_OFFSET = 24;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** creates the file if it doesn't exist */
+	public RenderDataRegionFile(long regionPos, File file) throws IOException { super(regionPos, file, FILE_ID, FORMAT_VERSION); }
+	
+	@Override
+	protected void onInvalidHeader() { LOGGER.info("Render cache file [" + this.file + "] has an invalid header or unknown version, its contents will be replaced."); }
+	
+	/** this is just a cache, so the entry can be silently rebuilt */
+	@Override
+	protected void onInvalidEntry(int index) { }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return true if a payload exists at the given index and was saved with the given key */
+	public boolean matches(int index, RenderDataCache.Key key)
+	{
+		int entryOffset = getEntryOffset(index);
+		return this.exists(index)
+				&& this.header.getInt(entryOffset + RENDER_CONFIG_HASH_OFFSET) == key.renderConfigHash
+				&& this.header.getLong(entryOffset + DATA_LAST_MODIFIED_OFFSET) == key.dataLastModifiedUnixDateTime
+				&& this.header.getLong(entryOffset + ADJACENT_DATA_HASH_OFFSET) == key.adjacentDataHash;
+	}
+	
+	/**
+	 * The payload is copied into a direct buffer so it can be uploaded to the GPU
+	 * after this file is unlocked, written to, or closed. <br>
+	 * The buffer is borrowed from the given pool when the payload fits,
+	 * and should be returned to it once the data has been uploaded.
+	 * 
+	 * @return null if nothing exists at the given index
+	 */
+	@Nullable
+	public ByteBuffer readPayload(int index, VertexStagingBufferPool bufferPool) throws IOException
+	{
+		if (!this.exists(index))
+		{
+			return null;
+		}
+		
+		int payloadByteLength = this.getPayloadByteLength(index);
+		ByteBuffer payload;
+		if (payloadByteLength <= bufferPool.bufferByteSize)
+		{
+			payload = bufferPool.getPooledBuffer();
+			payload.limit(payloadByteLength);
+		}
+		else
+		{
+			// the pool ignores buffers with a different size, so this can still be returned like any other buffer
+			payload = ByteBuffer.allocateDirect(payloadByteLength).order(ByteOrder.nativeOrder());
+		}
+		
+		try
+		{
+			this.readPayload(index, payload);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			bufferPool.returnPooledBuffer(payload);
+			throw e;
+		}
+		
+		payload.flip();
+		return payload;
+	}
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	/** @return how much {@link RenderDataRegionFile#getUsedPayloadByteSize()} changed */
+	public long write(int index, ByteBuffer payload, RenderDataCache.Key key) throws IOException
+	{
+		long oldUsedByteSize = this.getUsedPayloadByteSize();
+		
+		this.writePayload(index, payload);
+		
+		int entryOffset = getEntryOffset(index);
+		this.header.putInt(entryOffset + RENDER_CONFIG_HASH_OFFSET, key.renderConfigHash);
+		this.header.putLong(entryOffset + DATA_LAST_MODIFIED_OFFSET, key.dataLastModifiedUnixDateTime);
+		this.header.putLong(entryOffset + ADJACENT_DATA_HASH_OFFSET, key.adjacentDataHash);
+		
+		return this.getUsedPayloadByteSize() - oldUsedByteSize;
+	}
+	
+	/** @return how much {@link RenderDataRegionFile#getUsedPayloadByteSize()} changed */
+	public long delete(int index)
+	{
+		long oldUsedByteSize = this.getUsedPayloadByteSize();
+		this.deletePayload(index);
+		return this.getUsedPayloadByteSize() - oldUsedByteSize;
+	}
+	
+	/** removes every payload in this file, the file keeps its size so it can be re-used */
+	public void deleteAll() { this.clearAllEntries(); }
+	
+}
@@ -0,0 +1,484 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.file.store;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Moves every data source from one {@link IFullDataStore} to another in the background
+ * while both stores are used as if they were a single store. <br><br>
+ * 
+ * Writes only go to the target store, reads check the target store first and
+ * fall back to the source store for any positions that haven't been moved yet. <br>
+ * Source data is only deleted after the target store has been flushed,
+ * so a crash during the conversion can't lose any data. 
+ * 
+ * @see FullDataStoreConverter
+ */
+public class ConvertingFullDataStore implements IFullDataStore
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** how many data sources should be converted between each progress log */
+	private static final int LOG_INTERVAL = 1_000;
+	
+	
+	public final IFullDataStore sourceStore;
+	public final IFullDataStore targetStore;
+	
+	/** 
+	 * Prevents the conversion from overwriting newer data that was saved to the target store 
+	 * between reading from the source and writing to the target.
+	 */
+	private final ReentrantLock[] posLockArray = new ReentrantLock[64];
+	/** held for the entire conversion so closing can wait for it to stop */
+	private final ReentrantLock conversionLock = new ReentrantLock();
+	
+	/** once true the source store is empty and doesn't need to be checked */
+	private volatile boolean conversionComplete = false;
+	private volatile boolean closed = false;
+	
+	private volatile int convertedCount = 0;
+	private volatile int totalCount = -1;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ConvertingFullDataStore(IFullDataStore sourceStore, IFullDataStore targetStore)
+	{
+		this.sourceStore = sourceStore;
+		this.targetStore = targetStore;
+		
+		for (int i = 0; i < this.posLockArray.length; i++)
+		{
+			this.posLockArray[i] = new ReentrantLock();
+		}
+	}
+	
+	
+	
+	//============//
+	// conversion //
+	//============//
+	
+	/**
+	 * Blocks until every data source has been moved, keepRunning returns false, or this store is closed. <br>
+	 * Should be run on a low priority thread.
+	 * 
+	 * @return true if the conversion finished, false if it was stopped early
+	 */
+	public boolean convert(BooleanSupplier keepRunning)
+	{
+		this.conversionLock.lock();
+		try
+		{
+			if (this.closed)
+			{
+				return false;
+			}
+			
+			LongArrayList positions = this.sourceStore.getAllPositions();
+			this.totalCount = positions.size();
+			if (!positions.isEmpty())
+			{
+				LOGGER.info("Moving [" + positions.size() + "] LOD data sources from [" + this.sourceStore.getClass().getSimpleName() + "] to [" + this.targetStore.getClass().getSimpleName() + "]...");
+			}
+			
+			LongArrayList movedPositions = new LongArrayList();
+			for (int i = 0; i < positions.size(); i++)
+			{
+				if (this.closed || !keepRunning.getAsBoolean())
+				{
+					LOGGER.info("Stopped moving LOD data sources at [" + this.convertedCount + "/" + positions.size() + "], the remaining data sources will be moved next time.");
+					return false;
+				}
+				
+				long pos = positions.getLong(i);
+				ReentrantLock posLock = this.getLockForPos(pos);
+				posLock.lock();
+				try
+				{
+					// if the target already has this position it was saved after the conversion started and is newer
+					if (!this.targetStore.existsWithKey(pos))
+					{
+						FullDataSourceV2DTO dto = this.sourceStore.getByKey(pos);
+						if (dto != null)
+						{
+							this.targetStore.saveWithTimestamps(dto);
+						}
+					}
+				}
+				finally
+				{
+					posLock.unlock();
+				}
+				movedPositions.add(pos);
+				
+				if (movedPositions.size() >= FullDataStoreConverter.DELETE_BATCH_SIZE)
+				{
+					this.deleteMovedPositions(movedPositions);
+				}
+				
+				this.convertedCount++;
+				if (this.convertedCount % LOG_INTERVAL == 0)
+				{
+					LOGGER.info("Moved [" + this.convertedCount + "/" + positions.size() + "] LOD data sources...");
+				}
+			}
+			this.deleteMovedPositions(movedPositions);
+			
+			this.conversionComplete = true;
+			if (!positions.isEmpty())
+			{
+				LOGGER.info("Moved [" + positions.size() + "] LOD data sources to [" + this.targetStore.getClass().getSimpleName() + "].");
+				this.freeSourceSpace(keepRunning);
+			}
+			return true;
+		}
+		finally
+		{
+			this.conversionLock.unlock();
+		}
+	}
+	private void deleteMovedPositions(LongArrayList movedPositions)
+	{
+		if (movedPositions.isEmpty())
+		{
+			return;
+		}
+		
+		// the target has to be on disk before the only other copy is removed
+		this.targetStore.flush();
+		
+		for (int i = 0; i < movedPositions.size(); i++)
+		{
+			long pos = movedPositions.getLong(i);
+			ReentrantLock posLock = this.getLockForPos(pos);
+			posLock.lock();
+			try
+			{
+				this.sourceStore.deleteWithKey(pos);
+			}
+			finally
+			{
+				posLock.unlock();
+			}
+		}
+		movedPositions.clear();
+	}
+	/** Deleting rows doesn't shrink the database file, so the freed pages are returned to the OS if that can be done in small chunks. */
+	private void freeSourceSpace(BooleanSupplier keepRunning)
+	{
+		if (!(this.sourceStore instanceof AbstractDhRepo))
+		{
+			return;
+		}
+		AbstractDhRepo<?, ?> repo = (AbstractDhRepo<?, ?>) this.sourceStore;
+		
+		try
+		{
+			long freeByteCount = repo.getFreeByteCount();
+			if (freeByteCount == 0)
+			{
+				return;
+			}
+			
+			if (!repo.isIncrementalVacuumEnabled())
+			{
+				// a full vacuum would lock the database and needs a lot of free disk space, so it isn't done automatically
+				LOGGER.info("[" + freeByteCount + "] bytes are unused in the database file [" + repo.databaseLocation + "], they can be reclaimed by vacuuming the database while the game isn't running.");
+				return;
+			}
+			
+			repo.runIncrementalVacuumInChunks(() -> !this.closed && keepRunning.getAsBoolean());
+		}
+		catch (RuntimeException e)
+		{
+			LOGGER.warn("Unable to free unused database space, error: [" + e.getMessage() + "].", e);
+		}
+	}
+	
+	public boolean isConversionComplete() { return this.conversionComplete; }
+	
+	/** @return null if the conversion hasn't started or is complete */
+	@Nullable
+	public String getStatusString()
+	{
+		int totalCount = this.totalCount;
+		if (totalCount <= 0 || this.conversionComplete)
+		{
+			return null;
+		}
+		
+		return "Moving LOD data: " + this.convertedCount + "/" + totalCount;
+	}
+	
+	
+	
+	//========//
+	// saving //
+	//========//
+	
+	@Override
+	public void save(FullDataSourceV2DTO dto)
+	{
+		ReentrantLock posLock = this.getLockForPos(dto.pos);
+		posLock.lock();
+		try
+		{
+			this.targetStore.save(dto);
+		}
+		finally
+		{
+			posLock.unlock();
+		}
+	}
+	
+	@Override
+	public void saveWithTimestamps(FullDataSourceV2DTO dto)
+	{
+		ReentrantLock posLock = this.getLockForPos(dto.pos);
+		posLock.lock();
+		try
+		{
+			this.targetStore.saveWithTimestamps(dto);
+		}
+		finally
+		{
+			posLock.unlock();
+		}
+	}
+	
+	@Override
+	public void setApplyToParent(long pos, boolean applyToParent)
+	{
+		ReentrantLock posLock = this.getLockForPos(pos);
+		posLock.lock();
+		try
+		{
+			this.targetStore.setApplyToParent(pos, applyToParent);
+			if (!this.conversionComplete)
+			{
+				this.sourceStore.setApplyToParent(pos, applyToParent);
+			}
+		}
+		finally
+		{
+			posLock.unlock();
+		}
+	}
+	
+	@Override
+	public void deleteWithKey(Long pos)
+	{
+		ReentrantLock posLock = this.getLockForPos(pos);
+		posLock.lock();
+		try
+		{
+			this.targetStore.deleteWithKey(pos);
+			if (!this.conversionComplete)
+			{
+				this.sourceStore.deleteWithKey(pos);
+			}
+		}
+		finally
+		{
+			posLock.unlock();
+		}
+	}
+	
+	@Override
+	public void deleteAll()
+	{
+		this.sourceStore.deleteAll();
+		this.targetStore.deleteAll();
+	}
+	
+	@Override
+	public void flush() { this.targetStore.flush(); }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	@Nullable
+	@Override
+	public FullDataSourceV2DTO getByKey(Long pos)
+	{
+		FullDataSourceV2DTO dto = this.targetStore.getByKey(pos);
+		if (dto == null && !this.conversionComplete)
+		{
+			dto = this.sourceStore.getByKey(pos);
+		}
+		return dto;
+	}
+	
+	@Override
+	public boolean existsWithKey(Long pos)
+	{ return this.targetStore.existsWithKey(pos) || (!this.conversionComplete && this.sourceStore.existsWithKey(pos)); }
+	
+	@Nullable
+	@Override
+	public Long getTimestampForPos(long pos)
+	{
+		Long timestamp = this.targetStore.getTimestampForPos(pos);
+		if (timestamp == null && !this.conversionComplete)
+		{
+			timestamp = this.sourceStore.getTimestampForPos(pos);
+		}
+		return timestamp;
+	}
+	
+	@Override
+	public Map<Long, Long> getTimestampsForRange(byte sectionDetailLevel, int minPosX, int minPosZ, int maxPosX, int maxPosZ)
+	{
+		if (this.conversionComplete)
+		{
+			return this.targetStore.getTimestampsForRange(sectionDetailLevel, minPosX, minPosZ, maxPosX, maxPosZ);
+		}
+		
+		// the target's values are added last since they're newer
+		HashMap<Long, Long> timestampByPos = new HashMap<>(this.sourceStore.getTimestampsForRange(sectionDetailLevel, minPosX, minPosZ, maxPosX, maxPosZ));
+		timestampByPos.putAll(this.targetStore.getTimestampsForRange(sectionDetailLevel, minPosX, minPosZ, maxPosX, maxPosZ));
+		return timestampByPos;
+	}
+	
+	@Override
+	public LongArrayList getPositionsToUpdate(int returnCount)
+	{
+		LongArrayList list = this.targetStore.getPositionsToUpdate(returnCount);
+		if (list.size() < returnCount && !this.conversionComplete)
+		{
+			LongOpenHashSet posSet = new LongOpenHashSet(list);
+			LongArrayList sourceList = this.sourceStore.getPositionsToUpdate(returnCount - list.size());
+			for (int i = 0; i < sourceList.size(); i++)
+			{
+				if (posSet.add(sourceList.getLong(i)))
+				{
+					list.add(sourceList.getLong(i));
+				}
+			}
+		}
+		return list;
+	}
+	
+	@Override
+	public byte getMinColumnGenerationStepForPos(long pos)
+	{
+		byte minGenStep = this.targetStore.getMinColumnGenerationStepForPos(pos);
+		if (minGenStep == GEN_STEP_NOT_PRESENT && !this.conversionComplete)
+		{
+			minGenStep = this.sourceStore.getMinColumnGenerationStepForPos(pos);
+		}
+		return minGenStep;
+	}
+	
+	@Override
+	public LongArrayList getAllPositions()
+	{
+		LongArrayList list = this.targetStore.getAllPositions();
+		if (!this.conversionComplete)
+		{
+			LongOpenHashSet posSet = new LongOpenHashSet(list);
+			LongArrayList sourceList = this.sourceStore.getAllPositions();
+			for (int i = 0; i < sourceList.size(); i++)
+			{
+				if (posSet.add(sourceList.getLong(i)))
+				{
+					list.add(sourceList.getLong(i));
+				}
+			}
+		}
+		return list;
+	}
+	
+	@Override
+	public long getDataSizeInBytes(long pos)
+	{
+		long byteSize = this.targetStore.getDataSizeInBytes(pos);
+		if (byteSize == 0 && !this.conversionComplete)
+		{
+			byteSize = this.sourceStore.getDataSizeInBytes(pos);
+		}
+		return byteSize;
+	}
+	
+	/** may count moved data sources twice while they're in both stores */
+	@Override
+	public long getTotalDataSizeInBytes()
+	{
+		long byteSize = this.targetStore.getTotalDataSizeInBytes();
+		if (!this.conversionComplete)
+		{
+			byteSize += this.sourceStore.getTotalDataSizeInBytes();
+		}
+		return byteSize;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private ReentrantLock getLockForPos(long pos) { return this.posLockArray[Math.floorMod(Long.hashCode(pos), this.posLockArray.length)]; }
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	/** Stops the conversion and waits for it to finish its current data source before closing both stores. */
+	@Override
+	public void close()
+	{
+		this.closed = true;
+		
+		this.conversionLock.lock();
+		try
+		{
+			this.sourceStore.close();
+			this.targetStore.close();
+		}
+		finally
+		{
+			this.conversionLock.unlock();
+		}
+	}
+	
+}
@@ -0,0 +1,124 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.file.store;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Copies {@link FullDataSourceV2DTO}'s between {@link IFullDataStore}'s,
+ * IE when changing which storage backend is used. <br><br>
+ * 
+ * DTOs are copied as-is, so no data needs to be decompressed. <br><br>
+ * 
+ * This runs on the calling thread and doesn't allow the stores to be used in the meantime,
+ * {@link ConvertingFullDataStore} should be used to convert a store that's in use.
+ * 
+ * @see ConvertingFullDataStore
+ */
+public class FullDataStoreConverter
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** how many data sources should be converted between each progress log */
+	private static final int LOG_INTERVAL = 1_000;
+	/** how many data sources are copied before the target is flushed and they're deleted from the source */
+	public static final int DELETE_BATCH_SIZE = 250;
+	
+	
+	
+	/**
+	 * This class just holds utility methods
+	 * and shouldn't be constructed.
+	 */
+	private FullDataStoreConverter() { }
+	
+	
+	
+	/** @return the number of data sources copied */
+	public static int copyAll(IFullDataStore sourceStore, IFullDataStore targetStore) { return transferAll(sourceStore, targetStore, false); }
+	/** 
+	 * Data sources are deleted from the source store in batches once their copies have been flushed to disk,
+	 * so if this is interrupted it can be resumed by calling it again.
+	 * 
+	 * @return the number of data sources moved 
+	 */
+	public static int moveAll(IFullDataStore sourceStore, IFullDataStore targetStore) { return transferAll(sourceStore, targetStore, true); }
+	
+	private static int transferAll(IFullDataStore sourceStore, IFullDataStore targetStore, boolean deleteFromSource)
+	{
+		LongArrayList positions = sourceStore.getAllPositions();
+		LongArrayList copiedPositions = new LongArrayList();
+		
+		int transferCount = 0;
+		for (int i = 0; i < positions.size(); i++)
+		{
+			long pos = positions.getLong(i);
+			FullDataSourceV2DTO dto = sourceStore.getByKey(pos);
+			if (dto == null)
+			{
+				// shouldn't happen unless the data was deleted in the meantime
+				continue;
+			}
+			
+			targetStore.saveWithTimestamps(dto);
+			if (deleteFromSource)
+			{
+				copiedPositions.add(pos);
+				if (copiedPositions.size() >= DELETE_BATCH_SIZE)
+				{
+					deleteCopiedPositions(sourceStore, targetStore, copiedPositions);
+				}
+			}
+			
+			transferCount++;
+			if (transferCount % LOG_INTERVAL == 0)
+			{
+				LOGGER.info("Converted [" + transferCount + "/" + positions.size() + "] full data sources...");
+			}
+		}
+		
+		if (deleteFromSource)
+		{
+			deleteCopiedPositions(sourceStore, targetStore, copiedPositions);
+		}
+		
+		return transferCount;
+	}
+	/** the target is flushed first so a crash can't lose data that was only in the target's memory */
+	private static void deleteCopiedPositions(IFullDataStore sourceStore, IFullDataStore targetStore, LongArrayList copiedPositions)
+	{
+		if (copiedPositions.isEmpty())
+		{
+			return;
+		}
+		
+		targetStore.flush();
+		for (int i = 0; i < copiedPositions.size(); i++)
+		{
+			sourceStore.deleteWithKey(copiedPositions.getLong(i));
+		}
+		copiedPositions.clear();
+	}
+	
+}
@@ -0,0 +1,55 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.store;
+
+import com.seibel.distanthorizons.core.sql.dto.IBaseDTO;
+import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Handles persisting DTOs, 
+ * this allows data source handlers to be independent of how their data is stored.
+ * 
+ * @param <TKey> the DTO's primary key
+ * @param <TDTO> DTO stands for "Data Transfer Object" 
+ * 
+ * @see AbstractDhRepo
+ */
+public interface IDataStore<TKey, TDTO extends IBaseDTO<TKey>> extends AutoCloseable
+{
+	/** @return null if nothing exists for the given key */
+	@Nullable
+	TDTO getByKey(TKey key);
+	
+	boolean existsWithKey(TKey key);
+	
+	/** Inserts or updates the given DTO. */
+	void save(TDTO dto);
+	
+	void deleteWithKey(TKey key);
+	
+	/** With great power comes great responsibility... */
+	void deleteAll();
+	
+	/** Doesn't throw any checked exceptions. */
+	@Override
+	void close();
+	
+}
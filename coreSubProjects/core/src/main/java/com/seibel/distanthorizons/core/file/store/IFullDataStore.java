@@ -0,0 +1,105 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.store;
+
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.file.store.regionFile.RegionFileFullDataStore;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Everything needed to persist {@link FullDataSourceV2DTO}'s. <br><br>
+ * 
+ * Implementations must be thread safe.
+ * 
+ * @see FullDataSourceV2Repo
+ * @see RegionFileFullDataStore
+ * @see FullDataStoreConverter
+ */
+public interface IFullDataStore extends IDataStore<Long, FullDataSourceV2DTO>
+{
+	/** no data source exists at the given position */
+	byte GEN_STEP_NOT_PRESENT = -2;
+	/** a data source exists but its min generation step isn't known (IE it was saved by an older version) */
+	byte GEN_STEP_UNKNOWN = FullDataSourceV2DTO.UNKNOWN_MIN_COLUMN_GEN_STEP;
+	
+	
+	
+	//========//
+	// saving //
+	//========//
+	
+	/** 
+	 * Unlike {@link IFullDataStore#save} this keeps the DTO's last modified and created timestamps, 
+	 * which is necessary when moving data between stores.
+	 */
+	void saveWithTimestamps(FullDataSourceV2DTO dto);
+	
+	void setApplyToParent(long pos, boolean applyToParent);
+	
+	/** 
+	 * Blocks until everything saved so far has been written to disk, 
+	 * IE so the data will survive a crash and any other copies can be safely deleted.
+	 */
+	void flush();
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return null if nothing exists for this position */
+	@Nullable
+	Long getTimestampForPos(long pos);
+	/** @return the last modified unix time of every data source in the given inclusive range */
+	Map<Long, Long> getTimestampsForRange(byte sectionDetailLevel, int minPosX, int minPosZ, int maxPosX, int maxPosZ);
+	
+	/** 
+	 * @return positions that need to be applied to their parent, 
+	 *          lowest detail level first with siblings grouped together. 
+	 */
+	LongArrayList getPositionsToUpdate(int returnCount);
+	
+	/**
+	 * Should be fast enough to call for every position checked by world generation.
+	 * 
+	 * @return {@link IFullDataStore#GEN_STEP_NOT_PRESENT} if nothing exists for this position,
+	 *          {@link IFullDataStore#GEN_STEP_UNKNOWN} if the data couldn't be read,
+	 *          otherwise the lowest {@link EDhApiWorldGenerationStep#value} of any column in the data source.
+	 */
+	byte getMinColumnGenerationStepForPos(long pos);
+	
+	/** @return every position in this store */
+	LongArrayList getAllPositions();
+	
+	/**
+	 * @return the size of the full data at the given position
+	 * (doesn't include the size of the mapping or any other column)
+	 */
+	long getDataSizeInBytes(long pos);
+	/** @return the total size in bytes of the full data for this entire store */
+	long getTotalDataSizeInBytes();
+	
+}
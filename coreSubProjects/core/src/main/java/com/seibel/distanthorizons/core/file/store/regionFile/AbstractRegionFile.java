@@ -0,0 +1,422 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.file.store.regionFile;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single file holding up to {@link AbstractRegionFile#REGION_WIDTH} squared 
+ * payloads (all at the same detail level). <br><br>
+ * 
+ * <strong>File layout:</strong> <br>
+ * The file starts with a fixed size header containing a file ID, the format version,
+ * and one {@link AbstractRegionFile#ENTRY_BYTE_SIZE} byte entry for each position in the region.
+ * Each entry starts with where its payload is located, 
+ * the rest of the entry is defined by the subclass and holds any values that need to be checked without reading the payload. <br>
+ * After the header the file is split into {@link AbstractRegionFile#SECTOR_BYTE_SIZE} byte sectors,
+ * each payload is stored in one or more contiguous sectors. <br><br>
+ * 
+ * The header is memory mapped, payloads are read/written with positional file IO. <br>
+ * New payloads are written to free sectors before the header is updated,
+ * so a write that fails part way through leaves the previous payload readable. <br><br>
+ * 
+ * This object isn't thread safe, {@link AbstractRegionFile#lock} must be held while using it.
+ * 
+ * @see RegionFileCache
+ */
+public abstract class AbstractRegionFile implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** how many sections wide each region is */
+	public static final int REGION_WIDTH = 32;
+	public static final int ENTRY_COUNT = REGION_WIDTH * REGION_WIDTH;
+	
+	public static final int SECTOR_BYTE_SIZE = 4096;
+	
+	private static final int FILE_HEADER_BYTE_SIZE = 16;
+	protected static final int ENTRY_BYTE_SIZE = 32;
+	/** the header is padded to a whole number of sectors so payloads are always sector aligned */
+	public static final int HEADER_SECTOR_COUNT = (FILE_HEADER_BYTE_SIZE + (ENTRY_COUNT * ENTRY_BYTE_SIZE) + SECTOR_BYTE_SIZE - 1) / SECTOR_BYTE_SIZE;
+	private static final int HEADER_BYTE_SIZE = HEADER_SECTOR_COUNT * SECTOR_BYTE_SIZE;
+	
+	// file header offsets
+	private static final int FILE_ID_OFFSET = 0;
+	private static final int FORMAT_VERSION_OFFSET = 4;
+	
+	// entry offsets
+	/** int, 0 means no payload is present, since the header always uses the first sector */
+	private static final int SECTOR_INDEX_OFFSET = 0;
+	/** int, the length of the whole payload */
+	private static final int PAYLOAD_BYTE_LENGTH_OFFSET = 4;
+	/** the rest of each entry can be used by subclasses */
+	protected static final int FIRST_CUSTOM_ENTRY_OFFSET = 8;
+	
+	
+	public final long regionPos;
+	public final File file;
+	
+	/** must be held while using this region file */
+	public final ReentrantLock lock = new ReentrantLock();
+	
+	private final int fileId;
+	private final int formatVersion;
+	
+	private final FileChannel channel;
+	protected final MappedByteBuffer header;
+	/** a set bit means the sector is in use */
+	private final BitSet usedSectors = new BitSet();
+	
+	/** volatile so the {@link RegionFileCache} can check if an evicted file has finished closing without locking it */
+	private volatile boolean closed = false;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** 
+	 * Creates the file if it doesn't exist. 
+	 * 
+	 * @param fileId stored at the start of the file so other types of region file won't be read by mistake
+	 * @param formatVersion if the existing file has a different version its contents will be replaced
+	 */
+	protected AbstractRegionFile(long regionPos, File file, int fileId, int formatVersion) throws IOException
+	{
+		this.regionPos = regionPos;
+		this.file = file;
+		this.fileId = fileId;
+		this.formatVersion = formatVersion;
+		
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			long fileByteSize = this.channel.size();
+			
+			// mapping will expand the file if it's smaller than the header
+			this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTE_SIZE);
+			this.usedSectors.set(0, HEADER_SECTOR_COUNT);
+			
+			if (fileByteSize < HEADER_BYTE_SIZE
+				|| this.header.getInt(FILE_ID_OFFSET) != fileId
+				|| this.header.getInt(FORMAT_VERSION_OFFSET) != formatVersion)
+			{
+				if (fileByteSize != 0)
+				{
+					this.onInvalidHeader();
+				}
+				
+				this.clearAllEntries();
+				this.truncateUnusedSectors();
+			}
+			else
+			{
+				this.validateEntries(fileByteSize);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			this.channel.close();
+			throw e;
+		}
+	}
+	/** marks the sectors used by each entry and removes any entries that can't be read */
+	private void validateEntries(long fileByteSize)
+	{
+		for (int index = 0; index < ENTRY_COUNT; index++)
+		{
+			if (!this.exists(index))
+			{
+				continue;
+			}
+			
+			int sectorIndex = this.getEntryInt(index, SECTOR_INDEX_OFFSET);
+			int byteLength = this.getEntryInt(index, PAYLOAD_BYTE_LENGTH_OFFSET);
+			int sectorCount = getSectorCount(byteLength);
+			
+			// the range has to be checked first, otherwise a corrupt (negative) index would throw when checking for overlaps
+			boolean valid = sectorIndex >= HEADER_SECTOR_COUNT
+					&& byteLength > 0
+					&& ((long) sectorIndex * SECTOR_BYTE_SIZE) + byteLength <= fileByteSize;
+			if (valid)
+			{
+				// overlapping entries would overwrite each other
+				int nextUsedSectorIndex = this.usedSectors.nextSetBit(sectorIndex);
+				valid = nextUsedSectorIndex == -1 || nextUsedSectorIndex >= sectorIndex + sectorCount;
+			}
+			
+			if (valid)
+			{
+				this.usedSectors.set(sectorIndex, sectorIndex + sectorCount);
+			}
+			else
+			{
+				this.onInvalidEntry(index);
+				this.clearEntry(index);
+			}
+		}
+	}
+	
+	
+	
+	//===================//
+	// subclass handlers //
+	//===================//
+	
+	/** 
+	 * Called while opening a file whose header can't be read, before its contents are removed. <br>
+	 * Only used for logging, this object won't be fully constructed yet.
+	 */
+	protected void onInvalidHeader() { LOGGER.warn("Region file [" + this.file + "] has an invalid header or unknown version, its contents will be replaced."); }
+	
+	/** 
+	 * Called while opening a file for each entry whose payload can't be read, before the entry is removed. <br>
+	 * Only used for logging, this object won't be fully constructed yet.
+	 */
+	protected void onInvalidEntry(int index) { LOGGER.warn("Region file [" + this.file + "] has an invalid entry at index [" + index + "], that payload will be removed."); }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public boolean exists(int index) { return this.getEntryInt(index, SECTOR_INDEX_OFFSET) != 0; }
+	
+	/** @return 0 if nothing exists at the given index */
+	protected int getPayloadByteLength(int index) { return this.getEntryInt(index, PAYLOAD_BYTE_LENGTH_OFFSET); }
+	
+	/** 
+	 * Fills the given buffer's remaining space with the start of the payload at the given index,
+	 * the buffer should have {@link AbstractRegionFile#getPayloadByteLength} bytes remaining. <br>
+	 * The payload must exist.
+	 */
+	protected void readPayload(int index, ByteBuffer buffer) throws IOException
+	{
+		long filePosition = (long) this.getEntryInt(index, SECTOR_INDEX_OFFSET) * SECTOR_BYTE_SIZE;
+		int startPosition = buffer.position();
+		while (buffer.hasRemaining())
+		{
+			int readCount = this.channel.read(buffer, filePosition + (buffer.position() - startPosition));
+			if (readCount < 0)
+			{
+				throw new EOFException("Region file [" + this.file + "] ended before the payload at index [" + index + "] could be read.");
+			}
+		}
+	}
+	
+	/** @return how many bytes of this file are used by payloads */
+	public long getUsedPayloadByteSize() { return (long) (this.usedSectors.cardinality() - HEADER_SECTOR_COUNT) * SECTOR_BYTE_SIZE; }
+	
+	public boolean isClosed() { return this.closed; }
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	/** 
+	 * Writes the given buffer's remaining bytes and points the entry at them,
+	 * the rest of the entry should be updated by the subclass afterwards. <br>
+	 * Any previous payload's sectors are freed once the new payload has been written.
+	 */
+	protected void writePayload(int index, ByteBuffer payload) throws IOException
+	{
+		int oldSectorIndex = this.getEntryInt(index, SECTOR_INDEX_OFFSET);
+		int oldSectorCount = getSectorCount(this.getEntryInt(index, PAYLOAD_BYTE_LENGTH_OFFSET));
+		
+		// the old sectors are still marked as used, so the new payload can't overwrite them
+		int payloadByteLength = payload.remaining();
+		int sectorCount = getSectorCount(payloadByteLength);
+		int sectorIndex = this.allocateSectors(sectorCount);
+		try
+		{
+			long filePosition = (long) sectorIndex * SECTOR_BYTE_SIZE;
+			int startPosition = payload.position();
+			while (payload.hasRemaining())
+			{
+				this.channel.write(payload, filePosition + (payload.position() - startPosition));
+			}
+		}
+		catch (IOException e)
+		{
+			this.usedSectors.clear(sectorIndex, sectorIndex + sectorCount);
+			throw e;
+		}
+		
+		
+		int entryOffset = getEntryOffset(index);
+		this.header.putInt(entryOffset + SECTOR_INDEX_OFFSET, sectorIndex);
+		this.header.putInt(entryOffset + PAYLOAD_BYTE_LENGTH_OFFSET, payloadByteLength);
+		
+		if (oldSectorIndex != 0)
+		{
+			this.usedSectors.clear(oldSectorIndex, oldSectorIndex + oldSectorCount);
+		}
+	}
+	
+	/** Removes the entry at the given index and frees its sectors, does nothing if the entry doesn't exist. */
+	protected void deletePayload(int index)
+	{
+		int sectorIndex = this.getEntryInt(index, SECTOR_INDEX_OFFSET);
+		if (sectorIndex == 0)
+		{
+			return;
+		}
+		
+		int sectorCount = getSectorCount(this.getEntryInt(index, PAYLOAD_BYTE_LENGTH_OFFSET));
+		this.clearEntry(index);
+		this.usedSectors.clear(sectorIndex, sectorIndex + sectorCount);
+	}
+	
+	/** Removes every entry, the file keeps its size until {@link AbstractRegionFile#truncateUnusedSectors()} is called. */
+	protected void clearAllEntries()
+	{
+		for (int i = 0; i < HEADER_BYTE_SIZE; i++)
+		{
+			this.header.put(i, (byte) 0);
+		}
+		this.header.putInt(FILE_ID_OFFSET, this.fileId);
+		this.header.putInt(FORMAT_VERSION_OFFSET, this.formatVersion);
+		
+		this.usedSectors.clear();
+		this.usedSectors.set(0, HEADER_SECTOR_COUNT);
+	}
+	
+	/** Forces every payload and header change to disk, payloads are forced first so the header never points to unwritten data. */
+	public void flush() throws IOException
+	{
+		this.channel.force(false);
+		this.header.force();
+	}
+	
+	
+	
+	//===================//
+	// sector allocation //
+	//===================//
+	
+	/** @return the index of the first sector in a run of free sectors, the returned sectors are marked as used. */
+	private int allocateSectors(int sectorCount)
+	{
+		int startIndex = this.usedSectors.nextClearBit(HEADER_SECTOR_COUNT);
+		while (true)
+		{
+			int nextUsedIndex = this.usedSectors.nextSetBit(startIndex);
+			if (nextUsedIndex == -1 || nextUsedIndex - startIndex >= sectorCount)
+			{
+				this.usedSectors.set(startIndex, startIndex + sectorCount);
+				return startIndex;
+			}
+			
+			startIndex = this.usedSectors.nextClearBit(nextUsedIndex);
+		}
+	}
+	
+	/** shrinks the file if the sectors at its end are no longer in use */
+	protected void truncateUnusedSectors() throws IOException
+	{
+		long usedByteSize = (long) this.usedSectors.length() * SECTOR_BYTE_SIZE;
+		if (this.channel.size() > usedByteSize)
+		{
+			this.channel.truncate(usedByteSize);
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** @return the index of the given section inside its region */
+	public static int getIndexInRegion(long pos) { return Math.floorMod(DhSectionPos.getX(pos), REGION_WIDTH) * REGION_WIDTH + Math.floorMod(DhSectionPos.getZ(pos), REGION_WIDTH); }
+	/** inverse of {@link AbstractRegionFile#getIndexInRegion(long)} */
+	public static long getPosFromIndex(long regionPos, int index)
+	{
+		return DhSectionPos.encode(DhSectionPos.getDetailLevel(regionPos), 
+				DhSectionPos.getX(regionPos) * REGION_WIDTH + (index / REGION_WIDTH),
+				DhSectionPos.getZ(regionPos) * REGION_WIDTH + (index % REGION_WIDTH));
+	}
+	
+	/** @return a {@link DhSectionPos} with the same detail level as the given position, but with the region's X/Z coordinates */
+	public static long getRegionPos(long pos)
+	{
+		return DhSectionPos.encode(DhSectionPos.getDetailLevel(pos),
+				Math.floorDiv(DhSectionPos.getX(pos), REGION_WIDTH),
+				Math.floorDiv(DhSectionPos.getZ(pos), REGION_WIDTH));
+	}
+	
+	private static int getSectorCount(int byteLength) { return (byteLength + SECTOR_BYTE_SIZE - 1) / SECTOR_BYTE_SIZE; }
+	
+	protected static int getEntryOffset(int index) { return FILE_HEADER_BYTE_SIZE + (index * ENTRY_BYTE_SIZE); }
+	protected int getEntryInt(int index, int fieldOffset) { return this.header.getInt(getEntryOffset(index) + fieldOffset); }
+	
+	private void clearEntry(int index)
+	{
+		int entryOffset = getEntryOffset(index);
+		for (int i = 0; i < ENTRY_BYTE_SIZE; i++)
+		{
+			this.header.put(entryOffset + i, (byte) 0);
+		}
+	}
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	/** The header isn't forced to disk, subclasses that need their data to survive a crash should {@link AbstractRegionFile#flush()} first. */
+	@Override
+	public void close() throws IOException
+	{
+		if (this.closed)
+		{
+			return;
+		}
+		
+		try
+		{
+			this.channel.close();
+		}
+		finally
+		{
+			// only marked after the channel is closed so the cache won't re-open this region while it's still in use
+			this.closed = true;
+		}
+	}
+	
+}
@@ -0,0 +1,169 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.file.store.regionFile;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A single file holding up to {@link AbstractRegionFile#REGION_WIDTH} squared 
+ * full data sources (all at the same detail level). <br><br>
+ * 
+ * Along with where the payload is located, each entry stores the values that
+ * need to be checked frequently (generation step, timestamps, etc.) so they can be read without touching the payload. <br>
+ * Writes aren't forced to disk individually, so this isn't crash safe on its own.
+ * {@link FullDataRegionFile#flush()} should be called whenever the data has to survive a crash
+ * (IE before deleting the only other copy of it). <br>
+ * The file is shrunk whenever the sectors at its end are freed.
+ * 
+ * @see RegionFileFullDataStore
+ */
+public class FullDataRegionFile extends AbstractRegionFile
+{
+	/** "DHRF" */
+	private static final int FILE_ID = 0x44_48_52_46;
+	private static final int FORMAT_VERSION = 1;
+	
+	// entry offsets
+	/** int, just the length of the full data, used when calculating how much space the LODs use */
+	private static final int DATA_BYTE_LENGTH_OFFSET = FIRST_CUSTOM_ENTRY_OFFSET;
+	/** byte */
+	private static final int APPLY_TO_PARENT_OFFSET = 12;
+	/** byte */
+	private static final int MIN_GEN_STEP_OFFSET = 13;
+	// 2 unused bytes
+	/** long */
+	private static final int LAST_MODIFIED_OFFSET = 16;
+	/** long */
+	private static final int CREATED_OFFSET = 24;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** creates the file if it doesn't exist */
+	public FullDataRegionFile(long regionPos, File file) throws IOException { super(regionPos, file, FILE_ID, FORMAT_VERSION); }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public int getDataByteLength(int index) { return this.getEntryInt(index, DATA_BYTE_LENGTH_OFFSET); }
+	public boolean getApplyToParent(int index) { return this.header.get(getEntryOffset(index) + APPLY_TO_PARENT_OFFSET) != 0; }
+	public byte getMinGenStep(int index) { return this.header.get(getEntryOffset(index) + MIN_GEN_STEP_OFFSET); }
+	public long getLastModifiedUnixDateTime(int index) { return this.header.getLong(getEntryOffset(index) + LAST_MODIFIED_OFFSET); }
+	public long getCreatedUnixDateTime(int index) { return this.header.getLong(getEntryOffset(index) + CREATED_OFFSET); }
+	
+	/** @return null if nothing exists at the given index */
+	@Nullable
+	public byte[] readPayload(int index) throws IOException
+	{
+		if (!this.exists(index))
+		{
+			return null;
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(this.getPayloadByteLength(index));
+		this.readPayload(index, buffer);
+		return buffer.array();
+	}
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	public void write(int index, byte[] payload, int dataByteLength, boolean applyToParent, byte minGenStep, long lastModifiedUnixDateTime, long createdUnixDateTime) throws IOException
+	{
+		this.writePayload(index, ByteBuffer.wrap(payload));
+		
+		int entryOffset = getEntryOffset(index);
+		this.header.putInt(entryOffset + DATA_BYTE_LENGTH_OFFSET, dataByteLength);
+		this.header.put(entryOffset + APPLY_TO_PARENT_OFFSET, (byte) (applyToParent ? 1 : 0));
+		this.header.put(entryOffset + MIN_GEN_STEP_OFFSET, minGenStep);
+		this.header.putLong(entryOffset + LAST_MODIFIED_OFFSET, lastModifiedUnixDateTime);
+		this.header.putLong(entryOffset + CREATED_OFFSET, createdUnixDateTime);
+		
+		this.truncateUnusedSectors();
+	}
+	
+	public void setApplyToParent(int index, boolean applyToParent)
+	{
+		if (this.exists(index))
+		{
+			this.header.put(getEntryOffset(index) + APPLY_TO_PARENT_OFFSET, (byte) (applyToParent ? 1 : 0));
+		}
+	}
+	
+	public void setMinGenStep(int index, byte minGenStep)
+	{
+		if (this.exists(index))
+		{
+			this.header.put(getEntryOffset(index) + MIN_GEN_STEP_OFFSET, minGenStep);
+		}
+	}
+	
+	public void delete(int index) throws IOException
+	{
+		this.deletePayload(index);
+		this.truncateUnusedSectors();
+	}
+	
+	/** removes every data source in this file */
+	public void deleteAll() throws IOException
+	{
+		this.clearAllEntries();
+		this.truncateUnusedSectors();
+	}
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	@Override
+	public void close() throws IOException
+	{
+		if (this.isClosed())
+		{
+			return;
+		}
+		
+		try
+		{
+			this.flush();
+		}
+		finally
+		{
+			super.close();
+		}
+	}
+	
+}
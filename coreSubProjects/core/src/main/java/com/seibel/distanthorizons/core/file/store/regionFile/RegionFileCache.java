@@ -0,0 +1,365 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.file.store.regionFile;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens the {@link AbstractRegionFile}'s in a single folder as they're needed,
+ * closing the least recently used files once too many are open. <br><br>
+ * 
+ * Each file is named after its region's position, IE "[prefix][detail level].[x].[z][suffix]".
+ * 
+ * @param <TRegionFile> the type of region file stored in the folder
+ * @see RegionFileFullDataStore
+ */
+public class RegionFileCache<TRegionFile extends AbstractRegionFile> implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public final File folder;
+	private final String fileNamePrefix;
+	private final String fileNameSuffix;
+	/** each open file uses a file handle and a memory mapped header, so this needs to be limited */
+	private final int maxOpenRegionFileCount;
+	private final IRegionFileOpener<TRegionFile> regionFileOpener;
+	
+	/** every region that has a file, open or not */
+	private final Set<Long> regionPosSet = ConcurrentHashMap.newKeySet();
+	/** access ordered so the least recently used files are closed first */
+	private final LinkedHashMap<Long, TRegionFile> openRegionFileByRegionPos = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * Files that have been evicted but may not have been closed yet.
+	 * A region can't be re-opened until its previous file is closed, otherwise both instances could
+	 * allocate the same sectors and overwrite each other's data. <br>
+	 * Should only be accessed while the {@link RegionFileCache#openRegionFileByRegionPos} is locked.
+	 */
+	private final HashMap<Long, TRegionFile> closingRegionFileByRegionPos = new HashMap<>();
+	
+	/** should only be modified while the {@link RegionFileCache#openRegionFileByRegionPos} is locked */
+	private volatile boolean closed = false;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** 
+	 * The folder must already exist, otherwise no regions will be found and new files can't be created. 
+	 * 
+	 * @param regionFileOpener can return null if the file couldn't be opened, IOExceptions will be logged
+	 */
+	public RegionFileCache(File folder, String fileNamePrefix, String fileNameSuffix, int maxOpenRegionFileCount, IRegionFileOpener<TRegionFile> regionFileOpener)
+	{
+		this.folder = folder;
+		this.fileNamePrefix = fileNamePrefix;
+		this.fileNameSuffix = fileNameSuffix;
+		this.maxOpenRegionFileCount = maxOpenRegionFileCount;
+		this.regionFileOpener = regionFileOpener;
+		
+		File[] files = this.folder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				Long regionPos = parseRegionFileName(file.getName(), fileNamePrefix, fileNameSuffix);
+				if (regionPos != null)
+				{
+					this.regionPosSet.add(regionPos);
+				}
+			}
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return every region that has a file, open or not */
+	public Set<Long> getRegionPositions() { return Collections.unmodifiableSet(this.regionPosSet); }
+	
+	/** @return a copy of the currently open region files, they may be closed at any time and should be locked before use */
+	public ArrayList<TRegionFile> getOpenRegionFiles()
+	{
+		synchronized (this.openRegionFileByRegionPos)
+		{
+			return new ArrayList<>(this.openRegionFileByRegionPos.values());
+		}
+	}
+	
+	
+	
+	//==============//
+	// region files //
+	//==============//
+	
+	/**
+	 * Runs the given function while the region file is locked.
+	 * 
+	 * @param createIfMissing if false and the region file doesn't exist the function won't be run
+	 * @return defaultValue if the function wasn't run or failed
+	 */
+	public <T> T useRegion(long regionPos, boolean createIfMissing, T defaultValue, IRegionFileFunc<TRegionFile, T> func)
+	{
+		while (true)
+		{
+			TRegionFile regionFile = this.getOrOpenRegionFile(regionPos, createIfMissing);
+			if (regionFile == null)
+			{
+				return defaultValue;
+			}
+			
+			regionFile.lock.lock();
+			try
+			{
+				if (regionFile.isClosed())
+				{
+					// the file was closed between getting and locking it,
+					// either it was evicted and needs to be re-opened or this cache was closed
+					continue;
+				}
+				
+				return func.apply(regionFile);
+			}
+			catch (IOException e)
+			{
+				LOGGER.error("Unexpected error using region file [" + regionFile.file + "], error: [" + e.getMessage() + "].", e);
+				return defaultValue;
+			}
+			finally
+			{
+				regionFile.lock.unlock();
+			}
+		}
+	}
+	
+	/** @return null if the file doesn't exist and shouldn't be created, couldn't be opened, or this cache is closed */
+	@Nullable
+	private TRegionFile getOrOpenRegionFile(long regionPos, boolean createIfMissing)
+	{
+		TRegionFile regionFile;
+		ArrayList<TRegionFile> evictedRegionFiles = new ArrayList<>();
+		
+		synchronized (this.openRegionFileByRegionPos)
+		{
+			if (this.closed)
+			{
+				return null;
+			}
+			
+			regionFile = this.openRegionFileByRegionPos.get(regionPos);
+			if (regionFile == null)
+			{
+				TRegionFile closingRegionFile = this.closingRegionFileByRegionPos.get(regionPos);
+				if (closingRegionFile != null)
+				{
+					if (closingRegionFile.isClosed())
+					{
+						this.closingRegionFileByRegionPos.remove(regionPos);
+					}
+					else
+					{
+						// the previous file has to finish closing before the region can be re-opened
+						regionFile = closingRegionFile;
+					}
+				}
+			}
+			
+			if (regionFile == null)
+			{
+				if (!createIfMissing && !this.regionPosSet.contains(regionPos))
+				{
+					return null;
+				}
+				
+				File file = new File(this.folder, this.fileNamePrefix + DhSectionPos.getDetailLevel(regionPos) + "." + DhSectionPos.getX(regionPos) + "." + DhSectionPos.getZ(regionPos) + this.fileNameSuffix);
+				try
+				{
+					regionFile = this.regionFileOpener.open(regionPos, file);
+				}
+				catch (IOException e)
+				{
+					LOGGER.error("Unable to open region file [" + file + "], error: [" + e.getMessage() + "].", e);
+				}
+				
+				if (regionFile == null)
+				{
+					return null;
+				}
+				
+				this.regionPosSet.add(regionPos);
+				this.openRegionFileByRegionPos.put(regionPos, regionFile);
+				
+				// the new file was just accessed, so it won't be evicted
+				Iterator<TRegionFile> iterator = this.openRegionFileByRegionPos.values().iterator();
+				while (this.openRegionFileByRegionPos.size() > this.maxOpenRegionFileCount)
+				{
+					TRegionFile evictedRegionFile = iterator.next();
+					iterator.remove();
+					evictedRegionFiles.add(evictedRegionFile);
+					this.closingRegionFileByRegionPos.put(evictedRegionFile.regionPos, evictedRegionFile);
+				}
+			}
+		}
+		
+		// closing is done outside the map lock so other regions can be used while waiting for a file's lock
+		for (TRegionFile evictedRegionFile : evictedRegionFiles)
+		{
+			closeRegionFile(evictedRegionFile);
+			synchronized (this.openRegionFileByRegionPos)
+			{
+				this.closingRegionFileByRegionPos.remove(evictedRegionFile.regionPos, evictedRegionFile);
+			}
+		}
+		
+		// if this file is being closed, useRegion() will wait for its lock, see that it's closed, and try again
+		return regionFile;
+	}
+	
+	private static void closeRegionFile(AbstractRegionFile regionFile)
+	{
+		regionFile.lock.lock();
+		try
+		{
+			regionFile.close();
+		}
+		catch (IOException e)
+		{
+			LOGGER.error("Unable to close region file [" + regionFile.file + "], error: [" + e.getMessage() + "].", e);
+		}
+		finally
+		{
+			regionFile.lock.unlock();
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** @return true if the given folder contains at least one region file */
+	public static boolean containsRegionFiles(File folder, String fileNamePrefix, String fileNameSuffix)
+	{
+		File[] files = folder.listFiles();
+		if (files == null)
+		{
+			return false;
+		}
+		
+		for (File file : files)
+		{
+			if (parseRegionFileName(file.getName(), fileNamePrefix, fileNameSuffix) != null)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** @return null if the name isn't a region file */
+	@Nullable
+	public static Long parseRegionFileName(String fileName, String fileNamePrefix, String fileNameSuffix)
+	{
+		if (!fileName.startsWith(fileNamePrefix) || !fileName.endsWith(fileNameSuffix))
+		{
+			return null;
+		}
+		
+		String[] parts = fileName.substring(fileNamePrefix.length(), fileName.length() - fileNameSuffix.length()).split("\\.");
+		if (parts.length != 3)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return DhSectionPos.encode(Byte.parseByte(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	/** closes every open region file, after this no region can be used */
+	@Override
+	public void close()
+	{
+		ArrayList<TRegionFile> regionFiles;
+		synchronized (this.openRegionFileByRegionPos)
+		{
+			this.closed = true;
+			regionFiles = new ArrayList<>(this.openRegionFileByRegionPos.values());
+			this.openRegionFileByRegionPos.clear();
+		}
+		
+		LOGGER.info("Closing [" + regionFiles.size() + "] region files in [" + this.folder + "].");
+		for (TRegionFile regionFile : regionFiles)
+		{
+			closeRegionFile(regionFile);
+		}
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	@FunctionalInterface
+	public interface IRegionFileFunc<TRegionFile, T>
+	{
+		T apply(TRegionFile regionFile) throws IOException;
+	}
+	
+	@FunctionalInterface
+	public interface IRegionFileOpener<TRegionFile>
+	{
+		/** @return null if the file couldn't be opened */
+		@Nullable
+		TRegionFile open(long regionPos, File file) throws IOException;
+	}
+	
+}
@@ -0,0 +1,544 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.file.store.regionFile;
+
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.MortonCodeUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Stores {@link FullDataSourceV2DTO}'s in {@link FullDataRegionFile}'s
+ * instead of a database, which skips the JDBC/SQL overhead for every read and write. <br><br>
+ * 
+ * Each detail level is split into regions of {@link FullDataRegionFile#REGION_WIDTH} squared sections,
+ * each region is stored in its own file. <br>
+ * A limited number of region files are kept open at once by the {@link RegionFileCache}, the least recently used ones are closed first.
+ * 
+ * @see FullDataRegionFile
+ */
+public class RegionFileFullDataStore implements IFullDataStore
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** the folder inside the level's full data folder */
+	public static final String FOLDER_NAME = "regionData";
+	private static final String FILE_NAME_PREFIX = "r.";
+	private static final String FILE_NAME_SUFFIX = ".dhr";
+	
+	/** each open file uses a file handle and a memory mapped header, so this needs to be limited */
+	public static final int MAX_OPEN_REGION_FILE_COUNT = 256;
+	
+	/** the morton key uses the lower 56 bits, the detail level is stored above it */
+	private static final int UPDATE_SORT_KEY_DETAIL_LEVEL_OFFSET = MortonCodeUtil.COORDINATE_BITS * 2;
+	
+	
+	public final File folder;
+	
+	private final RegionFileCache<FullDataRegionFile> regionFileCache;
+	/** 
+	 * Positions that need to be applied to their parent, sorted the same way as the database: 
+	 * by detail level, then by morton code so siblings are next to each other.
+	 * 
+	 * @see RegionFileFullDataStore#getUpdateSortKey(long) 
+	 */
+	private final ConcurrentSkipListSet<Long> applyToParentSortKeys = new ConcurrentSkipListSet<>();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public RegionFileFullDataStore(File folder)
+	{
+		this.folder = folder;
+		if (!this.folder.exists() && !this.folder.mkdirs())
+		{
+			LOGGER.warn("Unable to create region file folder [" + this.folder + "], file saving may fail.");
+		}
+		
+		this.regionFileCache = new RegionFileCache<>(this.folder, FILE_NAME_PREFIX, FILE_NAME_SUFFIX, MAX_OPEN_REGION_FILE_COUNT, FullDataRegionFile::new);
+		
+		// the pending parent updates are only stored in each file's header
+		for (long regionPos : this.regionFileCache.getRegionPositions())
+		{
+			this.regionFileCache.useRegion(regionPos, false, null, (regionFile) ->
+			{
+				for (int index = 0; index < FullDataRegionFile.ENTRY_COUNT; index++)
+				{
+					if (regionFile.exists(index) && regionFile.getApplyToParent(index))
+					{
+						this.applyToParentSortKeys.add(getUpdateSortKey(FullDataRegionFile.getPosFromIndex(regionPos, index)));
+					}
+				}
+				return null;
+			});
+		}
+	}
+	
+	/** @return true if the given folder contains any region files */
+	public static boolean containsRegionFiles(File folder) { return RegionFileCache.containsRegionFiles(folder, FILE_NAME_PREFIX, FILE_NAME_SUFFIX); }
+	
+	/** Should only be called after any stores using this folder have been closed. */
+	public static void deleteRegionFiles(File folder)
+	{
+		File[] files = folder.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		
+		for (File file : files)
+		{
+			if (RegionFileCache.parseRegionFileName(file.getName(), FILE_NAME_PREFIX, FILE_NAME_SUFFIX) != null
+				&& !file.delete())
+			{
+				LOGGER.warn("Unable to delete region file [" + file + "].");
+			}
+		}
+	}
+	
+	
+	
+	//========//
+	// saving //
+	//========//
+	
+	@Override
+	public void save(FullDataSourceV2DTO dto) { this.save(dto, false); }
+	@Override
+	public void saveWithTimestamps(FullDataSourceV2DTO dto) { this.save(dto, true); }
+	private void save(FullDataSourceV2DTO dto, boolean keepTimestamps)
+	{
+		byte[] payload;
+		try
+		{
+			payload = encodePayload(dto);
+		}
+		catch (IOException e)
+		{
+			String message = "Unable to serialize data source [" + DhSectionPos.toString(dto.pos) + "], error: [" + e.getMessage() + "].";
+			LOGGER.error(message);
+			throw new RuntimeException(message, e);
+		}
+		
+		int dataByteLength = (dto.compressedDataByteArray != null) ? dto.compressedDataByteArray.length : 0;
+		byte minGenStep = getMinGenStep(dto);
+		int index = FullDataRegionFile.getIndexInRegion(dto.pos);
+		
+		this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(dto.pos), true, null, (regionFile) ->
+		{
+			// matches the database, which only keeps the created time when updating
+			long lastModifiedUnixDateTime = keepTimestamps ? dto.lastModifiedUnixDateTime : System.currentTimeMillis();
+			long createdUnixDateTime;
+			if (keepTimestamps || regionFile.exists(index))
+			{
+				createdUnixDateTime = dto.createdUnixDateTime;
+			}
+			else
+			{
+				createdUnixDateTime = System.currentTimeMillis();
+			}
+			
+			regionFile.write(index, payload, dataByteLength, dto.applyToParent, minGenStep, lastModifiedUnixDateTime, createdUnixDateTime);
+			this.updateApplyToParentSortKeys(dto.pos, dto.applyToParent);
+			return null;
+		});
+	}
+	
+	@Override
+	public void setApplyToParent(long pos, boolean applyToParent)
+	{
+		this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, null, (regionFile) ->
+		{
+			int index = FullDataRegionFile.getIndexInRegion(pos);
+			if (regionFile.exists(index))
+			{
+				regionFile.setApplyToParent(index, applyToParent);
+				this.updateApplyToParentSortKeys(pos, applyToParent);
+			}
+			return null;
+		});
+	}
+	
+	@Override
+	public void deleteWithKey(Long pos)
+	{
+		this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, null, (regionFile) ->
+		{
+			regionFile.delete(FullDataRegionFile.getIndexInRegion(pos));
+			this.updateApplyToParentSortKeys(pos, false);
+			return null;
+		});
+	}
+	
+	/** 
+	 * The files are emptied instead of deleted,
+	 * since memory mapped files can't be reliably deleted while the JVM is running on all operating systems.
+	 */
+	@Override
+	public void deleteAll()
+	{
+		for (long regionPos : this.regionFileCache.getRegionPositions())
+		{
+			this.regionFileCache.useRegion(regionPos, false, null, (regionFile) ->
+			{
+				regionFile.deleteAll();
+				return null;
+			});
+		}
+		this.applyToParentSortKeys.clear();
+	}
+	
+	/** Only the open files need to be flushed, files are flushed when they're closed. */
+	@Override
+	public void flush()
+	{
+		for (FullDataRegionFile regionFile : this.regionFileCache.getOpenRegionFiles())
+		{
+			regionFile.lock.lock();
+			try
+			{
+				if (!regionFile.isClosed())
+				{
+					regionFile.flush();
+				}
+			}
+			catch (IOException e)
+			{
+				LOGGER.error("Unable to flush region file [" + regionFile.file + "], error: [" + e.getMessage() + "].", e);
+			}
+			finally
+			{
+				regionFile.lock.unlock();
+			}
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	@Nullable
+	@Override
+	public FullDataSourceV2DTO getByKey(Long pos)
+	{
+		return this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, null, (regionFile) ->
+		{
+			int index = FullDataRegionFile.getIndexInRegion(pos);
+			byte[] payload = regionFile.readPayload(index);
+			if (payload == null)
+			{
+				return null;
+			}
+			
+			FullDataSourceV2DTO dto = decodePayload(pos, payload);
+			dto.applyToParent = regionFile.getApplyToParent(index);
+			dto.minColumnGenStep = regionFile.getMinGenStep(index);
+			dto.lastModifiedUnixDateTime = regionFile.getLastModifiedUnixDateTime(index);
+			dto.createdUnixDateTime = regionFile.getCreatedUnixDateTime(index);
+			return dto;
+		});
+	}
+	
+	@Override
+	public boolean existsWithKey(Long pos)
+	{ return this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, false, (regionFile) -> regionFile.exists(FullDataRegionFile.getIndexInRegion(pos))); }
+	
+	@Nullable
+	@Override
+	public Long getTimestampForPos(long pos)
+	{
+		return this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, null, (regionFile) ->
+		{
+			int index = FullDataRegionFile.getIndexInRegion(pos);
+			return regionFile.exists(index) ? regionFile.getLastModifiedUnixDateTime(index) : null;
+		});
+	}
+	
+	@Override
+	public Map<Long, Long> getTimestampsForRange(byte sectionDetailLevel, int minPosX, int minPosZ, int maxPosX, int maxPosZ)
+	{
+		HashMap<Long, Long> timestampByPos = new HashMap<>();
+		
+		int minRegionX = Math.floorDiv(minPosX, FullDataRegionFile.REGION_WIDTH);
+		int minRegionZ = Math.floorDiv(minPosZ, FullDataRegionFile.REGION_WIDTH);
+		int maxRegionX = Math.floorDiv(maxPosX, FullDataRegionFile.REGION_WIDTH);
+		int maxRegionZ = Math.floorDiv(maxPosZ, FullDataRegionFile.REGION_WIDTH);
+		for (int regionX = minRegionX; regionX <= maxRegionX; regionX++)
+		{
+			for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++)
+			{
+				long regionPos = DhSectionPos.encode(sectionDetailLevel, regionX, regionZ);
+				this.regionFileCache.useRegion(regionPos, false, null, (regionFile) ->
+				{
+					for (int index = 0; index < FullDataRegionFile.ENTRY_COUNT; index++)
+					{
+						if (!regionFile.exists(index))
+						{
+							continue;
+						}
+						
+						long pos = FullDataRegionFile.getPosFromIndex(regionPos, index);
+						int posX = DhSectionPos.getX(pos);
+						int posZ = DhSectionPos.getZ(pos);
+						if (posX >= minPosX && posX <= maxPosX
+							&& posZ >= minPosZ && posZ <= maxPosZ)
+						{
+							timestampByPos.put(pos, regionFile.getLastModifiedUnixDateTime(index));
+						}
+					}
+					return null;
+				});
+			}
+		}
+		
+		return timestampByPos;
+	}
+	
+	@Override
+	public LongArrayList getPositionsToUpdate(int returnCount)
+	{
+		LongArrayList list = new LongArrayList();
+		
+		Iterator<Long> sortKeyIterator = this.applyToParentSortKeys.iterator();
+		while (sortKeyIterator.hasNext() && list.size() < returnCount)
+		{
+			list.add(getPosFromUpdateSortKey(sortKeyIterator.next()));
+		}
+		
+		return list;
+	}
+	
+	/** Always answered from the memory mapped file headers. */
+	@Override
+	public byte getMinColumnGenerationStepForPos(long pos)
+	{
+		return this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, GEN_STEP_NOT_PRESENT, (regionFile) ->
+		{
+			int index = FullDataRegionFile.getIndexInRegion(pos);
+			return regionFile.exists(index) ? regionFile.getMinGenStep(index) : GEN_STEP_NOT_PRESENT;
+		});
+	}
+	
+	@Override
+	public LongArrayList getAllPositions()
+	{
+		LongArrayList list = new LongArrayList();
+		for (long regionPos : this.regionFileCache.getRegionPositions())
+		{
+			this.regionFileCache.useRegion(regionPos, false, null, (regionFile) ->
+			{
+				for (int index = 0; index < FullDataRegionFile.ENTRY_COUNT; index++)
+				{
+					if (regionFile.exists(index))
+					{
+						list.add(FullDataRegionFile.getPosFromIndex(regionPos, index));
+					}
+				}
+				return null;
+			});
+		}
+		return list;
+	}
+	
+	@Override
+	public long getDataSizeInBytes(long pos)
+	{
+		return this.regionFileCache.useRegion(FullDataRegionFile.getRegionPos(pos), false, 0L, (regionFile) ->
+		{
+			int index = FullDataRegionFile.getIndexInRegion(pos);
+			return regionFile.exists(index) ? (long) regionFile.getDataByteLength(index) : 0L;
+		});
+	}
+	
+	@Override
+	public long getTotalDataSizeInBytes()
+	{
+		long totalByteSize = 0;
+		for (long regionPos : this.regionFileCache.getRegionPositions())
+		{
+			totalByteSize += this.regionFileCache.useRegion(regionPos, false, 0L, (regionFile) ->
+			{
+				long regionByteSize = 0;
+				for (int index = 0; index < FullDataRegionFile.ENTRY_COUNT; index++)
+				{
+					if (regionFile.exists(index))
+					{
+						regionByteSize += regionFile.getDataByteLength(index);
+					}
+				}
+				return regionByteSize;
+			});
+		}
+		return totalByteSize;
+	}
+	
+	
+	
+	//=================//
+	// (de)serializing //
+	//=================//
+	
+	/** the position, timestamps, and other values stored in the file header aren't included */
+	private static byte[] encodePayload(FullDataSourceV2DTO dto) throws IOException
+	{
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+		
+		out.writeInt(dto.levelMinY);
+		out.writeInt(dto.dataChecksum);
+		out.writeByte(dto.dataFormatVersion);
+		out.writeByte(dto.compressionModeValue);
+		
+		writeByteArray(out, dto.compressedDataByteArray);
+		writeByteArray(out, dto.compressedColumnGenStepByteArray);
+		writeByteArray(out, dto.compressedWorldCompressionModeByteArray);
+		writeByteArray(out, dto.compressedMappingByteArray);
+		
+		out.flush();
+		return byteArrayOutputStream.toByteArray();
+	}
+	private static void writeByteArray(DataOutputStream out, @Nullable byte[] byteArray) throws IOException
+	{
+		if (byteArray == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			out.writeInt(byteArray.length);
+			out.write(byteArray);
+		}
+	}
+	
+	private static FullDataSourceV2DTO decodePayload(long pos, byte[] payload) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		
+		FullDataSourceV2DTO dto = new FullDataSourceV2DTO();
+		dto.pos = pos;
+		
+		dto.levelMinY = in.readInt();
+		dto.dataChecksum = in.readInt();
+		dto.dataFormatVersion = in.readByte();
+		dto.compressionModeValue = in.readByte();
+		
+		dto.compressedDataByteArray = readByteArray(in);
+		dto.compressedColumnGenStepByteArray = readByteArray(in);
+		dto.compressedWorldCompressionModeByteArray = readByteArray(in);
+		dto.compressedMappingByteArray = readByteArray(in);
+		
+		return dto;
+	}
+	@Nullable
+	private static byte[] readByteArray(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		
+		byte[] byteArray = new byte[length];
+		in.readFully(byteArray);
+		return byteArray;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** the region file header needs a known value, so calculate it if the DTO doesn't have it */
+	private static byte getMinGenStep(FullDataSourceV2DTO dto)
+	{
+		if (dto.minColumnGenStep != GEN_STEP_UNKNOWN
+			|| dto.compressedColumnGenStepByteArray == null)
+		{
+			return dto.minColumnGenStep;
+		}
+		
+		try
+		{
+			return FullDataSourceV2DTO.getMinGenerationStep(dto.decompressColumnGenerationSteps());
+		}
+		catch (IOException | DataCorruptedException | IllegalArgumentException e)
+		{
+			LOGGER.warn("Unable to read column generation steps for pos: [" + DhSectionPos.toString(dto.pos) + "], error: [" + e.getMessage() + "].");
+			return GEN_STEP_UNKNOWN;
+		}
+	}
+	
+	/** must be called while the position's region file is locked so the set matches the file */
+	private void updateApplyToParentSortKeys(long pos, boolean applyToParent)
+	{
+		if (applyToParent)
+		{
+			this.applyToParentSortKeys.add(getUpdateSortKey(pos));
+		}
+		else
+		{
+			this.applyToParentSortKeys.remove(getUpdateSortKey(pos));
+		}
+	}
+	
+	private static long getUpdateSortKey(long pos)
+	{
+		return ((long) DhSectionPos.getDetailLevel(pos) << UPDATE_SORT_KEY_DETAIL_LEVEL_OFFSET)
+				| MortonCodeUtil.encode(DhSectionPos.getX(pos), DhSectionPos.getZ(pos));
+	}
+	private static long getPosFromUpdateSortKey(long sortKey)
+	{
+		long mortonCode = sortKey & ((1L << UPDATE_SORT_KEY_DETAIL_LEVEL_OFFSET) - 1);
+		return DhSectionPos.encode((byte) (sortKey >>> UPDATE_SORT_KEY_DETAIL_LEVEL_OFFSET), MortonCodeUtil.decodeX(mortonCode), MortonCodeUtil.decodeZ(mortonCode));
+	}
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	@Override
+	public void close() { this.regionFileCache.close(); }
+	
+}
@@ -499,6 +499,19 @@ public class WorldGenerationQueue implements IFullDataSourceRetrievalQueue, IDeb
 	public int getWaitingTaskCount() { return this.waitingTasks.size(); }
 	public int getInProgressTaskCount() { return this.inProgressGenTasksByLodPos.size(); }
 	
+	/** 
+	 * @return the average time each world gen step took, 
+	 *          or an empty string if the generator doesn't track step timings (IE API generators). 
+	 */
+	public String getStepTimingSummary()
+	{
+		if (this.generator instanceof BatchGenerator)
+		{
+			return ((BatchGenerator) this.generator).generationEnvironment.getStepTimingSummary();
+		}
+		return "";
+	}
+	
 	@Override
 	public byte lowestDataDetail() { return this.lowestDataDetail; }
 	@Override
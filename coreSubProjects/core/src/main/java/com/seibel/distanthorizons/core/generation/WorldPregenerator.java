@@ -0,0 +1,672 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.generation;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.fullDatafile.GeneratedFullDataSourceProvider;
+import com.seibel.distanthorizons.core.level.WorldGenModule;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.threading.ServerTickThrottle;
+import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Queues every section in a rectangular area for world generation,
+ * independent of where (or if) any players are. <br>
+ * Used to pre-build LODs on a dedicated server. <br><br>
+ *
+ * Progress is periodically written to disk so generation
+ * can resume where it left off after a server restart. <br><br>
+ *
+ * CPU usage is controlled by the normal world generator thread config values
+ * since all generation still goes through the {@link WorldGenerationQueue}.
+ *
+ * @see Progress
+ */
+public class WorldPregenerator
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final String PROGRESS_FILE_NAME = "pregen.properties";
+	/** how often the progress is written to disk while running */
+	private static final long SAVE_INTERVAL_IN_MS = 30_000;
+	
+	private final GeneratedFullDataSourceProvider fullDataProvider;
+	private final WorldGenModule worldGenModule;
+	private final File progressFile;
+	
+	/** null if no pregeneration has been started */
+	@Nullable
+	private Progress progress = null;
+	
+	private long lastSaveTimeMs = 0;
+	/** used to calculate the generation speed, reset whenever generation is (re)started */
+	private long sessionStartTimeMs = 0;
+	private int sessionFinishedCount = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public WorldPregenerator(GeneratedFullDataSourceProvider fullDataProvider, WorldGenModule worldGenModule, File progressFile)
+	{
+		this.fullDataProvider = fullDataProvider;
+		this.worldGenModule = worldGenModule;
+		this.progressFile = progressFile;
+		
+		if (this.progressFile.exists())
+		{
+			try
+			{
+				this.progress = Progress.load(this.progressFile);
+				this.resetSessionSpeed();
+				LOGGER.info("Resuming pregeneration at section [" + this.progress.getConfirmedIndex() + "/" + this.progress.getTotalCount() + "]" + (this.progress.paused ? " (paused)." : "."));
+			}
+			catch (IOException | IllegalArgumentException e)
+			{
+				LOGGER.error("Unable to read pregeneration progress from [" + this.progressFile + "], error: [" + e.getMessage() + "].", e);
+			}
+		}
+	}
+	
+	
+	
+	//==========//
+	// commands //
+	//==========//
+	
+	/** Starts generating the square of sections within the given radius of the center block position. */
+	public synchronized void startRadius(int centerBlockX, int centerBlockZ, int radiusInBlocks)
+	{ this.start(centerBlockX - radiusInBlocks, centerBlockZ - radiusInBlocks, centerBlockX + radiusInBlocks, centerBlockZ + radiusInBlocks); }
+	
+	/** Starts generating every section that overlaps the given block area, replacing any existing pregeneration. */
+	public synchronized void start(int minBlockX, int minBlockZ, int maxBlockX, int maxBlockZ)
+	{
+		this.progress = new Progress(
+				Math.floorDiv(Math.min(minBlockX, maxBlockX), FullDataSourceV2.WIDTH),
+				Math.floorDiv(Math.min(minBlockZ, maxBlockZ), FullDataSourceV2.WIDTH),
+				Math.floorDiv(Math.max(minBlockX, maxBlockX), FullDataSourceV2.WIDTH),
+				Math.floorDiv(Math.max(minBlockZ, maxBlockZ), FullDataSourceV2.WIDTH));
+		this.resetSessionSpeed();
+		this.save();
+		
+		LOGGER.info("Started pregeneration of [" + this.progress.getTotalCount() + "] sections.");
+	}
+	
+	/** @return false if there's nothing to pause */
+	public synchronized boolean pause()
+	{
+		if (this.progress == null || this.progress.isComplete())
+		{
+			return false;
+		}
+		
+		// in progress tasks are allowed to finish
+		this.progress.paused = true;
+		this.save();
+		return true;
+	}
+	
+	/** @return false if there's nothing to resume */
+	public synchronized boolean resume()
+	{
+		if (this.progress == null || this.progress.isComplete())
+		{
+			return false;
+		}
+		
+		this.progress.paused = false;
+		this.resetSessionSpeed();
+		this.save();
+		return true;
+	}
+	
+	/** @return false if there's nothing to cancel */
+	public synchronized boolean cancel()
+	{
+		if (this.progress == null)
+		{
+			return false;
+		}
+		
+		// any in progress tasks will finish but their results are ignored
+		this.progress = null;
+		this.deleteProgressFile();
+		return true;
+	}
+	
+	
+	
+	//===========//
+	// world gen //
+	//===========//
+	
+	/** Queues additional sections for generation if the world generator has room for them. */
+	public synchronized void tick()
+	{
+		Progress progress = this.progress;
+		if (progress == null || progress.paused || progress.isComplete())
+		{
+			return;
+		}
+		
+		ThreadPoolExecutor fileExecutor = ThreadPoolUtil.getFileHandlerExecutor();
+		if (fileExecutor == null)
+		{
+			return;
+		}
+		
+		
+		int maxInProgressCount = GeneratedFullDataSourceProvider.MAX_WORLD_GEN_REQUESTS_PER_THREAD * Config.Client.Advanced.MultiThreading.numberOfWorldGenerationThreads.get();
+		while (progress.hasNext()
+				&& progress.getInProgressCount() < maxInProgressCount
+				&& this.fullDataProvider.canQueueRetrieval())
+		{
+			int index = progress.startNext();
+			long sectionPos = progress.getSectionPos(index);
+			
+			try
+			{
+				// checking if the section was already generated requires a database lookup,
+				// so do that on the file handler threads instead of the server thread
+				CompletableFuture.supplyAsync(() -> this.fullDataProvider.getPositionsToRetrieve(sectionPos), fileExecutor)
+						.thenCompose((positionsToGenerate) -> this.generateSectionAsync(sectionPos, positionsToGenerate))
+						.exceptionally((ex) ->
+						{
+							LOGGER.warn("Pregeneration failed for section [" + DhSectionPos.toString(sectionPos) + "], error: [" + ex.getMessage() + "].", ex);
+							return Progress.EResult.FAILED;
+						})
+						.thenAccept((result) -> this.onSectionFinished(progress, index, result));
+			}
+			catch (RejectedExecutionException e)
+			{
+				// the executor is being shut down
+				this.onSectionFinished(progress, index, Progress.EResult.FAILED);
+				break;
+			}
+		}
+		
+		
+		if (System.currentTimeMillis() - this.lastSaveTimeMs > SAVE_INTERVAL_IN_MS)
+		{
+			this.save();
+		}
+	}
+	private CompletableFuture<Progress.EResult> generateSectionAsync(long sectionPos, @Nullable LongArrayList positionsToGenerate)
+	{
+		if (positionsToGenerate == null)
+		{
+			// the world generator isn't running
+			return CompletableFuture.completedFuture(Progress.EResult.FAILED);
+		}
+		else if (positionsToGenerate.isEmpty())
+		{
+			return CompletableFuture.completedFuture(Progress.EResult.SKIPPED);
+		}
+		
+		CompletableFuture<Boolean> generationFuture = this.fullDataProvider.queuePositionForGenerationAsync(sectionPos);
+		if (generationFuture == null)
+		{
+			return CompletableFuture.completedFuture(Progress.EResult.FAILED);
+		}
+		return generationFuture.thenApply((success) -> success ? Progress.EResult.GENERATED : Progress.EResult.FAILED);
+	}
+	
+	private synchronized void onSectionFinished(Progress progress, int index, Progress.EResult result)
+	{
+		if (progress != this.progress)
+		{
+			// this pregeneration was canceled or replaced
+			return;
+		}
+		
+		progress.finish(index, result);
+		this.sessionFinishedCount++;
+		
+		if (progress.isComplete())
+		{
+			if (progress.getFailedCount() == 0)
+			{
+				LOGGER.info("Pregeneration complete. " + progress.getCountString());
+			}
+			else
+			{
+				LOGGER.warn("Pregeneration complete, but [" + progress.getFailedCount() + "] sections failed to generate after [" + Progress.MAX_ATTEMPT_COUNT + "] attempts. " + progress.getCountString());
+			}
+			this.deleteProgressFile();
+		}
+	}
+	
+	/**
+	 * @return the position world generation should be centered around when no players are online,
+	 *          null if pregeneration isn't running.
+	 */
+	@Nullable
+	public synchronized DhBlockPos2D getGenerationTargetPos()
+	{
+		Progress progress = this.progress;
+		if (progress == null || progress.paused || progress.isComplete())
+		{
+			return null;
+		}
+		
+		// keep the generator focused on the oldest unfinished sections
+		return DhSectionPos.getCenterBlockPos(progress.getSectionPos(Math.min(progress.getConfirmedIndex(), progress.getTotalCount() - 1)));
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public synchronized boolean isRunning() { return this.progress != null && !this.progress.paused && !this.progress.isComplete(); }
+	
+	public synchronized String getStatusMessage()
+	{
+		Progress progress = this.progress;
+		if (progress == null)
+		{
+			return "No pregeneration has been started.";
+		}
+		
+		
+		int totalCount = progress.getTotalCount();
+		int finishedCount = progress.getConfirmedIndex();
+		// failed sections are finished, but they don't have any LODs
+		int successCount = finishedCount - progress.getFailedCount();
+		String state = progress.isComplete()
+				? (progress.getFailedCount() == 0 ? "complete" : "complete with failures")
+				: progress.paused ? "paused" : "running";
+		
+		StringBuilder builder = new StringBuilder();
+		builder.append("Pregeneration ").append(state).append(": ")
+				.append(successCount).append("/").append(totalCount).append(" sections (")
+				.append(String.format("%.1f", (successCount * 100.0) / totalCount)).append("%). ")
+				.append(progress.getCountString());
+		
+		if (!progress.isComplete())
+		{
+			long elapsedTimeMs = System.currentTimeMillis() - this.sessionStartTimeMs;
+			double sectionsPerMinute = (elapsedTimeMs > 0) ? (this.sessionFinishedCount * 60_000.0) / elapsedTimeMs : 0;
+			builder.append("\nSpeed: ").append(String.format("%.1f", sectionsPerMinute)).append(" sections/minute");
+			
+			if (!progress.paused && sectionsPerMinute > 0)
+			{
+				long remainingTimeMs = (long) (((totalCount - finishedCount) / sectionsPerMinute) * 60_000);
+				builder.append(", ETA: ").append(formatDuration(remainingTimeMs));
+			}
+		}
+		
+		builder.append("\n").append(ServerTickThrottle.INSTANCE.getStatusString());
+		
+		String stepTimingSummary = this.worldGenModule.getStepTimingSummary();
+		if (!stepTimingSummary.isEmpty())
+		{
+			builder.append("\nAverage step times: ").append(stepTimingSummary);
+		}
+		
+		return builder.toString();
+	}
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	
+	/** saves the current progress so it can be resumed next time the level is loaded */
+	public synchronized void close()
+	{
+		if (this.progress != null && !this.progress.isComplete())
+		{
+			this.save();
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private void resetSessionSpeed()
+	{
+		this.sessionStartTimeMs = System.currentTimeMillis();
+		this.sessionFinishedCount = 0;
+	}
+	
+	private void save()
+	{
+		this.lastSaveTimeMs = System.currentTimeMillis();
+		if (this.progress == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			this.progress.save(this.progressFile);
+		}
+		catch (IOException e)
+		{
+			LOGGER.error("Unable to save pregeneration progress to [" + this.progressFile + "], error: [" + e.getMessage() + "].", e);
+		}
+	}
+	
+	private void deleteProgressFile()
+	{
+		if (this.progressFile.exists() && !this.progressFile.delete())
+		{
+			LOGGER.warn("Unable to delete pregeneration progress file [" + this.progressFile + "].");
+		}
+	}
+	
+	private static String formatDuration(long durationMs)
+	{
+		long totalMinutes = durationMs / 60_000;
+		long hours = totalMinutes / 60;
+		long minutes = totalMinutes % 60;
+		
+		if (hours > 0)
+		{
+			return hours + "h " + minutes + "m";
+		}
+		else if (minutes > 0)
+		{
+			return minutes + "m";
+		}
+		else
+		{
+			return "<1m";
+		}
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/**
+	 * Tracks which sections in the pregeneration area have been generated. <br>
+	 * Sections are processed in row-major order, but can finish in any order,
+	 * so only the index below which every section has finished (the confirmed index) is persisted.
+	 * Any sections after that index are re-checked when resuming,
+	 * which is fast for sections that were already generated. <br><br>
+	 *
+	 * Failed sections are retried up to {@link Progress#MAX_ATTEMPT_COUNT} times
+	 * before they're counted as failed.
+	 */
+	public static class Progress
+	{
+		private static final String MIN_X_KEY = "minSectionX";
+		private static final String MIN_Z_KEY = "minSectionZ";
+		private static final String MAX_X_KEY = "maxSectionX";
+		private static final String MAX_Z_KEY = "maxSectionZ";
+		private static final String CONFIRMED_INDEX_KEY = "confirmedIndex";
+		private static final String GENERATED_COUNT_KEY = "generatedCount";
+		private static final String SKIPPED_COUNT_KEY = "skippedCount";
+		private static final String FAILED_COUNT_KEY = "failedCount";
+		private static final String PAUSED_KEY = "paused";
+		
+		/** how many times a section will be attempted before it's counted as failed */
+		public static final int MAX_ATTEMPT_COUNT = 3;
+		
+		/** inclusive detail level 6 section coordinates */
+		public final int minSectionX, minSectionZ, maxSectionX, maxSectionZ;
+		public boolean paused = false;
+		
+		/** every section before this index has finished */
+		private int confirmedIndex = 0;
+		/** the next section to start */
+		private int nextIndex = 0;
+		/** started sections at or after the confirmed index */
+		private final TreeMap<Integer, EResult> unconfirmedResultByIndex = new TreeMap<>();
+		private int inProgressCount = 0;
+		
+		/** failed sections that should be started again before any new sections */
+		private final ArrayDeque<Integer> retryIndexQueue = new ArrayDeque<>();
+		/** only contains sections that have failed at least once and haven't been confirmed yet */
+		private final HashMap<Integer, Integer> failedAttemptCountByIndex = new HashMap<>();
+		
+		/** these only include confirmed sections */
+		private int generatedCount = 0;
+		private int skippedCount = 0;
+		private int failedCount = 0;
+		
+		
+		
+		public Progress(int minSectionX, int minSectionZ, int maxSectionX, int maxSectionZ)
+		{
+			if (maxSectionX < minSectionX || maxSectionZ < minSectionZ)
+			{
+				throw new IllegalArgumentException("Invalid pregeneration area, min [" + minSectionX + "," + minSectionZ + "] max [" + maxSectionX + "," + maxSectionZ + "].");
+			}
+			
+			long totalCount = (long) (maxSectionX - minSectionX + 1) * (maxSectionZ - minSectionZ + 1);
+			if (totalCount > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("Pregeneration area is too large, [" + totalCount + "] sections.");
+			}
+			
+			this.minSectionX = minSectionX;
+			this.minSectionZ = minSectionZ;
+			this.maxSectionX = maxSectionX;
+			this.maxSectionZ = maxSectionZ;
+		}
+		
+		
+		
+		//==================//
+		// index management //
+		//==================//
+		
+		public int getTotalCount() { return (this.maxSectionX - this.minSectionX + 1) * (this.maxSectionZ - this.minSectionZ + 1); }
+		
+		public long getSectionPos(int index)
+		{
+			int width = this.maxSectionX - this.minSectionX + 1;
+			return DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, this.minSectionX + (index % width), this.minSectionZ + (index / width));
+		}
+		
+		public boolean hasNext() { return !this.retryIndexQueue.isEmpty() || this.nextIndex < this.getTotalCount(); }
+		
+		/** @return the index of the section that should be generated next */
+		public int startNext()
+		{
+			int index;
+			if (!this.retryIndexQueue.isEmpty())
+			{
+				index = this.retryIndexQueue.poll();
+			}
+			else
+			{
+				index = this.nextIndex;
+				this.nextIndex++;
+			}
+			
+			this.unconfirmedResultByIndex.put(index, EResult.IN_PROGRESS);
+			this.inProgressCount++;
+			return index;
+		}
+		
+		public void finish(int index, EResult result)
+		{
+			if (this.unconfirmedResultByIndex.get(index) != EResult.IN_PROGRESS)
+			{
+				// shouldn't happen, but just in case
+				return;
+			}
+			
+			this.inProgressCount--;
+			
+			if (result == EResult.FAILED)
+			{
+				int attemptCount = this.failedAttemptCountByIndex.getOrDefault(index, 0) + 1;
+				if (attemptCount < MAX_ATTEMPT_COUNT)
+				{
+					// try again, the failure may have been temporary (IE the world generator was busy or restarting)
+					this.failedAttemptCountByIndex.put(index, attemptCount);
+					this.unconfirmedResultByIndex.put(index, EResult.WAITING_FOR_RETRY);
+					this.retryIndexQueue.add(index);
+					return;
+				}
+			}
+			this.failedAttemptCountByIndex.remove(index);
+			this.unconfirmedResultByIndex.put(index, result);
+			
+			// move the confirmed index up to the first unfinished section
+			while (!this.unconfirmedResultByIndex.isEmpty())
+			{
+				Map.Entry<Integer, EResult> firstEntry = this.unconfirmedResultByIndex.firstEntry();
+				if (firstEntry.getValue() == EResult.IN_PROGRESS
+					|| firstEntry.getValue() == EResult.WAITING_FOR_RETRY)
+				{
+					break;
+				}
+				
+				this.unconfirmedResultByIndex.pollFirstEntry();
+				this.confirmedIndex = firstEntry.getKey() + 1;
+				switch (firstEntry.getValue())
+				{
+					case GENERATED:
+						this.generatedCount++;
+						break;
+					case SKIPPED:
+						this.skippedCount++;
+						break;
+					case FAILED:
+						this.failedCount++;
+						break;
+				}
+			}
+		}
+		
+		public int getConfirmedIndex() { return this.confirmedIndex; }
+		public int getInProgressCount() { return this.inProgressCount; }
+		public boolean isComplete() { return this.confirmedIndex >= this.getTotalCount(); }
+		
+		public int getGeneratedCount() { return this.generatedCount; }
+		public int getSkippedCount() { return this.skippedCount; }
+		public int getFailedCount() { return this.failedCount; }
+		
+		public String getCountString() { return "Generated: " + this.generatedCount + ", already generated: " + this.skippedCount + ", failed: " + this.failedCount; }
+		
+		
+		
+		//=============//
+		// persistence //
+		//=============//
+		
+		public void save(File file) throws IOException
+		{
+			Properties properties = new Properties();
+			properties.setProperty(MIN_X_KEY, Integer.toString(this.minSectionX));
+			properties.setProperty(MIN_Z_KEY, Integer.toString(this.minSectionZ));
+			properties.setProperty(MAX_X_KEY, Integer.toString(this.maxSectionX));
+			properties.setProperty(MAX_Z_KEY, Integer.toString(this.maxSectionZ));
+			properties.setProperty(CONFIRMED_INDEX_KEY, Integer.toString(this.confirmedIndex));
+			properties.setProperty(GENERATED_COUNT_KEY, Integer.toString(this.generatedCount));
+			properties.setProperty(SKIPPED_COUNT_KEY, Integer.toString(this.skippedCount));
+			properties.setProperty(FAILED_COUNT_KEY, Integer.toString(this.failedCount));
+			properties.setProperty(PAUSED_KEY, Boolean.toString(this.paused));
+			
+			// write to a temporary file first so a crash mid-write won't corrupt the existing progress
+			File tempFile = new File(file.getPath() + ".tmp");
+			try (OutputStream outputStream = new FileOutputStream(tempFile))
+			{
+				properties.store(outputStream, "Distant Horizons pregeneration progress");
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		/** @throws IllegalArgumentException if the file is missing values or they are invalid */
+		public static Progress load(File file) throws IOException, IllegalArgumentException
+		{
+			Properties properties = new Properties();
+			try (InputStream inputStream = new FileInputStream(file))
+			{
+				properties.load(inputStream);
+			}
+			
+			Progress progress = new Progress(
+					getIntProperty(properties, MIN_X_KEY), getIntProperty(properties, MIN_Z_KEY),
+					getIntProperty(properties, MAX_X_KEY), getIntProperty(properties, MAX_Z_KEY));
+			
+			progress.confirmedIndex = Math.max(0, Math.min(getIntProperty(properties, CONFIRMED_INDEX_KEY), progress.getTotalCount()));
+			progress.nextIndex = progress.confirmedIndex;
+			progress.generatedCount = getIntProperty(properties, GENERATED_COUNT_KEY);
+			progress.skippedCount = getIntProperty(properties, SKIPPED_COUNT_KEY);
+			progress.failedCount = getIntProperty(properties, FAILED_COUNT_KEY);
+			progress.paused = Boolean.parseBoolean(properties.getProperty(PAUSED_KEY));
+			return progress;
+		}
+		private static int getIntProperty(Properties properties, String key) throws IllegalArgumentException
+		{
+			String value = properties.getProperty(key);
+			if (value == null)
+			{
+				throw new IllegalArgumentException("Missing pregeneration property [" + key + "].");
+			}
+			// throws a NumberFormatException (which is an IllegalArgumentException) if invalid
+			return Integer.parseInt(value.trim());
+		}
+		
+		
+		
+		public enum EResult
+		{
+			IN_PROGRESS,
+			/** the section failed, but will be attempted again */
+			WAITING_FOR_RETRY,
+			GENERATED,
+			/** the section was already generated */
+			SKIPPED,
+			FAILED,
+		}
+		
+	}
+	
+}
@@ -20,7 +20,9 @@
 package com.seibel.distanthorizons.core.jar;
 
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory;
 import com.seibel.distanthorizons.core.jar.wrapperInterfaces.config.LangWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
 import com.seibel.distanthorizons.core.wrapperInterfaces.config.ILangWrapper;
 
 public class JarDependencySetup
@@ -31,4 +33,16 @@ public class JarDependencySetup
 		LangWrapper.init();
 	}
 	
+	/** 
+	 * Binds the wrappers needed to read and write LOD data without Minecraft. <br>
+	 * Does nothing if a wrapper factory was already bound.
+	 */
+	public static void createOfflineLodBindings()
+	{
+		if (SingletonInjector.INSTANCE.get(IWrapperFactory.class) == null)
+		{
+			SingletonInjector.INSTANCE.bind(IWrapperFactory.class, OfflineWrapperFactory.INSTANCE);
+		}
+	}
+	
 }
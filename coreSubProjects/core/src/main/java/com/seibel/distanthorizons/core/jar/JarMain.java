@@ -24,6 +24,7 @@ import com.seibel.distanthorizons.core.jar.gui.BaseJFrame;
 import com.seibel.distanthorizons.core.jar.gui.cusomJObject.JBox;
 import com.seibel.distanthorizons.core.jar.installer.ModrinthGetter;
 import com.seibel.distanthorizons.core.jar.installer.WebDownloader;
+import com.seibel.distanthorizons.core.jar.lodDatabase.LodDatabaseTool;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
@@ -84,6 +85,13 @@ public class JarMain
 		}
 		JarDependencySetup.createInitialBindings();
 		
+		// headless LOD database maintenance
+		if (args.length != 0 && args[0].equals(LodDatabaseTool.COMMAND_NAME))
+		{
+			System.exit(LodDatabaseTool.run(Arrays.copyOfRange(args, 1, args.length), System.out));
+			return;
+		}
+		
 		if (args.length == 0 || Arrays.asList(args).contains("--gui"))
 		{
 			startGUI();
@@ -0,0 +1,280 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.jar.lodDatabase;
+
+import com.seibel.distanthorizons.core.jar.JarDependencySetup;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.OfflineLevelWrapper;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headless commands for maintaining a world's LOD database (IE "DistantHorizons.sqlite")
+ * without starting Minecraft. <br><br>
+ *
+ * Usage: <br>
+ * <code>lod stats &lt;database&gt; [--regions N]</code> <br>
+ * <code>lod rebuild-parents &lt;database&gt; [--threads N] [--regions N]</code> <br>
+ * <code>lod vacuum &lt;database&gt;</code>
+ *
+ * @see ParentLodRebuilder
+ */
+public class LodDatabaseTool
+{
+	public static final String COMMAND_NAME = "lod";
+	
+	public static final String STATS_SUBCOMMAND = "stats";
+	public static final String REBUILD_PARENTS_SUBCOMMAND = "rebuild-parents";
+	public static final String VACUUM_SUBCOMMAND = "vacuum";
+	
+	public static final String THREAD_COUNT_ARG = "--threads";
+	public static final String REGION_COUNT_ARG = "--regions";
+	
+	public static final int DEFAULT_REGION_COUNT = 20;
+	
+	public static final String DATABASE_TYPE = "jdbc:sqlite";
+	
+	
+	
+	/**
+	 * @param args the arguments after {@link LodDatabaseTool#COMMAND_NAME}
+	 * @return the process exit code, 0 if successful
+	 */
+	public static int run(String[] args, PrintStream out)
+	{
+		if (args.length < 2)
+		{
+			printUsage(out);
+			return 1;
+		}
+		
+		String subcommand = args[0];
+		File databaseFile = new File(args[1]);
+		
+		int threadCount;
+		int regionCount;
+		try
+		{
+			threadCount = getIntArg(args, THREAD_COUNT_ARG, Runtime.getRuntime().availableProcessors());
+			regionCount = getIntArg(args, REGION_COUNT_ARG, DEFAULT_REGION_COUNT);
+		}
+		catch (IllegalArgumentException e)
+		{
+			out.println(e.getMessage());
+			printUsage(out);
+			return 1;
+		}
+		
+		if (!subcommand.equals(STATS_SUBCOMMAND) && !subcommand.equals(REBUILD_PARENTS_SUBCOMMAND) && !subcommand.equals(VACUUM_SUBCOMMAND))
+		{
+			out.println("Unknown command [" + subcommand + "].");
+			printUsage(out);
+			return 1;
+		}
+		// opening a database that doesn't exist would create an empty one
+		if (!databaseFile.isFile())
+		{
+			out.println("No database found at [" + databaseFile.getAbsolutePath() + "].");
+			return 1;
+		}
+		
+		
+		// data mappings can't be read without a wrapper factory
+		JarDependencySetup.createOfflineLodBindings();
+		
+		FullDataSourceV2Repo repo = null;
+		try
+		{
+			repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseFile.getPath());
+			
+			if (subcommand.equals(STATS_SUBCOMMAND))
+			{
+				printSizeStatistics(repo, regionCount, out);
+			}
+			else if (subcommand.equals(VACUUM_SUBCOMMAND))
+			{
+				vacuum(repo, out);
+			}
+			else
+			{
+				rebuildParents(repo, threadCount, regionCount, out);
+			}
+			return 0;
+		}
+		catch (Exception e)
+		{
+			out.println("Command [" + subcommand + "] failed, error: [" + e.getMessage() + "].");
+			e.printStackTrace(out);
+			return 2;
+		}
+		finally
+		{
+			if (repo != null)
+			{
+				repo.close();
+			}
+		}
+	}
+	
+	
+	
+	//==========//
+	// commands //
+	//==========//
+	
+	private static void printSizeStatistics(FullDataSourceV2Repo repo, int regionCount, PrintStream out)
+	{
+		out.println("Detail level | rows | data bytes | total bytes");
+		long totalRowCount = 0;
+		long totalByteCount = 0;
+		for (FullDataSourceV2Repo.SizeStatistics statistics : repo.getSizeStatisticsByDetailLevel())
+		{
+			out.println(statistics.sectionDetailLevel + " | " + statistics.rowCount + " | " + formatByteCount(statistics.dataByteCount) + " | " + formatByteCount(statistics.totalByteCount));
+			totalRowCount += statistics.rowCount;
+			totalByteCount += statistics.totalByteCount;
+		}
+		out.println("Total | " + totalRowCount + " | | " + formatByteCount(totalByteCount));
+		out.println("Free space | | | " + formatByteCount(repo.getFreeByteCount()));
+		out.println();
+		
+		out.println("Largest [" + regionCount + "] regions:");
+		out.println("Region X, Z | rows | data bytes | total bytes");
+		for (FullDataSourceV2Repo.SizeStatistics statistics : repo.getSizeStatisticsByRegion(regionCount))
+		{
+			out.println(statistics.regionX + ", " + statistics.regionZ + " | " + statistics.rowCount + " | " + formatByteCount(statistics.dataByteCount) + " | " + formatByteCount(statistics.totalByteCount));
+		}
+	}
+	
+	private static void rebuildParents(FullDataSourceV2Repo repo, int threadCount, int regionCount, PrintStream out)
+	{
+		out.println("Rebuilding parent detail levels using [" + threadCount + "] threads...");
+		ParentLodRebuilder rebuilder = new ParentLodRebuilder(repo, OfflineLevelWrapper.INSTANCE, threadCount);
+		
+		long startNanoTime = System.nanoTime();
+		List<ParentLodRebuilder.LevelStatistics> levelStatisticsList = rebuilder.rebuild();
+		long totalNanoTime = System.nanoTime() - startNanoTime;
+		
+		out.println("Detail level | children | rebuilt parents | failed | parent bytes | time (ms)");
+		int failedCount = 0;
+		for (ParentLodRebuilder.LevelStatistics statistics : levelStatisticsList)
+		{
+			out.println(statistics.sectionDetailLevel + " | " + statistics.childCount + " | " + statistics.rebuiltParentCount.get() + " | " + statistics.failedParentCount.get()
+					+ " | " + formatByteCount(statistics.parentByteCount.get()) + " | " + (statistics.wallNanoTime / 1_000_000));
+			failedCount += statistics.failedParentCount.get();
+		}
+		out.println("Total time [" + (totalNanoTime / 1_000_000) + "] ms, failed parents [" + failedCount + "].");
+		out.println();
+		
+		out.println("Slowest [" + regionCount + "] regions:");
+		out.println("Region X, Z | thread time (ms)");
+		List<Map.Entry<Long, Long>> regionTimeList = new ArrayList<>(rebuilder.getBuildNanoTimeByRegionPos().entrySet());
+		regionTimeList.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+		for (int i = 0; i < regionTimeList.size() && i < regionCount; i++)
+		{
+			long regionPos = regionTimeList.get(i).getKey();
+			out.println(DhSectionPos.getX(regionPos) + ", " + DhSectionPos.getZ(regionPos) + " | " + (regionTimeList.get(i).getValue() / 1_000_000));
+		}
+		out.println();
+		
+		printSizeStatistics(repo, regionCount, out);
+	}
+	
+	private static void vacuum(FullDataSourceV2Repo repo, PrintStream out)
+	{
+		long startFreeByteCount = repo.getFreeByteCount();
+		if (repo.isIncrementalVacuumEnabled())
+		{
+			out.println("Freeing [" + formatByteCount(startFreeByteCount) + "]...");
+			// 0 frees every unused page
+			repo.runIncrementalVacuum(0);
+		}
+		else
+		{
+			// once converted, the game can free unused space in small chunks by itself
+			out.println("Converting the database to incremental vacuuming and freeing [" + formatByteCount(startFreeByteCount) + "], this may take a while...");
+			repo.enableIncrementalVacuum();
+		}
+		out.println("Done, [" + formatByteCount(startFreeByteCount - repo.getFreeByteCount()) + "] freed.");
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static void printUsage(PrintStream out)
+	{
+		out.println("Usage:");
+		out.println("  " + COMMAND_NAME + " " + STATS_SUBCOMMAND + " <database> [" + REGION_COUNT_ARG + " N]");
+		out.println("      prints the row count and size of each detail level and the largest regions.");
+		out.println("  " + COMMAND_NAME + " " + REBUILD_PARENTS_SUBCOMMAND + " <database> [" + THREAD_COUNT_ARG + " N] [" + REGION_COUNT_ARG + " N]");
+		out.println("      rebuilds every lower detail level from the highest detail data.");
+		out.println("      Minecraft shouldn't be using the database while this is running.");
+		out.println("  " + COMMAND_NAME + " " + VACUUM_SUBCOMMAND + " <database>");
+		out.println("      returns unused space to the OS and enables freeing space in the background for older databases.");
+		out.println("      Minecraft shouldn't be using the database while this is running.");
+	}
+	
+	/** @throws IllegalArgumentException if the argument is present but isn't a positive number */
+	private static int getIntArg(String[] args, String argName, int defaultValue) throws IllegalArgumentException
+	{
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals(argName))
+			{
+				try
+				{
+					int value = Integer.parseInt(args[i + 1]);
+					if (value > 0)
+					{
+						return value;
+					}
+				}
+				catch (NumberFormatException | IndexOutOfBoundsException ignore) { }
+				
+				throw new IllegalArgumentException("[" + argName + "] must be followed by a positive number.");
+			}
+		}
+		return defaultValue;
+	}
+	
+	private static String formatByteCount(long byteCount)
+	{
+		if (byteCount < 1024)
+		{
+			return byteCount + " B";
+		}
+		else if (byteCount < 1024 * 1024)
+		{
+			return String.format("%.1f KiB", byteCount / 1024.0);
+		}
+		else
+		{
+			return String.format("%.1f MiB", byteCount / (1024.0 * 1024.0));
+		}
+	}
+	
+}
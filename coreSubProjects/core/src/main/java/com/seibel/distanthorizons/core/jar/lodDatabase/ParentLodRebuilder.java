@@ -0,0 +1,303 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.jar.lodDatabase;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.AbstractDataSourceHandler;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.ThreadUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds every lower detail level in a LOD database from the detail level below it,
+ * starting at the highest detail level and working up. <br>
+ * Each parent is created with the same {@link FullDataSourceV2#update(FullDataSourceV2)} calls
+ * that the game uses when propagating updates, so the results should be identical,
+ * this just allows the work to be done without a running game. <br><br>
+ *
+ * Parents are rebuilt in parallel, however each detail level
+ * must finish before the next one starts since it is built from the previous level's output.
+ */
+public class ParentLodRebuilder
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** 
+	 * How many parents are queued per thread at once. <br>
+	 * Limits how many tasks (and the data sources they hold) exist at a time for very large databases.
+	 */
+	private static final int BATCH_SIZE_PER_THREAD = 16;
+	
+	
+	private final FullDataSourceV2Repo repo;
+	private final ILevelWrapper levelWrapper;
+	private final int threadCount;
+	
+	/**
+	 * how long was spent building parents in each region,
+	 * keyed by the region's {@link DhSectionPos}
+	 */
+	private final ConcurrentHashMap<Long, AtomicLong> buildNanoTimeByRegionPos = new ConcurrentHashMap<>();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ParentLodRebuilder(FullDataSourceV2Repo repo, ILevelWrapper levelWrapper, int threadCount)
+	{
+		this.repo = repo;
+		this.levelWrapper = levelWrapper;
+		this.threadCount = Math.max(1, threadCount);
+	}
+	
+	
+	
+	//=========//
+	// rebuild //
+	//=========//
+	
+	/** @return the statistics for each rebuilt detail level, sorted from highest to lowest detail */
+	public List<LevelStatistics> rebuild()
+	{
+		this.buildNanoTimeByRegionPos.clear();
+		
+		List<LevelStatistics> statisticsList = new ArrayList<>();
+		ThreadPoolExecutor executor = ThreadUtil.makeThreadPool(this.threadCount, ParentLodRebuilder.class);
+		try
+		{
+			for (byte parentDetailLevel = AbstractDataSourceHandler.MIN_SECTION_DETAIL_LEVEL + 1; parentDetailLevel <= AbstractDataSourceHandler.TOP_SECTION_DETAIL_LEVEL; parentDetailLevel++)
+			{
+				LevelStatistics levelStatistics = this.rebuildDetailLevel(parentDetailLevel, executor);
+				statisticsList.add(levelStatistics);
+				LOGGER.info(levelStatistics.toString());
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		return statisticsList;
+	}
+	
+	private LevelStatistics rebuildDetailLevel(byte parentDetailLevel, ThreadPoolExecutor executor)
+	{
+		long startNanoTime = System.nanoTime();
+		
+		// group the children by parent,
+		// the positions are in Morton order so siblings will already be next to each other
+		LongArrayList childPosList = this.repo.getPositionsAtDetailLevel((byte) (parentDetailLevel - 1));
+		LinkedHashMap<Long, LongArrayList> childPosListByParentPos = new LinkedHashMap<>();
+		for (int i = 0; i < childPosList.size(); i++)
+		{
+			long childPos = childPosList.getLong(i);
+			childPosListByParentPos.computeIfAbsent(DhSectionPos.getParentPos(childPos), (parentPos) -> new LongArrayList(4)).add(childPos);
+		}
+		
+		
+		LevelStatistics statistics = new LevelStatistics(parentDetailLevel, childPosList.size());
+		ArrayList<CompletableFuture<Void>> batchFutures = new ArrayList<>();
+		int batchSize = this.threadCount * BATCH_SIZE_PER_THREAD;
+		for (Map.Entry<Long, LongArrayList> entry : childPosListByParentPos.entrySet())
+		{
+			long parentPos = entry.getKey();
+			LongArrayList siblingPosList = entry.getValue();
+			batchFutures.add(CompletableFuture.runAsync(() -> this.rebuildParent(parentPos, siblingPosList, statistics), executor));
+			
+			if (batchFutures.size() >= batchSize)
+			{
+				CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture<?>[0])).join();
+				batchFutures.clear();
+			}
+		}
+		CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture<?>[0])).join();
+		
+		statistics.wallNanoTime = System.nanoTime() - startNanoTime;
+		return statistics;
+	}
+	
+	private void rebuildParent(long parentPos, LongArrayList childPosList, LevelStatistics statistics)
+	{
+		long startNanoTime = System.nanoTime();
+		
+		FullDataSourceV2 parentDataSource = null;
+		try
+		{
+			if (childPosList.size() == 4)
+			{
+				// the children cover the whole parent, so nothing old needs to be kept
+				parentDataSource = FullDataSourceV2.DATA_SOURCE_POOL.getPooledSource(parentPos, true);
+			}
+			else
+			{
+				// some children are missing, keep the existing parent's data for those areas
+				FullDataSourceV2DTO existingParentDto = this.repo.getByKey(parentPos);
+				parentDataSource = (existingParentDto != null)
+						? existingParentDto.createPooledDataSource(this.levelWrapper)
+						: FullDataSourceV2.DATA_SOURCE_POOL.getPooledSource(parentPos, true);
+			}
+			
+			
+			FullDataSourceV2DTO firstChildDto = null;
+			for (int i = 0; i < childPosList.size(); i++)
+			{
+				FullDataSourceV2DTO childDto = this.repo.getByKey(childPosList.getLong(i));
+				if (childDto == null)
+				{
+					continue;
+				}
+				
+				if (firstChildDto == null)
+				{
+					firstChildDto = childDto;
+				}
+				
+				// closed explicitly, the same as the parent data source, since closing a pooled source just returns it to the pool
+				FullDataSourceV2 childDataSource = childDto.createPooledDataSource(this.levelWrapper);
+				try
+				{
+					parentDataSource.update(childDataSource);
+				}
+				finally
+				{
+					childDataSource.close();
+				}
+			}
+			
+			
+			// always saved, even if the data didn't change, since the existing parent may be stale or missing
+			if (firstChildDto != null)
+			{
+				// every level is being rebuilt, so there's nothing left to propagate
+				parentDataSource.applyToParent = false;
+				parentDataSource.levelMinY = firstChildDto.levelMinY;
+				
+				// keep the same compression as the existing data so the database stays consistent
+				FullDataSourceV2DTO parentDto = FullDataSourceV2DTO.CreateFromDataSource(parentDataSource, firstChildDto.getCompressionMode());
+				this.repo.save(parentDto);
+				
+				statistics.rebuiltParentCount.incrementAndGet();
+				statistics.parentByteCount.addAndGet(parentDto.getCompressedByteLength());
+			}
+			
+			for (int i = 0; i < childPosList.size(); i++)
+			{
+				this.repo.setApplyToParent(childPosList.getLong(i), false);
+			}
+		}
+		catch (Exception e)
+		{
+			statistics.failedParentCount.incrementAndGet();
+			LOGGER.error("Unable to rebuild parent [" + DhSectionPos.toString(parentPos) + "], error: [" + e.getMessage() + "].", e);
+		}
+		finally
+		{
+			if (parentDataSource != null)
+			{
+				try
+				{
+					parentDataSource.close();
+				}
+				catch (Exception ignore) { }
+			}
+		}
+		
+		
+		// parents larger than a region are attributed to the region containing their min corner
+		long regionPos = DhSectionPos.encode(LodUtil.REGION_DETAIL_LEVEL,
+				DhSectionPos.getMinCornerBlockX(parentPos) >> LodUtil.REGION_DETAIL_LEVEL,
+				DhSectionPos.getMinCornerBlockZ(parentPos) >> LodUtil.REGION_DETAIL_LEVEL);
+		this.buildNanoTimeByRegionPos.computeIfAbsent(regionPos, (pos) -> new AtomicLong(0)).addAndGet(System.nanoTime() - startNanoTime);
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/**
+	 * @return the total thread time spent building parents in each region during the last {@link ParentLodRebuilder#rebuild()},
+	 *          keyed by the region's {@link DhSectionPos}
+	 */
+	public Map<Long, Long> getBuildNanoTimeByRegionPos()
+	{
+		Map<Long, Long> nanoTimeByRegionPos = new LinkedHashMap<>();
+		this.buildNanoTimeByRegionPos.forEach((regionPos, nanoTime) -> nanoTimeByRegionPos.put(regionPos, nanoTime.get()));
+		return nanoTimeByRegionPos;
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	public static class LevelStatistics
+	{
+		public final byte sectionDetailLevel;
+		public final int childCount;
+		
+		public final AtomicInteger rebuiltParentCount = new AtomicInteger(0);
+		public final AtomicInteger failedParentCount = new AtomicInteger(0);
+		/** the compressed size of every rebuilt parent */
+		public final AtomicLong parentByteCount = new AtomicLong(0);
+		
+		public long wallNanoTime = 0;
+		
+		
+		
+		public LevelStatistics(byte sectionDetailLevel, int childCount)
+		{
+			this.sectionDetailLevel = sectionDetailLevel;
+			this.childCount = childCount;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return "Detail level [" + this.sectionDetailLevel + "] "
+					+ "rebuilt [" + this.rebuiltParentCount.get() + "] parents "
+					+ "from [" + this.childCount + "] children "
+					+ "in [" + (this.wallNanoTime / 1_000_000) + "] ms, "
+					+ "failed [" + this.failedParentCount.get() + "].";
+		}
+		
+	}
+	
+}
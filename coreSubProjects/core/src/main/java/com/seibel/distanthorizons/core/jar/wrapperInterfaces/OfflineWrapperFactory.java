@@ -0,0 +1,111 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.jar.wrapperInterfaces;
+
+import com.seibel.distanthorizons.api.interfaces.world.IDhApiLevelWrapper;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.block.SerialBlockStateWrapper;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.SerialBiomeWrapper;
+import com.seibel.distanthorizons.core.level.IDhLevel;
+import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.worldGeneration.AbstractBatchGenerationEnvironmentWrapper;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates wrappers purely from their serialized strings
+ * so the standalone jar can read, merge and write LOD data without Minecraft. <br><br>
+ *
+ * Serialized strings are never validated,
+ * so an unknown block or biome is kept as-is instead of being replaced by a default.
+ * Anything that would require a running game (chunks, world generation, API objects) isn't supported.
+ */
+public class OfflineWrapperFactory implements IWrapperFactory
+{
+	public static final OfflineWrapperFactory INSTANCE = new OfflineWrapperFactory();
+	
+	/** data sources share the same few hundred blocks and biomes, caching them prevents creating duplicate objects for every mapping */
+	private final ConcurrentHashMap<String, SerialBlockStateWrapper> blockStateBySerial = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, SerialBiomeWrapper> biomeBySerial = new ConcurrentHashMap<>();
+	/** nothing is rendered offline so this starts empty */
+	private final HashSet<IBlockStateWrapper> rendererIgnoredBlocks = new HashSet<>();
+	
+	
+	
+	private OfflineWrapperFactory() { }
+	
+	
+	
+	//========//
+	// biomes //
+	//========//
+	
+	@Override
+	public IBiomeWrapper deserializeBiomeWrapper(String str, ILevelWrapper levelWrapper) { return this.biomeBySerial.computeIfAbsent(str, SerialBiomeWrapper::new); }
+	
+	@Override
+	public IBiomeWrapper getPlainsBiomeWrapper(ILevelWrapper levelWrapper) { return SerialBiomeWrapper.PLAINS; }
+	
+	
+	
+	//==============//
+	// block states //
+	//==============//
+	
+	@Override
+	public IBlockStateWrapper deserializeBlockStateWrapper(String str, ILevelWrapper levelWrapper)
+	{
+		if (str.equals(SerialBlockStateWrapper.AIR_STRING))
+		{
+			return SerialBlockStateWrapper.AIR;
+		}
+		
+		return this.blockStateBySerial.computeIfAbsent(str, SerialBlockStateWrapper::new);
+	}
+	
+	@Override
+	public IBlockStateWrapper getAirBlockStateWrapper() { return SerialBlockStateWrapper.AIR; }
+	
+	@Override
+	public HashSet<IBlockStateWrapper> getRendererIgnoredBlocks(ILevelWrapper levelWrapper) { return this.rendererIgnoredBlocks; }
+	
+	
+	
+	//=============//
+	// unsupported //
+	//=============//
+	
+	@Override
+	public AbstractBatchGenerationEnvironmentWrapper createBatchGenerator(IDhLevel targetLevel) { throw new UnsupportedOperationException("World generation requires Minecraft."); }
+	
+	@Override
+	public IChunkWrapper createChunkWrapper(Object[] objectArray) { throw new UnsupportedOperationException("Chunks require Minecraft."); }
+	
+	@Override
+	public IBiomeWrapper getBiomeWrapper(Object[] objectArray, IDhApiLevelWrapper levelWrapper) { throw new UnsupportedOperationException("Biome objects require Minecraft."); }
+	
+	@Override
+	public IBlockStateWrapper getBlockStateWrapper(Object[] objectArray, IDhApiLevelWrapper levelWrapper) { throw new UnsupportedOperationException("Block state objects require Minecraft."); }
+	
+}
@@ -0,0 +1,133 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.jar.wrapperInterfaces.block;
+
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+
+/**
+ * A block state that only knows its serialized string. <br>
+ * Used by the standalone jar so LOD data can be read and merged without Minecraft,
+ * anything that requires the actual Minecraft block is approximated from the resource location.
+ *
+ * @see com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory
+ */
+public class SerialBlockStateWrapper implements IBlockStateWrapper
+{
+	/** should match the string used by the Minecraft block state wrapper */
+	public static final String AIR_STRING = "AIR";
+	/** example "minecraft:water_STATE_{level:0}" */
+	public static final String STATE_STRING_SEPARATOR = "_STATE_";
+	
+	private static final String[] AIR_RESOURCE_LOCATIONS = { "minecraft:air", "minecraft:cave_air", "minecraft:void_air" };
+	private static final String[] LIQUID_RESOURCE_LOCATIONS = { "minecraft:water", "minecraft:lava" };
+	
+	public static final SerialBlockStateWrapper AIR = new SerialBlockStateWrapper(AIR_STRING);
+	
+	
+	private final String serialString;
+	private final String resourceLocation;
+	private final boolean isAir;
+	private final boolean isLiquid;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public SerialBlockStateWrapper(String serialString)
+	{
+		this.serialString = serialString;
+		
+		int stateSeparatorIndex = serialString.indexOf(STATE_STRING_SEPARATOR);
+		this.resourceLocation = (stateSeparatorIndex != -1) ? serialString.substring(0, stateSeparatorIndex) : serialString;
+		
+		this.isAir = serialString.equals(AIR_STRING) || serialString.isEmpty() || arrayContains(AIR_RESOURCE_LOCATIONS, this.resourceLocation);
+		this.isLiquid = arrayContains(LIQUID_RESOURCE_LOCATIONS, this.resourceLocation);
+	}
+	private static boolean arrayContains(String[] array, String value)
+	{
+		for (String arrayValue : array)
+		{
+			if (arrayValue.equals(value))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	
+	//=================//
+	// wrapper methods //
+	//=================//
+	
+	public String getResourceLocation() { return this.resourceLocation; }
+	
+	@Override
+	public String getSerialString() { return this.serialString; }
+	
+	@Override
+	public boolean isAir() { return this.isAir; }
+	@Override
+	public boolean isSolid() { return !this.isAir && !this.isLiquid; }
+	@Override
+	public boolean isLiquid() { return this.isLiquid; }
+	
+	@Override
+	public int getOpacity() { return this.isSolid() ? FULLY_OPAQUE : FULLY_TRANSPARENT; }
+	@Override
+	public int getLightEmission() { return 0; }
+	@Override
+	public byte getIrisBlockMaterialId() { return this.isAir ? IrisBlockMaterial.AIR : IrisBlockMaterial.UNKOWN; }
+	
+	/** there isn't a Minecraft object to return */
+	@Override
+	public Object getWrappedMcObject() { return null; }
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		else if (obj == null || this.getClass() != obj.getClass())
+		{
+			return false;
+		}
+		
+		return this.serialString.equals(((SerialBlockStateWrapper) obj).serialString);
+	}
+	
+	@Override
+	public int hashCode() { return this.serialString.hashCode(); }
+	
+	@Override
+	public String toString() { return this.serialString; }
+	
+}
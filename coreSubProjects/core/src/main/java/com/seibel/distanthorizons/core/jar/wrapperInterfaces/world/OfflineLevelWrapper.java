@@ -0,0 +1,82 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.jar.wrapperInterfaces.world;
+
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiLevelType;
+import com.seibel.distanthorizons.core.pos.DhBlockPos;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IDimensionTypeWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+
+/**
+ * Stands in for a Minecraft level when LOD databases are read by the standalone jar. <br>
+ * Deserializing data mappings requires a level, but {@link com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory}
+ * doesn't need anything from it, so any methods that would require a loaded world aren't supported.
+ */
+public class OfflineLevelWrapper implements ILevelWrapper
+{
+	public static final OfflineLevelWrapper INSTANCE = new OfflineLevelWrapper();
+	
+	
+	
+	private OfflineLevelWrapper() { }
+	
+	
+	
+	//=================//
+	// wrapper methods //
+	//=================//
+	
+	@Override
+	public EDhApiLevelType getLevelType() { return EDhApiLevelType.UNKNOWN; }
+	
+	@Override
+	public IDimensionTypeWrapper getDimensionType() { throw new UnsupportedOperationException("Offline levels don't have a dimension type."); }
+	
+	@Override
+	public boolean hasCeiling() { return false; }
+	@Override
+	public boolean hasSkyLight() { return true; }
+	
+	@Override
+	public int getHeight() { throw new UnsupportedOperationException("Offline levels don't have a height."); }
+	
+	@Override
+	public boolean hasChunkLoaded(int chunkX, int chunkZ) { return false; }
+	
+	@Deprecated
+	@Override
+	public IBlockStateWrapper getBlockState(DhBlockPos pos) { throw new UnsupportedOperationException("Offline levels don't contain any blocks."); }
+	@Deprecated
+	@Override
+	public IBiomeWrapper getBiome(DhBlockPos pos) { throw new UnsupportedOperationException("Offline levels don't contain any biomes."); }
+	
+	@Override
+	public void onUnload() { }
+	
+	/** there isn't a Minecraft object to return */
+	@Override
+	public Object getWrappedMcObject() { return null; }
+	
+	@Override
+	public String toString() { return "OfflineLevel"; }
+	
+}
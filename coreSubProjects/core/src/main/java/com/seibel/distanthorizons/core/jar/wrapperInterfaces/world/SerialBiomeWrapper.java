@@ -0,0 +1,91 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.jar.wrapperInterfaces.world;
+
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+
+/**
+ * A biome that only knows its serialized string,
+ * used by the standalone jar to read LOD data without Minecraft.
+ *
+ * @see com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory
+ */
+public class SerialBiomeWrapper implements IBiomeWrapper
+{
+	/** should match the string used by the Minecraft biome wrapper */
+	public static final String PLAINS_RESOURCE_LOCATION_STRING = "minecraft:plains";
+	
+	public static final SerialBiomeWrapper PLAINS = new SerialBiomeWrapper(PLAINS_RESOURCE_LOCATION_STRING);
+	
+	
+	private final String serialString;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public SerialBiomeWrapper(String serialString) { this.serialString = serialString; }
+	
+	
+	
+	//=================//
+	// wrapper methods //
+	//=================//
+	
+	@Override
+	public String getName() { return this.serialString; }
+	
+	@Override
+	public String getSerialString() { return this.serialString; }
+	
+	/** there isn't a Minecraft object to return */
+	@Override
+	public Object getWrappedMcObject() { return null; }
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		else if (obj == null || this.getClass() != obj.getClass())
+		{
+			return false;
+		}
+		
+		return this.serialString.equals(((SerialBiomeWrapper) obj).serialString);
+	}
+	
+	@Override
+	public int hashCode() { return this.serialString.hashCode(); }
+	
+	@Override
+	public String toString() { return this.serialString; }
+	
+}
@@ -23,6 +23,7 @@ import com.seibel.distanthorizons.api.enums.rendering.EDhApiDebugRendering;
 import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiRenderParam;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.file.AbstractDataSourceHandler;
 import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
@@ -33,7 +34,9 @@ import com.seibel.distanthorizons.core.render.LodQuadTree;
 import com.seibel.distanthorizons.core.render.RenderBufferHandler;
 import com.seibel.distanthorizons.core.render.renderer.LodRenderer;
 import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.threading.ELodBuilderTaskType;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import com.seibel.distanthorizons.core.util.threading.WorkerThreadScheduler;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IProfilerWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
@@ -56,6 +59,7 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 	@WillNotClose
 	public final FullDataSourceProviderV2 fullDataSourceProvider;
 	public final AtomicReference<ClientRenderState> ClientRenderStateRef = new AtomicReference<>();
+	public final FullDataRenderColorCache renderColorCache = new FullDataRenderColorCache();
 	
 	public final F3Screen.NestedMessage f3Message;
 	
@@ -121,6 +125,8 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 			}
 		}
 		clientRenderState.quadtree.tick(new DhBlockPos2D(MC_CLIENT.getPlayerBlockPos()));
+		// sorted here so the render thread doesn't have to sort every frame
+		clientRenderState.renderer.bufferHandler.updateRenderListOrder();
 		
 		boolean isBuffersDirty = false;
 		EDhApiDebugRendering newDebugRendering = Config.Client.Advanced.Debugging.debugRendering.get();
@@ -219,7 +225,8 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 		ClientRenderState ClientRenderState = this.ClientRenderStateRef.get();
 		if (ClientRenderState != null)
 		{
-			ClientRenderState.quadtree.reloadPos(updatedFullDataSource.getPos());
+			// only the changed columns need to be rebuilt
+			ClientRenderState.quadtree.reloadPos(updatedFullDataSource.getPos(), updatedFullDataSource.getChangedColumns());
 		}
 	}
 	
@@ -259,7 +266,8 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 	private String[] f3Log()
 	{
 		String dimName = this.clientLevel.getLevelWrapper().getDimensionType().getDimensionName();
-		boolean rendererActive = this.ClientRenderStateRef.get() != null;
+		ClientRenderState clientRenderState = this.ClientRenderStateRef.get();
+		boolean rendererActive = clientRenderState != null;
 		
 		ThreadPoolExecutor fileExecutor = ThreadPoolUtil.getFileHandlerExecutor();
 		String fileQueueSize = (fileExecutor != null) ? fileExecutor.getQueue().size()+"" : "-";
@@ -272,6 +280,8 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 		int unsavedDataSourceCount = this.fullDataSourceProvider.getUnsavedDataSourceCount();
 		long legacyDeletionCount = this.fullDataSourceProvider.getLegacyDeletionCount();
 		long migrationCount = this.fullDataSourceProvider.getTotalMigrationCount();
+		String recompressionStatus = this.fullDataSourceProvider.getRecompressionStatusString();
+		String storeConversionStatus = this.fullDataSourceProvider.getStoreConversionStatusString();
 		
 		
 		
@@ -291,6 +301,14 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 			{
 				lines.add("  Legacy Migration #: " + migrationCount);
 			}
+			if (recompressionStatus != null)
+			{
+				lines.add("  " + recompressionStatus);
+			}
+			if (storeConversionStatus != null)
+			{
+				lines.add("  " + storeConversionStatus);
+			}
 			lines.add("  Update thread pool tasks: " + updateQueueSize + " (completed: " + updateCompletedTaskSize + ")");
 			lines.add("  Level Unsaved #: " + this.clientLevel.getUnsavedDataSourceCount());
 			if (unsavedDataSourceCount != -1)
@@ -298,6 +316,17 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 				lines.add("  File Handler Unsaved #: " + unsavedDataSourceCount);
 			}
 			lines.add("  Parent Update #: " + this.fullDataSourceProvider.parentUpdatingPosSet.size());
+			lines.add("  " + clientRenderState.quadtree.renderSourceCache.getStatusString());
+			
+			WorkerThreadScheduler lodBuilderScheduler = ThreadPoolUtil.getLodBuilderScheduler();
+			if (lodBuilderScheduler != null)
+			{
+				lines.add("LOD Builder (threads: " + lodBuilderScheduler.getThreadCount() + ")");
+				for (ELodBuilderTaskType taskType : ELodBuilderTaskType.values())
+				{
+					lines.add("  " + taskType.name + " tasks: " + lodBuilderScheduler.getQueuedTaskCount(taskType) + " (completed: " + lodBuilderScheduler.getCompletedTaskCount(taskType) + ") " + lodBuilderScheduler.getLatencyHistogram(taskType));
+				}
+			}
 		}
 		
 		return lines.toArray(new String[0]);
@@ -305,6 +334,9 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 	
 	public void clearRenderCache()
 	{
+		// colors may have changed due to a resource pack or config change
+		this.renderColorCache.clear();
+		
 		ClientRenderState ClientRenderState = this.ClientRenderStateRef.get();
 		if (ClientRenderState != null && ClientRenderState.quadtree != null)
 		{
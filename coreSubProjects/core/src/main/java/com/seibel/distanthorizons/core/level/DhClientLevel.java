@@ -23,6 +23,7 @@ import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhAp
 import com.seibel.distanthorizons.core.config.AppliedConfigState;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
 import com.seibel.distanthorizons.core.file.fullDatafile.RemoteFullDataSourceProvider;
@@ -192,9 +193,7 @@ public class DhClientLevel extends AbstractDhLevel implements IDhClientLevel
 			
 			// populate the queue based on the current rendering tree
 			ClientLevelModule.ClientRenderState renderState = this.clientside.ClientRenderStateRef.get();
-			renderState.quadtree.leafNodeIterator().forEachRemaining(node -> {
-				this.dataFileHandler.getAsync(node.sectionPos);
-			});
+			renderState.quadtree.forEachLeaf(this.dataFileHandler::getAsync);
 		}
 		else if (!shouldDoWorldGen && isWorldGenRunning)
 		{
@@ -231,6 +230,9 @@ public class DhClientLevel extends AbstractDhLevel implements IDhClientLevel
 	@Override
 	public IClientLevelWrapper getClientLevelWrapper() { return this.levelWrapper; }
 	
+	@Override
+	public FullDataRenderColorCache getRenderColorCache() { return this.clientside.renderColorCache; }
+	
 	@Override
 	public void clearRenderCache()
 	{
@@ -21,6 +21,7 @@ package com.seibel.distanthorizons.core.level;
 
 import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiRenderParam;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
 import com.seibel.distanthorizons.core.render.renderer.DebugRenderer;
@@ -153,6 +154,9 @@ public class DhClientServerLevel extends AbstractDhLevel implements IDhClientLev
 	@Override
 	public IClientLevelWrapper getClientLevelWrapper() { return this.serverLevelWrapper.tryGetClientLevelWrapper(); }
 	
+	@Override
+	public FullDataRenderColorCache getRenderColorCache() { return this.clientside.renderColorCache; }
+	
 	@Override
 	public void clearRenderCache()
 	{
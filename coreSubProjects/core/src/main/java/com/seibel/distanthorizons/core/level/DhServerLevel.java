@@ -23,6 +23,7 @@ import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSour
 import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.file.structure.AbstractSaveStructure;
+import com.seibel.distanthorizons.core.generation.WorldPregenerator;
 import com.seibel.distanthorizons.core.multiplayer.server.ServerPlayerState;
 import com.seibel.distanthorizons.core.multiplayer.server.RemotePlayerConnectionHandler;
 import com.seibel.distanthorizons.core.network.exceptions.InvalidLevelException;
@@ -45,6 +46,7 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.world.IServerLevelWrapp
 import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
 import java.text.MessageFormat;
 import java.util.concurrent.CompletableFuture;
 
@@ -63,6 +65,8 @@ public class DhServerLevel extends AbstractDhLevel implements IDhServerLevel
 	
 	private final RemotePlayerConnectionHandler remotePlayerConnectionHandler;
 	
+	public final WorldPregenerator pregenerator;
+	
 	private final ConcurrentLinkedQueue<IServerPlayerWrapper> worldGenLoopingQueue = new ConcurrentLinkedQueue<>();
 	private final ConcurrentMap<Long, IncompleteDataSourceEntry> incompleteDataSources = new ConcurrentHashMap<>();
 	private final ConcurrentMap<Long, IncompleteDataSourceEntry> fullDataRequests = new ConcurrentHashMap<>();
@@ -75,8 +79,10 @@ public class DhServerLevel extends AbstractDhLevel implements IDhServerLevel
 		}
 		this.serverLevelWrapper = serverLevelWrapper;
 		this.serverside = new ServerLevelModule(this, saveStructure);
+		this.pregenerator = new WorldPregenerator(this.serverside.fullDataFileHandler, this.serverside.worldGenModule,
+				new File(saveStructure.getFullDataFolder(serverLevelWrapper), WorldPregenerator.PROGRESS_FILE_NAME));
 		LOGGER.info("Started DHLevel for {} with saves at {}", serverLevelWrapper, saveStructure);
-	
+		
 		this.remotePlayerConnectionHandler = remotePlayerConnectionHandler;
 	}
 	
@@ -289,6 +295,7 @@ public class DhServerLevel extends AbstractDhLevel implements IDhServerLevel
 	public void close()
 	{
 		super.close();
+		this.pregenerator.close();
 		this.serverside.close();
 		LOGGER.info("Closed DHLevel for {}", this.getLevelWrapper());
 	}
@@ -311,9 +318,17 @@ public class DhServerLevel extends AbstractDhLevel implements IDhServerLevel
 		
 		if (this.serverside.worldGenModule.isWorldGenRunning())
 		{
+			this.pregenerator.tick();
+			
 			IServerPlayerWrapper firstPlayer = this.worldGenLoopingQueue.peek();
 			if (firstPlayer == null)
 			{
+				// with no players online, only pregeneration needs to be run
+				DhBlockPos2D pregenTargetPos = this.pregenerator.getGenerationTargetPos();
+				if (pregenTargetPos != null)
+				{
+					this.serverside.worldGenModule.worldGenTick(pregenTargetPos);
+				}
 				return;
 			}
 			
@@ -20,6 +20,7 @@
 package com.seibel.distanthorizons.core.level;
 
 import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiRenderParam;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
 import com.seibel.distanthorizons.core.pos.DhBlockPos;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.distanthorizons.coreapi.util.math.Mat4f;
@@ -38,6 +39,9 @@ public interface IDhClientLevel extends IDhWorldGenLevel
 	
 	IClientLevelWrapper getClientLevelWrapper();
 	
+	/** cleared by {@link IDhClientLevel#clearRenderCache()} */
+	FullDataRenderColorCache getRenderColorCache();
+	
 	/**
 	 * Re-creates the color, render data.
 	 * This method should be called after resource packs are changed or LOD settings are modified.
@@ -21,6 +21,7 @@ package com.seibel.distanthorizons.core.level;
 
 import com.seibel.distanthorizons.core.file.fullDatafile.GeneratedFullDataSourceProvider;
 import com.seibel.distanthorizons.core.generation.IFullDataSourceRetrievalQueue;
+import com.seibel.distanthorizons.core.generation.WorldGenerationQueue;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.logging.f3.F3Screen;
 import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
@@ -147,6 +148,17 @@ public class WorldGenModule implements Closeable
 	
 	public boolean isWorldGenRunning() { return this.worldGenStateRef.get() != null; }
 	
+	/** @see WorldGenerationQueue#getStepTimingSummary() */
+	public String getStepTimingSummary()
+	{
+		AbstractWorldGenState worldGenState = this.worldGenStateRef.get();
+		if (worldGenState != null && worldGenState.worldGenerationQueue instanceof WorldGenerationQueue)
+		{
+			return ((WorldGenerationQueue) worldGenState.worldGenerationQueue).getStepTimingSummary();
+		}
+		return "";
+	}
+	
 	
 	
 	//================//
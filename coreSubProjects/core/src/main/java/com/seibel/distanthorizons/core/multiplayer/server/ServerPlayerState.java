@@ -10,6 +10,7 @@ import com.seibel.distanthorizons.core.network.exceptions.RateLimitedException;
 import com.seibel.distanthorizons.core.network.messages.plugin.fullData.FullDataSourceRequestMessage;
 import com.seibel.distanthorizons.core.network.plugin.PluginChannelSession;
 import com.seibel.distanthorizons.core.util.ratelimiting.SupplierBasedRateAndConcurrencyLimiter;
+import com.seibel.distanthorizons.core.util.threading.ServerTickThrottle;
 import com.seibel.distanthorizons.core.wrapperInterfaces.misc.IServerPlayerWrapper;
 import org.jetbrains.annotations.NotNull;
 
@@ -96,7 +97,7 @@ public class ServerPlayerState
 	public class RateLimiterSet
 	{
 		public final SupplierBasedRateAndConcurrencyLimiter<FullDataSourceRequestMessage> fullDataRequestConcurrencyLimiter = new SupplierBasedRateAndConcurrencyLimiter<>(
-				() -> ServerNetworking.generationRequestRCLimit.get(),
+				() -> ServerTickThrottle.INSTANCE.getThrottledLimit(ServerNetworking.generationRequestRCLimit.get()),
 				msg -> {
 					msg.sendResponse(new RateLimitedException("Full data request rate/concurrency limit: " + ServerPlayerState.this.config.getFullDataRequestConcurrencyLimit()));
 				}
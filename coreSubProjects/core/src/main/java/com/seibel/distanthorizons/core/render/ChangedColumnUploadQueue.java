@@ -0,0 +1,131 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.render;
+
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tracks which columns a {@link LodRenderSection} needs to upload
+ * and makes sure only one upload runs at a time. <br>
+ * Columns that change while an upload is running are merged together
+ * and returned once that upload finishes, so those changes aren't lost.
+ *
+ * @see ChangedColumnUtil
+ */
+public class ChangedColumnUploadQueue
+{
+	/** the columns that changed since the last upload was started, null if nothing changed */
+	private BitSet pendingChangedColumns = null;
+	/** completed once the running upload finishes, null if nothing is running */
+	private CompletableFuture<Void> runningFuture = null;
+	
+	
+	
+	/** @param changedColumns if null every column will be uploaded */
+	public synchronized void addChangedColumns(@Nullable BitSet changedColumns)
+	{
+		if (changedColumns == null)
+		{
+			this.pendingChangedColumns = ChangedColumnUtil.createAllChanged();
+		}
+		else if (this.pendingChangedColumns == null)
+		{
+			this.pendingChangedColumns = (BitSet) changedColumns.clone();
+		}
+		else
+		{
+			this.pendingChangedColumns.or(changedColumns);
+		}
+	}
+	
+	/**
+	 * @param future will be completed once {@link ChangedColumnUploadQueue#finish} is called with it
+	 * @return the columns that should be uploaded, 
+	 *          null if nothing changed or if an upload is already running
+	 */
+	@Nullable
+	public synchronized BitSet tryStart(CompletableFuture<Void> future)
+	{
+		if (this.runningFuture != null 
+			|| this.pendingChangedColumns == null)
+		{
+			return null;
+		}
+		
+		BitSet changedColumns = this.pendingChangedColumns;
+		this.pendingChangedColumns = null;
+		this.runningFuture = future;
+		return changedColumns;
+	}
+	
+	/** 
+	 * Should be called if an upload couldn't be queued after {@link ChangedColumnUploadQueue#tryStart}, 
+	 * the given columns will be returned by the next call to {@link ChangedColumnUploadQueue#tryStart}.
+	 */
+	public synchronized void cancelStart(BitSet changedColumns, CompletableFuture<Void> future)
+	{
+		if (this.runningFuture == future)
+		{
+			this.runningFuture = null;
+		}
+		
+		this.addChangedColumns(changedColumns);
+		future.cancel(false);
+	}
+	
+	/**
+	 * Completes the given upload, does nothing if it was already finished.
+	 * 
+	 * @return true if columns changed while the upload was running and another upload should be started
+	 */
+	public boolean finish(CompletableFuture<Void> future)
+	{
+		boolean changesPending;
+		synchronized (this)
+		{
+			if (this.runningFuture == future)
+			{
+				this.runningFuture = null;
+			}
+			changesPending = (this.pendingChangedColumns != null);
+		}
+		
+		// completed outside the lock since anything could be chained to the future
+		future.complete(null);
+		return changesPending;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public synchronized boolean isRunning() { return this.runningFuture != null; }
+	
+	@Nullable
+	public synchronized CompletableFuture<Void> getRunningFuture() { return this.runningFuture; }
+	
+}
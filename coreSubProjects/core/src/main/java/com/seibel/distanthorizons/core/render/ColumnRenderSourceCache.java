@@ -0,0 +1,591 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.render;
+
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+/**
+ * Shares {@link ColumnRenderSource}'s between {@link LodRenderSection}'s so
+ * a section's render data only has to be converted once,
+ * even though each of its neighbors also need it to build their geometry. <br><br>
+ *
+ * Render sources are reference counted, each {@link ColumnRenderSourceCache#acquire}
+ * must be followed by a {@link Handle#release()} once the render source is no longer needed. <br>
+ * Unreferenced render sources are kept until the cache grows past its max size,
+ * at which point the least recently used ones are returned to the {@link ColumnRenderSource#DATA_SOURCE_POOL}. <br><br>
+ *
+ * Render sources given out by this cache are shared and must not be modified. <br><br>
+ * 
+ * The edges of each loaded render source are also kept (see {@link ColumnRenderEdge}),
+ * since they're much smaller they can stay cached long after the full render source has been evicted,
+ * allowing a section to be rebuilt without reloading its neighbors.
+ *
+ * @see LodQuadTree#reloadPos(long)
+ */
+public class ColumnRenderSourceCache implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	
+	public final long maxSizeInBytes;
+	public final long maxEdgeSizeInBytes;
+	
+	/**
+	 * Ordered from least to most recently used. <br>
+	 * All entry state is guarded by this map's lock.
+	 */
+	private final LinkedHashMap<Long, Entry> entryByPos = new LinkedHashMap<>(64, 0.75f, true);
+	/** the size of every loaded render source in {@link ColumnRenderSourceCache#entryByPos} */
+	private long sizeInBytes = 0;
+	
+	/** 
+	 * Indexed the same as {@link ColumnRenderEdge#createAllFromRenderSource}, 
+	 * ordered from least to most recently used. <br> 
+	 * Guarded by the {@link ColumnRenderSourceCache#entryByPos} lock.
+	 */
+	private final LinkedHashMap<Long, ColumnRenderEdge[]> edgesByPos = new LinkedHashMap<>(64, 0.75f, true);
+	private long edgeSizeInBytes = 0;
+	
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+	private long invalidationCount = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ColumnRenderSourceCache(long maxSizeInBytes, long maxEdgeSizeInBytes)
+	{
+		this.maxSizeInBytes = maxSizeInBytes;
+		this.maxEdgeSizeInBytes = maxEdgeSizeInBytes;
+	}
+	
+	
+	
+	//==================//
+	// acquire/release //
+	//==================//
+	
+	/**
+	 * Returns the cached render source for the given position,
+	 * or starts loading it on the given executor if it isn't already cached or loading. <br>
+	 * If the loader returns null or throws, the result will be passed on but not cached.
+	 *
+	 * @param loader should return null if the position doesn't have any data
+	 * @return a handle which must be released once the render source is no longer needed
+	 */
+	public Handle acquire(long pos, Executor executor, LongFunction<ColumnRenderSource> loader)
+	{
+		synchronized (this.entryByPos)
+		{
+			Entry entry = this.entryByPos.get(pos);
+			if (entry != null)
+			{
+				// either already loaded or loading for another section
+				entry.refCount++;
+				this.hitCount++;
+				return new Handle(this, entry);
+			}
+			
+			entry = new Entry(pos);
+			entry.refCount++;
+			this.entryByPos.put(pos, entry);
+			this.missCount++;
+			
+			// the future is created while locked so other threads can't see the entry without it,
+			// it's completed by load() instead of the executor so a cancelled load's result can still be closed
+			Entry finalEntry = entry;
+			entry.future = new CompletableFuture<>();
+			try
+			{
+				executor.execute(() -> load(finalEntry, loader));
+			}
+			catch (RejectedExecutionException ignore)
+			{
+				// the executor was shut down, IE its thread count was changed or the renderer is closing,
+				// nothing is cached so the position will be loaded again the next time it's acquired
+				entry.future.complete(null);
+			}
+			
+			entry.future.whenComplete((renderSource, throwable) -> this.onLoadComplete(finalEntry, renderSource));
+			return new Handle(this, entry);
+		}
+	}
+	private static void load(Entry entry, LongFunction<ColumnRenderSource> loader)
+	{
+		if (entry.future.isDone())
+		{
+			// cancelled before it started, IE every handle was released
+			return;
+		}
+		
+		ColumnRenderSource renderSource;
+		try
+		{
+			renderSource = loader.apply(entry.pos);
+			if (renderSource != null)
+			{
+				// done before the future completes so the edges are available to everyone waiting on it
+				entry.edges = ColumnRenderEdge.createAllFromRenderSource(renderSource);
+			}
+		}
+		catch (Throwable e)
+		{
+			entry.future.completeExceptionally(e);
+			return;
+		}
+		
+		if (!entry.future.complete(renderSource) && renderSource != null)
+		{
+			// cancelled while loading, no one else has a reference to this render source
+			closeRenderSources(renderSource);
+		}
+	}
+	private void onLoadComplete(Entry entry, @Nullable ColumnRenderSource renderSource)
+	{
+		ArrayList<ColumnRenderSource> renderSourcesToClose = new ArrayList<>();
+		synchronized (this.entryByPos)
+		{
+			boolean entryCurrent = (this.entryByPos.get(entry.pos) == entry);
+			if (renderSource == null)
+			{
+				// failed or empty data doesn't need to be cached
+				if (entryCurrent)
+				{
+					this.entryByPos.remove(entry.pos);
+				}
+				entry.removed = true;
+			}
+			else if (!entryCurrent)
+			{
+				// the position was invalidated while loading,
+				// the render source can still be used by anyone waiting on it, but it shouldn't be re-used
+				entry.removed = true;
+				if (entry.refCount <= 0)
+				{
+					renderSourcesToClose.add(renderSource);
+				}
+			}
+			else
+			{
+				entry.sizeInBytes = renderSource.estimateSizeInBytes();
+				this.sizeInBytes += entry.sizeInBytes;
+				this.evictUnusedEntries(renderSourcesToClose);
+				
+				this.putEdges(entry.pos, entry.edges);
+			}
+		}
+		
+		closeRenderSources(renderSourcesToClose);
+	}
+	
+	/** @return null if the position isn't loaded */
+	@Nullable
+	public Handle tryAcquireLoaded(long pos)
+	{
+		synchronized (this.entryByPos)
+		{
+			Entry entry = this.entryByPos.get(pos);
+			if (entry == null || entry.sizeInBytes == -1)
+			{
+				return null;
+			}
+			
+			entry.refCount++;
+			this.hitCount++;
+			return new Handle(this, entry);
+		}
+	}
+	
+	/**
+	 * Doesn't require acquiring or releasing anything since edges are copies.
+	 * 
+	 * @param side which side of the section at the given position
+	 * @return null if the position's edges aren't cached
+	 */
+	@Nullable
+	public ColumnRenderEdge getCachedEdge(long pos, EDhDirection side)
+	{
+		synchronized (this.entryByPos)
+		{
+			ColumnRenderEdge[] edges = this.edgesByPos.get(pos);
+			return (edges != null) ? edges[side.ordinal() - 2] : null;
+		}
+	}
+	
+	private void release(Entry entry)
+	{
+		ArrayList<ColumnRenderSource> renderSourcesToClose = new ArrayList<>();
+		CompletableFuture<ColumnRenderSource> futureToCancel = null;
+		synchronized (this.entryByPos)
+		{
+			entry.refCount--;
+			if (entry.refCount > 0)
+			{
+				return;
+			}
+			
+			
+			if (!entry.future.isDone())
+			{
+				// no one needs this position anymore, IE it went out of range,
+				// if the load hasn't started it will be skipped so the file handler can work on something else,
+				// otherwise the load will close its render source once it finishes
+				if (this.entryByPos.get(entry.pos) == entry)
+				{
+					this.entryByPos.remove(entry.pos);
+				}
+				entry.removed = true;
+				futureToCancel = entry.future;
+			}
+			else if (entry.removed)
+			{
+				// failed or cancelled loads don't have anything to close
+				ColumnRenderSource renderSource = entry.future.isCompletedExceptionally() ? null : entry.future.getNow(null);
+				if (renderSource != null)
+				{
+					renderSourcesToClose.add(renderSource);
+				}
+			}
+			else
+			{
+				// this entry may have been the only one keeping the cache above its max size
+				this.evictUnusedEntries(renderSourcesToClose);
+			}
+		}
+		
+		if (futureToCancel != null)
+		{
+			futureToCancel.cancel(false);
+		}
+		closeRenderSources(renderSourcesToClose);
+	}
+	
+	
+	
+	//==============//
+	// invalidation //
+	//==============//
+	
+	/**
+	 * Should be called whenever the full data for a position changes. <br>
+	 * Render sources still in use will be returned to the pool once they're released.
+	 */
+	public void invalidate(long pos)
+	{
+		ColumnRenderSource renderSourceToClose = null;
+		synchronized (this.entryByPos)
+		{
+			// the edges may still be cached after the render source was evicted
+			ColumnRenderEdge[] edges = this.edgesByPos.remove(pos);
+			if (edges != null)
+			{
+				this.edgeSizeInBytes -= getSizeInBytes(edges);
+			}
+			
+			Entry entry = this.entryByPos.remove(pos);
+			if (entry == null)
+			{
+				return;
+			}
+			
+			this.invalidationCount++;
+			renderSourceToClose = this.removeEntry(entry);
+		}
+		
+		if (renderSourceToClose != null)
+		{
+			closeRenderSources(renderSourceToClose);
+		}
+	}
+	
+	/** Removes everything from the cache, IE after a resource pack change. */
+	public void clear()
+	{
+		ArrayList<ColumnRenderSource> renderSourcesToClose = new ArrayList<>();
+		synchronized (this.entryByPos)
+		{
+			for (Entry entry : this.entryByPos.values())
+			{
+				ColumnRenderSource renderSource = this.removeEntry(entry);
+				if (renderSource != null)
+				{
+					renderSourcesToClose.add(renderSource);
+				}
+			}
+			this.entryByPos.clear();
+			
+			this.edgesByPos.clear();
+			this.edgeSizeInBytes = 0;
+		}
+		
+		closeRenderSources(renderSourcesToClose);
+	}
+	
+	
+	
+	//==========//
+	// eviction //
+	//==========//
+	
+	/** Should be called while holding the {@link ColumnRenderSourceCache#entryByPos} lock. */
+	private void evictUnusedEntries(ArrayList<ColumnRenderSource> renderSourcesToClose)
+	{
+		Iterator<Entry> iterator = this.entryByPos.values().iterator();
+		while (this.sizeInBytes > this.maxSizeInBytes && iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			if (entry.refCount > 0 || entry.sizeInBytes == -1)
+			{
+				// in use or still loading
+				continue;
+			}
+			
+			iterator.remove();
+			this.evictionCount++;
+			
+			ColumnRenderSource renderSource = this.removeEntry(entry);
+			if (renderSource != null)
+			{
+				renderSourcesToClose.add(renderSource);
+			}
+		}
+	}
+	
+	/** Should be called while holding the {@link ColumnRenderSourceCache#entryByPos} lock. */
+	private void putEdges(long pos, ColumnRenderEdge[] edges)
+	{
+		ColumnRenderEdge[] previousEdges = this.edgesByPos.put(pos, edges);
+		if (previousEdges != null)
+		{
+			this.edgeSizeInBytes -= getSizeInBytes(previousEdges);
+		}
+		this.edgeSizeInBytes += getSizeInBytes(edges);
+		
+		Iterator<ColumnRenderEdge[]> iterator = this.edgesByPos.values().iterator();
+		while (this.edgeSizeInBytes > this.maxEdgeSizeInBytes && iterator.hasNext())
+		{
+			this.edgeSizeInBytes -= getSizeInBytes(iterator.next());
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * Should be called while holding the {@link ColumnRenderSourceCache#entryByPos} lock
+	 * after the entry has been removed from the map.
+	 *
+	 * @return the render source that should be closed, null if the render source is still in use or wasn't loaded
+	 */
+	@Nullable
+	private ColumnRenderSource removeEntry(Entry entry)
+	{
+		entry.removed = true;
+		if (entry.sizeInBytes == -1)
+		{
+			// still loading, the render source will be handled once loading finishes
+			return null;
+		}
+		
+		this.sizeInBytes -= entry.sizeInBytes;
+		entry.sizeInBytes = -1;
+		return (entry.refCount <= 0) ? entry.future.getNow(null) : null;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static long getSizeInBytes(ColumnRenderEdge[] edges)
+	{
+		long size = 0;
+		for (ColumnRenderEdge edge : edges)
+		{
+			size += edge.getSizeInBytes();
+		}
+		return size;
+	}
+	
+	/** returns each render source to the pool */
+	private static void closeRenderSources(ColumnRenderSource... renderSources)
+	{
+		for (ColumnRenderSource renderSource : renderSources)
+		{
+			try
+			{
+				renderSource.close();
+			}
+			catch (Exception e)
+			{
+				LOGGER.warn("Unable to close render source " + DhSectionPos.toString(renderSource.pos) + ", error: " + e.getMessage(), e);
+			}
+		}
+	}
+	private static void closeRenderSources(ArrayList<ColumnRenderSource> renderSources) { closeRenderSources(renderSources.toArray(new ColumnRenderSource[0])); }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public long getHitCount() { synchronized (this.entryByPos) { return this.hitCount; } }
+	public long getMissCount() { synchronized (this.entryByPos) { return this.missCount; } }
+	public long getEvictionCount() { synchronized (this.entryByPos) { return this.evictionCount; } }
+	public long getInvalidationCount() { synchronized (this.entryByPos) { return this.invalidationCount; } }
+	
+	public long getSizeInBytes() { synchronized (this.entryByPos) { return this.sizeInBytes; } }
+	public int getEntryCount() { synchronized (this.entryByPos) { return this.entryByPos.size(); } }
+	
+	public long getEdgeSizeInBytes() { synchronized (this.entryByPos) { return this.edgeSizeInBytes; } }
+	public int getEdgeCount() { synchronized (this.entryByPos) { return this.edgesByPos.size(); } }
+	
+	/** used for rendering to the F3 menu */
+	public String getStatusString()
+	{
+		synchronized (this.entryByPos)
+		{
+			return "Render Source Cache: " + this.entryByPos.size() + " sections, " + (this.sizeInBytes / 1_000_000) + "/" + (this.maxSizeInBytes / 1_000_000) + " MB, "
+					+ "hits: " + this.hitCount + " misses: " + this.missCount + " evictions: " + this.evictionCount + " invalidations: " + this.invalidationCount + ", "
+					+ "edges: " + this.edgesByPos.size() + " sections, " + (this.edgeSizeInBytes / 1_000_000) + "/" + (this.maxEdgeSizeInBytes / 1_000_000) + " MB";
+		}
+	}
+	
+	
+	
+	//==============//
+	// base methods //
+	//==============//
+	
+	@Override
+	public void close() { this.clear(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	private static class Entry
+	{
+		public final long pos;
+		/** set when the entry is created */
+		public CompletableFuture<ColumnRenderSource> future;
+		
+		public int refCount = 0;
+		/** -1 until the render source has been loaded and counted towards the cache's size */
+		public long sizeInBytes = -1;
+		/** true once this entry has been removed from the cache */
+		public boolean removed = false;
+		/** set by the loading thread before the future completes, null if the render source is null */
+		@Nullable
+		public ColumnRenderEdge[] edges = null;
+		
+		
+		
+		public Entry(long pos) { this.pos = pos; }
+		
+	}
+	
+	/** A single reference to a cached render source. */
+	public static class Handle
+	{
+		/** returned for positions that don't need to be loaded */
+		public static final Handle EMPTY = new Handle(null, null);
+		
+		@Nullable
+		private final ColumnRenderSourceCache cache;
+		@Nullable
+		private final Entry entry;
+		private final AtomicBoolean released = new AtomicBoolean(false);
+		
+		
+		
+		private Handle(@Nullable ColumnRenderSourceCache cache, @Nullable Entry entry)
+		{
+			this.cache = cache;
+			this.entry = entry;
+		}
+		
+		/** the completed render source may be null if the position doesn't have any data */
+		public CompletableFuture<ColumnRenderSource> getFuture()
+		{
+			if (this.entry == null)
+			{
+				return CompletableFuture.completedFuture(null);
+			}
+			
+			return this.entry.future;
+		}
+		
+		/**
+		 * Should only be called after the future has completed.
+		 * 
+		 * @param side which side of the loaded section
+		 * @return null if the render source is null or failed to load
+		 */
+		@Nullable
+		public ColumnRenderEdge getEdge(EDhDirection side)
+		{
+			if (this.entry == null || this.entry.edges == null)
+			{
+				return null;
+			}
+			
+			return this.entry.edges[side.ordinal() - 2];
+		}
+		
+		/** Can be called multiple times, only the first call will decrement the reference count. */
+		public void release()
+		{
+			if (this.cache != null && this.entry != null
+				&& this.released.compareAndSet(false, true))
+			{
+				this.cache.release(this.entry);
+			}
+		}
+		
+		
+		
+		@Override
+		public String toString() { return (this.entry != null) ? DhSectionPos.toString(this.entry.pos) + " - " + this.entry.refCount : "empty"; }
+		
+	}
+	
+}
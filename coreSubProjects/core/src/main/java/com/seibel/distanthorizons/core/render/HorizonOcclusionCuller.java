@@ -0,0 +1,304 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.render;
+
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+
+import java.util.Arrays;
+
+/**
+ * Skips LODs that are hidden behind closer terrain (IE distant sections behind a mountain range),
+ * using a 1D horizon around the camera instead of a GPU occlusion query, 
+ * so this doesn't need a GL context. <br><br>
+ *
+ * The horizon is sampled at evenly spaced azimuths (directions around the camera)
+ * and each sample stores the steepest slope (height over horizontal distance) that is blocked in that direction.
+ * Occluders use the lowest surface of any of their columns ({@link ColumnRenderSource#getMinSurfaceBlockY()})
+ * and occluded LODs are checked using their highest point ({@link ColumnRenderSource#getMaxBlockY()}). <br>
+ * Occluders are treated as solid all the way down from their surface, which is only safe when
+ * looking down at them, so occluders above the camera are ignored. <br>
+ * An LOD is hidden if every sample across it (plus the samples on either side) is blocked, 
+ * this assumes there aren't any gaps between occluders that are narrower than the sample spacing.
+ * That is true for neighboring sections, which are the majority of occluders, 
+ * since each occluder covers every sample from its left edge to its right edge. <br><br>
+ *
+ * An occluder can only hide something that is entirely behind it,
+ * so the horizon is also split into distance bands.
+ * Each occluder is added to the band past its farthest point 
+ * and an LOD is only compared against the bands before its nearest point,
+ * that way the LODs can be added and checked in any order. <br><br>
+ *
+ * Usage: {@link HorizonOcclusionCuller#startFrame}, then {@link HorizonOcclusionCuller#addOccluder} for each LOD,
+ * then {@link HorizonOcclusionCuller#isOccluded} for each LOD.
+ */
+public class HorizonOcclusionCuller
+{
+	/** must be a power of two */
+	public static final int AZIMUTH_SAMPLE_COUNT = 1024;
+	private static final int AZIMUTH_SAMPLE_MASK = AZIMUTH_SAMPLE_COUNT - 1;
+	private static final double SAMPLES_PER_RADIAN = AZIMUTH_SAMPLE_COUNT / (2 * Math.PI);
+	
+	/** more bands allow closer occluders to be used, but makes each frame's horizon take longer to build */
+	private static final int DISTANCE_BANDS_PER_DOUBLING = 4;
+	/** enough for occluders up to 65,536 blocks away */
+	private static final int DISTANCE_BAND_COUNT = 16 * DISTANCE_BANDS_PER_DOUBLING;
+	
+	/** 
+	 * indexed by [distanceBand][azimuthSample] <br>
+	 * Before {@link HorizonOcclusionCuller#finishAddingOccluders()} each band only contains the occluders that end in that band,
+	 * afterwards each band also contains every closer band.
+	 */
+	private final float[][] horizonSlopes = new float[DISTANCE_BAND_COUNT][AZIMUTH_SAMPLE_COUNT];
+	/** -1 if no occluders have been added */
+	private int maxOccluderBand = -1;
+	private boolean occludersFinished = false;
+	private int occluderCount = 0;
+	
+	private double cameraX;
+	private double cameraY;
+	private double cameraZ;
+	
+	// set by getBounds, stored as fields to prevent allocating an object for each LOD //
+	private double minAzimuth;
+	private double maxAzimuth;
+	private double nearDistance;
+	private double farDistance;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public HorizonOcclusionCuller()
+	{
+		for (float[] bandSlopes : this.horizonSlopes)
+		{
+			Arrays.fill(bandSlopes, Float.NEGATIVE_INFINITY);
+		}
+	}
+	
+	
+	
+	//==========//
+	// building //
+	//==========//
+	
+	/** clears the last frame's horizon */
+	public void startFrame(double cameraX, double cameraY, double cameraZ)
+	{
+		for (int band = 0; band <= this.maxOccluderBand; band++)
+		{
+			Arrays.fill(this.horizonSlopes[band], Float.NEGATIVE_INFINITY);
+		}
+		this.maxOccluderBand = -1;
+		this.occludersFinished = false;
+		this.occluderCount = 0;
+		
+		this.cameraX = cameraX;
+		this.cameraY = cameraY;
+		this.cameraZ = cameraZ;
+	}
+	
+	/** 
+	 * @param minSurfaceBlockY every column in the area must be solid from this height down,
+	 *                         {@link Integer#MIN_VALUE} if the area can't hide anything.
+	 *                         Ignored if the camera is below this height.
+	 */
+	public void addOccluder(int minBlockX, int minBlockZ, int blockWidth, int minSurfaceBlockY)
+	{
+		if (this.occludersFinished)
+		{
+			throw new IllegalStateException("Occluders can't be added after checking for occlusion, call startFrame() first.");
+		}
+		
+		// the camera could be underneath the occluder's surface, IE in a cave or under an overhang,
+		// and might be able to see past it
+		if (minSurfaceBlockY == Integer.MIN_VALUE
+			|| minSurfaceBlockY > this.cameraY
+			|| !this.getBounds(minBlockX, minBlockZ, blockWidth))
+		{
+			return;
+		}
+		
+		int band = getBandContaining(this.farDistance, true);
+		if (band >= DISTANCE_BAND_COUNT)
+		{
+			return;
+		}
+		
+		// the occluder is below the camera, so it's lowest (relative to the camera) at its near edge
+		double heightAboveCamera = minSurfaceBlockY - this.cameraY;
+		float slope = (float) (heightAboveCamera / this.nearDistance);
+		
+		// every sample that points at the occluder
+		int startSample = (int) Math.ceil(this.minAzimuth * SAMPLES_PER_RADIAN);
+		int endSample = (int) Math.floor(this.maxAzimuth * SAMPLES_PER_RADIAN);
+		float[] bandSlopes = this.horizonSlopes[band];
+		for (int sample = startSample; sample <= endSample; sample++)
+		{
+			int sampleIndex = sample & AZIMUTH_SAMPLE_MASK;
+			if (bandSlopes[sampleIndex] < slope)
+			{
+				bandSlopes[sampleIndex] = slope;
+			}
+		}
+		
+		this.maxOccluderBand = Math.max(this.maxOccluderBand, band);
+		this.occluderCount++;
+	}
+	
+	/** called automatically the first time {@link HorizonOcclusionCuller#isOccluded} is called each frame */
+	private void finishAddingOccluders()
+	{
+		// each band should also block everything the closer bands block
+		for (int band = 1; band <= this.maxOccluderBand; band++)
+		{
+			float[] closerBandSlopes = this.horizonSlopes[band - 1];
+			float[] bandSlopes = this.horizonSlopes[band];
+			for (int sample = 0; sample < AZIMUTH_SAMPLE_COUNT; sample++)
+			{
+				if (bandSlopes[sample] < closerBandSlopes[sample])
+				{
+					bandSlopes[sample] = closerBandSlopes[sample];
+				}
+			}
+		}
+		
+		this.occludersFinished = true;
+	}
+	
+	
+	
+	//==========//
+	// checking //
+	//==========//
+	
+	/** @return true if the area is entirely hidden behind the occluders added this frame */
+	public boolean isOccluded(int minBlockX, int minBlockZ, int blockWidth, int maxBlockY)
+	{
+		if (!this.occludersFinished)
+		{
+			this.finishAddingOccluders();
+		}
+		
+		if (this.maxOccluderBand == -1
+			|| maxBlockY == Integer.MAX_VALUE
+			|| !this.getBounds(minBlockX, minBlockZ, blockWidth))
+		{
+			return false;
+		}
+		
+		int band = Math.min(getBandContaining(this.nearDistance, false), this.maxOccluderBand);
+		if (band < 0)
+		{
+			return false;
+		}
+		
+		// the area is highest (relative to the camera) at its near edge if it's above the camera
+		// or at its far edge if it's below the camera
+		double heightAboveCamera = maxBlockY - this.cameraY;
+		double slope = heightAboveCamera / ((heightAboveCamera >= 0) ? this.nearDistance : this.farDistance);
+		
+		// every sample across the area, and the samples just outside it, must be blocked
+		int startSample = (int) Math.floor(this.minAzimuth * SAMPLES_PER_RADIAN);
+		int endSample = (int) Math.ceil(this.maxAzimuth * SAMPLES_PER_RADIAN);
+		float[] bandSlopes = this.horizonSlopes[band];
+		for (int sample = startSample; sample <= endSample; sample++)
+		{
+			if (bandSlopes[sample & AZIMUTH_SAMPLE_MASK] < slope)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** @return how many occluders were used this frame */
+	public int getOccluderCount() { return this.occluderCount; }
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** 
+	 * Sets the azimuth range and the horizontal distances to the given area. 
+	 * @return false if the camera is inside the area 
+	 */
+	private boolean getBounds(int minBlockX, int minBlockZ, int blockWidth)
+	{
+		double minX = minBlockX - this.cameraX;
+		double minZ = minBlockZ - this.cameraZ;
+		double maxX = minX + blockWidth;
+		double maxZ = minZ + blockWidth;
+		
+		double nearX = Math.max(0, Math.max(minX, -maxX));
+		double nearZ = Math.max(0, Math.max(minZ, -maxZ));
+		this.nearDistance = Math.sqrt(nearX * nearX + nearZ * nearZ);
+		if (this.nearDistance <= 0)
+		{
+			return false;
+		}
+		
+		double farX = Math.max(Math.abs(minX), Math.abs(maxX));
+		double farZ = Math.max(Math.abs(minZ), Math.abs(maxZ));
+		this.farDistance = Math.sqrt(farX * farX + farZ * farZ);
+		
+		// since the camera is outside the area the corners are all within 180 degrees of the area's center,
+		// so measuring them relative to the center prevents wrapping around at +-180 degrees
+		double centerAzimuth = Math.atan2(minZ + maxZ, minX + maxX);
+		double minDelta = Double.POSITIVE_INFINITY;
+		double maxDelta = Double.NEGATIVE_INFINITY;
+		for (int corner = 0; corner < 4; corner++)
+		{
+			double cornerX = ((corner & 1) == 0) ? minX : maxX;
+			double cornerZ = ((corner & 2) == 0) ? minZ : maxZ;
+			double delta = Math.atan2(cornerZ, cornerX) - centerAzimuth;
+			if (delta > Math.PI)
+			{
+				delta -= 2 * Math.PI;
+			}
+			else if (delta < -Math.PI)
+			{
+				delta += 2 * Math.PI;
+			}
+			
+			minDelta = Math.min(minDelta, delta);
+			maxDelta = Math.max(maxDelta, delta);
+		}
+		this.minAzimuth = centerAzimuth + minDelta;
+		this.maxAzimuth = centerAzimuth + maxDelta;
+		return true;
+	}
+	
+	/** 
+	 * Band N covers distances up to 2^(N / {@link HorizonOcclusionCuller#DISTANCE_BANDS_PER_DOUBLING}) blocks.
+	 * @param roundUp true to get the first band that ends after the distance (for occluders),
+	 *                false to get the last band that ends before the distance (for checking occlusion)
+	 */
+	private static int getBandContaining(double distance, boolean roundUp)
+	{
+		double band = Math.log(distance) / Math.log(2) * DISTANCE_BANDS_PER_DOUBLING;
+		return roundUp ? Math.max(0, (int) Math.ceil(band)) : (int) Math.floor(band);
+	}
+	
+}
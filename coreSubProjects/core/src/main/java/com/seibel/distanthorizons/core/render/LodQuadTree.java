@@ -25,26 +25,33 @@ import com.seibel.distanthorizons.core.config.listeners.ConfigChangeListener;
 import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
 import com.seibel.distanthorizons.core.enums.EDhDirection;
 import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
+import com.seibel.distanthorizons.core.file.renderCache.RenderDataCache;
 import com.seibel.distanthorizons.core.level.IDhClientLevel;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.render.renderer.DebugRenderer;
 import com.seibel.distanthorizons.core.render.renderer.IDebugRenderable;
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.ThreadUtil;
-import com.seibel.distanthorizons.core.util.objects.quadTree.QuadNode;
 import com.seibel.distanthorizons.core.util.objects.quadTree.QuadTree;
+import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
 import com.seibel.distanthorizons.coreapi.util.MathUtil;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.WillNotClose;
 import java.awt.*;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
@@ -61,6 +68,28 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	/** there should only ever be one {@link LodQuadTree} so having the thread static should be fine */
 	private static final ThreadPoolExecutor FULL_DATA_RETRIEVAL_QUEUE_THREAD = ThreadUtil.makeSingleThreadPool("QuadTree Full Data Retrieval Queue Populator");
 	private static final int WORLD_GEN_QUEUE_UPDATE_DELAY_IN_MS = 1_000;
+	/** 
+	 * The tree is walked through at least this often, even if nothing requested it,
+	 * so sections that are waiting on data (IE world gen) are still checked.
+	 */
+	private static final int MAX_TREE_UPDATE_DELAY_IN_MS = 1_000;
+	/**
+	 * How many {@link LodRenderSection}'s can hold onto their render data 
+	 * for incremental rebuilding at once. <br>
+	 * Each section can use a couple of MB, so this should be kept fairly low.
+	 */
+	private static final int MAX_INCREMENTAL_RENDER_SECTION_COUNT = 16;
+	/**
+	 * How much memory unused {@link ColumnRenderSource}'s can take up 
+	 * before the least recently used ones are returned to the pool. <br>
+	 * Render sources that are being used by a {@link LodRenderSection} don't count against this limit.
+	 */
+	private static final long MAX_RENDER_SOURCE_CACHE_SIZE_IN_BYTES = 64L * 1024 * 1024;
+	/** 
+	 * Edges are a small fraction of a render source's size,
+	 * so they can be kept for many more sections. 
+	 */
+	private static final long MAX_RENDER_EDGE_CACHE_SIZE_IN_BYTES = 16L * 1024 * 1024;
 	
 	
 	public final int blockRenderDistanceDiameter;
@@ -68,15 +97,48 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	private final FullDataSourceProviderV2 fullDataSourceProvider;
 	
 	/**
-	 * This holds every {@link DhSectionPos} that should be reloaded next tick. <br>
-	 * This is a {@link ConcurrentLinkedQueue} because new sections can be added to this list via the world generator threads.
+	 * This holds every {@link DhSectionPos} that should be reloaded next tick
+	 * along with which of its columns changed. <br>
+	 * This is a {@link ConcurrentHashMap} because new sections can be added to this list via the world generator threads.
+	 *
+	 * @see ChangedColumnUtil
+	 */
+	private final ConcurrentHashMap<Long, BitSet> changedColumnsBySectionToReload = new ConcurrentHashMap<>();
+	/** 
+	 * Tracks which sections are holding onto data for incremental rebuilding, 
+	 * ordered from least to most recently used.
+	 */
+	private final LinkedHashMap<Long, LodRenderSection> incrementalRenderSectionsByPos = new LinkedHashMap<>(MAX_INCREMENTAL_RENDER_SECTION_COUNT, 0.75f, true);
+	/** shared between all {@link LodRenderSection}'s so each section only has to be converted once for itself and its neighbors */
+	public final ColumnRenderSourceCache renderSourceCache = new ColumnRenderSourceCache(MAX_RENDER_SOURCE_CACHE_SIZE_IN_BYTES, MAX_RENDER_EDGE_CACHE_SIZE_IN_BYTES);
+	/** 
+	 * Holds the built geometry for each {@link LodRenderSection} so it doesn't have to be re-built when the level is loaded again. <br>
+	 * Null if disabled via the config.
 	 */
-	private final ConcurrentLinkedQueue<Long> sectionsToReload = new ConcurrentLinkedQueue<>();
+	@Nullable
+	public final RenderDataCache renderDataCache;
 	private final IDhClientLevel level; //FIXME: Proper hierarchy to remove this reference!
 	private final ConfigChangeListener<EDhApiHorizontalQuality> horizontalScaleChangeListener;
 	private final ReentrantLock treeReadWriteLock = new ReentrantLock();
 	private final AtomicBoolean fullDataRetrievalQueueRunning = new AtomicBoolean(false);
 	
+	/** 
+	 * Set when something other than the player's movement may change which sections should render,
+	 * IE a section finished loading or a section was reloaded.
+	 * 
+	 * @see LodQuadTree#requestTreeUpdate() 
+	 */
+	private final AtomicBoolean treeUpdateRequested = new AtomicBoolean(true);
+	/** where the player was the last time the tree was walked through, null if the tree hasn't been walked through yet */
+	private DhBlockPos2D lastTreeUpdatePlayerPos = null;
+	private long lastTreeUpdateTimeMs = 0;
+	/** 
+	 * How far the player can move from {@link LodQuadTree#lastTreeUpdatePlayerPos} before
+	 * any section's expected detail level could change. <br>
+	 * IE the distance from the section closest to the edge of its detail level's distance band.
+	 */
+	private double distanceUntilDetailLevelChange = 0;
+	
 	private ArrayList<LodRenderSection> debugRenderSections = new ArrayList<>();
 	private ArrayList<LodRenderSection> altDebugRenderSections = new ArrayList<>();
 	private final ReentrantLock debugRenderSectionLock = new ReentrantLock();
@@ -90,6 +152,11 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	private double detailDropOffDistanceUnit;
 	/** used to calculate when a detail drop will occur */
 	private double detailDropOffLogBase;
+	/** 
+	 * The result of {@link LodQuadTree#getDrawDistanceFromDetail} for each detail level,
+	 * cached since it's needed for every section each time the tree is walked through.
+	 */
+	private final double[] drawDistanceByDetailLevel = new double[Byte.MAX_VALUE + 1];
 	
 	
 	
@@ -110,6 +177,16 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		this.fullDataSourceProvider = fullDataSourceProvider;
 		this.blockRenderDistanceDiameter = viewDiameterInBlocks;
 		
+		if (fullDataSourceProvider != null && Config.Client.Advanced.LodBuilding.cacheRenderDataOnDisk.get())
+		{
+			long maxByteSize = Config.Client.Advanced.LodBuilding.renderDataCacheMaxSizeInMb.get() * 1024L * 1024L;
+			this.renderDataCache = new RenderDataCache(new File(fullDataSourceProvider.getSaveDir(), RenderDataCache.FOLDER_NAME), maxByteSize);
+		}
+		else
+		{
+			this.renderDataCache = null;
+		}
+		
 		this.horizontalScaleChangeListener = new ConfigChangeListener<>(Config.Client.Advanced.Graphics.Quality.horizontalQuality, (newHorizontalScale) -> this.onHorizontalQualityChange());
 	}
 	
@@ -146,7 +223,17 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 				// recenter if necessary, removing out of bounds sections
 				this.setCenterBlockPos(playerPos, LodRenderSection::close);
 				
-				this.updateAllRenderSections(playerPos);
+				this.reloadQueuedSections();
+				
+				// walking through the whole tree is expensive, so it's only done if something could have changed
+				if (this.isTreeUpdateNeeded(playerPos))
+				{
+					this.lastTreeUpdatePlayerPos = playerPos;
+					this.lastTreeUpdateTimeMs = System.currentTimeMillis();
+					this.distanceUntilDetailLevelChange = Double.MAX_VALUE;
+					
+					this.updateAllRenderSections(playerPos);
+				}
 			}
 			catch (Exception e)
 			{
@@ -158,34 +245,49 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 			}
 		}
 	}
-	private void updateAllRenderSections(DhBlockPos2D playerPos)
+	private boolean isTreeUpdateNeeded(DhBlockPos2D playerPos)
 	{
-		if (Config.Client.Advanced.Debugging.DebugWireframe.showQuadTreeRenderStatus.get())
+		if (this.treeUpdateRequested.getAndSet(false)
+			|| this.lastTreeUpdatePlayerPos == null
+			|| System.currentTimeMillis() - this.lastTreeUpdateTimeMs >= MAX_TREE_UPDATE_DELAY_IN_MS)
 		{
-			try
-			{
-				// lock to prevent accidentally rendering an array that's being populated/cleared
-				this.debugRenderSectionLock.lock();
-				
-				// swap the debug arrays
-				this.debugRenderSections.clear();
-				ArrayList<LodRenderSection> temp = this.debugRenderSections;
-				this.debugRenderSections = this.altDebugRenderSections;
-				this.altDebugRenderSections = temp;
-			}
-			finally
-			{
-				this.debugRenderSectionLock.unlock();
-			}
+			return true;
 		}
 		
+		// the root nodes were moved, new root nodes need to be populated
+		if (BitShiftUtil.divideByPowerOfTwo(playerPos.x, this.treeMinDetailLevel) != BitShiftUtil.divideByPowerOfTwo(this.lastTreeUpdatePlayerPos.x, this.treeMinDetailLevel)
+			|| BitShiftUtil.divideByPowerOfTwo(playerPos.z, this.treeMinDetailLevel) != BitShiftUtil.divideByPowerOfTwo(this.lastTreeUpdatePlayerPos.z, this.treeMinDetailLevel))
+		{
+			return true;
+		}
 		
-		// reload any sections that need it
-		Long pos;
-		while ((pos = this.sectionsToReload.poll()) != null)
+		// at least one section may need a different detail level
+		return playerPos.dist(this.lastTreeUpdatePlayerPos) >= this.distanceUntilDetailLevelChange;
+	}
+	/** 
+	 * Should be called whenever something other than the player's movement may change 
+	 * which sections should be rendered, so the tree will be walked through next tick.
+	 */
+	public void requestTreeUpdate() { this.treeUpdateRequested.set(true); }
+	
+	/** handles any sections that were queued via {@link LodQuadTree#reloadPos} */
+	private void reloadQueuedSections()
+	{
+		for (Long reloadPos : this.changedColumnsBySectionToReload.keySet())
 		{
+			BitSet changedColumns = this.changedColumnsBySectionToReload.remove(reloadPos);
+			if (changedColumns == null)
+			{
+				continue;
+			}
+			
+			// sections that aren't rendering yet aren't reloaded here,
+			// walking through the tree will queue them for loading if necessary
+			this.requestTreeUpdate();
+			
 			// walk up the tree until we hit the root node
 			// this is done so any high detail changes flow up to the lower detail render sections as well
+			long pos = reloadPos;
 			while (DhSectionPos.getDetailLevel(pos) <= this.treeMinDetailLevel)
 			{
 				try
@@ -193,15 +295,37 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 					LodRenderSection renderSection = this.getValue(pos);
 					if (renderSection != null && renderSection.renderingEnabled)
 					{
-						renderSection.uploadRenderDataToGpuAsync();
+						renderSection.uploadRenderDataToGpuAsync(changedColumns);
 					}
 				}
 				catch (IndexOutOfBoundsException e)
 				{ /* the section is now out of bounds, it doesn't need to be reloaded */ }
 				
+				changedColumns = ChangedColumnUtil.getParentChangedColumns(pos, changedColumns);
 				pos = DhSectionPos.getParentPos(pos);
 			}
 		}
+	}
+	private void updateAllRenderSections(DhBlockPos2D playerPos)
+	{
+		if (Config.Client.Advanced.Debugging.DebugWireframe.showQuadTreeRenderStatus.get())
+		{
+			try
+			{
+				// lock to prevent accidentally rendering an array that's being populated/cleared
+				this.debugRenderSectionLock.lock();
+				
+				// swap the debug arrays
+				this.debugRenderSections.clear();
+				ArrayList<LodRenderSection> temp = this.debugRenderSections;
+				this.debugRenderSections = this.altDebugRenderSections;
+				this.altDebugRenderSections = temp;
+			}
+			finally
+			{
+				this.debugRenderSectionLock.unlock();
+			}
+		}
 		
 		
 		// walk through each root node
@@ -212,13 +336,12 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		{
 			// make sure all root nodes have been created
 			long rootPos = rootPosIterator.nextLong();
-			if (this.getNode(rootPos) == null)
+			if (!this.nodeExists(rootPos))
 			{
 				this.setValue(rootPos, new LodRenderSection(rootPos, this, this.level, this.fullDataSourceProvider));
 			}
 			
-			QuadNode<LodRenderSection> rootNode = this.getNode(rootPos);
-			this.recursivelyUpdateRenderSectionNode(playerPos, rootNode, rootNode, rootNode.sectionPos, false, nodesNeedingRetrieval, nodesNeedingLoading);
+			this.recursivelyUpdateRenderSectionNode(playerPos, rootPos, false, nodesNeedingRetrieval, nodesNeedingLoading);
 		}
 		
 		
@@ -249,8 +372,7 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	}
 	/** @return whether the current position is able to render (note: not if it IS rendering, just if it is ABLE to.) */
 	private boolean recursivelyUpdateRenderSectionNode(
-			DhBlockPos2D playerPos, 
-			QuadNode<LodRenderSection> rootNode, QuadNode<LodRenderSection> quadNode, long sectionPos, 
+			DhBlockPos2D playerPos, long sectionPos, 
 			boolean parentSectionIsRendering,
 			ArrayList<LodRenderSection> nodesNeedingRetrieval,
 			ArrayList<LodRenderSection> nodesNeedingLoading)
@@ -260,26 +382,19 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		//===============================//
 		
 		// make sure the node is created
-		if (quadNode == null && this.isSectionPosInBounds(sectionPos)) // the position bounds should only fail when at the edge of the user's render distance
-		{
-			rootNode.setValue(sectionPos, new LodRenderSection(sectionPos, this, this.level, this.fullDataSourceProvider));
-			quadNode = rootNode.getNode(sectionPos);
-		}
-		if (quadNode == null)
+		if (!this.nodeExists(sectionPos) && !this.isSectionPosInBounds(sectionPos)) // the position bounds should only fail when at the edge of the user's render distance
 		{
-			// this node must be out of bounds, or there was an issue adding it to the tree
+			// this node must be out of bounds
 			return false;
 		}
 		
 		// make sure the render section is created
-		LodRenderSection renderSection = quadNode.value;
+		LodRenderSection renderSection = this.getOrSetValue(sectionPos, false, null, false);
 		// create a new render section if missing
 		if (renderSection == null)
 		{
-			LodRenderSection newRenderSection = new LodRenderSection(sectionPos, this, this.level, this.fullDataSourceProvider);
-			rootNode.setValue(sectionPos, newRenderSection);
-			
-			renderSection = newRenderSection; // TODO this never seemed to be called, is it necessary?
+			renderSection = new LodRenderSection(sectionPos, this, this.level, this.fullDataSourceProvider);
+			this.getOrSetValue(sectionPos, true, renderSection, false);
 		}
 		
 		
@@ -288,9 +403,11 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		// handle enabling, loading,     //
 		// and disabling render sections //
 		//===============================//
-
+		
 		//byte expectedDetailLevel = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 3; // can be used instead of the following logic for testing
-		byte expectedDetailLevel = this.calculateExpectedDetailLevel(playerPos, sectionPos);
+		double distance = playerPos.dist(DhSectionPos.getCenterBlockPosX(sectionPos), DhSectionPos.getCenterBlockPosZ(sectionPos));
+		byte expectedDetailLevel = this.getDetailLevelFromDistance(distance);
+		this.distanceUntilDetailLevelChange = Math.min(this.distanceUntilDetailLevelChange, this.getDistanceUntilDetailLevelChange(distance, expectedDetailLevel));
 		expectedDetailLevel = (byte) Math.min(expectedDetailLevel, this.minRenderDetailLevel);
 		expectedDetailLevel += DhSectionPos.SECTION_BLOCK_DETAIL_LEVEL;
 		
@@ -302,13 +419,11 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 			boolean allChildrenSectionsAreLoaded = true;
 			
 			// recursively update all child render sections
-			LongIterator childPosIterator = quadNode.getChildPosIterator();
-			while (childPosIterator.hasNext())
+			boolean hasChildren = DhSectionPos.getDetailLevel(sectionPos) > this.treeMaxDetailLevel;
+			for (int i = 0; hasChildren && i < 4; i++)
 			{
-				long childPos = childPosIterator.nextLong();
-				QuadNode<LodRenderSection> childNode = rootNode.getNode(childPos);
-				
-				boolean childSectionLoaded = this.recursivelyUpdateRenderSectionNode(playerPos, rootNode, childNode, childPos, thisPosIsRendering || parentSectionIsRendering, nodesNeedingRetrieval, nodesNeedingLoading);
+				long childPos = DhSectionPos.getChildByIndex(sectionPos, i);
+				boolean childSectionLoaded = this.recursivelyUpdateRenderSectionNode(playerPos, childPos, thisPosIsRendering || parentSectionIsRendering, nodesNeedingRetrieval, nodesNeedingLoading);
 				allChildrenSectionsAreLoaded = childSectionLoaded && allChildrenSectionsAreLoaded;
 			}
 			
@@ -335,13 +450,10 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 				renderSection.renderingEnabled = false;
 				
 				// walk back down the tree and enable the child sections //TODO there are probably more efficient ways of doing this, but this will work for now
-				childPosIterator = quadNode.getChildPosIterator();
-				while (childPosIterator.hasNext())
+				for (int i = 0; hasChildren && i < 4; i++)
 				{
-					long childPos = childPosIterator.nextLong();
-					QuadNode<LodRenderSection> childNode = rootNode.getNode(childPos);
-					
-					boolean childSectionLoaded = this.recursivelyUpdateRenderSectionNode(playerPos, rootNode, childNode, childPos, parentSectionIsRendering, nodesNeedingRetrieval, nodesNeedingLoading);
+					long childPos = DhSectionPos.getChildByIndex(sectionPos, i);
+					boolean childSectionLoaded = this.recursivelyUpdateRenderSectionNode(playerPos, childPos, parentSectionIsRendering, nodesNeedingRetrieval, nodesNeedingLoading);
 					allChildrenSectionsAreLoaded = childSectionLoaded && allChildrenSectionsAreLoaded;
 				}
 				if (!allChildrenSectionsAreLoaded)
@@ -391,7 +503,7 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 						renderSection.renderingEnabled = true;
 						
 						// delete/disable children, all of them will be a lower detail level than requested
-						quadNode.deleteAllChildren((childRenderSection) ->
+						this.deleteAllChildren(sectionPos, (childRenderSection) ->
 						{
 							if (childRenderSection != null)
 							{
@@ -459,6 +571,18 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		return (byte) MathUtil.clamp(this.maxRenderDetailLevel, detailLevel, Byte.MAX_VALUE - 1);
 	}
 	
+	/** @return how much the given distance can change before {@link LodQuadTree#getDetailLevelFromDistance} would return a different detail level */
+	private double getDistanceUntilDetailLevelChange(double distance, byte detailLevel)
+	{
+		double distanceUntilChange = this.drawDistanceByDetailLevel[detailLevel + 1] - distance;
+		if (detailLevel > this.maxRenderDetailLevel)
+		{
+			// the detail level can also change by moving closer
+			distanceUntilChange = Math.min(distanceUntilChange, distance - this.drawDistanceByDetailLevel[detailLevel]);
+		}
+		return Math.max(0, distanceUntilChange);
+	}
+	
 	private double getDrawDistanceFromDetail(int detail)
 	{
 		if (detail <= this.maxRenderDetailLevel)
@@ -477,6 +601,11 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	
 	private void updateDetailLevelVariables()
 	{
+		double previousDistanceUnit = this.detailDropOffDistanceUnit;
+		double previousLogBase = this.detailDropOffLogBase;
+		byte previousMaxRenderDetailLevel = this.maxRenderDetailLevel;
+		byte previousMinRenderDetailLevel = this.minRenderDetailLevel;
+		
 		this.detailDropOffDistanceUnit = Config.Client.Advanced.Graphics.Quality.horizontalQuality.get().distanceUnitInBlocks * LodUtil.CHUNK_WIDTH;
 		this.detailDropOffLogBase = Math.log(Config.Client.Advanced.Graphics.Quality.horizontalQuality.get().quadraticBase);
 		
@@ -488,6 +617,20 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		minSectionDetailLevel -= 1; // -1 so corners can't render lower than their adjacent neighbors. space
 		minSectionDetailLevel = (byte) Math.min(minSectionDetailLevel, this.treeMinDetailLevel); // don't allow rendering lower detail sections than what the tree contains
 		this.minRenderDetailLevel = (byte) Math.max(minSectionDetailLevel, this.maxRenderDetailLevel); // respect the user's selected max resolution if it is lower detail (IE they want 2x2 block, but minSectionDetailLevel is specifically for 1x1 block render resolution)
+		
+		if (previousDistanceUnit != this.detailDropOffDistanceUnit
+			|| previousLogBase != this.detailDropOffLogBase
+			|| previousMaxRenderDetailLevel != this.maxRenderDetailLevel
+			|| previousMinRenderDetailLevel != this.minRenderDetailLevel)
+		{
+			for (int detailLevel = 0; detailLevel < this.drawDistanceByDetailLevel.length; detailLevel++)
+			{
+				this.drawDistanceByDetailLevel[detailLevel] = this.getDrawDistanceFromDetail(detailLevel);
+			}
+			
+			// every section's expected detail level may have changed
+			this.requestTreeUpdate();
+		}
 	}
 	
 	
@@ -509,17 +652,19 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 				LOGGER.info("Disposing render data...");
 				
 				// clear the tree
-				Iterator<QuadNode<LodRenderSection>> nodeIterator = this.nodeIterator();
-				while (nodeIterator.hasNext())
+				this.clearValues(LodRenderSection::close);
+				
+				// the colors may have changed
+				this.renderSourceCache.clear();
+				if (this.renderDataCache != null)
 				{
-					QuadNode<LodRenderSection> quadNode = nodeIterator.next();
-					if (quadNode.value != null)
-					{
-						quadNode.value.close();
-						quadNode.value = null;
-					}
+					// resource packs aren't part of the cache key, so anything saved to disk may be out of date as well
+					this.renderDataCache.deleteAll();
 				}
 				
+				// the render sections need to be re-created
+				this.requestTreeUpdate();
+				
 				LOGGER.info("Render data cleared, please wait a moment for everything to reload...");
 			}
 			catch (Exception e)
@@ -537,16 +682,92 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	 * Can be called whenever a render section's data needs to be refreshed. <br>
 	 * This should be called whenever a world generation task is completed or if the connected server has new data to show.
 	 */
-	public void reloadPos(long pos)
+	public void reloadPos(long pos) { this.reloadPos(pos, null); }
+	/**
+	 * @param changedColumns which columns in the section changed, 
+	 *                       if null the whole section and its neighbors will be reloaded.
+	 * @see ChangedColumnUtil
+	 */
+	public void reloadPos(long pos, @Nullable BitSet changedColumns)
 	{
-		this.sectionsToReload.add(pos);
+		if (changedColumns == null)
+		{
+			changedColumns = ChangedColumnUtil.createAllChanged();
+		}
+		else if (changedColumns.isEmpty())
+		{
+			return;
+		}
+		
+		// the full data changed, so the cached render data is out of date.
+		// Adjacent sections don't need to be invalidated since their data didn't change, they just need to be rebuilt.
+		this.renderSourceCache.invalidate(pos);
+		
+		this.queueColumnsForReload(pos, changedColumns);
 		
 		// the adjacent locations also need to be updated to make sure lighting
 		// and water updates correctly, otherwise oceans may have walls
 		// and lights may not show up over LOD borders
 		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
 		{
-			this.sectionsToReload.add(DhSectionPos.getAdjacentPos(pos, direction));
+			BitSet adjacentChangedColumns = ChangedColumnUtil.getAdjacentSectionChangedColumns(changedColumns, direction);
+			if (!adjacentChangedColumns.isEmpty())
+			{
+				this.queueColumnsForReload(DhSectionPos.getAdjacentPos(pos, direction), adjacentChangedColumns);
+			}
+		}
+	}
+	private void queueColumnsForReload(long pos, BitSet changedColumns)
+	{
+		this.changedColumnsBySectionToReload.compute(pos, (reloadPos, queuedColumns) ->
+		{
+			if (queuedColumns == null)
+			{
+				// copy the columns since the given BitSet may be changed after this method returns
+				return (BitSet) changedColumns.clone();
+			}
+			
+			queuedColumns.or(changedColumns);
+			return queuedColumns;
+		});
+	}
+	
+	
+	
+	//=========================//
+	// incremental render data //
+	//=========================//
+	
+	/**
+	 * Should be called whenever a {@link LodRenderSection} stores data for incremental rebuilding. <br>
+	 * If too many sections are holding onto data, the least recently used section's data will be released.
+	 */
+	public void markIncrementalRenderSectionUsed(LodRenderSection renderSection)
+	{
+		ArrayList<LodRenderSection> sectionsToRelease = new ArrayList<>();
+		synchronized (this.incrementalRenderSectionsByPos)
+		{
+			this.incrementalRenderSectionsByPos.put(renderSection.pos, renderSection);
+			
+			Iterator<Map.Entry<Long, LodRenderSection>> iterator = this.incrementalRenderSectionsByPos.entrySet().iterator();
+			while (this.incrementalRenderSectionsByPos.size() > MAX_INCREMENTAL_RENDER_SECTION_COUNT && iterator.hasNext())
+			{
+				sectionsToRelease.add(iterator.next().getValue());
+				iterator.remove();
+			}
+		}
+		
+		// released outside the lock to reduce contention
+		for (LodRenderSection section : sectionsToRelease)
+		{
+			section.releaseIncrementalRenderData();
+		}
+	}
+	public void removeIncrementalRenderSection(LodRenderSection renderSection)
+	{
+		synchronized (this.incrementalRenderSectionsByPos)
+		{
+			this.incrementalRenderSectionsByPos.remove(renderSection.pos, renderSection);
 		}
 	}
 	
@@ -682,15 +903,13 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		
 		DebugRenderer.unregister(this, Config.Client.Advanced.Debugging.DebugWireframe.showQuadTreeRenderStatus);
 		
-		Iterator<QuadNode<LodRenderSection>> nodeIterator = this.nodeIterator();
-		while (nodeIterator.hasNext())
+		this.clearValues(LodRenderSection::close);
+		
+		// closed after the render sections so any render sources they were using can be returned to the pool
+		this.renderSourceCache.close();
+		if (this.renderDataCache != null)
 		{
-			QuadNode<LodRenderSection> quadNode = nodeIterator.next();
-			if (quadNode.value != null)
-			{
-				quadNode.value.close();
-				quadNode.value = null;
-			}
+			this.renderDataCache.close();
 		}
 		
 		LOGGER.info("Finished shutting down " + LodQuadTree.class.getSimpleName());
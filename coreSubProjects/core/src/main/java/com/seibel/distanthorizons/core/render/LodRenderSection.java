@@ -21,11 +21,14 @@ package com.seibel.distanthorizons.core.render;
 
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
 import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
 import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBufferBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
 import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataToRenderDataTransformer;
 import com.seibel.distanthorizons.core.enums.EDhDirection;
 import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
+import com.seibel.distanthorizons.core.file.renderCache.RenderDataCache;
 import com.seibel.distanthorizons.core.level.IDhClientLevel;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
@@ -33,6 +36,7 @@ import com.seibel.distanthorizons.core.render.glObject.GLProxy;
 import com.seibel.distanthorizons.core.render.renderer.IDebugRenderable;
 import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
 import com.seibel.distanthorizons.core.render.renderer.DebugRenderer;
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
@@ -41,11 +45,13 @@ import org.jetbrains.annotations.Nullable;
 import javax.annotation.WillNotClose;
 import java.awt.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * A render section represents an area that could be rendered.
@@ -74,15 +80,31 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 	
 	/** 
 	 * Encapsulates everything between pulling data from the database (including neighbors)
-	 * up to the point when geometry data is uploaded to the GPU.
+	 * up to the point when geometry data is uploaded to the GPU. <br>
+	 * Also holds any columns that changed while an upload was running so those changes aren't lost.
 	 */
-	private CompletableFuture<Void> uploadRenderDataToGpuFuture = null;
+	private final ChangedColumnUploadQueue uploadQueue = new ChangedColumnUploadQueue();
+	/** 
+	 * Set once this section is closed, any buffers built afterwards are closed instead of rendered. <br>
+	 * Should only be accessed while this section is locked.
+	 */
+	private boolean closed = false;
+	
+	/** 
+	 * Stored as class variables so they can be released if this section is closed while loading. 
+	 * @see ColumnRenderSourceCache 
+	 */
+	private ColumnRenderSourceCache.Handle renderSourceHandle = null;
+	/** @see LodRenderSection#renderSourceHandle */
+	private ColumnRenderSourceCache.Handle[] adjacentRenderSourceHandles = null;
 	
-	private final ReentrantLock getRenderSourceLock = new ReentrantLock();
-	/** Stored as a class variable so we can reuse it's result across multiple LOD loads if necessary */
-	private ReferencedFutureWrapper renderSourceLoadingRefFuture = null;
-	/** Stored as a class variable so we can decrement reference counts as each {@link LodRenderSection} finishes using them. */
-	private ReferencedFutureWrapper[] adjacentLoadRefFutures;
+	/**
+	 * Holds the render data from the last incremental upload, allowing unchanged columns to be re-used. <br>
+	 * Null if this section hasn't been incrementally uploaded or if the data was released.
+	 * 
+	 * @see LodQuadTree#markIncrementalRenderSectionUsed 
+	 */
+	private final AtomicReference<IncrementalRenderData> incrementalRenderDataRef = new AtomicReference<>(null);
 	
 	private boolean missingPositionsCalculated = false;
 	/** should be an empty array if no positions need to be generated */
@@ -110,8 +132,24 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 	// render data loading/uploading //
 	//===============================//
 	
-	public synchronized void uploadRenderDataToGpuAsync()
+	public void uploadRenderDataToGpuAsync() { this.uploadRenderDataToGpuAsync(null); }
+	/**
+	 * @param changedColumns which columns need to be rebuilt, if null the whole section will be rebuilt.
+	 * @see ChangedColumnUtil
+	 */
+	public void uploadRenderDataToGpuAsync(@Nullable BitSet changedColumns)
+	{
+		this.uploadQueue.addChangedColumns(changedColumns);
+		this.tryStartUpload();
+	}
+	/** Starts uploading any changed columns if no upload is currently running. */
+	private synchronized void tryStartUpload()
 	{
+		if (this.closed)
+		{
+			return;
+		}
+		
 		if (!GLProxy.hasInstance())
 		{
 			// it's possible to try uploading buffers before the GLProxy has been initialized
@@ -119,58 +157,153 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 			return;
 		}
 		
-		if (this.uploadRenderDataToGpuFuture != null)
+		ThreadPoolExecutor executor = ThreadPoolUtil.getFileHandlerExecutor();
+		if (executor == null || executor.isTerminated())
 		{
-			// don't accidentally queue multiple uploads at the same time
 			return;
 		}
 		
 		
-		
-		ThreadPoolExecutor executor = ThreadPoolUtil.getFileHandlerExecutor();
-		if (executor == null || executor.isTerminated())
+		// the queue prevents multiple uploads from running at the same time
+		CompletableFuture<Void> uploadFuture = new CompletableFuture<>();
+		BitSet columnsToUpdate = this.uploadQueue.tryStart(uploadFuture);
+		if (columnsToUpdate == null)
 		{
 			return;
 		}
 		
-		this.uploadRenderDataToGpuFuture = CompletableFuture.runAsync(() -> 
+		boolean allColumnsChanged = ChangedColumnUtil.areAllChanged(columnsToUpdate);
+		if (allColumnsChanged)
+		{
+			// the whole section is being rebuilt, any incremental data will be out of date
+			this.releaseIncrementalRenderData();
+		}
+		
+		try
+		{
+			if (allColumnsChanged)
+			{
+				executor.execute(() -> this.uploadAllColumnsToGpu(executor, uploadFuture));
+			}
+			else
+			{
+				executor.execute(() -> this.uploadChangedColumnsToGpu(columnsToUpdate, uploadFuture));
+			}
+		}
+		catch (RejectedExecutionException ignore)
 		{
+			// the thread pool is being shut down (IE the level is closing), try again next time
+			this.uploadQueue.cancelStart(columnsToUpdate, uploadFuture);
+		}
+	}
+	/** 
+	 * Must be called once the given upload has finished, whether it succeeded or not. <br>
+	 * Starts another upload if any columns changed while the given upload was running.
+	 */
+	private void onUploadFinished(CompletableFuture<Void> uploadFuture)
+	{
+		if (this.uploadQueue.finish(uploadFuture))
+		{
+			this.tryStartUpload();
+		}
+	}
+	/**
+	 * Replaces the current render buffer with the given one.
+	 * 
+	 * @return false if this section was closed while the buffer was being built,
+	 *          in that case the buffer is closed since nothing else would close it.
+	 */
+	private synchronized boolean trySetRenderBuffer(ColumnRenderBuffer buffer)
+	{
+		if (this.closed)
+		{
+			buffer.close();
+			return false;
+		}
+		
+		ColumnRenderBuffer previousBuffer = this.renderBuffer;
+		this.renderBuffer = buffer;
+		this.setCanRender(true);
+		
+		if (previousBuffer != null)
+		{
+			previousBuffer.close();
+		}
+		return true;
+	}
+	/**
+	 * Rebuilds this whole section, using the cached render data if possible. <br>
+	 * Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()}
+	 */
+	private void uploadAllColumnsToGpu(Executor executor, CompletableFuture<Void> uploadFuture)
+	{
+		try
+		{
+			//====================//
+			// cached render data //
+			//====================//
+			
+			RenderDataCache renderDataCache = this.quadTree.renderDataCache;
+			RenderDataCache.Key renderDataCacheKey = (renderDataCache != null) ? this.createRenderDataCacheKey() : null;
+			if (renderDataCacheKey != null
+				&& this.tryUploadCachedRenderData(renderDataCache, renderDataCacheKey, uploadFuture))
+			{
+				// nothing needs to be loaded or built
+				return;
+			}
+			
+			
+			
 			//==================//
 			// load render data //
 			//==================//
 			
-			this.tryDecrementingLoadFutureArray(this.adjacentLoadRefFutures);
+			this.releaseRenderSourceHandles();
 			
-			ReferencedFutureWrapper thisLoadFuture = this.getRenderSourceAsync();
-			ReferencedFutureWrapper[] adjLoadRefFutures = this.getNeighborRenderSourcesAsync();
+			// both this section and its neighbors go through the cache,
+			// so a section's render data is shared with any neighbors that are also loading
+			ColumnRenderSourceCache.Handle thisHandle = this.getRenderSourceAsync(executor);
+			// only the neighbors' edges are needed, which may already be cached
+			ColumnRenderEdge[] adjEdges = new ColumnRenderEdge[EDhDirection.ADJ_DIRECTIONS.length];
+			ColumnRenderSourceCache.Handle[] adjHandles = this.getNeighborRenderSourcesAsync(executor, adjEdges);
+			this.renderSourceHandle = thisHandle;
+			this.adjacentRenderSourceHandles = adjHandles;
 			
 			
 			// wait for all futures to complete together,
 			// merging the futures makes loading significantly faster than loading this position then loading its neighbors
 			ArrayList<CompletableFuture<ColumnRenderSource>> futureList = new ArrayList<>();
-			futureList.add(thisLoadFuture.future);
-			for (ReferencedFutureWrapper refFuture : adjLoadRefFutures)
+			futureList.add(thisHandle.getFuture());
+			for (ColumnRenderSourceCache.Handle handle : adjHandles)
 			{
-				futureList.add(refFuture.future);
+				futureList.add(handle.getFuture());
 			}
 			
-			CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0])).thenAccept((voidObj) ->
+			CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[0])).handle((voidObj, loadThrowable) ->
 			{
 				try
 				{
-					ColumnRenderSource renderSource = thisLoadFuture.future.get();
-					if (renderSource == null || renderSource.isEmpty())
+					ColumnRenderSource renderSource = thisHandle.getFuture().get();
+					
+					// the neighbors' render sources can be released as soon as their edges are available
+					for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
 					{
-						thisLoadFuture.decrementRefCount();
-						for (ReferencedFutureWrapper futureWrapper : adjLoadRefFutures)
+						int arrayIndex = direction.ordinal() - 2;
+						if (adjEdges[arrayIndex] == null)
 						{
-							futureWrapper.decrementRefCount();
+							adjEdges[arrayIndex] = adjHandles[arrayIndex].getEdge(direction.getOpposite());
 						}
+					}
+					releaseHandles(adjHandles);
+					
+					if (renderSource == null || renderSource.isEmpty())
+					{
+						releaseHandles(thisHandle);
 						
 						// nothing needs to be rendered
-						this.canRender = false;
-						this.uploadRenderDataToGpuFuture = null;
-						return;
+						this.setCanRender(false);
+						this.onUploadFinished(uploadFuture);
+						return null;
 					}
 					
 					
@@ -179,129 +312,336 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 					// build/upload new render data //
 					//==============================//
 					
-					try
+					// saved before uploading so a level that's closed while loading will still have the built sections cached
+					Consumer<LodQuadBuilder> mergedQuadsConsumer = null;
+					if (renderDataCacheKey != null)
 					{
-						ColumnRenderBuffer previousBuffer = this.renderBuffer;
+						mergedQuadsConsumer = (quadBuilder) -> renderDataCache.save(this.pos, renderDataCacheKey, quadBuilder, renderSource.getMaxBlockY(), renderSource.getMinSurfaceBlockY());
+					}
+					
+					ColumnRenderBufferBuilder.buildAndUploadBuffersAsync(this.level, renderSource, adjEdges, null, null, null, mergedQuadsConsumer).whenComplete((buffer, throwable) ->
+					{
+						// the render source is only released once the buffers are built since it's read while building
+						releaseHandles(thisHandle);
 						
-						ColumnRenderSource[] adjacentRenderSections = new ColumnRenderSource[EDhDirection.ADJ_DIRECTIONS.length];
-						for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
+						if (throwable == null)
 						{
-							adjacentRenderSections[i] = adjLoadRefFutures[i].future.getNow(null);
+							this.trySetRenderBuffer(buffer);
 						}
-						ColumnRenderBufferBuilder.buildAndUploadBuffersAsync(this.level, renderSource, adjacentRenderSections).thenAccept((buffer) ->
+						else
 						{
-							// upload complete, clean up the old data if 
-							this.renderBuffer = buffer;
-							this.canRender = true;
-							this.uploadRenderDataToGpuFuture = null;
-							
-							
-							if (previousBuffer != null)
-							{
-								previousBuffer.close();
-							}
-							
-							thisLoadFuture.decrementRefCount();
-							this.tryDecrementingLoadFutureArray(adjLoadRefFutures);
-							this.adjacentLoadRefFutures = null;
-						});
-					}
-					catch (Exception e)
-					{
-						thisLoadFuture.decrementRefCount();
-						this.tryDecrementingLoadFutureArray(adjLoadRefFutures);
-						this.adjacentLoadRefFutures = null;
+							LOGGER.error("Unexpected error in LodRenderSection loading, Error: "+throwable.getMessage(), throwable);
+						}
 						
-						LOGGER.error("Unexpected error in LodRenderSection loading, Error: "+e.getMessage(), e);
-						this.uploadRenderDataToGpuFuture = null;
-					}
+						this.onUploadFinished(uploadFuture);
+					});
 				}
 				catch (Exception e)
 				{
-					thisLoadFuture.decrementRefCount();
-					this.tryDecrementingLoadFutureArray(adjLoadRefFutures);
-					this.adjacentLoadRefFutures = null;
+					releaseHandles(thisHandle);
+					releaseHandles(adjHandles);
 					
-					LOGGER.error("Unexpected error in LodRenderSection loading, Error: "+e.getMessage(), e);
-					this.uploadRenderDataToGpuFuture = null;
+					if (!(e instanceof CancellationException))
+					{
+						LOGGER.error("Unexpected error in LodRenderSection loading, Error: "+e.getMessage(), e);
+					}
+					this.onUploadFinished(uploadFuture);
 				}
+				return null;
 			});
-		}, executor);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unexpected error in LodRenderSection loading, Error: "+e.getMessage(), e);
+			this.onUploadFinished(uploadFuture);
+		}
 	}
-	/** Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()} */
-	private ReferencedFutureWrapper[] getNeighborRenderSourcesAsync()
+	/**
+	 * Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()}
+	 * 
+	 * @return null if this section's render data shouldn't be cached, IE if it doesn't have any full data
+	 */
+	@Nullable
+	private RenderDataCache.Key createRenderDataCacheKey()
 	{
-		ReferencedFutureWrapper[] futureArray = new ReferencedFutureWrapper[EDhDirection.ADJ_DIRECTIONS.length];
-		for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
+		if (!Config.Client.Advanced.LodBuilding.cacheRenderDataOnDisk.get())
 		{
-			EDhDirection direction = EDhDirection.ADJ_DIRECTIONS[i];
-			int arrayIndex = direction.ordinal() - 2;
-			
+			return null;
+		}
+		
+		// the timestamps are read before loading the full data,
+		// so if the data is saved again while loading the cached entry will be out of date instead of hiding the change
+		Long dataLastModifiedUnixDateTime = this.fullDataSourceProvider.getTimestampForPos(this.pos);
+		if (dataLastModifiedUnixDateTime == null)
+		{
+			return null;
+		}
+		
+		long adjacentDataHash = 0;
+		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
+		{
+			// matches getNeighborRenderSourcesAsync(), neighbors outside the tree aren't used when building
+			long adjacentLastModifiedUnixDateTime = -1;
 			long adjPos = DhSectionPos.getAdjacentPos(this.pos, direction);
 			try
 			{
-				LodRenderSection adjRenderSection = this.quadTree.getValue(adjPos);
-				if (adjRenderSection != null)
+				if (this.quadTree.getValue(adjPos) != null)
 				{
-					futureArray[arrayIndex] = adjRenderSection.getRenderSourceAsync();
+					Long timestamp = this.fullDataSourceProvider.getTimestampForPos(adjPos);
+					adjacentLastModifiedUnixDateTime = (timestamp != null) ? timestamp : 0;
 				}
 			}
 			catch (IndexOutOfBoundsException ignore) {}
 			
-			if (futureArray[arrayIndex] == null)
-			{
-				futureArray[arrayIndex] = new ReferencedFutureWrapper(CompletableFuture.completedFuture(null));
-			}
+			adjacentDataHash = (adjacentDataHash * 31) + adjacentLastModifiedUnixDateTime;
 		}
 		
-		this.adjacentLoadRefFutures = futureArray;
-		return futureArray;
+		return new RenderDataCache.Key(dataLastModifiedUnixDateTime, adjacentDataHash, RenderDataCache.getRenderConfigHash(this.level));
 	}
-	/** Will try to return the same {@link CompletableFuture} if multiple requests are made for the same position */
-	private ReferencedFutureWrapper getRenderSourceAsync()
+	/** @return true if cached render data was found and is being uploaded */
+	private boolean tryUploadCachedRenderData(RenderDataCache renderDataCache, RenderDataCache.Key renderDataCacheKey, CompletableFuture<Void> uploadFuture)
 	{
-		try
+		RenderDataCache.CachedRenderData cachedRenderData = renderDataCache.get(this.pos, renderDataCacheKey);
+		if (cachedRenderData == null)
 		{
-			this.getRenderSourceLock.lock();
-			
-			
-			// if a load is already in progress, use that existing one
-			// (this reduces the number of duplicate loads that may happen when initially loading the world)
-			if (this.renderSourceLoadingRefFuture != null)
+			return false;
+		}
+		
+		ColumnRenderBufferBuilder.uploadCachedBuffersAsync(this.level, this.pos, cachedRenderData).whenComplete((buffer, throwable) ->
+		{
+			if (throwable == null)
+			{
+				this.trySetRenderBuffer(buffer);
+			}
+			else if (!(throwable instanceof CancellationException))
 			{
-				// increment the number of objects needing this future
-				this.renderSourceLoadingRefFuture.incrementRefCount();
-				return this.renderSourceLoadingRefFuture;
+				// the section will be built normally next time
+				renderDataCache.delete(this.pos);
+				LOGGER.error("Unexpected error uploading cached render data for pos "+DhSectionPos.toString(this.pos)+", Error: "+throwable.getMessage(), throwable);
 			}
 			
+			this.onUploadFinished(uploadFuture);
+		});
+		return true;
+	}
+	/**
+	 * Only rebuilds the given columns (and their neighbors) using the data from the last incremental upload. <br>
+	 * If no incremental data is present the whole section will be rebuilt and its data kept for the next upload. <br><br>
+	 * 
+	 * Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()}
+	 */
+	// the pooled data source's close() only returns it to the pool, so it can't be interrupted
+	@SuppressWarnings("try")
+	private void uploadChangedColumnsToGpu(BitSet changedColumns, CompletableFuture<Void> uploadFuture)
+	{
+		IncrementalRenderData previousData = this.incrementalRenderDataRef.getAndSet(null);
+		ColumnRenderSource renderSource = null;
+		ColumnRenderEdge[] adjacentEdges = new ColumnRenderEdge[EDhDirection.ADJ_DIRECTIONS.length];
+		boolean uploadQueued = false;
+		
+		try (FullDataSourceV2 fullDataSource = this.fullDataSourceProvider.get(this.pos))
+		{
+			//==================//
+			// load render data //
+			//==================//
 			
+			LodQuadBuilder previousUnmergedQuads = null;
+			BitSet columnsToRebuild = null;
+			if (previousData != null 
+				&& FullDataToRenderDataTransformer.updateRenderSourceColumns(previousData.renderSource, fullDataSource, this.level, changedColumns))
+			{
+				// only the changed columns need to be converted
+				renderSource = previousData.renderSource;
+				previousUnmergedQuads = previousData.unmergedQuads;
+				columnsToRebuild = ChangedColumnUtil.getColumnsToRebuild(changedColumns);
+			}
+			else
+			{
+				if (previousData != null)
+				{
+					previousData.close();
+				}
+				
+				renderSource = FullDataToRenderDataTransformer.transformFullDataToRenderSource(fullDataSource, this.level);
+			}
 			
-			ThreadPoolExecutor executor = ThreadPoolUtil.getFileHandlerExecutor();
-			if (executor == null || executor.isTerminated())
+			if (renderSource == null || renderSource.isEmpty())
 			{
-				return new ReferencedFutureWrapper(CompletableFuture.completedFuture(null));
+				// nothing needs to be rendered
+				this.setCanRender(false);
+				return;
 			}
 			
-			this.renderSourceLoadingRefFuture = new ReferencedFutureWrapper(CompletableFuture.supplyAsync(() ->
+			
+			// only the adjacent edges touching a rebuilt column are needed
+			for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
 			{
-				try (FullDataSourceV2 fullDataSource = this.fullDataSourceProvider.get(this.pos))
+				EDhDirection direction = EDhDirection.ADJ_DIRECTIONS[i];
+				int arrayIndex = direction.ordinal() - 2;
+				if (columnsToRebuild != null && !ChangedColumnUtil.isEdgeColumnSet(columnsToRebuild, direction))
 				{
-					ColumnRenderSource renderSource = FullDataToRenderDataTransformer.transformFullDataToRenderSource(fullDataSource, this.level);
-					this.renderSourceLoadingRefFuture = null;
-					return renderSource;
+					continue;
 				}
-				catch (Exception e)
+				
+				long adjPos = DhSectionPos.getAdjacentPos(this.pos, direction);
+				try
+				{
+					if (this.quadTree.getValue(adjPos) == null)
+					{
+						continue;
+					}
+				}
+				catch (IndexOutOfBoundsException ignore)
 				{
-					LOGGER.warn("Unable to get render source " + this.pos + ", error: " + e.getMessage(), e);
-					this.renderSourceLoadingRefFuture = null;
-					return null;
+					continue;
 				}
-			}, executor));
-			return this.renderSourceLoadingRefFuture;
+				
+				adjacentEdges[arrayIndex] = this.getNeighborEdge(adjPos, direction);
+			}
+			
+			
+			
+			//==============================//
+			// build/upload new render data //
+			//==============================//
+			
+			ColumnRenderSource finalRenderSource = renderSource;
+			AtomicReference<LodQuadBuilder> unmergedQuadsRef = new AtomicReference<>(null);
+			ColumnRenderBufferBuilder.buildAndUploadBuffersAsync(this.level, renderSource, adjacentEdges, previousUnmergedQuads, columnsToRebuild, unmergedQuadsRef::set, null)
+				.whenComplete((buffer, throwable) ->
+				{
+					boolean renderDataKept = false;
+					if (throwable == null)
+					{
+						// locked so this section can't be closed between setting the buffer and keeping the render data,
+						// otherwise the render data would never be released
+						synchronized (this)
+						{
+							if (this.trySetRenderBuffer(buffer))
+							{
+								// keep the render data for the next incremental upload
+								this.incrementalRenderDataRef.set(new IncrementalRenderData(finalRenderSource, unmergedQuadsRef.get()));
+								this.quadTree.markIncrementalRenderSectionUsed(this);
+								renderDataKept = true;
+							}
+						}
+					}
+					
+					if (!renderDataKept)
+					{
+						closeRenderSources(finalRenderSource);
+					}
+					
+					this.onUploadFinished(uploadFuture);
+				});
+			uploadQueued = true;
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unexpected error in LodRenderSection incremental loading, Error: "+e.getMessage(), e);
 		}
 		finally
 		{
-			this.getRenderSourceLock.unlock();
+			if (!uploadQueued)
+			{
+				closeRenderSources(renderSource);
+				this.onUploadFinished(uploadFuture);
+			}
+		}
+	}
+	/**
+	 * Returns the edge of the given neighbor that touches this section,
+	 * loading as little as possible. <br>
+	 * Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()}
+	 * 
+	 * @param direction the direction of the neighbor from this section
+	 */
+	// both resources are pooled and their close() only returns them to their pool, so neither can be interrupted
+	@SuppressWarnings("try")
+	@Nullable
+	private ColumnRenderEdge getNeighborEdge(long adjPos, EDhDirection direction) throws Exception
+	{
+		EDhDirection adjSide = direction.getOpposite();
+		
+		ColumnRenderEdge adjEdge = this.quadTree.renderSourceCache.getCachedEdge(adjPos, adjSide);
+		if (adjEdge != null)
+		{
+			return adjEdge;
+		}
+		
+		ColumnRenderSourceCache.Handle adjHandle = this.quadTree.renderSourceCache.tryAcquireLoaded(adjPos);
+		if (adjHandle != null)
+		{
+			adjEdge = adjHandle.getEdge(adjSide);
+			adjHandle.release();
+			return adjEdge;
+		}
+		
+		// only converting the edge is cheaper than loading the whole section
+		try (FullDataSourceV2 adjFullDataSource = this.fullDataSourceProvider.get(adjPos);
+			ColumnRenderSource adjRenderSource = FullDataToRenderDataTransformer.transformFullDataToRenderSource(adjFullDataSource, this.level, ChangedColumnUtil.getAdjacentSectionEdgeColumns(direction)))
+		{
+			return (adjRenderSource != null) ? ColumnRenderEdge.createFromRenderSource(adjRenderSource, adjSide) : null;
+		}
+	}
+	/** 
+	 * Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()} 
+	 * 
+	 * @param adjEdges will be populated with any neighbor edges that are already cached, 
+	 *                 those neighbors don't need to be loaded.
+	 */
+	private ColumnRenderSourceCache.Handle[] getNeighborRenderSourcesAsync(Executor executor, ColumnRenderEdge[] adjEdges)
+	{
+		ColumnRenderSourceCache.Handle[] handleArray = new ColumnRenderSourceCache.Handle[EDhDirection.ADJ_DIRECTIONS.length];
+		for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
+		{
+			EDhDirection direction = EDhDirection.ADJ_DIRECTIONS[i];
+			int arrayIndex = direction.ordinal() - 2;
+			
+			long adjPos = DhSectionPos.getAdjacentPos(this.pos, direction);
+			try
+			{
+				if (this.quadTree.getValue(adjPos) != null)
+				{
+					adjEdges[arrayIndex] = this.quadTree.renderSourceCache.getCachedEdge(adjPos, direction.getOpposite());
+					if (adjEdges[arrayIndex] == null)
+					{
+						handleArray[arrayIndex] = this.quadTree.renderSourceCache.acquire(adjPos, executor, this::loadRenderSource);
+					}
+				}
+			}
+			catch (IndexOutOfBoundsException ignore) {}
+			
+			if (handleArray[arrayIndex] == null)
+			{
+				handleArray[arrayIndex] = ColumnRenderSourceCache.Handle.EMPTY;
+			}
+		}
+		
+		return handleArray;
+	}
+	/** 
+	 * Will return the same {@link ColumnRenderSource} if multiple requests are made for the same position,
+	 * either by this section or by its neighbors.
+	 */
+	private ColumnRenderSourceCache.Handle getRenderSourceAsync(Executor executor) { return this.quadTree.renderSourceCache.acquire(this.pos, executor, this::loadRenderSource); }
+	/** 
+	 * Can be used to load this section's or any neighbor's render data. <br>
+	 * Should be called on the {@link ThreadPoolUtil#getFileHandlerExecutor()} 
+	 */
+	// closing the data source just returns it to the pool, nothing here can be interrupted
+	@SuppressWarnings("try")
+	@Nullable
+	private ColumnRenderSource loadRenderSource(long pos)
+	{
+		try (FullDataSourceV2 fullDataSource = this.fullDataSourceProvider.get(pos))
+		{
+			return FullDataToRenderDataTransformer.transformFullDataToRenderSource(fullDataSource, this.level);
+		}
+		catch (Exception e)
+		{
+			LOGGER.warn("Unable to get render source " + DhSectionPos.toString(pos) + ", error: " + e.getMessage(), e);
+			return null;
 		}
 	}
 	
@@ -312,8 +652,17 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 	//========================//
 	
 	public boolean canRender() { return this.canRender; }
+	/** the tree is notified when this changes since it may change which sections should be rendered */
+	private void setCanRender(boolean canRender)
+	{
+		if (this.canRender != canRender)
+		{
+			this.canRender = canRender;
+			this.quadTree.requestTreeUpdate();
+		}
+	}
 	
-	public boolean gpuUploadInProgress() { return this.uploadRenderDataToGpuFuture != null; }
+	public boolean gpuUploadInProgress() { return this.uploadQueue.isRunning(); }
 	
 	
 	
@@ -370,16 +719,54 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 	// cleanup //
 	//=========//
 	
-	/** does nothing if the passed in value is null. */
-	private void tryDecrementingLoadFutureArray(@Nullable ReferencedFutureWrapper[] refFutures)
+	/** Frees any render data being held for incremental uploads. */
+	public void releaseIncrementalRenderData()
+	{
+		IncrementalRenderData incrementalRenderData = this.incrementalRenderDataRef.getAndSet(null);
+		if (incrementalRenderData != null)
+		{
+			incrementalRenderData.close();
+		}
+		
+		this.quadTree.removeIncrementalRenderSection(this);
+	}
+	
+	/** returns each render source to the pool, null values are ignored. */
+	private static void closeRenderSources(ColumnRenderSource... renderSources)
+	{
+		for (ColumnRenderSource renderSource : renderSources)
+		{
+			if (renderSource != null)
+			{
+				try
+				{
+					renderSource.close();
+				}
+				catch (Exception e)
+				{
+					LOGGER.warn("Unable to close render source " + DhSectionPos.toString(renderSource.pos) + ", error: " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+	
+	private void releaseRenderSourceHandles()
+	{
+		releaseHandles(this.renderSourceHandle);
+		releaseHandles(this.adjacentRenderSourceHandles);
+		this.renderSourceHandle = null;
+		this.adjacentRenderSourceHandles = null;
+	}
+	/** null values are ignored. */
+	private static void releaseHandles(@Nullable ColumnRenderSourceCache.Handle... handles)
 	{
-		if (refFutures != null)
+		if (handles != null)
 		{
-			for (ReferencedFutureWrapper futureWrapper : refFutures)
+			for (ColumnRenderSourceCache.Handle handle : handles)
 			{
-				if (futureWrapper != null)
+				if (handle != null)
 				{
-					futureWrapper.decrementRefCount();
+					handle.release();
 				}
 			}
 		}
@@ -417,22 +804,27 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 		
 		
 		
-		if (this.renderBuffer != null)
+		synchronized (this)
 		{
-			this.renderBuffer.close();
+			// any buffers finished after this point will be closed instead of rendered
+			this.closed = true;
+			
+			if (this.renderBuffer != null)
+			{
+				this.renderBuffer.close();
+			}
 		}
 		
-		if (this.uploadRenderDataToGpuFuture != null)
+		CompletableFuture<Void> uploadFuture = this.uploadQueue.getRunningFuture();
+		if (uploadFuture != null)
 		{
-			this.uploadRenderDataToGpuFuture.cancel(true);
+			uploadFuture.cancel(true);
 		}
 		
 		// this render section won't be rendering, we don't need to load any data for it
-		this.tryDecrementingLoadFutureArray(this.adjacentLoadRefFutures);
-		if (this.renderSourceLoadingRefFuture != null)
-		{
-			this.renderSourceLoadingRefFuture.decrementRefCount();
-		}
+		this.releaseRenderSourceHandles();
+		
+		this.releaseIncrementalRenderData();
 		
 		
 		// remove any active world gen requests that may be for this position
@@ -459,7 +851,7 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 		{
 			color = Color.green;
 		}
-		else if (this.uploadRenderDataToGpuFuture != null)
+		else if (this.uploadQueue.isRunning())
 		{
 			color = Color.yellow;
 		}
@@ -477,43 +869,22 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 	// helper classes //
 	//================//
 	
-	/**
-	 * Used to keep track of whether a {@link ColumnRenderSource} {@link CompletableFuture}
-	 * is in use or not, and if not in use cancels the future. <br> <br>
-	 *  
-	 * This helps speed up LOD loading by canceling loads that are no longer needed,
-	 * IE out of range or in an unloaded dimension.
-	 */
-	private static class ReferencedFutureWrapper
+	/** The data kept between incremental uploads */
+	private static class IncrementalRenderData
 	{
-		public final CompletableFuture<ColumnRenderSource> future;
-		// starts at 1 since the constructing method is referencing this future
-		private final AtomicInteger refCount = new AtomicInteger(1);
-		
+		public final ColumnRenderSource renderSource;
+		/** the column tracked quads from the last upload, before they were merged */
+		public final LodQuadBuilder unmergedQuads;
 		
 		
-		public ReferencedFutureWrapper(CompletableFuture<ColumnRenderSource> future) { this.future = future; }
 		
-		public void incrementRefCount() { this.refCount.incrementAndGet(); }
-		public void decrementRefCount()
+		public IncrementalRenderData(ColumnRenderSource renderSource, LodQuadBuilder unmergedQuads)
 		{
-			// automatically clean up this future if no one else is referencing it
-			if (this.refCount.decrementAndGet() <= 0)
-			{
-				if (this.future != null)
-				{
-					if (!this.future.isDone())
-					{
-						this.future.cancel(true);
-					}
-				}
-			}
+			this.renderSource = renderSource;
+			this.unmergedQuads = unmergedQuads;
 		}
 		
-		
-		
-		@Override 
-		public String toString() { return this.future.toString() + " - " + this.refCount.get(); }
+		public void close() { closeRenderSources(this.renderSource); }
 		
 	}
 	
@@ -27,30 +27,24 @@ import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
 import com.seibel.distanthorizons.core.dependencyInjection.ModAccessorInjector;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
-import com.seibel.distanthorizons.core.enums.EDhDirection;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.logging.f3.F3Screen;
 import com.seibel.distanthorizons.core.pos.DhLodPos;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
-import com.seibel.distanthorizons.core.pos.Pos2D;
 import com.seibel.distanthorizons.core.render.renderer.LodRenderer;
 import com.seibel.distanthorizons.core.util.LodUtil;
-import com.seibel.distanthorizons.core.util.objects.SortedArraySet;
-import com.seibel.distanthorizons.core.util.objects.quadTree.QuadNode;
+import com.seibel.distanthorizons.core.util.objects.quadTree.NearToFarValueSorter;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftRenderWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.modAccessor.IIrisAccessor;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
 import com.seibel.distanthorizons.coreapi.interfaces.dependencyInjection.IOverrideInjector;
 import com.seibel.distanthorizons.coreapi.util.math.Mat4f;
 import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
-import com.seibel.distanthorizons.coreapi.util.math.Vec3f;
 import org.apache.logging.log4j.Logger;
 import org.joml.Matrix4f;
 import org.joml.Matrix4fc;
 
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.ListIterator;
+import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -62,14 +56,18 @@ public class RenderBufferHandler implements AutoCloseable
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	
 	private static final IMinecraftRenderWrapper MC_RENDER = SingletonInjector.INSTANCE.get(IMinecraftRenderWrapper.class);
-
+	
 	private static final IIrisAccessor IRIS_ACCESSOR = ModAccessorInjector.INSTANCE.get(IIrisAccessor.class);
 	
 	/** contains all relevant data */
 	public final LodQuadTree lodQuadTree;
 	
-	// TODO: Make sorting go into the update loop instead of the render loop as it doesn't need to be done every frame
-	private SortedArraySet<LoadedRenderBuffer> loadedNearToFarBuffers = null;
+	/** sorted on the update thread so the render thread doesn't have to sort every frame */
+	private final NearToFarValueSorter<LodRenderSection> renderSectionSorter = new NearToFarValueSorter<>((renderSection) -> renderSection.pos, LodRenderSection[]::new);
+	/** only used by the render thread */
+	private final ArrayList<ColumnRenderBuffer> nearToFarBuffers = new ArrayList<>();
+	/** only used by the render thread */
+	private final HorizonOcclusionCuller horizonCuller = new HorizonOcclusionCuller();
 	
 	private final AtomicBoolean rebuildAllBuffers = new AtomicBoolean(false);
 	
@@ -79,6 +77,8 @@ public class RenderBufferHandler implements AutoCloseable
 	private int culledBufferCount;
 	private int shadowVisibleBufferCount;
 	private int shadowCulledBufferCount;
+	private int occludedBufferCount;
+	private long lastRenderListBuildTimeInNs;
 	
 	
 	
@@ -128,6 +128,22 @@ public class RenderBufferHandler implements AutoCloseable
 					countText += "/" + (this.shadowVisibleBufferCount + this.shadowCulledBufferCount);
 				}
 				return LodUtil.formatLog("Shadow Buffer Count: " + countText);
+			},
+			() ->
+			{
+				if (Config.Client.Advanced.Graphics.AdvancedGraphics.disableHorizonOcclusionCulling.get())
+				{
+					return null;
+				}
+				
+				return LodUtil.formatLog("Occluded Buffer Count: " + this.occludedBufferCount + ", occluders: " + this.horizonCuller.getOccluderCount());
+			},
+			() ->
+			{
+				// how much CPU time ordering the render list takes, both when sorting (on the update thread) and each frame
+				double sortTimeInMs = this.renderSectionSorter.getLastSortTimeInNs() / 1_000_000.0;
+				double buildTimeInMs = this.lastRenderListBuildTimeInNs / 1_000_000.0;
+				return LodUtil.formatLog("Render List: sort " + String.format("%.3f", sortTimeInMs) + "ms, per frame " + String.format("%.3f", buildTimeInMs) + "ms");
 		});
 	}
 	
@@ -138,114 +154,17 @@ public class RenderBufferHandler implements AutoCloseable
 	//=================//
 	
 	/**
-	 * The following buildRenderList sorting method is based on the following reddit post: <br>
-	 * <a href="https://www.reddit.com/r/VoxelGameDev/comments/a0l8zc/correct_depthordering_for_translucent_discrete/">correct_depth_ordering_for_translucent_discrete</a> <br><br>
-	 *
-	 * TODO: This might get locked by update() causing move() call. Is there a way to avoid this?
-	 *       Maybe dupe the base list and use atomic swap on render? Or is this not worth it?
+	 * Sorts the render sections from nearest to farthest from the player. <br>
+	 * Should be called from the same thread that updates the {@link LodQuadTree},
+	 * that way the render thread only has to read the last sorted list each frame
+	 * and the sorting is only done when the tree changes.
 	 */
-	public void buildRenderListAndUpdateSections(IClientLevelWrapper clientLevelWrapper, DhApiRenderParam renderEventParam, Vec3f lookForwardVector)
+	public void updateRenderListOrder() { this.renderSectionSorter.update(this.lodQuadTree); }
+	
+	/** The render list order comes from {@link RenderBufferHandler#updateRenderListOrder()}. */
+	public void buildRenderListAndUpdateSections(IClientLevelWrapper clientLevelWrapper, DhApiRenderParam renderEventParam)
 	{
-		EDhDirection[] axisDirections = new EDhDirection[3];
-		
-		// Do the axis that are the longest first (i.e. the largest absolute value of the lookForwardVector),
-		// with the sign being the opposite of the respective lookForwardVector component's sign
-		float absX = Math.abs(lookForwardVector.x);
-		float absY = Math.abs(lookForwardVector.y);
-		float absZ = Math.abs(lookForwardVector.z);
-		EDhDirection xDir = lookForwardVector.x < 0 ? EDhDirection.EAST : EDhDirection.WEST;
-		EDhDirection yDir = lookForwardVector.y < 0 ? EDhDirection.UP : EDhDirection.DOWN;
-		EDhDirection zDir = lookForwardVector.z < 0 ? EDhDirection.SOUTH : EDhDirection.NORTH;
-		
-		if (absX >= absY && absX >= absZ)
-		{
-			axisDirections[0] = xDir;
-			if (absY >= absZ)
-			{
-				axisDirections[1] = yDir;
-				axisDirections[2] = zDir;
-			}
-			else
-			{
-				axisDirections[1] = zDir;
-				axisDirections[2] = yDir;
-			}
-		}
-		else if (absY >= absX && absY >= absZ)
-		{
-			axisDirections[0] = yDir;
-			if (absX >= absZ)
-			{
-				axisDirections[1] = xDir;
-				axisDirections[2] = zDir;
-			}
-			else
-			{
-				axisDirections[1] = zDir;
-				axisDirections[2] = xDir;
-			}
-		}
-		else
-		{
-			axisDirections[0] = zDir;
-			if (absX >= absY)
-			{
-				axisDirections[1] = xDir;
-				axisDirections[2] = yDir;
-			}
-			else
-			{
-				axisDirections[1] = yDir;
-				axisDirections[2] = xDir;
-			}
-		}
-		
-		Pos2D cPos = this.lodQuadTree.getCenterBlockPos().toPos2D();
-		
-		// Now that we have the axis directions, we can sort the render list
-		Comparator<LoadedRenderBuffer> farToNearComparator = (loadedBufferA, loadedBufferB) ->
-		{
-			Pos2D aPos = DhSectionPos.getCenterBlockPos(loadedBufferA.pos).toPos2D();
-			Pos2D bPos = DhSectionPos.getCenterBlockPos(loadedBufferB.pos).toPos2D();
-			if (true)
-			{
-				int aManhattanDistance = aPos.manhattanDist(cPos);
-				int bManhattanDistance = bPos.manhattanDist(cPos);
-				return bManhattanDistance - aManhattanDistance;
-			}
-			
-			for (EDhDirection axisDirection : axisDirections)
-			{
-				if (axisDirection.getAxis().isVertical())
-				{
-					continue; // We only sort in the horizontal direction
-				}
-				
-				int abPosDifference;
-				if (axisDirection.getAxis().equals(EDhDirection.Axis.X))
-				{
-					abPosDifference = aPos.x - bPos.x;
-				}
-				else
-				{
-					abPosDifference = aPos.y - bPos.y;
-				}
-				
-				if (abPosDifference == 0)
-				{
-					continue;
-				}
-				
-				if (axisDirection.getAxisDirection().equals(EDhDirection.AxisDirection.NEGATIVE))
-				{
-					abPosDifference = -abPosDifference; // Reverse the sign
-				}
-				return abPosDifference;
-			}
-			
-			return DhSectionPos.getDetailLevel(loadedBufferA.pos) - DhSectionPos.getDetailLevel(loadedBufferB.pos); // If all else fails, sort by detail
-		};
-		this.loadedNearToFarBuffers = new SortedArraySet<>((a, b) -> -farToNearComparator.compare(a, b)); // TODO is the comparator named wrong?
+		long startTimeNs = System.nanoTime();
 		
 		
 		
@@ -290,6 +209,37 @@ public class RenderBufferHandler implements AutoCloseable
 		
 		
 		
+		//=============================//
+		// build the occlusion horizon //
+		//=============================//
+		
+		// already sorted near to far on the update thread
+		LodRenderSection[] nearToFarSections = this.renderSectionSorter.getNearToFarSnapshot();
+		
+		// the horizon is built from the camera's position, so it can't be used for the shadow pass,
+		// and the terrain below a ceiling's surface is mostly hollow, so it can't be used as an occluder
+		boolean enableOcclusionCulling = !isShadowPass
+				&& !clientLevelWrapper.hasCeiling()
+				&& !Config.Client.Advanced.Graphics.AdvancedGraphics.disableHorizonOcclusionCulling.get();
+		if (enableOcclusionCulling)
+		{
+			Vec3d cameraPos = MC_RENDER.getCameraExactPosition();
+			this.horizonCuller.startFrame(cameraPos.x, cameraPos.y, cameraPos.z);
+			
+			// sections outside the frustum can still hide sections inside it
+			for (LodRenderSection renderSection : nearToFarSections)
+			{
+				ColumnRenderBuffer buffer = renderSection.renderBuffer;
+				if (buffer != null && renderSection.renderingEnabled && buffer.buffersUploaded)
+				{
+					long pos = renderSection.pos;
+					this.horizonCuller.addOccluder(DhSectionPos.getMinCornerBlockX(pos), DhSectionPos.getMinCornerBlockZ(pos), DhSectionPos.getBlockWidth(pos), buffer.minSurfaceBlockY);
+				}
+			}
+		}
+		
+		
+		
 		//=========================//
 		// Update the section list //
 		//=========================//
@@ -301,21 +251,14 @@ public class RenderBufferHandler implements AutoCloseable
 		else
 		{
 			this.culledBufferCount = 0;
+			this.occludedBufferCount = 0;
 		}
 		
 		boolean rebuildAllBuffers = this.rebuildAllBuffers.getAndSet(false);
-		Iterator<QuadNode<LodRenderSection>> nodeIterator = this.lodQuadTree.nodeIterator();
-		while (nodeIterator.hasNext())
+		this.nearToFarBuffers.clear();
+		
+		for (LodRenderSection renderSection : nearToFarSections)
 		{
-			QuadNode<LodRenderSection> node = nodeIterator.next();
-			
-			long sectionPos = node.sectionPos;
-			LodRenderSection renderSection = node.value;
-			if (renderSection == null)
-			{
-				continue;
-			}
-			
 			try
 			{
 				if (enableFrustumCulling)
@@ -340,13 +283,24 @@ public class RenderBufferHandler implements AutoCloseable
 				}
 				
 				ColumnRenderBuffer buffer = renderSection.renderBuffer;
-				if (buffer == null || !renderSection.renderingEnabled)
+				// the snapshot can be a tick old, so the section may have been closed since it was sorted
+				if (buffer == null || !renderSection.renderingEnabled || !buffer.buffersUploaded)
 				{
 					continue;
 				}
 				
+				if (enableOcclusionCulling)
+				{
+					long pos = renderSection.pos;
+					if (this.horizonCuller.isOccluded(DhSectionPos.getMinCornerBlockX(pos), DhSectionPos.getMinCornerBlockZ(pos), DhSectionPos.getBlockWidth(pos), buffer.maxBlockY))
+					{
+						this.occludedBufferCount++;
+						continue;
+					}
+				}
+				
 				
-				this.loadedNearToFarBuffers.add(new LoadedRenderBuffer(buffer, sectionPos));
+				this.nearToFarBuffers.add(buffer);
 			}
 			catch (Exception e)
 			{
@@ -356,12 +310,14 @@ public class RenderBufferHandler implements AutoCloseable
 		
 		if (isShadowPass)
 		{
-			this.shadowVisibleBufferCount = this.loadedNearToFarBuffers.size();
+			this.shadowVisibleBufferCount = this.nearToFarBuffers.size();
 		}
 		else
 		{
-			this.visibleBufferCount = this.loadedNearToFarBuffers.size();
+			this.visibleBufferCount = this.nearToFarBuffers.size();
 		}
+		
+		this.lastRenderListBuildTimeInNs = System.nanoTime() - startTimeNs;
 	}
 	
 	public void MarkAllBuffersDirty() { this.rebuildAllBuffers.set(true); }
@@ -374,23 +330,17 @@ public class RenderBufferHandler implements AutoCloseable
 	
 	public void renderOpaque(LodRenderer renderContext, DhApiRenderParam renderEventParam)
 	{
-		// TODO why can these sometimes be null when teleporting between multiverses
-		if (this.loadedNearToFarBuffers != null)
+		for (int i = 0; i < this.nearToFarBuffers.size(); i++)
 		{
-			this.loadedNearToFarBuffers.forEach(loadedBuffer -> loadedBuffer.buffer.renderOpaque(renderContext, renderEventParam));
+			this.nearToFarBuffers.get(i).renderOpaque(renderContext, renderEventParam);
 		}
 	}
 	public void renderTransparent(LodRenderer renderContext, DhApiRenderParam renderEventParam)
 	{
-		// TODO why can these sometimes be null when teleporting between multiverses
-		if (this.loadedNearToFarBuffers != null)
+		// far to near so transparent buffers blend correctly
+		for (int i = this.nearToFarBuffers.size() - 1; i >= 0; i--)
 		{
-			ListIterator<LoadedRenderBuffer> iter = this.loadedNearToFarBuffers.listIterator(this.loadedNearToFarBuffers.size());
-			while (iter.hasPrevious())
-			{
-				LoadedRenderBuffer loadedBuffer = iter.previous();
-				loadedBuffer.buffer.renderTransparent(renderContext, renderEventParam);
-			}
+			this.nearToFarBuffers.get(i).renderTransparent(renderContext, renderEventParam);
 		}
 	}
 	
@@ -403,36 +353,9 @@ public class RenderBufferHandler implements AutoCloseable
 	@Override
 	public void close()
 	{
-		Iterator<QuadNode<LodRenderSection>> nodeIterator = this.lodQuadTree.nodeIterator();
-		while (nodeIterator.hasNext())
-		{
-			LodRenderSection renderSection = nodeIterator.next().value;
-			if (renderSection != null)
-			{
-				renderSection.close();
-			}
-		}
+		this.lodQuadTree.forEachValue(LodRenderSection::close);
 		
 		this.f3Message.close();
 	}
 	
-	
-	
-	//================//
-	// helper classes //
-	//================//
-	
-	private static class LoadedRenderBuffer
-	{
-		public final ColumnRenderBuffer buffer;
-		public final long pos;
-		
-		LoadedRenderBuffer(ColumnRenderBuffer buffer, long pos)
-		{
-			this.buffer = buffer;
-			this.pos = pos;
-		}
-		
-	}
-	
 }
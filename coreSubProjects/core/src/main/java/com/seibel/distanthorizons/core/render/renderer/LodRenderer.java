@@ -349,7 +349,7 @@ public class LodRenderer
 			
 			if (renderingFirstPass)
 			{
-				this.bufferHandler.buildRenderListAndUpdateSections(clientLevelWrapper, renderEventParam, MC_RENDER.getLookAtVector());
+				this.bufferHandler.buildRenderListAndUpdateSections(clientLevelWrapper, renderEventParam);
 				
 				transparencyEnabled = Config.Client.Advanced.Graphics.Quality.transparency.get().transparencyEnabled;
 				fakeOceanFloor = Config.Client.Advanced.Graphics.Quality.transparency.get().fakeTransparencyEnabled;
@@ -45,6 +45,9 @@ public class FullDataSourceV2DTO implements IBaseDTO<Long>, INetworkObject
 {
 	public static final boolean VALIDATE_INPUT_DATAPOINTS = true;
 	
+	/** used when the DTO wasn't created from a data source, IE when it was read from the network or saved by an older version of DH */
+	public static final byte UNKNOWN_MIN_COLUMN_GEN_STEP = -1;
+	
 	
 	public long pos;
 	
@@ -57,6 +60,11 @@ public class FullDataSourceV2DTO implements IBaseDTO<Long>, INetworkObject
 	
 	/** @see EDhApiWorldGenerationStep */
 	public byte[] compressedColumnGenStepByteArray;
+	/** 
+	 * the lowest {@link EDhApiWorldGenerationStep} of any column, 
+	 * {@link FullDataSourceV2DTO#UNKNOWN_MIN_COLUMN_GEN_STEP} if it hasn't been calculated. 
+	 */
+	public byte minColumnGenStep = UNKNOWN_MIN_COLUMN_GEN_STEP;
 	/** @see EDhApiWorldCompressionMode */
 	public byte[] compressedWorldCompressionModeByteArray;
 	
@@ -83,13 +91,15 @@ public class FullDataSourceV2DTO implements IBaseDTO<Long>, INetworkObject
 		byte[] compressedWorldCompressionModeByteArray = writeWorldCompressionModeToBlob(dataSource.columnWorldCompressionMode, compressionModeEnum);
 		byte[] mappingByteArray = writeDataMappingToBlob(dataSource.mapping, compressionModeEnum);
 		
-		return new FullDataSourceV2DTO(
+		FullDataSourceV2DTO dto = new FullDataSourceV2DTO(
 				dataSource.getPos(),
 				checkedDataPointArray.checksum, compressedWorldGenStepByteArray, compressedWorldCompressionModeByteArray, FullDataSourceV2.DATA_FORMAT_VERSION, compressionModeEnum.value, checkedDataPointArray.byteArray,
 				dataSource.lastModifiedUnixDateTime, dataSource.createdUnixDateTime,
 				mappingByteArray, dataSource.applyToParent,
 				dataSource.levelMinY
 		);
+		dto.minColumnGenStep = getMinGenerationStep(dataSource.columnGenerationSteps);
+		return dto;
 	}
 	
 	/** Should only be used for subsequent decoding */
@@ -198,6 +208,95 @@ public class FullDataSourceV2DTO implements IBaseDTO<Long>, INetworkObject
 	
 	
 	
+	//=================//
+	// generation step //
+	//=================//
+	
+	/**
+	 * @return the lowest {@link EDhApiWorldGenerationStep} value in the given array.
+	 * Values that don't match a {@link EDhApiWorldGenerationStep} are ignored.
+	 */
+	public static byte getMinGenerationStep(byte[] columnGenerationSteps)
+	{
+		byte minGenStepValue = EDhApiWorldGenerationStep.LIGHT.value;
+		for (int i = 0; i < columnGenerationSteps.length; i++)
+		{
+			byte genStepValue = columnGenerationSteps[i];
+			if (genStepValue < minGenStepValue
+				&& genStepValue >= EDhApiWorldGenerationStep.EMPTY.value)
+			{
+				minGenStepValue = genStepValue;
+				if (minGenStepValue == EDhApiWorldGenerationStep.EMPTY.value)
+				{
+					// nothing can be lower
+					break;
+				}
+			}
+		}
+		
+		return minGenStepValue;
+	}
+	
+	/** Can be used to determine {@link FullDataSourceV2DTO#minColumnGenStep} when it is unknown. */
+	public byte[] decompressColumnGenerationSteps() throws IOException, DataCorruptedException, IllegalArgumentException
+	{ return readBlobToGenerationSteps(this.compressedColumnGenStepByteArray, this.getCompressionMode()); }
+	
+	/**
+	 * Re-encodes every blob using the given compression mode and updates the checksum. <br>
+	 * The data itself isn't changed so this doesn't need a level wrapper
+	 * and can be used to convert existing data after the compression config changes.
+	 */
+	public void recompress(EDhApiDataCompressionMode newCompressionModeEnum) throws IOException, InterruptedException, DataCorruptedException, IllegalArgumentException
+	{
+		EDhApiDataCompressionMode oldCompressionModeEnum = this.getCompressionMode();
+		if (oldCompressionModeEnum == newCompressionModeEnum)
+		{
+			return;
+		}
+		
+		
+		// blobs are nullable in the database, null ones are left as-is
+		if (this.compressedDataByteArray != null)
+		{
+			LongArrayList[] dataArray = readBlobToDataSourceDataArray(this.compressedDataByteArray, oldCompressionModeEnum);
+			CheckedByteArray checkedDataPointArray = writeDataSourceDataArrayToBlob(dataArray, newCompressionModeEnum);
+			this.compressedDataByteArray = checkedDataPointArray.byteArray;
+			this.dataChecksum = checkedDataPointArray.checksum;
+		}
+		
+		if (this.compressedColumnGenStepByteArray != null)
+		{
+			byte[] columnGenStepByteArray = readBlobToGenerationSteps(this.compressedColumnGenStepByteArray, oldCompressionModeEnum);
+			this.compressedColumnGenStepByteArray = writeGenerationStepsToBlob(columnGenStepByteArray, newCompressionModeEnum);
+		}
+		
+		if (this.compressedWorldCompressionModeByteArray != null)
+		{
+			byte[] worldCompressionModeByteArray = readBlobToWorldCompressionMode(this.compressedWorldCompressionModeByteArray, oldCompressionModeEnum);
+			this.compressedWorldCompressionModeByteArray = writeWorldCompressionModeToBlob(worldCompressionModeByteArray, newCompressionModeEnum);
+		}
+		
+		if (this.compressedMappingByteArray != null)
+		{
+			this.compressedMappingByteArray = recompressDataMappingBlob(this.compressedMappingByteArray, oldCompressionModeEnum, newCompressionModeEnum);
+		}
+		
+		this.compressionModeValue = newCompressionModeEnum.value;
+	}
+	
+	/** @return the combined length of every blob, IE roughly how much space this DTO takes up in the database */
+	public long getCompressedByteLength()
+	{
+		long byteLength = 0;
+		byteLength += (this.compressedDataByteArray != null) ? this.compressedDataByteArray.length : 0;
+		byteLength += (this.compressedColumnGenStepByteArray != null) ? this.compressedColumnGenStepByteArray.length : 0;
+		byteLength += (this.compressedWorldCompressionModeByteArray != null) ? this.compressedWorldCompressionModeByteArray.length : 0;
+		byteLength += (this.compressedMappingByteArray != null) ? this.compressedMappingByteArray.length : 0;
+		return byteLength;
+	}
+	
+	
+	
 	//=================//
 	// (de)serializing //
 	//=================//
@@ -355,6 +454,35 @@ public class FullDataSourceV2DTO implements IBaseDTO<Long>, INetworkObject
 		FullDataPointIdMap mapping = FullDataPointIdMap.deserialize(compressedIn, pos, levelWrapper);
 		return mapping;
 	}
+	/**
+	 * Copies the serialized entries directly since deserializing them requires a level wrapper. <br>
+	 * Must match the format written by {@link FullDataPointIdMap#serialize(DhDataOutputStream)}.
+	 */
+	private static byte[] recompressDataMappingBlob(byte[] compressedMappingByteArray, EDhApiDataCompressionMode oldCompressionModeEnum, EDhApiDataCompressionMode newCompressionModeEnum) throws IOException, DataCorruptedException
+	{
+		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressedMappingByteArray);
+		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, oldCompressionModeEnum);
+		
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, newCompressionModeEnum);
+		
+		int entryCount = compressedIn.readInt();
+		if (entryCount < 0)
+		{
+			throw new DataCorruptedException("Mapping entry count should have a number greater than or equal to 0, returned value ["+entryCount+"].");
+		}
+		
+		compressedOut.writeInt(entryCount);
+		for (int i = 0; i < entryCount; i++)
+		{
+			compressedOut.writeUTF(compressedIn.readUTF());
+		}
+		
+		compressedOut.flush();
+		byteArrayOutputStream.close();
+		
+		return byteArrayOutputStream.toByteArray();
+	}
 	
 	@Override
 	public void encode(ByteBuf out)
@@ -431,6 +559,7 @@ public class FullDataSourceV2DTO implements IBaseDTO<Long>, INetworkObject
 				.add("dataFormatVersion", this.dataFormatVersion)
 				.add("compressionModeValue", this.compressionModeValue)
 				.add("applyToParent", this.applyToParent)
+				.add("minColumnGenStep", this.minColumnGenStep)
 				.add("lastModifiedUnixDateTime", this.lastModifiedUnixDateTime)
 				.add("createdUnixDateTime", this.createdUnixDateTime)
 				.toString();
@@ -19,6 +19,7 @@
 
 package com.seibel.distanthorizons.core.sql.repo;
 
+import com.seibel.distanthorizons.core.file.store.IDataStore;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.sql.DatabaseUpdater;
 import com.seibel.distanthorizons.core.sql.DbConnectionClosedException;
@@ -30,16 +31,22 @@ import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Handles interfacing with SQL databases.
  *
  * @param <TDTO> DTO stands for "Data Transfer Object" 
  */
-public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implements AutoCloseable
+public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implements IDataStore<TKey, TDTO>
 {
 	/** a value of 0 means there's no timeout */
 	public static final int TIMEOUT_SECONDS = 0;
+	/** 
+	 * How many free database pages are returned to the OS at once when vacuuming in chunks. <br>
+	 * 1024 pages is 4 MB with SQLite's default page size.
+	 */
+	public static final int VACUUM_PAGE_COUNT_PER_BATCH = 1024;
 	
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	private static final ConcurrentHashMap<String, Connection> CONNECTIONS_BY_CONNECTION_STRING = new ConcurrentHashMap<>();
@@ -117,6 +124,11 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 		
 		ACTIVE_CONNECTION_STRINGS_BY_REPO.put(this, this.connectionString);
 		
+		// the vacuum mode can only be changed for free before any tables exist
+		if (this.isDatabaseEmpty())
+		{
+			this.queryDictionaryFirst("PRAGMA auto_vacuum = INCREMENTAL;");
+		}
 		DatabaseUpdater.runAutoUpdateScripts(this);
 	}
 	
@@ -126,6 +138,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	// high level DB //
 	//===============//
 	
+	@Override
 	public TDTO getByKey(TKey primaryKey)
 	{
 		Map<String, Object> objectMap = this.queryDictionaryFirst(this.createSelectByKeySql(primaryKey));
@@ -140,6 +153,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	}
 	
 	
+	@Override
 	public void save(TDTO dto)
 	{
 		// a lock is necessary to prevent concurrent modification between
@@ -202,6 +216,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	public void delete(TDTO dto) { this.deleteWithKey(dto.getKey()); }
+	@Override
 	public void deleteWithKey(TKey key)
 	{
 		String whereEqualStatement = this.createWhereStatement(key);
@@ -209,10 +224,12 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	}
 	
 	/** With great power comes great responsibility... */
+	@Override
 	public void deleteAll() { this.queryDictionaryFirst("DELETE FROM "+this.getTableName()); }
 	
 	
 	public boolean exists(TDTO dto) { return this.existsWithKey(dto.getKey()); }
+	@Override
 	public boolean existsWithKey(TKey key)
 	{
 		String whereEqualStatement = this.createWhereStatement(key);
@@ -371,7 +388,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	{
 		try
 		{
-			return this.connection != null && this.connection.isClosed();
+			return this.connection != null && !this.connection.isClosed();
 		}
 		catch (SQLException e)
 		{
@@ -416,6 +433,92 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	
+	//===========//
+	// vacuuming //
+	//===========//
+	
+	/**
+	 * Note: this affects the whole database file, not just this repo's table. <br>
+	 * When false, free pages can only be returned to the OS via a full "VACUUM". <br>
+	 * New databases have incremental vacuuming enabled automatically.
+	 */
+	public boolean isIncrementalVacuumEnabled()
+	{
+		Map<String, Object> resultMap = this.queryDictionaryFirst("PRAGMA auto_vacuum;");
+		// 0 = NONE, 1 = FULL, 2 = INCREMENTAL
+		return resultMap != null && ((Number) resultMap.get("auto_vacuum")).intValue() == 2;
+	}
+	
+	/**
+	 * Changing the auto vacuum mode requires re-writing the entire database,
+	 * so this will lock the database until it is done and needs enough free disk space for a second copy. <br>
+	 * Because of that this should only be done while the game isn't using the database,
+	 * IE via {@link com.seibel.distanthorizons.core.jar.lodDatabase.LodDatabaseTool}.
+	 */
+	public void enableIncrementalVacuum()
+	{
+		this.queryDictionaryFirst("PRAGMA auto_vacuum = INCREMENTAL;");
+		this.queryDictionaryFirst("VACUUM;");
+	}
+	
+	private boolean isDatabaseEmpty()
+	{
+		Map<String, Object> resultMap = this.queryDictionaryFirst("SELECT COUNT(*) AS tableCount FROM sqlite_master;");
+		return resultMap != null && ((Number) resultMap.get("tableCount")).intValue() == 0;
+	}
+	
+	/** @return how many bytes are unused in the database file and could be freed by vacuuming */
+	public long getFreeByteCount()
+	{
+		Map<String, Object> freePageMap = this.queryDictionaryFirst("PRAGMA freelist_count;");
+		Map<String, Object> pageSizeMap = this.queryDictionaryFirst("PRAGMA page_size;");
+		if (freePageMap == null || pageSizeMap == null)
+		{
+			return 0;
+		}
+		
+		return ((Number) freePageMap.get("freelist_count")).longValue() * ((Number) pageSizeMap.get("page_size")).longValue();
+	}
+	
+	/**
+	 * Returns up to the given number of free pages to the OS, 0 returns every free page. <br>
+	 * Does nothing unless {@link AbstractDhRepo#isIncrementalVacuumEnabled()} is true.
+	 */
+	public void runIncrementalVacuum(int pageCount) { this.queryDictionaryFirst("PRAGMA incremental_vacuum(" + pageCount + ");"); }
+	/**
+	 * Returns every free page to the OS, {@link AbstractDhRepo#VACUUM_PAGE_COUNT_PER_BATCH} pages at a time
+	 * so the database is only locked briefly for each chunk. <br>
+	 * Does nothing unless {@link AbstractDhRepo#isIncrementalVacuumEnabled()} is true.
+	 * 
+	 * @param shouldContinue checked before each chunk, vacuuming stops if this returns false
+	 * @return false if vacuuming was stopped before every free page was returned
+	 */
+	public boolean runIncrementalVacuumInChunks(BooleanSupplier shouldContinue)
+	{
+		long freeByteCount = this.getFreeByteCount();
+		while (freeByteCount > 0)
+		{
+			if (!shouldContinue.getAsBoolean())
+			{
+				return false;
+			}
+			
+			this.runIncrementalVacuum(VACUUM_PAGE_COUNT_PER_BATCH);
+			
+			long newFreeByteCount = this.getFreeByteCount();
+			if (newFreeByteCount >= freeByteCount)
+			{
+				// shouldn't happen, but prevents looping forever
+				break;
+			}
+			freeByteCount = newFreeByteCount;
+		}
+		
+		return true;
+	}
+	
+	
+	
 	//================//
 	// helper methods //
 	//================//
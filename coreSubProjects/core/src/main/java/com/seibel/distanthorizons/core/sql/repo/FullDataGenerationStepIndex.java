@@ -0,0 +1,255 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.sql.repo;
+
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In memory cache of each full data source's lowest {@link EDhApiWorldGenerationStep}. <br>
+ * Positions are grouped into square regions of {@link FullDataGenerationStepIndex#REGION_WIDTH}
+ * sections (at the same detail level) so a whole region can be loaded with a single query,
+ * after which checking if a position needs world generation doesn't need to hit the database. <br><br>
+ *
+ * The index must be updated after every save/delete, otherwise it will get out of sync with the database. <br><br>
+ *
+ * Regions are loaded outside the index's lock so a slow query doesn't block lookups in other regions.
+ * Threads that need a region that's already being loaded wait for that load instead of starting another one.
+ *
+ * @see FullDataSourceV2Repo
+ */
+public class FullDataGenerationStepIndex
+{
+	/** how many sections wide each region is */
+	public static final int REGION_WIDTH = 32;
+	/** each region uses 1 KB, so this limits the index to roughly 1 MB */
+	public static final int MAX_CACHED_REGION_COUNT = 1024;
+	
+	/** no data source exists at this position */
+	public static final byte NOT_PRESENT = IFullDataStore.GEN_STEP_NOT_PRESENT;
+	/** a data source exists but its min generation step wasn't saved (IE it was saved by an older version) */
+	public static final byte UNKNOWN = IFullDataStore.GEN_STEP_UNKNOWN;
+	
+	
+	private final IRegionLoaderFunc regionLoaderFunc;
+	
+	/** access ordered so the least recently used regions are removed first */
+	private final LinkedHashMap<Long, byte[]> regionStepsByRegionPos = new LinkedHashMap<Long, byte[]>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) { return this.size() > MAX_CACHED_REGION_COUNT; }
+	};
+	/** regions that are currently being loaded from the database */
+	private final HashMap<Long, RegionLoad> regionLoadByRegionPos = new HashMap<>();
+	/** incremented whenever the index is cleared so regions that started loading beforehand aren't cached */
+	private int clearCount = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataGenerationStepIndex(IRegionLoaderFunc regionLoaderFunc) { this.regionLoaderFunc = regionLoaderFunc; }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/**
+	 * Loads the region containing this position from the database if it isn't already cached.
+	 * @return {@link FullDataGenerationStepIndex#NOT_PRESENT}, {@link FullDataGenerationStepIndex#UNKNOWN},
+	 *          or the lowest {@link EDhApiWorldGenerationStep#value} for the given position
+	 */
+	public byte get(long pos)
+	{
+		long regionPos = getRegionPos(pos);
+		int index = getIndexInRegion(pos);
+		
+		RegionLoad regionLoad;
+		boolean loadRegion = false;
+		synchronized (this)
+		{
+			byte[] regionSteps = this.regionStepsByRegionPos.get(regionPos);
+			if (regionSteps != null)
+			{
+				return regionSteps[index];
+			}
+			
+			regionLoad = this.regionLoadByRegionPos.get(regionPos);
+			if (regionLoad == null)
+			{
+				regionLoad = new RegionLoad(this.clearCount);
+				this.regionLoadByRegionPos.put(regionPos, regionLoad);
+				loadRegion = true;
+			}
+		}
+		
+		
+		byte[] regionSteps;
+		if (loadRegion)
+		{
+			regionSteps = this.loadRegion(regionPos, regionLoad);
+		}
+		else
+		{
+			// another thread is already loading this region
+			regionSteps = regionLoad.future.join();
+		}
+		
+		// null if the database couldn't be read
+		return (regionSteps != null) ? regionSteps[index] : NOT_PRESENT;
+	}
+	@Nullable
+	private byte[] loadRegion(long regionPos, RegionLoad regionLoad)
+	{
+		byte[] regionSteps = null;
+		try
+		{
+			regionSteps = this.regionLoaderFunc.loadRegion(regionPos);
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				this.regionLoadByRegionPos.remove(regionPos);
+				if (regionSteps != null)
+				{
+					// saves that happened during the load may not have been included in the query
+					for (Map.Entry<Integer, Byte> entry : regionLoad.minGenStepByIndex.entrySet())
+					{
+						regionSteps[entry.getKey()] = entry.getValue();
+					}
+					
+					if (regionLoad.clearCount == this.clearCount)
+					{
+						this.regionStepsByRegionPos.put(regionPos, regionSteps);
+					}
+				}
+			}
+			
+			regionLoad.future.complete(regionSteps);
+		}
+		
+		return regionSteps;
+	}
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	/** Should be called after the given position was saved to the database. */
+	public synchronized void set(long pos, byte minGenStep)
+	{
+		// regions that aren't loaded will be read from the database when they're needed
+		long regionPos = getRegionPos(pos);
+		byte[] regionSteps = this.regionStepsByRegionPos.get(regionPos);
+		if (regionSteps != null)
+		{
+			regionSteps[getIndexInRegion(pos)] = minGenStep;
+		}
+		
+		RegionLoad regionLoad = this.regionLoadByRegionPos.get(regionPos);
+		if (regionLoad != null)
+		{
+			regionLoad.minGenStepByIndex.put(getIndexInRegion(pos), minGenStep);
+		}
+	}
+	
+	/** Used when filling in a value for legacy data, only changes the index if nothing else was saved in the meantime. */
+	public synchronized void setIfUnknown(long pos, byte minGenStep)
+	{
+		byte[] regionSteps = this.regionStepsByRegionPos.get(getRegionPos(pos));
+		if (regionSteps != null
+			&& regionSteps[getIndexInRegion(pos)] == UNKNOWN)
+		{
+			regionSteps[getIndexInRegion(pos)] = minGenStep;
+		}
+	}
+	
+	public synchronized void clear()
+	{
+		this.regionStepsByRegionPos.clear();
+		this.clearCount++;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** @return a {@link DhSectionPos} with the same detail level as the given position, but with the region's X/Z coordinates */
+	public static long getRegionPos(long pos)
+	{
+		return DhSectionPos.encode(DhSectionPos.getDetailLevel(pos),
+				Math.floorDiv(DhSectionPos.getX(pos), REGION_WIDTH),
+				Math.floorDiv(DhSectionPos.getZ(pos), REGION_WIDTH));
+	}
+	
+	/** @return the section X coordinate of the region's lowest corner */
+	public static int getRegionMinSectionX(long regionPos) { return DhSectionPos.getX(regionPos) * REGION_WIDTH; }
+	/** @return the section Z coordinate of the region's lowest corner */
+	public static int getRegionMinSectionZ(long regionPos) { return DhSectionPos.getZ(regionPos) * REGION_WIDTH; }
+	
+	public static int getIndexInRegion(long pos) { return getIndexInRegion(DhSectionPos.getX(pos), DhSectionPos.getZ(pos)); }
+	public static int getIndexInRegion(int sectionX, int sectionZ) { return Math.floorMod(sectionX, REGION_WIDTH) * REGION_WIDTH + Math.floorMod(sectionZ, REGION_WIDTH); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	@FunctionalInterface
+	public interface IRegionLoaderFunc
+	{
+		/**
+		 * @return an array of {@link FullDataGenerationStepIndex#REGION_WIDTH} squared values
+		 *          indexed with {@link FullDataGenerationStepIndex#getIndexInRegion(int, int)},
+		 *          or null if the region couldn't be loaded.
+		 */
+		@Nullable
+		byte[] loadRegion(long regionPos);
+	}
+	
+	/** a region that's currently being loaded from the database */
+	private static class RegionLoad
+	{
+		public final CompletableFuture<byte[]> future = new CompletableFuture<>();
+		/** values that were set while the region was loading, they need to be applied on top of the loaded values */
+		public final HashMap<Integer, Byte> minGenStepByIndex = new HashMap<>();
+		public final int clearCount;
+		
+		public RegionLoad(int clearCount) { this.clearCount = clearCount; }
+	}
+	
+}
@@ -20,25 +20,48 @@
 package com.seibel.distanthorizons.core.sql.repo;
 
 import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.MortonCodeUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataInputStream;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2DTO>
+public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2DTO> implements IFullDataStore
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	
+	/** 
+	 * Range queries will be split into at most this many queries,
+	 * more queries read fewer rows outside the requested area. 
+	 */
+	private static final int MAX_RANGE_QUERY_COUNT = 16;
+	
+	/** 
+	 * Answers whether positions need world generation without hitting the database. <br>
+	 * Must be updated whenever data is saved or deleted.
+	 */
+	private final FullDataGenerationStepIndex generationStepIndex = new FullDataGenerationStepIndex(this::loadGenerationStepRegion);
+	
 	
 	
 	//=============//
@@ -63,9 +86,15 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	public String createWhereStatement(Long pos) 
 	{
 		int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_BLOCK_DETAIL_LEVEL;
-		return "DetailLevel = '"+detailLevel+"' AND PosX = '"+ DhSectionPos.getX(pos)+"' AND PosZ = '"+ DhSectionPos.getZ(pos)+"'"; 
+		return "DetailLevel = "+detailLevel+" AND MortonKey = "+getMortonKey(pos); 
 	}
 	
+	/** 
+	 * Data is sorted by this key (after the detail level) 
+	 * so sections that are close together in the world are stored close together in the database.
+	 */
+	public static long getMortonKey(long pos) { return MortonCodeUtil.encode(DhSectionPos.getX(pos), DhSectionPos.getZ(pos)); }
+	
 	
 	
 	//=======================//
@@ -104,6 +133,11 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 				lastModifiedUnixDateTime, createdUnixDateTime,
 				mappingByteArray, applyToParent,
 				minY);
+		
+		// TINYINT nulls are returned as 0, so the raw value needs to be checked
+		Object minColumnGenStep = objectMap.get("MinColumnGenerationStep");
+		dto.minColumnGenStep = (minColumnGenStep != null) ? ((Number) minColumnGenStep).byteValue() : FullDataSourceV2DTO.UNKNOWN_MIN_COLUMN_GEN_STEP;
+		
 		return dto;
 	}
 	
@@ -112,22 +146,25 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	{
 		String sql =
 				"INSERT INTO " + this.getTableName() + " (\n" +
-						"   DetailLevel, PosX, PosZ, \n" +
+						"   DetailLevel, MortonKey, PosX, PosZ, \n" +
 						"   MinY, DataChecksum, \n" +
 						"   Data, ColumnGenerationStep, ColumnWorldCompressionMode, Mapping, \n" +
 						"   DataFormatVersion, CompressionMode, ApplyToParent, \n" +
+						"   MinColumnGenerationStep, \n" +
 						"   LastModifiedUnixDateTime, CreatedUnixDateTime) \n" +
 						"VALUES( \n" +
-						"    ?, ?, ?, \n" +
+						"    ?, ?, ?, ?, \n" +
 						"    ?, ?, \n" +
 						"    ?, ?, ?, ?, \n" +
 						"    ?, ?, ?, \n" +
+						"    ?, \n" +
 						"    ?, ? \n" +
 						");";
 		PreparedStatement statement = this.createPreparedStatement(sql);
 		
 		int i = 1;
 		statement.setObject(i++, DhSectionPos.getDetailLevel(dto.pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+		statement.setObject(i++, getMortonKey(dto.pos));
 		statement.setObject(i++, DhSectionPos.getX(dto.pos));
 		statement.setObject(i++, DhSectionPos.getZ(dto.pos));
 		
@@ -143,6 +180,8 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 		statement.setObject(i++, dto.compressionModeValue);
 		statement.setObject(i++, dto.applyToParent);
 		
+		statement.setObject(i++, getMinColumnGenStepSqlValue(dto));
+		
 		statement.setObject(i++, System.currentTimeMillis()); // last modified unix time
 		statement.setObject(i++, System.currentTimeMillis()); // created unix time
 		
@@ -167,10 +206,12 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 						"   ,CompressionMode = ? \n" +
 						"   ,ApplyToParent = ? \n" +
 						
+						"   ,MinColumnGenerationStep = ? \n" +
+						
 						"   ,LastModifiedUnixDateTime = ? \n" +
 						"   ,CreatedUnixDateTime = ? \n" +
 						
-						"WHERE DetailLevel = ? AND PosX = ? AND PosZ = ?";
+						"WHERE DetailLevel = ? AND MortonKey = ?";
 		PreparedStatement statement = this.createPreparedStatement(sql);
 		
 		int i = 1;
@@ -186,32 +227,114 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 		statement.setObject(i++, dto.compressionModeValue);
 		statement.setObject(i++, dto.applyToParent);
 		
+		statement.setObject(i++, getMinColumnGenStepSqlValue(dto));
+		
 		statement.setObject(i++, System.currentTimeMillis()); // last modified unix time
 		statement.setObject(i++, dto.createdUnixDateTime);
 		
 		statement.setObject(i++, DhSectionPos.getDetailLevel(dto.pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
-		statement.setObject(i++, DhSectionPos.getX(dto.pos));
-		statement.setObject(i++, DhSectionPos.getZ(dto.pos));
+		statement.setObject(i++, getMortonKey(dto.pos));
 		
 		return statement;
 	}
+	/** @return null if the DTO doesn't know its min generation step so nothing incorrect is saved */
+	private static Byte getMinColumnGenStepSqlValue(FullDataSourceV2DTO dto) 
+	{ return (dto.minColumnGenStep != FullDataSourceV2DTO.UNKNOWN_MIN_COLUMN_GEN_STEP) ? dto.minColumnGenStep : null; }
+	
+	
+	
+	//===================//
+	// index maintenance //
+	//===================//
+	
+	@Override
+	public void save(FullDataSourceV2DTO dto)
+	{
+		// the save lock is re-entrant, holding it here makes sure
+		// concurrent saves can't update the index out of order
+		ReentrantLock saveLock = this.getSaveLockForKey(dto.getKey());
+		try
+		{
+			saveLock.lock();
+			
+			super.save(dto);
+			this.generationStepIndex.set(dto.pos, dto.minColumnGenStep);
+		}
+		finally
+		{
+			saveLock.unlock();
+		}
+	}
+	
+	@Override
+	public void deleteWithKey(Long pos)
+	{
+		ReentrantLock saveLock = this.getSaveLockForKey(pos);
+		try
+		{
+			saveLock.lock();
+			
+			super.deleteWithKey(pos);
+			this.generationStepIndex.set(pos, FullDataGenerationStepIndex.NOT_PRESENT);
+		}
+		finally
+		{
+			saveLock.unlock();
+		}
+	}
+	
+	@Override
+	public void deleteAll()
+	{
+		super.deleteAll();
+		this.generationStepIndex.clear();
+	}
+	
+	@Override
+	public void saveWithTimestamps(FullDataSourceV2DTO dto)
+	{
+		ReentrantLock saveLock = this.getSaveLockForKey(dto.getKey());
+		try
+		{
+			saveLock.lock();
+			
+			// insert/update always use the current time, so the original timestamps have to be written afterward
+			this.save(dto);
+			this.queryDictionaryFirst(
+					"UPDATE " + this.getTableName() + " \n" +
+					"SET LastModifiedUnixDateTime = " + dto.lastModifiedUnixDateTime + " \n" +
+					"   ,CreatedUnixDateTime = " + dto.createdUnixDateTime + " \n" +
+					"WHERE " + this.createWhereStatement(dto.pos));
+		}
+		finally
+		{
+			saveLock.unlock();
+		}
+	}
 	
 	
 	
 	// updates //
 	
-	public void setApplyToParent(long pos, boolean applyToParent) throws SQLException
+	@Override
+	public void setApplyToParent(long pos, boolean applyToParent)
 	{
-		int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
-		
 		String sql =
 				"UPDATE " + this.getTableName() + " \n" +
 						"SET ApplyToParent = " + applyToParent + " \n" +
-			"WHERE DetailLevel = "+detailLevel+" AND PosX = "+ DhSectionPos.getX(pos)+" AND PosZ = "+ DhSectionPos.getZ(pos);
+			"WHERE " + this.createWhereStatement(pos);
 		
 		this.queryDictionaryFirst(sql);
 	}
 	
+	/** 
+	 * With WAL journaling and "synchronous = NORMAL" the most recent transactions
+	 * may be rolled back after a power loss until they're checkpointed into the database file.
+	 */
+	@Override
+	public void flush() { this.queryDictionaryFirst("PRAGMA wal_checkpoint(FULL);"); }
+	
+	@Override
 	public LongArrayList getPositionsToUpdate(int returnCount)
 	{
 		LongArrayList list = new LongArrayList();
@@ -220,7 +343,8 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 				"select DetailLevel, PosX, PosZ " +
 						"from " + this.getTableName() + " " +
 						"where ApplyToParent = 1 " +
-						"order by DetailLevel asc LIMIT " + returnCount + ";");
+						// sorting by the morton key groups siblings together so their parents can be updated together
+						"order by DetailLevel asc, MortonKey asc LIMIT " + returnCount + ";");
 		
 		for (Map<String, Object> resultMap : resultMapList)
 		{
@@ -236,15 +360,153 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 		return list;
 	}
 	
+	/**
+	 * Answered from memory after the position's region has been loaded,
+	 * so this is much faster than {@link FullDataSourceV2Repo#getColumnGenerationStepForPos(long)}.
+	 * 
+	 * @return {@link FullDataGenerationStepIndex#NOT_PRESENT} if nothing exists for this position,
+	 *          {@link FullDataGenerationStepIndex#UNKNOWN} if the data couldn't be read,
+	 *          otherwise the lowest {@link EDhApiWorldGenerationStep#value} of any column in the data source.
+	 */
+	@Override
+	public byte getMinColumnGenerationStepForPos(long pos)
+	{
+		byte minGenStep = this.generationStepIndex.get(pos);
+		if (minGenStep != FullDataGenerationStepIndex.UNKNOWN)
+		{
+			return minGenStep;
+		}
+		
+		
+		// this data was saved before the min generation step was stored,
+		// calculate it from the full generation step array and save the result
+		// so the array doesn't need to be read again
+		byte[] columnGenerationSteps = this.getColumnGenerationStepForPos(pos);
+		if (columnGenerationSteps == null)
+		{
+			return FullDataGenerationStepIndex.UNKNOWN;
+		}
+		
+		minGenStep = FullDataSourceV2DTO.getMinGenerationStep(columnGenerationSteps);
+		
+		this.queryDictionaryFirst(
+				"UPDATE " + this.getTableName() + " \n" +
+				"SET MinColumnGenerationStep = " + minGenStep + " \n" +
+				// if the data was saved in the meantime it will already have a new value
+				"WHERE " + this.createWhereStatement(pos) + " AND MinColumnGenerationStep IS NULL");
+		this.generationStepIndex.setIfUnknown(pos, minGenStep);
+		
+		return minGenStep;
+	}
+	/** @return null if the region couldn't be read */
+	private byte[] loadGenerationStepRegion(long regionPos)
+	{
+		byte detailLevel = DhSectionPos.getDetailLevel(regionPos);
+		int minPosX = FullDataGenerationStepIndex.getRegionMinSectionX(regionPos);
+		int minPosZ = FullDataGenerationStepIndex.getRegionMinSectionZ(regionPos);
+		int maxPosX = minPosX + FullDataGenerationStepIndex.REGION_WIDTH - 1;
+		int maxPosZ = minPosZ + FullDataGenerationStepIndex.REGION_WIDTH - 1;
+		
+		if (!this.isConnected())
+		{
+			// don't cache anything, the region would incorrectly appear empty
+			return null;
+		}
+		
+		byte[] regionSteps = new byte[FullDataGenerationStepIndex.REGION_WIDTH * FullDataGenerationStepIndex.REGION_WIDTH];
+		Arrays.fill(regionSteps, FullDataGenerationStepIndex.NOT_PRESENT);
+		
+		// regions are aligned to a power of 2 so this is a single contiguous range of the primary key
+		List<Map<String, Object>> resultMapList = this.queryRange(
+				"PosX, PosZ, IFNULL(MinColumnGenerationStep, "+FullDataGenerationStepIndex.UNKNOWN+") as MinGenStep",
+				detailLevel, minPosX, minPosZ, maxPosX, maxPosZ);
+		for (Map<String, Object> resultMap : resultMapList)
+		{
+			int posX = (Integer) resultMap.get("PosX");
+			int posZ = (Integer) resultMap.get("PosZ");
+			// Number cast is necessary because the column type of an expression isn't defined
+			byte minGenStep = ((Number) resultMap.get("MinGenStep")).byteValue();
+			
+			regionSteps[FullDataGenerationStepIndex.getIndexInRegion(posX, posZ)] = minGenStep;
+		}
+		
+		return regionSteps;
+	}
+	
+	@Nullable
+	@Override
+	public Long getTimestampForPos(long pos)
+	{
+		try
+		{
+			PreparedStatement preparedStatement = this.createPreparedStatement(
+					"SELECT LastModifiedUnixDateTime " +
+							"FROM " + this.getTableName() + " " +
+							"WHERE DetailLevel = ? " +
+							"AND MortonKey = ?;"
+			);
+			preparedStatement.setInt(1, DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+			preparedStatement.setLong(2, getMortonKey(pos));
+			
+			List<Map<String, Object>> row = this.query(preparedStatement);
+			return !row.isEmpty() ? (Long) row.get(0).get("LastModifiedUnixDateTime") : null;
+		}
+		catch (SQLException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/** @return the last modified unix time of every data source in the given inclusive range */
+	@Override
+	public Map<Long, Long> getTimestampsForRange(byte sectionDetailLevel, int minPosX, int minPosZ, int maxPosX, int maxPosZ)
+	{
+		List<Map<String, Object>> resultMapList = this.queryRange(
+				"PosX, PosZ, LastModifiedUnixDateTime", 
+				sectionDetailLevel, minPosX, minPosZ, maxPosX, maxPosZ);
+		
+		HashMap<Long, Long> timestampByPos = new HashMap<>(resultMapList.size());
+		for (Map<String, Object> resultMap : resultMapList)
+		{
+			long pos = DhSectionPos.encode(sectionDetailLevel, (Integer) resultMap.get("PosX"), (Integer) resultMap.get("PosZ"));
+			timestampByPos.put(pos, (Long) resultMap.get("LastModifiedUnixDateTime"));
+		}
+		return timestampByPos;
+	}
+	
+	/**
+	 * Splits the given inclusive range into {@link MortonCodeUtil} ranges so each query
+	 * only reads a contiguous part of the primary key instead of scanning every row with the same detail level.
+	 * 
+	 * @param selectColumns the columns to return, must be valid SQL
+	 */
+	private List<Map<String, Object>> queryRange(String selectColumns, byte sectionDetailLevel, int minPosX, int minPosZ, int maxPosX, int maxPosZ)
+	{
+		int detailLevel = sectionDetailLevel - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+		LongArrayList mortonRanges = MortonCodeUtil.getRanges(minPosX, minPosZ, maxPosX, maxPosZ, MAX_RANGE_QUERY_COUNT);
+		
+		ArrayList<Map<String, Object>> resultMapList = new ArrayList<>();
+		for (int i = 0; i < mortonRanges.size(); i += 2)
+		{
+			resultMapList.addAll(this.queryDictionary(
+					"select " + selectColumns + " " +
+							"from " + this.getTableName() + " " +
+							"WHERE DetailLevel = "+detailLevel+" " +
+							"AND MortonKey BETWEEN "+mortonRanges.getLong(i)+" AND "+mortonRanges.getLong(i + 1)+" " +
+							// the ranges may include positions outside the requested area
+							"AND PosX BETWEEN "+minPosX+" AND "+maxPosX+" " +
+							"AND PosZ BETWEEN "+minPosZ+" AND "+maxPosZ+";"));
+		}
+		return resultMapList;
+	}
+	
 	/** @return null if nothing exists for this position */
 	public byte[] getColumnGenerationStepForPos(long pos)
 	{
-		int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
-		
 		Map<String, Object> resultMap = this.queryDictionaryFirst(
 				"select ColumnGenerationStep, CompressionMode " +
 						"from " + this.getTableName() + " " +
-						"WHERE DetailLevel = "+detailLevel+" AND PosX = "+ DhSectionPos.getX(pos)+" AND PosZ = "+ DhSectionPos.getZ(pos));
+						"WHERE " + this.createWhereStatement(pos));
 		
 		if (resultMap != null)
 		{
@@ -278,11 +540,207 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	
 	
 	
+	//===============//
+	// recompression //
+	//===============//
+	
+	/**
+	 * Used to walk the whole table in small batches, the last returned position
+	 * can be passed in as the next call's afterPos.
+	 *
+	 * @param afterPos if null the scan starts at the beginning of the table
+	 * @return the {@link EDhApiDataCompressionMode#value} for up to returnCount positions, sorted in primary key order
+	 */
+	public LinkedHashMap<Long, Byte> getCompressionModesAfterPos(@Nullable Long afterPos, int returnCount)
+	{
+		String afterWhereStatement = "";
+		if (afterPos != null)
+		{
+			int detailLevel = DhSectionPos.getDetailLevel(afterPos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+			long mortonKey = getMortonKey(afterPos);
+			afterWhereStatement = "WHERE DetailLevel > "+detailLevel+" OR (DetailLevel = "+detailLevel+" AND MortonKey > "+mortonKey+") ";
+		}
+		
+		List<Map<String, Object>> resultMapList = this.queryDictionary(
+				"select DetailLevel, PosX, PosZ, CompressionMode " +
+						"from " + this.getTableName() + " " +
+						afterWhereStatement +
+						"order by DetailLevel asc, MortonKey asc LIMIT " + returnCount + ";");
+		
+		LinkedHashMap<Long, Byte> compressionModeByPos = new LinkedHashMap<>(resultMapList.size());
+		for (Map<String, Object> resultMap : resultMapList)
+		{
+			byte detailLevel = (Byte) resultMap.get("DetailLevel");
+			byte sectionDetailLevel = (byte) (detailLevel + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+			int posX = (Integer) resultMap.get("PosX");
+			int posZ = (Integer) resultMap.get("PosZ");
+			long pos = DhSectionPos.encode(sectionDetailLevel, posX, posZ);
+			
+			compressionModeByPos.put(pos, (Byte) resultMap.get("CompressionMode"));
+		}
+		return compressionModeByPos;
+	}
+	
+	/**
+	 * Re-encodes the data source at the given position without changing its timestamps. <br>
+	 * The save lock is held the whole time so newer data saved concurrently can't be overwritten.
+	 *
+	 * @return how many bytes smaller the data source is after recompression, may be negative
+	 */
+	public long recompress(long pos, EDhApiDataCompressionMode compressionModeEnum) throws IOException, InterruptedException, DataCorruptedException
+	{
+		ReentrantLock saveLock = this.getSaveLockForKey(pos);
+		try
+		{
+			saveLock.lock();
+			
+			FullDataSourceV2DTO dto = this.getByKey(pos);
+			if (dto == null || dto.compressionModeValue == compressionModeEnum.value)
+			{
+				// deleted or updated in the meantime
+				return 0;
+			}
+			
+			long oldByteLength = dto.getCompressedByteLength();
+			dto.recompress(compressionModeEnum);
+			this.saveWithTimestamps(dto);
+			
+			return oldByteLength - dto.getCompressedByteLength();
+		}
+		finally
+		{
+			saveLock.unlock();
+		}
+	}
+	
+	public long getDataSourceCount()
+	{
+		Map<String, Object> resultMap = this.queryDictionaryFirst("select COUNT(*) as dataSourceCount from " + this.getTableName() + ";");
+		return (resultMap != null) ? ((Number) resultMap.get("dataSourceCount")).longValue() : 0;
+	}
+	
+	
+	
+	//=============//
+	// maintenance //
+	//=============//
+	
+	/** @return every position at the given detail level, sorted so siblings are next to each other */
+	public LongArrayList getPositionsAtDetailLevel(byte sectionDetailLevel)
+	{
+		LongArrayList list = new LongArrayList();
+		
+		List<Map<String, Object>> resultMapList = this.queryDictionary(
+				"select PosX, PosZ " +
+						"from " + this.getTableName() + " " +
+						"where DetailLevel = " + (sectionDetailLevel - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL) + " " +
+						"order by MortonKey asc;");
+		
+		for (Map<String, Object> resultMap : resultMapList)
+		{
+			int posX = (Integer) resultMap.get("PosX");
+			int posZ = (Integer) resultMap.get("PosZ");
+			list.add(DhSectionPos.encode(sectionDetailLevel, posX, posZ));
+		}
+		
+		return list;
+	}
+	
+	/** @return one entry per detail level present in the database, sorted from highest to lowest detail */
+	public List<SizeStatistics> getSizeStatisticsByDetailLevel()
+	{
+		List<Map<String, Object>> resultMapList = this.queryDictionary(
+				"select DetailLevel, 0 as RegionX, 0 as RegionZ, " + SIZE_STATISTICS_SELECT_SQL + " " +
+						"from " + this.getTableName() + " " +
+						"group by DetailLevel " +
+						"order by DetailLevel asc;");
+		
+		return SizeStatistics.fromResultMapList(resultMapList);
+	}
+	
+	/** 
+	 * Data sources larger than a region are counted in the region containing their minimum corner.
+	 * 
+	 * @return the largest returnCount regions, combining every detail level and sorted by total size
+	 */
+	public List<SizeStatistics> getSizeStatisticsByRegion(int returnCount)
+	{
+		// converts the section position into a region position,
+		// regions are 512 blocks wide, which is the same width as a section at detail level 9 (DetailLevel column 3)
+		int regionDetailLevel = LodUtil.REGION_DETAIL_LEVEL - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+		String regionXSql = "(CASE WHEN DetailLevel >= " + regionDetailLevel + " THEN PosX << (DetailLevel - " + regionDetailLevel + ") ELSE PosX >> (" + regionDetailLevel + " - DetailLevel) END)";
+		String regionZSql = "(CASE WHEN DetailLevel >= " + regionDetailLevel + " THEN PosZ << (DetailLevel - " + regionDetailLevel + ") ELSE PosZ >> (" + regionDetailLevel + " - DetailLevel) END)";
+		
+		List<Map<String, Object>> resultMapList = this.queryDictionary(
+				"select -1 as DetailLevel, " + regionXSql + " as RegionX, " + regionZSql + " as RegionZ, " + SIZE_STATISTICS_SELECT_SQL + " " +
+						"from " + this.getTableName() + " " +
+						"group by RegionX, RegionZ " +
+						"order by TotalByteCount desc LIMIT " + returnCount + ";");
+		
+		return SizeStatistics.fromResultMapList(resultMapList);
+	}
+	private static final String SIZE_STATISTICS_SELECT_SQL =
+			"COUNT(*) as RowCount, " +
+			"SUM(IFNULL(LENGTH(Data), 0)) as DataByteCount, " +
+			"SUM(IFNULL(LENGTH(Data), 0) + IFNULL(LENGTH(ColumnGenerationStep), 0) + IFNULL(LENGTH(ColumnWorldCompressionMode), 0) + IFNULL(LENGTH(Mapping), 0)) as TotalByteCount";
+	
+	/** Summarizes how many rows and bytes a group of data sources contain. */
+	public static class SizeStatistics
+	{
+		/** 
+		 * the section detail level these statistics are for,
+		 * -1 if multiple detail levels were combined 
+		 */
+		public final byte sectionDetailLevel;
+		public final int regionX;
+		public final int regionZ;
+		
+		public final long rowCount;
+		/** only includes the data points, not the mapping or column info */
+		public final long dataByteCount;
+		public final long totalByteCount;
+		
+		
+		
+		public SizeStatistics(byte sectionDetailLevel, int regionX, int regionZ, long rowCount, long dataByteCount, long totalByteCount)
+		{
+			this.sectionDetailLevel = sectionDetailLevel;
+			this.regionX = regionX;
+			this.regionZ = regionZ;
+			
+			this.rowCount = rowCount;
+			this.dataByteCount = dataByteCount;
+			this.totalByteCount = totalByteCount;
+		}
+		
+		private static List<SizeStatistics> fromResultMapList(List<Map<String, Object>> resultMapList)
+		{
+			List<SizeStatistics> statisticsList = new ArrayList<>(resultMapList.size());
+			for (Map<String, Object> resultMap : resultMapList)
+			{
+				// Number casts are necessary because the returned numbers can be ints or longs
+				int detailLevel = ((Number) resultMap.get("DetailLevel")).intValue();
+				byte sectionDetailLevel = (detailLevel == -1) ? -1 : (byte) (detailLevel + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+				
+				statisticsList.add(new SizeStatistics(
+						sectionDetailLevel,
+						((Number) resultMap.get("RegionX")).intValue(), ((Number) resultMap.get("RegionZ")).intValue(),
+						((Number) resultMap.get("RowCount")).longValue(),
+						((Number) resultMap.get("DataByteCount")).longValue(), ((Number) resultMap.get("TotalByteCount")).longValue()));
+			}
+			return statisticsList;
+		}
+		
+	}
+	
+	
+	
 	//===================//
 	// compression tests //
 	//===================//
 	
 	/** @return every position in this database */
+	@Override
 	public LongArrayList getAllPositions()
 	{
 		LongArrayList list = new LongArrayList();
@@ -309,14 +767,13 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	 * @return the size of the full data at the given position
 	 * (doesn't include the size of the mapping or any other column)
 	 */
+	@Override
 	public long getDataSizeInBytes(long pos)
 	{
-		int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
-		
 		Map<String, Object> resultMap = this.queryDictionaryFirst(
 				"select LENGTH(Data) as dataSize " +
 						"from " + this.getTableName() + " " +
-						"WHERE DetailLevel = "+detailLevel+" AND PosX = "+ DhSectionPos.getX(pos)+" AND PosZ = "+ DhSectionPos.getZ(pos));
+						"WHERE " + this.createWhereStatement(pos));
 		
 		if (resultMap != null && resultMap.get("dataSize") != null)
 		{
@@ -333,6 +790,7 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	}
 	
 	/** @return the total size in bytes of the full data for this entire database */
+	@Override
 	public long getTotalDataSizeInBytes()
 	{
 		Map<String, Object> resultMap = this.queryDictionaryFirst(
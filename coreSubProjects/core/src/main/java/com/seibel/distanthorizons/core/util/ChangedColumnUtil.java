@@ -0,0 +1,187 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+
+import java.util.BitSet;
+
+/**
+ * Handles the {@link BitSet}'s used to track which columns
+ * in a {@link FullDataSourceV2} or ColumnRenderSource have changed. <br><br>
+ *
+ * Columns are indexed the same way in both data sources: <br>
+ * (relX * {@link FullDataSourceV2#WIDTH}) + relZ
+ *
+ * @see FullDataSourceV2#getChangedColumns()
+ */
+public class ChangedColumnUtil
+{
+	public static final int WIDTH = FullDataSourceV2.WIDTH;
+	public static final int COLUMN_COUNT = WIDTH * WIDTH;
+	
+	
+	
+	public static int getIndex(int relX, int relZ) { return (relX * WIDTH) + relZ; }
+	
+	/** @return a {@link BitSet} with every column marked as changed */
+	public static BitSet createAllChanged()
+	{
+		BitSet columns = new BitSet(COLUMN_COUNT);
+		columns.set(0, COLUMN_COUNT);
+		return columns;
+	}
+	
+	public static boolean areAllChanged(BitSet changedColumns) { return changedColumns.cardinality() == COLUMN_COUNT; }
+	
+	
+	
+	//====================//
+	// adjacency handling //
+	//====================//
+	
+	/**
+	 * A column's quads depend on its 4 neighbors, 
+	 * so a changed column means its neighbors also need to be rebuilt.
+	 *
+	 * @return the changed columns along with every column adjacent to them within the same section
+	 */
+	public static BitSet getColumnsToRebuild(BitSet changedColumns)
+	{
+		BitSet columnsToRebuild = (BitSet) changedColumns.clone();
+		for (int index = changedColumns.nextSetBit(0); index >= 0; index = changedColumns.nextSetBit(index + 1))
+		{
+			int relX = index / WIDTH;
+			int relZ = index % WIDTH;
+			
+			if (relX > 0) { columnsToRebuild.set(getIndex(relX - 1, relZ)); }
+			if (relX < WIDTH - 1) { columnsToRebuild.set(getIndex(relX + 1, relZ)); }
+			if (relZ > 0) { columnsToRebuild.set(getIndex(relX, relZ - 1)); }
+			if (relZ < WIDTH - 1) { columnsToRebuild.set(getIndex(relX, relZ + 1)); }
+		}
+		
+		return columnsToRebuild;
+	}
+	
+	/**
+	 * @param direction the direction of the adjacent section
+	 * @return true if any of the columns on the edge facing the given direction are set
+	 */
+	public static boolean isEdgeColumnSet(BitSet columns, EDhDirection direction)
+	{
+		for (int i = 0; i < WIDTH; i++)
+		{
+			if (columns.get(getEdgeIndex(direction, i)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @param direction the direction of the adjacent section
+	 * @return the columns in the adjacent section that border this section
+	 */
+	public static BitSet getAdjacentSectionEdgeColumns(EDhDirection direction)
+	{
+		EDhDirection oppositeDirection = direction.getOpposite();
+		
+		BitSet edgeColumns = new BitSet(COLUMN_COUNT);
+		for (int i = 0; i < WIDTH; i++)
+		{
+			edgeColumns.set(getEdgeIndex(oppositeDirection, i));
+		}
+		return edgeColumns;
+	}
+	
+	/**
+	 * Since the adjacent section's edge columns use this section's edge columns
+	 * when building their quads, any change along this section's edge
+	 * means those columns need to be rebuilt as well.
+	 *
+	 * @param direction the direction of the adjacent section
+	 * @return the columns in the adjacent section that border one of the changed columns, 
+	 *          will be empty if no columns along that edge changed.
+	 */
+	public static BitSet getAdjacentSectionChangedColumns(BitSet changedColumns, EDhDirection direction)
+	{
+		EDhDirection oppositeDirection = direction.getOpposite();
+		
+		BitSet adjacentColumns = new BitSet(COLUMN_COUNT);
+		for (int i = 0; i < WIDTH; i++)
+		{
+			if (changedColumns.get(getEdgeIndex(direction, i)))
+			{
+				adjacentColumns.set(getEdgeIndex(oppositeDirection, i));
+			}
+		}
+		return adjacentColumns;
+	}
+	
+	/** @param edgeOffset how far along the edge the column is, from 0 to {@link ChangedColumnUtil#WIDTH} (exclusive) */
+	private static int getEdgeIndex(EDhDirection direction, int edgeOffset)
+	{
+		switch (direction)
+		{
+			case EAST:
+				return getIndex(WIDTH - 1, edgeOffset);
+			case WEST:
+				return getIndex(0, edgeOffset);
+			case SOUTH:
+				return getIndex(edgeOffset, WIDTH - 1);
+			case NORTH:
+				return getIndex(edgeOffset, 0);
+			
+			default:
+				throw new IllegalArgumentException("Only horizontal directions have edges, direction given: [" + direction + "].");
+		}
+	}
+	
+	
+	
+	//=================//
+	// parent handling //
+	//=================//
+	
+	/**
+	 * Each parent column is made up of 2x2 child columns
+	 * and each child covers one quadrant of the parent.
+	 *
+	 * @return the columns in the parent section that contain the child's changed columns
+	 */
+	public static BitSet getParentChangedColumns(long childPos, BitSet childChangedColumns)
+	{
+		int parentOffsetX = (DhSectionPos.getX(childPos) & 1) * (WIDTH / 2);
+		int parentOffsetZ = (DhSectionPos.getZ(childPos) & 1) * (WIDTH / 2);
+		
+		BitSet parentColumns = new BitSet(COLUMN_COUNT);
+		for (int index = childChangedColumns.nextSetBit(0); index >= 0; index = childChangedColumns.nextSetBit(index + 1))
+		{
+			int relX = index / WIDTH;
+			int relZ = index % WIDTH;
+			parentColumns.set(getIndex(parentOffsetX + (relX / 2), parentOffsetZ + (relZ / 2)));
+		}
+		return parentColumns;
+	}
+	
+}
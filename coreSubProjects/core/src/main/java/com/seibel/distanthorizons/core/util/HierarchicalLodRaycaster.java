@@ -0,0 +1,521 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util;
+
+import com.seibel.distanthorizons.api.objects.data.DhApiRaycastResult;
+import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3f;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3i;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Casts rays through LOD data using the lower detail levels as a max height pyramid. <br><br>
+ *
+ * Each lower detail column contains solid data at a given Y position if any of the
+ * columns it was merged from do (air is always overwritten when merging),
+ * so its top Y position is the max height of every block column it covers.
+ * This means the ray can skip any area where it stays above that height
+ * and only needs to load full detail data where it actually gets close to the terrain. <br><br>
+ *
+ * Lower detail columns without any data are treated as unknown and are always descended into,
+ * since they may just not have been updated yet.
+ * Lower detail data is also only used to skip a column if it's at least as new as the
+ * full detail data it covers, otherwise the parent may not include recent changes
+ * and the column is checked at full detail instead. <br><br>
+ *
+ * Each instance caches the sections it loads, so it should only be used for a single raycast
+ * (or a few raycasts done at the same time) to prevent returning outdated data.
+ */
+public class HierarchicalLodRaycaster
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** 64 blocks wide, IE each top level column covers exactly one full detail section */
+	public static final byte DEFAULT_TOP_DETAIL_LEVEL = 6;
+	
+	/** no data exists for this column */
+	private static final int EMPTY_HEIGHT = Integer.MIN_VALUE;
+	/** no data is known about this column, the higher detail columns need to be checked */
+	private static final int UNKNOWN_HEIGHT = Integer.MAX_VALUE;
+	
+	private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+	
+	/** used to make sure a cell boundary belongs to the cell the ray is entering */
+	private static final double CELL_ENTRY_OFFSET = 1.0E-7;
+	
+	
+	private final LongFunction<FullDataSourceV2> getDataSourceFunc;
+	@Nullable
+	private final LongFunction<Long> getTimestampFunc;
+	private final int levelMinHeight;
+	private final byte topDetailLevel;
+	
+	private final Long2ObjectOpenHashMap<SectionHeights> sectionHeightsByPos = new Long2ObjectOpenHashMap<>();
+	/** full detail section pos -> last modified timestamp, {@link HierarchicalLodRaycaster#NO_TIMESTAMP} if the section doesn't exist */
+	private final Long2LongOpenHashMap fullDetailTimestampByPos = new Long2LongOpenHashMap();
+	
+	// ray values, these are set at the start of each raycast
+	private double originX;
+	private double originY;
+	private double originZ;
+	private double directionX;
+	private double directionY;
+	private double directionZ;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** @see HierarchicalLodRaycaster#HierarchicalLodRaycaster(LongFunction, LongFunction, int, byte) */
+	public HierarchicalLodRaycaster(LongFunction<FullDataSourceV2> getDataSourceFunc, @Nullable LongFunction<Long> getTimestampFunc, int levelMinHeight)
+	{ this(getDataSourceFunc, getTimestampFunc, levelMinHeight, DEFAULT_TOP_DETAIL_LEVEL); }
+	/**
+	 * @param getDataSourceFunc returns the data source at the given section position or null if it couldn't be loaded.
+	 *                          Returned data sources will be closed once they've been read.
+	 * @param getTimestampFunc returns the last modified timestamp of the data source at the given section position
+	 *                         or null if it doesn't exist. Used to make sure lower detail data isn't outdated before skipping a column.
+	 *                         If null lower detail data is always assumed to be up to date.
+	 * @param levelMinHeight the level's minimum block height, full data points are stored relative to this value
+	 * @param topDetailLevel the lowest detail level used to skip empty space
+	 */
+	public HierarchicalLodRaycaster(LongFunction<FullDataSourceV2> getDataSourceFunc, @Nullable LongFunction<Long> getTimestampFunc, int levelMinHeight, byte topDetailLevel)
+	{
+		this.getDataSourceFunc = getDataSourceFunc;
+		this.getTimestampFunc = getTimestampFunc;
+		this.levelMinHeight = levelMinHeight;
+		this.topDetailLevel = topDetailLevel;
+	}
+	
+	
+	
+	//=========//
+	// raycast //
+	//=========//
+	
+	/**
+	 * @param maxRayBlockLength measured as the taxicab distance from the ray's origin
+	 * @param minBlockHeight the ray stops once it goes below this Y position
+	 * @param maxBlockHeight the ray stops once it reaches this Y position
+	 * @return the first non-air datapoint the ray hits or null if nothing was hit
+	 */
+	@Nullable
+	public DhApiRaycastResult raycast(Vec3d rayOrigin, Vec3f rayDirection, int maxRayBlockLength, int minBlockHeight, int maxBlockHeight)
+	{
+		if (rayOrigin.y < minBlockHeight || rayOrigin.y >= maxBlockHeight)
+		{
+			return null;
+		}
+		
+		double directionLength = Math.sqrt(rayDirection.x * rayDirection.x + rayDirection.y * rayDirection.y + rayDirection.z * rayDirection.z);
+		if (directionLength == 0)
+		{
+			return null;
+		}
+		
+		this.originX = rayOrigin.x;
+		this.originY = rayOrigin.y;
+		this.originZ = rayOrigin.z;
+		this.directionX = rayDirection.x / directionLength;
+		this.directionY = rayDirection.y / directionLength;
+		this.directionZ = rayDirection.z / directionLength;
+		
+		
+		// determine how far the ray can travel
+		double taxicabLengthPerUnit = Math.abs(this.directionX) + Math.abs(this.directionY) + Math.abs(this.directionZ);
+		double maxRayLength = maxRayBlockLength / taxicabLengthPerUnit;
+		if (this.directionY > 0)
+		{
+			maxRayLength = Math.min(maxRayLength, (maxBlockHeight - this.originY) / this.directionY);
+		}
+		else if (this.directionY < 0)
+		{
+			maxRayLength = Math.min(maxRayLength, (minBlockHeight - this.originY) / this.directionY);
+		}
+		
+		return this.traverseCells(this.topDetailLevel, 0, maxRayLength, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Walks through each column at the given detail level that the ray passes through between the given ray lengths
+	 * using a 2D DDA on the X/Z plane. <br>
+	 * The min/max cell values are used to keep floating point error from walking outside the parent column.
+	 */
+	@Nullable
+	private DhApiRaycastResult traverseCells(byte detailLevel, double startRayLength, double endRayLength, int minCellX, int minCellZ, int maxCellX, int maxCellZ)
+	{
+		int cellWidth = BitShiftUtil.powerOfTwo(detailLevel);
+		
+		double entryRayLength = Math.min(startRayLength + CELL_ENTRY_OFFSET, endRayLength);
+		int cellX = clamp(Math.floorDiv((int) Math.floor(this.originX + this.directionX * entryRayLength), cellWidth), minCellX, maxCellX);
+		int cellZ = clamp(Math.floorDiv((int) Math.floor(this.originZ + this.directionZ * entryRayLength), cellWidth), minCellZ, maxCellZ);
+		
+		int stepX = (int) Math.signum(this.directionX);
+		int stepZ = (int) Math.signum(this.directionZ);
+		double nextXRayLength = getNextBoundaryRayLength(this.originX, this.directionX, cellX, cellWidth);
+		double nextZRayLength = getNextBoundaryRayLength(this.originZ, this.directionZ, cellZ, cellWidth);
+		double xRayLengthDelta = (this.directionX != 0) ? (cellWidth / Math.abs(this.directionX)) : Double.POSITIVE_INFINITY;
+		double zRayLengthDelta = (this.directionZ != 0) ? (cellWidth / Math.abs(this.directionZ)) : Double.POSITIVE_INFINITY;
+		
+		double cellStartRayLength = startRayLength;
+		while (true)
+		{
+			double cellEndRayLength = Math.min(endRayLength, Math.min(nextXRayLength, nextZRayLength));
+			
+			DhApiRaycastResult result = this.checkCell(detailLevel, cellX, cellZ, cellStartRayLength, Math.max(cellStartRayLength, cellEndRayLength));
+			if (result != null)
+			{
+				return result;
+			}
+			
+			if (cellEndRayLength >= endRayLength)
+			{
+				return null;
+			}
+			
+			
+			// move to the next cell
+			if (nextXRayLength < nextZRayLength)
+			{
+				cellX += stepX;
+				nextXRayLength += xRayLengthDelta;
+			}
+			else
+			{
+				cellZ += stepZ;
+				nextZRayLength += zRayLengthDelta;
+			}
+			cellStartRayLength = cellEndRayLength;
+			
+			if (cellX < minCellX || cellX > maxCellX
+				|| cellZ < minCellZ || cellZ > maxCellZ)
+			{
+				return null;
+			}
+		}
+	}
+	
+	@Nullable
+	private DhApiRaycastResult checkCell(byte detailLevel, int cellX, int cellZ, double startRayLength, double endRayLength)
+	{
+		SectionHeights sectionHeights = this.getSectionHeights(detailLevel, cellX, cellZ);
+		int columnIndex = FullDataSourceV2.relativePosToIndex(Math.floorMod(cellX, FullDataSourceV2.WIDTH), Math.floorMod(cellZ, FullDataSourceV2.WIDTH));
+		
+		int maxHeight = sectionHeights.maxHeightByColumn[columnIndex];
+		if (maxHeight != UNKNOWN_HEIGHT)
+		{
+			double startY = this.originY + this.directionY * startRayLength;
+			double endY = this.originY + this.directionY * endRayLength;
+			if ((maxHeight == EMPTY_HEIGHT || Math.min(startY, endY) > maxHeight)
+				&& this.isUpToDate(sectionHeights, detailLevel, cellX, cellZ))
+			{
+				// the ray is above everything in this column
+				return null;
+			}
+		}
+		
+		
+		if (detailLevel == 0)
+		{
+			return this.checkBlockColumn(sectionHeights, columnIndex, cellX, cellZ, startRayLength, endRayLength);
+		}
+		else
+		{
+			// check the 4 higher detail columns this column contains
+			byte childDetailLevel = (byte) (detailLevel - 1);
+			int minChildX = cellX * 2;
+			int minChildZ = cellZ * 2;
+			return this.traverseCells(childDetailLevel, startRayLength, endRayLength, minChildX, minChildZ, minChildX + 1, minChildZ + 1);
+		}
+	}
+	
+	/** @return the first datapoint in this block column the ray passes through */
+	@Nullable
+	private DhApiRaycastResult checkBlockColumn(SectionHeights sectionHeights, int columnIndex, int blockX, int blockZ, double startRayLength, double endRayLength)
+	{
+		long[] dataColumn = sectionHeights.solidDataPointsByColumn[columnIndex];
+		
+		double startY = this.originY + this.directionY * startRayLength;
+		double endY = this.originY + this.directionY * endRayLength;
+		double minY = Math.min(startY, endY);
+		double maxY = Math.max(startY, endY);
+		
+		long closestDataPoint = 0;
+		double closestRayLength = Double.POSITIVE_INFINITY;
+		for (long dataPoint : dataColumn)
+		{
+			int bottomY = FullDataPointUtil.getBottomY(dataPoint) + this.levelMinHeight;
+			int topY = bottomY + FullDataPointUtil.getHeight(dataPoint);
+			if (maxY < bottomY || minY > topY)
+			{
+				continue;
+			}
+			
+			// determine where the ray enters this datapoint
+			double hitRayLength = startRayLength;
+			if (this.directionY > 0 && startY < bottomY)
+			{
+				hitRayLength = (bottomY - this.originY) / this.directionY;
+			}
+			else if (this.directionY < 0 && startY > topY)
+			{
+				hitRayLength = (topY - this.originY) / this.directionY;
+			}
+			
+			if (hitRayLength < closestRayLength)
+			{
+				closestRayLength = hitRayLength;
+				closestDataPoint = dataPoint;
+			}
+		}
+		
+		if (closestRayLength == Double.POSITIVE_INFINITY)
+		{
+			return null;
+		}
+		
+		
+		int id = FullDataPointUtil.getId(closestDataPoint);
+		int bottomY = FullDataPointUtil.getBottomY(closestDataPoint) + this.levelMinHeight;
+		int topY = bottomY + FullDataPointUtil.getHeight(closestDataPoint);
+		DhApiTerrainDataPoint apiDataPoint = new DhApiTerrainDataPoint(LodUtil.BLOCK_DETAIL_LEVEL,
+				FullDataPointUtil.getBlockLight(closestDataPoint), FullDataPointUtil.getSkyLight(closestDataPoint),
+				topY, bottomY,
+				sectionHeights.blockStateById[id], sectionHeights.biomeById[id]);
+		return new DhApiRaycastResult(apiDataPoint, new Vec3i(blockX, bottomY, blockZ));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private SectionHeights getSectionHeights(byte detailLevel, int cellX, int cellZ)
+	{
+		long sectionPos = DhSectionPos.encode((byte) (detailLevel + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL),
+				Math.floorDiv(cellX, FullDataSourceV2.WIDTH), Math.floorDiv(cellZ, FullDataSourceV2.WIDTH));
+		
+		SectionHeights sectionHeights = this.sectionHeightsByPos.get(sectionPos);
+		if (sectionHeights == null)
+		{
+			sectionHeights = new SectionHeights(this.getDataSourceFunc.apply(sectionPos), detailLevel, this.levelMinHeight);
+			this.sectionHeightsByPos.put(sectionPos, sectionHeights);
+		}
+		return sectionHeights;
+	}
+	
+	/**
+	 * @return true if the given column's data is at least as new as the full detail data it covers,
+	 *          IE the column can be used to skip the area it covers.
+	 */
+	private boolean isUpToDate(SectionHeights sectionHeights, byte detailLevel, int cellX, int cellZ)
+	{
+		if (detailLevel == 0 || this.getTimestampFunc == null)
+		{
+			return true;
+		}
+		
+		// a column may cover multiple full detail sections if the top detail level is above 6
+		int cellWidth = BitShiftUtil.powerOfTwo(detailLevel);
+		int minSectionX = Math.floorDiv(cellX * cellWidth, FullDataSourceV2.WIDTH);
+		int minSectionZ = Math.floorDiv(cellZ * cellWidth, FullDataSourceV2.WIDTH);
+		int maxSectionX = Math.floorDiv((cellX + 1) * cellWidth - 1, FullDataSourceV2.WIDTH);
+		int maxSectionZ = Math.floorDiv((cellZ + 1) * cellWidth - 1, FullDataSourceV2.WIDTH);
+		for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++)
+		{
+			for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++)
+			{
+				long sectionPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, sectionX, sectionZ);
+				if (this.getFullDetailTimestamp(sectionPos) > sectionHeights.lastModifiedUnixDateTime)
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	private long getFullDetailTimestamp(long sectionPos)
+	{
+		if (this.fullDetailTimestampByPos.containsKey(sectionPos))
+		{
+			return this.fullDetailTimestampByPos.get(sectionPos);
+		}
+		
+		Long timestamp = this.getTimestampFunc.apply(sectionPos);
+		long value = (timestamp != null) ? timestamp : NO_TIMESTAMP;
+		this.fullDetailTimestampByPos.put(sectionPos, value);
+		return value;
+	}
+	
+	/** @return how far along the ray the next cell boundary on this axis is */
+	private static double getNextBoundaryRayLength(double origin, double direction, int cell, int cellWidth)
+	{
+		if (direction > 0)
+		{
+			return ((double) (cell + 1) * cellWidth - origin) / direction;
+		}
+		else if (direction < 0)
+		{
+			return ((double) cell * cellWidth - origin) / direction;
+		}
+		else
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+	
+	private static int clamp(int value, int min, int max) { return Math.max(min, Math.min(max, value)); }
+	
+	/** @return how many sections have been loaded by this raycaster, useful for debugging */
+	public int getLoadedSectionCount() { return this.sectionHeightsByPos.size(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/**
+	 * The max height of each column in a section.
+	 * For full detail sections the solid datapoints are also kept so the exact hit can be found.
+	 */
+	private static class SectionHeights
+	{
+		public final int[] maxHeightByColumn = new int[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH];
+		public long lastModifiedUnixDateTime = NO_TIMESTAMP;
+		
+		// only populated for full detail sections
+		public long[][] solidDataPointsByColumn;
+		public IBlockStateWrapper[] blockStateById;
+		public IBiomeWrapper[] biomeById;
+		
+		
+		
+		public SectionHeights(@Nullable FullDataSourceV2 dataSource, byte detailLevel, int levelMinHeight)
+		{
+			boolean fullDetail = (detailLevel == 0);
+			if (dataSource == null)
+			{
+				// without data nothing can be hit, but higher detail data may still exist
+				Arrays.fill(this.maxHeightByColumn, fullDetail ? EMPTY_HEIGHT : UNKNOWN_HEIGHT);
+				this.solidDataPointsByColumn = new long[this.maxHeightByColumn.length][0];
+				return;
+			}
+			
+			this.lastModifiedUnixDateTime = dataSource.lastModifiedUnixDateTime;
+			
+			try
+			{
+				// the mapping is cleared once the data source is returned to the pool, so anything needed has to be copied
+				FullDataPointIdMap mapping = dataSource.mapping;
+				boolean[] solidById = new boolean[mapping.size()];
+				for (int id = 0; id < solidById.length; id++)
+				{
+					IBlockStateWrapper blockState = mapping.getBlockStateWrapper(id);
+					solidById[id] = (blockState != null && !blockState.isAir());
+				}
+				
+				if (fullDetail)
+				{
+					this.solidDataPointsByColumn = new long[this.maxHeightByColumn.length][];
+					this.blockStateById = new IBlockStateWrapper[solidById.length];
+					this.biomeById = new IBiomeWrapper[solidById.length];
+					for (int id = 0; id < solidById.length; id++)
+					{
+						this.blockStateById[id] = mapping.getBlockStateWrapper(id);
+						this.biomeById[id] = mapping.getBiomeWrapper(id);
+					}
+				}
+				
+				
+				LongArrayList solidDataPoints = new LongArrayList();
+				for (int relX = 0; relX < FullDataSourceV2.WIDTH; relX++)
+				{
+					for (int relZ = 0; relZ < FullDataSourceV2.WIDTH; relZ++)
+					{
+						int index = FullDataSourceV2.relativePosToIndex(relX, relZ);
+						
+						LongArrayList dataColumn = dataSource.get(relX, relZ);
+						if (dataColumn == null || dataColumn.isEmpty())
+						{
+							this.maxHeightByColumn[index] = fullDetail ? EMPTY_HEIGHT : UNKNOWN_HEIGHT;
+							if (fullDetail)
+							{
+								this.solidDataPointsByColumn[index] = new long[0];
+							}
+							continue;
+						}
+						
+						
+						solidDataPoints.clear();
+						int maxHeight = EMPTY_HEIGHT;
+						for (int i = 0; i < dataColumn.size(); i++)
+						{
+							long dataPoint = dataColumn.getLong(i);
+							int id = FullDataPointUtil.getId(dataPoint);
+							if (id < solidById.length && solidById[id])
+							{
+								int topY = FullDataPointUtil.getBottomY(dataPoint) + FullDataPointUtil.getHeight(dataPoint) + levelMinHeight;
+								maxHeight = Math.max(maxHeight, topY);
+								solidDataPoints.add(dataPoint);
+							}
+						}
+						
+						this.maxHeightByColumn[index] = maxHeight;
+						if (fullDetail)
+						{
+							this.solidDataPointsByColumn[index] = solidDataPoints.toLongArray();
+						}
+					}
+				}
+			}
+			finally
+			{
+				try
+				{
+					dataSource.close();
+				}
+				catch (Exception e)
+				{
+					LOGGER.warn("Unable to close data source [" + DhSectionPos.toString(dataSource.getPos()) + "], error: [" + e.getMessage() + "].", e);
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,193 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util;
+
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Handles encoding X/Z positions as Morton codes (Z-order curve),
+ * which keeps positions that are close together in 2D space close together when sorted. <br><br>
+ *
+ * X is stored in the even bits and Z in the odd bits.
+ * Positions are offset so negative values are sorted before positive ones,
+ * which means every code is positive and can be compared as a signed long.
+ *
+ * @see DhSectionPos
+ */
+public class MortonCodeUtil
+{
+	/** matches the number of bits {@link DhSectionPos} uses for each position */
+	public static final int COORDINATE_BITS = DhSectionPos.X_POS_WIDTH;
+	/** added to each position so the lowest possible position is stored as 0 */
+	public static final int COORDINATE_OFFSET = 1 << (COORDINATE_BITS - 1);
+	
+	
+	
+	/**
+	 * This class just holds utility methods
+	 * and shouldn't be constructed.
+	 */
+	private MortonCodeUtil() { }
+	
+	
+	
+	//==========//
+	// encoding //
+	//==========//
+	
+	/** Note: no validation is done to confirm the X/Z positions can be represented by {@link MortonCodeUtil#COORDINATE_BITS} bits. */
+	public static long encode(int x, int z) { return encodeUnsigned(x + COORDINATE_OFFSET, z + COORDINATE_OFFSET); }
+	/** 
+	 * Unlike {@link MortonCodeUtil#encode} the positions aren't offset, 
+	 * so this should only be used for positions that can't be negative, IE positions relative to a corner.
+	 */
+	public static long encodeUnsigned(int unsignedX, int unsignedZ) { return spreadBits(unsignedX) | (spreadBits(unsignedZ) << 1); }
+	
+	public static int decodeX(long mortonCode) { return compactBits(mortonCode) - COORDINATE_OFFSET; }
+	public static int decodeZ(long mortonCode) { return compactBits(mortonCode >>> 1) - COORDINATE_OFFSET; }
+	
+	/** inverse of {@link MortonCodeUtil#encodeUnsigned} */
+	public static int decodeUnsignedX(long mortonCode) { return compactBits(mortonCode); }
+	/** inverse of {@link MortonCodeUtil#encodeUnsigned} */
+	public static int decodeUnsignedZ(long mortonCode) { return compactBits(mortonCode >>> 1); }
+	
+	/** inserts a 0 bit between each of the value's bits */
+	private static long spreadBits(int value)
+	{
+		long bits = value & 0xFFFF_FFFFL;
+		bits = (bits | (bits << 16)) & 0x0000_FFFF_0000_FFFFL;
+		bits = (bits | (bits << 8)) & 0x00FF_00FF_00FF_00FFL;
+		bits = (bits | (bits << 4)) & 0x0F0F_0F0F_0F0F_0F0FL;
+		bits = (bits | (bits << 2)) & 0x3333_3333_3333_3333L;
+		bits = (bits | (bits << 1)) & 0x5555_5555_5555_5555L;
+		return bits;
+	}
+	/** inverse of {@link MortonCodeUtil#spreadBits(int)} */
+	private static int compactBits(long bits)
+	{
+		bits &= 0x5555_5555_5555_5555L;
+		bits = (bits | (bits >>> 1)) & 0x3333_3333_3333_3333L;
+		bits = (bits | (bits >>> 2)) & 0x0F0F_0F0F_0F0F_0F0FL;
+		bits = (bits | (bits >>> 4)) & 0x00FF_00FF_00FF_00FFL;
+		bits = (bits | (bits >>> 8)) & 0x0000_FFFF_0000_FFFFL;
+		bits = (bits | (bits >>> 16)) & 0x0000_0000_FFFF_FFFFL;
+		return (int) bits;
+	}
+	
+	
+	
+	//=====================//
+	// range decomposition //
+	//=====================//
+	
+	/**
+	 * Splits the given inclusive rectangle into contiguous Morton code ranges. <br>
+	 * If covering the rectangle exactly would require more than the given number of ranges,
+	 * larger ranges are used which may include positions outside the rectangle,
+	 * so the caller should filter the returned positions if exact results are needed.
+	 *
+	 * @return sorted inclusive [start, end] pairs, IE: start0, end0, start1, end1, ...
+	 */
+	public static LongArrayList getRanges(int minX, int minZ, int maxX, int maxZ, int maxRangeCount)
+	{
+		if (minX > maxX || minZ > maxZ)
+		{
+			return new LongArrayList();
+		}
+		
+		int unsignedMinX = minX + COORDINATE_OFFSET;
+		int unsignedMinZ = minZ + COORDINATE_OFFSET;
+		int unsignedMaxX = maxX + COORDINATE_OFFSET;
+		int unsignedMaxZ = maxZ + COORDINATE_OFFSET;
+		
+		// each coarser level roughly halves the number of ranges along the rectangle's edges
+		LongArrayList ranges = new LongArrayList();
+		for (int minCellLevel = 0; minCellLevel <= COORDINATE_BITS; minCellLevel++)
+		{
+			ranges.clear();
+			addRanges(0, 0, COORDINATE_BITS, minCellLevel,
+					unsignedMinX, unsignedMinZ, unsignedMaxX, unsignedMaxZ,
+					ranges);
+			
+			if (ranges.size() / 2 <= maxRangeCount)
+			{
+				break;
+			}
+		}
+		
+		return ranges;
+	}
+	/**
+	 * @param cellX the cell's X position in units of the cell's width
+	 * @param cellLevel the cell is 2^cellLevel positions wide
+	 * @param minCellLevel cells this size that partially overlap the rectangle are included entirely
+	 */
+	private static void addRanges(
+			int cellX, int cellZ, int cellLevel, int minCellLevel,
+			int minX, int minZ, int maxX, int maxZ,
+			LongArrayList ranges)
+	{
+		long cellMinX = (long) cellX << cellLevel;
+		long cellMinZ = (long) cellZ << cellLevel;
+		long cellMaxX = cellMinX + (1L << cellLevel) - 1;
+		long cellMaxZ = cellMinZ + (1L << cellLevel) - 1;
+		
+		if (cellMinX > maxX || cellMaxX < minX
+			|| cellMinZ > maxZ || cellMaxZ < minZ)
+		{
+			// no overlap
+			return;
+		}
+		
+		boolean fullyInside = cellMinX >= minX && cellMaxX <= maxX
+				&& cellMinZ >= minZ && cellMaxZ <= maxZ;
+		if (fullyInside || cellLevel <= minCellLevel)
+		{
+			// every position in an aligned cell has a contiguous Morton code
+			long rangeStart = encodeUnsigned((int) cellMinX, (int) cellMinZ);
+			long rangeEnd = rangeStart + (1L << (2 * cellLevel)) - 1;
+			
+			int lastIndex = ranges.size() - 1;
+			if (lastIndex > 0 && ranges.getLong(lastIndex) + 1 == rangeStart)
+			{
+				// merge with the previous range
+				ranges.set(lastIndex, rangeEnd);
+			}
+			else
+			{
+				ranges.add(rangeStart);
+				ranges.add(rangeEnd);
+			}
+			return;
+		}
+		
+		
+		// children are visited in Morton order so the ranges stay sorted
+		int childLevel = cellLevel - 1;
+		int childX = cellX << 1;
+		int childZ = cellZ << 1;
+		addRanges(childX, childZ, childLevel, minCellLevel, minX, minZ, maxX, maxZ, ranges);
+		addRanges(childX + 1, childZ, childLevel, minCellLevel, minX, minZ, maxX, maxZ, ranges);
+		addRanges(childX, childZ + 1, childLevel, minCellLevel, minX, minZ, maxX, maxZ, ranges);
+		addRanges(childX + 1, childZ + 1, childLevel, minCellLevel, minX, minZ, maxX, maxZ, ranges);
+	}
+	
+}
@@ -0,0 +1,606 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.seibel.distanthorizons.core.util.objects.quadTree;
+
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.MortonCodeUtil;
+
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A single root node and all of its children,
+ * stored in flat arrays instead of as individual node objects. <br><br>
+ *
+ * Each detail level below the root is stored as its own array
+ * indexed by the node's Morton code relative to the root's corner,
+ * so a node's children are always at (index * 4) to (index * 4 + 3) one level down
+ * and walking the tree doesn't need any pointers. <br>
+ * Since the deeper levels would be very large if fully allocated,
+ * each level is split into pages of 64 nodes which are only allocated while they contain a node.
+ * Which nodes exist is tracked with a bit per node (and a bit per page),
+ * so iterating only has to look at the nodes that exist. <br><br>
+ *
+ * Like the previous node based tree every node's parent must exist,
+ * and nodes are only removed along with their parent's other children.
+ *
+ * @param <T> the value stored in each node
+ * @see QuadTree
+ * @see QuadNode
+ */
+public class ImplicitQuadTree<T>
+{
+	/** 
+	 * Deeper trees would need very large page arrays for their last detail levels. <br>
+	 * This is enough for a 4096 chunk render distance with the LOD tree's minimum detail level.
+	 */
+	public static final int MAX_DEPTH = 13;
+	
+	/** pages are the same size as a long so each page's nodes can be tracked with a single bit mask */
+	private static final int PAGE_SIZE_LOG2 = 6;
+	private static final int PAGE_SIZE = 1 << PAGE_SIZE_LOG2;
+	private static final int PAGE_INDEX_MASK = PAGE_SIZE - 1;
+	
+	
+	public final long rootPos;
+	/** the lowest detail level nodes in this tree can have, IE the detail level of the leaf nodes */
+	public final byte minimumDetailLevel;
+	
+	private final byte rootDetailLevel;
+	private final int rootX;
+	private final int rootZ;
+	/** includes the root */
+	private final int depthCount;
+	
+	/** 
+	 * indexed by [depth][pageIndex][indexInPage] <br>
+	 * null if no nodes exist in that page (or depth)
+	 */
+	private final Object[][][] valuePagesByDepth;
+	/** indexed by [depth][pageIndex], each bit is set if that node exists */
+	private final long[][] nodeBitsByDepth;
+	/** indexed by [depth][pageIndex / 64], each bit is set if that page contains a node */
+	private final long[][] pageBitsByDepth;
+	private final int[] nodeCountByDepth;
+	
+	private int valueCount = 0;
+	/** incremented whenever a value is added, replaced or removed */
+	private int modificationCount = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** @throws IllegalArgumentException if the tree would be more than {@link ImplicitQuadTree#MAX_DEPTH} detail levels deep */
+	public ImplicitQuadTree(long rootPos, byte minimumDetailLevel) throws IllegalArgumentException
+	{
+		this.rootPos = rootPos;
+		this.minimumDetailLevel = minimumDetailLevel;
+		
+		this.rootDetailLevel = DhSectionPos.getDetailLevel(rootPos);
+		this.rootX = DhSectionPos.getX(rootPos);
+		this.rootZ = DhSectionPos.getZ(rootPos);
+		
+		if (this.rootDetailLevel < minimumDetailLevel)
+		{
+			throw new IllegalArgumentException("Root detail level [" + this.rootDetailLevel + "] is lower than the minimum detail level [" + minimumDetailLevel + "].");
+		}
+		if (this.rootDetailLevel - minimumDetailLevel > MAX_DEPTH)
+		{
+			throw new IllegalArgumentException("Tree too deep, root detail level [" + this.rootDetailLevel + "] and minimum detail level [" + minimumDetailLevel + "] would need [" + (this.rootDetailLevel - minimumDetailLevel) + "] levels, max: [" + MAX_DEPTH + "].");
+		}
+		
+		this.depthCount = this.rootDetailLevel - minimumDetailLevel + 1;
+		this.valuePagesByDepth = new Object[this.depthCount][][];
+		this.nodeBitsByDepth = new long[this.depthCount][];
+		this.pageBitsByDepth = new long[this.depthCount][];
+		this.nodeCountByDepth = new int[this.depthCount];
+		
+		// the root always exists
+		this.createNode(0, 0);
+	}
+	
+	
+	
+	//=====================//
+	// getters and setters //
+	//=====================//
+	
+	/** @return true if the given position is this tree's root or one of its possible children */
+	public boolean contains(long pos)
+	{
+		byte detailLevel = DhSectionPos.getDetailLevel(pos);
+		if (detailLevel < this.minimumDetailLevel || detailLevel > this.rootDetailLevel)
+		{
+			return false;
+		}
+		
+		int depth = this.rootDetailLevel - detailLevel;
+		int relativeX = DhSectionPos.getX(pos) - (this.rootX << depth);
+		int relativeZ = DhSectionPos.getZ(pos) - (this.rootZ << depth);
+		int width = 1 << depth;
+		return relativeX >= 0 && relativeX < width
+				&& relativeZ >= 0 && relativeZ < width;
+	}
+	
+	/** @return false if the node hasn't been created or the position is outside this tree */
+	public boolean nodeExists(long pos) { return this.contains(pos) && this.nodeExists(this.getDepth(pos), this.getIndex(pos)); }
+	
+	/** @throws IllegalArgumentException if the position is outside this tree */
+	public T getValue(long pos) throws IllegalArgumentException
+	{
+		this.throwIfNotContained(pos);
+		return this.getValue(this.getDepth(pos), this.getIndex(pos));
+	}
+	
+	/**
+	 * Creates the node (and any missing parents) if necessary.
+	 * 
+	 * @return the previous value, null if nothing
+	 * @throws IllegalArgumentException if the position is outside this tree 
+	 */
+	public T setValue(long pos, T value) throws IllegalArgumentException
+	{
+		this.throwIfNotContained(pos);
+		
+		int depth = this.getDepth(pos);
+		int index = this.getIndex(pos);
+		if (!this.nodeExists(depth, index))
+		{
+			this.createNode(depth, index);
+			
+			// walk up until we find an existing parent
+			for (int parentDepth = depth - 1, parentIndex = index >>> 2; parentDepth >= 0; parentDepth--, parentIndex >>>= 2)
+			{
+				if (this.nodeExists(parentDepth, parentIndex))
+				{
+					break;
+				}
+				this.createNode(parentDepth, parentIndex);
+			}
+		}
+		
+		Object[] valuePage = this.valuePagesByDepth[depth][index >>> PAGE_SIZE_LOG2];
+		int indexInPage = index & PAGE_INDEX_MASK;
+		
+		@SuppressWarnings("unchecked")
+		T previousValue = (T) valuePage[indexInPage];
+		valuePage[indexInPage] = value;
+		
+		if (previousValue != value)
+		{
+			this.modificationCount++;
+		}
+		if ((previousValue != null) != (value != null))
+		{
+			this.valueCount += (value != null) ? 1 : -1;
+		}
+		return previousValue;
+	}
+	
+	/** @return how many of the given node's 4 children exist */
+	public int getChildCount(long pos) throws IllegalArgumentException
+	{
+		this.throwIfNotContained(pos);
+		
+		int depth = this.getDepth(pos);
+		return Long.bitCount(this.getChildBits(depth, this.getIndex(pos)));
+	}
+	/** @return how many of the given node's 4 children have a value or have a child with a value */
+	public int getNonNullChildCount(long pos) throws IllegalArgumentException
+	{
+		this.throwIfNotContained(pos);
+		
+		int depth = this.getDepth(pos);
+		int firstChildIndex = this.getIndex(pos) << 2;
+		int count = 0;
+		for (int i = 0; i < 4 && depth + 1 < this.depthCount; i++)
+		{
+			if (this.subtreeHasValue(depth + 1, firstChildIndex + i))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+	private boolean subtreeHasValue(int depth, int index)
+	{
+		if (!this.nodeExists(depth, index))
+		{
+			return false;
+		}
+		else if (this.getValue(depth, index) != null)
+		{
+			return true;
+		}
+		
+		int firstChildIndex = index << 2;
+		for (int i = 0; i < 4 && depth + 1 < this.depthCount; i++)
+		{
+			if (this.subtreeHasValue(depth + 1, firstChildIndex + i))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	
+	//==========//
+	// deletion //
+	//==========//
+	
+	/**
+	 * Removes every node below the given position, the node at the given position is kept.
+	 * 
+	 * @param removedItemConsumer is fired for each removed node, however the value passed in may be null
+	 */
+	public void deleteAllChildren(long pos, Consumer<? super T> removedItemConsumer) throws IllegalArgumentException
+	{
+		this.throwIfNotContained(pos);
+		
+		// a node's descendants are a contiguous range on each deeper level
+		int startIndex = this.getIndex(pos);
+		int endIndex = startIndex + 1;
+		for (int childDepth = this.getDepth(pos) + 1; childDepth < this.depthCount; childDepth++)
+		{
+			if (this.nodeCountByDepth[childDepth] == 0)
+			{
+				// every node has a parent, so nothing can exist any deeper
+				break;
+			}
+			
+			startIndex <<= 2;
+			endIndex <<= 2;
+			
+			long[] nodeBits = this.nodeBitsByDepth[childDepth];
+			Object[][] valuePages = this.valuePagesByDepth[childDepth];
+			int lastPageIndex = (endIndex - 1) >>> PAGE_SIZE_LOG2;
+			for (int pageIndex = startIndex >>> PAGE_SIZE_LOG2; pageIndex <= lastPageIndex && this.nodeCountByDepth[childDepth] != 0; pageIndex++)
+			{
+				// only part of the first and last page may be in range
+				long rangeMask = -1L;
+				if (pageIndex == startIndex >>> PAGE_SIZE_LOG2)
+				{
+					rangeMask &= -1L << (startIndex & PAGE_INDEX_MASK);
+				}
+				if (pageIndex == lastPageIndex)
+				{
+					rangeMask &= -1L >>> (PAGE_INDEX_MASK - ((endIndex - 1) & PAGE_INDEX_MASK));
+				}
+				
+				long removedBits = nodeBits[pageIndex] & rangeMask;
+				Object[] valuePage = valuePages[pageIndex];
+				while (removedBits != 0)
+				{
+					int indexInPage = Long.numberOfTrailingZeros(removedBits);
+					removedBits &= removedBits - 1;
+					
+					@SuppressWarnings("unchecked")
+					T value = (T) valuePage[indexInPage];
+					this.removeNode(childDepth, (pageIndex << PAGE_SIZE_LOG2) + indexInPage);
+					if (removedItemConsumer != null)
+					{
+						removedItemConsumer.accept(value);
+					}
+				}
+			}
+		}
+	}
+	
+	/** Sets every value in the tree to null, the nodes themselves are kept. */
+	public void clearValues(Consumer<? super T> removedValueConsumer)
+	{
+		for (int depth = 0; depth < this.depthCount && this.valueCount != 0; depth++)
+		{
+			long[] pageBits = this.pageBitsByDepth[depth];
+			long[] nodeBits = this.nodeBitsByDepth[depth];
+			Object[][] valuePages = this.valuePagesByDepth[depth];
+			if (pageBits == null || nodeBits == null || valuePages == null)
+			{
+				break;
+			}
+			
+			for (int pageBitsIndex = 0; pageBitsIndex < pageBits.length; pageBitsIndex++)
+			{
+				long remainingPageBits = pageBits[pageBitsIndex];
+				while (remainingPageBits != 0)
+				{
+					int pageIndex = (pageBitsIndex << 6) + Long.numberOfTrailingZeros(remainingPageBits);
+					remainingPageBits &= remainingPageBits - 1;
+					
+					Object[] valuePage = valuePages[pageIndex];
+					long remainingNodeBits = nodeBits[pageIndex];
+					while (remainingNodeBits != 0)
+					{
+						int indexInPage = Long.numberOfTrailingZeros(remainingNodeBits);
+						remainingNodeBits &= remainingNodeBits - 1;
+						
+						@SuppressWarnings("unchecked")
+						T value = (T) valuePage[indexInPage];
+						if (value != null)
+						{
+							valuePage[indexInPage] = null;
+							this.valueCount--;
+							this.modificationCount++;
+							if (removedValueConsumer != null)
+							{
+								removedValueConsumer.accept(value);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	
+	//===========//
+	// iteration //
+	//===========//
+	
+	/** 
+	 * Iterates over each non-null value in the tree, 
+	 * from the root down to the leaves and in Morton order within each detail level.
+	 */
+	public void forEachValue(Consumer<? super T> consumer)
+	{
+		for (int depth = 0; depth < this.depthCount; depth++)
+		{
+			// the arrays are read into local variables since 
+			// they may be removed by another thread
+			long[] pageBits = this.pageBitsByDepth[depth];
+			long[] nodeBits = this.nodeBitsByDepth[depth];
+			Object[][] valuePages = this.valuePagesByDepth[depth];
+			if (pageBits == null || nodeBits == null || valuePages == null)
+			{
+				break;
+			}
+			
+			for (int pageBitsIndex = 0; pageBitsIndex < pageBits.length; pageBitsIndex++)
+			{
+				long remainingPageBits = pageBits[pageBitsIndex];
+				while (remainingPageBits != 0)
+				{
+					int pageIndex = (pageBitsIndex << 6) + Long.numberOfTrailingZeros(remainingPageBits);
+					remainingPageBits &= remainingPageBits - 1;
+					
+					Object[] valuePage = valuePages[pageIndex];
+					if (valuePage == null)
+					{
+						continue;
+					}
+					
+					long remainingNodeBits = nodeBits[pageIndex];
+					while (remainingNodeBits != 0)
+					{
+						int indexInPage = Long.numberOfTrailingZeros(remainingNodeBits);
+						remainingNodeBits &= remainingNodeBits - 1;
+						
+						@SuppressWarnings("unchecked")
+						T value = (T) valuePage[indexInPage];
+						if (value != null)
+						{
+							consumer.accept(value);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/** 
+	 * Iterates over the position of each node without any children.
+	 * The root is never included, even when it doesn't have any children.
+	 * Uses the same order as {@link ImplicitQuadTree#forEachValue}.
+	 */
+	public void forEachLeaf(LongConsumer consumer)
+	{
+		for (int depth = 1; depth < this.depthCount; depth++)
+		{
+			long[] pageBits = this.pageBitsByDepth[depth];
+			long[] nodeBits = this.nodeBitsByDepth[depth];
+			if (pageBits == null || nodeBits == null)
+			{
+				break;
+			}
+			
+			byte detailLevel = (byte) (this.rootDetailLevel - depth);
+			int minX = this.rootX << depth;
+			int minZ = this.rootZ << depth;
+			
+			for (int pageBitsIndex = 0; pageBitsIndex < pageBits.length; pageBitsIndex++)
+			{
+				long remainingPageBits = pageBits[pageBitsIndex];
+				while (remainingPageBits != 0)
+				{
+					int pageIndex = (pageBitsIndex << 6) + Long.numberOfTrailingZeros(remainingPageBits);
+					remainingPageBits &= remainingPageBits - 1;
+					
+					long remainingNodeBits = nodeBits[pageIndex];
+					while (remainingNodeBits != 0)
+					{
+						int index = (pageIndex << PAGE_SIZE_LOG2) + Long.numberOfTrailingZeros(remainingNodeBits);
+						remainingNodeBits &= remainingNodeBits - 1;
+						
+						if (this.getChildBits(depth, index) == 0)
+						{
+							consumer.accept(DhSectionPos.encode(detailLevel,
+									minX + MortonCodeUtil.decodeUnsignedX(index),
+									minZ + MortonCodeUtil.decodeUnsignedZ(index)));
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	
+	//==================//
+	// node information //
+	//==================//
+	
+	/** @return the number of non-null values in the tree */
+	public int getValueCount() { return this.valueCount; }
+	
+	/** 
+	 * Changes whenever a value is added, replaced or removed,
+	 * so callers can check if the tree's contents changed without walking it.
+	 */
+	public int getModificationCount() { return this.modificationCount; }
+	
+	/** @return the number of nodes without any children, not including the root */
+	public int getLeafCount()
+	{
+		int[] leafCount = new int[1];
+		this.forEachLeaf((pos) -> leafCount[0]++);
+		return leafCount[0];
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private void throwIfNotContained(long pos) throws IllegalArgumentException
+	{
+		if (!this.contains(pos))
+		{
+			throw new IllegalArgumentException("Position [" + DhSectionPos.toString(pos) + "] is outside of the tree with root [" + DhSectionPos.toString(this.rootPos) + "] and minimum detail level [" + this.minimumDetailLevel + "].");
+		}
+	}
+	
+	private int getDepth(long pos) { return this.rootDetailLevel - DhSectionPos.getDetailLevel(pos); }
+	/** assumes the position is contained in this tree */
+	private int getIndex(long pos)
+	{
+		int depth = this.getDepth(pos);
+		return (int) MortonCodeUtil.encodeUnsigned(
+				DhSectionPos.getX(pos) - (this.rootX << depth),
+				DhSectionPos.getZ(pos) - (this.rootZ << depth));
+	}
+	
+	private boolean nodeExists(int depth, int index)
+	{
+		long[] nodeBits = this.nodeBitsByDepth[depth];
+		// shifting by the index only uses its lowest 6 bits, IE the index in the page
+		return nodeBits != null && (nodeBits[index >>> PAGE_SIZE_LOG2] & (1L << index)) != 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T getValue(int depth, int index)
+	{
+		Object[][] valuePages = this.valuePagesByDepth[depth];
+		if (valuePages == null)
+		{
+			return null;
+		}
+		
+		Object[] valuePage = valuePages[index >>> PAGE_SIZE_LOG2];
+		return (valuePage != null) ? (T) valuePage[index & PAGE_INDEX_MASK] : null;
+	}
+	
+	/** @return a 4 bit mask of which children exist */
+	private int getChildBits(int depth, int index)
+	{
+		if (depth + 1 >= this.depthCount)
+		{
+			return 0;
+		}
+		
+		long[] childNodeBits = this.nodeBitsByDepth[depth + 1];
+		if (childNodeBits == null)
+		{
+			return 0;
+		}
+		
+		// all 4 children are always in the same page
+		int firstChildIndex = index << 2;
+		return (int) (childNodeBits[firstChildIndex >>> PAGE_SIZE_LOG2] >>> (firstChildIndex & PAGE_INDEX_MASK)) & 0b1111;
+	}
+	
+	/** creates a node without a value, allocating its page if needed */
+	private void createNode(int depth, int index)
+	{
+		if (this.nodeBitsByDepth[depth] == null)
+		{
+			// shallow levels are smaller than a single page
+			int pageCount = Math.max(1, (1 << (depth * 2)) >>> PAGE_SIZE_LOG2);
+			this.valuePagesByDepth[depth] = new Object[pageCount][];
+			this.nodeBitsByDepth[depth] = new long[pageCount];
+			this.pageBitsByDepth[depth] = new long[(pageCount + 63) >>> 6];
+		}
+		
+		int pageIndex = index >>> PAGE_SIZE_LOG2;
+		if (this.valuePagesByDepth[depth][pageIndex] == null)
+		{
+			this.valuePagesByDepth[depth][pageIndex] = new Object[Math.min(PAGE_SIZE, 1 << (depth * 2))];
+			this.pageBitsByDepth[depth][pageIndex >>> 6] |= 1L << pageIndex;
+		}
+		
+		this.nodeBitsByDepth[depth][pageIndex] |= 1L << index;
+		this.nodeCountByDepth[depth]++;
+	}
+	
+	/** removes a node and its value, freeing its page if it was the page's last node */
+	private void removeNode(int depth, int index)
+	{
+		int pageIndex = index >>> PAGE_SIZE_LOG2;
+		Object[] valuePage = this.valuePagesByDepth[depth][pageIndex];
+		if (valuePage[index & PAGE_INDEX_MASK] != null)
+		{
+			valuePage[index & PAGE_INDEX_MASK] = null;
+			this.valueCount--;
+			this.modificationCount++;
+		}
+		
+		this.nodeBitsByDepth[depth][pageIndex] &= ~(1L << index);
+		this.nodeCountByDepth[depth]--;
+		
+		if (this.nodeCountByDepth[depth] == 0)
+		{
+			this.valuePagesByDepth[depth] = null;
+			this.nodeBitsByDepth[depth] = null;
+			this.pageBitsByDepth[depth] = null;
+		}
+		else if (this.nodeBitsByDepth[depth][pageIndex] == 0)
+		{
+			this.valuePagesByDepth[depth][pageIndex] = null;
+			this.pageBitsByDepth[depth][pageIndex >>> 6] &= ~(1L << pageIndex);
+		}
+	}
+	
+	
+	
+	//==============//
+	// base methods //
+	//==============//
+	
+	@Override
+	public String toString() { return "root: " + DhSectionPos.toString(this.rootPos) + ", minimum detail level: " + this.minimumDetailLevel + ", value #: " + this.valueCount; }
+	
+}
@@ -0,0 +1,287 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.objects.quadTree;
+
+import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps a {@link QuadTree}'s values sorted from nearest to farthest from the tree's center
+ * (by the Manhattan distance between each value's section center 
+ * and the center of the highest detail section the tree's center is in). <br><br>
+ *
+ * Sorting is only done when the tree's values change or its center moves into a different
+ * highest detail section, since smaller movements barely change the order. <br>
+ * Values that stay in the tree keep their previous order, so the list is usually already
+ * close to sorted and an insertion sort only has to move a few values. <br><br>
+ *
+ * {@link NearToFarValueSorter#update} should only be called by one thread at a time,
+ * the sorted values are then published as a new array that any thread can read.
+ *
+ * @param <T> the value stored in the tree
+ */
+public class NearToFarValueSorter<T>
+{
+	/** 
+	 * If more values than this were added, or the center moved more than one section,
+	 * the values are sorted from scratch instead of with an insertion sort. 
+	 */
+	private static final int MAX_NEW_VALUES_FOR_INSERTION_SORT = 64;
+	
+	private final ToLongFunction<? super T> getSectionPosFunc;
+	private final IntFunction<T[]> arrayConstructor;
+	
+	/** values that were added since the last update, re-used to prevent re-allocating it each update */
+	private final ReferenceOpenHashSet<T> newValues = new ReferenceOpenHashSet<>();
+	
+	// only used by the updating thread //
+	private T[] sortedValues;
+	/** each sorted value's distance to the tree's center, in the same order as {@link NearToFarValueSorter#sortedValues} */
+	private int[] sortedDistances = new int[0];
+	private int sortedCount = 0;
+	/** used when sorting from scratch */
+	private long[] packedDistanceAndIndex = new long[0];
+	private T[] sortingBuffer;
+	
+	private int lastModificationCount = 0;
+	private int lastCenterSectionX = 0;
+	private int lastCenterSectionZ = 0;
+	private boolean updatedOnce = false;
+	
+	// published for other threads //
+	private volatile T[] nearToFarSnapshot;
+	private volatile long lastSortTimeInNs = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/**
+	 * @param getSectionPosFunc returns the section position the value is stored at
+	 * @param arrayConstructor creates an array of the given length, IE: "T[]::new"
+	 */
+	public NearToFarValueSorter(ToLongFunction<? super T> getSectionPosFunc, IntFunction<T[]> arrayConstructor)
+	{
+		this.getSectionPosFunc = getSectionPosFunc;
+		this.arrayConstructor = arrayConstructor;
+		
+		this.sortedValues = arrayConstructor.apply(0);
+		this.sortingBuffer = arrayConstructor.apply(0);
+		this.nearToFarSnapshot = arrayConstructor.apply(0);
+	}
+	
+	
+	
+	//========//
+	// update //
+	//========//
+	
+	/**
+	 * Re-sorts the tree's values if they or the tree's center have changed since the last update. <br>
+	 * Should be called from the same thread that modifies the tree.
+	 * 
+	 * @return true if a new snapshot was published
+	 */
+	public boolean update(QuadTree<T> tree)
+	{
+		int modificationCount = tree.getModificationCount();
+		DhBlockPos2D centerPos = tree.getCenterBlockPos();
+		int centerSectionX = centerPos.x >> tree.treeMaxDetailLevel;
+		int centerSectionZ = centerPos.z >> tree.treeMaxDetailLevel;
+		
+		boolean valuesChanged = !this.updatedOnce || modificationCount != this.lastModificationCount;
+		int centerSectionMoveDistance = Math.max(Math.abs(centerSectionX - this.lastCenterSectionX), Math.abs(centerSectionZ - this.lastCenterSectionZ));
+		if (!valuesChanged && centerSectionMoveDistance == 0)
+		{
+			return false;
+		}
+		
+		long startTimeNs = System.nanoTime();
+		
+		this.updatedOnce = true;
+		this.lastModificationCount = modificationCount;
+		this.lastCenterSectionX = centerSectionX;
+		this.lastCenterSectionZ = centerSectionZ;
+		
+		int newValueCount = 0;
+		if (valuesChanged)
+		{
+			newValueCount = this.updateValues(tree);
+		}
+		
+		DhBlockPos2D sortCenterPos = getSortCenterPos(centerSectionX, centerSectionZ, tree.treeMaxDetailLevel);
+		for (int i = 0; i < this.sortedCount; i++)
+		{
+			this.sortedDistances[i] = DhSectionPos.getManhattanBlockDistance(this.getSectionPosFunc.applyAsLong(this.sortedValues[i]), sortCenterPos);
+		}
+		
+		if (newValueCount > MAX_NEW_VALUES_FOR_INSERTION_SORT || centerSectionMoveDistance > 1)
+		{
+			this.sortFromScratch();
+		}
+		else
+		{
+			this.insertionSort();
+		}
+		
+		T[] snapshot = this.arrayConstructor.apply(this.sortedCount);
+		System.arraycopy(this.sortedValues, 0, snapshot, 0, this.sortedCount);
+		this.nearToFarSnapshot = snapshot;
+		
+		this.lastSortTimeInNs = System.nanoTime() - startTimeNs;
+		return true;
+	}
+	
+	/** 
+	 * Sorting around the center section's center instead of the exact position 
+	 * means the order only depends on which section the tree's center is in.
+	 */
+	public static DhBlockPos2D getSortCenterPos(int centerSectionX, int centerSectionZ, byte sectionDetailLevel)
+	{
+		int halfSectionWidth = (1 << sectionDetailLevel) / 2;
+		return new DhBlockPos2D((centerSectionX << sectionDetailLevel) + halfSectionWidth, (centerSectionZ << sectionDetailLevel) + halfSectionWidth);
+	}
+	
+	/** 
+	 * Removes values that are no longer in the tree and adds new ones to the end,
+	 * values that were already present keep their order.
+	 * 
+	 * @return the number of new values 
+	 */
+	private int updateValues(QuadTree<T> tree)
+	{
+		this.newValues.clear();
+		tree.forEachValue(this.newValues::add);
+		
+		int valueCount = this.newValues.size();
+		if (this.sortedValues.length < valueCount)
+		{
+			int newLength = Math.max(valueCount, this.sortedValues.length * 2);
+			this.sortedValues = Arrays.copyOf(this.sortedValues, newLength);
+			this.sortedDistances = new int[newLength];
+			this.sortingBuffer = this.arrayConstructor.apply(newLength);
+			this.packedDistanceAndIndex = new long[newLength];
+		}
+		
+		// removing the existing values leaves only the new ones in the set
+		int keptCount = 0;
+		for (int i = 0; i < this.sortedCount; i++)
+		{
+			T value = this.sortedValues[i];
+			if (this.newValues.remove(value))
+			{
+				this.sortedValues[keptCount] = value;
+				keptCount++;
+			}
+		}
+		
+		int newValueCount = this.newValues.size();
+		int index = keptCount;
+		for (T value : this.newValues)
+		{
+			this.sortedValues[index] = value;
+			index++;
+		}
+		this.newValues.clear();
+		
+		// don't keep removed values from being garbage collected
+		Arrays.fill(this.sortedValues, index, Math.max(index, this.sortedCount), null);
+		this.sortedCount = index;
+		
+		return newValueCount;
+	}
+	
+	/** fast when the values are nearly sorted */
+	private void insertionSort()
+	{
+		int[] distances = this.sortedDistances;
+		T[] values = this.sortedValues;
+		for (int i = 1; i < this.sortedCount; i++)
+		{
+			int distance = distances[i];
+			if (distances[i - 1] <= distance)
+			{
+				continue;
+			}
+			
+			T value = values[i];
+			int j = i - 1;
+			while (j >= 0 && distances[j] > distance)
+			{
+				distances[j + 1] = distances[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			distances[j + 1] = distance;
+			values[j + 1] = value;
+		}
+	}
+	
+	/** 
+	 * Packs each value's distance and index into a long so they can be sorted as primitives,
+	 * values with the same distance keep their previous order. 
+	 */
+	private void sortFromScratch()
+	{
+		for (int i = 0; i < this.sortedCount; i++)
+		{
+			// distances are never negative, so the distance can be stored in the upper bits
+			this.packedDistanceAndIndex[i] = ((long) this.sortedDistances[i] << 32) | i;
+		}
+		Arrays.sort(this.packedDistanceAndIndex, 0, this.sortedCount);
+		
+		for (int i = 0; i < this.sortedCount; i++)
+		{
+			long packed = this.packedDistanceAndIndex[i];
+			this.sortingBuffer[i] = this.sortedValues[(int) packed];
+			this.sortedDistances[i] = (int) (packed >>> 32);
+		}
+		
+		T[] sortedValues = this.sortingBuffer;
+		this.sortingBuffer = this.sortedValues;
+		this.sortedValues = sortedValues;
+		Arrays.fill(this.sortingBuffer, 0, this.sortedCount, null);
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** 
+	 * The array shouldn't be modified since it may be shared with other threads. <br>
+	 * Values may have been removed from the tree since this was published.
+	 * 
+	 * @return the tree's values sorted from nearest to farthest, as of the last {@link NearToFarValueSorter#update}
+	 */
+	public T[] getNearToFarSnapshot() { return this.nearToFarSnapshot; }
+	
+	/** @return how long the last update that re-sorted the values took */
+	public long getLastSortTimeInNs() { return this.lastSortTimeInNs; }
+	
+}
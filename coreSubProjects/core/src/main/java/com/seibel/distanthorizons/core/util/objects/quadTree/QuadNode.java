@@ -29,8 +29,14 @@ import it.unimi.dsi.fastutil.longs.LongIterator;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.function.Consumer;
 
+/**
+ * A view of a single node in an {@link ImplicitQuadTree}. <br>
+ * The node's data is stored in the tree, so creating a {@link QuadNode}
+ * is cheap and two nodes for the same position are equal.
+ */
 public class QuadNode<T>
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
@@ -38,76 +44,33 @@ public class QuadNode<T>
 	
 	public final long sectionPos;
 	public final byte minimumDetailLevel;
-	public T value;
 	
+	private final ImplicitQuadTree<T> tree;
 	
-	/**
-	 * North West <br>
-	 * index 0 <br>
-	 * relative pos (0,0)
-	 */
-	public QuadNode<T> nwChild;
-	/**
-	 * North East <br>
-	 * index 1 <br>
-	 * relative (1,0)
-	 */
-	public QuadNode<T> neChild;
-	/**
-	 * South West <br>
-	 * index 2 <br>
-	 * relative (0,1)
-	 */
-	public QuadNode<T> swChild;
-	/**
-	 * South East <br>
-	 * index 3 <br>
-	 * relative (1,1)
-	 */
-	public QuadNode<T> seChild;
 	
 	
-	
-	public QuadNode(long sectionPos, byte minimumDetailLevel)
+	/** creates a new tree with this node as its root */
+	public QuadNode(long sectionPos, byte minimumDetailLevel) { this(new ImplicitQuadTree<>(sectionPos, minimumDetailLevel), sectionPos); }
+	public QuadNode(ImplicitQuadTree<T> tree, long sectionPos)
 	{
+		this.tree = tree;
 		this.sectionPos = sectionPos;
-		this.minimumDetailLevel = minimumDetailLevel;
+		this.minimumDetailLevel = tree.minimumDetailLevel;
 	}
 	
 	
 	
+	public T getValue() { return this.tree.getValue(this.sectionPos); }
+	
 	/**
 	 * Use {@link QuadNode#getNonNullChildCount()} if you want the number of non-null child values.
 	 *
 	 * @return the number of non-null child nodes
 	 */
-	public int getTotalChildCount()
-	{
-		int count = 0;
-		for (int i = 0; i < 4; i++)
-		{
-			if (this.getChildByIndex(i) != null)
-			{
-				count++;
-			}
-		}
-		return count;
-	}
+	public int getTotalChildCount() { return this.tree.getChildCount(this.sectionPos); }
 	
 	/** @return the number of children that have non-null values */
-	public int getNonNullChildCount()
-	{
-		int count = 0;
-		for (int i = 0; i < 4; i++)
-		{
-			QuadNode<T> child = this.getChildByIndex(i);
-			if (child != null && (child.value != null || child.getNonNullChildCount() != 0))
-			{
-				count++;
-			}
-		}
-		return count;
-	}
+	public int getNonNullChildCount() { return this.tree.getNonNullChildCount(this.sectionPos); }
 	
 	
 	
@@ -121,23 +84,22 @@ public class QuadNode<T>
 	 * 3 = (1,1) - South East <br>
 	 *
 	 * @param child0to3 must be an int between 0 and 3
+	 * @return null if the child doesn't exist
 	 */
 	public QuadNode<T> getChildByIndex(int child0to3) throws IllegalArgumentException
 	{
-		switch (child0to3)
+		if (child0to3 < 0 || child0to3 > 3)
 		{
-			case 0:
-				return nwChild;
-			case 1:
-				return swChild;
-			case 2:
-				return neChild;
-			case 3:
-				return seChild;
-			
-			default:
-				throw new IllegalArgumentException("child0to3 must be between 0 and 3");
+			throw new IllegalArgumentException("child0to3 must be between 0 and 3");
 		}
+		
+		if (DhSectionPos.getDetailLevel(this.sectionPos) <= this.minimumDetailLevel)
+		{
+			return null;
+		}
+		
+		long childPos = DhSectionPos.getChildByIndex(this.sectionPos, child0to3);
+		return this.tree.nodeExists(childPos) ? new QuadNode<>(this.tree, childPos) : null;
 	}
 	
 	
@@ -146,7 +108,11 @@ public class QuadNode<T>
 	 * @return the node at the given position
 	 * @throws IllegalArgumentException if childSectionPos has the wrong detail level or is outside the bounds of this node
 	 */
-	public QuadNode<T> getNode(long sectionPos) throws IllegalArgumentException { return this.getOrSetValue(sectionPos, false, null); }
+	public QuadNode<T> getNode(long sectionPos) throws IllegalArgumentException
+	{
+		this.throwIfInvalidPos(sectionPos, false);
+		return this.tree.nodeExists(sectionPos) ? new QuadNode<>(this.tree, sectionPos) : null;
+	}
 	
 	/**
 	 * @param sectionPos must be 1 detail level lower than this node's detail level
@@ -155,29 +121,12 @@ public class QuadNode<T>
 	 */
 	public T setValue(long sectionPos, T newValue) throws IllegalArgumentException
 	{
-		QuadNode<T> previousNode = this.getNode(sectionPos);
-		if (previousNode != null)
-		{
-			T previousValue = previousNode.value;
-			previousNode.value = newValue;
-			return previousValue;
-		}
-		else
-		{
-			this.getOrSetValue(sectionPos, true, newValue);
-			return null;
-		}
+		this.throwIfInvalidPos(sectionPos, true);
+		return this.tree.setValue(sectionPos, newValue);
 	}
 	
-	/**
-	 * @param inputSectionPos must be 1 detail level lower than this node's detail level
-	 * @return the node at the given position before the new node was set (if the new node should be set)
-	 * @throws IllegalArgumentException if childSectionPos has the wrong detail level or is outside the bounds of this
-	 */
-	private QuadNode<T> getOrSetValue(long inputSectionPos, boolean replaceValue, T newValue) throws IllegalArgumentException
+	private void throwIfInvalidPos(long inputSectionPos, boolean replaceValue) throws IllegalArgumentException
 	{
-		// debug validation
-		
 		if (!DhSectionPos.contains(this.sectionPos, inputSectionPos))
 		{
 			LOGGER.error((replaceValue ? "set " : "get ") + inputSectionPos + " center block: " + DhSectionPos.getCenterBlockPos(inputSectionPos) + ", this pos: " + this.sectionPos + " this center block: " + DhSectionPos.getCenterBlockPos(this.sectionPos));
@@ -198,90 +147,6 @@ public class QuadNode<T>
 		{
 			throw new IllegalArgumentException("Input position is requesting a detail level lower than what this node can provide. Node minimum detail level: " + this.minimumDetailLevel + ", input pos: " + inputSectionPos);
 		}
-		
-		
-		
-		// get/set logic
-		if (DhSectionPos.getDetailLevel(inputSectionPos) == DhSectionPos.getDetailLevel(this.sectionPos))
-		{
-			// this node is the requested position
-			if (replaceValue)
-			{
-				this.value = newValue;
-			}
-			return this;
-		}
-		else
-		{
-			// this node is a parent to the position requested,
-			// recurse to the next node
-
-//			LOGGER.info((replaceValue ? "set " : "get ")+inputSectionPos+" center block: "+inputSectionPos.getCenter().getCornerBlockPos()+", this pos: "+this.sectionPos+" this center block: "+this.sectionPos.getCenter().getCornerBlockPos());
-			
-			long nwPos = DhSectionPos.getChildByIndex(this.sectionPos, 0);
-			long swPos = DhSectionPos.getChildByIndex(this.sectionPos, 1);
-			long nePos = DhSectionPos.getChildByIndex(this.sectionPos, 2);
-			long sePos = DhSectionPos.getChildByIndex(this.sectionPos, 3);
-			
-			// look for the child that contains the input position (there may be a faster way to do this, but this works for now)
-			QuadNode<T> childNode;
-			if (DhSectionPos.contains(nwPos, inputSectionPos))
-			{
-				// TODO merge duplicate code
-				if (replaceValue && this.nwChild == null)
-				{
-					// if no node exists for this position, but we want to insert a new value at this position, create a new node
-					this.nwChild = new QuadNode<>(nwPos, this.minimumDetailLevel);
-				}
-				childNode = this.nwChild;
-				
-				// childNode should only be null when replaceValue = false and the end of a node chain has been reached
-				return (childNode != null) ? childNode.getOrSetValue(inputSectionPos, replaceValue, newValue) : null;
-			}
-			else if (DhSectionPos.contains(swPos, inputSectionPos))
-			{
-				// TODO merge duplicate code
-				if (replaceValue && this.swChild == null)
-				{
-					// if no node exists for this position, but we want to insert a new value at this position, create a new node
-					this.swChild = new QuadNode<>(swPos, this.minimumDetailLevel);
-				}
-				childNode = this.swChild;
-				
-				// childNode should only be null when replaceValue = false and the end of a node chain has been reached
-				return (childNode != null) ? childNode.getOrSetValue(inputSectionPos, replaceValue, newValue) : null;
-			}
-			else if (DhSectionPos.contains(nePos, inputSectionPos))
-			{
-				// TODO merge duplicate code
-				if (replaceValue && this.neChild == null)
-				{
-					// if no node exists for this position, but we want to insert a new value at this position, create a new node
-					this.neChild = new QuadNode<>(nePos, this.minimumDetailLevel);
-				}
-				childNode = this.neChild;
-				
-				// childNode should only be null when replaceValue = false and the end of a node chain has been reached
-				return (childNode != null) ? childNode.getOrSetValue(inputSectionPos, replaceValue, newValue) : null;
-			}
-			else if (DhSectionPos.contains(sePos, inputSectionPos))
-			{
-				// TODO merge duplicate code
-				if (replaceValue && this.seChild == null)
-				{
-					// if no node exists for this position, but we want to insert a new value at this position, create a new node
-					this.seChild = new QuadNode<>(sePos, this.minimumDetailLevel);
-				}
-				childNode = this.seChild;
-				
-				// childNode should only be null when replaceValue = false and the end of a node chain has been reached
-				return (childNode != null) ? childNode.getOrSetValue(inputSectionPos, replaceValue, newValue) : null;
-			}
-			else
-			{
-				throw new IllegalStateException("input position not contained by any node children. This should've been caught by the this.sectionPos.contains(inputPos) assert before this point.");
-			}
-		}
 	}
 	
 	
@@ -305,51 +170,34 @@ public class QuadNode<T>
 	
 	public void deleteAllChildren() { this.deleteAllChildren(null); }
 	/** @param removedItemConsumer is only fired for non-null nodes, however the value passed in may be null */
-	public void deleteAllChildren(Consumer<? super T> removedItemConsumer)
+	public void deleteAllChildren(Consumer<? super T> removedItemConsumer) { this.tree.deleteAllChildren(this.sectionPos, removedItemConsumer); }
+	
+	
+	
+	//==============//
+	// base methods //
+	//==============//
+	
+	@Override
+	public boolean equals(Object obj)
 	{
-		for (int i = 0; i < 4; i++)
+		if (this == obj)
 		{
-			QuadNode<T> childNode = this.getChildByIndex(i);
-			if (childNode != null)
-			{
-				childNode.deleteAllChildren(removedItemConsumer);
-			}
+			return true;
 		}
-		
-		
-		
-		if (this.nwChild != null && removedItemConsumer != null)
-		{
-			removedItemConsumer.accept(this.nwChild.value);
-		}
-		this.nwChild = null;
-		
-		if (this.neChild != null && removedItemConsumer != null)
-		{
-			removedItemConsumer.accept(this.neChild.value);
-		}
-		this.neChild = null;
-		
-		if (this.seChild != null && removedItemConsumer != null)
+		if (!(obj instanceof QuadNode))
 		{
-			removedItemConsumer.accept(this.seChild.value);
+			return false;
 		}
-		this.seChild = null;
 		
-		if (this.swChild != null && removedItemConsumer != null)
-		{
-			removedItemConsumer.accept(this.swChild.value);
-		}
-		this.swChild = null;
+		QuadNode<?> other = (QuadNode<?>) obj;
+		return this.tree == other.tree && this.sectionPos == other.sectionPos;
 	}
 	
-	
-	
-	//==============//
-	// base methods //
-	//==============//
+	@Override
+	public int hashCode() { return Objects.hash(System.identityHashCode(this.tree), this.sectionPos); }
 	
 	@Override
-	public String toString() { return "pos: " + this.sectionPos + ", children #: " + this.getTotalChildCount() + ", value: " + this.value; }
+	public String toString() { return "pos: " + this.sectionPos + ", children #: " + this.getTotalChildCount() + ", value: " + this.getValue(); }
 	
 }
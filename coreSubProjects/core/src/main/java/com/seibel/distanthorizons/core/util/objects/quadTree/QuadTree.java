@@ -21,23 +21,24 @@ package com.seibel.distanthorizons.core.util.objects.quadTree;
 
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
-import com.seibel.distanthorizons.core.pos.DhLodPos;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.pos.Pos2D;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
 import com.seibel.distanthorizons.coreapi.util.MathUtil;
-import com.seibel.distanthorizons.core.util.gridList.MovableGridRingList;
-import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
 
 /**
- * This class represents a quadTree of T type values.
+ * This class represents a quadTree of T type values. <br><br>
+ * 
+ * The root nodes are kept in a grid that wraps around as the tree moves (the same as a ring list),
+ * and each root's children are stored in an {@link ImplicitQuadTree}.
  */
 public class QuadTree<T>
 {
@@ -58,11 +59,39 @@ public class QuadTree<T>
 	
 	private final int diameterInBlocks; // diameterInBlocks
 	
-	/** contain the actual data in the quad tree structure */
-	private final MovableGridRingList<QuadNode<T>> topRingList;
+	private final int rootGridHalfWidth;
+	private final int rootGridWidth;
+	/** 
+	 * contain the actual data in the quad tree structure <br>
+	 * indexed by {@link QuadTree#getRootGridIndex}
+	 */
+	private final ImplicitQuadTree<T>[] rootGrid;
+	/** the root position of the grid's min corner */
+	private int rootGridMinX;
+	private int rootGridMinZ;
+	/** guards moving the root grid */
+	private final ReentrantReadWriteLock rootGridLock = new ReentrantReadWriteLock();
+	
+	/** 
+	 * each root's offset from the grid's min corner, 
+	 * sorted from nearest to farthest from the grid's center 
+	 */
+	private final int[] rootIterationOffsetX;
+	private final int[] rootIterationOffsetZ;
 	
 	private DhBlockPos2D centerBlockPos;
 	
+	/** 
+	 * Incremented when a root is removed or moves in/out of the tree's bounds,
+	 * plus each removed root's modification count so {@link QuadTree#getModificationCount()} never goes backwards.
+	 */
+	private int rootModificationCount = 0;
+	/** 
+	 * Roots outside the tree's bounds are skipped when iterating, 
+	 * so the tree's values can change just by moving the tree's center.
+	 */
+	private final boolean[] rootInBoundsByGridIndex;
+	
 	
 	
 	/**
@@ -82,91 +111,166 @@ public class QuadTree<T>
 		int halfSizeInRootNodes = Math.floorDiv(this.diameterInBlocks, 2) / BitShiftUtil.powerOfTwo(this.treeMinDetailLevel);
 		halfSizeInRootNodes = halfSizeInRootNodes + 1; // always add 1 so nodes will always have a parent, even if the tree's center is offset from the root node grid 
 		
-		Pos2D ringListCenterPos = new Pos2D(
-				BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.x, this.treeMinDetailLevel),
-				BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.z, this.treeMinDetailLevel));
-		this.topRingList = new MovableGridRingList<>(halfSizeInRootNodes, ringListCenterPos.x, ringListCenterPos.y);
+		this.rootGridHalfWidth = halfSizeInRootNodes;
+		this.rootGridWidth = this.rootGridHalfWidth * 2 + 1;
+		this.rootGrid = createRootGrid(this.rootGridWidth * this.rootGridWidth);
+		this.rootInBoundsByGridIndex = new boolean[this.rootGrid.length];
+		this.rootGridMinX = BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.x, this.treeMinDetailLevel) - this.rootGridHalfWidth;
+		this.rootGridMinZ = BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.z, this.treeMinDetailLevel) - this.rootGridHalfWidth;
+		
+		
+		// sort the root offsets from nearest to farthest from the center
+		Pos2D[] offsets = new Pos2D[this.rootGrid.length];
+		int i = 0;
+		for (int x = -this.rootGridHalfWidth; x <= this.rootGridHalfWidth; x++)
+		{
+			for (int z = -this.rootGridHalfWidth; z <= this.rootGridHalfWidth; z++)
+			{
+				offsets[i] = new Pos2D(x, z);
+				i++;
+			}
+		}
+		Arrays.sort(offsets, Comparator.comparingLong((Pos2D offset) -> (long) offset.x * offset.x + (long) offset.y * offset.y));
+		
+		this.rootIterationOffsetX = new int[offsets.length];
+		this.rootIterationOffsetZ = new int[offsets.length];
+		for (int j = 0; j < offsets.length; j++)
+		{
+			this.rootIterationOffsetX[j] = offsets[j].x + this.rootGridHalfWidth;
+			this.rootIterationOffsetZ[j] = offsets[j].y + this.rootGridHalfWidth;
+		}
 		
 	}
 	
 	
 	
+	/** 
+	 * Java can't create generic arrays directly, 
+	 * this is safe since the array is empty and only ever holds {@link ImplicitQuadTree}'s of type T.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> ImplicitQuadTree<T>[] createRootGrid(int length) { return (ImplicitQuadTree<T>[]) new ImplicitQuadTree<?>[length]; }
+	
+	
+	
 	//=====================//
 	// getters and setters //
 	//=====================//
 	
 	/** @return the node at the given section position */
-	public final QuadNode<T> getNode(long pos) throws IndexOutOfBoundsException { return this.getOrSetNode(pos, false, null, true); }
-	/** @return the value at the given section position */
-	public final T getValue(long pos) throws IndexOutOfBoundsException
+	public final QuadNode<T> getNode(long pos) throws IndexOutOfBoundsException
 	{
-		QuadNode<T> node = this.getNode(pos);
-		if (node != null)
-		{
-			return node.value;
-		}
-		return null;
+		this.throwIfOutOfBounds(pos);
+		ImplicitQuadTree<T> rootTree = this.getRootTree(pos, false);
+		return (rootTree != null && rootTree.nodeExists(pos)) ? new QuadNode<>(rootTree, pos) : null;
 	}
+	/** @return the value at the given section position */
+	public final T getValue(long pos) throws IndexOutOfBoundsException { return this.getOrSetValue(pos, false, null, true); }
 	
 	/** @return the value that was previously in the given position, null if nothing */
-	public final T setValue(long pos, T value) throws IndexOutOfBoundsException
-	{
-		T previousValue = this.getValue(pos);
-		this.getOrSetNode(pos, true, value, true);
-		return previousValue;
-	}
+	public final T setValue(long pos, T value) throws IndexOutOfBoundsException { return this.getOrSetValue(pos, true, value, true); }
 	
-	/** @param runBoundaryChecks should only ever be set to true internally for removing out of bound nodes */
-	protected final QuadNode<T> getOrSetNode(long pos, boolean setNewValue, T newValue, boolean runBoundaryChecks) throws IndexOutOfBoundsException
+	/** 
+	 * @param runBoundaryChecks should only ever be set to false internally for handling out of bound nodes 
+	 * @return the value that was in the given position before a new value was set
+	 */
+	protected final T getOrSetValue(long pos, boolean setNewValue, T newValue, boolean runBoundaryChecks) throws IndexOutOfBoundsException
 	{
-		if (runBoundaryChecks && !this.isSectionPosInBounds(pos))
+		if (runBoundaryChecks)
 		{
-			int radius = this.diameterInBlocks() / 2;
-			DhBlockPos2D minPos = this.getCenterBlockPos().add(new DhBlockPos2D(-radius, -radius));
-			DhBlockPos2D maxPos = this.getCenterBlockPos().add(new DhBlockPos2D(radius, radius));
-			throw new IndexOutOfBoundsException("QuadTree GetOrSet failed. Position out of bounds, min pos: " + minPos + ", max pos: " + maxPos + ", min detail level: " + this.treeMaxDetailLevel + ", max detail level: " + this.treeMinDetailLevel + ". Given Position: [" + DhSectionPos.toString(pos) + "] = block pos: " + DhSectionPos.convertToDetailLevel(pos, LodUtil.BLOCK_DETAIL_LEVEL));
+			this.throwIfOutOfBounds(pos);
 		}
 		
+		ImplicitQuadTree<T> rootTree = this.getRootTree(pos, setNewValue);
+		if (rootTree == null)
+		{
+			if (setNewValue)
+			{
+				LodUtil.assertNotReach("Failed to add top quadTree node for position: " + DhSectionPos.toString(pos));
+			}
+			return null;
+		}
 		
+		return setNewValue ? rootTree.setValue(pos, newValue) : rootTree.getValue(pos);
+	}
+	
+	/** 
+	 * Unlike the other getters this doesn't check if the position is within the tree's bounds.
+	 * @return true if a node exists at the given position, even if its value is null
+	 */
+	public final boolean nodeExists(long pos)
+	{
+		byte detailLevel = DhSectionPos.getDetailLevel(pos);
+		if (detailLevel < this.treeMaxDetailLevel || detailLevel > this.treeMinDetailLevel)
+		{
+			return false;
+		}
 		
-		long rootPos = DhSectionPos.convertToDetailLevel(pos, this.treeMinDetailLevel);
-		int ringListPosX = DhSectionPos.getX(rootPos);
-		int ringListPosZ = DhSectionPos.getZ(rootPos);
+		ImplicitQuadTree<T> rootTree = this.getRootTree(pos, false);
+		return rootTree != null && rootTree.nodeExists(pos);
+	}
+	
+	/** @return null if the root isn't in the grid or doesn't exist and shouldn't be created */
+	private ImplicitQuadTree<T> getRootTree(long pos, boolean createIfMissing)
+	{
+		int rootLevelOffset = this.treeMinDetailLevel - DhSectionPos.getDetailLevel(pos);
+		int rootX = DhSectionPos.getX(pos) >> rootLevelOffset;
+		int rootZ = DhSectionPos.getZ(pos) >> rootLevelOffset;
 		
-		QuadNode<T> topQuadNode = this.topRingList.get(ringListPosX, ringListPosZ);
-		if (topQuadNode == null)
+		this.rootGridLock.readLock().lock();
+		try
 		{
-			if (!setNewValue)
+			if (!this.rootInGrid(rootX, rootZ, this.rootGridMinX, this.rootGridMinZ))
 			{
 				return null;
 			}
 			
-			topQuadNode = new QuadNode<T>(rootPos, this.treeMaxDetailLevel);
-			boolean successfullyAdded = this.topRingList.set(ringListPosX, ringListPosZ, topQuadNode);
-			if (!successfullyAdded)
+			int gridIndex = this.getRootGridIndex(rootX, rootZ);
+			ImplicitQuadTree<T> rootTree = this.rootGrid[gridIndex];
+			if (rootTree == null && createIfMissing)
 			{
-				LodUtil.assertNotReach("Failed to add top quadTree node at position: " + rootPos);
+				synchronized (this.rootGrid)
+				{
+					rootTree = this.rootGrid[gridIndex];
+					if (rootTree == null)
+					{
+						rootTree = new ImplicitQuadTree<>(DhSectionPos.encode(this.treeMinDetailLevel, rootX, rootZ), this.treeMaxDetailLevel);
+						this.rootGrid[gridIndex] = rootTree;
+						this.rootInBoundsByGridIndex[gridIndex] = this.isSectionPosInBounds(rootTree.rootPos);
+					}
+				}
 			}
+			return rootTree;
 		}
-		
-		if (!DhSectionPos.contains(topQuadNode.sectionPos, pos))
+		finally
 		{
-			LodUtil.assertNotReach("failed to get a root node that contains the input position: " + pos + " root node pos: " + topQuadNode.sectionPos);
+			this.rootGridLock.readLock().unlock();
 		}
-		
-		
-		QuadNode<T> returnNode = topQuadNode.getNode(pos);
-		if (setNewValue)
+	}
+	private boolean rootInGrid(int rootX, int rootZ, int minX, int minZ)
+	{
+		return minX <= rootX && rootX < minX + this.rootGridWidth
+				&& minZ <= rootZ && rootZ < minZ + this.rootGridWidth;
+	}
+	/** the grid wraps around, so roots don't have to be moved when the grid does */
+	private int getRootGridIndex(int rootX, int rootZ) { return Math.floorMod(rootX, this.rootGridWidth) * this.rootGridWidth + Math.floorMod(rootZ, this.rootGridWidth); }
+	
+	private void throwIfOutOfBounds(long pos) throws IndexOutOfBoundsException
+	{
+		if (!this.isSectionPosInBounds(pos))
 		{
-			topQuadNode.setValue(pos, newValue);
+			int radius = this.diameterInBlocks() / 2;
+			DhBlockPos2D minPos = this.getCenterBlockPos().add(new DhBlockPos2D(-radius, -radius));
+			DhBlockPos2D maxPos = this.getCenterBlockPos().add(new DhBlockPos2D(radius, radius));
+			throw new IndexOutOfBoundsException("QuadTree GetOrSet failed. Position out of bounds, min pos: " + minPos + ", max pos: " + maxPos + ", min detail level: " + this.treeMaxDetailLevel + ", max detail level: " + this.treeMinDetailLevel + ". Given Position: [" + DhSectionPos.toString(pos) + "] = block pos: " + DhSectionPos.convertToDetailLevel(pos, LodUtil.BLOCK_DETAIL_LEVEL));
 		}
-		return returnNode;
 	}
 	
 	public boolean isSectionPosInBounds(long testPos)
 	{
 		// check if the testPos is within the detail level limits of the tree
-		boolean detailLevelWithinBounds = this.treeMaxDetailLevel <= DhSectionPos.getDetailLevel(testPos) && DhSectionPos.getDetailLevel(testPos) <= this.treeMinDetailLevel;
+		byte detailLevel = DhSectionPos.getDetailLevel(testPos);
+		boolean detailLevelWithinBounds = this.treeMaxDetailLevel <= detailLevel && detailLevel <= this.treeMinDetailLevel;
 		if (!detailLevelWithinBounds)
 		{
 			return false;
@@ -174,34 +278,19 @@ public class QuadTree<T>
 		
 		
 		// check if the testPos is within the X,Z boundary of the tree
-		DhBlockPos2D treeBlockCorner = this.centerBlockPos.add(new DhBlockPos2D(-this.diameterInBlocks / 2, -this.diameterInBlocks / 2));
-		DhLodPos treeCornerPos = new DhLodPos((byte) 0, treeBlockCorner.x, treeBlockCorner.z);
-		
-		long inputSectionCorner = DhSectionPos.convertToDetailLevel(testPos, (byte) 0);
-		DhLodPos inputCornerPos = new DhLodPos((byte) 0, DhSectionPos.getX(inputSectionCorner), DhSectionPos.getZ(inputSectionCorner));
-		int inputBlockWidth = BitShiftUtil.powerOfTwo(DhSectionPos.getDetailLevel(testPos));
-		
-		return DoSquaresOverlap(treeCornerPos, this.diameterInBlocks, inputCornerPos, inputBlockWidth);
-	}
-	private static boolean DoSquaresOverlap(DhLodPos square1Min, int square1Width, DhLodPos square2Min, int square2Width)
-	{
-		// Determine the coordinates of the squares (the variables say rect[angle] because this logic would also work there and was simplified to work for squares)
-		float rect1MinX = square1Min.x;
-		float rect1MaxX = square1Min.x + square1Width;
-		float rect1MinZ = square1Min.z;
-		float rect1MaxZ = square1Min.z + square1Width;
-		
-		float rect2MinX = square2Min.x;
-		float rect2MaxX = square2Min.x + square2Width;
-		float rect2MinZ = square2Min.z;
-		float rect2MaxZ = square2Min.z + square2Width;
-		
-		// Check if the squares overlap
-		return
-				rect1MinX < rect2MaxX &&
-						rect1MaxX > rect2MinX &&
-						rect1MinZ < rect2MaxZ &&
-						rect1MaxZ > rect2MinZ;
+		DhBlockPos2D centerPos = this.centerBlockPos;
+		int treeMinX = centerPos.x - this.diameterInBlocks / 2;
+		int treeMinZ = centerPos.z - this.diameterInBlocks / 2;
+		
+		int inputBlockWidth = BitShiftUtil.powerOfTwo(detailLevel);
+		int inputMinX = DhSectionPos.getX(testPos) * inputBlockWidth;
+		int inputMinZ = DhSectionPos.getZ(testPos) * inputBlockWidth;
+		
+		// check if the squares overlap
+		return treeMinX < inputMinX + inputBlockWidth
+				&& treeMinX + this.diameterInBlocks > inputMinX
+				&& treeMinZ < inputMinZ + inputBlockWidth
+				&& treeMinZ + this.diameterInBlocks > inputMinZ;
 	}
 	
 	
@@ -227,6 +316,37 @@ public class QuadTree<T>
 	
 	
 	
+	//==========//
+	// deletion //
+	//==========//
+	
+	/** 
+	 * Removes every node below the given position, doesn't check if the position is within the tree's bounds.
+	 * @param removedItemConsumer is fired for each removed node, however the value passed in may be null
+	 */
+	public void deleteAllChildren(long pos, Consumer<? super T> removedItemConsumer)
+	{
+		ImplicitQuadTree<T> rootTree = this.getRootTree(pos, false);
+		if (rootTree != null && rootTree.nodeExists(pos))
+		{
+			rootTree.deleteAllChildren(pos, removedItemConsumer);
+		}
+	}
+	
+	/** Sets every value in the tree to null, the nodes themselves are kept. */
+	public void clearValues(Consumer<? super T> removedValueConsumer)
+	{
+		for (ImplicitQuadTree<T> rootTree : this.rootGrid)
+		{
+			if (rootTree != null)
+			{
+				rootTree.clearValues(removedValueConsumer);
+			}
+		}
+	}
+	
+	
+	
 	//===========//
 	// iterators //
 	//===========//
@@ -237,6 +357,55 @@ public class QuadTree<T>
 	public Iterator<QuadNode<T>> nodeIterator() { return new QuadTreeNodeIterator(false); }
 	public Iterator<QuadNode<T>> leafNodeIterator() { return new QuadTreeNodeIterator(true); }
 	
+	/** 
+	 * Same order as {@link QuadTree#nodeIterator()}, but without creating a {@link QuadNode} for each value. <br>
+	 * The tree shouldn't be modified by the consumer.
+	 */
+	public void forEachValue(Consumer<? super T> consumer)
+	{
+		for (int i = 0; i < this.rootIterationOffsetX.length; i++)
+		{
+			ImplicitQuadTree<T> rootTree = this.getInBoundsRootTreeByIterationIndex(i);
+			if (rootTree != null)
+			{
+				rootTree.forEachValue(consumer);
+			}
+		}
+	}
+	/** 
+	 * Same order as {@link QuadTree#leafNodeIterator()}, but without creating a {@link QuadNode} for each leaf. <br>
+	 * The tree shouldn't be modified by the consumer.
+	 */
+	public void forEachLeaf(LongConsumer consumer)
+	{
+		for (int i = 0; i < this.rootIterationOffsetX.length; i++)
+		{
+			ImplicitQuadTree<T> rootTree = this.getInBoundsRootTreeByIterationIndex(i);
+			if (rootTree != null)
+			{
+				rootTree.forEachLeaf(consumer);
+			}
+		}
+	}
+	/** @return null if the root doesn't exist or is outside the tree's bounds */
+	private ImplicitQuadTree<T> getInBoundsRootTreeByIterationIndex(int iterationIndex)
+	{
+		ImplicitQuadTree<T> rootTree;
+		this.rootGridLock.readLock().lock();
+		try
+		{
+			int rootX = this.rootGridMinX + this.rootIterationOffsetX[iterationIndex];
+			int rootZ = this.rootGridMinZ + this.rootIterationOffsetZ[iterationIndex];
+			rootTree = this.rootGrid[this.getRootGridIndex(rootX, rootZ)];
+		}
+		finally
+		{
+			this.rootGridLock.readLock().unlock();
+		}
+		
+		return (rootTree != null && this.isSectionPosInBounds(rootTree.rootPos)) ? rootTree : null;
+	}
+	
 	
 	
 	//================//
@@ -248,67 +417,61 @@ public class QuadTree<T>
 	{
 		this.centerBlockPos = newCenterPos;
 		
-		Pos2D expectedCenterPos = new Pos2D(
-				BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.x, this.treeMinDetailLevel),
-				BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.z, this.treeMinDetailLevel));
-		
-		if (this.topRingList.getCenter().equals(expectedCenterPos))
+		int newMinX = BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.x, this.treeMinDetailLevel) - this.rootGridHalfWidth;
+		int newMinZ = BitShiftUtil.divideByPowerOfTwo(this.centerBlockPos.z, this.treeMinDetailLevel) - this.rootGridHalfWidth;
+		if (this.rootGridMinX == newMinX && this.rootGridMinZ == newMinZ)
 		{
 			// tree doesn't need to be moved
+			this.updateRootsInBounds();
 			return;
 		}
 		
 		
-		// remove out of bounds root nodes
-		this.topRingList.moveTo(expectedCenterPos.x, expectedCenterPos.y, (quadNode) ->
+		this.rootGridLock.writeLock().lock();
+		try
 		{
-			if (quadNode != null && removedItemConsumer != null)
+			this.rootGridMinX = newMinX;
+			this.rootGridMinZ = newMinZ;
+			
+			// remove out of bounds root nodes,
+			// roots that are still in the grid don't need to be moved since the grid wraps around
+			for (int i = 0; i < this.rootGrid.length; i++)
 			{
-				quadNode.deleteAllChildren(removedItemConsumer);
+				ImplicitQuadTree<T> rootTree = this.rootGrid[i];
+				if (rootTree == null 
+					|| this.rootInGrid(DhSectionPos.getX(rootTree.rootPos), DhSectionPos.getZ(rootTree.rootPos), newMinX, newMinZ))
+				{
+					continue;
+				}
 				
-				removedItemConsumer.accept(quadNode.value);
+				this.rootGrid[i] = null;
+				this.rootModificationCount += rootTree.getModificationCount() + 1;
+				if (removedItemConsumer != null)
+				{
+					rootTree.deleteAllChildren(rootTree.rootPos, removedItemConsumer);
+					removedItemConsumer.accept(rootTree.getValue(rootTree.rootPos));
+				}
 			}
-		});
-
-
-//		// remove out of bound nodes and clean up empty nodes
-//		// Note: this will iterate over a lot of unnecessary nodes, hopefully speed won't be an issue
-//		Iterator<DhSectionPos> rootNodePosIterator = this.rootNodePosIterator();
-//		while (rootNodePosIterator.hasNext())
-//		{
-//			// get the root node (regular nodeIterators won't return them if they are out of bounds)
-//			DhSectionPos rootPos = rootNodePosIterator.next();
-//			QuadNode<T> rootNode = this.getOrSetNode(rootPos, false, null, false);
-//			if (rootNode == null)
-//			{
-//				continue;
-//			}
-//			
-//			// remove any child nodes that are out of bounds
-//			Iterator<QuadNode<T>> nodeIterator = this.nodeIterator();
-//			while (nodeIterator.hasNext())
-//			{
-//				QuadNode<T> node = nodeIterator.next();
-//				if(!this.isSectionPosInBounds(node.sectionPos))
-//				{
-//					// node is out of bounds
-//					
-//					// FIXME(?) this appears to potentially return large nodes that are partially or entirely in bounds
-//					
-//					if (node.getNonNullChildCount() == 0)
-//					{
-//						// no child nodes, can be safely removed
-//						nodeIterator.remove();
-//					}
-//					else
-//					{
-//						// node can't be removed, but its value can be set to null
-//						node.value = null;
-//					}
-//				}
-//			}
-//		}
+		}
+		finally
+		{
+			this.rootGridLock.writeLock().unlock();
+		}
 		
+		this.updateRootsInBounds();
+	}
+	private void updateRootsInBounds()
+	{
+		for (int i = 0; i < this.rootGrid.length; i++)
+		{
+			ImplicitQuadTree<T> rootTree = this.rootGrid[i];
+			boolean inBounds = (rootTree != null && this.isSectionPosInBounds(rootTree.rootPos));
+			if (inBounds != this.rootInBoundsByGridIndex[i])
+			{
+				this.rootInBoundsByGridIndex[i] = inBounds;
+				this.rootModificationCount++;
+			}
+		}
 	}
 	
 	public final DhBlockPos2D getCenterBlockPos() { return this.centerBlockPos; }
@@ -321,29 +484,46 @@ public class QuadTree<T>
 	// base methods //
 	//==============//
 	
-	public boolean isEmpty() { return this.count() == 0; } // TODO this should be rewritten to short-circuit
+	public boolean isEmpty()
+	{
+		for (ImplicitQuadTree<T> rootTree : this.rootGrid)
+		{
+			if (rootTree != null && rootTree.getValueCount() != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
 	
 	/** @return the number of non-null nodes in the tree */
 	public int count()
 	{
 		int count = 0;
-		for (QuadNode<T> node : this.topRingList)
+		for (ImplicitQuadTree<T> rootTree : this.rootGrid)
 		{
-			if (node == null)
+			if (rootTree != null)
 			{
-				continue;
+				count += rootTree.getValueCount();
 			}
-			
-			Iterator<QuadNode<T>> nodeIterator = node.getNodeIterator();
-			while (nodeIterator.hasNext())
+		}
+		return count;
+	}
+	
+	/** 
+	 * Changes whenever a value is added, replaced or removed (including when the tree is moved),
+	 * this can be used to skip work that only needs to be re-done when the tree's contents change.
+	 */
+	public int getModificationCount()
+	{
+		int count = this.rootModificationCount;
+		for (ImplicitQuadTree<T> rootTree : this.rootGrid)
+		{
+			if (rootTree != null)
 			{
-				if (nodeIterator.next().value != null)
-				{
-					count++;
-				}
+				count += rootTree.getModificationCount();
 			}
 		}
-		
 		return count;
 	}
 	
@@ -351,21 +531,13 @@ public class QuadTree<T>
 	public int leafNodeCount()
 	{
 		int count = 0;
-		for (QuadNode<T> node : this.topRingList)
+		for (ImplicitQuadTree<T> rootTree : this.rootGrid)
 		{
-			if (node == null)
+			if (rootTree != null)
 			{
-				continue;
-			}
-			
-			Iterator<QuadNode<T>> leafNodeIterator = node.getLeafNodeIterator();
-			while (leafNodeIterator.hasNext())
-			{
-				leafNodeIterator.next();
-				count++;
+				count += rootTree.getLeafCount();
 			}
 		}
-		
 		return count;
 	}
 	
@@ -374,19 +546,6 @@ public class QuadTree<T>
 	public int ringListWidth() { return 3; }
 	public int ringListHalfWidth() { return 1; }
 	public int diameterInBlocks() { return this.diameterInBlocks; }
-
-//	public String getDebugString()
-//	{
-//		StringBuilder sb = new StringBuilder();
-//		for (byte i = 0; i < this.ringLists.length; i++)
-//		{
-//			sb.append("Layer ").append(i + TREE_LOWEST_DETAIL_LEVEL).append(":\n");
-//			sb.append(this.ringLists[i].toDetailString());
-//			sb.append("\n");
-//			sb.append("\n");
-//		}
-//		return sb.toString();
-//	}
 	
 	@Override
 	public String toString() { return "center block: " + this.centerBlockPos + ", block width: " + this.diameterInBlocks + ", detail level range: [" + this.treeMaxDetailLevel + "-" + this.treeMinDetailLevel + "], leaf #: " + this.leafNodeCount(); }
@@ -399,41 +558,64 @@ public class QuadTree<T>
 	
 	private class QuadTreeRootPosIterator implements LongIterator
 	{
-		private final LongArrayFIFOQueue iteratorPosQueue = new LongArrayFIFOQueue();
+		private final boolean includeNullNodes;
+		private final int minX;
+		private final int minZ;
+		
+		private int iterationIndex = 0;
+		private long nextPos;
+		private boolean nextPosFound;
 		
 		
 		
 		public QuadTreeRootPosIterator(boolean includeNullNodes)
 		{
-			QuadTree.this.topRingList.forEachPosOrdered((node, pos2D) ->
+			this.includeNullNodes = includeNullNodes;
+			
+			QuadTree.this.rootGridLock.readLock().lock();
+			try
 			{
-				if (node != null || includeNullNodes)
-				{
-					long rootPos = DhSectionPos.encode(QuadTree.this.treeMinDetailLevel, pos2D.x, pos2D.y);
-					if (QuadTree.this.isSectionPosInBounds(rootPos))
-					{
-						this.iteratorPosQueue.enqueue(rootPos);
-					}
-				}
-			});
+				this.minX = QuadTree.this.rootGridMinX;
+				this.minZ = QuadTree.this.rootGridMinZ;
+			}
+			finally
+			{
+				QuadTree.this.rootGridLock.readLock().unlock();
+			}
 		}// constructor
 		
 		
 		
 		@Override
-		public boolean hasNext() { return this.iteratorPosQueue.size() != 0; }
+		public boolean hasNext()
+		{
+			while (!this.nextPosFound && this.iterationIndex < QuadTree.this.rootIterationOffsetX.length)
+			{
+				int rootX = this.minX + QuadTree.this.rootIterationOffsetX[this.iterationIndex];
+				int rootZ = this.minZ + QuadTree.this.rootIterationOffsetZ[this.iterationIndex];
+				this.iterationIndex++;
+				
+				long rootPos = DhSectionPos.encode(QuadTree.this.treeMinDetailLevel, rootX, rootZ);
+				if ((this.includeNullNodes || QuadTree.this.nodeExists(rootPos))
+					&& QuadTree.this.isSectionPosInBounds(rootPos))
+				{
+					this.nextPos = rootPos;
+					this.nextPosFound = true;
+				}
+			}
+			return this.nextPosFound;
+		}
 		
 		@Override
 		public long nextLong()
 		{
-			if (this.iteratorPosQueue.size() == 0)
+			if (!this.hasNext())
 			{
 				throw new NoSuchElementException();
 			}
 			
-			
-			long sectionPos = this.iteratorPosQueue.dequeueLong();
-			return sectionPos;
+			this.nextPosFound = false;
+			return this.nextPos;
 		}
 		
 		
@@ -520,11 +702,8 @@ public class QuadTree<T>
 			}
 			
 			
-			QuadNode<T> node = QuadTree.this.getOrSetNode(this.lastNode.sectionPos, true, null, false);
-			if (node != null)
-			{
-				node.deleteAllChildren();
-			}
+			QuadTree.this.getOrSetValue(this.lastNode.sectionPos, true, null, false);
+			QuadTree.this.deleteAllChildren(this.lastNode.sectionPos, null);
 		}
 		
 		@Override
@@ -70,16 +70,27 @@ public class ConfigThreadPool
 	// thread setup //
 	//==============//
 	
+	/** 
+	 * Resizes the existing executor in place so 
+	 * tasks that are queued or being submitted aren't rejected.
+	 */
 	public void setThreadPoolSize(int threadPoolSize)
 	{
-		if (this.executor != null)
+		if (this.executor == null)
+		{
+			this.executor = ThreadUtil.makeRateLimitedThreadPool(threadPoolSize, this.threadFactory, this.runTimeRatioConfig, this.activeThreadCountSemaphore);
+		}
+		else if (!this.executor.isShutdown())
 		{
-			// close the previous thread pool if one exists
-			this.executor.shutdown();
+			this.executor.setPoolSize(threadPoolSize);
+		}
+		else
+		{
+			// this pool has been shut down and shouldn't be restarted
+			return;
 		}
 		
 		this.threadCount = threadPoolSize;
-		this.executor = ThreadUtil.makeRateLimitedThreadPool(this.threadCount, this.threadFactory, this.runTimeRatioConfig, this.activeThreadCountSemaphore);
 	}
 	
 	/**
@@ -88,6 +99,9 @@ public class ConfigThreadPool
 	 */
 	public void shutdownExecutorService()
 	{
+		// a new pool will be created if the threads are started again
+		this.threadCountConfigListener.close();
+		
 		if (this.executor != null)
 		{
 			//LOGGER.info("Stopping thread pool");
@@ -0,0 +1,51 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.threading;
+
+/**
+ * The different kinds of work run by the {@link WorkerThreadScheduler}. <br><br>
+ *
+ * Each task type gets a share of the worker threads' CPU time
+ * proportional to its {@link ELodBuilderTaskType#cpuShareWeight}
+ * (when more than one type has work queued).
+ */
+public enum ELodBuilderTaskType
+{
+	LIGHT_POPULATOR("Light Populator", 1.0),
+	/**
+	 * Chunk updates are generally happening right next to the player
+	 * so they are given a larger share to keep nearby LODs responsive.
+	 */
+	CHUNK_TO_LOD("Chunk to Lod Builder", 2.0),
+	BUFFER_BUILDER("Buffer Builder", 1.0);
+	
+	
+	
+	public final String name;
+	/** relative amount of CPU time this task type should receive when competing with other task types */
+	public final double cpuShareWeight;
+	
+	ELodBuilderTaskType(String name, double cpuShareWeight)
+	{
+		this.name = name;
+		this.cpuShareWeight = cpuShareWeight;
+	}
+	
+}
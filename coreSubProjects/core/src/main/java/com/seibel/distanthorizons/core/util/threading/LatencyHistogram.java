@@ -0,0 +1,119 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.threading;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with power of two microsecond buckets. <br>
+ * Bucket 0 holds everything under 1 microsecond,
+ * bucket n holds values in the range [2^(n-1), 2^n) microseconds.
+ * The last bucket holds everything larger.
+ */
+public class LatencyHistogram
+{
+	/** 2^31 microseconds is roughly 35 minutes, anything longer is lumped into the last bucket */
+	public static final int BUCKET_COUNT = 32;
+	
+	private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+	
+	
+	
+	//=========//
+	// methods //
+	//=========//
+	
+	public void record(long durationNanos)
+	{
+		long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, durationNanos));
+		this.bucketCounts.incrementAndGet(getBucketIndex(micros));
+	}
+	
+	public static int getBucketIndex(long micros)
+	{
+		int index = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(index, BUCKET_COUNT - 1);
+	}
+	/** @return the exclusive upper bound of the given bucket in microseconds */
+	public static long getBucketUpperBoundMicros(int bucketIndex) { return 1L << bucketIndex; }
+	
+	public long getBucketCount(int bucketIndex) { return this.bucketCounts.get(bucketIndex); }
+	
+	public long getTotalCount()
+	{
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			total += this.bucketCounts.get(i);
+		}
+		return total;
+	}
+	
+	/**
+	 * @param percentile between 0.0 and 1.0
+	 * @return the upper bound of the bucket containing the given percentile in milliseconds,
+	 *          or 0 if nothing has been recorded.
+	 */
+	public double getPercentileMs(double percentile)
+	{
+		long total = this.getTotalCount();
+		if (total == 0)
+		{
+			return 0;
+		}
+		
+		long target = (long) Math.ceil(total * percentile);
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			count += this.bucketCounts.get(i);
+			if (count >= target)
+			{
+				return getBucketUpperBoundMicros(i) / 1_000.0;
+			}
+		}
+		return getBucketUpperBoundMicros(BUCKET_COUNT - 1) / 1_000.0;
+	}
+	
+	public void clear()
+	{
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			this.bucketCounts.set(i, 0);
+		}
+	}
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public String toString()
+	{
+		return "p50: " + formatMs(this.getPercentileMs(0.5))
+				+ " p90: " + formatMs(this.getPercentileMs(0.9))
+				+ " p99: " + formatMs(this.getPercentileMs(0.99));
+	}
+	private static String formatMs(double ms) { return (ms < 1) ? String.format("%.3fms", ms) : String.format("%.0fms", ms); }
+	
+}
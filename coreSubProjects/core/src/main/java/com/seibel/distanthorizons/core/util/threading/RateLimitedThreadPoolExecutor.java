@@ -37,6 +37,13 @@ public class RateLimitedThreadPoolExecutor extends ThreadPoolExecutor
 	private static final boolean LOG_SEMAPHORE_ACTIONS = false;
 	
 	public volatile double runTimeRatio;
+	/** 
+	 * Multiplied with the {@link RateLimitedThreadPoolExecutor#runTimeRatio}, 
+	 * used to temporarily slow down the pool without changing its config. 
+	 * 
+	 * @see ServerTickThrottle
+	 */
+	public volatile double throttleRatio = 1.0;
 	
 	/** When this thread started running its last task */
 	private final ThreadLocal<Long> runStartNanoTimeRef = ThreadLocal.withInitial(() -> -1L);
@@ -80,12 +87,13 @@ public class RateLimitedThreadPoolExecutor extends ThreadPoolExecutor
 	{
 		super.beforeExecute(thread, runnable);
 		
-		if (this.runTimeRatio < 1.0 && this.lastRunDurationNanoTimeRef.get() != -1)
+		double runTimeRatio = this.runTimeRatio * this.throttleRatio;
+		if (runTimeRatio < 1.0 && this.lastRunDurationNanoTimeRef.get() != -1)
 		{
 			try
 			{
 				long deltaMs = TimeUnit.NANOSECONDS.toMillis(this.lastRunDurationNanoTimeRef.get());
-				Thread.sleep((long) (deltaMs / this.runTimeRatio - deltaMs));
+				Thread.sleep((long) (deltaMs / runTimeRatio - deltaMs));
 			}
 			catch (InterruptedException ignored)
 			{
@@ -159,6 +167,27 @@ public class RateLimitedThreadPoolExecutor extends ThreadPoolExecutor
 	// custom logic //
 	//==============//
 	
+	/**
+	 * Changes the number of threads without shutting down the executor. <br>
+	 * Queued tasks aren't affected, and if the pool is shrinking any extra threads
+	 * will finish their current task before stopping.
+	 */
+	public synchronized void setPoolSize(int poolSize)
+	{
+		// the core size can't be larger than the max size,
+		// so the order these are changed in depends on if the pool is growing or shrinking
+		if (poolSize > this.getMaximumPoolSize())
+		{
+			this.setMaximumPoolSize(poolSize);
+			this.setCorePoolSize(poolSize);
+		}
+		else
+		{
+			this.setCorePoolSize(poolSize);
+			this.setMaximumPoolSize(poolSize);
+		}
+	}
+	
 	/** only one event handler can be present at a time */
 	public void setOnTerminatedEventHandler(Runnable runnable) { this.onTerminatedEventHandler = runnable; }
 	
@@ -0,0 +1,182 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.threading;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Slows down the world gen, file handler, and update propagator threads
+ * when the server's tick time (MSPT) goes above the configured target,
+ * and speeds them back up once the server has headroom again. <br><br>
+ *
+ * The throttle level drops quickly (multiplicatively) when the server is behind
+ * but only recovers gradually (additively), so the threads don't
+ * immediately overload the server again after it recovers.
+ *
+ * @see RateLimitedThreadPoolExecutor#throttleRatio
+ */
+public class ServerTickThrottle
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final ServerTickThrottle INSTANCE = new ServerTickThrottle();
+	
+	/** how many ticks are averaged before the throttle level is updated, 20 ticks = 1 second */
+	private static final int TICKS_PER_UPDATE = 20;
+	
+	/** the throttle never fully stops the threads, otherwise queued tasks would never complete */
+	public static final double MIN_THROTTLE_LEVEL = 0.05;
+	private static final double THROTTLE_DECREASE_MULTIPLIER = 0.7;
+	private static final double THROTTLE_INCREASE_STEP = 0.05;
+	/** tick times below this fraction of the target are considered to have headroom */
+	private static final double HEADROOM_RATIO = 0.8;
+	
+	
+	private long tickStartNanoTime = -1;
+	private long summedTickNanoTime = 0;
+	private int summedTickCount = 0;
+	
+	private volatile double averageTickTimeMs = 0;
+	/** 1.0 = not throttled */
+	private volatile double throttleLevel = 1.0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	private ServerTickThrottle() { }
+	
+	
+	
+	//=============//
+	// tick events //
+	//=============//
+	
+	/** should be called by the server thread at the start of each server tick */
+	public void onServerTickStart() { this.tickStartNanoTime = System.nanoTime(); }
+	
+	/** should be called by the server thread at the end of each server tick */
+	public void onServerTickEnd()
+	{
+		if (this.tickStartNanoTime == -1)
+		{
+			// the start of this tick wasn't recorded
+			return;
+		}
+		
+		this.summedTickNanoTime += System.nanoTime() - this.tickStartNanoTime;
+		this.summedTickCount++;
+		this.tickStartNanoTime = -1;
+		
+		if (this.summedTickCount < TICKS_PER_UPDATE)
+		{
+			return;
+		}
+		
+		
+		this.averageTickTimeMs = (this.summedTickNanoTime / 1_000_000.0) / this.summedTickCount;
+		this.summedTickNanoTime = 0;
+		this.summedTickCount = 0;
+		
+		double newThrottleLevel = 1.0;
+		if (Config.Client.Advanced.MultiThreading.enableServerTickThrottling.get())
+		{
+			newThrottleLevel = computeThrottleLevel(this.throttleLevel, this.averageTickTimeMs, Config.Client.Advanced.MultiThreading.serverTickThrottlingTargetMs.get());
+		}
+		this.setThrottleLevel(newThrottleLevel);
+	}
+	
+	/** Removes any throttling, should be called when the server shuts down. */
+	public void reset()
+	{
+		this.tickStartNanoTime = -1;
+		this.summedTickNanoTime = 0;
+		this.summedTickCount = 0;
+		this.averageTickTimeMs = 0;
+		this.setThrottleLevel(1.0);
+	}
+	
+	
+	
+	//==================//
+	// throttle control //
+	//==================//
+	
+	/** @return the throttle level that should be used after a tick time sample */
+	public static double computeThrottleLevel(double currentThrottleLevel, double averageTickTimeMs, double targetTickTimeMs)
+	{
+		if (averageTickTimeMs > targetTickTimeMs)
+		{
+			return Math.max(MIN_THROTTLE_LEVEL, currentThrottleLevel * THROTTLE_DECREASE_MULTIPLIER);
+		}
+		else if (averageTickTimeMs < targetTickTimeMs * HEADROOM_RATIO)
+		{
+			return Math.min(1.0, currentThrottleLevel + THROTTLE_INCREASE_STEP);
+		}
+		else
+		{
+			// close to the target, hold steady
+			return currentThrottleLevel;
+		}
+	}
+	
+	private void setThrottleLevel(double newThrottleLevel)
+	{
+		double oldThrottleLevel = this.throttleLevel;
+		if (newThrottleLevel == oldThrottleLevel)
+		{
+			return;
+		}
+		
+		this.throttleLevel = newThrottleLevel;
+		ThreadPoolUtil.setServerThrottleRatio(newThrottleLevel);
+		
+		if (oldThrottleLevel == 1.0)
+		{
+			LOGGER.info("Server tick time [" + String.format("%.1f", this.averageTickTimeMs) + "ms] is above the target, throttling Distant Horizons threads.");
+		}
+		else if (newThrottleLevel == 1.0)
+		{
+			LOGGER.info("Server tick time recovered, Distant Horizons threads are no longer throttled.");
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return between {@link ServerTickThrottle#MIN_THROTTLE_LEVEL} and 1.0, where 1.0 means no throttling */
+	public double getThrottleLevel() { return this.throttleLevel; }
+	
+	/** @return the average server tick time in milliseconds over the last sample period */
+	public double getAverageTickTimeMs() { return this.averageTickTimeMs; }
+	
+	/** @return the given limit scaled by the current throttle level, will always be at least 1 */
+	public int getThrottledLimit(int limit) { return Math.max(1, (int) Math.ceil(limit * this.throttleLevel)); }
+	
+	public String getStatusString() { return "Server tick time: " + String.format("%.1f", this.averageTickTimeMs) + "ms, thread throttle: " + Math.round(this.throttleLevel * 100) + "%"; }
+	
+}
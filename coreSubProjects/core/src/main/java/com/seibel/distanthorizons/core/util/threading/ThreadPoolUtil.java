@@ -24,7 +24,6 @@ import com.seibel.distanthorizons.core.config.listeners.ConfigChangeListener;
 import com.seibel.distanthorizons.core.util.ThreadUtil;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -72,32 +71,27 @@ public class ThreadPoolUtil
 	// worker threads pools //
 	//======================//
 	
-	// worker thread pools are generally related with LOD building
-	// and all share an underlying number of threads.
-	// WARNING: great care should be used when setting up these threads since deadlock can occur if they are handled poorly.
+	// worker threads are generally related with LOD building
+	// and all share a single scheduler.
+	// WARNING: great care should be used when submitting tasks that wait on other worker tasks since deadlock can occur if they are handled poorly.
 	
-	public static final DhThreadFactory LIGHT_POPULATOR_THREAD_FACTORY = new DhThreadFactory("LOD Builder - Light Populator", Thread.MIN_PRIORITY);
-	private static ConfigThreadPool lightPopulatorThreadPool;
+	public static final DhThreadFactory LOD_BUILDER_THREAD_FACTORY = new DhThreadFactory("LOD Builder", Thread.MIN_PRIORITY);
+	private static WorkerThreadScheduler lodBuilderScheduler;
 	@Nullable
-	public static ThreadPoolExecutor getLightPopulatorExecutor() { return (lightPopulatorThreadPool != null) ? lightPopulatorThreadPool.executor : null; }
+	public static WorkerThreadScheduler getLodBuilderScheduler() { return lodBuilderScheduler; }
 	
-	public static final DhThreadFactory CHUNK_TO_LOD_BUILDER_THREAD_FACTORY = new DhThreadFactory("LOD Builder - Chunk to Lod Builder", Thread.MIN_PRIORITY);
-	private static ConfigThreadPool chunkToLodBuilderThreadPool;
 	@Nullable
-	public static ThreadPoolExecutor getChunkToLodBuilderExecutor() { return (chunkToLodBuilderThreadPool != null) ? chunkToLodBuilderThreadPool.executor : null; }
-	
-	public static final DhThreadFactory BUFFER_BUILDER_THREAD_FACTORY = new DhThreadFactory("LOD Builder - Buffer Builder", Thread.MIN_PRIORITY);
-	private static ConfigThreadPool bufferBuilderThreadPool;
+	public static WorkerThreadScheduler.TaskTypeExecutor getLightPopulatorExecutor() { return (lodBuilderScheduler != null) ? lodBuilderScheduler.getExecutor(ELodBuilderTaskType.LIGHT_POPULATOR) : null; }
 	@Nullable
-	public static ThreadPoolExecutor getBufferBuilderExecutor() { return (bufferBuilderThreadPool != null) ? bufferBuilderThreadPool.executor : null; }
-	
+	public static WorkerThreadScheduler.TaskTypeExecutor getChunkToLodBuilderExecutor() { return (lodBuilderScheduler != null) ? lodBuilderScheduler.getExecutor(ELodBuilderTaskType.CHUNK_TO_LOD) : null; }
+	@Nullable
+	public static WorkerThreadScheduler.TaskTypeExecutor getBufferBuilderExecutor() { return (lodBuilderScheduler != null) ? lodBuilderScheduler.getExecutor(ELodBuilderTaskType.BUFFER_BUILDER) : null; }
 	
 	/** how many total worker threads can be used */
-	private static int workerThreadSemaphoreCount = Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads.get();
-	public static int getWorkerThreadCount() { return workerThreadSemaphoreCount; }
+	public static int getWorkerThreadCount() { return (lodBuilderScheduler != null) ? lodBuilderScheduler.getThreadCount() : Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads.get(); }
 	
-	private static Semaphore workerThreadSemaphore = null;
-	private static ConfigChangeListener<Integer> workerThreadSemaphoreConfigListener = null;
+	private static ConfigChangeListener<Integer> workerThreadCountConfigListener = null;
+	private static ConfigChangeListener<Double> workerRunTimeRatioConfigListener = null;
 	
 	
 	
@@ -115,36 +109,53 @@ public class ThreadPoolUtil
 		bufferUploaderThreadPool = ThreadUtil.makeSingleThreadPool(BUFFER_UPLOADER_THREAD_NAME);
 		cleanupThreadPool = ThreadUtil.makeSingleThreadPool(CLEANUP_THREAD_NAME);
 		
+		// new pools should respect any existing throttling
+		setServerThrottleRatio(ServerTickThrottle.INSTANCE.getThrottleLevel());
+		
 		
 		
 		// worker threads //
 		
-		// create thread semaphore
+		lodBuilderScheduler = new WorkerThreadScheduler(LOD_BUILDER_THREAD_FACTORY,
+				getWorkerThreadCountForConfig(Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads.get()),
+				Config.Client.Advanced.MultiThreading.runTimeRatioForLodBuilderThreads.get());
+		
+		// the scheduler can be resized while running, so there's no need to recreate it
+		workerThreadCountConfigListener = new ConfigChangeListener<>(Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads, 
+				(threadCount) -> lodBuilderScheduler.setThreadCount(getWorkerThreadCountForConfig(threadCount)));
+		workerRunTimeRatioConfigListener = new ConfigChangeListener<>(Config.Client.Advanced.MultiThreading.runTimeRatioForLodBuilderThreads, 
+				(runTimeRatio) -> lodBuilderScheduler.setRunTimeRatio(runTimeRatio));
+		
+	}
+	/** 
+	 * Without thread limiting each task type used to have its own full set of threads,
+	 * this keeps the same total thread count in that case.
+	 */
+	private static int getWorkerThreadCountForConfig(int configThreadCount)
+	{
 		if (Config.Client.Advanced.MultiThreading.enableLodBuilderThreadLimiting.get())
 		{
-			workerThreadSemaphoreCount = Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads.get();
-			workerThreadSemaphore = new Semaphore(workerThreadSemaphoreCount);
-			
-			workerThreadSemaphoreConfigListener = new ConfigChangeListener<>(Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads, (val) ->
+			return configThreadCount;
+		}
+		else
+		{
+			return configThreadCount * ELodBuilderTaskType.values().length;
+		}
+	}
+	
+	/** 
+	 * Slows down the thread pools that can compete with the server thread. 
+	 * @see ServerTickThrottle
+	 */
+	public static void setServerThrottleRatio(double throttleRatio)
+	{
+		for (ConfigThreadPool threadPool : new ConfigThreadPool[]{ fileHandlerThreadPool, updatePropagatorThreadPool, worldGenThreadPool })
+		{
+			if (threadPool != null && threadPool.executor != null)
 			{
-				int changePermit = val - workerThreadSemaphoreCount;
-				if (changePermit > 0)
-				{
-					workerThreadSemaphore.release(changePermit);
-				}
-				else
-				{
-					workerThreadSemaphore.acquireUninterruptibly(changePermit * -1);
-				}
-				workerThreadSemaphoreCount = workerThreadSemaphoreCount + changePermit;
-			});
+				threadPool.executor.throttleRatio = throttleRatio;
+			}
 		}
-		
-		// create thread pools
-		lightPopulatorThreadPool = new ConfigThreadPool(LIGHT_POPULATOR_THREAD_FACTORY, Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads, Config.Client.Advanced.MultiThreading.runTimeRatioForLodBuilderThreads, workerThreadSemaphore);
-		chunkToLodBuilderThreadPool = new ConfigThreadPool(CHUNK_TO_LOD_BUILDER_THREAD_FACTORY, Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads, Config.Client.Advanced.MultiThreading.runTimeRatioForLodBuilderThreads, workerThreadSemaphore);
-		bufferBuilderThreadPool = new ConfigThreadPool(BUFFER_BUILDER_THREAD_FACTORY, Config.Client.Advanced.MultiThreading.numberOfLodBuilderThreads, Config.Client.Advanced.MultiThreading.runTimeRatioForLodBuilderThreads, workerThreadSemaphore);
-		
 	}
 	
 	public static void shutdownThreadPools()
@@ -158,16 +169,17 @@ public class ThreadPoolUtil
 		
 		
 		// worker threads
-		ThreadPoolUtil.lightPopulatorThreadPool.shutdownExecutorService();
-		ThreadPoolUtil.chunkToLodBuilderThreadPool.shutdownExecutorService();
-		ThreadPoolUtil.bufferBuilderThreadPool.shutdownExecutorService();
-		
-		workerThreadSemaphore = null;
+		lodBuilderScheduler.shutdownNow();
 		
-		if (workerThreadSemaphoreConfigListener != null)
+		if (workerThreadCountConfigListener != null)
+		{
+			workerThreadCountConfigListener.close();
+			workerThreadCountConfigListener = null;
+		}
+		if (workerRunTimeRatioConfigListener != null)
 		{
-			workerThreadSemaphoreConfigListener.close();
-			workerThreadSemaphoreConfigListener = null;
+			workerRunTimeRatioConfigListener.close();
+			workerRunTimeRatioConfigListener = null;
 		}
 	}
 	
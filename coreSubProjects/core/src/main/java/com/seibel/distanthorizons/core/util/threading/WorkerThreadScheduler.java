@@ -0,0 +1,528 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.threading;
+
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhBlockPos;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
+import com.seibel.distanthorizons.coreapi.util.MathUtil;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A single set of worker threads shared by every {@link ELodBuilderTaskType}. <br><br>
+ *
+ * Any idle worker will take the next task from whichever task type
+ * has received the least CPU time relative to its {@link ELodBuilderTaskType#cpuShareWeight},
+ * and within a task type the task with the lowest priority value
+ * (generally the squared distance to the player) runs first. <br><br>
+ *
+ * The run time ratio is enforced by tracking how long each worker has been busy vs idle,
+ * a worker only pauses if it has used more than its share of the current window;
+ * time spent waiting for tasks counts towards that worker's idle time. <br><br>
+ *
+ * The thread count can be changed at any time without interrupting running tasks.
+ *
+ * @see ThreadPoolUtil
+ */
+public class WorkerThreadScheduler
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	private static final IMinecraftClientWrapper MC_CLIENT = SingletonInjector.INSTANCE.get(IMinecraftClientWrapper.class);
+	
+	/** used for tasks that don't have a position, these will run before any positional tasks */
+	public static final long DEFAULT_PRIORITY = 0;
+	/**
+	 * How long each worker's busy/idle time is tracked for before being reset. <br>
+	 * This limits how long a worker can run uninterrupted after being idle for a while.
+	 */
+	private static final long RUN_TIME_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	
+	private static final ELodBuilderTaskType[] TASK_TYPES = ELodBuilderTaskType.values();
+	
+	
+	private final DhThreadFactory threadFactory;
+	
+	/** guards the task queues, run time accounting, and worker list */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition taskAvailableCondition = this.lock.newCondition();
+	
+	private final ArrayList<PriorityQueue<ScheduledTask>> taskQueueByType = new ArrayList<>(TASK_TYPES.length);
+	/** CPU time used by each task type divided by that type's weight */
+	private final double[] weightedRunTimeNanosByType = new double[TASK_TYPES.length];
+	private final ArrayList<Thread> workerThreads = new ArrayList<>();
+	private int targetThreadCount = 0;
+	private volatile boolean isShutdown = false;
+	
+	private volatile double runTimeRatio;
+	
+	/** used to keep tasks with the same priority in FIFO order */
+	private final AtomicLong taskSequence = new AtomicLong(0);
+	private final AtomicLongArray completedTaskCountByType = new AtomicLongArray(TASK_TYPES.length);
+	private final AtomicLongArray queuedTaskCountByType = new AtomicLongArray(TASK_TYPES.length);
+	/** time from a task being queued to it completing */
+	private final LatencyHistogram[] latencyHistogramByType = new LatencyHistogram[TASK_TYPES.length];
+	
+	private final TaskTypeExecutor[] executorByType = new TaskTypeExecutor[TASK_TYPES.length];
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public WorkerThreadScheduler(DhThreadFactory threadFactory, int threadCount, double runTimeRatio)
+	{
+		this.threadFactory = threadFactory;
+		this.runTimeRatio = runTimeRatio;
+		
+		for (ELodBuilderTaskType taskType : TASK_TYPES)
+		{
+			this.taskQueueByType.add(new PriorityQueue<>());
+			this.latencyHistogramByType[taskType.ordinal()] = new LatencyHistogram();
+			this.executorByType[taskType.ordinal()] = new TaskTypeExecutor(taskType);
+		}
+		
+		this.setThreadCount(threadCount);
+	}
+	
+	
+	
+	//=================//
+	// task submission //
+	//=================//
+	
+	/** @see WorkerThreadScheduler#getPriorityForSectionPos(long) */
+	public void execute(ELodBuilderTaskType taskType, long priority, Runnable runnable) throws RejectedExecutionException { this.execute(taskType, priority, runnable, null); }
+	/** @param future if not null, will be cancelled if the task is removed from the queue before it runs */
+	private void execute(ELodBuilderTaskType taskType, long priority, Runnable runnable, @Nullable CompletableFuture<?> future) throws RejectedExecutionException
+	{
+		ScheduledTask task = new ScheduledTask(taskType, priority, this.taskSequence.getAndIncrement(), runnable, future, System.nanoTime());
+		
+		this.lock.lock();
+		try
+		{
+			if (this.isShutdown)
+			{
+				throw new RejectedExecutionException("Worker thread scheduler has been shut down.");
+			}
+			
+			PriorityQueue<ScheduledTask> queue = this.taskQueueByType.get(taskType.ordinal());
+			if (queue.isEmpty())
+			{
+				// a task type that was idle shouldn't be able to use its saved up
+				// CPU time to starve the task types that have been busy
+				double minActiveRunTime = this.getMinActiveWeightedRunTime();
+				if (minActiveRunTime > this.weightedRunTimeNanosByType[taskType.ordinal()])
+				{
+					this.weightedRunTimeNanosByType[taskType.ordinal()] = minActiveRunTime;
+				}
+			}
+			
+			queue.add(task);
+			this.queuedTaskCountByType.incrementAndGet(taskType.ordinal());
+			this.taskAvailableCondition.signal();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	public TaskTypeExecutor getExecutor(ELodBuilderTaskType taskType) { return this.executorByType[taskType.ordinal()]; }
+	
+	
+	
+	//================//
+	// worker threads //
+	//================//
+	
+	/**
+	 * Can be called while tasks are running. <br>
+	 * If the thread count is reduced, the extra workers will stop after finishing their current task.
+	 */
+	public void setThreadCount(int threadCount)
+	{
+		this.lock.lock();
+		try
+		{
+			if (this.isShutdown)
+			{
+				return;
+			}
+			
+			this.targetThreadCount = threadCount;
+			while (this.workerThreads.size() < this.targetThreadCount)
+			{
+				Thread thread = this.threadFactory.newThread(this::runWorker);
+				this.workerThreads.add(thread);
+				thread.start();
+			}
+			
+			// wake up any idle workers so extras can be removed
+			this.taskAvailableCondition.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	public int getThreadCount()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.targetThreadCount;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	public void setRunTimeRatio(double runTimeRatio) { this.runTimeRatio = runTimeRatio; }
+	
+	private void runWorker()
+	{
+		long windowStartNanos = System.nanoTime();
+		long windowBusyNanos = 0;
+		
+		ScheduledTask task;
+		while ((task = this.takeNextTask()) != null)
+		{
+			long startNanos = System.nanoTime();
+			try
+			{
+				task.runnable.run();
+			}
+			catch (Throwable e)
+			{
+				LOGGER.error("Unexpected error in [" + task.taskType.name + "] task: " + e.getMessage(), e);
+			}
+			long endNanos = System.nanoTime();
+			long runNanos = endNanos - startNanos;
+			
+			this.onTaskComplete(task, runNanos, endNanos);
+			
+			
+			// run time ratio accounting
+			if (endNanos - windowStartNanos > RUN_TIME_WINDOW_NANOS)
+			{
+				windowStartNanos = startNanos;
+				windowBusyNanos = 0;
+			}
+			windowBusyNanos += runNanos;
+			
+			double runTimeRatio = this.runTimeRatio;
+			if (runTimeRatio < 1.0)
+			{
+				long windowIdleNanos = (endNanos - windowStartNanos) - windowBusyNanos;
+				long requiredIdleNanos = (long) (windowBusyNanos / runTimeRatio) - windowBusyNanos;
+				long sleepNanos = requiredIdleNanos - windowIdleNanos;
+				if (sleepNanos > 0)
+				{
+					try
+					{
+						TimeUnit.NANOSECONDS.sleep(sleepNanos);
+					}
+					catch (InterruptedException ignore) { /* the scheduler is probably shutting down, that will be handled when taking the next task */ }
+				}
+			}
+		}
+	}
+	
+	/** @return null if this worker should stop */
+	private ScheduledTask takeNextTask()
+	{
+		this.lock.lock();
+		try
+		{
+			while (true)
+			{
+				if (this.isShutdown || this.workerThreads.size() > this.targetThreadCount)
+				{
+					this.workerThreads.remove(Thread.currentThread());
+					return null;
+				}
+				
+				ScheduledTask task = this.pollNextTask();
+				if (task != null)
+				{
+					return task;
+				}
+				
+				try
+				{
+					this.taskAvailableCondition.await();
+				}
+				catch (InterruptedException ignore) { /* shutdown is checked at the top of the loop */ }
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/** must be called while holding the lock */
+	private ScheduledTask pollNextTask()
+	{
+		int bestTypeIndex = -1;
+		for (int i = 0; i < TASK_TYPES.length; i++)
+		{
+			if (!this.taskQueueByType.get(i).isEmpty()
+				&& (bestTypeIndex == -1 || this.weightedRunTimeNanosByType[i] < this.weightedRunTimeNanosByType[bestTypeIndex]))
+			{
+				bestTypeIndex = i;
+			}
+		}
+		
+		if (bestTypeIndex == -1)
+		{
+			return null;
+		}
+		
+		this.queuedTaskCountByType.decrementAndGet(bestTypeIndex);
+		return this.taskQueueByType.get(bestTypeIndex).poll();
+	}
+	
+	/** must be called while holding the lock */
+	private double getMinActiveWeightedRunTime()
+	{
+		double minRunTime = 0;
+		boolean found = false;
+		for (int i = 0; i < TASK_TYPES.length; i++)
+		{
+			if (!this.taskQueueByType.get(i).isEmpty()
+				&& (!found || this.weightedRunTimeNanosByType[i] < minRunTime))
+			{
+				minRunTime = this.weightedRunTimeNanosByType[i];
+				found = true;
+			}
+		}
+		return minRunTime;
+	}
+	
+	private void onTaskComplete(ScheduledTask task, long runNanos, long endNanos)
+	{
+		int typeIndex = task.taskType.ordinal();
+		
+		this.lock.lock();
+		try
+		{
+			this.weightedRunTimeNanosByType[typeIndex] += runNanos / task.taskType.cpuShareWeight;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		this.completedTaskCountByType.incrementAndGet(typeIndex);
+		this.latencyHistogramByType[typeIndex].record(endNanos - task.queuedNanoTime);
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	/** 
+	 * Removes any queued tasks and stops the worker threads after they finish their current task. <br>
+	 * The futures for any removed tasks submitted via {@link TaskTypeExecutor#runAsync} 
+	 * or {@link TaskTypeExecutor#supplyAsync} will be cancelled.
+	 */
+	public void shutdownNow()
+	{
+		ArrayList<CompletableFuture<?>> futuresToCancel = new ArrayList<>();
+		
+		this.lock.lock();
+		try
+		{
+			this.isShutdown = true;
+			for (int i = 0; i < TASK_TYPES.length; i++)
+			{
+				for (ScheduledTask task : this.taskQueueByType.get(i))
+				{
+					if (task.future != null)
+					{
+						futuresToCancel.add(task.future);
+					}
+				}
+				
+				this.taskQueueByType.get(i).clear();
+				this.queuedTaskCountByType.set(i, 0);
+			}
+			
+			for (Thread thread : this.workerThreads)
+			{
+				thread.interrupt();
+			}
+			this.taskAvailableCondition.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		// done outside the lock since cancelling will run any dependent stages on this thread
+		for (CompletableFuture<?> future : futuresToCancel)
+		{
+			future.cancel(true);
+		}
+	}
+	
+	public boolean isShutdown() { return this.isShutdown; }
+	
+	
+	
+	//=======//
+	// stats //
+	//=======//
+	
+	public int getQueuedTaskCount(ELodBuilderTaskType taskType) { return (int) this.queuedTaskCountByType.get(taskType.ordinal()); }
+	public long getCompletedTaskCount(ELodBuilderTaskType taskType) { return this.completedTaskCountByType.get(taskType.ordinal()); }
+	public LatencyHistogram getLatencyHistogram(ELodBuilderTaskType taskType) { return this.latencyHistogramByType[taskType.ordinal()]; }
+	
+	
+	
+	//==========//
+	// priority //
+	//==========//
+	
+	/** @return the squared block distance between the player and the given section's center */
+	public static long getPriorityForSectionPos(long sectionPos) { return getPriorityForBlockPos(DhSectionPos.getCenterBlockPosX(sectionPos), DhSectionPos.getCenterBlockPosZ(sectionPos)); }
+	/**
+	 * @return the squared block distance between the player and the given position
+	 *          or {@link WorkerThreadScheduler#DEFAULT_PRIORITY} if there isn't a client player.
+	 */
+	public static long getPriorityForBlockPos(int blockX, int blockZ)
+	{
+		if (MC_CLIENT == null || !MC_CLIENT.playerExists())
+		{
+			// dedicated servers don't have a single player to prioritize around
+			return DEFAULT_PRIORITY;
+		}
+		
+		DhBlockPos playerPos = MC_CLIENT.getPlayerBlockPos();
+		return MathUtil.pow2((long) playerPos.x - blockX) + MathUtil.pow2((long) playerPos.z - blockZ);
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/**
+	 * Allows submitting tasks of a single type via the standard {@link Executor} interface. <br>
+	 * {@link TaskTypeExecutor#runAsync} and {@link TaskTypeExecutor#supplyAsync} should be used
+	 * instead of {@link CompletableFuture#runAsync(Runnable, Executor)} when something will wait on the returned future,
+	 * otherwise the future will never complete if the task is removed by {@link WorkerThreadScheduler#shutdownNow()}.
+	 */
+	public class TaskTypeExecutor implements Executor
+	{
+		public final ELodBuilderTaskType taskType;
+		
+		private TaskTypeExecutor(ELodBuilderTaskType taskType) { this.taskType = taskType; }
+		
+		/** runs with the {@link WorkerThreadScheduler#DEFAULT_PRIORITY} */
+		@Override
+		public void execute(@NotNull Runnable runnable) throws RejectedExecutionException { WorkerThreadScheduler.this.execute(this.taskType, DEFAULT_PRIORITY, runnable); }
+		public void execute(long priority, Runnable runnable) throws RejectedExecutionException { WorkerThreadScheduler.this.execute(this.taskType, priority, runnable); }
+		
+		/** @return a future that will be cancelled if the scheduler is shut down before the task runs */
+		public CompletableFuture<Void> runAsync(long priority, Runnable runnable) throws RejectedExecutionException
+		{
+			return this.supplyAsync(priority, () ->
+			{
+				runnable.run();
+				return null;
+			});
+		}
+		/** @return a future that will be cancelled if the scheduler is shut down before the task runs */
+		public <T> CompletableFuture<T> supplyAsync(long priority, Supplier<T> supplier) throws RejectedExecutionException
+		{
+			CompletableFuture<T> future = new CompletableFuture<>();
+			WorkerThreadScheduler.this.execute(this.taskType, priority, () ->
+			{
+				try
+				{
+					future.complete(supplier.get());
+				}
+				catch (Throwable e)
+				{
+					future.completeExceptionally(e);
+				}
+			}, future);
+			return future;
+		}
+		
+		public boolean isShutdown() { return WorkerThreadScheduler.this.isShutdown(); }
+		public int getQueueSize() { return WorkerThreadScheduler.this.getQueuedTaskCount(this.taskType); }
+		
+	}
+	
+	private static class ScheduledTask implements Comparable<ScheduledTask>
+	{
+		public final ELodBuilderTaskType taskType;
+		/** lower values run first */
+		public final long priority;
+		public final long sequence;
+		public final Runnable runnable;
+		@Nullable
+		public final CompletableFuture<?> future;
+		public final long queuedNanoTime;
+		
+		public ScheduledTask(ELodBuilderTaskType taskType, long priority, long sequence, Runnable runnable, @Nullable CompletableFuture<?> future, long queuedNanoTime)
+		{
+			this.taskType = taskType;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.runnable = runnable;
+			this.future = future;
+			this.queuedNanoTime = queuedNanoTime;
+		}
+		
+		@Override
+		public int compareTo(@NotNull ScheduledTask other)
+		{
+			int compare = Long.compare(this.priority, other.priority);
+			return (compare != 0) ? compare : Long.compare(this.sequence, other.sequence);
+		}
+		
+	}
+	
+}
@@ -33,6 +33,13 @@ public interface IClientLevelWrapper extends ILevelWrapper
 	IServerLevelWrapper tryGetServerSideWrapper();
 	
 	int computeBaseColor(DhBlockPos pos, IBiomeWrapper biome, IBlockStateWrapper blockState);
+	/**
+	 * Should be called after {@link IClientLevelWrapper#computeBaseColor} has been called at least once for the given block state.
+	 * 
+	 * @return true if {@link IClientLevelWrapper#computeBaseColor} may return different colors 
+	 *          for the same biome and block state at different positions, meaning the color can't be cached.
+	 */
+	default boolean isBaseColorPositionDependent(IBlockStateWrapper blockState) { return true; }
 	
 	/** @return -1 if there was a problem getting the color */
 	int getDirtBlockColor();
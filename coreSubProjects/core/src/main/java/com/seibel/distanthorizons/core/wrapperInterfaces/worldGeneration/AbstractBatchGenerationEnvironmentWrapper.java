@@ -37,6 +37,9 @@ public abstract class AbstractBatchGenerationEnvironmentWrapper
 	
 	public abstract void stop();
 	
+	/** @return a human-readable summary of how long each world gen step has been taking on average */
+	public String getStepTimingSummary() { return ""; }
+	
 	public abstract CompletableFuture<Void> generateChunks(
 			int minX, int minZ, int genSize, EDhApiWorldGenerationStep targetStep,
 			ExecutorService worldGeneratorThreadPool, Consumer<IChunkWrapper> resultConsumer);
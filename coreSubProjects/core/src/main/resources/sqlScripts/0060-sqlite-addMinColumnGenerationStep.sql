@@ -0,0 +1,6 @@
+
+-- the lowest generation step of any column in the data source,
+-- stored separately so the world generator can check which positions need generation
+-- without decompressing the ColumnGenerationStep blob.
+-- NULL for data saved before this column was added.
+ALTER TABLE FullData ADD COLUMN MinColumnGenerationStep TINYINT NULL;
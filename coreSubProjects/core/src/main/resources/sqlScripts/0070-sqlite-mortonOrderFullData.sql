@@ -0,0 +1,77 @@
+
+-- Stores FullData in Morton (Z-order) order so sections that are
+-- close together in the world are also close together in the database file.
+-- This speeds up range queries and parent updates since they generally
+-- touch neighboring sections.
+-- MortonKey is the Morton code of (PosX + 2^27, PosZ + 2^27) with X in the even bits,
+-- this must match MortonCodeUtil.encode().
+CREATE TABLE FullData_Morton ( 
+    -- compound primary key
+     DetailLevel TINYINT NOT NULL -- LOD detail level, not section detail level IE 0, 1, 2 not 6, 7, 8
+    ,MortonKey BIGINT NOT NULL
+    
+    ,PosX INT NOT NULL
+    ,PosZ INT NOT NULL
+    
+    ,MinY INT NOT NULL
+    ,DataChecksum INT NOT NULL
+    
+    ,Data BLOB NULL
+    ,ColumnGenerationStep BLOB NULL
+    ,ColumnWorldCompressionMode BLOB NULL
+    ,Mapping BLOB NULL
+    
+    ,DataFormatVersion TINYINT NULL
+    ,CompressionMode TINYINT NULL
+    
+    ,ApplyToParent BIT NULL
+    ,MinColumnGenerationStep TINYINT NULL
+    
+    ,LastModifiedUnixDateTime BIGINT NOT NULL -- in GMT 0
+    ,CreatedUnixDateTime BIGINT NOT NULL -- in GMT 0
+    
+    ,PRIMARY KEY (DetailLevel, MortonKey)
+) WITHOUT ROWID;
+
+--batch--
+
+-- each step inserts a 0 bit between the bits of the previous step
+WITH 
+     Spread0 AS (SELECT DetailLevel, PosX, PosZ, (PosX + 0x8000000) AS X, (PosZ + 0x8000000) AS Z FROM FullData)
+    ,Spread1 AS (SELECT DetailLevel, PosX, PosZ, (X | (X << 16)) & 0x0000FFFF0000FFFF AS X, (Z | (Z << 16)) & 0x0000FFFF0000FFFF AS Z FROM Spread0)
+    ,Spread2 AS (SELECT DetailLevel, PosX, PosZ, (X | (X << 8)) & 0x00FF00FF00FF00FF AS X, (Z | (Z << 8)) & 0x00FF00FF00FF00FF AS Z FROM Spread1)
+    ,Spread3 AS (SELECT DetailLevel, PosX, PosZ, (X | (X << 4)) & 0x0F0F0F0F0F0F0F0F AS X, (Z | (Z << 4)) & 0x0F0F0F0F0F0F0F0F AS Z FROM Spread2)
+    ,Spread4 AS (SELECT DetailLevel, PosX, PosZ, (X | (X << 2)) & 0x3333333333333333 AS X, (Z | (Z << 2)) & 0x3333333333333333 AS Z FROM Spread3)
+    ,Spread5 AS (SELECT DetailLevel, PosX, PosZ, (X | (X << 1)) & 0x5555555555555555 AS X, (Z | (Z << 1)) & 0x5555555555555555 AS Z FROM Spread4)
+INSERT INTO FullData_Morton (
+     DetailLevel, MortonKey, PosX, PosZ
+    ,MinY, DataChecksum
+    ,Data, ColumnGenerationStep, ColumnWorldCompressionMode, Mapping
+    ,DataFormatVersion, CompressionMode
+    ,ApplyToParent, MinColumnGenerationStep
+    ,LastModifiedUnixDateTime, CreatedUnixDateTime)
+SELECT 
+     data.DetailLevel, (spread.X | (spread.Z << 1)), data.PosX, data.PosZ
+    ,data.MinY, data.DataChecksum
+    ,data.Data, data.ColumnGenerationStep, data.ColumnWorldCompressionMode, data.Mapping
+    ,data.DataFormatVersion, data.CompressionMode
+    ,data.ApplyToParent, data.MinColumnGenerationStep
+    ,data.LastModifiedUnixDateTime, data.CreatedUnixDateTime
+FROM FullData data 
+JOIN Spread5 spread ON spread.DetailLevel = data.DetailLevel AND spread.PosX = data.PosX AND spread.PosZ = data.PosZ
+-- inserting in key order lays the new table out sequentially
+ORDER BY data.DetailLevel, (spread.X | (spread.Z << 1));
+
+--batch--
+
+-- also removes FullDataUpdatedIndex
+DROP TABLE FullData;
+
+--batch--
+
+ALTER TABLE FullData_Morton RENAME TO FullData;
+
+--batch--
+
+-- significantly speeds up parent update handling
+create index FullDataUpdatedIndex on FullData (ApplyToParent) where ApplyToParent = 1
@@ -0,0 +1,348 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Conformance tests every {@link IFullDataStore} must pass. <br>
+ * Each storage backend has a subclass that creates its store.
+ * 
+ * @see FullDataStoreSqliteTest
+ * @see FullDataStoreRegionFileTest
+ */
+public abstract class AbstractFullDataStoreTest
+{
+	private static final byte DETAIL_LEVEL = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+	
+	
+	
+	//==================//
+	// abstract methods //
+	//==================//
+	
+	/** 
+	 * Opening a store with the same name multiple times should return the same data,
+	 * IE the name is a file or folder name.
+	 */
+	protected abstract IFullDataStore openStore(String name) throws Exception;
+	/** removes any files created by the store */
+	protected abstract void deleteStore(String name);
+	
+	
+	
+	//=======//
+	// tests //
+	//=======//
+	
+	@Test
+	public void saveAndGetTest() throws Exception
+	{
+		String name = "saveAndGetTest";
+		this.deleteStore(name);
+		
+		long pos = DhSectionPos.encode(DETAIL_LEVEL, -3, 5);
+		long missingPos = DhSectionPos.encode(DETAIL_LEVEL, 3, 5);
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			Assert.assertNull(store.getByKey(pos));
+			Assert.assertFalse(store.existsWithKey(pos));
+			
+			FullDataSourceV2DTO dto = createDto(pos, EDhApiWorldGenerationStep.SURFACE, 100);
+			dto.applyToParent = true;
+			store.save(dto);
+			Assert.assertTrue(store.existsWithKey(pos));
+			Assert.assertFalse(store.existsWithKey(missingPos));
+			assertDtoEquals(dto, store.getByKey(pos));
+			
+			// updating should replace the data, even if the new data is larger
+			FullDataSourceV2DTO largerDto = createDto(pos, EDhApiWorldGenerationStep.FEATURES, 20_000);
+			store.save(largerDto);
+			assertDtoEquals(largerDto, store.getByKey(pos));
+			
+			FullDataSourceV2DTO smallerDto = createDto(pos, EDhApiWorldGenerationStep.LIGHT, 10);
+			store.save(smallerDto);
+			assertDtoEquals(smallerDto, store.getByKey(pos));
+		}
+		
+		// data should be persisted
+		try (IFullDataStore store = this.openStore(name))
+		{
+			FullDataSourceV2DTO dto = store.getByKey(pos);
+			Assert.assertNotNull(dto);
+			Assert.assertEquals(10, dto.compressedDataByteArray.length);
+			Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, dto.minColumnGenStep);
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void deleteTest() throws Exception
+	{
+		String name = "deleteTest";
+		this.deleteStore(name);
+		
+		long firstPos = DhSectionPos.encode(DETAIL_LEVEL, 0, 0);
+		long secondPos = DhSectionPos.encode((byte) (DETAIL_LEVEL + 1), 40, -40);
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			store.save(createDto(firstPos, EDhApiWorldGenerationStep.LIGHT, 5_000));
+			store.save(createDto(secondPos, EDhApiWorldGenerationStep.LIGHT, 5_000));
+			
+			store.deleteWithKey(firstPos);
+			Assert.assertNull(store.getByKey(firstPos));
+			Assert.assertNotNull(store.getByKey(secondPos));
+			Assert.assertEquals(IFullDataStore.GEN_STEP_NOT_PRESENT, store.getMinColumnGenerationStepForPos(firstPos));
+			
+			// deleting missing data shouldn't cause any problems
+			store.deleteWithKey(firstPos);
+			
+			// deleted space should be re-usable
+			store.save(createDto(firstPos, EDhApiWorldGenerationStep.NOISE, 3_000));
+			Assert.assertEquals(EDhApiWorldGenerationStep.NOISE.value, store.getMinColumnGenerationStepForPos(firstPos));
+			
+			store.deleteAll();
+			Assert.assertFalse(store.existsWithKey(firstPos));
+			Assert.assertFalse(store.existsWithKey(secondPos));
+			Assert.assertEquals(0, store.getAllPositions().size());
+			Assert.assertEquals(0, store.getPositionsToUpdate(10).size());
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void applyToParentTest() throws Exception
+	{
+		String name = "applyToParentTest";
+		this.deleteStore(name);
+		
+		long lowDetailPos = DhSectionPos.encode((byte) (DETAIL_LEVEL + 2), 0, 0);
+		long firstSiblingPos = DhSectionPos.encode(DETAIL_LEVEL, 100, 100);
+		long secondSiblingPos = DhSectionPos.encode(DETAIL_LEVEL, 101, 100);
+		long unrelatedPos = DhSectionPos.encode(DETAIL_LEVEL, -500, 20);
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			for (long pos : new long[] { lowDetailPos, secondSiblingPos, unrelatedPos, firstSiblingPos })
+			{
+				FullDataSourceV2DTO dto = createDto(pos, EDhApiWorldGenerationStep.LIGHT, 100);
+				dto.applyToParent = true;
+				store.save(dto);
+			}
+			
+			// higher detail levels should be returned first, with siblings next to each other
+			LongArrayList updatePosList = store.getPositionsToUpdate(10);
+			Assert.assertEquals(4, updatePosList.size());
+			Assert.assertEquals(lowDetailPos, updatePosList.getLong(3));
+			int firstSiblingIndex = updatePosList.indexOf(firstSiblingPos);
+			Assert.assertEquals(secondSiblingPos, updatePosList.getLong(firstSiblingIndex + 1));
+			
+			Assert.assertEquals(2, store.getPositionsToUpdate(2).size());
+			
+			store.setApplyToParent(firstSiblingPos, false);
+			Assert.assertFalse(store.getPositionsToUpdate(10).contains(firstSiblingPos));
+			Assert.assertFalse(store.getByKey(firstSiblingPos).applyToParent);
+		}
+		
+		// the update queue should be persisted
+		try (IFullDataStore store = this.openStore(name))
+		{
+			LongArrayList updatePosList = store.getPositionsToUpdate(10);
+			Assert.assertEquals(3, updatePosList.size());
+			Assert.assertFalse(updatePosList.contains(firstSiblingPos));
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void positionQueryTest() throws Exception
+	{
+		String name = "positionQueryTest";
+		this.deleteStore(name);
+		
+		Random random = new Random(1234);
+		LongArrayList savedPosList = new LongArrayList();
+		long totalDataSize = 0;
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			// spread across multiple regions
+			for (int x = -40; x < 40; x += 7)
+			{
+				for (int z = -40; z < 40; z += 9)
+				{
+					long pos = DhSectionPos.encode(DETAIL_LEVEL, x, z);
+					int dataSize = random.nextInt(10_000) + 1;
+					store.save(createDto(pos, EDhApiWorldGenerationStep.LIGHT, dataSize));
+					
+					savedPosList.add(pos);
+					totalDataSize += dataSize;
+					Assert.assertEquals(dataSize, store.getDataSizeInBytes(pos));
+				}
+			}
+			
+			LongArrayList allPosList = store.getAllPositions();
+			Assert.assertEquals(savedPosList.size(), allPosList.size());
+			Assert.assertTrue(allPosList.containsAll(savedPosList));
+			Assert.assertEquals(totalDataSize, store.getTotalDataSizeInBytes());
+			Assert.assertEquals(0, store.getDataSizeInBytes(DhSectionPos.encode(DETAIL_LEVEL, 1000, 1000)));
+			
+			
+			// timestamps
+			Assert.assertNull(store.getTimestampForPos(DhSectionPos.encode(DETAIL_LEVEL, 1000, 1000)));
+			for (int i = 0; i < savedPosList.size(); i++)
+			{
+				Assert.assertNotNull(store.getTimestampForPos(savedPosList.getLong(i)));
+			}
+			
+			Map<Long, Long> timestampByPos = store.getTimestampsForRange(DETAIL_LEVEL, -20, -30, 20, 10);
+			int expectedCount = 0;
+			for (int i = 0; i < savedPosList.size(); i++)
+			{
+				long pos = savedPosList.getLong(i);
+				int x = DhSectionPos.getX(pos);
+				int z = DhSectionPos.getZ(pos);
+				boolean inRange = x >= -20 && x <= 20 && z >= -30 && z <= 10;
+				Assert.assertEquals(inRange, timestampByPos.containsKey(pos));
+				expectedCount += inRange ? 1 : 0;
+			}
+			Assert.assertEquals(expectedCount, timestampByPos.size());
+			Assert.assertTrue(store.getTimestampsForRange((byte) (DETAIL_LEVEL + 1), -20, -30, 20, 10).isEmpty());
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void generationStepTest() throws Exception
+	{
+		String name = "generationStepTest";
+		this.deleteStore(name);
+		
+		long generatedPos = DhSectionPos.encode(DETAIL_LEVEL, 0, 0);
+		long partialPos = DhSectionPos.encode(DETAIL_LEVEL, 1, 0);
+		long legacyPos = DhSectionPos.encode(DETAIL_LEVEL, 2, 0);
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			store.save(createDto(generatedPos, EDhApiWorldGenerationStep.LIGHT, 100));
+			store.save(createDto(partialPos, EDhApiWorldGenerationStep.EMPTY, 100));
+			
+			// DTOs saved by older versions won't know their min generation step
+			FullDataSourceV2DTO legacyDto = createDto(legacyPos, EDhApiWorldGenerationStep.NOISE, 100);
+			legacyDto.minColumnGenStep = IFullDataStore.GEN_STEP_UNKNOWN;
+			store.save(legacyDto);
+			
+			Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, store.getMinColumnGenerationStepForPos(generatedPos));
+			Assert.assertEquals(EDhApiWorldGenerationStep.EMPTY.value, store.getMinColumnGenerationStepForPos(partialPos));
+			Assert.assertEquals(EDhApiWorldGenerationStep.NOISE.value, store.getMinColumnGenerationStepForPos(legacyPos));
+			Assert.assertEquals(IFullDataStore.GEN_STEP_NOT_PRESENT, store.getMinColumnGenerationStepForPos(DhSectionPos.encode(DETAIL_LEVEL, 3, 0)));
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void timestampTest() throws Exception
+	{
+		String name = "timestampTest";
+		this.deleteStore(name);
+		
+		long pos = DhSectionPos.encode(DETAIL_LEVEL, 7, 7);
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			FullDataSourceV2DTO dto = createDto(pos, EDhApiWorldGenerationStep.LIGHT, 100);
+			dto.lastModifiedUnixDateTime = 1234;
+			dto.createdUnixDateTime = 567;
+			
+			// normal saves use the current time
+			long startTime = System.currentTimeMillis();
+			store.save(dto);
+			Assert.assertTrue(store.getTimestampForPos(pos) >= startTime);
+			
+			// converting between stores needs to keep the original times
+			store.saveWithTimestamps(dto);
+			Assert.assertEquals(Long.valueOf(1234), store.getTimestampForPos(pos));
+			FullDataSourceV2DTO savedDto = store.getByKey(pos);
+			Assert.assertEquals(1234, savedDto.lastModifiedUnixDateTime);
+			Assert.assertEquals(567, savedDto.createdUnixDateTime);
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** the data array is replaced with random bytes so the stored size can be controlled */
+	public static FullDataSourceV2DTO createDto(long pos, EDhApiWorldGenerationStep minGenStep, int dataByteLength) throws IOException
+	{
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(pos);
+		Arrays.fill(dataSource.columnGenerationSteps, EDhApiWorldGenerationStep.LIGHT.value);
+		dataSource.columnGenerationSteps[10] = minGenStep.value;
+		
+		FullDataSourceV2DTO dto = FullDataSourceV2DTO.CreateFromDataSource(dataSource, EDhApiDataCompressionMode.UNCOMPRESSED);
+		dto.compressedDataByteArray = new byte[dataByteLength];
+		new Random(pos).nextBytes(dto.compressedDataByteArray);
+		dto.levelMinY = -64;
+		return dto;
+	}
+	
+	public static void assertDtoEquals(FullDataSourceV2DTO expected, FullDataSourceV2DTO actual)
+	{
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.pos, actual.pos);
+		Assert.assertEquals(expected.levelMinY, actual.levelMinY);
+		Assert.assertEquals(expected.dataChecksum, actual.dataChecksum);
+		Assert.assertEquals(expected.dataFormatVersion, actual.dataFormatVersion);
+		Assert.assertEquals(expected.compressionModeValue, actual.compressionModeValue);
+		Assert.assertEquals(expected.applyToParent, actual.applyToParent);
+		Assert.assertEquals(expected.minColumnGenStep, actual.minColumnGenStep);
+		
+		Assert.assertArrayEquals(expected.compressedDataByteArray, actual.compressedDataByteArray);
+		Assert.assertArrayEquals(expected.compressedColumnGenStepByteArray, actual.compressedColumnGenStepByteArray);
+		Assert.assertArrayEquals(expected.compressedWorldCompressionModeByteArray, actual.compressedWorldCompressionModeByteArray);
+		Assert.assertArrayEquals(expected.compressedMappingByteArray, actual.compressedMappingByteArray);
+	}
+	
+}
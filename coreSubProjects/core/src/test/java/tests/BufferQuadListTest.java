@@ -0,0 +1,122 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.BufferMergeDirectionEnum;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.BufferQuadList;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+public class BufferQuadListTest
+{
+	
+	@Test
+	public void encodeDecodeTest()
+	{
+		long pos = BufferQuadList.encodePosition((short) -5, (short) 320, (short) 63, (short) 16);
+		Assert.assertEquals(-5, BufferQuadList.getX(pos));
+		Assert.assertEquals(320, BufferQuadList.getY(pos));
+		Assert.assertEquals(63, BufferQuadList.getZ(pos));
+		Assert.assertEquals(16, BufferQuadList.getWidthEastWest(pos));
+		
+		long data = BufferQuadList.encodeData((short) 2048, 0x80FF_00AA, (byte) 12, (byte) 15, (byte) 3);
+		Assert.assertEquals(2048, BufferQuadList.getWidthNorthSouthOrUpDown(data));
+		Assert.assertEquals(0x80FF_00AA, BufferQuadList.getColor(data));
+		Assert.assertEquals(12, BufferQuadList.getIrisBlockMaterialId(data));
+		Assert.assertEquals(15, BufferQuadList.getSkyLight(data));
+		Assert.assertEquals(3, BufferQuadList.getBlockLight(data));
+		Assert.assertFalse(BufferQuadList.hasError(data));
+	}
+	
+	@Test
+	public void shuffledGridMergeTest()
+	{
+		// build a 16x16 grid of identical 1x1 top faces in a random order,
+		// sorting should put them back into order so they can be merged into a single quad
+		ArrayList<short[]> positions = new ArrayList<>();
+		for (short x = 0; x < 16; x++)
+		{
+			for (short z = 0; z < 16; z++)
+			{
+				positions.add(new short[]{x, z});
+			}
+		}
+		Collections.shuffle(positions, new Random(1234));
+		
+		BufferQuadList list = new BufferQuadList(EDhDirection.UP, BufferQuadList.NORMAL_MAX_QUAD_WIDTH, false);
+		for (short[] pos : positions)
+		{
+			list.add(pos[0], (short) 64, pos[1], (short) 1, (short) 1, 0xFF00FF00, (byte) 0, (byte) 15, (byte) 0);
+		}
+		
+		list.mergeQuads(BufferMergeDirectionEnum.EastWest);
+		Assert.assertEquals("east/west merge should leave one strip per row", 16, list.size());
+		list.mergeQuads(BufferMergeDirectionEnum.NorthSouthOrUpDown);
+		Assert.assertEquals("north/south merge should leave a single quad", 1, list.size());
+		
+		long pos = list.getPosition(0);
+		long data = list.getData(0);
+		Assert.assertEquals(0, BufferQuadList.getX(pos));
+		Assert.assertEquals(64, BufferQuadList.getY(pos));
+		Assert.assertEquals(0, BufferQuadList.getZ(pos));
+		Assert.assertEquals(16, BufferQuadList.getWidthEastWest(pos));
+		Assert.assertEquals(16, BufferQuadList.getWidthNorthSouthOrUpDown(data));
+	}
+	
+	@Test
+	public void mismatchedQuadsDontMergeTest()
+	{
+		BufferQuadList list = new BufferQuadList(EDhDirection.UP, BufferQuadList.NORMAL_MAX_QUAD_WIDTH, false);
+		// different colors
+		list.add((short) 0, (short) 64, (short) 0, (short) 1, (short) 1, 0xFF00FF00, (byte) 0, (byte) 15, (byte) 0);
+		list.add((short) 1, (short) 64, (short) 0, (short) 1, (short) 1, 0xFFFF0000, (byte) 0, (byte) 15, (byte) 0);
+		// different heights
+		list.add((short) 2, (short) 65, (short) 0, (short) 1, (short) 1, 0xFFFF0000, (byte) 0, (byte) 15, (byte) 0);
+		// different lighting
+		list.add((short) 3, (short) 65, (short) 0, (short) 1, (short) 1, 0xFFFF0000, (byte) 0, (byte) 14, (byte) 0);
+		
+		Assert.assertEquals(4, list.size());
+		list.mergeQuads(BufferMergeDirectionEnum.EastWest);
+		list.mergeQuads(BufferMergeDirectionEnum.NorthSouthOrUpDown);
+		Assert.assertEquals(4, list.size());
+	}
+	
+	@Test
+	public void maxWidthMergeTest()
+	{
+		// merging shouldn't cross the max quad width boundary
+		BufferQuadList list = new BufferQuadList(EDhDirection.NORTH, BufferQuadList.MAX_QUAD_WIDTH_FOR_EARTH_CURVATURE, false);
+		for (short x = 31; x >= 0; x--)
+		{
+			list.add(x, (short) 0, (short) 0, (short) 1, (short) 4, 0xFF0000FF, (byte) 0, (byte) 15, (byte) 0);
+		}
+		
+		list.mergeQuads(BufferMergeDirectionEnum.EastWest);
+		Assert.assertEquals(2, list.size());
+		Assert.assertEquals(16, BufferQuadList.getWidthEastWest(list.getPosition(0)));
+		Assert.assertEquals(16, BufferQuadList.getWidthEastWest(list.getPosition(1)));
+	}
+	
+}
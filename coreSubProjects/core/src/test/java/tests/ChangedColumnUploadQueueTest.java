@@ -0,0 +1,113 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.core.render.ChangedColumnUploadQueue;
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Confirms columns changed while an upload is running 
+ * are uploaded once that upload finishes.
+ */
+public class ChangedColumnUploadQueueTest
+{
+	@Test
+	public void pendingChangesDrainedTest()
+	{
+		ChangedColumnUploadQueue queue = new ChangedColumnUploadQueue();
+		Assert.assertNull("nothing changed", queue.tryStart(new CompletableFuture<>()));
+		
+		queue.addChangedColumns(columns(1));
+		CompletableFuture<Void> firstUpload = new CompletableFuture<>();
+		Assert.assertEquals(columns(1), queue.tryStart(firstUpload));
+		Assert.assertTrue(queue.isRunning());
+		Assert.assertSame(firstUpload, queue.getRunningFuture());
+		
+		// changed while the first upload is running
+		queue.addChangedColumns(columns(2));
+		queue.addChangedColumns(columns(3));
+		Assert.assertNull("only one upload should run at a time", queue.tryStart(new CompletableFuture<>()));
+		
+		Assert.assertTrue("pending changes should be reported", queue.finish(firstUpload));
+		Assert.assertTrue(firstUpload.isDone());
+		Assert.assertFalse(firstUpload.isCompletedExceptionally());
+		Assert.assertFalse(queue.isRunning());
+		
+		CompletableFuture<Void> secondUpload = new CompletableFuture<>();
+		Assert.assertEquals(columns(2, 3), queue.tryStart(secondUpload));
+		Assert.assertFalse("nothing changed during the second upload", queue.finish(secondUpload));
+		Assert.assertTrue(secondUpload.isDone());
+		
+		// finishing twice shouldn't affect anything
+		Assert.assertFalse(queue.finish(secondUpload));
+		Assert.assertFalse(queue.isRunning());
+	}
+	
+	@Test
+	public void allColumnsChangedTest()
+	{
+		ChangedColumnUploadQueue queue = new ChangedColumnUploadQueue();
+		queue.addChangedColumns(columns(5));
+		queue.addChangedColumns(null);
+		
+		BitSet changedColumns = queue.tryStart(new CompletableFuture<>());
+		Assert.assertNotNull(changedColumns);
+		Assert.assertTrue(ChangedColumnUtil.areAllChanged(changedColumns));
+	}
+	
+	@Test
+	public void cancelStartTest()
+	{
+		ChangedColumnUploadQueue queue = new ChangedColumnUploadQueue();
+		queue.addChangedColumns(columns(1));
+		
+		CompletableFuture<Void> rejectedUpload = new CompletableFuture<>();
+		BitSet changedColumns = queue.tryStart(rejectedUpload);
+		queue.addChangedColumns(columns(4));
+		queue.cancelStart(changedColumns, rejectedUpload);
+		
+		Assert.assertTrue(rejectedUpload.isCancelled());
+		Assert.assertFalse(queue.isRunning());
+		Assert.assertEquals("the cancelled columns should be uploaded next time", columns(1, 4), queue.tryStart(new CompletableFuture<>()));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static BitSet columns(int... indices)
+	{
+		BitSet columns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		for (int index : indices)
+		{
+			columns.set(index);
+		}
+		return columns;
+	}
+	
+}
@@ -0,0 +1,349 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.render.ColumnRenderSourceCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+public class ColumnRenderSourceCacheTest
+{
+	private static final Executor DIRECT_EXECUTOR = Runnable::run;
+	
+	private static final long POS_A = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+	private static final long POS_B = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 1, 0);
+	private static final long POS_C = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 2, 0);
+	
+	/** large enough to hold every edge used by these tests */
+	private static final long EDGE_CACHE_SIZE = 1024 * 1024;
+	
+	/** the size of a render source created by {@link CountingLoader} */
+	private static final long RENDER_SOURCE_SIZE = (long) ColumnRenderSource.SECTION_SIZE * ColumnRenderSource.SECTION_SIZE * Long.BYTES;
+	
+	
+	
+	@Test
+	public void neighborsShareOneLoadTest() throws Exception
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 8, EDGE_CACHE_SIZE);
+		
+		// a section and its neighbor both need the same render source
+		ColumnRenderSourceCache.Handle sectionHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		ColumnRenderSourceCache.Handle neighborHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		
+		Assert.assertEquals(1, loader.loadCount.get());
+		Assert.assertSame(sectionHandle.getFuture().get(), neighborHandle.getFuture().get());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(RENDER_SOURCE_SIZE, cache.getSizeInBytes());
+		
+		// released render sources stay cached until space is needed
+		sectionHandle.release();
+		neighborHandle.release();
+		ColumnRenderSourceCache.Handle laterHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		Assert.assertEquals(1, loader.loadCount.get());
+		Assert.assertNotNull(laterHandle.getFuture().get());
+		laterHandle.release();
+		
+		cache.close();
+		Assert.assertEquals(0, cache.getEntryCount());
+		Assert.assertEquals(0, cache.getSizeInBytes());
+	}
+	
+	@Test
+	public void releaseIsOnlyCountedOnceTest() throws Exception
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(0, EDGE_CACHE_SIZE);
+		
+		ColumnRenderSourceCache.Handle firstHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		ColumnRenderSourceCache.Handle secondHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		
+		// releasing the same handle twice shouldn't free the render source the second handle is using
+		firstHandle.release();
+		firstHandle.release();
+		Assert.assertEquals(1, cache.getEntryCount());
+		Assert.assertEquals(0, cache.getEvictionCount());
+		
+		secondHandle.release();
+		Assert.assertEquals(0, cache.getEntryCount());
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+	
+	@Test
+	public void leastRecentlyUsedEvictionTest() throws Exception
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 2, EDGE_CACHE_SIZE);
+		
+		cache.acquire(POS_A, DIRECT_EXECUTOR, loader).release();
+		cache.acquire(POS_B, DIRECT_EXECUTOR, loader).release();
+		
+		// use A so B is the least recently used
+		cache.acquire(POS_A, DIRECT_EXECUTOR, loader).release();
+		cache.acquire(POS_C, DIRECT_EXECUTOR, loader).release();
+		
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertEquals(RENDER_SOURCE_SIZE * 2, cache.getSizeInBytes());
+		Assert.assertNotNull(cache.tryAcquireLoaded(POS_A));
+		Assert.assertNull(cache.tryAcquireLoaded(POS_B));
+		Assert.assertNotNull(cache.tryAcquireLoaded(POS_C));
+	}
+	
+	@Test
+	public void renderSourcesInUseAreNotEvictedTest() throws Exception
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE, EDGE_CACHE_SIZE);
+		
+		ColumnRenderSourceCache.Handle handleA = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		ColumnRenderSourceCache.Handle handleB = cache.acquire(POS_B, DIRECT_EXECUTOR, loader);
+		
+		// both are in use, so the cache is allowed to go above its max size
+		Assert.assertEquals(0, cache.getEvictionCount());
+		Assert.assertEquals(RENDER_SOURCE_SIZE * 2, cache.getSizeInBytes());
+		Assert.assertEquals(POS_A, handleA.getFuture().get().pos);
+		
+		// once released the cache shrinks back down
+		handleA.release();
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertEquals(RENDER_SOURCE_SIZE, cache.getSizeInBytes());
+		Assert.assertEquals(POS_B, handleB.getFuture().get().pos);
+		handleB.release();
+	}
+	
+	@Test
+	public void invalidationTest() throws Exception
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 8, EDGE_CACHE_SIZE);
+		
+		ColumnRenderSourceCache.Handle oldHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		ColumnRenderSource oldRenderSource = oldHandle.getFuture().get();
+		
+		// the old render source can still be used by whoever has it,
+		// but new requests need to load the updated data
+		cache.invalidate(POS_A);
+		Assert.assertEquals(1, cache.getInvalidationCount());
+		Assert.assertEquals(0, cache.getSizeInBytes());
+		Assert.assertNull(cache.tryAcquireLoaded(POS_A));
+		
+		ColumnRenderSourceCache.Handle newHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		Assert.assertEquals(2, loader.loadCount.get());
+		Assert.assertNotSame(oldRenderSource, newHandle.getFuture().get());
+		Assert.assertEquals(POS_A, oldRenderSource.pos);
+		
+		oldHandle.release();
+		newHandle.release();
+		Assert.assertEquals(RENDER_SOURCE_SIZE, cache.getSizeInBytes());
+		
+		// invalidating a position that isn't cached shouldn't do anything
+		cache.invalidate(POS_B);
+		Assert.assertEquals(1, cache.getInvalidationCount());
+	}
+	
+	@Test
+	public void invalidatedWhileLoadingTest() throws Exception
+	{
+		QueuedExecutor executor = new QueuedExecutor();
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 8, EDGE_CACHE_SIZE);
+		
+		ColumnRenderSourceCache.Handle staleHandle = cache.acquire(POS_A, executor, loader);
+		cache.invalidate(POS_A);
+		executor.runAll();
+		
+		// the stale load is still given to the section that requested it, but isn't cached
+		Assert.assertNotNull(staleHandle.getFuture().get());
+		Assert.assertEquals(0, cache.getSizeInBytes());
+		Assert.assertNull(cache.tryAcquireLoaded(POS_A));
+		staleHandle.release();
+		
+		ColumnRenderSourceCache.Handle newHandle = cache.acquire(POS_A, executor, loader);
+		executor.runAll();
+		Assert.assertEquals(2, loader.loadCount.get());
+		Assert.assertEquals(RENDER_SOURCE_SIZE, cache.getSizeInBytes());
+		newHandle.release();
+	}
+	
+	@Test
+	public void unusedLoadsAreCancelledTest()
+	{
+		QueuedExecutor executor = new QueuedExecutor();
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 8, EDGE_CACHE_SIZE);
+		
+		// the section went out of range before its data could be loaded
+		ColumnRenderSourceCache.Handle handle = cache.acquire(POS_A, executor, loader);
+		handle.release();
+		executor.runAll();
+		
+		Assert.assertTrue(handle.getFuture().isCancelled());
+		Assert.assertEquals(0, loader.loadCount.get());
+		Assert.assertEquals(0, cache.getEntryCount());
+	}
+	
+	@Test
+	public void releasedWhileLoadingTest() throws Exception
+	{
+		QueuedExecutor executor = new QueuedExecutor();
+		CountingLoader countingLoader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 8, EDGE_CACHE_SIZE);
+		
+		// the section goes out of range after its data started loading
+		ColumnRenderSourceCache.Handle[] handleRef = new ColumnRenderSourceCache.Handle[1];
+		ColumnRenderSource[] loadedRef = new ColumnRenderSource[1];
+		handleRef[0] = cache.acquire(POS_A, executor, (pos) ->
+		{
+			handleRef[0].release();
+			loadedRef[0] = countingLoader.apply(pos);
+			return loadedRef[0];
+		});
+		executor.runAll();
+		
+		Assert.assertTrue(handleRef[0].getFuture().isCancelled());
+		Assert.assertEquals(1, countingLoader.loadCount.get());
+		Assert.assertEquals(0, cache.getEntryCount());
+		Assert.assertEquals(0, cache.getSizeInBytes());
+		
+		// the late result should have been returned to the pool
+		ColumnRenderSource pooledRenderSource = ColumnRenderSource.getPooledRenderSource(POS_B, 1, 0, true);
+		Assert.assertSame(loadedRef[0], pooledRenderSource);
+		pooledRenderSource.close();
+	}
+	
+	@Test
+	public void emptyAndFailedLoadsAreNotCachedTest() throws Exception
+	{
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(RENDER_SOURCE_SIZE * 8, EDGE_CACHE_SIZE);
+		
+		ColumnRenderSourceCache.Handle emptyHandle = cache.acquire(POS_A, DIRECT_EXECUTOR, (pos) -> null);
+		Assert.assertNull(emptyHandle.getFuture().get());
+		emptyHandle.release();
+		
+		ColumnRenderSourceCache.Handle failedHandle = cache.acquire(POS_B, DIRECT_EXECUTOR, (pos) -> { throw new IllegalStateException("test"); });
+		Assert.assertTrue(failedHandle.getFuture().isCompletedExceptionally());
+		failedHandle.release();
+		
+		Assert.assertEquals(0, cache.getEntryCount());
+		Assert.assertEquals(0, cache.getSizeInBytes());
+		
+		// the next request should try loading again
+		CountingLoader loader = new CountingLoader();
+		cache.acquire(POS_A, DIRECT_EXECUTOR, loader).release();
+		Assert.assertEquals(1, loader.loadCount.get());
+	}
+	
+	
+	
+	@Test
+	public void edgesOutliveEvictedRenderSourcesTest() throws Exception
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(0, EDGE_CACHE_SIZE);
+		
+		ColumnRenderSourceCache.Handle handle = cache.acquire(POS_A, DIRECT_EXECUTOR, loader);
+		ColumnRenderEdge handleEdge = handle.getEdge(EDhDirection.EAST);
+		Assert.assertNotNull(handleEdge);
+		Assert.assertEquals(POS_A, handleEdge.pos);
+		Assert.assertEquals(EDhDirection.EAST, handleEdge.side);
+		handle.release();
+		
+		// the render source was evicted, but its edges can still be used
+		Assert.assertEquals(0, cache.getEntryCount());
+		Assert.assertEquals(1, cache.getEdgeCount());
+		Assert.assertSame(handleEdge, cache.getCachedEdge(POS_A, EDhDirection.EAST));
+		Assert.assertEquals(4 * handleEdge.getSizeInBytes(), cache.getEdgeSizeInBytes());
+		
+		// the edges are out of date once the data changes
+		cache.invalidate(POS_A);
+		Assert.assertNull(cache.getCachedEdge(POS_A, EDhDirection.EAST));
+		Assert.assertEquals(0, cache.getEdgeSizeInBytes());
+	}
+	
+	@Test
+	public void edgeCacheEvictionTest()
+	{
+		CountingLoader loader = new CountingLoader();
+		ColumnRenderEdge edge = ColumnRenderEdge.createFromRenderSource(loader.apply(POS_A), EDhDirection.NORTH);
+		
+		// only enough room for one section's edges
+		ColumnRenderSourceCache cache = new ColumnRenderSourceCache(0, 4 * edge.getSizeInBytes());
+		cache.acquire(POS_A, DIRECT_EXECUTOR, loader).release();
+		cache.acquire(POS_B, DIRECT_EXECUTOR, loader).release();
+		
+		Assert.assertEquals(1, cache.getEdgeCount());
+		Assert.assertNull(cache.getCachedEdge(POS_A, EDhDirection.NORTH));
+		Assert.assertNotNull(cache.getCachedEdge(POS_B, EDhDirection.NORTH));
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	private static class CountingLoader implements LongFunction<ColumnRenderSource>
+	{
+		public final AtomicInteger loadCount = new AtomicInteger(0);
+		
+		@Override
+		public ColumnRenderSource apply(long pos)
+		{
+			this.loadCount.incrementAndGet();
+			
+			// pooled render sources may have a larger array than requested,
+			// trimming them makes the cache's size estimate predictable
+			ColumnRenderSource renderSource = ColumnRenderSource.getPooledRenderSource(pos, 1, 0, true);
+			renderSource.renderDataContainer.size(ColumnRenderSource.SECTION_SIZE * ColumnRenderSource.SECTION_SIZE);
+			renderSource.renderDataContainer.trim();
+			return renderSource;
+		}
+	}
+	
+	/** runs tasks when requested so they can be checked before/after loading */
+	private static class QueuedExecutor implements Executor
+	{
+		private final ArrayList<Runnable> tasks = new ArrayList<>();
+		
+		@Override
+		public void execute(Runnable command) { this.tasks.add(command); }
+		
+		public void runAll()
+		{
+			for (Runnable task : this.tasks)
+			{
+				task.run();
+			}
+			this.tasks.clear();
+		}
+	}
+	
+}
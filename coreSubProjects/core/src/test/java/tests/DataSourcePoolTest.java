@@ -0,0 +1,179 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.DataSourcePool;
+import com.seibel.distanthorizons.core.level.IDhLevel;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Confirms {@link DataSourcePool} re-uses data sources returned by the same and other threads,
+ * respects its size limit, can be cleared from any thread, and keeps its metrics up to date.
+ */
+public class DataSourcePoolTest
+{
+	private static final long POS = DhSectionPos.encode((byte) 6, 0, 0);
+	private static final long EMPTY_SOURCE_SIZE_IN_BYTES = FullDataSourceV2.createEmpty(POS).estimateSizeInBytes();
+	
+	
+	
+	@Test
+	public void sameThreadReuseTest()
+	{
+		AtomicInteger prepCount = new AtomicInteger(0);
+		DataSourcePool<FullDataSourceV2, IDhLevel> pool = createPool(prepCount, EMPTY_SOURCE_SIZE_IN_BYTES);
+		
+		FullDataSourceV2 firstSource = pool.getPooledSource(POS);
+		Assert.assertEquals(0, pool.getHitCount());
+		Assert.assertEquals(1, pool.getMissCount());
+		Assert.assertEquals("new data sources shouldn't need prep", 0, prepCount.get());
+		
+		pool.returnPooledDataSource(firstSource);
+		Assert.assertEquals(1, pool.size());
+		Assert.assertEquals(EMPTY_SOURCE_SIZE_IN_BYTES, pool.getRetainedSizeInBytes());
+		
+		FullDataSourceV2 secondSource = pool.getPooledSource(POS);
+		Assert.assertSame(firstSource, secondSource);
+		Assert.assertEquals(1, pool.getHitCount());
+		Assert.assertEquals(1, pool.getMissCount());
+		Assert.assertEquals(1, prepCount.get());
+		Assert.assertEquals(0, pool.size());
+		Assert.assertEquals(0, pool.getRetainedSizeInBytes());
+	}
+	
+	@Test
+	public void sizeLimitTest()
+	{
+		// the pool can only hold a single data source, the magazine counts towards the limit
+		DataSourcePool<FullDataSourceV2, IDhLevel> pool = createPool(new AtomicInteger(0), EMPTY_SOURCE_SIZE_IN_BYTES);
+		
+		int returnedCount = DataSourcePool.MAGAZINE_SIZE + 2;
+		for (int i = 0; i < returnedCount; i++)
+		{
+			pool.returnPooledDataSource(FullDataSourceV2.createEmpty(POS));
+		}
+		
+		Assert.assertEquals(1, pool.size());
+		Assert.assertEquals(EMPTY_SOURCE_SIZE_IN_BYTES, pool.getRetainedSizeInBytes());
+		
+		pool.clear();
+		Assert.assertEquals(0, pool.size());
+		Assert.assertEquals(0, pool.getRetainedSizeInBytes());
+	}
+	
+	@Test
+	public void crossThreadReuseTest() throws InterruptedException
+	{
+		DataSourcePool<FullDataSourceV2, IDhLevel> pool = createPool(new AtomicInteger(0), EMPTY_SOURCE_SIZE_IN_BYTES * 4);
+		
+		// the other thread's magazine will fill up first, 
+		// then the remaining sources should end up in the shared depot
+		int depotCount = 2;
+		Thread returnThread = new Thread(() ->
+		{
+			for (int i = 0; i < DataSourcePool.MAGAZINE_SIZE + depotCount; i++)
+			{
+				pool.returnPooledDataSource(FullDataSourceV2.createEmpty(POS));
+			}
+		});
+		returnThread.start();
+		returnThread.join();
+		
+		Assert.assertEquals(DataSourcePool.MAGAZINE_SIZE + depotCount, pool.size());
+		
+		for (int i = 0; i < depotCount; i++)
+		{
+			pool.getPooledSource(POS);
+		}
+		Assert.assertEquals(depotCount, pool.getHitCount());
+		Assert.assertEquals(0, pool.getMissCount());
+		
+		// the sources in the other thread's magazine can't be reached from this thread
+		pool.getPooledSource(POS);
+		Assert.assertEquals(depotCount, pool.getHitCount());
+		Assert.assertEquals(1, pool.getMissCount());
+	}
+	
+	@Test
+	public void clearOtherThreadsTest() throws InterruptedException
+	{
+		DataSourcePool<FullDataSourceV2, IDhLevel> pool = createPool(new AtomicInteger(0), EMPTY_SOURCE_SIZE_IN_BYTES * 4);
+		
+		// the other thread is kept running so its magazine can't be garbage collected
+		CountDownLatch returnedLatch = new CountDownLatch(1);
+		CountDownLatch clearedLatch = new CountDownLatch(1);
+		AtomicReference<FullDataSourceV2> sourceAfterClearRef = new AtomicReference<>();
+		Thread otherThread = new Thread(() ->
+		{
+			for (int i = 0; i < DataSourcePool.MAGAZINE_SIZE; i++)
+			{
+				pool.returnPooledDataSource(FullDataSourceV2.createEmpty(POS));
+			}
+			returnedLatch.countDown();
+			
+			try
+			{
+				clearedLatch.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ignore) { }
+			sourceAfterClearRef.set(pool.getPooledSource(POS));
+		});
+		otherThread.start();
+		
+		Assert.assertTrue(returnedLatch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(DataSourcePool.MAGAZINE_SIZE, pool.size());
+		Assert.assertEquals(DataSourcePool.MAGAZINE_SIZE * EMPTY_SOURCE_SIZE_IN_BYTES, pool.getRetainedSizeInBytes());
+		
+		// the other thread's magazine should be emptied too
+		pool.clear();
+		Assert.assertEquals(0, pool.size());
+		Assert.assertEquals(0, pool.getRetainedSizeInBytes());
+		
+		clearedLatch.countDown();
+		otherThread.join();
+		Assert.assertNotNull(sourceAfterClearRef.get());
+		Assert.assertEquals("the other thread shouldn't get a cleared data source", 0, pool.getHitCount());
+		Assert.assertEquals(1, pool.getMissCount());
+		Assert.assertEquals(0, pool.getRetainedSizeInBytes());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static DataSourcePool<FullDataSourceV2, IDhLevel> createPool(AtomicInteger prepCount, long maxSizeInBytes)
+	{
+		return new DataSourcePool<>(
+				FullDataSourceV2::createEmpty,
+				(pos, clearData, dataSource) -> prepCount.incrementAndGet(),
+				FullDataSourceV2::estimateSizeInBytes, maxSizeInBytes);
+	}
+	
+}
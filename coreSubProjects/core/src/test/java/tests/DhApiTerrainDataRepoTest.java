@@ -0,0 +1,263 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiWorldCompressionMode;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.api.interfaces.world.IDhApiLevelWrapper;
+import com.seibel.distanthorizons.api.objects.DhApiResult;
+import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
+import com.seibel.distanthorizons.core.api.external.methods.data.DhApiTerrainDataRepo;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.pos.DhLodPos;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Confirms {@link DhApiTerrainDataRepo}'s area iteration 
+ * returns each column in the requested area exactly once 
+ * and handles stopping early and missing data.
+ */
+public class DhApiTerrainDataRepoTest
+{
+	private static final IDhApiLevelWrapper LEVEL_WRAPPER = TestStubs.createStub(IDhApiLevelWrapper.class);
+	private static final IBiomeWrapper BIOME = TestStubs.createStub(IBiomeWrapper.class, "IBiomeWrapper");
+	private static final IBlockStateWrapper BLOCK_STATE = TestStubs.createStub(IBlockStateWrapper.class, "IBlockStateWrapper");
+	
+	
+	
+	@Test
+	public void areaBoundsTest()
+	{
+		// 128 blocks wide starting at block (-128, 0),
+		// which covers the 4 sections from (-2, 0) to (-1, 1)
+		DhLodPos areaPos = new DhLodPos((byte) 7, -1, 0);
+		LongOpenHashSet requestedSectionPosSet = new LongOpenHashSet();
+		boolean[][] returnedColumns = new boolean[128][128];
+		
+		DhApiResult<Void> result = DhApiTerrainDataRepo.forEachTerrainDataColumnOverArea(LEVEL_WRAPPER,
+				(sectionPos) ->
+				{
+					requestedSectionPosSet.add(sectionPos);
+					return CompletableFuture.completedFuture(createTestDataSource(sectionPos));
+				},
+				areaPos, 
+				(relativeBlockX, relativeBlockZ, columnData) ->
+				{
+					Assert.assertFalse("column returned twice", returnedColumns[relativeBlockX][relativeBlockZ]);
+					returnedColumns[relativeBlockX][relativeBlockZ] = true;
+					assertColumnMatches(-128 + relativeBlockX, relativeBlockZ, columnData);
+					return true;
+				});
+		
+		Assert.assertTrue(result.message, result.success);
+		Assert.assertEquals(4, requestedSectionPosSet.size());
+		for (int sectionX = -2; sectionX <= -1; sectionX++)
+		{
+			for (int sectionZ = 0; sectionZ <= 1; sectionZ++)
+			{
+				Assert.assertTrue(requestedSectionPosSet.contains(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, sectionX, sectionZ)));
+			}
+		}
+		for (boolean[] returnedColumnRow : returnedColumns)
+		{
+			for (boolean returned : returnedColumnRow)
+			{
+				Assert.assertTrue("column missing", returned);
+			}
+		}
+	}
+	
+	@Test
+	public void partialSectionTest()
+	{
+		// 32 blocks wide starting at block (96, -32), 
+		// which only covers part of the section (1, -1)
+		DhLodPos areaPos = new DhLodPos((byte) 5, 3, -1);
+		LongOpenHashSet requestedSectionPosSet = new LongOpenHashSet();
+		AtomicInteger columnCount = new AtomicInteger(0);
+		
+		DhApiResult<Void> result = DhApiTerrainDataRepo.forEachTerrainDataColumnOverArea(LEVEL_WRAPPER,
+				(sectionPos) ->
+				{
+					requestedSectionPosSet.add(sectionPos);
+					return CompletableFuture.completedFuture(createTestDataSource(sectionPos));
+				},
+				areaPos,
+				(relativeBlockX, relativeBlockZ, columnData) ->
+				{
+					Assert.assertTrue(relativeBlockX >= 0 && relativeBlockX < 32);
+					Assert.assertTrue(relativeBlockZ >= 0 && relativeBlockZ < 32);
+					assertColumnMatches(96 + relativeBlockX, -32 + relativeBlockZ, columnData);
+					columnCount.incrementAndGet();
+					return true;
+				});
+		
+		Assert.assertTrue(result.message, result.success);
+		Assert.assertEquals(1, requestedSectionPosSet.size());
+		Assert.assertTrue(requestedSectionPosSet.contains(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 1, -1)));
+		Assert.assertEquals(32 * 32, columnCount.get());
+	}
+	
+	@Test
+	public void earlyStopTest()
+	{
+		AtomicInteger columnCount = new AtomicInteger(0);
+		DhApiResult<Void> result = DhApiTerrainDataRepo.forEachTerrainDataColumnOverArea(LEVEL_WRAPPER,
+				(sectionPos) -> CompletableFuture.completedFuture(createTestDataSource(sectionPos)),
+				new DhLodPos((byte) 7, 0, 0),
+				(relativeBlockX, relativeBlockZ, columnData) -> columnCount.incrementAndGet() < 10);
+		
+		// stopping early isn't an error
+		Assert.assertTrue(result.message, result.success);
+		Assert.assertEquals("no columns should be returned after the consumer stops", 10, columnCount.get());
+	}
+	
+	@Test
+	public void limitedSectionLoadingTest()
+	{
+		// 512 blocks wide, which covers 8x8 sections
+		LongOpenHashSet readSectionPosSet = new LongOpenHashSet();
+		AtomicInteger requestCount = new AtomicInteger(0);
+		AtomicInteger columnCount = new AtomicInteger(0);
+		
+		DhApiResult<Void> result = DhApiTerrainDataRepo.forEachTerrainDataColumnOverArea(LEVEL_WRAPPER,
+				(sectionPos) ->
+				{
+					// the sections that have been requested but haven't been read yet are still loading
+					int loadingCount = requestCount.incrementAndGet() - readSectionPosSet.size();
+					Assert.assertTrue("[" + loadingCount + "] sections loading at once", loadingCount <= DhApiTerrainDataRepo.MAX_LOADING_SECTION_COUNT);
+					return CompletableFuture.completedFuture(createTestDataSource(sectionPos));
+				},
+				new DhLodPos((byte) 9, 0, 0),
+				(relativeBlockX, relativeBlockZ, columnData) ->
+				{
+					readSectionPosSet.add(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, relativeBlockX / 64, relativeBlockZ / 64));
+					columnCount.incrementAndGet();
+					return true;
+				});
+		
+		Assert.assertTrue(result.message, result.success);
+		Assert.assertEquals(8 * 8, requestCount.get());
+		Assert.assertEquals(8 * 8, readSectionPosSet.size());
+		Assert.assertEquals(512 * 512, columnCount.get());
+	}
+	
+	@Test
+	public void emptyAndMissingSectionTest()
+	{
+		long emptySectionPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 1);
+		long missingSectionPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 1, 1);
+		LongFunction<CompletableFuture<FullDataSourceV2>> getDataSourceFunc = (sectionPos) ->
+		{
+			if (sectionPos == missingSectionPos)
+			{
+				return CompletableFuture.completedFuture(null);
+			}
+			else if (sectionPos == emptySectionPos)
+			{
+				return CompletableFuture.completedFuture(FullDataSourceV2.createEmpty(sectionPos));
+			}
+			return CompletableFuture.completedFuture(createTestDataSource(sectionPos));
+		};
+		
+		
+		// empty sections should return empty columns
+		AtomicInteger emptyColumnCount = new AtomicInteger(0);
+		DhApiResult<Void> result = DhApiTerrainDataRepo.forEachTerrainDataColumnOverArea(LEVEL_WRAPPER, getDataSourceFunc,
+				new DhLodPos((byte) 6, 0, 1),
+				(relativeBlockX, relativeBlockZ, columnData) ->
+				{
+					Assert.assertEquals(0, columnData.length);
+					emptyColumnCount.incrementAndGet();
+					return true;
+				});
+		Assert.assertTrue(result.message, result.success);
+		Assert.assertEquals(64 * 64, emptyColumnCount.get());
+		
+		
+		// missing sections should fail the request,
+		// the missing section is the last one so every other section should have been returned first
+		AtomicInteger columnCount = new AtomicInteger(0);
+		result = DhApiTerrainDataRepo.forEachTerrainDataColumnOverArea(LEVEL_WRAPPER, getDataSourceFunc,
+				new DhLodPos((byte) 7, 0, 0),
+				(relativeBlockX, relativeBlockZ, columnData) ->
+				{
+					Assert.assertFalse(relativeBlockX >= 64 && relativeBlockZ >= 64);
+					columnCount.incrementAndGet();
+					return true;
+				});
+		Assert.assertFalse(result.success);
+		Assert.assertEquals(3 * 64 * 64, columnCount.get());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** each column has a single datapoint whose bottom and height are based on the column's position in the section */
+	private static FullDataSourceV2 createTestDataSource(long sectionPos)
+	{
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(sectionPos);
+		int id = dataSource.mapping.addIfNotPresentAndGetId(BIOME, BLOCK_STATE);
+		
+		for (int relX = 0; relX < FullDataSourceV2.WIDTH; relX++)
+		{
+			for (int relZ = 0; relZ < FullDataSourceV2.WIDTH; relZ++)
+			{
+				LongArrayList column = new LongArrayList();
+				try
+				{
+					column.add(FullDataPointUtil.encode(id, relZ + 1, relX, (byte) 0, (byte) 15));
+				}
+				catch (DataCorruptedException e)
+				{
+					throw new RuntimeException(e);
+				}
+				dataSource.setSingleColumn(column, relX, relZ, EDhApiWorldGenerationStep.SURFACE, EDhApiWorldCompressionMode.MERGE_SAME_BLOCKS);
+			}
+		}
+		return dataSource;
+	}
+	
+	private static void assertColumnMatches(int blockX, int blockZ, DhApiTerrainDataPoint[] columnData)
+	{
+		Assert.assertEquals(1, columnData.length);
+		
+		int relX = Math.floorMod(blockX, FullDataSourceV2.WIDTH);
+		int relZ = Math.floorMod(blockZ, FullDataSourceV2.WIDTH);
+		Assert.assertEquals(relX, columnData[0].bottomYBlockPos);
+		Assert.assertEquals(relX + relZ + 1, columnData[0].topYBlockPos);
+	}
+	
+}
@@ -0,0 +1,216 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataGenerationStepIndex;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates {@link FullDataGenerationStepIndex} stays in sync with the {@link FullDataSourceV2Repo}.
+ */
+public class FullDataGenerationStepIndexTest
+{
+	public static String DATABASE_TYPE = "jdbc:sqlite";
+	
+	
+	
+	@Test
+	public void minGenerationStepTest()
+	{
+		byte[] genSteps = new byte[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH];
+		Arrays.fill(genSteps, EDhApiWorldGenerationStep.LIGHT.value);
+		Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, FullDataSourceV2DTO.getMinGenerationStep(genSteps));
+		
+		genSteps[100] = EDhApiWorldGenerationStep.SURFACE.value;
+		genSteps[200] = EDhApiWorldGenerationStep.FEATURES.value;
+		Assert.assertEquals(EDhApiWorldGenerationStep.SURFACE.value, FullDataSourceV2DTO.getMinGenerationStep(genSteps));
+		
+		// invalid values should be ignored
+		genSteps[300] = -5;
+		Assert.assertEquals(EDhApiWorldGenerationStep.SURFACE.value, FullDataSourceV2DTO.getMinGenerationStep(genSteps));
+		
+		genSteps[400] = EDhApiWorldGenerationStep.EMPTY.value;
+		Assert.assertEquals(EDhApiWorldGenerationStep.EMPTY.value, FullDataSourceV2DTO.getMinGenerationStep(genSteps));
+	}
+	
+	@Test
+	public void regionIndexTest()
+	{
+		// positions in the same region should share a region, including negative positions
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, -1, -FullDataGenerationStepIndex.REGION_WIDTH);
+		long regionPos = FullDataGenerationStepIndex.getRegionPos(pos);
+		Assert.assertEquals(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, DhSectionPos.getDetailLevel(regionPos));
+		Assert.assertEquals(-1, DhSectionPos.getX(regionPos));
+		Assert.assertEquals(-1, DhSectionPos.getZ(regionPos));
+		Assert.assertEquals(regionPos, FullDataGenerationStepIndex.getRegionPos(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, -FullDataGenerationStepIndex.REGION_WIDTH, -1)));
+		
+		// every position in a region should have a unique index
+		boolean[] usedIndices = new boolean[FullDataGenerationStepIndex.REGION_WIDTH * FullDataGenerationStepIndex.REGION_WIDTH];
+		for (int x = 0; x < FullDataGenerationStepIndex.REGION_WIDTH; x++)
+		{
+			for (int z = 0; z < FullDataGenerationStepIndex.REGION_WIDTH; z++)
+			{
+				int index = FullDataGenerationStepIndex.getIndexInRegion(x - FullDataGenerationStepIndex.REGION_WIDTH, z);
+				Assert.assertFalse(usedIndices[index]);
+				usedIndices[index] = true;
+			}
+		}
+	}
+	
+	@Test
+	public void concurrentRegionLoadTest() throws Exception
+	{
+		long slowPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		long fastPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, FullDataGenerationStepIndex.REGION_WIDTH, 0);
+		long slowRegionPos = FullDataGenerationStepIndex.getRegionPos(slowPos);
+		
+		CountDownLatch slowLoadStartedLatch = new CountDownLatch(1);
+		CountDownLatch slowLoadReleaseLatch = new CountDownLatch(1);
+		AtomicInteger loadCount = new AtomicInteger(0);
+		FullDataGenerationStepIndex index = new FullDataGenerationStepIndex((regionPos) ->
+		{
+			loadCount.incrementAndGet();
+			if (regionPos == slowRegionPos)
+			{
+				slowLoadStartedLatch.countDown();
+				try
+				{
+					slowLoadReleaseLatch.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException ignore) { }
+			}
+			
+			byte[] regionSteps = new byte[FullDataGenerationStepIndex.REGION_WIDTH * FullDataGenerationStepIndex.REGION_WIDTH];
+			Arrays.fill(regionSteps, EDhApiWorldGenerationStep.EMPTY.value);
+			return regionSteps;
+		});
+		
+		CompletableFuture<Byte> firstSlowGet = CompletableFuture.supplyAsync(() -> index.get(slowPos));
+		Assert.assertTrue(slowLoadStartedLatch.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Byte> secondSlowGet = CompletableFuture.supplyAsync(() -> index.get(slowPos));
+		
+		// other regions shouldn't have to wait for the slow region
+		Assert.assertEquals(EDhApiWorldGenerationStep.EMPTY.value, index.get(fastPos));
+		
+		// a save during the load should override the (possibly outdated) loaded value
+		index.set(slowPos, EDhApiWorldGenerationStep.LIGHT.value);
+		slowLoadReleaseLatch.countDown();
+		
+		Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, (byte) firstSlowGet.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, (byte) secondSlowGet.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, index.get(slowPos));
+		Assert.assertEquals("each region should only be loaded once", 2, loadCount.get());
+	}
+	
+	@Test
+	public void repoIndexTest() throws SQLException, IOException
+	{
+		String databaseLocation = "generationStepIndexTest.sqlite";
+		File dbFile = new File(databaseLocation);
+		if (dbFile.exists())
+		{
+			Assert.assertTrue("unable to delete old test DB File.", dbFile.delete());
+		}
+		
+		
+		long generatedPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		long partialPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 1, 0);
+		long missingPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 2, 0);
+		long legacyPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, -1, -1);
+		
+		FullDataSourceV2Repo repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			repo.save(createDto(generatedPos, EDhApiWorldGenerationStep.LIGHT));
+			repo.save(createDto(partialPos, EDhApiWorldGenerationStep.EMPTY));
+			
+			Assert.assertEquals(EDhApiWorldGenerationStep.LIGHT.value, repo.getMinColumnGenerationStepForPos(generatedPos));
+			Assert.assertEquals(EDhApiWorldGenerationStep.EMPTY.value, repo.getMinColumnGenerationStepForPos(partialPos));
+			Assert.assertEquals(FullDataGenerationStepIndex.NOT_PRESENT, repo.getMinColumnGenerationStepForPos(missingPos));
+			
+			// saving and deleting after the region was loaded should update the index
+			repo.save(createDto(partialPos, EDhApiWorldGenerationStep.FEATURES));
+			repo.save(createDto(missingPos, EDhApiWorldGenerationStep.SURFACE));
+			repo.deleteWithKey(generatedPos);
+			Assert.assertEquals(EDhApiWorldGenerationStep.FEATURES.value, repo.getMinColumnGenerationStepForPos(partialPos));
+			Assert.assertEquals(EDhApiWorldGenerationStep.SURFACE.value, repo.getMinColumnGenerationStepForPos(missingPos));
+			Assert.assertEquals(FullDataGenerationStepIndex.NOT_PRESENT, repo.getMinColumnGenerationStepForPos(generatedPos));
+			
+			// data saved before the column existed should fall back to the generation step blob
+			repo.save(createDto(legacyPos, EDhApiWorldGenerationStep.NOISE));
+			repo.queryDictionaryFirst("UPDATE FullData SET MinColumnGenerationStep = NULL WHERE PosX = -1 AND PosZ = -1");
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		
+		// a new repo should load the saved values from the database
+		repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			Assert.assertEquals(EDhApiWorldGenerationStep.FEATURES.value, repo.getMinColumnGenerationStepForPos(partialPos));
+			Assert.assertEquals(FullDataGenerationStepIndex.NOT_PRESENT, repo.getMinColumnGenerationStepForPos(generatedPos));
+			
+			Assert.assertEquals(EDhApiWorldGenerationStep.NOISE.value, repo.getMinColumnGenerationStepForPos(legacyPos));
+			// the fallback value should be saved so the blob doesn't need to be read again
+			Assert.assertEquals(EDhApiWorldGenerationStep.NOISE.value, repo.getByKey(legacyPos).minColumnGenStep);
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		Assert.assertTrue("Unable to delete test database.", dbFile.delete());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static FullDataSourceV2DTO createDto(long pos, EDhApiWorldGenerationStep minGenStep) throws IOException
+	{
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(pos);
+		Arrays.fill(dataSource.columnGenerationSteps, EDhApiWorldGenerationStep.LIGHT.value);
+		dataSource.columnGenerationSteps[10] = minGenStep.value;
+		
+		return FullDataSourceV2DTO.CreateFromDataSource(dataSource, EDhApiDataCompressionMode.UNCOMPRESSED);
+	}
+	
+}
@@ -0,0 +1,268 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.fullDatafile.FullDataRecompressor;
+import com.seibel.distanthorizons.core.jar.lodDatabase.LodDatabaseTool;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataOutputStream;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates {@link FullDataRecompressor} and {@link FullDataSourceV2DTO#recompress(EDhApiDataCompressionMode)}.
+ */
+public class FullDataRecompressorTest
+{
+	public static String DATABASE_TYPE = "jdbc:sqlite";
+	
+	private static final byte DETAIL_LEVEL = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+	
+	
+	
+	@Test
+	public void dtoRecompressTest() throws Exception
+	{
+		FullDataSourceV2DTO originalDto = createDto(DhSectionPos.encode(DETAIL_LEVEL, 3, -7));
+		FullDataSourceV2DTO dto = createDto(DhSectionPos.encode(DETAIL_LEVEL, 3, -7));
+		
+		// every mode should be able to read the previous mode's output
+		EDhApiDataCompressionMode[] compressionModes = new EDhApiDataCompressionMode[] {
+				EDhApiDataCompressionMode.LZ4, EDhApiDataCompressionMode.LZMA2, EDhApiDataCompressionMode.UNCOMPRESSED };
+		for (EDhApiDataCompressionMode compressionMode : compressionModes)
+		{
+			dto.recompress(compressionMode);
+			Assert.assertEquals(compressionMode.value, dto.compressionModeValue);
+			
+			if (compressionMode != EDhApiDataCompressionMode.UNCOMPRESSED)
+			{
+				Assert.assertTrue(dto.getCompressedByteLength() < originalDto.getCompressedByteLength());
+			}
+		}
+		
+		// converting back should result in identical data
+		AbstractFullDataStoreTest.assertDtoEquals(originalDto, dto);
+	}
+	
+	@Test
+	public void resumeAndVacuumTest() throws Exception
+	{
+		String databaseLocation = "recompressorTest.sqlite";
+		File progressFile = new File("recompressorTest.properties");
+		deleteFile(new File(databaseLocation));
+		deleteFile(progressFile);
+		
+		
+		FullDataSourceV2Repo repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			int dataSourceCount = 120;
+			LongArrayList posList = new LongArrayList();
+			for (int i = 0; i < dataSourceCount; i++)
+			{
+				long pos = DhSectionPos.encode(DETAIL_LEVEL, i % 11, i / 11);
+				posList.add(pos);
+				
+				FullDataSourceV2DTO dto = createDto(pos);
+				dto.lastModifiedUnixDateTime = 1000 + i;
+				dto.createdUnixDateTime = 500 + i;
+				repo.saveWithTimestamps(dto);
+			}
+			
+			
+			// stop part way through
+			AtomicInteger checkCount = new AtomicInteger(0);
+			FullDataRecompressor recompressor = new FullDataRecompressor(repo, progressFile, EDhApiDataCompressionMode.LZ4);
+			Assert.assertFalse(recompressor.run(() -> checkCount.incrementAndGet() < 70));
+			Assert.assertNotNull(recompressor.getStatusString());
+			
+			FullDataRecompressor.Progress stoppedProgress = FullDataRecompressor.Progress.load(progressFile);
+			Assert.assertFalse(stoppedProgress.complete);
+			Assert.assertTrue(stoppedProgress.checkedCount > 0 && stoppedProgress.checkedCount < dataSourceCount);
+			Assert.assertEquals(stoppedProgress.checkedCount, stoppedProgress.recompressedCount);
+			
+			
+			// resume
+			recompressor = new FullDataRecompressor(repo, progressFile, EDhApiDataCompressionMode.LZ4);
+			Assert.assertTrue(recompressor.run(() -> true));
+			Assert.assertNull(recompressor.getStatusString());
+			
+			FullDataRecompressor.Progress finishedProgress = FullDataRecompressor.Progress.load(progressFile);
+			Assert.assertTrue(finishedProgress.complete);
+			Assert.assertEquals(dataSourceCount, finishedProgress.checkedCount);
+			Assert.assertEquals(dataSourceCount, finishedProgress.recompressedCount);
+			Assert.assertEquals(0, finishedProgress.failedCount);
+			Assert.assertTrue(finishedProgress.bytesSaved > 0);
+			
+			// new databases support incremental vacuuming
+			Assert.assertTrue(repo.isIncrementalVacuumEnabled());
+			Assert.assertEquals(0, repo.getFreeByteCount());
+			
+			for (int i = 0; i < dataSourceCount; i++)
+			{
+				long pos = posList.getLong(i);
+				FullDataSourceV2DTO dto = repo.getByKey(pos);
+				Assert.assertEquals(EDhApiDataCompressionMode.LZ4.value, dto.compressionModeValue);
+				Assert.assertEquals(1000 + i, dto.lastModifiedUnixDateTime);
+				Assert.assertEquals(500 + i, dto.createdUnixDateTime);
+				
+				dto.recompress(EDhApiDataCompressionMode.UNCOMPRESSED);
+				AbstractFullDataStoreTest.assertDtoEquals(createDto(pos), dto);
+			}
+			
+			
+			// changing the target should restart the job
+			recompressor = new FullDataRecompressor(repo, progressFile, EDhApiDataCompressionMode.LZMA2);
+			Assert.assertTrue(recompressor.run(() -> true));
+			Assert.assertEquals(dataSourceCount, FullDataRecompressor.Progress.load(progressFile).recompressedCount);
+			Assert.assertEquals(0, repo.getFreeByteCount());
+			
+			// finished jobs shouldn't re-check anything
+			recompressor = new FullDataRecompressor(repo, progressFile, EDhApiDataCompressionMode.LZMA2);
+			Assert.assertTrue(recompressor.run(() -> { throw new AssertionError("finished job shouldn't run again"); }));
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		deleteFile(new File(databaseLocation));
+		deleteFile(progressFile);
+	}
+	
+	/** databases created before incremental vacuuming was supported shouldn't be re-written while in use */
+	@Test
+	public void legacyDatabaseVacuumTest() throws Exception
+	{
+		String databaseLocation = "recompressorLegacyTest.sqlite";
+		File progressFile = new File("recompressorLegacyTest.properties");
+		deleteFile(new File(databaseLocation));
+		deleteFile(progressFile);
+		
+		// any existing table prevents the repo from changing the vacuum mode
+		try (Connection connection = DriverManager.getConnection(DATABASE_TYPE + ":" + databaseLocation);
+			Statement statement = connection.createStatement())
+		{
+			statement.execute("CREATE TABLE LegacyTable (Id INTEGER PRIMARY KEY);");
+		}
+		
+		
+		FullDataSourceV2Repo repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			Assert.assertFalse(repo.isIncrementalVacuumEnabled());
+			for (int i = 0; i < 60; i++)
+			{
+				repo.save(createDto(DhSectionPos.encode(DETAIL_LEVEL, i % 11, i / 11)));
+			}
+			
+			FullDataRecompressor recompressor = new FullDataRecompressor(repo, progressFile, EDhApiDataCompressionMode.LZ4);
+			Assert.assertTrue(recompressor.run(() -> true));
+			Assert.assertFalse(repo.isIncrementalVacuumEnabled());
+			Assert.assertTrue(repo.getFreeByteCount() > 0);
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		// the space can only be freed offline
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		Assert.assertEquals(0, LodDatabaseTool.run(new String[] { LodDatabaseTool.VACUUM_SUBCOMMAND, databaseLocation }, new PrintStream(outputStream)));
+		
+		repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			Assert.assertTrue(repo.isIncrementalVacuumEnabled());
+			Assert.assertEquals(0, repo.getFreeByteCount());
+			Assert.assertEquals(60, repo.getAllPositions().size());
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		deleteFile(new File(databaseLocation));
+		deleteFile(progressFile);
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** creates an uncompressed DTO with deterministic data based on the position */
+	private static FullDataSourceV2DTO createDto(long pos) throws Exception
+	{
+		Random random = new Random(pos);
+		
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(pos);
+		for (int i = 0; i < dataSource.dataPoints.length; i++)
+		{
+			LongArrayList dataColumn = new LongArrayList();
+			int columnLength = random.nextInt(4);
+			for (int y = 0; y < columnLength; y++)
+			{
+				dataColumn.add(FullDataPointUtil.encode(random.nextInt(8), 1 + random.nextInt(16), y * 20, (byte) 0, (byte) 15));
+			}
+			dataSource.dataPoints[i] = dataColumn;
+			dataSource.columnGenerationSteps[i] = (byte) random.nextInt(4);
+		}
+		
+		FullDataSourceV2DTO dto = FullDataSourceV2DTO.CreateFromDataSource(dataSource, EDhApiDataCompressionMode.UNCOMPRESSED);
+		
+		// mapping entries normally require Minecraft objects, but the recompressor only copies the strings
+		ByteArrayOutputStream mappingByteStream = new ByteArrayOutputStream();
+		DhDataOutputStream mappingOut = new DhDataOutputStream(mappingByteStream, EDhApiDataCompressionMode.UNCOMPRESSED);
+		mappingOut.writeInt(2);
+		mappingOut.writeUTF("minecraft:plains_DH-BSW_minecraft:stone");
+		mappingOut.writeUTF("minecraft:plains_DH-BSW_minecraft:grass_block");
+		mappingOut.flush();
+		dto.compressedMappingByteArray = mappingByteStream.toByteArray();
+		
+		dto.levelMinY = -64;
+		return dto;
+	}
+	
+	private static void deleteFile(File file)
+	{
+		if (file.exists())
+		{
+			Assert.assertTrue("unable to delete test file [" + file + "].", file.delete());
+		}
+	}
+	
+}
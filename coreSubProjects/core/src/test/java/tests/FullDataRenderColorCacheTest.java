@@ -0,0 +1,248 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataRenderColorCache;
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.jar.JarDependencySetup;
+import com.seibel.distanthorizons.core.level.IDhClientLevel;
+import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FullDataRenderColorCacheTest
+{
+	private static final HashSet<IBlockStateWrapper> IGNORED_BLOCKS;
+	
+	static
+	{
+		// the cache uses the wrapper factory to determine which blocks shouldn't be rendered,
+		// the offline factory is used so other tests can still deserialize data mappings
+		JarDependencySetup.createOfflineLodBindings();
+		IGNORED_BLOCKS = SingletonInjector.INSTANCE.get(IWrapperFactory.class).getRendererIgnoredBlocks(null);
+	}
+	
+	
+	
+	@Test
+	public void colorsAreOnlyComputedOnceTest()
+	{
+		TestLevel testLevel = new TestLevel();
+		IBiomeWrapper plains = createBiome("plains");
+		IBlockStateWrapper grass = createBlock("grass", true);
+		IBlockStateWrapper stone = createBlock("stone", true);
+		testLevel.colorByBlock.put(grass, 0xFF00FF00);
+		testLevel.colorByBlock.put(stone, 0xFF888888);
+		
+		FullDataPointIdMap mapping = new FullDataPointIdMap(0);
+		int grassId = mapping.addIfNotPresentAndGetId(plains, grass);
+		int stoneId = mapping.addIfNotPresentAndGetId(plains, stone);
+		
+		FullDataRenderColorCache cache = new FullDataRenderColorCache();
+		FullDataRenderColorCache.Entry[] entries = cache.getEntriesForMapping(testLevel.level, mapping, 0, 0);
+		Assert.assertEquals(0xFF00FF00, entries[grassId].getColor(testLevel.level, 5, 64, 5));
+		Assert.assertEquals(0xFF888888, entries[stoneId].getColor(testLevel.level, 5, 64, 5));
+		Assert.assertFalse(entries[grassId].ignored);
+		Assert.assertEquals(2, testLevel.colorLookupCount.get());
+		
+		// a different mapping with the same biome/block pairs should reuse the cached values
+		FullDataPointIdMap otherMapping = new FullDataPointIdMap(1);
+		otherMapping.addIfNotPresentAndGetId(plains, stone);
+		otherMapping.addIfNotPresentAndGetId(plains, grass);
+		FullDataRenderColorCache.Entry[] otherEntries = cache.getEntriesForMapping(testLevel.level, otherMapping, 512, 512);
+		Assert.assertSame(entries[stoneId], otherEntries[0]);
+		Assert.assertSame(entries[grassId], otherEntries[1]);
+		Assert.assertEquals(2, testLevel.colorLookupCount.get());
+		Assert.assertEquals(2, cache.size());
+		
+		// clearing should force the colors to be looked up again, IE after a resource pack change
+		testLevel.colorByBlock.put(grass, 0xFF00AA00);
+		cache.clear();
+		entries = cache.getEntriesForMapping(testLevel.level, mapping, 0, 0);
+		Assert.assertEquals(0xFF00AA00, entries[grassId].getColor(testLevel.level, 5, 64, 5));
+		Assert.assertEquals(4, testLevel.colorLookupCount.get());
+	}
+	
+	@Test
+	public void positionDependentColorTest()
+	{
+		TestLevel testLevel = new TestLevel();
+		IBiomeWrapper ocean = createBiome("ocean");
+		IBlockStateWrapper water = createBlock("water", false);
+		testLevel.positionDependentBlocks.add(water);
+		testLevel.colorByBlock.put(water, 0xFF0000FF);
+		
+		FullDataPointIdMap mapping = new FullDataPointIdMap(0);
+		int waterId = mapping.addIfNotPresentAndGetId(ocean, water);
+		
+		FullDataRenderColorCache cache = new FullDataRenderColorCache();
+		FullDataRenderColorCache.Entry[] entries = cache.getEntriesForMapping(testLevel.level, mapping, 0, 0);
+		Assert.assertEquals(1, testLevel.colorLookupCount.get());
+		
+		// position dependent colors must be looked up every time
+		entries[waterId].getColor(testLevel.level, 1, 2, 3);
+		entries[waterId].getColor(testLevel.level, 4, 5, 6);
+		Assert.assertEquals(3, testLevel.colorLookupCount.get());
+		Assert.assertTrue(entries[waterId].nonColliding);
+	}
+	
+	@Test
+	public void levelChangeTest()
+	{
+		TestLevel firstLevel = new TestLevel();
+		TestLevel secondLevel = new TestLevel();
+		IBiomeWrapper plains = createBiome("plains");
+		IBlockStateWrapper stone = createBlock("stone", true);
+		firstLevel.colorByBlock.put(stone, 0xFF888888);
+		secondLevel.colorByBlock.put(stone, 0xFF444444);
+		
+		FullDataPointIdMap mapping = new FullDataPointIdMap(0);
+		int stoneId = mapping.addIfNotPresentAndGetId(plains, stone);
+		
+		FullDataRenderColorCache cache = new FullDataRenderColorCache();
+		FullDataRenderColorCache.Entry firstEntry = cache.getEntriesForMapping(firstLevel.level, mapping, 0, 0)[stoneId];
+		Assert.assertEquals(0xFF888888, firstEntry.getColor(firstLevel.level, 0, 0, 0));
+		
+		// the previous level's colors shouldn't be used for the new level
+		FullDataRenderColorCache.Entry secondEntry = cache.getEntriesForMapping(secondLevel.level, mapping, 0, 0)[stoneId];
+		Assert.assertNotSame(firstEntry, secondEntry);
+		Assert.assertEquals(0xFF444444, secondEntry.getColor(secondLevel.level, 0, 0, 0));
+		Assert.assertEquals(1, cache.size());
+		
+		// the second level's cache should still be used
+		Assert.assertSame(secondEntry, cache.getEntriesForMapping(secondLevel.level, mapping, 0, 0)[stoneId]);
+		Assert.assertEquals(1, secondLevel.colorLookupCount.get());
+	}
+	
+	@Test
+	public void ignoredBlocksTest()
+	{
+		TestLevel testLevel = new TestLevel();
+		IBiomeWrapper plains = createBiome("plains");
+		IBlockStateWrapper air = createBlock("air", false);
+		IGNORED_BLOCKS.add(air);
+		try
+		{
+			FullDataPointIdMap mapping = new FullDataPointIdMap(0);
+			int airId = mapping.addIfNotPresentAndGetId(plains, air);
+			
+			FullDataRenderColorCache.Entry[] entries = new FullDataRenderColorCache().getEntriesForMapping(testLevel.level, mapping, 0, 0);
+			Assert.assertTrue(entries[airId].ignored);
+			Assert.assertEquals("ignored blocks don't need a color", 0, testLevel.colorLookupCount.get());
+		}
+		finally
+		{
+			IGNORED_BLOCKS.remove(air);
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static IBiomeWrapper createBiome(String name)
+	{
+		return TestStubs.createStub(IBiomeWrapper.class, name);
+	}
+	private static IBlockStateWrapper createBlock(String name, boolean solid)
+	{
+		return TestStubs.createStub(IBlockStateWrapper.class, (methodName) ->
+		{
+			switch (methodName)
+			{
+				case "getSerialString":
+					return name;
+				case "isSolid":
+					return solid;
+				case "getOpacity":
+					return solid ? IBlockStateWrapper.FULLY_OPAQUE : 0;
+				case "getIrisBlockMaterialId":
+					return (byte) 0;
+				default:
+					return null;
+			}
+		});
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	private static class TestLevel
+	{
+		public final AtomicInteger colorLookupCount = new AtomicInteger(0);
+		public final HashMap<IBlockStateWrapper, Integer> colorByBlock = new HashMap<>();
+		public final HashSet<IBlockStateWrapper> positionDependentBlocks = new HashSet<>();
+		
+		public final IDhClientLevel level = (IDhClientLevel) Proxy.newProxyInstance(IDhClientLevel.class.getClassLoader(), new Class[]{ IDhClientLevel.class },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "computeBaseColor":
+							this.colorLookupCount.incrementAndGet();
+							return this.colorByBlock.getOrDefault((IBlockStateWrapper) args[2], 0);
+						case "getClientLevelWrapper":
+							return this.positionDependentLevelWrapper;
+						case "getLevelWrapper":
+							return this.positionDependentLevelWrapper;
+						case "getMinY":
+							return -64;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return null;
+					}
+				});
+		
+		private final IClientLevelWrapper positionDependentLevelWrapper = (IClientLevelWrapper) Proxy.newProxyInstance(IClientLevelWrapper.class.getClassLoader(), new Class[]{ IClientLevelWrapper.class },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "isBaseColorPositionDependent":
+							return this.positionDependentBlocks.contains((IBlockStateWrapper) args[0]);
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return null;
+					}
+				});
+		
+	}
+	
+}
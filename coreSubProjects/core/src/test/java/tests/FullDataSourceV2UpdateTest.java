@@ -0,0 +1,213 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.jar.JarDependencySetup;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.OfflineLevelWrapper;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Confirms {@link FullDataSourceV2#update(FullDataSourceV2)} maps the input's IDs correctly
+ * whether or not the recipient's mapping already contains the input's entries.
+ */
+public class FullDataSourceV2UpdateTest
+{
+	private static final long POS = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+	private static final long PARENT_POS = DhSectionPos.encode((byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 1), 0, 0);
+	
+	private static final String STONE = "minecraft:stone_STATE_{}";
+	private static final String DIRT = "minecraft:dirt_STATE_{}";
+	private static final String SAND = "minecraft:sand_STATE_{}";
+	private static final String GRAVEL = "minecraft:gravel_STATE_{}";
+	
+	static
+	{
+		// wrappers are needed to create mappings
+		JarDependencySetup.createOfflineLodBindings();
+	}
+	
+	
+	
+	@Test
+	public void startsWithTest() throws Exception
+	{
+		FullDataPointIdMap map = createDataSource(POS, new String[] { STONE, DIRT, SAND }, 0).mapping;
+		
+		Assert.assertTrue(map.startsWith(map));
+		Assert.assertTrue(map.startsWith(createDataSource(POS, new String[] { STONE, DIRT }, 0).mapping));
+		Assert.assertTrue(map.startsWith(new FullDataPointIdMap(POS)));
+		
+		Assert.assertFalse("different order", map.startsWith(createDataSource(POS, new String[] { DIRT, STONE }, 0).mapping));
+		Assert.assertFalse("input is longer", map.startsWith(createDataSource(POS, new String[] { STONE, DIRT, SAND, GRAVEL }, 0).mapping));
+	}
+	
+	@Test
+	public void sameDetailLevelTest() throws Exception
+	{
+		// the recipient's mapping doesn't start with the input's mapping, so the IDs have to be remapped
+		FullDataSourceV2 recipient = createDataSource(POS, new String[] { GRAVEL, SAND }, 0);
+		FullDataSourceV2 input = createDataSource(POS, new String[] { STONE, DIRT }, 1);
+		Assert.assertTrue(recipient.update(input));
+		assertBlocksMatch(input, recipient);
+		
+		// re-applying the same data shouldn't change anything
+		Assert.assertFalse(recipient.update(input));
+		assertBlocksMatch(input, recipient);
+		
+		
+		// the recipient's mapping now starts with this input's mapping, so nothing has to be remapped
+		FullDataSourceV2 prefixInput = createDataSource(POS, new String[] { GRAVEL, SAND }, 1);
+		Assert.assertTrue(recipient.mapping.startsWith(prefixInput.mapping));
+		int mappingSize = recipient.mapping.size();
+		Assert.assertTrue(recipient.update(prefixInput));
+		assertBlocksMatch(prefixInput, recipient);
+		Assert.assertEquals("no entries should have been added", mappingSize, recipient.mapping.size());
+		
+		
+		// a smaller input after a larger one, to make sure the re-used remap array's old values aren't used
+		FullDataSourceV2 largeInput = createDataSource(POS, new String[] { "minecraft:a_STATE_{}", "minecraft:b_STATE_{}", "minecraft:c_STATE_{}", "minecraft:d_STATE_{}", DIRT }, 4);
+		Assert.assertTrue(recipient.update(largeInput));
+		assertBlocksMatch(largeInput, recipient);
+		
+		FullDataSourceV2 smallInput = createDataSource(POS, new String[] { SAND }, 0);
+		Assert.assertTrue(recipient.update(smallInput));
+		assertBlocksMatch(smallInput, recipient);
+	}
+	
+	@Test
+	public void oneBelowDetailLevelTest() throws Exception
+	{
+		FullDataSourceV2 parent = createDataSource(PARENT_POS, new String[] { GRAVEL }, 0);
+		
+		FullDataSourceV2[] children = new FullDataSourceV2[4];
+		for (int i = 0; i < 4; i++)
+		{
+			// alternating which ID is used so both remapped and un-mapped IDs are tested
+			children[i] = createDataSource(DhSectionPos.getChildByIndex(PARENT_POS, i), new String[] { STONE, DIRT, SAND }, i % 3);
+		}
+		
+		for (FullDataSourceV2 child : children)
+		{
+			Assert.assertTrue(parent.update(child));
+		}
+		
+		for (int i = 0; i < 4; i++)
+		{
+			long childPos = children[i].getKey();
+			int offsetX = (DhSectionPos.getX(childPos) % 2) * (FullDataSourceV2.WIDTH / 2);
+			int offsetZ = (DhSectionPos.getZ(childPos) % 2) * (FullDataSourceV2.WIDTH / 2);
+			String expectedBlock = getBlockSerial(children[i], 0, 0);
+			for (int x = 0; x < FullDataSourceV2.WIDTH / 2; x++)
+			{
+				for (int z = 0; z < FullDataSourceV2.WIDTH / 2; z++)
+				{
+					Assert.assertEquals(expectedBlock, getBlockSerial(parent, x + offsetX, z + offsetZ));
+				}
+			}
+		}
+		
+		
+		// the columns are overwritten in place, so this makes sure the old data is still compared correctly
+		parent.getChangedColumns().clear();
+		for (FullDataSourceV2 child : children)
+		{
+			Assert.assertFalse(parent.update(child));
+		}
+		Assert.assertTrue(parent.getChangedColumns().isEmpty());
+		
+		FullDataSourceV2 changedChild = createDataSource(children[0].getKey(), new String[] { GRAVEL }, 0);
+		Assert.assertTrue(parent.update(changedChild));
+		Assert.assertEquals((FullDataSourceV2.WIDTH / 2) * (FullDataSourceV2.WIDTH / 2), parent.getChangedColumns().cardinality());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** 
+	 * @param blockSerials added to the mapping in order
+	 * @param blockIndex which of the blockSerials every column is made of
+	 */
+	private static FullDataSourceV2 createDataSource(long pos, String[] blockSerials, int blockIndex) throws Exception
+	{
+		OfflineWrapperFactory wrapperFactory = OfflineWrapperFactory.INSTANCE;
+		
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(pos);
+		for (String blockSerial : blockSerials)
+		{
+			dataSource.mapping.addIfNotPresentAndGetId(
+					wrapperFactory.deserializeBiomeWrapper("minecraft:plains", OfflineLevelWrapper.INSTANCE),
+					wrapperFactory.deserializeBlockStateWrapper(blockSerial, OfflineLevelWrapper.INSTANCE));
+		}
+		
+		for (int i = 0; i < dataSource.dataPoints.length; i++)
+		{
+			LongArrayList dataColumn = new LongArrayList();
+			dataColumn.add(FullDataPointUtil.encode(blockIndex, 10, 64, (byte) 0, (byte) 15));
+			dataSource.dataPoints[i] = dataColumn;
+			dataSource.columnGenerationSteps[i] = (byte) 1;
+		}
+		dataSource.levelMinY = -64;
+		
+		return dataSource;
+	}
+	
+	private static void assertBlocksMatch(FullDataSourceV2 expected, FullDataSourceV2 actual)
+	{
+		for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
+		{
+			for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
+			{
+				Assert.assertEquals(getBlockSerial(expected, x, z), getBlockSerial(actual, x, z));
+			}
+		}
+	}
+	
+	/** @return the block in the middle of the data points created by {@link FullDataSourceV2UpdateTest#createDataSource} */
+	private static String getBlockSerial(FullDataSourceV2 dataSource, int relX, int relZ)
+	{
+		// downsampling may add data points above or below the original one, so the data point has to be found by its height
+		int relY = 70;
+		LongArrayList dataColumn = dataSource.get(relX, relZ);
+		for (int i = 0; i < dataColumn.size(); i++)
+		{
+			long dataPoint = dataColumn.getLong(i);
+			int bottomY = FullDataPointUtil.getBottomY(dataPoint);
+			if (bottomY <= relY && relY < bottomY + FullDataPointUtil.getHeight(dataPoint))
+			{
+				return dataSource.mapping.getBlockStateWrapper(FullDataPointUtil.getId(dataPoint)).getSerialString();
+			}
+		}
+		
+		Assert.fail("no data point found at relative pos [" + relX + "," + relY + "," + relZ + "].");
+		return null;
+	}
+	
+}
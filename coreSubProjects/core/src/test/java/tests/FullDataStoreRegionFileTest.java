@@ -0,0 +1,356 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.file.store.ConvertingFullDataStore;
+import com.seibel.distanthorizons.core.file.store.FullDataStoreConverter;
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
+import com.seibel.distanthorizons.core.file.store.regionFile.FullDataRegionFile;
+import com.seibel.distanthorizons.core.file.store.regionFile.RegionFileFullDataStore;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the {@link IFullDataStore} conformance tests against {@link RegionFileFullDataStore}
+ * along with tests specific to {@link FullDataRegionFile}'s.
+ */
+public class FullDataStoreRegionFileTest extends AbstractFullDataStoreTest
+{
+	@Override
+	protected IFullDataStore openStore(String name) { return new RegionFileFullDataStore(getFolder(name)); }
+	
+	@Override
+	protected void deleteStore(String name)
+	{
+		File folder = getFolder(name);
+		File[] files = folder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				Assert.assertTrue("unable to delete test region file.", file.delete());
+			}
+		}
+		
+		if (folder.exists())
+		{
+			Assert.assertTrue("unable to delete test region folder.", folder.delete());
+		}
+	}
+	
+	private static File getFolder(String name) { return new File("fullDataStore_" + name); }
+	
+	
+	
+	//=======================//
+	// region specific tests //
+	//=======================//
+	
+	@Test
+	public void sectorReuseTest() throws Exception
+	{
+		String name = "sectorReuseTest";
+		this.deleteStore(name);
+		
+		long firstPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		long secondPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 1);
+		File regionFile = new File(getFolder(name), "r." + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + ".0.0.dhr");
+		long headerByteSize = (long) FullDataRegionFile.HEADER_SECTOR_COUNT * FullDataRegionFile.SECTOR_BYTE_SIZE;
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			store.save(createDto(firstPos, EDhApiWorldGenerationStep.LIGHT, 3 * FullDataRegionFile.SECTOR_BYTE_SIZE));
+			store.save(createDto(secondPos, EDhApiWorldGenerationStep.LIGHT, 100));
+			long fileSize = regionFile.length();
+			
+			// repeatedly re-writing the same data shouldn't grow the file
+			for (int i = 0; i < 20; i++)
+			{
+				store.save(createDto(firstPos, EDhApiWorldGenerationStep.LIGHT, 3 * FullDataRegionFile.SECTOR_BYTE_SIZE));
+			}
+			Assert.assertTrue(regionFile.length() <= fileSize + (4L * FullDataRegionFile.SECTOR_BYTE_SIZE));
+			
+			// removing everything should shrink the file back to just the header
+			store.deleteWithKey(firstPos);
+			store.deleteWithKey(secondPos);
+			Assert.assertEquals(headerByteSize, regionFile.length());
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void corruptFileTest() throws Exception
+	{
+		String name = "corruptFileTest";
+		this.deleteStore(name);
+		
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		File regionFile = new File(getFolder(name), "r." + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + ".0.0.dhr");
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			store.save(createDto(pos, EDhApiWorldGenerationStep.LIGHT, 10_000));
+		}
+		
+		// cut off the end of the payload
+		try (RandomAccessFile file = new RandomAccessFile(regionFile, "rw"))
+		{
+			file.setLength(file.length() - 100);
+		}
+		
+		// the broken entry should be treated as missing instead of causing errors
+		try (IFullDataStore store = this.openStore(name))
+		{
+			Assert.assertFalse(store.existsWithKey(pos));
+			Assert.assertNull(store.getByKey(pos));
+			
+			store.save(createDto(pos, EDhApiWorldGenerationStep.LIGHT, 10_000));
+			Assert.assertNotNull(store.getByKey(pos));
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void negativeSectorIndexTest() throws Exception
+	{
+		String name = "negativeSectorIndexTest";
+		this.deleteStore(name);
+		
+		long brokenPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		long validPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 1, 0);
+		File regionFile = new File(getFolder(name), "r." + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + ".0.0.dhr");
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			store.save(createDto(brokenPos, EDhApiWorldGenerationStep.LIGHT, 1_000));
+			store.save(createDto(validPos, EDhApiWorldGenerationStep.LIGHT, 1_000));
+		}
+		
+		// the first entry's sector index is right after the 16 byte file header
+		try (RandomAccessFile file = new RandomAccessFile(regionFile, "rw"))
+		{
+			file.seek(16);
+			file.writeInt(-5);
+		}
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			Assert.assertNull(store.getByKey(brokenPos));
+			assertDtoEquals(createDto(validPos, EDhApiWorldGenerationStep.LIGHT, 1_000), store.getByKey(validPos));
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	/** region files are closed and re-opened while other regions are being used, which shouldn't corrupt anything */
+	@Test
+	public void regionEvictionTest() throws Exception
+	{
+		String name = "regionEvictionTest";
+		this.deleteStore(name);
+		
+		long sharedPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		int regionCount = RegionFileFullDataStore.MAX_OPEN_REGION_FILE_COUNT + 20;
+		
+		try (IFullDataStore store = this.openStore(name))
+		{
+			AtomicReference<Throwable> errorRef = new AtomicReference<>(null);
+			Thread evictingThread = new Thread(() ->
+			{
+				try
+				{
+					// each position is in a different region
+					for (int i = 1; i <= regionCount; i++)
+					{
+						long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, i * FullDataRegionFile.REGION_WIDTH, 0);
+						store.save(createDto(pos, EDhApiWorldGenerationStep.LIGHT, 100));
+					}
+				}
+				catch (Throwable e)
+				{
+					errorRef.set(e);
+				}
+			});
+			evictingThread.start();
+			
+			int sharedDataLength = 1;
+			while (evictingThread.isAlive())
+			{
+				sharedDataLength = (sharedDataLength % 20_000) + 997;
+				store.save(createDto(sharedPos, EDhApiWorldGenerationStep.LIGHT, sharedDataLength));
+				assertDtoEquals(createDto(sharedPos, EDhApiWorldGenerationStep.LIGHT, sharedDataLength), store.getByKey(sharedPos));
+			}
+			evictingThread.join();
+			Assert.assertNull(errorRef.get());
+			
+			for (int i = 1; i <= regionCount; i++)
+			{
+				long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, i * FullDataRegionFile.REGION_WIDTH, 0);
+				assertDtoEquals(createDto(pos, EDhApiWorldGenerationStep.LIGHT, 100), store.getByKey(pos));
+			}
+			assertDtoEquals(createDto(sharedPos, EDhApiWorldGenerationStep.LIGHT, sharedDataLength), store.getByKey(sharedPos));
+		}
+		
+		this.deleteStore(name);
+	}
+	
+	@Test
+	public void converterTest() throws Exception
+	{
+		String name = "converterTest";
+		this.deleteStore(name);
+		File dbFile = new File("fullDataStore_converterTest.sqlite");
+		if (dbFile.exists())
+		{
+			Assert.assertTrue("unable to delete old test DB File.", dbFile.delete());
+		}
+		
+		
+		long[] positions = new long[] {
+				DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0),
+				DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, -100, 33),
+				DhSectionPos.encode((byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 3), 5, -5),
+		};
+		
+		FullDataSourceV2Repo databaseRepo = new FullDataSourceV2Repo("jdbc:sqlite", dbFile.getPath());
+		try (IFullDataStore regionFileStore = this.openStore(name))
+		{
+			for (long pos : positions)
+			{
+				FullDataSourceV2DTO dto = createDto(pos, EDhApiWorldGenerationStep.SURFACE, 1_000);
+				dto.applyToParent = true;
+				dto.lastModifiedUnixDateTime = 1000 + DhSectionPos.getX(pos);
+				databaseRepo.saveWithTimestamps(dto);
+			}
+			
+			// database -> region files
+			Assert.assertEquals(positions.length, FullDataStoreConverter.moveAll(databaseRepo, regionFileStore));
+			Assert.assertEquals(0, databaseRepo.getAllPositions().size());
+			Assert.assertEquals(positions.length, regionFileStore.getPositionsToUpdate(10).size());
+			for (long pos : positions)
+			{
+				FullDataSourceV2DTO dto = regionFileStore.getByKey(pos);
+				assertDtoEquals(createDtoForComparison(pos), dto);
+				Assert.assertEquals(1000 + DhSectionPos.getX(pos), dto.lastModifiedUnixDateTime);
+			}
+			
+			// region files -> database
+			Assert.assertEquals(positions.length, FullDataStoreConverter.copyAll(regionFileStore, databaseRepo));
+			Assert.assertEquals(positions.length, regionFileStore.getAllPositions().size());
+			for (long pos : positions)
+			{
+				FullDataSourceV2DTO dto = databaseRepo.getByKey(pos);
+				assertDtoEquals(createDtoForComparison(pos), dto);
+				Assert.assertEquals(Long.valueOf(1000 + DhSectionPos.getX(pos)), databaseRepo.getTimestampForPos(pos));
+			}
+		}
+		finally
+		{
+			databaseRepo.close();
+		}
+		
+		this.deleteStore(name);
+		Assert.assertTrue("Unable to delete test database.", dbFile.delete());
+	}
+	
+	@Test
+	public void convertingStoreTest() throws Exception
+	{
+		String name = "convertingStoreTest";
+		this.deleteStore(name);
+		File dbFile = new File("fullDataStore_convertingStoreTest.sqlite");
+		if (dbFile.exists())
+		{
+			Assert.assertTrue("unable to delete old test DB File.", dbFile.delete());
+		}
+		
+		
+		long[] positions = new long[] {
+				DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0),
+				DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, -100, 33),
+				DhSectionPos.encode((byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 3), 5, -5),
+		};
+		long updatedPos = positions[1];
+		
+		FullDataSourceV2Repo databaseRepo = new FullDataSourceV2Repo("jdbc:sqlite", dbFile.getPath());
+		for (long pos : positions)
+		{
+			databaseRepo.save(createDto(pos, EDhApiWorldGenerationStep.SURFACE, 1_000));
+		}
+		
+		ConvertingFullDataStore store = new ConvertingFullDataStore(databaseRepo, this.openStore(name));
+		try
+		{
+			// data that hasn't been moved yet should still be readable
+			Assert.assertFalse(store.isConversionComplete());
+			Assert.assertEquals(positions.length, store.getAllPositions().size());
+			for (long pos : positions)
+			{
+				Assert.assertTrue(store.existsWithKey(pos));
+				assertDtoEquals(createDto(pos, EDhApiWorldGenerationStep.SURFACE, 1_000), store.getByKey(pos));
+			}
+			
+			// new data should only go to the new store and shouldn't be overwritten by the conversion
+			store.save(createDto(updatedPos, EDhApiWorldGenerationStep.FEATURES, 2_000));
+			assertDtoEquals(createDto(updatedPos, EDhApiWorldGenerationStep.FEATURES, 2_000), store.getByKey(updatedPos));
+			assertDtoEquals(createDto(updatedPos, EDhApiWorldGenerationStep.SURFACE, 1_000), databaseRepo.getByKey(updatedPos));
+			
+			Assert.assertTrue(store.convert(() -> true));
+			Assert.assertTrue(store.isConversionComplete());
+			Assert.assertEquals(0, databaseRepo.getAllPositions().size());
+			Assert.assertEquals(positions.length, store.targetStore.getAllPositions().size());
+			for (long pos : positions)
+			{
+				FullDataSourceV2DTO expectedDto = (pos == updatedPos)
+						? createDto(pos, EDhApiWorldGenerationStep.FEATURES, 2_000)
+						: createDto(pos, EDhApiWorldGenerationStep.SURFACE, 1_000);
+				assertDtoEquals(expectedDto, store.getByKey(pos));
+			}
+		}
+		finally
+		{
+			store.close();
+		}
+		
+		// a closed store shouldn't try converting
+		Assert.assertFalse(store.convert(() -> true));
+		
+		this.deleteStore(name);
+		Assert.assertTrue("Unable to delete test database.", dbFile.delete());
+	}
+	private static FullDataSourceV2DTO createDtoForComparison(long pos) throws Exception
+	{
+		FullDataSourceV2DTO dto = createDto(pos, EDhApiWorldGenerationStep.SURFACE, 1_000);
+		dto.applyToParent = true;
+		return dto;
+	}
+	
+}
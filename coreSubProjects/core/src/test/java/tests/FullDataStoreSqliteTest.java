@@ -0,0 +1,53 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.core.file.store.IFullDataStore;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import org.junit.Assert;
+
+import java.io.File;
+
+/**
+ * Runs the {@link IFullDataStore} conformance tests against {@link FullDataSourceV2Repo}.
+ */
+public class FullDataStoreSqliteTest extends AbstractFullDataStoreTest
+{
+	public static String DATABASE_TYPE = "jdbc:sqlite";
+	
+	
+	
+	@Override
+	protected IFullDataStore openStore(String name) throws Exception { return new FullDataSourceV2Repo(DATABASE_TYPE, getDatabaseFileName(name)); }
+	
+	@Override
+	protected void deleteStore(String name)
+	{
+		File dbFile = new File(getDatabaseFileName(name));
+		if (dbFile.exists())
+		{
+			Assert.assertTrue("unable to delete test DB File.", dbFile.delete());
+		}
+	}
+	
+	private static String getDatabaseFileName(String name) { return "fullDataStore_" + name + ".sqlite"; }
+	
+}
@@ -0,0 +1,244 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.api.objects.data.DhApiRaycastResult;
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.HierarchicalLodRaycaster;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3d;
+import com.seibel.distanthorizons.coreapi.util.math.Vec3f;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntBinaryOperator;
+
+public class HierarchicalLodRaycasterTest
+{
+	private static final int LEVEL_MIN_HEIGHT = -64;
+	private static final int LEVEL_MAX_HEIGHT = 320;
+	
+	/** the synthetic terrain's height is constant over each tile */
+	private static final int TILE_WIDTH = 8;
+	
+	private static final IBiomeWrapper BIOME = TestStubs.createStub(IBiomeWrapper.class, "plains");
+	private static final IBlockStateWrapper STONE = TestStubs.createStub(IBlockStateWrapper.class, "stone");
+	
+	
+	
+	@Test
+	public void flatGroundTest()
+	{
+		SyntheticTerrain terrain = new SyntheticTerrain((tileX, tileZ) -> 64);
+		HierarchicalLodRaycaster raycaster = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT);
+		
+		// a 45 degree ray starting 36 blocks above the ground should hit 36 blocks away
+		DhApiRaycastResult result = raycaster.raycast(new Vec3d(0.5, 100, 0.5), new Vec3f(1, -1, 0), 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+		Assert.assertNotNull(result);
+		Assert.assertEquals(36, result.pos.x);
+		Assert.assertEquals(0, result.pos.z);
+		Assert.assertEquals(LEVEL_MIN_HEIGHT, result.pos.y);
+		Assert.assertEquals(64, result.dataPoint.topYBlockPos);
+		Assert.assertSame(STONE, result.dataPoint.blockStateWrapper);
+	}
+	
+	@Test
+	public void emptySpaceIsSkippedTest()
+	{
+		SyntheticTerrain terrain = new SyntheticTerrain((tileX, tileZ) -> 64);
+		HierarchicalLodRaycaster raycaster = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT);
+		
+		// a horizontal ray above the terrain shouldn't need any full detail data
+		DhApiRaycastResult result = raycaster.raycast(new Vec3d(0.5, 200, 0.5), new Vec3f(1, 0, 0.3f), 2000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+		Assert.assertNull(result);
+		Assert.assertEquals(0, terrain.fullDetailLoadCount.get());
+		
+		// a ray that never reaches any data shouldn't hit anything
+		raycaster = new HierarchicalLodRaycaster((sectionPos) -> null, (sectionPos) -> null, LEVEL_MIN_HEIGHT);
+		Assert.assertNull(raycaster.raycast(new Vec3d(0.5, 100, 0.5), new Vec3f(1, -1, 0), 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT));
+	}
+	
+	@Test
+	public void pillarIsHitFirstTest()
+	{
+		// a tall pillar between the ray's origin and where it would hit the ground
+		SyntheticTerrain terrain = new SyntheticTerrain((tileX, tileZ) -> (tileX == 5 && tileZ == 0) ? 150 : 64);
+		HierarchicalLodRaycaster raycaster = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT);
+		
+		DhApiRaycastResult result = raycaster.raycast(new Vec3d(0.5, 120, 4.5), new Vec3f(1, -0.1f, 0), 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+		Assert.assertNotNull(result);
+		Assert.assertEquals(5 * TILE_WIDTH, result.pos.x);
+		Assert.assertEquals(150, result.dataPoint.topYBlockPos);
+	}
+	
+	@Test
+	public void staleParentDataTest()
+	{
+		// a pillar was added at full detail, but the lower detail data hasn't been updated yet
+		SyntheticTerrain terrain = new SyntheticTerrain((tileX, tileZ) -> (tileX == 5 && tileZ == 0) ? 150 : 64);
+		terrain.lowDetailTileHeightFunc = (tileX, tileZ) -> 64;
+		terrain.fullDetailTimestamp = 2;
+		terrain.lowDetailTimestamp = 1;
+		
+		Vec3d origin = new Vec3d(0.5, 120, 4.5);
+		Vec3f direction = new Vec3f(1, -0.1f, 0);
+		
+		// the outdated parents can't be trusted, so the pillar should still be found
+		DhApiRaycastResult result = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT).raycast(origin, direction, 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+		Assert.assertNotNull(result);
+		Assert.assertEquals(5 * TILE_WIDTH, result.pos.x);
+		Assert.assertEquals(150, result.dataPoint.topYBlockPos);
+		
+		// once the parents are at least as new as the full detail data they're used to skip the column
+		terrain.lowDetailTimestamp = 2;
+		result = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT).raycast(origin, direction, 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+		Assert.assertNotNull(result);
+		Assert.assertEquals(64, result.dataPoint.topYBlockPos);
+	}
+	
+	@Test
+	public void matchesFullDetailWalkTest()
+	{
+		// bumpy terrain between Y 64 and 95
+		SyntheticTerrain terrain = new SyntheticTerrain((tileX, tileZ) -> 64 + Math.floorMod(tileX * 73856093 ^ tileZ * 19349663, 32));
+		
+		Random random = new Random(12345);
+		for (int i = 0; i < 200; i++)
+		{
+			Vec3d origin = new Vec3d(random.nextInt(2000) - 1000 + random.nextDouble(), 100 + random.nextInt(40), random.nextInt(2000) - 1000 + random.nextDouble());
+			Vec3f direction = new Vec3f(random.nextFloat() * 2 - 1, -random.nextFloat() * 0.2f, random.nextFloat() * 2 - 1);
+			
+			// only walking through full detail data is the same as stepping block by block
+			DhApiRaycastResult expected = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT, (byte) 0).raycast(origin, direction, 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+			DhApiRaycastResult actual = new HierarchicalLodRaycaster(terrain::getDataSource, terrain::getTimestamp, LEVEL_MIN_HEIGHT).raycast(origin, direction, 1000, LEVEL_MIN_HEIGHT, LEVEL_MAX_HEIGHT);
+			
+			if (expected == null)
+			{
+				Assert.assertNull(actual);
+			}
+			else
+			{
+				Assert.assertNotNull(actual);
+				Assert.assertEquals(expected.pos, actual.pos);
+				Assert.assertEquals(expected.dataPoint.topYBlockPos, actual.dataPoint.topYBlockPos);
+			}
+		}
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/**
+	 * Generates stone columns from the level's minimum height up to the height returned by the given function.
+	 * Lower detail columns use the max height of the tiles they cover, the same as merged LOD data.
+	 */
+	private static class SyntheticTerrain
+	{
+		private final IntBinaryOperator tileHeightFunc;
+		/** can be set to simulate lower detail data that hasn't been updated yet */
+		public IntBinaryOperator lowDetailTileHeightFunc;
+		public long fullDetailTimestamp = 0;
+		public long lowDetailTimestamp = 0;
+		public final AtomicInteger fullDetailLoadCount = new AtomicInteger(0);
+		
+		public SyntheticTerrain(IntBinaryOperator tileHeightFunc)
+		{
+			this.tileHeightFunc = tileHeightFunc;
+			this.lowDetailTileHeightFunc = tileHeightFunc;
+		}
+		
+		public Long getTimestamp(long sectionPos) { return (DhSectionPos.getDetailLevel(sectionPos) == DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL) ? this.fullDetailTimestamp : this.lowDetailTimestamp; }
+		
+		public FullDataSourceV2 getDataSource(long sectionPos)
+		{
+			byte detailLevel = (byte) (DhSectionPos.getDetailLevel(sectionPos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+			if (detailLevel == 0)
+			{
+				this.fullDetailLoadCount.incrementAndGet();
+			}
+			IntBinaryOperator heightFunc = (detailLevel == 0) ? this.tileHeightFunc : this.lowDetailTileHeightFunc;
+			
+			int columnWidth = 1 << detailLevel;
+			int minBlockX = DhSectionPos.getX(sectionPos) * FullDataSourceV2.WIDTH * columnWidth;
+			int minBlockZ = DhSectionPos.getZ(sectionPos) * FullDataSourceV2.WIDTH * columnWidth;
+			
+			FullDataPointIdMap mapping = new FullDataPointIdMap(sectionPos);
+			int stoneId = mapping.addIfNotPresentAndGetId(BIOME, STONE);
+			
+			LongArrayList[] dataColumns = new LongArrayList[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH];
+			for (int relX = 0; relX < FullDataSourceV2.WIDTH; relX++)
+			{
+				for (int relZ = 0; relZ < FullDataSourceV2.WIDTH; relZ++)
+				{
+					int columnMinX = minBlockX + relX * columnWidth;
+					int columnMinZ = minBlockZ + relZ * columnWidth;
+					int maxHeight = getMaxHeight(heightFunc, columnMinX, columnMinZ, columnWidth);
+					
+					LongArrayList dataColumn = new LongArrayList();
+					try
+					{
+						dataColumn.add(FullDataPointUtil.encode(stoneId, maxHeight - LEVEL_MIN_HEIGHT, 0, (byte) 0, (byte) 15));
+					}
+					catch (DataCorruptedException e)
+					{
+						throw new RuntimeException(e);
+					}
+					dataColumns[FullDataSourceV2.relativePosToIndex(relX, relZ)] = dataColumn;
+				}
+			}
+			
+			FullDataSourceV2 dataSource = FullDataSourceV2.createWithData(sectionPos, mapping, dataColumns,
+					new byte[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH], new byte[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH]);
+			dataSource.lastModifiedUnixDateTime = this.getTimestamp(sectionPos);
+			return dataSource;
+		}
+		
+		private static int getMaxHeight(IntBinaryOperator heightFunc, int minBlockX, int minBlockZ, int blockWidth)
+		{
+			int minTileX = Math.floorDiv(minBlockX, TILE_WIDTH);
+			int minTileZ = Math.floorDiv(minBlockZ, TILE_WIDTH);
+			int maxTileX = Math.floorDiv(minBlockX + blockWidth - 1, TILE_WIDTH);
+			int maxTileZ = Math.floorDiv(minBlockZ + blockWidth - 1, TILE_WIDTH);
+			
+			int maxHeight = Integer.MIN_VALUE;
+			for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+			{
+				for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++)
+				{
+					maxHeight = Math.max(maxHeight, heightFunc.applyAsInt(tileX, tileZ));
+				}
+			}
+			return maxHeight;
+		}
+		
+	}
+	
+}
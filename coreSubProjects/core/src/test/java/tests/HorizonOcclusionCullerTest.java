@@ -0,0 +1,168 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.render.HorizonOcclusionCuller;
+import com.seibel.distanthorizons.core.util.ColorUtil;
+import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HorizonOcclusionCullerTest
+{
+	private static final double CAMERA_X = 0.5;
+	private static final double CAMERA_Z = 0.5;
+	
+	private static final int RIDGE_MIN_X = 256;
+	private static final int RIDGE_SECTION_WIDTH = 256;
+	private static final int RIDGE_HEIGHT = 200;
+	/** just above the ridge, occluders are only used when the camera is above them */
+	private static final double CAMERA_Y = 210;
+	
+	
+	
+	@Test
+	public void hiddenBehindRidgeTest()
+	{
+		HorizonOcclusionCuller culler = new HorizonOcclusionCuller();
+		culler.startFrame(CAMERA_X, CAMERA_Y, CAMERA_Z);
+		addRidge(culler);
+		
+		Assert.assertTrue("low section behind the ridge", culler.isOccluded(2048, 0, 256, 100));
+		
+		Assert.assertFalse("section the same height as the ridge can be seen over it", culler.isOccluded(2048, -256, 256, RIDGE_HEIGHT));
+		Assert.assertFalse("section taller than the ridge", culler.isOccluded(2048, 0, 256, 2000));
+		Assert.assertFalse("section behind the camera", culler.isOccluded(-2304, 0, 256, 100));
+		Assert.assertFalse("section past the end of the ridge", culler.isOccluded(0, 8192, 256, 100));
+		Assert.assertFalse("section in front of the ridge", culler.isOccluded(64, 0, 64, 100));
+		Assert.assertFalse("section containing the camera", culler.isOccluded(-32, -32, 64, 100));
+		
+		// the ridge can't hide itself
+		Assert.assertFalse("ridge section", culler.isOccluded(RIDGE_MIN_X, 0, RIDGE_SECTION_WIDTH, RIDGE_HEIGHT));
+	}
+	
+	@Test
+	public void cameraAboveRidgeTest()
+	{
+		HorizonOcclusionCuller culler = new HorizonOcclusionCuller();
+		culler.startFrame(CAMERA_X, 1000, CAMERA_Z);
+		addRidge(culler);
+		
+		// looking down over the ridge
+		Assert.assertFalse(culler.isOccluded(2048, 0, 256, 150));
+		Assert.assertFalse(culler.isOccluded(1024, 0, 16, 0));
+	}
+	
+	@Test
+	public void cameraBelowRidgeSurfaceTest()
+	{
+		HorizonOcclusionCuller culler = new HorizonOcclusionCuller();
+		culler.startFrame(CAMERA_X, 70, CAMERA_Z);
+		addRidge(culler);
+		
+		// the ridge may not be solid below its surface (IE an overhang the camera is under),
+		// so it shouldn't hide anything
+		Assert.assertEquals(0, culler.getOccluderCount());
+		Assert.assertFalse(culler.isOccluded(2048, 0, 256, 100));
+		Assert.assertFalse(culler.isOccluded(2048, 0, 256, 0));
+	}
+	
+	@Test
+	public void startFrameClearsHorizonTest()
+	{
+		HorizonOcclusionCuller culler = new HorizonOcclusionCuller();
+		culler.startFrame(CAMERA_X, CAMERA_Y, CAMERA_Z);
+		addRidge(culler);
+		Assert.assertTrue(culler.isOccluded(2048, 0, 256, 100));
+		
+		try
+		{
+			culler.addOccluder(0, 1024, 256, 100);
+			Assert.fail("occluders shouldn't be addable after checking for occlusion");
+		}
+		catch (IllegalStateException ignore) { }
+		
+		culler.startFrame(CAMERA_X, CAMERA_Y, CAMERA_Z);
+		Assert.assertEquals(0, culler.getOccluderCount());
+		Assert.assertFalse(culler.isOccluded(2048, 0, 256, 100));
+	}
+	
+	@Test
+	public void renderSourceHeightBoundsTest() throws Exception
+	{
+		int yOffset = -64;
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		try (ColumnRenderSource renderSource = ColumnRenderSource.getPooledRenderSource(pos, 2, yOffset, true))
+		{
+			Assert.assertEquals(Integer.MIN_VALUE, renderSource.getMaxBlockY());
+			Assert.assertEquals("empty columns can be seen through", Integer.MIN_VALUE, renderSource.getMinSurfaceBlockY());
+			
+			int stoneColor = ColorUtil.rgbToInt(255, 128, 128, 128);
+			int waterColor = ColorUtil.rgbToInt(128, 0, 0, 255);
+			for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+			{
+				for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+				{
+					renderSource.getVerticalDataPointView(x, z).set(0, RenderDataPointUtil.createDataPoint(100 + x, 0, stoneColor, 15, 0, IBlockStateWrapper.IrisBlockMaterial.STONE));
+				}
+			}
+			Assert.assertEquals(100 + ColumnRenderSource.SECTION_SIZE - 1 + yOffset, renderSource.getMaxBlockY());
+			Assert.assertEquals(100 + yOffset, renderSource.getMinSurfaceBlockY());
+			
+			// water above a lower seabed, only the seabed can hide anything
+			renderSource.getVerticalDataPointView(5, 5).set(0, RenderDataPointUtil.createDataPoint(300, 50, waterColor, 15, 0, IBlockStateWrapper.IrisBlockMaterial.WATER));
+			renderSource.getVerticalDataPointView(5, 5).set(1, RenderDataPointUtil.createDataPoint(50, 0, stoneColor, 15, 0, IBlockStateWrapper.IrisBlockMaterial.STONE));
+			Assert.assertEquals(300 + yOffset, renderSource.getMaxBlockY());
+			Assert.assertEquals(50 + yOffset, renderSource.getMinSurfaceBlockY());
+			
+			// water all the way down
+			renderSource.getVerticalDataPointView(5, 5).set(1, RenderDataPointUtil.EMPTY_DATA);
+			Assert.assertEquals(Integer.MIN_VALUE, renderSource.getMinSurfaceBlockY());
+			
+			// an overhang with air below it
+			renderSource.getVerticalDataPointView(5, 5).set(0, RenderDataPointUtil.createDataPoint(300, 250, stoneColor, 15, 0, IBlockStateWrapper.IrisBlockMaterial.STONE));
+			renderSource.getVerticalDataPointView(5, 5).set(1, RenderDataPointUtil.createDataPoint(100, 0, stoneColor, 15, 0, IBlockStateWrapper.IrisBlockMaterial.STONE));
+			Assert.assertEquals("the area below the overhang can be seen through", Integer.MIN_VALUE, renderSource.getMinSurfaceBlockY());
+			
+			// touching segments are still solid
+			renderSource.getVerticalDataPointView(5, 5).set(1, RenderDataPointUtil.createDataPoint(250, 0, stoneColor, 15, 0, IBlockStateWrapper.IrisBlockMaterial.STONE));
+			Assert.assertEquals(100 + yOffset, renderSource.getMinSurfaceBlockY());
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** a wall of tall sections running north/south, east of the camera */
+	private static void addRidge(HorizonOcclusionCuller culler)
+	{
+		for (int z = -4096; z < 4096; z += RIDGE_SECTION_WIDTH)
+		{
+			culler.addOccluder(RIDGE_MIN_X, z, RIDGE_SECTION_WIDTH, RIDGE_HEIGHT);
+		}
+	}
+	
+}
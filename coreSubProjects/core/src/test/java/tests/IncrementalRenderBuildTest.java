@@ -0,0 +1,296 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderEdge;
+import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
+import com.seibel.distanthorizons.core.dataObjects.render.columnViews.ColumnArrayView;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBufferBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.dataObjects.transformers.FullDataToRenderDataTransformer;
+import com.seibel.distanthorizons.core.enums.EDhDirection;
+import com.seibel.distanthorizons.core.level.IDhClientLevel;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.ChangedColumnUtil;
+import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Confirms incrementally rebuilt quads 
+ * are identical to a full rebuild,
+ * both with and without column tracking.
+ */
+public class IncrementalRenderBuildTest
+{
+	private static final int VERTICAL_SIZE = 2;
+	private static final int[] COLORS = new int[] { 0xFF00FF00, 0xFF0000FF, 0xFFFF0000, 0x80FFFFFF };
+	
+	static
+	{
+		TestStubs.bindMinecraftClientStub();
+	}
+	
+	
+	
+	@Test
+	public void changedColumnsMatchFullRebuildTest()
+	{
+		Random random = new Random(2048);
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		ColumnRenderSource renderSource = createRandomRenderSource(pos, random);
+		ColumnRenderSource[] adjacentRenderSources = createAdjacentRenderSources(pos, random);
+		
+		LodQuadBuilder previousQuads = buildUnmergedQuads(renderSource, adjacentRenderSources, null, null);
+		byte[] previousVertices = getMergedVertices(previousQuads);
+		
+		
+		// change a handful of columns, including the section's edges and corners
+		BitSet changedColumns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		int[][] columnsToChange = new int[][] { {0, 0}, {63, 63}, {0, 17}, {40, 63}, {12, 12}, {13, 12}, {30, 31} };
+		for (int[] column : columnsToChange)
+		{
+			setColumn(renderSource, column[0], column[1], 200, COLORS[3], 0);
+			changedColumns.set(ChangedColumnUtil.getIndex(column[0], column[1]));
+		}
+		
+		LodQuadBuilder incrementalQuads = buildUnmergedQuads(renderSource, adjacentRenderSources, previousQuads, ChangedColumnUtil.getColumnsToRebuild(changedColumns));
+		LodQuadBuilder fullQuads = buildUnmergedQuads(renderSource, adjacentRenderSources, null, null);
+		
+		Assert.assertArrayEquals("unmerged quads don't match", getVertices(fullQuads), getVertices(incrementalQuads));
+		
+		byte[] fullVertices = getMergedVertices(fullQuads);
+		Assert.assertArrayEquals("merged quads don't match", fullVertices, getMergedVertices(incrementalQuads));
+		
+		// normal builds don't track columns, but should still match
+		LodQuadBuilder untrackedQuads = buildQuads(renderSource, adjacentRenderSources, false);
+		untrackedQuads.finalizeData();
+		Assert.assertArrayEquals("untracked full build doesn't match", fullVertices, getVertices(untrackedQuads));
+		
+		Assert.assertFalse("changing columns should change the quads", Arrays.equals(previousVertices, fullVertices));
+	}
+	
+	@Test
+	public void adjacentEdgeChangeMatchesFullRebuildTest()
+	{
+		Random random = new Random(4096);
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 4, -3);
+		ColumnRenderSource renderSource = createRandomRenderSource(pos, random);
+		ColumnRenderSource[] adjacentRenderSources = createAdjacentRenderSources(pos, random);
+		
+		LodQuadBuilder previousQuads = buildUnmergedQuads(renderSource, adjacentRenderSources, null, null);
+		
+		
+		// change the west edge of the section to the east
+		ColumnRenderSource eastRenderSource = adjacentRenderSources[EDhDirection.EAST.ordinal() - 2];
+		BitSet eastChangedColumns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z += 3)
+		{
+			setColumn(eastRenderSource, 0, z, 250, COLORS[2], 0);
+			eastChangedColumns.set(ChangedColumnUtil.getIndex(0, z));
+		}
+		
+		// from the east section's perspective this section is to the west
+		BitSet changedColumns = ChangedColumnUtil.getAdjacentSectionChangedColumns(eastChangedColumns, EDhDirection.WEST);
+		Assert.assertEquals(eastChangedColumns.cardinality(), changedColumns.cardinality());
+		Assert.assertTrue(ChangedColumnUtil.isEdgeColumnSet(changedColumns, EDhDirection.EAST));
+		Assert.assertFalse(ChangedColumnUtil.isEdgeColumnSet(changedColumns, EDhDirection.WEST));
+		
+		// changes that don't touch the edge shouldn't affect the adjacent section
+		BitSet innerColumns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		innerColumns.set(ChangedColumnUtil.getIndex(1, 5));
+		Assert.assertTrue(ChangedColumnUtil.getAdjacentSectionChangedColumns(innerColumns, EDhDirection.WEST).isEmpty());
+		
+		
+		LodQuadBuilder incrementalQuads = buildUnmergedQuads(renderSource, adjacentRenderSources, previousQuads, ChangedColumnUtil.getColumnsToRebuild(changedColumns));
+		LodQuadBuilder fullQuads = buildUnmergedQuads(renderSource, adjacentRenderSources, null, null);
+		Assert.assertArrayEquals(getMergedVertices(fullQuads), getMergedVertices(incrementalQuads));
+	}
+	
+	@Test
+	public void edgeMatchesRenderSourceTest()
+	{
+		Random random = new Random(8192);
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 1, 1);
+		ColumnRenderSource renderSource = createRandomRenderSource(pos, random);
+		
+		ColumnRenderEdge[] edges = ColumnRenderEdge.createAllFromRenderSource(renderSource);
+		int maxIndex = ColumnRenderSource.SECTION_SIZE - 1;
+		for (int i = 0; i < ColumnRenderSource.SECTION_SIZE; i++)
+		{
+			assertColumnsEqual(renderSource.getVerticalDataPointView(i, 0), edges[EDhDirection.NORTH.ordinal() - 2].getVerticalDataPointView(i));
+			assertColumnsEqual(renderSource.getVerticalDataPointView(i, maxIndex), edges[EDhDirection.SOUTH.ordinal() - 2].getVerticalDataPointView(i));
+			assertColumnsEqual(renderSource.getVerticalDataPointView(0, i), edges[EDhDirection.WEST.ordinal() - 2].getVerticalDataPointView(i));
+			assertColumnsEqual(renderSource.getVerticalDataPointView(maxIndex, i), edges[EDhDirection.EAST.ordinal() - 2].getVerticalDataPointView(i));
+		}
+		
+		// only one column per edge position should be stored
+		Assert.assertEquals((long) ColumnRenderSource.SECTION_SIZE * VERTICAL_SIZE * Long.BYTES, edges[0].getSizeInBytes());
+		Assert.assertEquals(renderSource.getDataDetailLevel(), edges[0].getDataDetailLevel());
+	}
+	
+	@Test
+	public void parentChangedColumnsTest()
+	{
+		BitSet childColumns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		childColumns.set(ChangedColumnUtil.getIndex(0, 0));
+		childColumns.set(ChangedColumnUtil.getIndex(1, 1));
+		childColumns.set(ChangedColumnUtil.getIndex(63, 63));
+		
+		// the child at (-3, 2) is in the parent's positive X, negative Z quadrant
+		long childPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, -3, 2);
+		BitSet parentColumns = ChangedColumnUtil.getParentChangedColumns(childPos, childColumns);
+		
+		Assert.assertEquals(2, parentColumns.cardinality());
+		Assert.assertTrue(parentColumns.get(ChangedColumnUtil.getIndex(32, 0)));
+		Assert.assertTrue(parentColumns.get(ChangedColumnUtil.getIndex(63, 31)));
+	}
+	@Test
+	public void emptyFullDataTest()
+	{
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 2, 2);
+		FullDataSourceV2 emptyFullDataSource = FullDataSourceV2.createEmpty(pos);
+		Assert.assertTrue(emptyFullDataSource.isEmpty);
+		
+		int verticalSize = Config.Client.Advanced.Graphics.Quality.verticalQuality.get().calculateMaxVerticalData(emptyFullDataSource.getDataDetailLevel());
+		ColumnRenderSource renderSource = ColumnRenderSource.getPooledRenderSource(pos, verticalSize, 0, true);
+		renderSource.markNotEmpty();
+		setColumn(renderSource, 5, 5, 100, COLORS[0], 0);
+		
+		BitSet changedColumns = new BitSet(ChangedColumnUtil.COLUMN_COUNT);
+		changedColumns.set(ChangedColumnUtil.getIndex(5, 5));
+		
+		// the old terrain would keep rendering if the render source was re-used
+		Assert.assertFalse("removed data should require re-creating the render source",
+				FullDataToRenderDataTransformer.updateRenderSourceColumns(renderSource, emptyFullDataSource, TestStubs.createStub(IDhClientLevel.class), changedColumns));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static LodQuadBuilder buildUnmergedQuads(ColumnRenderSource renderSource, ColumnRenderSource[] adjacentRenderSources, LodQuadBuilder previousQuads, BitSet columnsToRebuild)
+	{
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null, true);
+		ColumnRenderBufferBuilder.makeLodRenderData(quadBuilder, renderSource, getAdjacentEdges(adjacentRenderSources), previousQuads, columnsToRebuild);
+		return quadBuilder;
+	}
+	
+	private static LodQuadBuilder buildQuads(ColumnRenderSource renderSource, ColumnRenderSource[] adjacentRenderSources, boolean trackColumns)
+	{
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null, trackColumns);
+		ColumnRenderBufferBuilder.makeLodRenderData(quadBuilder, renderSource, getAdjacentEdges(adjacentRenderSources), null, null);
+		return quadBuilder;
+	}
+	
+	/** the edges are re-created each time so any changes to the adjacent render sources are included */
+	private static ColumnRenderEdge[] getAdjacentEdges(ColumnRenderSource[] adjacentRenderSources)
+	{
+		ColumnRenderEdge[] adjacentEdges = new ColumnRenderEdge[EDhDirection.ADJ_DIRECTIONS.length];
+		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
+		{
+			int arrayIndex = direction.ordinal() - 2;
+			adjacentEdges[arrayIndex] = ColumnRenderEdge.createFromRenderSource(adjacentRenderSources[arrayIndex], direction.getOpposite());
+		}
+		return adjacentEdges;
+	}
+	
+	/** merges a copy of the given builder so the original can still be used for incremental builds */
+	private static byte[] getMergedVertices(LodQuadBuilder quadBuilder)
+	{
+		LodQuadBuilder mergedQuads = quadBuilder.createUnmergedCopy();
+		mergedQuads.finalizeData();
+		return getVertices(mergedQuads);
+	}
+	
+	private static byte[] getVertices(LodQuadBuilder quadBuilder)
+	{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		writeBuffers(quadBuilder.makeOpaqueVertexBuffers(), outputStream);
+		writeBuffers(quadBuilder.makeTransparentVertexBuffers(), outputStream);
+		return outputStream.toByteArray();
+	}
+	private static void writeBuffers(Iterator<ByteBuffer> bufferIterator, ByteArrayOutputStream outputStream)
+	{
+		while (bufferIterator.hasNext())
+		{
+			ByteBuffer buffer = bufferIterator.next();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			outputStream.write(bytes, 0, bytes.length);
+		}
+	}
+	
+	private static void assertColumnsEqual(ColumnArrayView expected, ColumnArrayView actual)
+	{
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			Assert.assertEquals(expected.get(i), actual.get(i));
+		}
+	}
+	
+	private static ColumnRenderSource[] createAdjacentRenderSources(long pos, Random random)
+	{
+		ColumnRenderSource[] adjacentRenderSources = new ColumnRenderSource[EDhDirection.ADJ_DIRECTIONS.length];
+		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
+		{
+			adjacentRenderSources[direction.ordinal() - 2] = createRandomRenderSource(DhSectionPos.getAdjacentPos(pos, direction), random);
+		}
+		return adjacentRenderSources;
+	}
+	
+	private static ColumnRenderSource createRandomRenderSource(long pos, Random random)
+	{
+		ColumnRenderSource renderSource = ColumnRenderSource.getPooledRenderSource(pos, VERTICAL_SIZE, 0, true);
+		renderSource.markNotEmpty();
+		
+		for (int x = 0; x < ColumnRenderSource.SECTION_SIZE; x++)
+		{
+			for (int z = 0; z < ColumnRenderSource.SECTION_SIZE; z++)
+			{
+				// small height and color ranges so plenty of quads can be merged
+				int height = 60 + random.nextInt(4);
+				int color = COLORS[random.nextInt(3)];
+				setColumn(renderSource, x, z, height, color, random.nextInt(2));
+			}
+		}
+		
+		return renderSource;
+	}
+	
+	private static void setColumn(ColumnRenderSource renderSource, int relX, int relZ, int height, int color, int blockLight)
+	{
+		renderSource.getVerticalDataPointView(relX, relZ).set(0, RenderDataPointUtil.createDataPoint(height, 0, color, 15, blockLight, IBlockStateWrapper.IrisBlockMaterial.STONE));
+	}
+	
+}
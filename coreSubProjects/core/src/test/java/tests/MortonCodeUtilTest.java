@@ -0,0 +1,214 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.sql.DatabaseUpdater;
+import com.seibel.distanthorizons.core.util.MortonCodeUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * Validates {@link MortonCodeUtil} and the database script that uses the same encoding.
+ */
+public class MortonCodeUtilTest
+{
+	public static String DATABASE_TYPE = "jdbc:sqlite";
+	
+	private static final int MIN_POS = -MortonCodeUtil.COORDINATE_OFFSET;
+	private static final int MAX_POS = MortonCodeUtil.COORDINATE_OFFSET - 1;
+	
+	
+	
+	@Test
+	public void encodeTest()
+	{
+		Assert.assertEquals(0, MortonCodeUtil.encode(MIN_POS, MIN_POS));
+		Assert.assertTrue(MortonCodeUtil.encode(MAX_POS, MAX_POS) > 0);
+		
+		// X is in the lower bit
+		long origin = MortonCodeUtil.encode(0, 0);
+		Assert.assertEquals(origin + 1, MortonCodeUtil.encode(1, 0));
+		Assert.assertEquals(origin + 2, MortonCodeUtil.encode(0, 1));
+		Assert.assertEquals(origin + 3, MortonCodeUtil.encode(1, 1));
+		
+		Random random = new Random(1234);
+		for (int i = 0; i < 1000; i++)
+		{
+			int x = random.nextInt(MAX_POS - MIN_POS) + MIN_POS;
+			int z = random.nextInt(MAX_POS - MIN_POS) + MIN_POS;
+			long code = MortonCodeUtil.encode(x, z);
+			
+			Assert.assertTrue(code >= 0);
+			Assert.assertEquals(x, MortonCodeUtil.decodeX(code));
+			Assert.assertEquals(z, MortonCodeUtil.decodeZ(code));
+		}
+	}
+	
+	@Test
+	public void exactRangeTest()
+	{
+		int minX = -5, minZ = -3;
+		int maxX = 6, maxZ = 9;
+		
+		LongArrayList ranges = MortonCodeUtil.getRanges(minX, minZ, maxX, maxZ, Integer.MAX_VALUE);
+		assertSortedRanges(ranges);
+		
+		// with no range limit exactly the requested positions should be included
+		long includedCount = 0;
+		for (int i = 0; i < ranges.size(); i += 2)
+		{
+			for (long code = ranges.getLong(i); code <= ranges.getLong(i + 1); code++)
+			{
+				int x = MortonCodeUtil.decodeX(code);
+				int z = MortonCodeUtil.decodeZ(code);
+				Assert.assertTrue(x >= minX && x <= maxX);
+				Assert.assertTrue(z >= minZ && z <= maxZ);
+				includedCount++;
+			}
+		}
+		Assert.assertEquals((maxX - minX + 1) * (maxZ - minZ + 1), includedCount);
+		
+		// an aligned square should be a single range
+		Assert.assertEquals(2, MortonCodeUtil.getRanges(32, -64, 63, -33, 1).size());
+		Assert.assertEquals(0, MortonCodeUtil.getRanges(1, 0, 0, 0, 1).size());
+	}
+	
+	@Test
+	public void limitedRangeTest()
+	{
+		int minX = -1000, minZ = 17;
+		int maxX = 533, maxZ = 2049;
+		
+		int maxRangeCount = 8;
+		LongArrayList ranges = MortonCodeUtil.getRanges(minX, minZ, maxX, maxZ, maxRangeCount);
+		Assert.assertTrue(ranges.size() / 2 <= maxRangeCount);
+		assertSortedRanges(ranges);
+		
+		// every requested position should be included
+		Random random = new Random(1234);
+		for (int i = 0; i < 1000; i++)
+		{
+			int x = random.nextInt(maxX - minX + 1) + minX;
+			int z = random.nextInt(maxZ - minZ + 1) + minZ;
+			long code = MortonCodeUtil.encode(x, z);
+			
+			boolean found = false;
+			for (int rangeIndex = 0; rangeIndex < ranges.size(); rangeIndex += 2)
+			{
+				if (code >= ranges.getLong(rangeIndex) && code <= ranges.getLong(rangeIndex + 1))
+				{
+					found = true;
+					break;
+				}
+			}
+			Assert.assertTrue("position ["+x+","+z+"] missing", found);
+		}
+	}
+	
+	/** the migration script has to calculate the same key as the Java code */
+	@Test
+	public void migrationScriptTest() throws Exception
+	{
+		String databaseLocation = "mortonMigrationTest.sqlite";
+		File dbFile = new File(databaseLocation);
+		if (dbFile.exists())
+		{
+			Assert.assertTrue("unable to delete old test DB File.", dbFile.delete());
+		}
+		
+		
+		int[][] positions = new int[][] { { 0, 0 }, { -1, 1 }, { MIN_POS, MAX_POS }, { MAX_POS, MIN_POS }, { 12345, -67890 } };
+		try (Connection connection = DriverManager.getConnection(DATABASE_TYPE + ":" + databaseLocation);
+			Statement statement = connection.createStatement())
+		{
+			// the table as it existed before the migration
+			statement.execute(
+					"CREATE TABLE FullData ( " +
+					"DetailLevel TINYINT NOT NULL, PosX INT NOT NULL, PosZ INT NOT NULL, MinY INT NOT NULL, DataChecksum INT NOT NULL, " +
+					"Data BLOB NULL, ColumnGenerationStep BLOB NULL, ColumnWorldCompressionMode BLOB NULL, Mapping BLOB NULL, " +
+					"DataFormatVersion TINYINT NULL, CompressionMode TINYINT NULL, ApplyToParent BIT NULL, " +
+					"LastModifiedUnixDateTime BIGINT NOT NULL, CreatedUnixDateTime BIGINT NOT NULL, MinColumnGenerationStep TINYINT NULL, " +
+					"PRIMARY KEY (DetailLevel, PosX, PosZ));");
+			statement.execute("create index FullDataUpdatedIndex on FullData (ApplyToParent) where ApplyToParent = 1");
+			for (int[] pos : positions)
+			{
+				statement.execute("INSERT INTO FullData (DetailLevel, PosX, PosZ, MinY, DataChecksum, ApplyToParent, LastModifiedUnixDateTime, CreatedUnixDateTime) " +
+						"VALUES (2, " + pos[0] + ", " + pos[1] + ", 0, 0, 1, 0, 0);");
+			}
+			
+			
+			String script;
+			try (InputStream scriptStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("sqlScripts/0070-sqlite-mortonOrderFullData.sql");
+				Scanner scanner = new Scanner(scriptStream).useDelimiter("\\A"))
+			{
+				script = scanner.next();
+			}
+			for (String sql : script.split(DatabaseUpdater.UPDATE_SCRIPT_BATCH_SEPARATOR))
+			{
+				statement.execute(sql);
+			}
+			
+			
+			int rowCount = 0;
+			try (ResultSet resultSet = statement.executeQuery("SELECT PosX, PosZ, MortonKey FROM FullData WHERE DetailLevel = 2 AND ApplyToParent = 1"))
+			{
+				while (resultSet.next())
+				{
+					Assert.assertEquals(MortonCodeUtil.encode(resultSet.getInt("PosX"), resultSet.getInt("PosZ")), resultSet.getLong("MortonKey"));
+					rowCount++;
+				}
+			}
+			Assert.assertEquals(positions.length, rowCount);
+		}
+		
+		Assert.assertTrue("Unable to delete test database.", dbFile.delete());
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static void assertSortedRanges(LongArrayList ranges)
+	{
+		Assert.assertEquals(0, ranges.size() % 2);
+		for (int i = 0; i < ranges.size(); i += 2)
+		{
+			Assert.assertTrue(ranges.getLong(i) <= ranges.getLong(i + 1));
+			if (i > 0)
+			{
+				// ranges that touch should have been merged
+				Assert.assertTrue(ranges.getLong(i - 1) + 1 < ranges.getLong(i));
+			}
+		}
+	}
+	
+}
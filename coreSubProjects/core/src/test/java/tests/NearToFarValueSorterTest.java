@@ -0,0 +1,155 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.pos.DhBlockPos2D;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.util.objects.quadTree.NearToFarValueSorter;
+import com.seibel.distanthorizons.core.util.objects.quadTree.QuadTree;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+public class NearToFarValueSorterTest
+{
+	private static final int TREE_WIDTH_IN_BLOCKS = 4096;
+	private static final byte TREE_MAX_DETAIL_LEVEL = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+	
+	
+	
+	@Test
+	public void onlySortsWhenChangedTest()
+	{
+		QuadTree<Long> tree = new QuadTree<>(TREE_WIDTH_IN_BLOCKS, DhBlockPos2D.ZERO, TREE_MAX_DETAIL_LEVEL);
+		NearToFarValueSorter<Long> sorter = new NearToFarValueSorter<>(Long::longValue, Long[]::new);
+		
+		Assert.assertTrue("first update should always sort", sorter.update(tree));
+		Assert.assertEquals(0, sorter.getNearToFarSnapshot().length);
+		Assert.assertFalse("nothing changed", sorter.update(tree));
+		
+		long pos = DhSectionPos.encode(TREE_MAX_DETAIL_LEVEL, 1, 1);
+		tree.setValue(pos, pos);
+		Assert.assertTrue("value added", sorter.update(tree));
+		Assert.assertEquals(1, sorter.getNearToFarSnapshot().length);
+		
+		// moving inside the same highest detail section shouldn't re-sort
+		tree.setCenterBlockPos(new DhBlockPos2D(10, 10));
+		Assert.assertFalse("center moved within the same section", sorter.update(tree));
+		
+		tree.setCenterBlockPos(new DhBlockPos2D(100, 10));
+		Assert.assertTrue("center moved to a different section", sorter.update(tree));
+		
+		tree.setValue(pos, null);
+		Assert.assertTrue("value removed", sorter.update(tree));
+		Assert.assertEquals(0, sorter.getNearToFarSnapshot().length);
+	}
+	
+	@Test
+	public void randomChangesStaySortedTest()
+	{
+		QuadTree<Long> tree = new QuadTree<>(TREE_WIDTH_IN_BLOCKS, DhBlockPos2D.ZERO, TREE_MAX_DETAIL_LEVEL);
+		NearToFarValueSorter<Long> sorter = new NearToFarValueSorter<>(Long::longValue, Long[]::new);
+		Random random = new Random(1234L);
+		
+		for (int i = 0; i < 500; i++)
+		{
+			int operation = random.nextInt(100);
+			if (operation < 60)
+			{
+				// add a few values, sometimes enough to sort from scratch
+				int addCount = (random.nextInt(10) == 0) ? 200 : random.nextInt(8);
+				for (int j = 0; j < addCount; j++)
+				{
+					byte detailLevel = (byte) (TREE_MAX_DETAIL_LEVEL + random.nextInt(tree.treeMinDetailLevel - TREE_MAX_DETAIL_LEVEL + 1));
+					DhBlockPos2D center = tree.getCenterBlockPos();
+					int blockX = center.x - (TREE_WIDTH_IN_BLOCKS / 2) + random.nextInt(TREE_WIDTH_IN_BLOCKS);
+					int blockZ = center.z - (TREE_WIDTH_IN_BLOCKS / 2) + random.nextInt(TREE_WIDTH_IN_BLOCKS);
+					long pos = DhSectionPos.encode(detailLevel, blockX >> detailLevel, blockZ >> detailLevel);
+					if (tree.isSectionPosInBounds(pos))
+					{
+						tree.setValue(pos, pos);
+					}
+				}
+			}
+			else if (operation < 75)
+			{
+				// remove some values
+				ArrayList<Long> values = new ArrayList<>();
+				tree.forEachValue(values::add);
+				if (!values.isEmpty())
+				{
+					long pos = values.get(random.nextInt(values.size()));
+					tree.deleteAllChildren(pos, null);
+					if (tree.isSectionPosInBounds(pos))
+					{
+						tree.setValue(pos, null);
+					}
+				}
+			}
+			else if (operation < 95)
+			{
+				// walk a short distance
+				DhBlockPos2D center = tree.getCenterBlockPos();
+				tree.setCenterBlockPos(new DhBlockPos2D(center.x + random.nextInt(129) - 64, center.z + random.nextInt(129) - 64));
+			}
+			else
+			{
+				// teleport
+				tree.setCenterBlockPos(new DhBlockPos2D(random.nextInt(20_000) - 10_000, random.nextInt(20_000) - 10_000));
+			}
+			
+			sorter.update(tree);
+			assertSnapshotMatchesTree(tree, sorter.getNearToFarSnapshot());
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static void assertSnapshotMatchesTree(QuadTree<Long> tree, Long[] snapshot)
+	{
+		Set<Long> expectedValues = Collections.newSetFromMap(new IdentityHashMap<>());
+		tree.forEachValue(expectedValues::add);
+		
+		Assert.assertEquals("incorrect value count", expectedValues.size(), snapshot.length);
+		
+		DhBlockPos2D treeCenterPos = tree.getCenterBlockPos();
+		DhBlockPos2D sortCenterPos = NearToFarValueSorter.getSortCenterPos(treeCenterPos.x >> TREE_MAX_DETAIL_LEVEL, treeCenterPos.z >> TREE_MAX_DETAIL_LEVEL, TREE_MAX_DETAIL_LEVEL);
+		
+		int lastDistance = -1;
+		for (Long value : snapshot)
+		{
+			Assert.assertTrue("snapshot contains a value that isn't in the tree: " + DhSectionPos.toString(value), expectedValues.contains(value));
+			
+			int distance = DhSectionPos.getManhattanBlockDistance(value, sortCenterPos);
+			Assert.assertTrue("values aren't sorted near to far", lastDistance <= distance);
+			lastDistance = distance;
+		}
+	}
+	
+}
@@ -0,0 +1,246 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.AbstractDataSourceHandler;
+import com.seibel.distanthorizons.core.jar.JarDependencySetup;
+import com.seibel.distanthorizons.core.jar.lodDatabase.ParentLodRebuilder;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.OfflineWrapperFactory;
+import com.seibel.distanthorizons.core.jar.wrapperInterfaces.world.OfflineLevelWrapper;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Validates {@link ParentLodRebuilder} and the offline wrappers used by the standalone jar.
+ */
+public class ParentLodRebuilderTest
+{
+	public static String DATABASE_TYPE = "jdbc:sqlite";
+	
+	private static final byte CHILD_DETAIL_LEVEL = DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+	private static final byte PARENT_DETAIL_LEVEL = CHILD_DETAIL_LEVEL + 1;
+	
+	private static final String STONE = "minecraft:stone_STATE_{}";
+	private static final String DIRT = "minecraft:dirt_STATE_{}";
+	private static final String SAND = "minecraft:sand_STATE_{}";
+	
+	static
+	{
+		// data mappings can't be deserialized without a wrapper factory
+		JarDependencySetup.createOfflineLodBindings();
+	}
+	
+	
+	
+	@Test
+	public void rebuildTest() throws Exception
+	{
+		String databaseLocation = "parentLodRebuilderTest.sqlite";
+		deleteFile(new File(databaseLocation));
+		
+		
+		FullDataSourceV2Repo repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			// a 4x4 area of children, which should create 4 complete parents
+			for (int x = 0; x < 4; x++)
+			{
+				for (int z = 0; z < 4; z++)
+				{
+					repo.save(createDto(DhSectionPos.encode(CHILD_DETAIL_LEVEL, x, z), ((x + z) % 2 == 0) ? STONE : DIRT));
+				}
+			}
+			
+			// a lone child whose parent already has older data
+			long loneChildPos = DhSectionPos.encode(CHILD_DETAIL_LEVEL, 10, 10);
+			repo.save(createDto(loneChildPos, STONE));
+			repo.save(createDto(DhSectionPos.getParentPos(loneChildPos), SAND));
+			
+			
+			ParentLodRebuilder rebuilder = new ParentLodRebuilder(repo, OfflineLevelWrapper.INSTANCE, 4);
+			List<ParentLodRebuilder.LevelStatistics> statisticsList = rebuilder.rebuild();
+			
+			Assert.assertEquals(AbstractDataSourceHandler.TOP_SECTION_DETAIL_LEVEL - CHILD_DETAIL_LEVEL, statisticsList.size());
+			Assert.assertEquals(17, statisticsList.get(0).childCount);
+			Assert.assertEquals(5, statisticsList.get(0).rebuiltParentCount.get());
+			for (ParentLodRebuilder.LevelStatistics statistics : statisticsList)
+			{
+				Assert.assertEquals(0, statistics.failedParentCount.get());
+				Assert.assertTrue(statistics.rebuiltParentCount.get() > 0);
+			}
+			Assert.assertEquals(1, statisticsList.get(statisticsList.size() - 1).rebuiltParentCount.get());
+			Assert.assertFalse(rebuilder.getBuildNanoTimeByRegionPos().isEmpty());
+			
+			// nothing should be left to propagate
+			Assert.assertTrue(repo.getPositionsToUpdate(100).isEmpty());
+			Assert.assertNotNull(repo.getByKey(DhSectionPos.encode(AbstractDataSourceHandler.TOP_SECTION_DETAIL_LEVEL, 0, 0)));
+			
+			
+			// each quadrant should come from its child
+			try (FullDataSourceV2 parent = repo.getByKey(DhSectionPos.encode(PARENT_DETAIL_LEVEL, 0, 0)).createPooledDataSource(OfflineLevelWrapper.INSTANCE))
+			{
+				Assert.assertEquals(STONE, getBlockSerial(parent, 0, 0));
+				Assert.assertEquals(DIRT, getBlockSerial(parent, FullDataSourceV2.WIDTH - 1, 0));
+				Assert.assertEquals(DIRT, getBlockSerial(parent, 0, FullDataSourceV2.WIDTH - 1));
+				Assert.assertEquals(STONE, getBlockSerial(parent, FullDataSourceV2.WIDTH - 1, FullDataSourceV2.WIDTH - 1));
+			}
+			
+			// quadrants without a child should keep their old data
+			try (FullDataSourceV2 parent = repo.getByKey(DhSectionPos.getParentPos(loneChildPos)).createPooledDataSource(OfflineLevelWrapper.INSTANCE))
+			{
+				Assert.assertEquals(STONE, getBlockSerial(parent, 0, 0));
+				Assert.assertEquals(SAND, getBlockSerial(parent, FullDataSourceV2.WIDTH - 1, 0));
+			}
+			
+			
+			// statistics
+			List<FullDataSourceV2Repo.SizeStatistics> levelSizeList = repo.getSizeStatisticsByDetailLevel();
+			Assert.assertEquals(AbstractDataSourceHandler.TOP_SECTION_DETAIL_LEVEL - CHILD_DETAIL_LEVEL + 1, levelSizeList.size());
+			Assert.assertEquals(CHILD_DETAIL_LEVEL, levelSizeList.get(0).sectionDetailLevel);
+			Assert.assertEquals(17, levelSizeList.get(0).rowCount);
+			Assert.assertTrue(levelSizeList.get(0).dataByteCount > 0);
+			Assert.assertTrue(levelSizeList.get(0).totalByteCount > levelSizeList.get(0).dataByteCount);
+			
+			// the lone child is in region (1,1) along with its parents up to detail level 9
+			List<FullDataSourceV2Repo.SizeStatistics> regionSizeList = repo.getSizeStatisticsByRegion(20);
+			Assert.assertEquals(2, regionSizeList.size());
+			Assert.assertEquals(0, regionSizeList.get(0).regionX);
+			Assert.assertEquals(0, regionSizeList.get(0).regionZ);
+			Assert.assertEquals(28, regionSizeList.get(0).rowCount);
+			Assert.assertEquals(1, regionSizeList.get(1).regionX);
+			Assert.assertEquals(1, regionSizeList.get(1).regionZ);
+			Assert.assertEquals(4, regionSizeList.get(1).rowCount);
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		deleteFile(new File(databaseLocation));
+	}
+	
+	@Test
+	public void rebuildInBatchesTest() throws Exception
+	{
+		String databaseLocation = "parentLodRebuilderBatchTest.sqlite";
+		deleteFile(new File(databaseLocation));
+		
+		
+		FullDataSourceV2Repo repo = new FullDataSourceV2Repo(DATABASE_TYPE, databaseLocation);
+		try
+		{
+			// more parents than a single thread's batch
+			int width = 12;
+			for (int x = 0; x < width; x++)
+			{
+				for (int z = 0; z < width; z++)
+				{
+					repo.save(createDto(DhSectionPos.encode(CHILD_DETAIL_LEVEL, x, z), STONE));
+				}
+			}
+			
+			// children without any data shouldn't leave their parent's old data behind
+			long emptyParentPos = DhSectionPos.encode(PARENT_DETAIL_LEVEL, 10, 10);
+			for (int i = 0; i < 4; i++)
+			{
+				FullDataSourceV2 emptyChild = FullDataSourceV2.createEmpty(DhSectionPos.getChildByIndex(emptyParentPos, i));
+				emptyChild.levelMinY = -64;
+				repo.save(FullDataSourceV2DTO.CreateFromDataSource(emptyChild, EDhApiDataCompressionMode.LZ4));
+			}
+			repo.save(createDto(emptyParentPos, SAND));
+			
+			
+			ParentLodRebuilder rebuilder = new ParentLodRebuilder(repo, OfflineLevelWrapper.INSTANCE, 1);
+			List<ParentLodRebuilder.LevelStatistics> statisticsList = rebuilder.rebuild();
+			Assert.assertEquals((width / 2) * (width / 2) + 1, statisticsList.get(0).rebuiltParentCount.get());
+			Assert.assertEquals(0, statisticsList.get(0).failedParentCount.get());
+			
+			try (FullDataSourceV2 parent = repo.getByKey(emptyParentPos).createPooledDataSource(OfflineLevelWrapper.INSTANCE))
+			{
+				LongArrayList dataColumn = parent.get(0, 0);
+				Assert.assertTrue(dataColumn == null || dataColumn.isEmpty());
+			}
+			
+			// running again should re-write every parent, even though nothing changed
+			statisticsList = new ParentLodRebuilder(repo, OfflineLevelWrapper.INSTANCE, 1).rebuild();
+			Assert.assertEquals((width / 2) * (width / 2) + 1, statisticsList.get(0).rebuiltParentCount.get());
+		}
+		finally
+		{
+			repo.close();
+		}
+		
+		deleteFile(new File(databaseLocation));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** creates a data source where every column is the given block */
+	private static FullDataSourceV2DTO createDto(long pos, String blockSerial) throws Exception
+	{
+		OfflineWrapperFactory wrapperFactory = OfflineWrapperFactory.INSTANCE;
+		
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(pos);
+		int id = dataSource.mapping.addIfNotPresentAndGetId(
+				wrapperFactory.deserializeBiomeWrapper("minecraft:plains", OfflineLevelWrapper.INSTANCE),
+				wrapperFactory.deserializeBlockStateWrapper(blockSerial, OfflineLevelWrapper.INSTANCE));
+		
+		for (int i = 0; i < dataSource.dataPoints.length; i++)
+		{
+			LongArrayList dataColumn = new LongArrayList();
+			dataColumn.add(FullDataPointUtil.encode(id, 10, 64, (byte) 0, (byte) 15));
+			dataSource.dataPoints[i] = dataColumn;
+			dataSource.columnGenerationSteps[i] = (byte) 1;
+		}
+		dataSource.levelMinY = -64;
+		dataSource.applyToParent = true;
+		
+		return FullDataSourceV2DTO.CreateFromDataSource(dataSource, EDhApiDataCompressionMode.LZ4);
+	}
+	
+	private static String getBlockSerial(FullDataSourceV2 dataSource, int relX, int relZ)
+	{
+		long dataPoint = dataSource.get(relX, relZ).getLong(0);
+		return dataSource.mapping.getBlockStateWrapper(FullDataPointUtil.getId(dataPoint)).getSerialString();
+	}
+	
+	private static void deleteFile(File file)
+	{
+		if (file.exists())
+		{
+			Assert.assertTrue("unable to delete test file [" + file + "].", file.delete());
+		}
+	}
+	
+}
@@ -34,8 +34,11 @@ import org.apache.logging.log4j.core.config.Configurator;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class QuadTreeTest
@@ -322,7 +325,7 @@ public class QuadTreeTest
 			QuadNode<Integer> leafNode = leafNodeIterator.next();
 			
 			leafCount++;
-			leafValueSum += leafNode.value;
+			leafValueSum += leafNode.getValue();
 		}
 		Assert.assertEquals("incorrect leaf count", 5, leafCount);
 		Assert.assertEquals("incorrect leaf value sum", 20, leafValueSum);
@@ -359,7 +362,7 @@ public class QuadTreeTest
 		while (iterator.hasNext())
 		{
 			QuadNode<Integer> node = iterator.next();
-			if (node.value != null)
+			if (node.getValue() != null)
 			{
 				populatedValueCount++;
 			}
@@ -388,7 +391,7 @@ public class QuadTreeTest
 		while (leafIterator.hasNext())
 		{
 			QuadNode<Integer> node = leafIterator.next();
-			if (node.value != null)
+			if (node.getValue() != null)
 			{
 				populatedLeafCount++;
 			}
@@ -759,6 +762,175 @@ public class QuadTreeTest
 		
 	}
 	
+	@Test
+	public void forEachMatchesIteratorsTest()
+	{
+		AbstractTestTreeParams treeParams = new LargeTestTree();
+		QuadTree<Integer> tree = new QuadTree<>(treeParams.getWidthInBlocks(), treeParams.getPositiveEdgeCenterPos(), LodUtil.BLOCK_DETAIL_LEVEL);
+		
+		testSet(tree, DhSectionPos.encode((byte) 10, 0, 0), 1);
+		testSet(tree, DhSectionPos.encode((byte) 10, 1, 0), 2);
+		testSet(tree, DhSectionPos.encode((byte) 9, 0, 0), 3);
+		testSet(tree, DhSectionPos.encode((byte) 9, 1, 0), 4);
+		testSet(tree, DhSectionPos.encode((byte) 9, 0, 1), 5);
+		testSet(tree, DhSectionPos.encode((byte) 9, 1, 1), null);
+		testSet(tree, DhSectionPos.encode((byte) 0, 100, 3), 6);
+		
+		assertForEachMatchesIterators(tree);
+		
+		ArrayList<Long> leafPosList = new ArrayList<>();
+		tree.forEachLeaf(leafPosList::add);
+		Assert.assertEquals("incorrect leaf count", 5, leafPosList.size());
+		Assert.assertEquals("incorrect leaf count", 5, tree.leafNodeCount());
+		Assert.assertEquals("incorrect value count", 6, tree.count());
+	}
+	
+	/** 
+	 * Randomly sets values, deletes children and moves the tree, 
+	 * comparing the result against a simple map of the values that should be present.
+	 */
+	@Test
+	public void randomOperationsMatchReferenceTest()
+	{
+		AbstractTestTreeParams treeParams = new MediumTestTree();
+		int treeWidth = treeParams.getWidthInBlocks();
+		QuadTree<Integer> tree = new QuadTree<>(treeWidth, DhBlockPos2D.ZERO, LodUtil.BLOCK_DETAIL_LEVEL);
+		
+		HashMap<Long, Integer> expectedValueByPos = new HashMap<>();
+		Random random = new Random(1234L);
+		int nextValue = 0;
+		
+		for (int i = 0; i < 5_000; i++)
+		{
+			int operation = random.nextInt(100);
+			if (operation < 85)
+			{
+				// set a random in bounds position
+				byte detailLevel = (byte) random.nextInt(tree.treeMinDetailLevel + 1);
+				DhBlockPos2D center = tree.getCenterBlockPos();
+				int blockX = center.x - (treeWidth / 2) + random.nextInt(treeWidth);
+				int blockZ = center.z - (treeWidth / 2) + random.nextInt(treeWidth);
+				long pos = DhSectionPos.encode(detailLevel, blockX >> detailLevel, blockZ >> detailLevel);
+				
+				Integer value = (random.nextInt(5) == 0) ? null : nextValue++;
+				Integer previousValue = tree.setValue(pos, value);
+				Assert.assertEquals("incorrect previous value", expectedValueByPos.get(pos), previousValue);
+				
+				if (value != null)
+				{
+					expectedValueByPos.put(pos, value);
+				}
+				else
+				{
+					expectedValueByPos.remove(pos);
+				}
+			}
+			else if (operation < 95)
+			{
+				// delete the children of an existing position
+				if (expectedValueByPos.isEmpty())
+				{
+					continue;
+				}
+				
+				ArrayList<Long> existingPosList = new ArrayList<>(expectedValueByPos.keySet());
+				existingPosList.sort(null);
+				long parentPos = existingPosList.get(random.nextInt(existingPosList.size()));
+				
+				HashSet<Integer> removedValues = new HashSet<>();
+				tree.deleteAllChildren(parentPos, (value) ->
+				{
+					if (value != null)
+					{
+						removedValues.add(value);
+					}
+				});
+				
+				HashSet<Integer> expectedRemovedValues = new HashSet<>();
+				expectedValueByPos.entrySet().removeIf((entry) ->
+				{
+					long pos = entry.getKey();
+					if (pos != parentPos && DhSectionPos.getDetailLevel(pos) < DhSectionPos.getDetailLevel(parentPos) && DhSectionPos.contains(parentPos, pos))
+					{
+						expectedRemovedValues.add(entry.getValue());
+						return true;
+					}
+					return false;
+				});
+				Assert.assertEquals("incorrect values removed with children", expectedRemovedValues, removedValues);
+			}
+			else
+			{
+				// move the tree
+				DhBlockPos2D center = tree.getCenterBlockPos();
+				DhBlockPos2D newCenter = new DhBlockPos2D(center.x + random.nextInt(treeWidth) - (treeWidth / 2), center.z + random.nextInt(treeWidth) - (treeWidth / 2));
+				
+				HashSet<Integer> removedValues = new HashSet<>();
+				tree.setCenterBlockPos(newCenter, (value) ->
+				{
+					if (value != null)
+					{
+						removedValues.add(value);
+					}
+				});
+				
+				// only values with a root outside the new grid should be removed
+				int rootGridMinX = BitShiftUtil.divideByPowerOfTwo(newCenter.x, tree.treeMinDetailLevel) - tree.ringListHalfWidth();
+				int rootGridMinZ = BitShiftUtil.divideByPowerOfTwo(newCenter.z, tree.treeMinDetailLevel) - tree.ringListHalfWidth();
+				HashSet<Integer> expectedRemovedValues = new HashSet<>();
+				expectedValueByPos.entrySet().removeIf((entry) ->
+				{
+					long rootPos = DhSectionPos.convertToDetailLevel(entry.getKey(), tree.treeMinDetailLevel);
+					int rootX = DhSectionPos.getX(rootPos) - rootGridMinX;
+					int rootZ = DhSectionPos.getZ(rootPos) - rootGridMinZ;
+					if (rootX < 0 || rootX >= tree.ringListWidth() || rootZ < 0 || rootZ >= tree.ringListWidth())
+					{
+						expectedRemovedValues.add(entry.getValue());
+						return true;
+					}
+					return false;
+				});
+				Assert.assertEquals("incorrect values removed when moving", expectedRemovedValues, removedValues);
+			}
+			
+			
+			Assert.assertEquals("incorrect value count", expectedValueByPos.size(), tree.count());
+			if (i % 250 == 0)
+			{
+				for (long pos : expectedValueByPos.keySet())
+				{
+					if (tree.isSectionPosInBounds(pos))
+					{
+						Assert.assertEquals("incorrect value at [" + DhSectionPos.toString(pos) + "]", expectedValueByPos.get(pos), tree.getValue(pos));
+					}
+				}
+				assertForEachMatchesIterators(tree);
+			}
+		}
+	}
+	private static void assertForEachMatchesIterators(QuadTree<Integer> tree)
+	{
+		ArrayList<Integer> iteratedValues = new ArrayList<>();
+		Iterator<QuadNode<Integer>> nodeIterator = tree.nodeIterator();
+		while (nodeIterator.hasNext())
+		{
+			Integer value = nodeIterator.next().getValue();
+			if (value != null)
+			{
+				iteratedValues.add(value);
+			}
+		}
+		ArrayList<Integer> forEachValues = new ArrayList<>();
+		tree.forEachValue(forEachValues::add);
+		Assert.assertEquals("forEachValue order doesn't match the node iterator", iteratedValues, forEachValues);
+		
+		ArrayList<Long> iteratedLeafPositions = new ArrayList<>();
+		tree.leafNodeIterator().forEachRemaining((node) -> iteratedLeafPositions.add(node.sectionPos));
+		ArrayList<Long> forEachLeafPositions = new ArrayList<>();
+		tree.forEachLeaf(forEachLeafPositions::add);
+		Assert.assertEquals("forEachLeaf order doesn't match the leaf iterator", iteratedLeafPositions, forEachLeafPositions);
+	}
+	
 	// removing out of bound nodes is only partially implemented
 	// if a root node is removed from the tree, those nodes will be removed,
 	// but if the root node is still in bounds, but some of the children aren't,
@@ -0,0 +1,364 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.VertexStagingBufferPool;
+import com.seibel.distanthorizons.core.file.renderCache.RenderDataCache;
+import com.seibel.distanthorizons.core.file.renderCache.RenderDataRegionFile;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Confirms {@link RenderDataCache} returns the same vertex data
+ * that was saved and ignores out of date entries.
+ */
+public class RenderDataCacheTest
+{
+	private static final long MAX_BYTE_SIZE = 64L * 1024L * 1024L;
+	
+	static
+	{
+		TestStubs.bindMinecraftClientStub();
+	}
+	
+	
+	
+	@Test
+	public void saveAndGetTest()
+	{
+		String name = "saveAndGetTest";
+		deleteFolder(name);
+		
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -2);
+		RenderDataCache.Key key = new RenderDataCache.Key(1000L, 42L, 7);
+		LodQuadBuilder quadBuilder = createQuadBuilder(8);
+		byte[] expectedVertices = getVertices(quadBuilder.makeOpaqueVertexBuffers());
+		
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			Assert.assertNull("nothing should be cached yet", cache.get(pos, key));
+			
+			cache.save(pos, key, quadBuilder, 300, 64);
+			Assert.assertTrue(cache.getUsedByteSize() > 0);
+			
+			RenderDataCache.CachedRenderData cachedData = cache.get(pos, key);
+			Assert.assertNotNull(cachedData);
+			Assert.assertEquals(300, cachedData.maxBlockY);
+			Assert.assertEquals(64, cachedData.minSurfaceBlockY);
+			Assert.assertArrayEquals(expectedVertices, getBytes(cachedData.opaqueVertexData));
+			Assert.assertEquals(0, cachedData.transparentVertexData.remaining());
+			
+			
+			// any change to the key should invalidate the data
+			Assert.assertNull(cache.get(pos, new RenderDataCache.Key(1001L, 42L, 7)));
+			Assert.assertNull(cache.get(pos, new RenderDataCache.Key(1000L, 43L, 7)));
+			Assert.assertNull(cache.get(pos, new RenderDataCache.Key(1000L, 42L, 8)));
+			Assert.assertNull("other positions shouldn't be affected", cache.get(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 3, -1), key));
+			
+			
+			// overwriting should replace the old data
+			LodQuadBuilder newQuadBuilder = createQuadBuilder(3);
+			cache.save(pos, key, newQuadBuilder, 200, 10);
+			cachedData = cache.get(pos, key);
+			Assert.assertNotNull(cachedData);
+			Assert.assertEquals(200, cachedData.maxBlockY);
+			Assert.assertArrayEquals(getVertices(newQuadBuilder.makeOpaqueVertexBuffers()), getBytes(cachedData.opaqueVertexData));
+			
+			cache.delete(pos);
+			Assert.assertNull(cache.get(pos, key));
+			Assert.assertEquals(0, cache.getUsedByteSize());
+		}
+		
+		deleteFolder(name);
+	}
+	
+	@Test
+	public void persistenceTest()
+	{
+		String name = "persistenceTest";
+		deleteFolder(name);
+		
+		long pos = DhSectionPos.encode((byte) (DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + 2), 100, 100);
+		RenderDataCache.Key key = new RenderDataCache.Key(5L, -1L, 12);
+		LodQuadBuilder quadBuilder = createQuadBuilder(20);
+		byte[] expectedVertices = getVertices(quadBuilder.makeOpaqueVertexBuffers());
+		
+		long usedByteSize;
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			cache.save(pos, key, quadBuilder, 1, 0);
+			usedByteSize = cache.getUsedByteSize();
+		}
+		
+		// the data should still be available after re-opening the cache
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			Assert.assertEquals(usedByteSize, cache.getUsedByteSize());
+			
+			RenderDataCache.CachedRenderData cachedData = cache.get(pos, key);
+			Assert.assertNotNull(cachedData);
+			Assert.assertArrayEquals(expectedVertices, getBytes(cachedData.opaqueVertexData));
+			
+			cache.deleteAll();
+			Assert.assertNull(cache.get(pos, key));
+			Assert.assertEquals(0, cache.getUsedByteSize());
+		}
+		
+		deleteFolder(name);
+	}
+	
+	@Test
+	public void maxSizeTest()
+	{
+		String name = "maxSizeTest";
+		deleteFolder(name);
+		
+		long firstPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		long secondPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 1);
+		RenderDataCache.Key key = new RenderDataCache.Key(1L, 2L, 3);
+		
+		long singleEntryByteSize;
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			cache.save(firstPos, key, createQuadBuilder(4), 0, 0);
+			singleEntryByteSize = cache.getUsedByteSize();
+			cache.deleteAll();
+		}
+		
+		// only one entry fits, so adding a second should clear the cache
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), singleEntryByteSize))
+		{
+			cache.save(firstPos, key, createQuadBuilder(4), 0, 0);
+			Assert.assertNotNull(cache.get(firstPos, key));
+			
+			cache.save(secondPos, key, createQuadBuilder(4), 0, 0);
+			Assert.assertNull(cache.get(firstPos, key));
+			Assert.assertNull(cache.get(secondPos, key));
+			Assert.assertEquals(0, cache.getUsedByteSize());
+		}
+		
+		deleteFolder(name);
+	}
+	@Test
+	public void payloadIsCopiedTest()
+	{
+		String name = "payloadIsCopiedTest";
+		deleteFolder(name);
+		
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		RenderDataCache.Key key = new RenderDataCache.Key(1L, 2L, 3);
+		LodQuadBuilder quadBuilder = createQuadBuilder(6);
+		byte[] expectedVertices = getVertices(quadBuilder.makeOpaqueVertexBuffers());
+		
+		RenderDataCache.CachedRenderData cachedData;
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			cache.save(pos, key, quadBuilder, 0, 0);
+			cachedData = cache.get(pos, key);
+			Assert.assertNotNull(cachedData);
+			
+			// freed sectors are re-used, so the returned data must not be backed by the file
+			cache.delete(pos);
+			cache.save(DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 1), key, createQuadBuilder(9), 0, 0);
+		}
+		
+		Assert.assertTrue(cachedData.opaqueVertexData.isDirect());
+		Assert.assertArrayEquals(expectedVertices, getBytes(cachedData.opaqueVertexData));
+		
+		deleteFolder(name);
+	}
+	
+	@Test
+	public void pooledPayloadTest()
+	{
+		String name = "pooledPayloadTest";
+		deleteFolder(name);
+		
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		RenderDataCache.Key key = new RenderDataCache.Key(1L, 2L, 3);
+		LodQuadBuilder quadBuilder = createQuadBuilder(6);
+		byte[] expectedVertices = getVertices(quadBuilder.makeOpaqueVertexBuffers());
+		
+		VertexStagingBufferPool bufferPool = ColumnRenderBuffer.STAGING_BUFFER_POOL;
+		bufferPool.clear();
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			cache.save(pos, key, quadBuilder, 0, 0);
+			
+			RenderDataCache.CachedRenderData cachedData = cache.get(pos, key);
+			Assert.assertNotNull(cachedData);
+			Assert.assertEquals(0, bufferPool.size());
+			
+			// closing more than once shouldn't add the same buffer to the pool twice
+			cachedData.close();
+			cachedData.close();
+			Assert.assertEquals(1, bufferPool.size());
+			
+			// the next read should re-use the returned buffer
+			long reusedBufferCount = bufferPool.getReusedBufferCount();
+			cachedData = cache.get(pos, key);
+			Assert.assertNotNull(cachedData);
+			Assert.assertEquals(reusedBufferCount + 1, bufferPool.getReusedBufferCount());
+			Assert.assertArrayEquals(expectedVertices, getBytes(cachedData.opaqueVertexData));
+			cachedData.close();
+		}
+		finally
+		{
+			bufferPool.clear();
+		}
+		
+		deleteFolder(name);
+	}
+	
+	@Test
+	public void negativeSectorIndexTest() throws Exception
+	{
+		String name = "negativeSectorIndexTest";
+		deleteFolder(name);
+		
+		long pos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 0);
+		long otherPos = DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, 0, 1);
+		RenderDataCache.Key key = new RenderDataCache.Key(1L, 2L, 3);
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			cache.save(pos, key, createQuadBuilder(4), 0, 0);
+			cache.save(otherPos, key, createQuadBuilder(4), 0, 0);
+		}
+		
+		// the first entry's sector index is at the start of the entry table, after the 16 byte file header
+		File file = new File(getFolder(name), "r." + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL + ".0.0.dhrc");
+		Assert.assertTrue(file.exists());
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.seek(16);
+			randomAccessFile.writeInt(-5);
+		}
+		
+		// the corrupt entry should be ignored without affecting the rest of the file
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			Assert.assertNull(cache.get(pos, key));
+			Assert.assertNotNull(cache.get(otherPos, key));
+			
+			cache.save(pos, key, createQuadBuilder(4), 0, 0);
+			Assert.assertNotNull(cache.get(pos, key));
+		}
+		
+		deleteFolder(name);
+	}
+	
+	@Test
+	public void regionEvictionTest()
+	{
+		String name = "regionEvictionTest";
+		deleteFolder(name);
+		
+		RenderDataCache.Key key = new RenderDataCache.Key(1L, 2L, 3);
+		int regionCount = RenderDataCache.MAX_OPEN_REGION_FILE_COUNT + 8;
+		byte[][] expectedVerticesByRegion = new byte[regionCount][];
+		try (RenderDataCache cache = new RenderDataCache(getFolder(name), MAX_BYTE_SIZE))
+		{
+			// each position is in a different region, so older files have to be closed and re-opened
+			for (int i = 0; i < regionCount; i++)
+			{
+				LodQuadBuilder quadBuilder = createQuadBuilder(1 + (i % 5));
+				expectedVerticesByRegion[i] = getVertices(quadBuilder.makeOpaqueVertexBuffers());
+				cache.save(getEvictionTestPos(i), key, quadBuilder, i, 0);
+			}
+			
+			for (int i = 0; i < regionCount; i++)
+			{
+				RenderDataCache.CachedRenderData cachedData = cache.get(getEvictionTestPos(i), key);
+				Assert.assertNotNull(cachedData);
+				Assert.assertEquals(i, cachedData.maxBlockY);
+				Assert.assertArrayEquals(expectedVerticesByRegion[i], getBytes(cachedData.opaqueVertexData));
+			}
+		}
+		
+		deleteFolder(name);
+	}
+	private static long getEvictionTestPos(int i) { return DhSectionPos.encode(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, i * RenderDataRegionFile.REGION_WIDTH, 0); }
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** creates a builder with the given number of opaque quads that can't be merged together */
+	private static LodQuadBuilder createQuadBuilder(int quadCount)
+	{
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null);
+		for (int i = 0; i < quadCount; i++)
+		{
+			// every other column is skipped and each quad has a different height
+			quadBuilder.addQuadUp((short) (i * 2), (short) (10 + i), (short) 0, (short) 1, (short) 1, 0xFF00FF00 + i, (byte) 0, (byte) 15, (byte) 0);
+		}
+		quadBuilder.finalizeData();
+		return quadBuilder;
+	}
+	
+	private static byte[] getVertices(Iterator<ByteBuffer> bufferIterator)
+	{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		while (bufferIterator.hasNext())
+		{
+			byte[] bytes = getBytes(bufferIterator.next());
+			outputStream.write(bytes, 0, bytes.length);
+		}
+		return outputStream.toByteArray();
+	}
+	private static byte[] getBytes(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+	
+	private static File getFolder(String name) { return new File("renderDataCache_" + name); }
+	private static void deleteFolder(String name)
+	{
+		File folder = getFolder(name);
+		File[] files = folder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				Assert.assertTrue("unable to delete test cache file.", file.delete());
+			}
+		}
+		
+		if (folder.exists())
+		{
+			Assert.assertTrue("unable to delete test cache folder.", folder.delete());
+		}
+	}
+	
+}
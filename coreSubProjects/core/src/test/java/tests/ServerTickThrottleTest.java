@@ -0,0 +1,79 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.util.threading.ServerTickThrottle;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ServerTickThrottleTest
+{
+	private static final double TARGET_TICK_MS = 40;
+	
+	
+	
+	@Test
+	public void throttleDecreasesWhenLaggingTest()
+	{
+		double level = 1.0;
+		
+		level = ServerTickThrottle.computeThrottleLevel(level, 60, TARGET_TICK_MS);
+		Assert.assertTrue(level < 1.0);
+		
+		// the throttle should never completely stop the threads
+		for (int i = 0; i < 100; i++)
+		{
+			level = ServerTickThrottle.computeThrottleLevel(level, 60, TARGET_TICK_MS);
+		}
+		Assert.assertEquals(ServerTickThrottle.MIN_THROTTLE_LEVEL, level, 0.0001);
+	}
+	
+	@Test
+	public void throttleRecoversGraduallyTest()
+	{
+		double level = ServerTickThrottle.MIN_THROTTLE_LEVEL;
+		
+		// near the target the throttle should hold steady
+		Assert.assertEquals(level, ServerTickThrottle.computeThrottleLevel(level, TARGET_TICK_MS - 1, TARGET_TICK_MS), 0.0001);
+		
+		// with headroom the throttle should recover slower than it drops
+		double droppedLevel = ServerTickThrottle.computeThrottleLevel(1.0, 60, TARGET_TICK_MS);
+		Assert.assertTrue(ServerTickThrottle.computeThrottleLevel(droppedLevel, 10, TARGET_TICK_MS) < 1.0);
+		
+		double recoveredLevel = ServerTickThrottle.computeThrottleLevel(level, 10, TARGET_TICK_MS);
+		Assert.assertTrue(recoveredLevel > level);
+		
+		for (int i = 0; i < 100; i++)
+		{
+			recoveredLevel = ServerTickThrottle.computeThrottleLevel(recoveredLevel, 10, TARGET_TICK_MS);
+		}
+		Assert.assertEquals(1.0, recoveredLevel, 0.0001);
+	}
+	
+	@Test
+	public void unthrottledLimitTest()
+	{
+		// the server isn't running during tests, so nothing should be throttled
+		Assert.assertEquals(1.0, ServerTickThrottle.INSTANCE.getThrottleLevel(), 0.0001);
+		Assert.assertEquals(20, ServerTickThrottle.INSTANCE.getThrottledLimit(20));
+		Assert.assertEquals(1, ServerTickThrottle.INSTANCE.getThrottledLimit(0));
+	}
+	
+}
@@ -0,0 +1,118 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
+
+import java.lang.reflect.Proxy;
+import java.util.function.Function;
+
+/**
+ * Stand-ins for the Minecraft wrappers,
+ * so tests can run code that expects them without starting the game.
+ */
+public class TestStubs
+{
+	/**
+	 * Binds an {@link IMinecraftClientWrapper} if one isn't already bound. <br>
+	 * Quad building needs face shading from the MC client,
+	 * the stub returns the same values every time so builds can be compared.
+	 */
+	public static synchronized void bindMinecraftClientStub()
+	{
+		if (SingletonInjector.INSTANCE.get(IMinecraftClientWrapper.class, true) != null)
+		{
+			return;
+		}
+		
+		IMinecraftClientWrapper mcStub = (IMinecraftClientWrapper) Proxy.newProxyInstance(
+				IMinecraftClientWrapper.class.getClassLoader(),
+				new Class[]{ IMinecraftClientWrapper.class },
+				(proxy, method, args) ->
+				{
+					Class<?> returnType = method.getReturnType();
+					if (returnType == float.class)
+					{
+						return 1.0f;
+					}
+					else if (returnType == boolean.class)
+					{
+						// needed for getDelayedSetupComplete()
+						return true;
+					}
+					else if (returnType == int.class)
+					{
+						return 0;
+					}
+					return null;
+				});
+		SingletonInjector.INSTANCE.bind(IMinecraftClientWrapper.class, mcStub);
+	}
+	
+	/** creates an interface implementation where every method returns a default value */
+	public static <T> T createStub(Class<T> interfaceClass) { return createStub(interfaceClass, (methodName) -> null); }
+	/** creates an interface implementation where getSerialString() returns the given value and every other method returns a default value */
+	public static <T> T createStub(Class<T> interfaceClass, String serialString) { return createStub(interfaceClass, (methodName) -> methodName.equals("getSerialString") ? serialString : null); }
+	/** 
+	 * Creates an interface implementation where each method returns the value from the given function,
+	 * or a default value if the function returns null. <br>
+	 * Stubs are only equal to themselves.
+	 */
+	public static <T> T createStub(Class<T> interfaceClass, Function<String, Object> returnValueFunc)
+	{
+		return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class[]{ interfaceClass },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "toString":
+							return interfaceClass.getSimpleName() + "@" + System.identityHashCode(proxy);
+					}
+					
+					Object value = returnValueFunc.apply(method.getName());
+					if (value != null)
+					{
+						return value;
+					}
+					
+					Class<?> returnType = method.getReturnType();
+					if (returnType == boolean.class)
+					{
+						return false;
+					}
+					else if (returnType == int.class)
+					{
+						return 0;
+					}
+					else if (returnType == byte.class)
+					{
+						return (byte) 0;
+					}
+					return null;
+				}));
+	}
+	
+}
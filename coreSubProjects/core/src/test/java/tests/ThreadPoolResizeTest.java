@@ -0,0 +1,120 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.util.threading.DhThreadFactory;
+import com.seibel.distanthorizons.core.util.threading.RateLimitedThreadPoolExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPoolResizeTest
+{
+	private static final int SUBMITTER_THREAD_COUNT = 4;
+	private static final int TASKS_PER_SUBMITTER = 5_000;
+	
+	
+	
+	@Test
+	public void resizeUnderLoadTest() throws InterruptedException
+	{
+		RateLimitedThreadPoolExecutor executor = new RateLimitedThreadPoolExecutor(2, 1.0, new DhThreadFactory("Resize Test", Thread.NORM_PRIORITY));
+		try
+		{
+			AtomicInteger completedCount = new AtomicInteger(0);
+			AtomicInteger rejectedCount = new AtomicInteger(0);
+			AtomicBoolean submittingDone = new AtomicBoolean(false);
+			
+			// constantly resize the pool while tasks are being submitted
+			Thread resizeThread = new Thread(() ->
+			{
+				int size = 1;
+				while (!submittingDone.get())
+				{
+					size = (size % 8) + 1;
+					executor.setPoolSize(size);
+					try
+					{
+						Thread.sleep(1);
+					}
+					catch (InterruptedException ignore) { }
+				}
+			});
+			resizeThread.start();
+			
+			
+			CountDownLatch submittersDoneLatch = new CountDownLatch(SUBMITTER_THREAD_COUNT);
+			ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < SUBMITTER_THREAD_COUNT; i++)
+			{
+				Thread submitterThread = new Thread(() ->
+				{
+					for (int j = 0; j < TASKS_PER_SUBMITTER; j++)
+					{
+						try
+						{
+							CompletableFuture<Void> future = CompletableFuture.runAsync(completedCount::incrementAndGet, executor);
+							synchronized (futures)
+							{
+								futures.add(future);
+							}
+						}
+						catch (RejectedExecutionException e)
+						{
+							rejectedCount.incrementAndGet();
+						}
+					}
+					submittersDoneLatch.countDown();
+				});
+				submitterThread.start();
+			}
+			
+			Assert.assertTrue(submittersDoneLatch.await(30, TimeUnit.SECONDS));
+			submittingDone.set(true);
+			resizeThread.join();
+			
+			synchronized (futures)
+			{
+				CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+			}
+			
+			Assert.assertEquals("no tasks should be rejected while resizing", 0, rejectedCount.get());
+			Assert.assertEquals("every task should be run", SUBMITTER_THREAD_COUNT * TASKS_PER_SUBMITTER, completedCount.get());
+			
+			
+			// the pool should end up at the last requested size
+			executor.setPoolSize(3);
+			Assert.assertEquals(3, executor.getCorePoolSize());
+			Assert.assertEquals(3, executor.getMaximumPoolSize());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+}
@@ -0,0 +1,175 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tests;
+
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.VertexStagingBufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+/**
+ * Confirms {@link VertexStagingBufferPool} re-uses its buffers
+ * and that filling a pooled buffer produces the same vertex data as a newly allocated one.
+ */
+public class VertexStagingBufferPoolTest
+{
+	static
+	{
+		TestStubs.bindMinecraftClientStub();
+	}
+	
+	
+	
+	@Test
+	public void reuseTest()
+	{
+		VertexStagingBufferPool pool = new VertexStagingBufferPool(1024, () -> 2);
+		
+		ByteBuffer firstBuffer = pool.getPooledBuffer();
+		Assert.assertTrue(firstBuffer.isDirect());
+		Assert.assertEquals(ByteOrder.nativeOrder(), firstBuffer.order());
+		Assert.assertEquals(1024, firstBuffer.remaining());
+		Assert.assertEquals(1, pool.getAllocatedBufferCount());
+		
+		firstBuffer.putInt(5);
+		pool.returnPooledBuffer(firstBuffer);
+		Assert.assertEquals(1, pool.size());
+		
+		// the same buffer should be returned, ready to be written to again
+		ByteBuffer secondBuffer = pool.getPooledBuffer();
+		Assert.assertSame(firstBuffer, secondBuffer);
+		Assert.assertEquals(0, secondBuffer.position());
+		Assert.assertEquals(1024, secondBuffer.remaining());
+		Assert.assertEquals(1, pool.getAllocatedBufferCount());
+		Assert.assertEquals(1, pool.getReusedBufferCount());
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	@Test
+	public void maxSizeTest()
+	{
+		int[] maxPooledBufferCount = new int[] { 2 };
+		VertexStagingBufferPool pool = new VertexStagingBufferPool(1024, () -> maxPooledBufferCount[0]);
+		
+		ByteBuffer[] buffers = new ByteBuffer[] { pool.getPooledBuffer(), pool.getPooledBuffer(), pool.getPooledBuffer() };
+		Assert.assertEquals(3, pool.getAllocatedBufferCount());
+		for (ByteBuffer buffer : buffers)
+		{
+			pool.returnPooledBuffer(buffer);
+		}
+		Assert.assertEquals("buffers past the max count shouldn't be kept", 2, pool.size());
+		
+		// buffers that aren't the pool's size can't be re-used
+		pool.getPooledBuffer();
+		pool.returnPooledBuffer(ByteBuffer.allocateDirect(512));
+		pool.returnPooledBuffer(ByteBuffer.allocate(1024));
+		Assert.assertEquals(1, pool.size());
+		
+		// the max size can change while running
+		maxPooledBufferCount[0] = 0;
+		pool.returnPooledBuffer(buffers[0]);
+		Assert.assertEquals(1, pool.size());
+		
+		pool.clear();
+		Assert.assertEquals(0, pool.size());
+	}
+	
+	/** the buffer filling doesn't need a GL context so it can be compared directly */
+	@Test
+	public void pooledFillMatchesAllocatedFillTest()
+	{
+		// large enough to need more than one vertex buffer
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null);
+		int quadCount = ColumnRenderBuffer.MAX_QUADS_PER_BUFFER + 100;
+		for (int i = 0; i < quadCount; i++)
+		{
+			// every quad has a different color so nothing can be merged
+			quadBuilder.addQuadUp((short) (i % 256), (short) 64, (short) (i / 256), (short) 1, (short) 1, 0xFF000000 | i, (byte) 0, (byte) 15, (byte) 0);
+			quadBuilder.addQuadUp((short) (i % 256), (short) 70, (short) (i / 256), (short) 1, (short) 1, 0x80000000 | i, (byte) 0, (byte) 15, (byte) 0);
+		}
+		quadBuilder.finalizeData();
+		Assert.assertEquals(2, quadBuilder.getCurrentNeededOpaqueVertexBufferCount());
+		
+		
+		VertexStagingBufferPool pool = new VertexStagingBufferPool(ColumnRenderBuffer.FULL_SIZED_BUFFER, () -> 1);
+		
+		// dirty the pooled buffer to make sure old data isn't included
+		ByteBuffer stagingBuffer = pool.getPooledBuffer();
+		while (stagingBuffer.hasRemaining())
+		{
+			stagingBuffer.put((byte) 0x7F);
+		}
+		pool.returnPooledBuffer(stagingBuffer);
+		
+		stagingBuffer = pool.getPooledBuffer();
+		byte[] pooledOpaque = getVertices(quadBuilder.makeOpaqueVertexBuffers(stagingBuffer), 2);
+		byte[] pooledTransparent = getVertices(quadBuilder.makeTransparentVertexBuffers(stagingBuffer), quadBuilder.getCurrentNeededTransparentVertexBufferCount());
+		pool.returnPooledBuffer(stagingBuffer);
+		
+		Assert.assertArrayEquals(getVertices(quadBuilder.makeOpaqueVertexBuffers(), 2), pooledOpaque);
+		Assert.assertArrayEquals(getVertices(quadBuilder.makeTransparentVertexBuffers(), quadBuilder.getCurrentNeededTransparentVertexBufferCount()), pooledTransparent);
+		Assert.assertEquals((long) quadBuilder.getCurrentOpaqueQuadsCount() * ColumnRenderBuffer.QUADS_BYTE_SIZE, pooledOpaque.length);
+		Assert.assertEquals(1, pool.getAllocatedBufferCount());
+		
+		
+		// the single buffer version should also match
+		ByteBuffer singleBuffer = ByteBuffer.allocate(pooledOpaque.length).order(ByteOrder.nativeOrder());
+		quadBuilder.putOpaqueVertexData(singleBuffer);
+		Assert.assertArrayEquals(pooledOpaque, singleBuffer.array());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void undersizedBufferTest()
+	{
+		LodQuadBuilder quadBuilder = new LodQuadBuilder(false, (short) 0, true, null);
+		quadBuilder.makeOpaqueVertexBuffers(ByteBuffer.allocateDirect(ColumnRenderBuffer.FULL_SIZED_BUFFER - 1));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static byte[] getVertices(Iterator<ByteBuffer> bufferIterator, int expectedBufferCount)
+	{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		int bufferCount = 0;
+		while (bufferIterator.hasNext())
+		{
+			ByteBuffer buffer = bufferIterator.next();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			outputStream.write(bytes, 0, bytes.length);
+			bufferCount++;
+		}
+		
+		Assert.assertEquals("vertex buffer count doesn't match", expectedBufferCount, bufferCount);
+		return outputStream.toByteArray();
+	}
+	
+}
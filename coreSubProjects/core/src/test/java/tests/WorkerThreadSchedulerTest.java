@@ -0,0 +1,277 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.util.threading.DhThreadFactory;
+import com.seibel.distanthorizons.core.util.threading.ELodBuilderTaskType;
+import com.seibel.distanthorizons.core.util.threading.LatencyHistogram;
+import com.seibel.distanthorizons.core.util.threading.WorkerThreadScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkerThreadSchedulerTest
+{
+	private static final DhThreadFactory THREAD_FACTORY = new DhThreadFactory("Scheduler Test", Thread.NORM_PRIORITY);
+	
+	
+	
+	@Test
+	public void priorityOrderTest() throws InterruptedException
+	{
+		WorkerThreadScheduler scheduler = new WorkerThreadScheduler(THREAD_FACTORY, 1, 1.0);
+		try
+		{
+			// block the only worker so every task is queued before any of them run
+			CountDownLatch blockingLatch = new CountDownLatch(1);
+			CountDownLatch blockingStartedLatch = new CountDownLatch(1);
+			scheduler.execute(ELodBuilderTaskType.BUFFER_BUILDER, 0, () ->
+			{
+				blockingStartedLatch.countDown();
+				awaitUninterruptibly(blockingLatch);
+			});
+			Assert.assertTrue(blockingStartedLatch.await(5, TimeUnit.SECONDS));
+			
+			List<Long> completedPriorities = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch doneLatch = new CountDownLatch(4);
+			for (long priority : new long[]{ 500, 10, 10_000, 20 })
+			{
+				scheduler.execute(ELodBuilderTaskType.BUFFER_BUILDER, priority, () ->
+				{
+					completedPriorities.add(priority);
+					doneLatch.countDown();
+				});
+			}
+			Assert.assertEquals(4, scheduler.getQueuedTaskCount(ELodBuilderTaskType.BUFFER_BUILDER));
+			
+			blockingLatch.countDown();
+			Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+			
+			Assert.assertEquals("closer tasks should run first", Arrays.asList(10L, 20L, 500L, 10_000L), completedPriorities);
+			waitForCompletedCount(scheduler, ELodBuilderTaskType.BUFFER_BUILDER, 5);
+			Assert.assertEquals(5, scheduler.getLatencyHistogram(ELodBuilderTaskType.BUFFER_BUILDER).getTotalCount());
+		}
+		finally
+		{
+			scheduler.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void taskTypesShareWorkersTest() throws InterruptedException
+	{
+		WorkerThreadScheduler scheduler = new WorkerThreadScheduler(THREAD_FACTORY, 1, 1.0);
+		try
+		{
+			CountDownLatch blockingLatch = new CountDownLatch(1);
+			CountDownLatch blockingStartedLatch = new CountDownLatch(1);
+			scheduler.execute(ELodBuilderTaskType.BUFFER_BUILDER, 0, () ->
+			{
+				blockingStartedLatch.countDown();
+				awaitUninterruptibly(blockingLatch);
+			});
+			Assert.assertTrue(blockingStartedLatch.await(5, TimeUnit.SECONDS));
+			
+			// queue a lot of far away buffer builds followed by a single chunk update,
+			// the chunk update shouldn't have to wait for every buffer build
+			int bufferTaskCount = 50;
+			List<ELodBuilderTaskType> completedTypes = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch doneLatch = new CountDownLatch(bufferTaskCount + 1);
+			for (int i = 0; i < bufferTaskCount; i++)
+			{
+				scheduler.execute(ELodBuilderTaskType.BUFFER_BUILDER, 1_000_000, () ->
+				{
+					busyWait(TimeUnit.MICROSECONDS.toNanos(200));
+					completedTypes.add(ELodBuilderTaskType.BUFFER_BUILDER);
+					doneLatch.countDown();
+				});
+			}
+			scheduler.execute(ELodBuilderTaskType.CHUNK_TO_LOD, 0, () ->
+			{
+				completedTypes.add(ELodBuilderTaskType.CHUNK_TO_LOD);
+				doneLatch.countDown();
+			});
+			
+			blockingLatch.countDown();
+			Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+			
+			int chunkIndex = completedTypes.indexOf(ELodBuilderTaskType.CHUNK_TO_LOD);
+			Assert.assertTrue("chunk update ran after [" + chunkIndex + "] buffer tasks", chunkIndex < bufferTaskCount / 2);
+		}
+		finally
+		{
+			scheduler.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void resizeTest() throws InterruptedException
+	{
+		WorkerThreadScheduler scheduler = new WorkerThreadScheduler(THREAD_FACTORY, 1, 1.0);
+		try
+		{
+			// grow to 4 threads and confirm they can all run at once
+			scheduler.setThreadCount(4);
+			Assert.assertEquals(4, scheduler.getThreadCount());
+			
+			CountDownLatch allStartedLatch = new CountDownLatch(4);
+			CountDownLatch releaseLatch = new CountDownLatch(1);
+			for (int i = 0; i < 4; i++)
+			{
+				scheduler.execute(ELodBuilderTaskType.LIGHT_POPULATOR, 0, () ->
+				{
+					allStartedLatch.countDown();
+					awaitUninterruptibly(releaseLatch);
+				});
+			}
+			Assert.assertTrue("all 4 workers should be running", allStartedLatch.await(5, TimeUnit.SECONDS));
+			
+			// shrinking shouldn't interrupt running tasks
+			AtomicInteger completedCount = new AtomicInteger(0);
+			scheduler.setThreadCount(1);
+			CountDownLatch doneLatch = new CountDownLatch(10);
+			for (int i = 0; i < 10; i++)
+			{
+				scheduler.execute(ELodBuilderTaskType.LIGHT_POPULATOR, 0, () ->
+				{
+					completedCount.incrementAndGet();
+					doneLatch.countDown();
+				});
+			}
+			releaseLatch.countDown();
+			Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+			Assert.assertEquals(10, completedCount.get());
+			waitForCompletedCount(scheduler, ELodBuilderTaskType.LIGHT_POPULATOR, 14);
+		}
+		finally
+		{
+			scheduler.shutdownNow();
+		}
+		
+		try
+		{
+			scheduler.execute(ELodBuilderTaskType.LIGHT_POPULATOR, 0, () -> {});
+			Assert.fail("tasks shouldn't be accepted after shutdown");
+		}
+		catch (RejectedExecutionException ignore) { }
+	}
+	
+	@Test
+	public void shutdownCancelsQueuedFuturesTest() throws InterruptedException
+	{
+		WorkerThreadScheduler scheduler = new WorkerThreadScheduler(THREAD_FACTORY, 1, 1.0);
+		
+		CountDownLatch blockingLatch = new CountDownLatch(1);
+		CountDownLatch blockingStartedLatch = new CountDownLatch(1);
+		CompletableFuture<Void> runningFuture = scheduler.getExecutor(ELodBuilderTaskType.BUFFER_BUILDER).runAsync(0, () ->
+		{
+			blockingStartedLatch.countDown();
+			awaitUninterruptibly(blockingLatch);
+		});
+		Assert.assertTrue(blockingStartedLatch.await(5, TimeUnit.SECONDS));
+		
+		CompletableFuture<Integer> queuedFuture = scheduler.getExecutor(ELodBuilderTaskType.BUFFER_BUILDER).supplyAsync(0, () -> 1);
+		scheduler.shutdownNow();
+		
+		// the queued task will never run, so anything waiting on it needs to be notified
+		Assert.assertTrue(queuedFuture.isCancelled());
+		
+		// the running task should still finish normally
+		blockingLatch.countDown();
+		try
+		{
+			runningFuture.get(5, TimeUnit.SECONDS);
+		}
+		catch (ExecutionException | TimeoutException e)
+		{
+			Assert.fail("running task didn't complete: " + e.getMessage());
+		}
+	}
+	
+	@Test
+	public void latencyHistogramTest()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentileMs(0.5), 0);
+		
+		for (int i = 0; i < 90; i++)
+		{
+			// 100 microseconds falls in the [64, 128) bucket
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		for (int i = 0; i < 10; i++)
+		{
+			// 50 ms falls in the [32.768, 65.536) ms bucket
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+		}
+		
+		Assert.assertEquals(100, histogram.getTotalCount());
+		Assert.assertEquals(0.128, histogram.getPercentileMs(0.5), 0.0001);
+		Assert.assertEquals(0.128, histogram.getPercentileMs(0.9), 0.0001);
+		Assert.assertEquals(65.536, histogram.getPercentileMs(0.99), 0.0001);
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static void awaitUninterruptibly(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ignore) { }
+	}
+	
+	/** task counts are updated after the task's runnable finishes, so they may lag slightly behind the latches */
+	private static void waitForCompletedCount(WorkerThreadScheduler scheduler, ELodBuilderTaskType taskType, long expectedCount) throws InterruptedException
+	{
+		long timeoutNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (scheduler.getCompletedTaskCount(taskType) < expectedCount && System.nanoTime() < timeoutNanos)
+		{
+			Thread.sleep(1);
+		}
+		Assert.assertEquals(expectedCount, scheduler.getCompletedTaskCount(taskType));
+	}
+	
+	private static void busyWait(long nanos)
+	{
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end)
+		{
+			// spin to simulate CPU bound work
+		}
+	}
+	
+}
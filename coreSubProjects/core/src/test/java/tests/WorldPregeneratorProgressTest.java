@@ -0,0 +1,151 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020-2023 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tests;
+
+import com.seibel.distanthorizons.core.generation.WorldPregenerator;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+
+public class WorldPregeneratorProgressTest
+{
+	
+	@Test
+	public void sectionOrderTest()
+	{
+		WorldPregenerator.Progress progress = new WorldPregenerator.Progress(-2, -1, 1, 1);
+		Assert.assertEquals(4 * 3, progress.getTotalCount());
+		
+		// every section in the area should be visited exactly once
+		HashSet<Long> visitedPositions = new HashSet<>();
+		while (progress.hasNext())
+		{
+			long pos = progress.getSectionPos(progress.startNext());
+			Assert.assertEquals(DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL, DhSectionPos.getDetailLevel(pos));
+			Assert.assertTrue(DhSectionPos.getX(pos) >= -2 && DhSectionPos.getX(pos) <= 1);
+			Assert.assertTrue(DhSectionPos.getZ(pos) >= -1 && DhSectionPos.getZ(pos) <= 1);
+			Assert.assertTrue(visitedPositions.add(pos));
+		}
+		Assert.assertEquals(progress.getTotalCount(), visitedPositions.size());
+		Assert.assertEquals(progress.getTotalCount(), progress.getInProgressCount());
+	}
+	
+	@Test
+	public void outOfOrderCompletionTest()
+	{
+		WorldPregenerator.Progress progress = new WorldPregenerator.Progress(0, 0, 3, 0);
+		int first = progress.startNext();
+		int second = progress.startNext();
+		int third = progress.startNext();
+		
+		// later sections finishing first can't move the confirmed index
+		progress.finish(third, WorldPregenerator.Progress.EResult.GENERATED);
+		progress.finish(second, WorldPregenerator.Progress.EResult.SKIPPED);
+		Assert.assertEquals(0, progress.getConfirmedIndex());
+		Assert.assertEquals(0, progress.getGeneratedCount());
+		
+		progress.finish(first, WorldPregenerator.Progress.EResult.GENERATED);
+		Assert.assertEquals(3, progress.getConfirmedIndex());
+		Assert.assertEquals(2, progress.getGeneratedCount());
+		Assert.assertEquals(1, progress.getSkippedCount());
+		Assert.assertEquals(0, progress.getInProgressCount());
+		Assert.assertFalse(progress.isComplete());
+		
+		progress.finish(progress.startNext(), WorldPregenerator.Progress.EResult.GENERATED);
+		Assert.assertTrue(progress.isComplete());
+		Assert.assertFalse(progress.hasNext());
+	}
+	
+	@Test
+	public void failedSectionRetryTest()
+	{
+		WorldPregenerator.Progress progress = new WorldPregenerator.Progress(0, 0, 1, 0);
+		int first = progress.startNext();
+		int second = progress.startNext();
+		progress.finish(second, WorldPregenerator.Progress.EResult.GENERATED);
+		
+		// failed sections should be retried before any new sections are started
+		progress.finish(first, WorldPregenerator.Progress.EResult.FAILED);
+		Assert.assertTrue(progress.hasNext());
+		Assert.assertEquals(0, progress.getConfirmedIndex());
+		Assert.assertEquals(0, progress.getFailedCount());
+		Assert.assertEquals(first, progress.startNext());
+		
+		// a temporary failure shouldn't be counted
+		progress.finish(first, WorldPregenerator.Progress.EResult.GENERATED);
+		Assert.assertTrue(progress.isComplete());
+		Assert.assertEquals(2, progress.getGeneratedCount());
+		Assert.assertEquals(0, progress.getFailedCount());
+		
+		
+		// sections that keep failing should eventually be given up on
+		progress = new WorldPregenerator.Progress(0, 0, 0, 0);
+		for (int i = 0; i < WorldPregenerator.Progress.MAX_ATTEMPT_COUNT; i++)
+		{
+			Assert.assertFalse(progress.isComplete());
+			Assert.assertTrue(progress.hasNext());
+			progress.finish(progress.startNext(), WorldPregenerator.Progress.EResult.FAILED);
+		}
+		Assert.assertTrue(progress.isComplete());
+		Assert.assertFalse(progress.hasNext());
+		Assert.assertEquals(1, progress.getFailedCount());
+	}
+	
+	@Test
+	public void saveAndResumeTest() throws IOException
+	{
+		File file = File.createTempFile("pregen", ".properties");
+		try
+		{
+			WorldPregenerator.Progress progress = new WorldPregenerator.Progress(-10, -10, 10, 10);
+			int first = progress.startNext();
+			int second = progress.startNext();
+			progress.startNext();
+			progress.finish(first, WorldPregenerator.Progress.EResult.GENERATED);
+			progress.finish(second, WorldPregenerator.Progress.EResult.SKIPPED);
+			progress.paused = true;
+			progress.save(file);
+			
+			// the unfinished section should be started again after resuming
+			WorldPregenerator.Progress loadedProgress = WorldPregenerator.Progress.load(file);
+			Assert.assertEquals(progress.getTotalCount(), loadedProgress.getTotalCount());
+			Assert.assertEquals(2, loadedProgress.getConfirmedIndex());
+			Assert.assertEquals(1, loadedProgress.getGeneratedCount());
+			Assert.assertEquals(1, loadedProgress.getSkippedCount());
+			Assert.assertTrue(loadedProgress.paused);
+			Assert.assertEquals(2, loadedProgress.startNext());
+		}
+		finally
+		{
+			Assert.assertTrue(file.delete());
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidAreaTest()
+	{
+		new WorldPregenerator.Progress(0, 0, Integer.MAX_VALUE - 1, Integer.MAX_VALUE - 1);
+	}
+	
+}
@@ -84,6 +84,7 @@ public class FabricServerProxy implements AbstractModInitializer.IEventProxy
 		/* Register the mod needed event callbacks */
 		
 		// ServerTickEvent
+		ServerTickEvents.START_SERVER_TICK.register((server) -> SERVER_API.serverTickStartEvent());
 		ServerTickEvents.END_SERVER_TICK.register((server) -> SERVER_API.serverTickEvent());
 		
 		// ServerWorldLoadEvent
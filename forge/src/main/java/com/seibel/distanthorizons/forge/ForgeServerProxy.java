@@ -91,11 +91,15 @@ public class ForgeServerProxy implements AbstractModInitializer.IEventProxy
 	// events //
 	//========//
 	
-	// ServerTickEvent (at end)
+	// ServerTickEvent (start is used to measure the tick time)
 	@SubscribeEvent
 	public void serverTickEvent(TickEvent.ServerTickEvent event)
 	{
-		if (event.phase == TickEvent.Phase.END)
+		if (event.phase == TickEvent.Phase.START)
+		{
+			this.serverApi.serverTickStartEvent();
+		}
+		else if (event.phase == TickEvent.Phase.END)
 		{
 			this.serverApi.serverTickEvent();
 		}
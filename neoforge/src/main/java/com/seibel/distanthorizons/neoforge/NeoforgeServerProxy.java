@@ -72,13 +72,22 @@ public class NeoforgeServerProxy implements AbstractModInitializer.IEventProxy
 	@SubscribeEvent
 	public void serverTickEvent(TickEvent.ServerTickEvent event)
 	{
-		if (event.phase == TickEvent.Phase.END)
+		if (event.phase == TickEvent.Phase.START)
+		{
+			this.serverApi.serverTickStartEvent();
+		}
+		else if (event.phase == TickEvent.Phase.END)
 		{
 			this.serverApi.serverTickEvent();
 		}
 	}
 	#else
 	@SubscribeEvent
+	public void serverTickStartEvent(ServerTickEvent.Pre event)
+	{
+		this.serverApi.serverTickStartEvent();
+	}
+	@SubscribeEvent
 	public void serverTickEvent(ServerTickEvent.Post event)
 	{
 		this.serverApi.serverTickEvent();